@@ -158,6 +158,18 @@ public class ExecutionConfig implements Serializable, Archiveable<ArchivedExecut
 	/** This flag defines if we use compression for the state snapshot data or not. Default: false */
 	private boolean useSnapshotCompression = false;
 
+	private boolean windowPaneSharing = false;
+
+	private int windowMiniBatchSize = 0;
+
+	private long windowMiniBatchLatency = 0;
+
+	private boolean compactSessionWindowSet = false;
+
+	private boolean incrementalWindowEviction = false;
+
+	private boolean asyncStateAccess = false;
+
 	/**
 	 * @deprecated Should no longer be used because we would not support to let task directly fail on checkpoint error.
 	 */
@@ -956,6 +968,173 @@ public class ExecutionConfig implements Serializable, Archiveable<ArchivedExecut
 		this.useSnapshotCompression = useSnapshotCompression;
 	}
 
+	/**
+	 * Enables pane sharing for keyed sliding time windows. Windows with the default trigger, no
+	 * evictor and a reduce or aggregate function then keep one pre-aggregate per pane instead of
+	 * one per window and combine the panes when a window fires. The aggregate function must
+	 * implement merge. The window state is not compatible with savepoints taken without pane
+	 * sharing, and restoring such a savepoint fails.
+	 */
+	@PublicEvolving
+	public ExecutionConfig enableWindowPaneSharing() {
+		windowPaneSharing = true;
+		return this;
+	}
+
+	/**
+	 * Disables pane sharing for keyed sliding time windows. @see #enableWindowPaneSharing()
+	 */
+	@PublicEvolving
+	public ExecutionConfig disableWindowPaneSharing() {
+		windowPaneSharing = false;
+		return this;
+	}
+
+	/**
+	 * Returns whether pane sharing for sliding time windows is enabled. @see #enableWindowPaneSharing()
+	 */
+	@PublicEvolving
+	public boolean isWindowPaneSharingEnabled() {
+		return windowPaneSharing;
+	}
+
+	/**
+	 * Sets the maximum number of records that keyed windows with the default trigger, no evictor
+	 * and a reduce or aggregate function buffer before they update their state. Records of the
+	 * same key and window are pre-aggregated in memory, so that the state is accessed once per key
+	 * and window instead of once per record. A size of 0 disables the buffering.
+	 *
+	 * @param windowMiniBatchSize The maximum number of buffered records.
+	 */
+	@PublicEvolving
+	public ExecutionConfig setWindowMiniBatchSize(int windowMiniBatchSize) {
+		Preconditions.checkArgument(windowMiniBatchSize >= 0, "The mini-batch size must not be negative.");
+		this.windowMiniBatchSize = windowMiniBatchSize;
+		return this;
+	}
+
+	/**
+	 * Returns the maximum number of records that windows buffer before they update their state,
+	 * or 0 if the buffering is disabled. @see #setWindowMiniBatchSize(int)
+	 */
+	@PublicEvolving
+	public int getWindowMiniBatchSize() {
+		return windowMiniBatchSize;
+	}
+
+	/**
+	 * Sets the maximum time in milliseconds that windows buffer records before they update their
+	 * state. A latency of 0 means that the buffer is only flushed when it is full, and on
+	 * watermarks, checkpoints and timers. @see #setWindowMiniBatchSize(int)
+	 *
+	 * @param windowMiniBatchLatency The maximum buffering time in milliseconds.
+	 */
+	@PublicEvolving
+	public ExecutionConfig setWindowMiniBatchLatency(long windowMiniBatchLatency) {
+		Preconditions.checkArgument(windowMiniBatchLatency >= 0, "The mini-batch latency must not be negative.");
+		this.windowMiniBatchLatency = windowMiniBatchLatency;
+		return this;
+	}
+
+	/**
+	 * Returns the maximum time in milliseconds that windows buffer records before they update
+	 * their state. @see #setWindowMiniBatchLatency(long)
+	 */
+	@PublicEvolving
+	public long getWindowMiniBatchLatency() {
+		return windowMiniBatchLatency;
+	}
+
+	/**
+	 * Enables the compact representation of the in-flight windows of keyed session windows. The
+	 * session windows of a key are then kept as one sorted array of primitive longs instead of a
+	 * list of window pairs. When a savepoint taken with the other representation is restored, the
+	 * in-flight windows are converted once, when the window operator is opened.
+	 */
+	@PublicEvolving
+	public ExecutionConfig enableCompactSessionWindowSet() {
+		compactSessionWindowSet = true;
+		return this;
+	}
+
+	/**
+	 * Disables the compact representation of session windows. @see #enableCompactSessionWindowSet()
+	 */
+	@PublicEvolving
+	public ExecutionConfig disableCompactSessionWindowSet() {
+		compactSessionWindowSet = false;
+		return this;
+	}
+
+	/**
+	 * Returns whether the compact representation of session windows is enabled.
+	 * @see #enableCompactSessionWindowSet()
+	 */
+	@PublicEvolving
+	public boolean isCompactSessionWindowSetEnabled() {
+		return compactSessionWindowSet;
+	}
+
+	/**
+	 * Enables incremental eviction for keyed windows with an evictor and a non-merging window
+	 * assigner. The elements of such windows are then kept in a map keyed by their arrival order, so
+	 * that evicted elements are removed one by one instead of rewriting the whole window on every
+	 * firing. The window state is not compatible with savepoints taken with the other setting, and
+	 * restoring such a savepoint fails.
+	 */
+	@PublicEvolving
+	public ExecutionConfig enableIncrementalWindowEviction() {
+		incrementalWindowEviction = true;
+		return this;
+	}
+
+	/**
+	 * Disables incremental eviction for keyed windows. @see #enableIncrementalWindowEviction()
+	 */
+	@PublicEvolving
+	public ExecutionConfig disableIncrementalWindowEviction() {
+		incrementalWindowEviction = false;
+		return this;
+	}
+
+	/**
+	 * Returns whether incremental eviction for keyed windows is enabled.
+	 * @see #enableIncrementalWindowEviction()
+	 */
+	@PublicEvolving
+	public boolean isIncrementalWindowEvictionEnabled() {
+		return incrementalWindowEviction;
+	}
+
+	/**
+	 * Enables asynchronous state access for keyed reduce and aggregation operators. If the state
+	 * backend can read state asynchronously, these operators then keep processing records of other
+	 * keys while the state of a key is read. Records of the same key are processed in order, but
+	 * the results of different keys may be emitted in a different order than their records arrived.
+	 */
+	@PublicEvolving
+	public ExecutionConfig enableAsyncStateAccess() {
+		asyncStateAccess = true;
+		return this;
+	}
+
+	/**
+	 * Disables asynchronous state access. @see #enableAsyncStateAccess()
+	 */
+	@PublicEvolving
+	public ExecutionConfig disableAsyncStateAccess() {
+		asyncStateAccess = false;
+		return this;
+	}
+
+	/**
+	 * Returns whether asynchronous state access is enabled. @see #enableAsyncStateAccess()
+	 */
+	@PublicEvolving
+	public boolean isAsyncStateAccessEnabled() {
+		return asyncStateAccess;
+	}
+
 	/**
 	 * @deprecated This method takes no effect since we would not forward the configuration from the checkpoint config
 	 * to the task, and we have not supported task to fail on checkpoint error.
@@ -1003,6 +1182,12 @@ public class ExecutionConfig implements Serializable, Archiveable<ArchivedExecut
 				registeredPojoTypes.equals(other.registeredPojoTypes) &&
 				taskCancellationIntervalMillis == other.taskCancellationIntervalMillis &&
 				useSnapshotCompression == other.useSnapshotCompression &&
+				windowPaneSharing == other.windowPaneSharing &&
+				windowMiniBatchSize == other.windowMiniBatchSize &&
+				windowMiniBatchLatency == other.windowMiniBatchLatency &&
+				compactSessionWindowSet == other.compactSessionWindowSet &&
+				incrementalWindowEviction == other.incrementalWindowEviction &&
+				asyncStateAccess == other.asyncStateAccess &&
 				defaultInputDependencyConstraint == other.defaultInputDependencyConstraint;
 
 		} else {
@@ -1031,6 +1216,12 @@ public class ExecutionConfig implements Serializable, Archiveable<ArchivedExecut
 			registeredPojoTypes,
 			taskCancellationIntervalMillis,
 			useSnapshotCompression,
+			windowPaneSharing,
+			windowMiniBatchSize,
+			windowMiniBatchLatency,
+			compactSessionWindowSet,
+			incrementalWindowEviction,
+			asyncStateAccess,
 			defaultInputDependencyConstraint);
 	}
 
@@ -1057,6 +1248,12 @@ public class ExecutionConfig implements Serializable, Archiveable<ArchivedExecut
 			", taskCancellationIntervalMillis=" + taskCancellationIntervalMillis +
 			", taskCancellationTimeoutMillis=" + taskCancellationTimeoutMillis +
 			", useSnapshotCompression=" + useSnapshotCompression +
+			", windowPaneSharing=" + windowPaneSharing +
+			", windowMiniBatchSize=" + windowMiniBatchSize +
+			", windowMiniBatchLatency=" + windowMiniBatchLatency +
+			", compactSessionWindowSet=" + compactSessionWindowSet +
+			", incrementalWindowEviction=" + incrementalWindowEviction +
+			", asyncStateAccess=" + asyncStateAccess +
 			", failTaskOnCheckpointError=" + failTaskOnCheckpointError +
 			", defaultInputDependencyConstraint=" + defaultInputDependencyConstraint +
 			", globalJobParameters=" + globalJobParameters +
@@ -1195,6 +1392,18 @@ public class ExecutionConfig implements Serializable, Archiveable<ArchivedExecut
 			.ifPresent(this::setTaskCancellationTimeout);
 		configuration.getOptional(ExecutionOptions.SNAPSHOT_COMPRESSION)
 			.ifPresent(this::setUseSnapshotCompression);
+		configuration.getOptional(PipelineOptions.WINDOW_PANE_SHARING)
+			.ifPresent(b -> this.windowPaneSharing = b);
+		configuration.getOptional(PipelineOptions.WINDOW_MINI_BATCH_SIZE)
+			.ifPresent(this::setWindowMiniBatchSize);
+		configuration.getOptional(PipelineOptions.WINDOW_MINI_BATCH_ALLOW_LATENCY)
+			.ifPresent(l -> this.setWindowMiniBatchLatency(l.toMillis()));
+		configuration.getOptional(PipelineOptions.COMPACT_SESSION_WINDOW_SET)
+			.ifPresent(b -> this.compactSessionWindowSet = b);
+		configuration.getOptional(PipelineOptions.INCREMENTAL_WINDOW_EVICTION)
+			.ifPresent(b -> this.incrementalWindowEviction = b);
+		configuration.getOptional(PipelineOptions.ASYNC_STATE_ACCESS)
+			.ifPresent(b -> this.asyncStateAccess = b);
 		RestartStrategies.fromConfiguration(configuration)
 			.ifPresent(this::setRestartStrategy);
 		configuration.getOptional(PipelineOptions.KRYO_DEFAULT_SERIALIZERS)
@@ -20,6 +20,8 @@ package org.apache.flink.configuration;
 
 import org.apache.flink.annotation.docs.Documentation;
 
+import java.time.Duration;
+
 /**
  * A collection of all configuration options that relate to checkpoints
  * and savepoints.
@@ -108,6 +110,86 @@ public class CheckpointingOptions {
 				"recovery. Local recovery currently only covers keyed state backends. Currently, MemoryStateBackend does " +
 				"not support local recovery and ignore this option");
 
+	/**
+	 * The number of records that a keyed task looks ahead in its input to prefetch the state of their keys.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_STATE_BACKENDS)
+	public static final ConfigOption<Integer> PREFETCH_WINDOW_SIZE = ConfigOptions
+			.key("state.backend.prefetch.window-size")
+			.intType()
+			.defaultValue(0)
+			.withDescription("The number of records that a keyed task with a single input deserializes ahead of " +
+				"their processing, to read the state of their keys in one batch. Only state backends which support " +
+				"prefetching (RocksDBStateBackend) make use of it. Records are only looked ahead within one network " +
+				"buffer, and not at all if unaligned checkpoints are enabled. A value of 0 disables prefetching.");
+
+	/**
+	 * Whether keyed state backends write all state changes to a changelog, so that checkpoints only persist the
+	 * changes since the last materialization of the state.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_STATE_BACKENDS)
+	public static final ConfigOption<Boolean> CHANGELOG_ENABLED = ConfigOptions
+			.key("state.backend.changelog.enabled")
+			.booleanType()
+			.defaultValue(false)
+			.withDescription("Whether the configured state backend is wrapped by the changelog state backend. The " +
+				"changelog state backend records all changes of keyed state in a log which is continuously written to " +
+				"the checkpoint file system. A checkpoint then only uploads the tail of the log, while the wrapped " +
+				"backend periodically materializes a full snapshot of its state in the background. Restores load the " +
+				"last materialization and replay the log. Savepoints are written by the wrapped backend directly.");
+
+	/**
+	 * The interval at which the changelog state backend materializes the state of the wrapped backend.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_STATE_BACKENDS)
+	public static final ConfigOption<Duration> CHANGELOG_MATERIALIZATION_INTERVAL = ConfigOptions
+			.key("state.backend.changelog.materialization.interval")
+			.durationType()
+			.defaultValue(Duration.ofMinutes(10))
+			.withDescription(String.format("The minimum time between two materializations of the keyed state, when " +
+				"'%s' is enabled. A materialization starts with the first checkpoint after the interval elapsed, but " +
+				"the checkpoint does not wait for it. Shorter intervals keep the changelog, and with it the time to " +
+				"restore, small.", CHANGELOG_ENABLED.key()));
+
+	/**
+	 * The amount of state changes after which the changelog state backend uploads them as one segment of the log.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_STATE_BACKENDS)
+	public static final ConfigOption<MemorySize> CHANGELOG_SEGMENT_SIZE = ConfigOptions
+			.key("state.backend.changelog.segment-size")
+			.memoryType()
+			.defaultValue(MemorySize.parse("1mb"))
+			.withDescription(String.format("The amount of serialized state changes which the changelog state backend " +
+				"collects before it uploads them as one file, when '%s' is enabled. Checkpoints upload the changes " +
+				"collected so far regardless of this size.", CHANGELOG_ENABLED.key()));
+
+	/**
+	 * Whether processing-time timers are kept in a hierarchical timing wheel instead of a binary heap.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_STATE_BACKENDS)
+	public static final ConfigOption<Boolean> TIMER_SERVICE_TIMING_WHEEL_ENABLED = ConfigOptions
+			.key("state.backend.timer-service.timing-wheel.enabled")
+			.booleanType()
+			.defaultValue(false)
+			.withDescription("Whether processing-time timers are kept on the heap in a hierarchical timing wheel, " +
+				"which registers and deletes timers in constant time, instead of the priority queue of the state " +
+				"backend. The timers of all timer services are then written synchronously to the raw keyed state " +
+				"of the operator, in the same format as the heap timers of the RocksDBStateBackend, and timers " +
+				"which the state backend restored are moved to the heap.");
+
+	/**
+	 * The time which one bucket of the timing wheel for processing-time timers spans.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_STATE_BACKENDS)
+	public static final ConfigOption<Duration> TIMER_SERVICE_TIMING_WHEEL_RESOLUTION = ConfigOptions
+			.key("state.backend.timer-service.timing-wheel.resolution")
+			.durationType()
+			.defaultValue(Duration.ofMillis(100))
+			.withDescription(String.format("The time which one bucket of the timing wheel spans, when '%s' is " +
+				"enabled. Timers still fire at their exact time, but only the timers of the next bucket are kept " +
+				"sorted. Coarser buckets make registrations cheaper, but sort more timers at once.",
+				TIMER_SERVICE_TIMING_WHEEL_ENABLED.key()));
+
 	// ------------------------------------------------------------------------
 	//  Options specific to the file-system-based state backends
 	// ------------------------------------------------------------------------
@@ -137,6 +219,16 @@ public class CheckpointingOptions {
 				"in a Flink supported filesystem. The storage path must be accessible from all participating processes/nodes" +
 				"(i.e. all TaskManagers and JobManagers).");
 
+	/** Whether the JobManager compresses the metadata file of completed checkpoints. */
+	@Documentation.Section(Documentation.Sections.EXPERT_STATE_BACKENDS)
+	public static final ConfigOption<Boolean> CHECKPOINT_METADATA_COMPRESSION = ConfigOptions
+			.key("state.checkpoints.metadata.compression")
+			.booleanType()
+			.defaultValue(false)
+			.withDescription("Whether the JobManager compresses the metadata file of completed checkpoints with Snappy. " +
+				"This makes the metadata of jobs with many subtasks and incremental checkpoints smaller, at the cost " +
+				"of some CPU time when the checkpoint completes and when it is restored.");
+
 	/** The minimum size of state data files. All state chunks smaller than that
 	 * are stored inline in the root checkpoint metadata file. */
 	@Documentation.Section(Documentation.Sections.EXPERT_STATE_BACKENDS)
@@ -156,4 +248,46 @@ public class CheckpointingOptions {
 		.withDescription(String.format("The default size of the write buffer for the checkpoint streams that write to file systems. " +
 			"The actual write buffer size is determined to be the maximum of the value of this option and option '%s'.", FS_SMALL_FILE_THRESHOLD.key()));
 
+	/**
+	 * The maximum number of delta files that an incremental checkpoint of the file system state backend
+	 * references before the state is compacted into a new full base.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_STATE_BACKENDS)
+	public static final ConfigOption<Integer> FS_INCREMENTAL_MAX_DELTAS = ConfigOptions
+		.key("state.backend.fs.incremental.max-deltas")
+		.intType()
+		.defaultValue(10)
+		.withDescription(String.format("The maximum number of delta files that an incremental checkpoint of the " +
+			"file system state backend builds on top of its base, when '%s' is enabled. Once reached, the next " +
+			"checkpoint writes the complete state as a new base. Higher values produce smaller checkpoints, but " +
+			"make recovery replay more files.", INCREMENTAL_CHECKPOINTS.key()));
+
+	/**
+	 * Whether the file system state backend spills the least recently used keyed state to local disk, once the
+	 * state in memory exceeds its share of the managed memory.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_STATE_BACKENDS)
+	public static final ConfigOption<Boolean> FS_SPILL_ENABLED = ConfigOptions
+		.key("state.backend.fs.spill.enabled")
+		.booleanType()
+		.defaultValue(false)
+		.withDescription("Whether the file system state backend spills the least recently used keyed state to the " +
+			"temporary directories of the TaskManager, once the estimated size of the state on the heap exceeds its " +
+			"budget. Spilled state is loaded back into memory when it is accessed. This keeps a hot set of keys as " +
+			"objects on the heap, while the cold tail of a skewed key space is kept serialized on disk. Spilling " +
+			"requires asynchronous snapshots.");
+
+	/**
+	 * The fraction of the managed memory of a slot which the heap keyed state of the slot may use before it is spilled.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_STATE_BACKENDS)
+	public static final ConfigOption<Double> FS_SPILL_MANAGED_MEMORY_FRACTION = ConfigOptions
+		.key("state.backend.fs.spill.managed-memory-fraction")
+		.doubleType()
+		.defaultValue(1.0)
+		.withDescription(String.format("The fraction of the managed memory of a slot that the keyed state of all " +
+			"file system state backends in the slot may use on the heap, when '%s' is enabled. The budget is reserved " +
+			"from the managed memory, while the state itself lives on the JVM heap, so the task heap should be sized " +
+			"accordingly.", FS_SPILL_ENABLED.key()));
+
 }
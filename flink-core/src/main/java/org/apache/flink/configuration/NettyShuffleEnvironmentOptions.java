@@ -21,6 +21,8 @@ package org.apache.flink.configuration;
 import org.apache.flink.annotation.PublicEvolving;
 import org.apache.flink.annotation.docs.Documentation;
 
+import java.time.Duration;
+
 import static org.apache.flink.configuration.ConfigOptions.key;
 
 /**
@@ -82,11 +84,40 @@ public class NettyShuffleEnvironmentOptions {
 	/**
 	 * The codec to be used when compressing shuffle data.
 	 */
-	@Documentation.ExcludeFromDocumentation("Currently, LZ4 is the only legal option.")
+	@Documentation.Section(Documentation.Sections.ALL_TASK_MANAGER_NETWORK)
 	public static final ConfigOption<String> SHUFFLE_COMPRESSION_CODEC =
 		key("taskmanager.network.compression.codec")
 			.defaultValue("LZ4")
-			.withDescription("The codec to be used when compressing shuffle data.");
+			.withDescription("The codec to be used when compressing blocking shuffle data. Supported codecs are" +
+				" \"LZ4\" and \"SNAPPY\". Alternatively, the fully qualified class name of a custom" +
+				" \"org.apache.flink.runtime.io.compression.BlockCompressionFactory\" can be given.");
+
+	/**
+	 * Boolean flag indicating whether the shuffle data of pipelined partitions will be compressed.
+	 *
+	 * <p>Note: Buffers are compressed by the Netty threads when they are sent, and only if they are not
+	 * shared with other subpartitions, e.g. in case of broadcast.
+	 */
+	@Documentation.Section(Documentation.Sections.ALL_TASK_MANAGER_NETWORK)
+	public static final ConfigOption<Boolean> PIPELINED_SHUFFLE_COMPRESSION_ENABLED =
+		key("taskmanager.network.pipelined-shuffle.compression.enabled")
+			.booleanType()
+			.defaultValue(false)
+			.withDescription("Boolean flag indicating whether the shuffle data will be compressed for pipelined" +
+				" shuffle mode. Buffers are compressed when they are sent, unless they are shared by multiple" +
+				" subpartitions, and compression is temporarily skipped for subpartitions whose data does not" +
+				" compress well. This pays off for network bound jobs with a high data compression ratio.");
+
+	/**
+	 * The codec to be used when compressing the shuffle data of pipelined partitions.
+	 */
+	@Documentation.Section(Documentation.Sections.ALL_TASK_MANAGER_NETWORK)
+	public static final ConfigOption<String> PIPELINED_SHUFFLE_COMPRESSION_CODEC =
+		key("taskmanager.network.pipelined-shuffle.compression.codec")
+			.stringType()
+			.defaultValue("LZ4")
+			.withDescription("The codec to be used when compressing pipelined shuffle data. Supports the same" +
+				" values as \"taskmanager.network.compression.codec\".");
 
 	/**
 	 * Boolean flag to enable/disable more detailed metrics about inbound/outbound network queue
@@ -187,6 +218,64 @@ public class NettyShuffleEnvironmentOptions {
 				" and can be ignored by things like flatMap operators, records spanning multiple buffers or single timer" +
 				" producing large amount of data.");
 
+	/**
+	 * Whether the input gates adapt the number of buffers they announce as credit to the measured
+	 * consumption rate.
+	 */
+	@Documentation.Section(Documentation.Sections.ALL_TASK_MANAGER_NETWORK)
+	public static final ConfigOption<Boolean> NETWORK_BUFFER_DEBLOAT_ENABLED =
+		key("taskmanager.network.memory.buffer-debloat.enabled")
+			.booleanType()
+			.defaultValue(false)
+			.withDescription("Boolean flag indicating whether the input gates adapt the number of buffers they announce" +
+				" as credit to the producers to their measured consumption rate, so that the in-flight data per gate" +
+				" is bounded by the time configured in \"taskmanager.network.memory.buffer-debloat.target\"." +
+				" This keeps the in-flight data, and with it the aligned and unaligned checkpoint overhead, small under" +
+				" back pressure. The exclusive buffers of a channel are always announced.");
+
+	/**
+	 * The time the in-flight data of an input gate should take to be consumed when buffer debloating is enabled.
+	 */
+	@Documentation.Section(Documentation.Sections.ALL_TASK_MANAGER_NETWORK)
+	public static final ConfigOption<Duration> NETWORK_BUFFER_DEBLOAT_TARGET =
+		key("taskmanager.network.memory.buffer-debloat.target")
+			.durationType()
+			.defaultValue(Duration.ofSeconds(1))
+			.withDescription("The target time it should take to consume the in-flight data of an input gate when" +
+				" buffer debloating is enabled. The number of buffers announced as credit is derived from this time" +
+				" and the measured consumption rate of the gate.");
+
+	/**
+	 * The minimal time between two recalculations of the buffer debloating target.
+	 */
+	@Documentation.Section(Documentation.Sections.ALL_TASK_MANAGER_NETWORK)
+	public static final ConfigOption<Duration> NETWORK_BUFFER_DEBLOAT_PERIOD =
+		key("taskmanager.network.memory.buffer-debloat.period")
+			.durationType()
+			.defaultValue(Duration.ofMillis(200))
+			.withDescription("The minimal time between two recalculations of the consumption rate and the buffer" +
+				" debloating target of an input gate. Shorter periods react faster to changing load but measure" +
+				" the consumption rate less accurately.");
+
+	/**
+	 * Whether forward and rescale exchanges write records aligned to buffer boundaries.
+	 *
+	 * <p>Producer and consumer of such exchanges typically share a TaskManager, in which case the
+	 * consumer reads the producer's buffers directly. Aligned records can then be deserialized
+	 * without copying them into an intermediate buffer first.
+	 */
+	@Documentation.Section(Documentation.Sections.ALL_TASK_MANAGER_NETWORK)
+	public static final ConfigOption<Boolean> NETWORK_POINTWISE_EXCHANGE_ALIGN_RECORDS =
+		key("taskmanager.network.pointwise-exchange.align-records")
+			.booleanType()
+			.defaultValue(false)
+			.withDescription("Boolean flag indicating whether forward and rescale exchanges start a new buffer for a" +
+				" record which does not fit into the remaining space of the current buffer. Records which are not" +
+				" larger than a buffer then never span buffers, so that the consumer deserializes them directly" +
+				" from the network buffer instead of copying them into an intermediate buffer first. This mostly" +
+				" pays off for local exchanges, where the consumer reads the buffers of the producer as they are," +
+				" at the cost of leaving the tail of some buffers unused.");
+
 	/**
 	 * The timeout for requesting exclusive buffers for each channel.
 	 */
@@ -208,6 +297,37 @@ public class NettyShuffleEnvironmentOptions {
 					" by configured memory limits, but some resource frameworks like yarn would track this memory usage and kill the container once" +
 					" memory exceeding some threshold. Also note that this option is experimental and might be changed future.");
 
+	/**
+	 * Parallelism threshold to switch between sort-merge based blocking shuffle and the default hash-based
+	 * blocking shuffle.
+	 */
+	@Documentation.Section(Documentation.Sections.ALL_TASK_MANAGER_NETWORK)
+	public static final ConfigOption<Integer> NETWORK_SORT_SHUFFLE_MIN_PARALLELISM =
+		key("taskmanager.network.sort-shuffle.min-parallelism")
+			.intType()
+			.defaultValue(Integer.MAX_VALUE)
+			.withDescription("Parallelism threshold to switch between sort-merge blocking shuffle and the default" +
+				" hash-based blocking shuffle, which means for small parallelism, hash-based blocking shuffle will be" +
+				" used and for large parallelism, sort-merge blocking shuffle will be used. Sort-merge blocking shuffle" +
+				" writes a single data file and a single index file per result partition instead of one file per" +
+				" subpartition, which reduces the number of open files and random IO for large scale batch jobs. Note" +
+				" that this option is experimental and might be changed in the future.");
+
+	/**
+	 * Number of network buffers used by each sort-merge blocking result partition to sort the produced
+	 * buffers by subpartition index before spilling them. The buffers are taken from the network memory.
+	 */
+	@Documentation.Section(Documentation.Sections.ALL_TASK_MANAGER_NETWORK)
+	public static final ConfigOption<Integer> NETWORK_SORT_SHUFFLE_MIN_BUFFERS =
+		key("taskmanager.network.sort-shuffle.min-buffers")
+			.intType()
+			.defaultValue(64)
+			.withDescription("Number of network buffers used by each sort-merge blocking result partition to sort" +
+				" the produced data by subpartition index before spilling it to disk. The buffers are taken from the" +
+				" network memory, in addition to the buffers the partition needs for its subpartitions. Larger values" +
+				" produce fewer and larger sequential regions in the data file. Note that this option is experimental" +
+				" and might be changed in the future.");
+
 	// ------------------------------------------------------------------------
 	//  Netty Options
 	// ------------------------------------------------------------------------
@@ -264,6 +384,25 @@ public class NettyShuffleEnvironmentOptions {
 				" based on the platform. Note that the \"epoll\" mode can get better performance, less GC and have more advanced features which are" +
 				" only available on modern Linux.");
 
+	@Documentation.Section(Documentation.Sections.ALL_TASK_MANAGER_NETWORK)
+	public static final ConfigOption<MemorySize> SERVER_WRITE_BATCH_SIZE =
+		key("taskmanager.network.netty.server.batch-size")
+			.memoryType()
+			.defaultValue(MemorySize.ZERO)
+			.withDescription("The amount of buffer data the Netty server writes to a connection before flushing it." +
+				" Small buffers of the channels sharing a connection are then sent with a single flush, which reduces" +
+				" the number of system calls and packets for jobs with many low-volume channels. The default of 0" +
+				" flushes every buffer on its own.");
+
+	@Documentation.Section(Documentation.Sections.ALL_TASK_MANAGER_NETWORK)
+	public static final ConfigOption<Duration> CLIENT_CREDIT_BATCH_DELAY =
+		key("taskmanager.network.netty.client.credit-batch-delay")
+			.durationType()
+			.defaultValue(Duration.ZERO)
+			.withDescription("The maximum time the Netty client holds back the credit announcements of an input" +
+				" channel, to send them together with the announcements of the other channels sharing the connection" +
+				" with a single flush. The default of 0 announces credit immediately.");
+
 	// ------------------------------------------------------------------------
 	//  Partition Request Options
 	// ------------------------------------------------------------------------
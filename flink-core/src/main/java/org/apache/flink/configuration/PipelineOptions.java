@@ -208,6 +208,65 @@ public class PipelineOptions {
 					" sure that only tags are written.")
 				.build());
 
+	public static final ConfigOption<Boolean> WINDOW_PANE_SHARING =
+		key("pipeline.window-pane-sharing")
+			.booleanType()
+			.defaultValue(false)
+			.withDescription("When enabled, keyed sliding time windows with the default trigger, no evictor and a" +
+				" reduce or aggregate function keep one pre-aggregate per pane (the greatest common divisor of" +
+				" window size and slide) instead of one per window, and combine the panes when a window fires." +
+				" The aggregate function must implement merge. The state of such windows is not compatible with" +
+				" savepoints taken with a different value of this option, restoring such a savepoint fails.");
+
+	public static final ConfigOption<Integer> WINDOW_MINI_BATCH_SIZE =
+		key("pipeline.window-mini-batch.size")
+			.intType()
+			.defaultValue(0)
+			.withDescription("The maximum number of records that keyed windows with the default trigger, no evictor" +
+				" and a reduce or aggregate function buffer in memory before they update their state. Records of" +
+				" the same key and window are pre-aggregated in the buffer, so that the state is read and" +
+				" written once per key and window instead of once per record. The buffer is also flushed on" +
+				" watermarks, checkpoints and processing time timers. A value of 0 disables the buffering.");
+
+	public static final ConfigOption<Duration> WINDOW_MINI_BATCH_ALLOW_LATENCY =
+		key("pipeline.window-mini-batch.allow-latency")
+			.durationType()
+			.defaultValue(Duration.ZERO)
+			.withDescription(String.format("The maximum time that records are buffered by windows with an enabled" +
+				" '%s'. A value of 0 means that the buffer is only flushed when it is full, on watermarks," +
+				" checkpoints and processing time timers.", WINDOW_MINI_BATCH_SIZE.key()));
+
+	public static final ConfigOption<Boolean> COMPACT_SESSION_WINDOW_SET =
+		key("pipeline.compact-session-window-set")
+			.booleanType()
+			.defaultValue(false)
+			.withDescription("When enabled, keyed event time and processing time session windows keep the set of" +
+				" in-flight windows of a key as one sorted array of primitive longs instead of a list of window" +
+				" pairs, and merge a new window into it without going through the generic merging logic. When a" +
+				" savepoint taken with a different value of this option is restored, the in-flight windows are" +
+				" converted once, when the window operator is opened.");
+
+	public static final ConfigOption<Boolean> INCREMENTAL_WINDOW_EVICTION =
+		key("pipeline.incremental-window-eviction")
+			.booleanType()
+			.defaultValue(false)
+			.withDescription("When enabled, keyed windows with an evictor and a non-merging window assigner keep" +
+				" their elements in a map state keyed by arrival order instead of a list state. Evicting elements" +
+				" then only removes the evicted elements instead of rewriting the whole window on every firing," +
+				" and the elements are read lazily. The state of such windows is not compatible with savepoints" +
+				" taken with a different value of this option, restoring such a savepoint fails.");
+
+	public static final ConfigOption<Boolean> ASYNC_STATE_ACCESS =
+		key("pipeline.async-state-access")
+			.booleanType()
+			.defaultValue(false)
+			.withDescription("When enabled, keyed reduce and aggregation operators read their state asynchronously if" +
+				" the state backend supports it, which the RocksDB state backend does. The task then keeps processing" +
+				" records of other keys while the state of a key is read from disk. Records of the same key are still" +
+				" processed in order, but the results of different keys may be emitted in a different order than" +
+				" their records arrived. Watermarks and checkpoint barriers are only forwarded once all pending reads" +
+				" completed.");
+
 	public static final ConfigOption<Boolean> OPERATOR_CHAINING =
 		key("pipeline.operator-chaining")
 			.booleanType()
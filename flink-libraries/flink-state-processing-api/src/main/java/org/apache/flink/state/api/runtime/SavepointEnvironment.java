@@ -49,6 +49,7 @@ import org.apache.flink.runtime.query.KvStateRegistry;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.TaskStateManager;
 import org.apache.flink.runtime.taskexecutor.GlobalAggregateManager;
+import org.apache.flink.runtime.taskexecutor.TaskManagerSharedResources;
 import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
 import org.apache.flink.util.ExceptionUtils;
 import org.apache.flink.util.Preconditions;
@@ -90,6 +91,8 @@ public class SavepointEnvironment implements Environment {
 
 	private final AccumulatorRegistry accumulatorRegistry;
 
+	private final TaskManagerSharedResources taskManagerSharedResources;
+
 	private SavepointEnvironment(RuntimeContext ctx, Configuration configuration, int maxParallelism, int indexOfSubtask, PrioritizedOperatorSubtaskState prioritizedOperatorSubtaskState) {
 		this.jobID = new JobID();
 		this.vertexID = new JobVertexID();
@@ -106,6 +109,7 @@ public class SavepointEnvironment implements Environment {
 		this.ioManager = new IOManagerAsync();
 		this.memoryManager = MemoryManager.forDefaultPageSize(64 * 1024 * 1024);
 		this.accumulatorRegistry = new AccumulatorRegistry(jobID, attemptID);
+		this.taskManagerSharedResources = new TaskManagerSharedResources();
 	}
 
 	@Override
@@ -138,6 +142,11 @@ public class SavepointEnvironment implements Environment {
 		return new SavepointTaskManagerRuntimeInfo(getIOManager());
 	}
 
+	@Override
+	public TaskManagerSharedResources getTaskManagerSharedResources() {
+		return taskManagerSharedResources;
+	}
+
 	@Override
 	public TaskMetricGroup getMetricGroup() {
 		return UnregisteredMetricGroups.createUnregisteredTaskMetricGroup();
@@ -180,6 +180,9 @@ public class CheckpointCoordinator {
 	@Nullable
 	private CheckpointStatsTracker statsTracker;
 
+	/** Whether the metadata of completed checkpoints is written compressed. */
+	private boolean compressMetadata;
+
 	/** A factory for SharedStateRegistry objects. */
 	private final SharedStateRegistryFactory sharedStateRegistryFactory;
 
@@ -364,6 +367,15 @@ public class CheckpointCoordinator {
 		this.statsTracker = statsTracker;
 	}
 
+	/**
+	 * Sets whether the metadata of completed checkpoints is written compressed.
+	 *
+	 * @param compressMetadata True, to compress the checkpoint metadata.
+	 */
+	public void setCompressMetadata(boolean compressMetadata) {
+		this.compressMetadata = compressMetadata;
+	}
+
 	// --------------------------------------------------------------------------------------------
 	//  Clean shutdown
 	// --------------------------------------------------------------------------------------------
@@ -636,6 +648,8 @@ public class CheckpointCoordinator {
 			checkpoint.setStatsCallback(callback);
 		}
 
+		checkpoint.setCompressMetadata(compressMetadata);
+
 		synchronized (lock) {
 
 			pendingCheckpoints.put(checkpointID, checkpoint);
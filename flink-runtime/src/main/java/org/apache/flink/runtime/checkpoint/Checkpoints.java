@@ -24,7 +24,7 @@ import org.apache.flink.runtime.OperatorIDPair;
 import org.apache.flink.runtime.checkpoint.metadata.CheckpointMetadata;
 import org.apache.flink.runtime.checkpoint.metadata.MetadataSerializer;
 import org.apache.flink.runtime.checkpoint.metadata.MetadataSerializers;
-import org.apache.flink.runtime.checkpoint.metadata.MetadataV3Serializer;
+import org.apache.flink.runtime.checkpoint.metadata.MetadataV4Serializer;
 import org.apache.flink.runtime.executiongraph.ExecutionJobVertex;
 import org.apache.flink.runtime.jobgraph.JobVertexID;
 import org.apache.flink.runtime.jobgraph.OperatorID;
@@ -75,19 +75,35 @@ public class Checkpoints {
 			CheckpointMetadata checkpointMetadata,
 			OutputStream out) throws IOException {
 
+		storeCheckpointMetadata(checkpointMetadata, out, false);
+	}
+
+	public static void storeCheckpointMetadata(
+			CheckpointMetadata checkpointMetadata,
+			OutputStream out,
+			boolean compressed) throws IOException {
+
 		DataOutputStream dos = new DataOutputStream(out);
-		storeCheckpointMetadata(checkpointMetadata, dos);
+		storeCheckpointMetadata(checkpointMetadata, dos, compressed);
 	}
 
 	public static void storeCheckpointMetadata(
 			CheckpointMetadata checkpointMetadata,
 			DataOutputStream out) throws IOException {
 
+		storeCheckpointMetadata(checkpointMetadata, out, false);
+	}
+
+	public static void storeCheckpointMetadata(
+			CheckpointMetadata checkpointMetadata,
+			DataOutputStream out,
+			boolean compressed) throws IOException {
+
 		// write generic header
 		out.writeInt(HEADER_MAGIC_NUMBER);
 
-		out.writeInt(MetadataV3Serializer.VERSION);
-		MetadataV3Serializer.serialize(checkpointMetadata, out);
+		out.writeInt(MetadataV4Serializer.VERSION);
+		MetadataV4Serializer.serialize(checkpointMetadata, out, compressed);
 	}
 
 	// ------------------------------------------------------------------------
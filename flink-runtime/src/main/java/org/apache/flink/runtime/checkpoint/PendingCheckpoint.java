@@ -120,6 +120,9 @@ public class PendingCheckpoint {
 	@Nullable
 	private PendingCheckpointStats statsCallback;
 
+	/** Whether the metadata is written compressed when the checkpoint is finalized. */
+	private boolean compressMetadata;
+
 	private volatile ScheduledFuture<?> cancellerHandle;
 
 	private CheckpointException failureCause;
@@ -251,6 +254,13 @@ public class PendingCheckpoint {
 		this.statsCallback = trackerCallback;
 	}
 
+	/**
+	 * Sets whether the metadata is written compressed when the checkpoint is finalized.
+	 */
+	void setCompressMetadata(boolean compressMetadata) {
+		this.compressMetadata = compressMetadata;
+	}
+
 	/**
 	 * Sets the handle for the canceller to this pending checkpoint. This method fails
 	 * with an exception if a handle has already been set.
@@ -303,7 +313,7 @@ public class PendingCheckpoint {
 				final CompletedCheckpointStorageLocation finalizedLocation;
 
 				try (CheckpointMetadataOutputStream out = targetLocation.createMetadataOutputStream()) {
-					Checkpoints.storeCheckpointMetadata(savepoint, out);
+					Checkpoints.storeCheckpointMetadata(savepoint, out, compressMetadata);
 					finalizedLocation = out.closeAndFinalizeCheckpoint();
 				}
 
@@ -28,12 +28,13 @@ import java.util.Map;
  */
 public class MetadataSerializers {
 
-	private static final Map<Integer, MetadataSerializer> SERIALIZERS = new HashMap<>(3);
+	private static final Map<Integer, MetadataSerializer> SERIALIZERS = new HashMap<>(4);
 
 	static {
 		registerSerializer(MetadataV1Serializer.INSTANCE);
 		registerSerializer(MetadataV2Serializer.INSTANCE);
 		registerSerializer(MetadataV3Serializer.INSTANCE);
+		registerSerializer(MetadataV4Serializer.INSTANCE);
 	}
 
 	private static void registerSerializer(MetadataSerializer serializer) {
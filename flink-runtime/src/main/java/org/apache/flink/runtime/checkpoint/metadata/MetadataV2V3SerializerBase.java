@@ -37,6 +37,7 @@ import org.apache.flink.runtime.state.ResultSubpartitionStateHandle;
 import org.apache.flink.runtime.state.StateHandleID;
 import org.apache.flink.runtime.state.StateObject;
 import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.changelog.ChangelogStateHandle;
 import org.apache.flink.runtime.state.filesystem.FileStateHandle;
 import org.apache.flink.runtime.state.memory.ByteStreamStateHandle;
 import org.apache.flink.util.function.BiConsumerWithException;
@@ -54,15 +55,18 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 /**
- * Base (De)serializer for checkpoint metadata format version 2 and 3.
+ * Base (De)serializer for checkpoint metadata format version 2, 3 and 4.
  *
  * <p>The difference between versions 2 and 3 is minor. Version 3 includes
  * operator coordinator state for each operator, and drops some minor unused fields.
+ * Version 4 uses the layout of version 3, but writes the stream state handles through
+ * a {@link StreamStateHandleDictionary} (see {@link MetadataV4Serializer}).
  *
  * <p>Basic checkpoint metadata layout:
  * <pre>
@@ -88,6 +92,9 @@ public abstract class MetadataV2V3SerializerBase {
 	private static final byte KEY_GROUPS_HANDLE = 3;
 	private static final byte PARTITIONABLE_OPERATOR_STATE_HANDLE = 4;
 	private static final byte INCREMENTAL_KEY_GROUPS_HANDLE = 5;
+	private static final byte CHANGELOG_HANDLE = 6;
+	private static final byte DICTIONARY_FILE_STREAM_STATE_HANDLE = 7;
+	private static final byte STREAM_STATE_HANDLE_REFERENCE = 8;
 
 	// ------------------------------------------------------------------------
 	//  (De)serialization entry points
@@ -218,14 +225,15 @@ public abstract class MetadataV2V3SerializerBase {
 	// ------------------------------------------------------------------------
 
 	protected void serializeSubtaskState(OperatorSubtaskState subtaskState, DataOutputStream dos) throws IOException {
-		serializeSingleton(subtaskState.getManagedOperatorState(), dos, MetadataV2V3SerializerBase::serializeOperatorStateHandle);
-		serializeSingleton(subtaskState.getRawOperatorState(), dos, MetadataV2V3SerializerBase::serializeOperatorStateHandle);
+		final StreamStateHandleDictionary dictionary = getStreamStateHandleDictionary();
+		serializeSingleton(subtaskState.getManagedOperatorState(), dos, (handle, out) -> serializeOperatorStateHandle(handle, out, dictionary));
+		serializeSingleton(subtaskState.getRawOperatorState(), dos, (handle, out) -> serializeOperatorStateHandle(handle, out, dictionary));
 		serializeKeyedStateCol(subtaskState.getManagedKeyedState(), dos);
 		serializeKeyedStateCol(subtaskState.getRawKeyedState(), dos);
 	}
 
 	private void serializeKeyedStateCol(StateObjectCollection<KeyedStateHandle> managedKeyedState, DataOutputStream dos) throws IOException {
-		serializeKeyedStateHandle(extractSingleton(managedKeyedState), dos);
+		serializeKeyedStateHandle(extractSingleton(managedKeyedState), dos, getStreamStateHandleDictionary());
 	}
 
 	private <T extends StateObject> void serializeSingleton(
@@ -242,14 +250,16 @@ public abstract class MetadataV2V3SerializerBase {
 	}
 
 	protected OperatorSubtaskState deserializeSubtaskState(DataInputStream dis) throws IOException {
+		final StreamStateHandleDictionary dictionary = getStreamStateHandleDictionary();
+
 		final boolean hasManagedOperatorState = dis.readInt() != 0;
-		final OperatorStateHandle managedOperatorState = hasManagedOperatorState ? deserializeOperatorStateHandle(dis) : null;
+		final OperatorStateHandle managedOperatorState = hasManagedOperatorState ? deserializeOperatorStateHandle(dis, dictionary) : null;
 
 		final boolean hasRawOperatorState = dis.readInt() != 0;
-		final OperatorStateHandle rawOperatorState = hasRawOperatorState ? deserializeOperatorStateHandle(dis) : null;
+		final OperatorStateHandle rawOperatorState = hasRawOperatorState ? deserializeOperatorStateHandle(dis, dictionary) : null;
 
-		final KeyedStateHandle managedKeyedState = deserializeKeyedStateHandle(dis);
-		final KeyedStateHandle rawKeyedState = deserializeKeyedStateHandle(dis);
+		final KeyedStateHandle managedKeyedState = deserializeKeyedStateHandle(dis, dictionary);
+		final KeyedStateHandle rawKeyedState = deserializeKeyedStateHandle(dis, dictionary);
 
 		StateObjectCollection<InputChannelStateHandle> inputChannelState = deserializeInputChannelStateHandle(dis);
 
@@ -267,6 +277,13 @@ public abstract class MetadataV2V3SerializerBase {
 	@VisibleForTesting
 	public static void serializeKeyedStateHandle(
 			KeyedStateHandle stateHandle, DataOutputStream dos) throws IOException {
+		serializeKeyedStateHandle(stateHandle, dos, null);
+	}
+
+	static void serializeKeyedStateHandle(
+			KeyedStateHandle stateHandle,
+			DataOutputStream dos,
+			@Nullable StreamStateHandleDictionary dictionary) throws IOException {
 
 		if (stateHandle == null) {
 			dos.writeByte(NULL_HANDLE);
@@ -279,7 +296,7 @@ public abstract class MetadataV2V3SerializerBase {
 			for (int keyGroup : keyGroupsStateHandle.getKeyGroupRange()) {
 				dos.writeLong(keyGroupsStateHandle.getOffsetForKeyGroup(keyGroup));
 			}
-			serializeStreamStateHandle(keyGroupsStateHandle.getDelegateStateHandle(), dos);
+			serializeStreamStateHandle(keyGroupsStateHandle.getDelegateStateHandle(), dos, dictionary);
 		} else if (stateHandle instanceof IncrementalRemoteKeyedStateHandle) {
 			IncrementalRemoteKeyedStateHandle incrementalKeyedStateHandle =
 				(IncrementalRemoteKeyedStateHandle) stateHandle;
@@ -291,10 +308,26 @@ public abstract class MetadataV2V3SerializerBase {
 			dos.writeInt(incrementalKeyedStateHandle.getKeyGroupRange().getStartKeyGroup());
 			dos.writeInt(incrementalKeyedStateHandle.getKeyGroupRange().getNumberOfKeyGroups());
 
-			serializeStreamStateHandle(incrementalKeyedStateHandle.getMetaStateHandle(), dos);
+			serializeStreamStateHandle(incrementalKeyedStateHandle.getMetaStateHandle(), dos, dictionary);
+
+			serializeStreamStateHandleMap(incrementalKeyedStateHandle.getSharedState(), dos, dictionary);
+			serializeStreamStateHandleMap(incrementalKeyedStateHandle.getPrivateState(), dos, dictionary);
+		} else if (stateHandle instanceof ChangelogStateHandle) {
+			ChangelogStateHandle changelogStateHandle = (ChangelogStateHandle) stateHandle;
 
-			serializeStreamStateHandleMap(incrementalKeyedStateHandle.getSharedState(), dos);
-			serializeStreamStateHandleMap(incrementalKeyedStateHandle.getPrivateState(), dos);
+			dos.writeByte(CHANGELOG_HANDLE);
+			dos.writeInt(changelogStateHandle.getKeyGroupRange().getStartKeyGroup());
+			dos.writeInt(changelogStateHandle.getKeyGroupRange().getNumberOfKeyGroups());
+			dos.writeLong(changelogStateHandle.getMaterializationId());
+
+			StateHandleID materializedStateId = changelogStateHandle.getMaterializedStateId();
+			dos.writeBoolean(materializedStateId != null);
+			if (materializedStateId != null) {
+				dos.writeUTF(materializedStateId.toString());
+			}
+			serializeKeyedStateHandle(changelogStateHandle.getMaterializedState(), dos, dictionary);
+
+			serializeStreamStateHandleMap(changelogStateHandle.getChangelogSegments(), dos, dictionary);
 		} else {
 			throw new IllegalStateException("Unknown KeyedStateHandle type: " + stateHandle.getClass());
 		}
@@ -302,24 +335,27 @@ public abstract class MetadataV2V3SerializerBase {
 
 	private static void serializeStreamStateHandleMap(
 			Map<StateHandleID, StreamStateHandle> map,
-			DataOutputStream dos) throws IOException {
+			DataOutputStream dos,
+			@Nullable StreamStateHandleDictionary dictionary) throws IOException {
 
 		dos.writeInt(map.size());
 		for (Map.Entry<StateHandleID, StreamStateHandle> entry : map.entrySet()) {
 			dos.writeUTF(entry.getKey().toString());
-			serializeStreamStateHandle(entry.getValue(), dos);
+			serializeStreamStateHandle(entry.getValue(), dos, dictionary);
 		}
 	}
 
-	private static Map<StateHandleID, StreamStateHandle> deserializeStreamStateHandleMap(
-			DataInputStream dis) throws IOException {
+	private static LinkedHashMap<StateHandleID, StreamStateHandle> deserializeStreamStateHandleMap(
+			DataInputStream dis,
+			@Nullable StreamStateHandleDictionary dictionary) throws IOException {
 
 		final int size = dis.readInt();
-		Map<StateHandleID, StreamStateHandle> result = new HashMap<>(size);
+		// keeps the order of the map, which matters for the segments of a changelog
+		LinkedHashMap<StateHandleID, StreamStateHandle> result = new LinkedHashMap<>(size);
 
 		for (int i = 0; i < size; ++i) {
 			StateHandleID stateHandleID = new StateHandleID(dis.readUTF());
-			StreamStateHandle stateHandle = deserializeStreamStateHandle(dis);
+			StreamStateHandle stateHandle = deserializeStreamStateHandle(dis, dictionary);
 			result.put(stateHandleID, stateHandle);
 		}
 
@@ -328,6 +364,13 @@ public abstract class MetadataV2V3SerializerBase {
 
 	@VisibleForTesting
 	public static KeyedStateHandle deserializeKeyedStateHandle(DataInputStream dis) throws IOException {
+		return deserializeKeyedStateHandle(dis, null);
+	}
+
+	static KeyedStateHandle deserializeKeyedStateHandle(
+			DataInputStream dis,
+			@Nullable StreamStateHandleDictionary dictionary) throws IOException {
+
 		final int type = dis.readByte();
 		if (NULL_HANDLE == type) {
 
@@ -344,7 +387,7 @@ public abstract class MetadataV2V3SerializerBase {
 			}
 			KeyGroupRangeOffsets keyGroupRangeOffsets = new KeyGroupRangeOffsets(
 				keyGroupRange, offsets);
-			StreamStateHandle stateHandle = deserializeStreamStateHandle(dis);
+			StreamStateHandle stateHandle = deserializeStreamStateHandle(dis, dictionary);
 			return new KeyGroupsStateHandle(keyGroupRangeOffsets, stateHandle);
 		} else if (INCREMENTAL_KEY_GROUPS_HANDLE == type) {
 
@@ -355,9 +398,9 @@ public abstract class MetadataV2V3SerializerBase {
 			KeyGroupRange keyGroupRange =
 				KeyGroupRange.of(startKeyGroup, startKeyGroup + numKeyGroups - 1);
 
-			StreamStateHandle metaDataStateHandle = deserializeStreamStateHandle(dis);
-			Map<StateHandleID, StreamStateHandle> sharedStates = deserializeStreamStateHandleMap(dis);
-			Map<StateHandleID, StreamStateHandle> privateStates = deserializeStreamStateHandleMap(dis);
+			StreamStateHandle metaDataStateHandle = deserializeStreamStateHandle(dis, dictionary);
+			Map<StateHandleID, StreamStateHandle> sharedStates = deserializeStreamStateHandleMap(dis, dictionary);
+			Map<StateHandleID, StreamStateHandle> privateStates = deserializeStreamStateHandleMap(dis, dictionary);
 
 			UUID uuid;
 
@@ -375,6 +418,28 @@ public abstract class MetadataV2V3SerializerBase {
 				sharedStates,
 				privateStates,
 				metaDataStateHandle);
+		} else if (CHANGELOG_HANDLE == type) {
+
+			int startKeyGroup = dis.readInt();
+			int numKeyGroups = dis.readInt();
+			KeyGroupRange keyGroupRange =
+				KeyGroupRange.of(startKeyGroup, startKeyGroup + numKeyGroups - 1);
+			long materializationId = dis.readLong();
+
+			StateHandleID materializedStateId = dis.readBoolean() ? new StateHandleID(dis.readUTF()) : null;
+			KeyedStateHandle materializedState = deserializeKeyedStateHandle(dis, dictionary);
+			if (materializedState != null && !(materializedState instanceof KeyGroupsStateHandle)) {
+				throw new IllegalStateException("Unexpected materialized state of a changelog: " + materializedState);
+			}
+
+			LinkedHashMap<StateHandleID, StreamStateHandle> changelogSegments = deserializeStreamStateHandleMap(dis, dictionary);
+
+			return new ChangelogStateHandle(
+				keyGroupRange,
+				materializationId,
+				materializedStateId,
+				(KeyGroupsStateHandle) materializedState,
+				changelogSegments);
 		} else {
 			throw new IllegalStateException("Reading invalid KeyedStateHandle, type: " + type);
 		}
@@ -383,6 +448,13 @@ public abstract class MetadataV2V3SerializerBase {
 	@VisibleForTesting
 	public static void serializeOperatorStateHandle(
 		OperatorStateHandle stateHandle, DataOutputStream dos) throws IOException {
+		serializeOperatorStateHandle(stateHandle, dos, null);
+	}
+
+	static void serializeOperatorStateHandle(
+			OperatorStateHandle stateHandle,
+			DataOutputStream dos,
+			@Nullable StreamStateHandleDictionary dictionary) throws IOException {
 
 		if (stateHandle != null) {
 			dos.writeByte(PARTITIONABLE_OPERATOR_STATE_HANDLE);
@@ -403,7 +475,7 @@ public abstract class MetadataV2V3SerializerBase {
 					dos.writeLong(offset);
 				}
 			}
-			serializeStreamStateHandle(stateHandle.getDelegateStateHandle(), dos);
+			serializeStreamStateHandle(stateHandle.getDelegateStateHandle(), dos, dictionary);
 		} else {
 			dos.writeByte(NULL_HANDLE);
 		}
@@ -412,6 +484,12 @@ public abstract class MetadataV2V3SerializerBase {
 	@VisibleForTesting
 	public static OperatorStateHandle deserializeOperatorStateHandle(
 			DataInputStream dis) throws IOException {
+		return deserializeOperatorStateHandle(dis, null);
+	}
+
+	static OperatorStateHandle deserializeOperatorStateHandle(
+			DataInputStream dis,
+			@Nullable StreamStateHandleDictionary dictionary) throws IOException {
 
 		final int type = dis.readByte();
 		if (NULL_HANDLE == type) {
@@ -434,7 +512,7 @@ public abstract class MetadataV2V3SerializerBase {
 						new OperatorStateHandle.StateMetaInfo(offsets, mode);
 				offsetsMap.put(key, metaInfo);
 			}
-			StreamStateHandle stateHandle = deserializeStreamStateHandle(dis);
+			StreamStateHandle stateHandle = deserializeStreamStateHandle(dis, dictionary);
 			return new OperatorStreamStateHandle(offsetsMap, stateHandle);
 		} else {
 			throw new IllegalStateException("Reading invalid OperatorStateHandle, type: " + type);
@@ -445,6 +523,63 @@ public abstract class MetadataV2V3SerializerBase {
 	public static void serializeStreamStateHandle(
 			StreamStateHandle stateHandle, DataOutputStream dos) throws IOException {
 
+		writeStreamStateHandle(stateHandle, dos);
+		dos.flush();
+	}
+
+	/**
+	 * Serializes the given stream state handle. If a dictionary is given, handles that were already
+	 * written are replaced by references, and file handles share the directory part of their path
+	 * with the previously written file handles.
+	 */
+	static void serializeStreamStateHandle(
+			StreamStateHandle stateHandle,
+			DataOutputStream dos,
+			@Nullable StreamStateHandleDictionary dictionary) throws IOException {
+
+		if (dictionary == null) {
+			serializeStreamStateHandle(stateHandle, dos);
+			return;
+		}
+
+		if (stateHandle == null) {
+			dos.writeByte(NULL_HANDLE);
+			return;
+		}
+
+		final int reference = dictionary.lookupHandle(stateHandle);
+		if (reference >= 0) {
+			dos.writeByte(STREAM_STATE_HANDLE_REFERENCE);
+			dos.writeInt(reference);
+			return;
+		}
+
+		if (stateHandle instanceof FileStateHandle) {
+			final String path = ((FileStateHandle) stateHandle).getFilePath().toString();
+			final int nameStart = path.lastIndexOf(Path.SEPARATOR_CHAR) + 1;
+			final String directory = path.substring(0, nameStart);
+
+			dos.writeByte(DICTIONARY_FILE_STREAM_STATE_HANDLE);
+			dos.writeLong(stateHandle.getStateSize());
+
+			final int directoryReference = dictionary.lookupDirectory(directory);
+			if (directoryReference >= 0) {
+				dos.writeInt(directoryReference);
+			} else {
+				dos.writeInt(dictionary.addDirectory(directory));
+				dos.writeUTF(directory);
+			}
+			dos.writeUTF(path.substring(nameStart));
+		} else {
+			writeStreamStateHandle(stateHandle, dos);
+		}
+
+		dictionary.addHandle(stateHandle);
+	}
+
+	private static void writeStreamStateHandle(
+			StreamStateHandle stateHandle, DataOutputStream dos) throws IOException {
+
 		if (stateHandle == null) {
 			dos.writeByte(NULL_HANDLE);
 
@@ -464,12 +599,48 @@ public abstract class MetadataV2V3SerializerBase {
 		} else {
 			throw new IOException("Unknown implementation of StreamStateHandle: " + stateHandle.getClass());
 		}
-
-		dos.flush();
 	}
 
 	public static StreamStateHandle deserializeStreamStateHandle(DataInputStream dis) throws IOException {
+		return readStreamStateHandle(dis.read(), dis);
+	}
+
+	static StreamStateHandle deserializeStreamStateHandle(
+			DataInputStream dis,
+			@Nullable StreamStateHandleDictionary dictionary) throws IOException {
+
+		if (dictionary == null) {
+			return deserializeStreamStateHandle(dis);
+		}
+
 		final int type = dis.read();
+		final StreamStateHandle stateHandle;
+		if (NULL_HANDLE == type) {
+			return null;
+		} else if (STREAM_STATE_HANDLE_REFERENCE == type) {
+			return dictionary.getHandle(dis.readInt());
+		} else if (DICTIONARY_FILE_STREAM_STATE_HANDLE == type) {
+			final long size = dis.readLong();
+
+			final int directoryReference = dis.readInt();
+			final String directory;
+			if (directoryReference == dictionary.getNumberOfDirectories()) {
+				directory = dis.readUTF();
+				dictionary.addDirectory(directory);
+			} else {
+				directory = dictionary.getDirectory(directoryReference);
+			}
+
+			stateHandle = new FileStateHandle(new Path(directory + dis.readUTF()), size);
+		} else {
+			stateHandle = readStreamStateHandle(type, dis);
+		}
+
+		dictionary.addHandle(stateHandle);
+		return stateHandle;
+	}
+
+	private static StreamStateHandle readStreamStateHandle(int type, DataInputStream dis) throws IOException {
 		if (NULL_HANDLE == type) {
 			return null;
 		} else if (FILE_STREAM_STATE_HANDLE == type) {
@@ -491,6 +662,15 @@ public abstract class MetadataV2V3SerializerBase {
 	//  utilities
 	// ------------------------------------------------------------------------
 
+	/**
+	 * Returns the dictionary through which this serializer writes and reads the stream state
+	 * handles, or null if all handles are written inline.
+	 */
+	@Nullable
+	protected StreamStateHandleDictionary getStreamStateHandleDictionary() {
+		return null;
+	}
+
 	@Nullable
 	static <T> T extractSingleton(Collection<T> collection) {
 		if (collection == null || collection.isEmpty()) {
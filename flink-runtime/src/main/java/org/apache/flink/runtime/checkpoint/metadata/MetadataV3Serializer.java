@@ -54,8 +54,8 @@ public class MetadataV3Serializer extends MetadataV2V3SerializerBase implements
 
 	private final ChannelStateHandleSerializer channelStateHandleSerializer = new ChannelStateHandleSerializer();
 
-	/** Singleton, not meant to be instantiated. */
-	private MetadataV3Serializer() {}
+	/** Singleton, not meant to be instantiated outside of this package. */
+	MetadataV3Serializer() {}
 
 	@Override
 	public int getVersion() {
@@ -90,7 +90,7 @@ public class MetadataV3Serializer extends MetadataV2V3SerializerBase implements
 		dos.writeInt(operatorState.getMaxParallelism());
 
 		// Coordinator state
-		serializeStreamStateHandle(operatorState.getCoordinatorState(), dos);
+		serializeStreamStateHandle(operatorState.getCoordinatorState(), dos, getStreamStateHandleDictionary());
 
 		// Sub task states
 		final Map<Integer, OperatorSubtaskState> subtaskStateMap = operatorState.getSubtaskStates();
@@ -117,7 +117,7 @@ public class MetadataV3Serializer extends MetadataV2V3SerializerBase implements
 		final OperatorState operatorState = new OperatorState(jobVertexId, parallelism, maxParallelism);
 
 		// Coordinator state
-		operatorState.setCoordinatorState(deserializeStreamStateHandle(dis));
+		operatorState.setCoordinatorState(deserializeStreamStateHandle(dis, getStreamStateHandleDictionary()));
 
 		// Sub task states
 		final int numSubTaskStates = dis.readInt();
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.checkpoint.metadata;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.runtime.state.SnappyStreamCompressionDecorator;
+import org.apache.flink.runtime.state.StreamCompressionDecorator;
+import org.apache.flink.runtime.util.NonClosingOutpusStreamDecorator;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * (De)serializer for checkpoint metadata format version 4.
+ *
+ * <p>Compared to format version 3, this writes the stream state handles through a
+ * {@link StreamStateHandleDictionary}: a handle that occurs more than once in the metadata is
+ * written only once and referenced afterwards, and the directories of file handles are written
+ * only once per file. For incremental checkpoints with many subtasks that mostly reference
+ * files in the same shared directory, this shrinks the metadata considerably.
+ *
+ * <p>The metadata may additionally be compressed:
+ * <pre>
+ *  +-------+-------------------------------------------------+
+ *  | flags | version 3 layout (optionally Snappy compressed) |
+ *  +-------+-------------------------------------------------+
+ * </pre>
+ *
+ * <p>The metadata is written through a bounded buffer directly to the target stream, without
+ * flushing the stream after every state handle.
+ */
+@Internal
+public class MetadataV4Serializer extends MetadataV3Serializer {
+
+	/** The metadata format version. */
+	public static final int VERSION = 4;
+
+	/** The singleton instance of the serializer. */
+	public static final MetadataV4Serializer INSTANCE = new MetadataV4Serializer(null);
+
+	/** Flag that marks the metadata following the flags as Snappy compressed. */
+	private static final int FLAG_COMPRESSED = 1;
+
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+	private static final StreamCompressionDecorator COMPRESSION = SnappyStreamCompressionDecorator.INSTANCE;
+
+	/** The dictionary of the metadata file that is currently (de)serialized, null for the singleton. */
+	@Nullable
+	private final StreamStateHandleDictionary dictionary;
+
+	private MetadataV4Serializer(@Nullable StreamStateHandleDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	@Override
+	public int getVersion() {
+		return VERSION;
+	}
+
+	// ------------------------------------------------------------------------
+	//  (De)serialization entry points
+	// ------------------------------------------------------------------------
+
+	public static void serialize(CheckpointMetadata checkpointMetadata, DataOutputStream dos) throws IOException {
+		serialize(checkpointMetadata, dos, false);
+	}
+
+	public static void serialize(
+			CheckpointMetadata checkpointMetadata,
+			DataOutputStream dos,
+			boolean compressed) throws IOException {
+
+		dos.writeByte(compressed ? FLAG_COMPRESSED : 0);
+
+		// closing the payload stream finishes the compression, but leaves the target stream open
+		final OutputStream payloadStream = compressed ?
+			COMPRESSION.decorateWithCompression(dos) :
+			new NonClosingOutpusStreamDecorator(dos);
+
+		try (DataOutputStream payload = new DataOutputStream(new BufferedOutputStream(payloadStream, WRITE_BUFFER_SIZE))) {
+			new MetadataV4Serializer(new StreamStateHandleDictionary()).serializeMetadata(checkpointMetadata, payload);
+		}
+		dos.flush();
+	}
+
+	@Override
+	public CheckpointMetadata deserialize(DataInputStream dis, ClassLoader classLoader) throws IOException {
+		final int flags = dis.readByte();
+		if ((flags & ~FLAG_COMPRESSED) != 0) {
+			throw new IOException("Unknown checkpoint metadata flags: " + flags);
+		}
+
+		final MetadataV4Serializer reader = new MetadataV4Serializer(new StreamStateHandleDictionary());
+
+		if ((flags & FLAG_COMPRESSED) == 0) {
+			return reader.deserializeMetadata(dis);
+		}
+
+		try (InputStream payloadStream = COMPRESSION.decorateWithCompression(dis)) {
+			return reader.deserializeMetadata(new DataInputStream(payloadStream));
+		}
+	}
+
+	@Override
+	protected StreamStateHandleDictionary getStreamStateHandleDictionary() {
+		return dictionary;
+	}
+}
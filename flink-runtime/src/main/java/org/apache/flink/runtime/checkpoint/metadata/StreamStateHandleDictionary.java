@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.checkpoint.metadata;
+
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.memory.ByteStreamStateHandle;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The stream state handles and file directories that were already written to, or read from,
+ * one checkpoint metadata file.
+ *
+ * <p>Writer and reader assign the same reference to a handle or directory, because both add
+ * them in the order in which they appear in the file. This lets the writer encode a repeated
+ * handle (for example a shared file of an incremental checkpoint that is referenced by several
+ * subtasks after rescaling) as a single int, and a file path as a reference to its directory
+ * plus the file name.
+ *
+ * <p>A dictionary is not thread safe and is only valid for a single metadata file.
+ */
+final class StreamStateHandleDictionary {
+
+	private final List<StreamStateHandle> handles = new ArrayList<>();
+
+	private final Map<StreamStateHandle, Integer> handleReferences = new HashMap<>();
+
+	private final List<String> directories = new ArrayList<>();
+
+	private final Map<String, Integer> directoryReferences = new HashMap<>();
+
+	// ------------------------------------------------------------------------
+	//  stream state handles
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the reference of a handle that was already added and describes the same state
+	 * as the given handle, or -1 if there is no such handle.
+	 */
+	int lookupHandle(StreamStateHandle handle) {
+		final Integer reference = handleReferences.get(handle);
+		if (reference == null) {
+			return -1;
+		}
+		return isSameState(handles.get(reference), handle) ? reference : -1;
+	}
+
+	void addHandle(StreamStateHandle handle) {
+		handleReferences.put(handle, handles.size());
+		handles.add(handle);
+	}
+
+	StreamStateHandle getHandle(int reference) throws IOException {
+		if (reference < 0 || reference >= handles.size()) {
+			throw new IOException("Invalid stream state handle reference: " + reference);
+		}
+		return handles.get(reference);
+	}
+
+	// ------------------------------------------------------------------------
+	//  directories
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the reference of the given directory, or -1 if it was not added yet.
+	 */
+	int lookupDirectory(String directory) {
+		final Integer reference = directoryReferences.get(directory);
+		return reference == null ? -1 : reference;
+	}
+
+	/**
+	 * Adds the given directory and returns its reference.
+	 */
+	int addDirectory(String directory) {
+		final int reference = directories.size();
+		directoryReferences.put(directory, reference);
+		directories.add(directory);
+		return reference;
+	}
+
+	String getDirectory(int reference) throws IOException {
+		if (reference < 0 || reference >= directories.size()) {
+			throw new IOException("Invalid directory reference: " + reference);
+		}
+		return directories.get(reference);
+	}
+
+	int getNumberOfDirectories() {
+		return directories.size();
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The handles only compare their name or path in {@link Object#equals(Object)}, so a
+	 * reference is only used if the size and, for in-memory handles, the contents match as well.
+	 */
+	private static boolean isSameState(StreamStateHandle existing, StreamStateHandle handle) {
+		if (existing == handle) {
+			return true;
+		}
+		if (existing.getStateSize() != handle.getStateSize() || existing.getClass() != handle.getClass()) {
+			return false;
+		}
+		return !(handle instanceof ByteStreamStateHandle)
+			|| Arrays.equals(((ByteStreamStateHandle) existing).getData(), ((ByteStreamStateHandle) handle).getData());
+	}
+}
@@ -41,6 +41,7 @@ import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.TaskStateManager;
 import org.apache.flink.runtime.state.internal.InternalKvState;
 import org.apache.flink.runtime.taskexecutor.GlobalAggregateManager;
+import org.apache.flink.runtime.taskexecutor.TaskManagerSharedResources;
 import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
 
 import java.util.Map;
@@ -96,6 +97,13 @@ public interface Environment {
 	 */
 	TaskManagerRuntimeInfo getTaskManagerInfo();
 
+	/**
+	 * Gets the resources which are shared by all tasks of the task manager.
+	 *
+	 * @return The resources which are shared by all tasks of the task manager.
+	 */
+	TaskManagerSharedResources getTaskManagerSharedResources();
+
 	/**
 	 * Returns the task specific metric group.
 	 * 
@@ -345,6 +345,9 @@ public class ExecutionGraphBuilder {
 				completedCheckpoints,
 				rootBackend,
 				checkpointStatsTracker);
+
+			executionGraph.getCheckpointCoordinator().setCompressMetadata(
+				jobManagerConfig.getBoolean(CheckpointingOptions.CHECKPOINT_METADATA_COMPRESSION));
 		}
 
 		// create all the metrics for the Execution Graph
@@ -36,7 +36,8 @@ public interface BlockCompressionFactory {
 	 * Name of {@link BlockCompressionFactory}.
 	 */
 	enum CompressionFactoryName {
-		LZ4
+		LZ4,
+		SNAPPY
 	}
 
 	/**
@@ -61,6 +62,9 @@ public interface BlockCompressionFactory {
 				case LZ4:
 					blockCompressionFactory = new Lz4BlockCompressionFactory();
 					break;
+				case SNAPPY:
+					blockCompressionFactory = new SnappyBlockCompressionFactory();
+					break;
 				default:
 					throw new IllegalStateException("Unknown CompressionMethod " + compressionName);
 			}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.compression;
+
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encode data into the raw Snappy format. The Snappy format stores the original length of the
+ * data, so no additional header is written.
+ *
+ * <p>Snappy can only work on heap arrays or on direct buffers. Data of other combinations, e.g.
+ * off-heap network buffers compressed into a heap buffer, is copied through reused heap arrays.
+ */
+public class SnappyBlockCompressor implements BlockCompressor {
+
+	private byte[] srcArray = new byte[0];
+
+	private byte[] dstArray = new byte[0];
+
+	@Override
+	public int getMaxCompressedSize(int srcSize) {
+		return Snappy.maxCompressedLength(srcSize);
+	}
+
+	@Override
+	public int compress(ByteBuffer src, int srcOff, int srcLen, ByteBuffer dst, int dstOff)
+			throws InsufficientBufferException {
+		final int prevSrcOff = src.position() + srcOff;
+		final int prevDstOff = dst.position() + dstOff;
+		final int maxCompressedSize = getMaxCompressedSize(srcLen);
+
+		if (dst.capacity() - prevDstOff < maxCompressedSize) {
+			throw new InsufficientBufferException("Buffer length too small");
+		}
+
+		try {
+			final int compressedLen;
+			if (src.isDirect() && dst.isDirect()) {
+				final ByteBuffer input = src.duplicate();
+				input.limit(prevSrcOff + srcLen);
+				input.position(prevSrcOff);
+				final ByteBuffer output = dst.duplicate();
+				output.limit(dst.capacity());
+				output.position(prevDstOff);
+				compressedLen = Snappy.compress(input, output);
+			} else if (src.hasArray() && dst.hasArray()) {
+				compressedLen = Snappy.compress(
+					src.array(), src.arrayOffset() + prevSrcOff, srcLen, dst.array(), dst.arrayOffset() + prevDstOff);
+			} else {
+				if (srcArray.length < srcLen) {
+					srcArray = new byte[srcLen];
+				}
+				if (dstArray.length < maxCompressedSize) {
+					dstArray = new byte[maxCompressedSize];
+				}
+				final ByteBuffer input = src.duplicate();
+				input.position(prevSrcOff);
+				input.get(srcArray, 0, srcLen);
+				compressedLen = Snappy.compress(srcArray, 0, srcLen, dstArray, 0);
+				final ByteBuffer output = dst.duplicate();
+				output.position(prevDstOff);
+				output.put(dstArray, 0, compressedLen);
+			}
+
+			src.position(prevSrcOff + srcLen);
+			dst.position(prevDstOff + compressedLen);
+			return compressedLen;
+		}
+		catch (IOException e) {
+			throw new InsufficientBufferException(e);
+		}
+	}
+
+	@Override
+	public int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff)
+			throws InsufficientBufferException {
+		if (dst.length - dstOff < getMaxCompressedSize(srcLen)) {
+			throw new InsufficientBufferException("Buffer length too small");
+		}
+
+		try {
+			return Snappy.compress(src, srcOff, srcLen, dst, dstOff);
+		}
+		catch (IOException e) {
+			throw new InsufficientBufferException(e);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.compression;
+
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decode data written with {@link SnappyBlockCompressor}.
+ *
+ * <p>Like the compressor, data which is neither completely on the heap nor completely in direct
+ * buffers is copied through reused heap arrays.
+ */
+public class SnappyBlockDecompressor implements BlockDecompressor {
+
+	private byte[] srcArray = new byte[0];
+
+	private byte[] dstArray = new byte[0];
+
+	@Override
+	public int decompress(ByteBuffer src, int srcOff, int srcLen, ByteBuffer dst, int dstOff)
+			throws DataCorruptionException {
+		final int prevSrcOff = src.position() + srcOff;
+		final int prevDstOff = dst.position() + dstOff;
+
+		if (src.limit() - prevSrcOff < srcLen) {
+			throw new DataCorruptionException("Source data is not integral for decompression.");
+		}
+
+		try {
+			final int originalLen;
+			if (src.isDirect() && dst.isDirect()) {
+				final ByteBuffer input = src.duplicate();
+				input.limit(prevSrcOff + srcLen);
+				input.position(prevSrcOff);
+				originalLen = Snappy.uncompressedLength(input);
+				checkDestinationCapacity(dst.capacity() - prevDstOff, originalLen);
+
+				final ByteBuffer output = dst.duplicate();
+				output.limit(dst.capacity());
+				output.position(prevDstOff);
+				Snappy.uncompress(input, output);
+			} else if (src.hasArray() && dst.hasArray()) {
+				final int srcArrayOff = src.arrayOffset() + prevSrcOff;
+				originalLen = Snappy.uncompressedLength(src.array(), srcArrayOff, srcLen);
+				checkDestinationCapacity(dst.capacity() - prevDstOff, originalLen);
+
+				Snappy.uncompress(src.array(), srcArrayOff, srcLen, dst.array(), dst.arrayOffset() + prevDstOff);
+			} else {
+				if (srcArray.length < srcLen) {
+					srcArray = new byte[srcLen];
+				}
+				final ByteBuffer input = src.duplicate();
+				input.position(prevSrcOff);
+				input.get(srcArray, 0, srcLen);
+				originalLen = Snappy.uncompressedLength(srcArray, 0, srcLen);
+				checkDestinationCapacity(dst.capacity() - prevDstOff, originalLen);
+
+				if (dstArray.length < originalLen) {
+					dstArray = new byte[originalLen];
+				}
+				Snappy.uncompress(srcArray, 0, srcLen, dstArray, 0);
+				final ByteBuffer output = dst.duplicate();
+				output.position(prevDstOff);
+				output.put(dstArray, 0, originalLen);
+			}
+
+			src.position(prevSrcOff + srcLen);
+			dst.position(prevDstOff + originalLen);
+			return originalLen;
+		}
+		catch (IOException e) {
+			throw new DataCorruptionException("Input is corrupted", e);
+		}
+	}
+
+	@Override
+	public int decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff)
+			throws InsufficientBufferException, DataCorruptionException {
+		try {
+			checkDestinationCapacity(dst.length - dstOff, Snappy.uncompressedLength(src, srcOff, srcLen));
+			return Snappy.uncompress(src, srcOff, srcLen, dst, dstOff);
+		}
+		catch (IOException e) {
+			throw new DataCorruptionException("Input is corrupted", e);
+		}
+	}
+
+	private static void checkDestinationCapacity(int capacity, int originalLen) {
+		if (originalLen < 0) {
+			throw new DataCorruptionException("Input is corrupted, invalid length.");
+		}
+		if (capacity < originalLen) {
+			throw new InsufficientBufferException("Buffer length too small");
+		}
+	}
+}
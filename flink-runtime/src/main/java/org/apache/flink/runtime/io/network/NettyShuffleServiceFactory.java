@@ -108,7 +108,11 @@ public class NettyShuffleServiceFactory implements ShuffleServiceFactory<NettySh
 			config.isForcePartitionReleaseOnConsumption(),
 			config.isBlockingShuffleCompressionEnabled(),
 			config.getCompressionCodec(),
-			config.getMaxBuffersPerChannel());
+			config.isPipelinedShuffleCompressionEnabled(),
+			config.getPipelinedCompressionCodec(),
+			config.getMaxBuffersPerChannel(),
+			config.getSortShuffleMinParallelism(),
+			config.getSortShuffleMinBuffers());
 
 		SingleInputGateFactory singleInputGateFactory = new SingleInputGateFactory(
 			taskExecutorResourceId,
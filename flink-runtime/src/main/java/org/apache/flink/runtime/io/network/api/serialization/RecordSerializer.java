@@ -98,4 +98,9 @@ public interface RecordSerializer<T extends IOReadableWritable> {
 	 * @return <tt>true</tt> if has some serialized data pending copying to the result {@link BufferBuilder}.
 	 */
 	boolean hasSerializedData();
+
+	/**
+	 * @return the number of bytes of the current serialized record, including its length header.
+	 */
+	int getSerializedRecordLength();
 }
@@ -117,4 +117,9 @@ public class SpanningRecordSerializer<T extends IOReadableWritable> implements R
 	public boolean hasSerializedData() {
 		return dataBuffer.hasRemaining();
 	}
+
+	@Override
+	public int getSerializedRecordLength() {
+		return dataBuffer.limit();
+	}
 }
@@ -25,9 +25,12 @@ import org.apache.flink.core.memory.DataInputViewStreamWrapper;
 import org.apache.flink.core.memory.DataOutputSerializer;
 import org.apache.flink.core.memory.MemorySegment;
 import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.SimpleCounter;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.FreeingBufferRecycler;
 import org.apache.flink.runtime.io.network.buffer.NetworkBuffer;
+import org.apache.flink.runtime.metrics.groups.TaskIOMetricGroup;
 import org.apache.flink.util.FileUtils;
 import org.apache.flink.util.StringUtils;
 
@@ -64,11 +67,25 @@ public class SpillingAdaptiveSpanningRecordDeserializer<T extends IOReadableWrit
 
 	private Buffer currentBuffer;
 
+	/** Bytes of the records which were deserialized directly from the network buffers. */
+	private Counter numBytesInDirect = new SimpleCounter();
+
+	/** Bytes of the records which spanned buffers and had to be copied before deserialization. */
+	private Counter numBytesInSpanning = new SimpleCounter();
+
 	public SpillingAdaptiveSpanningRecordDeserializer(String[] tmpDirectories) {
 		this.nonSpanningWrapper = new NonSpanningWrapper();
 		this.spanningWrapper = new SpanningWrapper(tmpDirectories);
 	}
 
+	/**
+	 * Sets the metric group which counts the bytes deserialized with and without an intermediate copy.
+	 */
+	public void setMetricGroup(TaskIOMetricGroup metrics) {
+		numBytesInDirect = metrics.getNumBytesInDirectCounter();
+		numBytesInSpanning = metrics.getNumBytesInSpanningCounter();
+	}
+
 	@Override
 	public void setNextBuffer(Buffer buffer) throws IOException {
 		currentBuffer = buffer;
@@ -121,6 +138,7 @@ public class SpillingAdaptiveSpanningRecordDeserializer<T extends IOReadableWrit
 				// we can get a full record from here
 				try {
 					target.read(this.nonSpanningWrapper);
+					numBytesInDirect.inc(len + 4);
 
 					int remaining = this.nonSpanningWrapper.remaining();
 					if (remaining > 0) {
@@ -156,6 +174,7 @@ public class SpillingAdaptiveSpanningRecordDeserializer<T extends IOReadableWrit
 		if (this.spanningWrapper.hasFullRecord()) {
 			// get the full record
 			target.read(this.spanningWrapper.getInputView());
+			numBytesInSpanning.inc(this.spanningWrapper.recordLength + 4);
 
 			// move the remainder to the non-spanning wrapper
 			// this does not copy it, only sets the memory segment
@@ -47,7 +47,16 @@ public final class ChannelSelectorRecordWriter<T extends IOReadableWritable> ext
 			ChannelSelector<T> channelSelector,
 			long timeout,
 			String taskName) {
-		super(writer, timeout, taskName);
+		this(writer, channelSelector, timeout, taskName, false);
+	}
+
+	ChannelSelectorRecordWriter(
+			ResultPartitionWriter writer,
+			ChannelSelector<T> channelSelector,
+			long timeout,
+			String taskName,
+			boolean alignRecordsToBuffers) {
+		super(writer, timeout, taskName, alignRecordsToBuffers);
 
 		this.channelSelector = checkNotNull(channelSelector);
 		this.channelSelector.setup(numberOfChannels);
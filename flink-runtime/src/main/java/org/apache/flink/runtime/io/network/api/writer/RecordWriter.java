@@ -84,6 +84,12 @@ public abstract class RecordWriter<T extends IOReadableWritable> implements Avai
 
 	private final boolean flushAlways;
 
+	/**
+	 * Whether a record which does not fit into the remaining space of the current buffer starts a
+	 * new buffer, so that it can be deserialized without assembling it from several buffers.
+	 */
+	private final boolean alignRecordsToBuffers;
+
 	/** The thread that periodically flushes the output, to give an upper latency bound. */
 	@Nullable
 	private final OutputFlusher outputFlusher;
@@ -92,10 +98,15 @@ public abstract class RecordWriter<T extends IOReadableWritable> implements Avai
 	private Throwable flusherException;
 
 	RecordWriter(ResultPartitionWriter writer, long timeout, String taskName) {
+		this(writer, timeout, taskName, false);
+	}
+
+	RecordWriter(ResultPartitionWriter writer, long timeout, String taskName, boolean alignRecordsToBuffers) {
 		this.targetPartition = writer;
 		this.numberOfChannels = writer.getNumberOfSubpartitions();
 
 		this.serializer = new SpanningRecordSerializer<T>();
+		this.alignRecordsToBuffers = alignRecordsToBuffers;
 
 		checkArgument(timeout >= -1);
 		this.flushAlways = (timeout == 0);
@@ -133,6 +144,10 @@ public abstract class RecordWriter<T extends IOReadableWritable> implements Avai
 
 		boolean pruneTriggered = false;
 		BufferBuilder bufferBuilder = getBufferBuilder(targetChannel);
+		if (alignRecordsToBuffers && !fitsIntoRemainingSpace(bufferBuilder)) {
+			tryFinishCurrentBufferBuilder(targetChannel);
+			bufferBuilder = requestNewBufferBuilder(targetChannel);
+		}
 		SerializationResult result = serializer.copyToBufferBuilder(bufferBuilder);
 		while (result.isFullBuffer()) {
 			finishBufferBuilder(bufferBuilder);
@@ -157,6 +172,15 @@ public abstract class RecordWriter<T extends IOReadableWritable> implements Avai
 		return pruneTriggered;
 	}
 
+	/**
+	 * Checks whether the current record can be written to the given buffer without spanning into the
+	 * next one. Records larger than a whole buffer span buffers anyway and are always accepted.
+	 */
+	private boolean fitsIntoRemainingSpace(BufferBuilder bufferBuilder) {
+		final int recordLength = serializer.getSerializedRecordLength();
+		return recordLength <= bufferBuilder.getWritableBytes() || recordLength > bufferBuilder.getMaxCapacity();
+	}
+
 	public void broadcastEvent(AbstractEvent event) throws IOException {
 		broadcastEvent(event, false);
 	}
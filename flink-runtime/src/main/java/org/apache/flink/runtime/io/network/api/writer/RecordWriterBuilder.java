@@ -31,6 +31,8 @@ public class RecordWriterBuilder<T extends IOReadableWritable> {
 
 	private String taskName = "test";
 
+	private boolean alignRecordsToBuffers = false;
+
 	public RecordWriterBuilder<T> setChannelSelector(ChannelSelector<T> selector) {
 		this.selector = selector;
 		return this;
@@ -46,11 +48,20 @@ public class RecordWriterBuilder<T extends IOReadableWritable> {
 		return this;
 	}
 
+	/**
+	 * Lets records which do not fit into the remaining space of the current buffer start a new
+	 * buffer. Has no effect for broadcast writers.
+	 */
+	public RecordWriterBuilder<T> setAlignRecordsToBuffers(boolean alignRecordsToBuffers) {
+		this.alignRecordsToBuffers = alignRecordsToBuffers;
+		return this;
+	}
+
 	public RecordWriter<T> build(ResultPartitionWriter writer) {
 		if (selector.isBroadcast()) {
 			return new BroadcastRecordWriter<>(writer, timeout, taskName);
 		} else {
-			return new ChannelSelectorRecordWriter<>(writer, selector, timeout, taskName);
+			return new ChannelSelectorRecordWriter<>(writer, selector, timeout, taskName, alignRecordsToBuffers);
 		}
 	}
 }
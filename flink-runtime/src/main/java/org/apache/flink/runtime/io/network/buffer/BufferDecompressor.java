@@ -36,6 +36,9 @@ public class BufferDecompressor {
 	/** The backing block decompressor for data decompression. */
 	private final BlockDecompressor blockDecompressor;
 
+	/** The block decompressor for {@link #decompressToNewBuffer(Buffer)}, which may be called concurrently. */
+	private final BlockDecompressor newBufferDecompressor;
+
 	/** The intermediate buffer for the decompressed data. */
 	private final NetworkBuffer internalBuffer;
 
@@ -46,7 +49,9 @@ public class BufferDecompressor {
 		// the decompressed data size should be never larger than the configured buffer size
 		final byte[] heapBuffer = new byte[bufferSize];
 		this.internalBuffer = new NetworkBuffer(MemorySegmentFactory.wrap(heapBuffer), FreeingBufferRecycler.INSTANCE);
-		this.blockDecompressor = BlockCompressionFactory.createBlockCompressionFactory(factoryName).getDecompressor();
+		final BlockCompressionFactory compressionFactory = BlockCompressionFactory.createBlockCompressionFactory(factoryName);
+		this.blockDecompressor = compressionFactory.getDecompressor();
+		this.newBufferDecompressor = compressionFactory.getDecompressor();
 	}
 
 	/**
@@ -81,24 +86,50 @@ public class BufferDecompressor {
 		return new ReadOnlySlicedNetworkBuffer(buffer.asByteBuf(), 0, decompressedLen, memorySegmentOffset, false);
 	}
 
+	/**
+	 * Decompresses the given {@link Buffer} into a newly allocated unpooled {@link Buffer}. Unlike the buffer
+	 * returned by {@link #decompressToIntermediateBuffer(Buffer)}, the returned {@link Buffer} may be held
+	 * for an arbitrary time, e.g. while it is persisted as channel state, and is freed when it is recycled.
+	 *
+	 * <p>The input {@link Buffer} is neither modified nor recycled. This method may be called from other
+	 * threads than the other methods of this class.
+	 */
+	public synchronized Buffer decompressToNewBuffer(Buffer buffer) {
+		checkCompressedBuffer(buffer);
+
+		final MemorySegment segment = MemorySegmentFactory.allocateUnpooledSegment(internalBuffer.capacity());
+		final NetworkBuffer decompressedBuffer = new NetworkBuffer(
+			segment, FreeingBufferRecycler.INSTANCE, buffer.getDataType());
+		decompressedBuffer.setSize(decompress(newBufferDecompressor, buffer, decompressedBuffer));
+		return decompressedBuffer;
+	}
+
 	/**
 	 * Decompresses the input {@link Buffer} into the intermediate buffer and returns the decompressed data size.
 	 */
 	private int decompress(Buffer buffer) {
-		checkArgument(buffer != null, "The input buffer must not be null.");
-		checkArgument(buffer.isBuffer(), "Event can not be decompressed.");
-		checkArgument(buffer.isCompressed(), "Buffer not compressed.");
-		checkArgument(buffer.getReaderIndex() == 0, "Reader index of the input buffer must be 0.");
-		checkArgument(buffer.readableBytes() > 0, "No data to be decompressed.");
+		checkCompressedBuffer(buffer);
 		checkState(internalBuffer.refCnt() == 1, "Illegal reference count, buffer need to be released.");
 
+		return decompress(blockDecompressor, buffer, internalBuffer);
+	}
+
+	private static int decompress(BlockDecompressor decompressor, Buffer buffer, Buffer target) {
 		int length = buffer.getSize();
-		// decompress the given buffer into the internal heap buffer
-		return blockDecompressor.decompress(
+		// decompress the given buffer into the target heap buffer
+		return decompressor.decompress(
 			buffer.getNioBuffer(0, length),
 			0,
 			length,
-			internalBuffer.getNioBuffer(0, internalBuffer.capacity()),
+			target.getNioBuffer(0, target.getMaxCapacity()),
 			0);
 	}
+
+	private static void checkCompressedBuffer(Buffer buffer) {
+		checkArgument(buffer != null, "The input buffer must not be null.");
+		checkArgument(buffer.isBuffer(), "Event can not be decompressed.");
+		checkArgument(buffer.isCompressed(), "Buffer not compressed.");
+		checkArgument(buffer.getReaderIndex() == 0, "Reader index of the input buffer must be 0.");
+		checkArgument(buffer.readableBytes() > 0, "No data to be decompressed.");
+	}
 }
@@ -20,6 +20,7 @@ package org.apache.flink.runtime.io.network.metrics;
 
 import org.apache.flink.metrics.Gauge;
 import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.io.network.partition.consumer.BufferDebloater;
 import org.apache.flink.runtime.io.network.partition.consumer.InputChannel;
 import org.apache.flink.runtime.io.network.partition.consumer.RemoteInputChannel;
 import org.apache.flink.runtime.io.network.partition.consumer.SingleInputGate;
@@ -135,6 +136,26 @@ public class InputGateMetrics {
 		return count == 0 ? 0 : total / (float) count;
 	}
 
+	/**
+	 * Iterates over all input channels and collects the total size of the queued buffers in a
+	 * best-effort way.
+	 *
+	 * @return total size of the queued buffers in bytes
+	 */
+	long refreshAndGetInflightBytes() {
+		long total = 0;
+
+		for (InputChannel channel : inputGate.getInputChannels().values()) {
+			if (channel instanceof RemoteInputChannel) {
+				RemoteInputChannel rc = (RemoteInputChannel) channel;
+
+				total += rc.unsynchronizedGetSizeOfQueuedBuffers();
+			}
+		}
+
+		return total;
+	}
+
 	// ------------------------------------------------------------------------
 	//  Gauges to access the stats
 	// ------------------------------------------------------------------------
@@ -175,6 +196,15 @@ public class InputGateMetrics {
 		};
 	}
 
+	private Gauge<Long> getInflightBytesGauge() {
+		return new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return refreshAndGetInflightBytes();
+			}
+		};
+	}
+
 	// ------------------------------------------------------------------------
 	//  Static access
 	// ------------------------------------------------------------------------
@@ -190,4 +220,20 @@ public class InputGateMetrics {
 			group.gauge("avgQueueLen", metrics.getAvgQueueLenGauge());
 		}
 	}
+
+	public static void registerBufferDebloatMetrics(MetricGroup parent, SingleInputGate[] gates) {
+		for (int i = 0; i < gates.length; i++) {
+			final BufferDebloater bufferDebloater = gates[i].getBufferDebloater();
+			if (bufferDebloater == null) {
+				continue;
+			}
+
+			InputGateMetrics metrics = new InputGateMetrics(gates[i]);
+
+			MetricGroup group = parent.addGroup(i);
+			group.gauge("inflightBytes", metrics.getInflightBytesGauge());
+			group.<Long, Gauge<Long>>gauge("debloatTargetBytes", bufferDebloater::getTargetInflightBytes);
+			group.<Long, Gauge<Long>>gauge("debloatThroughput", bufferDebloater::getThroughput);
+		}
+	}
 }
@@ -150,6 +150,7 @@ public class NettyShuffleMetricFactory {
 		if (isDetailedMetrics) {
 			ResultPartitionMetrics.registerQueueLengthMetrics(outputGroup, resultPartitions);
 		}
+		ResultPartitionMetrics.registerCompressionMetrics(outputGroup, resultPartitions);
 		buffersGroup.gauge(METRIC_OUTPUT_QUEUE_LENGTH, new OutputBuffersGauge(resultPartitions));
 		buffersGroup.gauge(METRIC_OUTPUT_POOL_USAGE, new OutputBufferPoolUsageGauge(resultPartitions));
 	}
@@ -173,6 +174,7 @@ public class NettyShuffleMetricFactory {
 		if (isDetailedMetrics) {
 			InputGateMetrics.registerQueueLengthMetrics(inputGroup, inputGates);
 		}
+		InputGateMetrics.registerBufferDebloatMetrics(inputGroup, inputGates);
 
 		buffersGroup.gauge(METRIC_INPUT_QUEUE_LENGTH, new InputBuffersGauge(inputGates));
 
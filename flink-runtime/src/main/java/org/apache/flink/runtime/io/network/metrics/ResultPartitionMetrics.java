@@ -116,6 +116,38 @@ public class ResultPartitionMetrics {
 		return total / (float) allPartitions.length;
 	}
 
+	/**
+	 * Iterates over all sub-partitions and collects the total number of data bytes which were
+	 * eligible for compression in a best-effort way.
+	 *
+	 * @return total number of data bytes before compression
+	 */
+	long refreshAndGetBytesBeforeCompression() {
+		long total = 0;
+
+		for (ResultSubpartition part : partition.getAllPartitions()) {
+			total += part.getTotalNumberOfBytesBeforeCompression();
+		}
+
+		return total;
+	}
+
+	/**
+	 * Iterates over all sub-partitions and collects the total number of bytes the data eligible
+	 * for compression was shipped with in a best-effort way.
+	 *
+	 * @return total number of data bytes after compression
+	 */
+	long refreshAndGetBytesAfterCompression() {
+		long total = 0;
+
+		for (ResultSubpartition part : partition.getAllPartitions()) {
+			total += part.getTotalNumberOfBytesAfterCompression();
+		}
+
+		return total;
+	}
+
 	// ------------------------------------------------------------------------
 	//  Gauges to access the stats
 	// ------------------------------------------------------------------------
@@ -156,6 +188,24 @@ public class ResultPartitionMetrics {
 		};
 	}
 
+	private Gauge<Long> getBytesBeforeCompressionGauge() {
+		return new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return refreshAndGetBytesBeforeCompression();
+			}
+		};
+	}
+
+	private Gauge<Long> getBytesAfterCompressionGauge() {
+		return new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return refreshAndGetBytesAfterCompression();
+			}
+		};
+	}
+
 	// ------------------------------------------------------------------------
 	//  Static access
 	// ------------------------------------------------------------------------
@@ -171,4 +221,18 @@ public class ResultPartitionMetrics {
 			group.gauge("avgQueueLen", metrics.getAvgQueueLenGauge());
 		}
 	}
+
+	public static void registerCompressionMetrics(MetricGroup parent, ResultPartition[] partitions) {
+		for (int i = 0; i < partitions.length; i++) {
+			if (!partitions[i].isCompressionEnabled()) {
+				continue;
+			}
+
+			ResultPartitionMetrics metrics = new ResultPartitionMetrics(partitions[i]);
+
+			MetricGroup group = parent.addGroup(i);
+			group.gauge("numBytesBeforeCompression", metrics.getBytesBeforeCompressionGauge());
+			group.gauge("numBytesAfterCompression", metrics.getBytesAfterCompressionGauge());
+		}
+	}
 }
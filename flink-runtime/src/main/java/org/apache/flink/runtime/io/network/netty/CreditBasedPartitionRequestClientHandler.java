@@ -39,11 +39,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.SocketAddress;
+import java.time.Duration;
 import java.util.ArrayDeque;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
 /**
@@ -66,6 +69,15 @@ class CreditBasedPartitionRequestClientHandler extends ChannelInboundHandlerAdap
 
 	private final ChannelFutureListener writeListener = new WriteAndFlushNextMessageIfPossibleListener();
 
+	/**
+	 * The time credit announcements are held back to be sent together with the announcements of
+	 * other channels. With the default of <tt>0</tt>, credit is announced immediately.
+	 */
+	private final long creditBatchDelayNanos;
+
+	/** Whether a delayed write of the batched credit announcements is scheduled. */
+	private boolean isCreditWriteScheduled;
+
 	/**
 	 * Set of cancelled partition requests. A request is cancelled iff an input channel is cleared
 	 * while data is still coming in for this channel.
@@ -78,6 +90,15 @@ class CreditBasedPartitionRequestClientHandler extends ChannelInboundHandlerAdap
 	 */
 	private volatile ChannelHandlerContext ctx;
 
+	CreditBasedPartitionRequestClientHandler() {
+		this(Duration.ZERO);
+	}
+
+	CreditBasedPartitionRequestClientHandler(Duration creditBatchDelay) {
+		checkArgument(!creditBatchDelay.isNegative(), "The credit batch delay must not be negative.");
+		this.creditBatchDelayNanos = creditBatchDelay.toNanos();
+	}
+
 	// ------------------------------------------------------------------------
 	// Input channel/receiver registration
 	// ------------------------------------------------------------------------
@@ -189,7 +210,9 @@ class CreditBasedPartitionRequestClientHandler extends ChannelInboundHandlerAdap
 	 * Triggered by notifying credit available in the client handler pipeline.
 	 *
 	 * <p>Enqueues the input channel and will trigger write&flush unannounced credits
-	 * for this input channel if it is the first one in the queue.
+	 * for this input channel if it is the first one in the queue. If credit batching is
+	 * enabled, credit announcements instead trigger a delayed write, which sends all the
+	 * announcements queued until then with a single flush.
 	 */
 	@Override
 	public void userEventTriggered(ChannelHandlerContext ctx, Object msg) throws Exception {
@@ -198,7 +221,18 @@ class CreditBasedPartitionRequestClientHandler extends ChannelInboundHandlerAdap
 
 			clientOutboundMessages.add((ClientOutboundMessage) msg);
 
-			if (triggerWrite) {
+			if (creditBatchDelayNanos > 0 && msg instanceof AddCreditMessage) {
+				if (triggerWrite && !isCreditWriteScheduled) {
+					isCreditWriteScheduled = true;
+					ctx.executor().schedule(
+						() -> {
+							isCreditWriteScheduled = false;
+							writeAndFlushNextMessageIfPossible(ctx.channel());
+						},
+						creditBatchDelayNanos,
+						TimeUnit.NANOSECONDS);
+				}
+			} else if (triggerWrite) {
 				writeAndFlushNextMessageIfPossible(ctx.channel());
 			}
 		} else {
@@ -311,32 +345,45 @@ class CreditBasedPartitionRequestClientHandler extends ChannelInboundHandlerAdap
 	 *
 	 * <p>This method may be called by the first input channel enqueuing, or the complete
 	 * future's callback in previous input channel, or the channel writability changed event.
+	 *
+	 * <p>If credit batching is enabled, the messages of all queued input channels are written
+	 * and flushed at once.
 	 */
 	private void writeAndFlushNextMessageIfPossible(Channel channel) {
 		if (channelError.get() != null || !channel.isWritable()) {
 			return;
 		}
 
+		ChannelFuture lastWriteFuture = null;
 		while (true) {
 			ClientOutboundMessage outboundMessage = clientOutboundMessages.poll();
 
 			// The input channel may be null because of the write callbacks
 			// that are executed after each write.
 			if (outboundMessage == null) {
-				return;
+				break;
 			}
 
 			//It is no need to notify credit or resume data consumption for the released channel.
 			if (!outboundMessage.inputChannel.isReleased()) {
 				Object msg = outboundMessage.buildMessage();
 
-				// Write and flush and wait until this is done before
-				// trying to continue with the next input channel.
-				channel.writeAndFlush(msg).addListener(writeListener);
+				if (lastWriteFuture != null) {
+					lastWriteFuture.addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+				}
+				lastWriteFuture = channel.write(msg);
 
-				return;
+				if (creditBatchDelayNanos == 0 || !channel.isWritable()) {
+					break;
+				}
 			}
 		}
+
+		if (lastWriteFuture != null) {
+			// Flush and wait until this is done before trying to continue with the next input channel.
+			channel.flush();
+			lastWriteFuture.addListener(writeListener);
+		}
 	}
 
 	private class WriteAndFlushNextMessageIfPossibleListener implements ChannelFutureListener {
@@ -29,6 +29,7 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nullable;
 
 import java.net.InetAddress;
+import java.time.Duration;
 
 import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
@@ -120,6 +121,16 @@ public class NettyConfig {
 		return config.getInteger(NettyShuffleEnvironmentOptions.SEND_RECEIVE_BUFFER_SIZE);
 	}
 
+	public int getServerWriteBatchSize() {
+		final long batchSize = config.get(NettyShuffleEnvironmentOptions.SERVER_WRITE_BATCH_SIZE).getBytes();
+		checkArgument(batchSize <= Integer.MAX_VALUE, "The server write batch size must be less than 2 GB.");
+		return (int) batchSize;
+	}
+
+	public Duration getClientCreditBatchDelay() {
+		return config.get(NettyShuffleEnvironmentOptions.CLIENT_CREDIT_BATCH_DELAY);
+	}
+
 	public TransportType getTransportType() {
 		String transport = config.getString(NettyShuffleEnvironmentOptions.TRANSPORT_TYPE);
 
@@ -51,7 +51,11 @@ public class NettyConnectionManager implements ConnectionManager {
 
 		this.partitionRequestClientFactory = new PartitionRequestClientFactory(client);
 
-		this.nettyProtocol = new NettyProtocol(checkNotNull(partitionProvider), checkNotNull(taskEventPublisher));
+		this.nettyProtocol = new NettyProtocol(
+			checkNotNull(partitionProvider),
+			checkNotNull(taskEventPublisher),
+			nettyConfig.getServerWriteBatchSize(),
+			nettyConfig.getClientCreditBatchDelay());
 	}
 
 	@Override
@@ -24,6 +24,10 @@ import org.apache.flink.runtime.io.network.partition.ResultPartitionProvider;
 
 import org.apache.flink.shaded.netty4.io.netty.channel.ChannelHandler;
 
+import java.time.Duration;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
 /**
  * Defines the server and client channel handlers, i.e. the protocol, used by netty.
  */
@@ -35,9 +39,25 @@ public class NettyProtocol {
 	private final ResultPartitionProvider partitionProvider;
 	private final TaskEventPublisher taskEventPublisher;
 
+	/** The amount of buffer data the server writes before flushing, see {@link PartitionRequestQueue}. */
+	private final int serverWriteBatchSize;
+
+	/** The time the client holds back credit announcements to batch them. */
+	private final Duration clientCreditBatchDelay;
+
 	NettyProtocol(ResultPartitionProvider partitionProvider, TaskEventPublisher taskEventPublisher) {
+		this(partitionProvider, taskEventPublisher, 0, Duration.ZERO);
+	}
+
+	NettyProtocol(
+			ResultPartitionProvider partitionProvider,
+			TaskEventPublisher taskEventPublisher,
+			int serverWriteBatchSize,
+			Duration clientCreditBatchDelay) {
 		this.partitionProvider = partitionProvider;
 		this.taskEventPublisher = taskEventPublisher;
+		this.serverWriteBatchSize = serverWriteBatchSize;
+		this.clientCreditBatchDelay = checkNotNull(clientCreditBatchDelay);
 	}
 
 	/**
@@ -74,7 +94,7 @@ public class NettyProtocol {
 	 * @return channel handlers
 	 */
 	public ChannelHandler[] getServerChannelHandlers() {
-		PartitionRequestQueue queueOfPartitionQueues = new PartitionRequestQueue();
+		PartitionRequestQueue queueOfPartitionQueues = new PartitionRequestQueue(serverWriteBatchSize);
 		PartitionRequestServerHandler serverHandler = new PartitionRequestServerHandler(
 			partitionProvider,
 			taskEventPublisher,
@@ -121,7 +141,7 @@ public class NettyProtocol {
 	 * @return channel handlers
 	 */
 	public ChannelHandler[] getClientChannelHandlers() {
-		NetworkClientHandler networkClientHandler = new CreditBasedPartitionRequestClientHandler();
+		NetworkClientHandler networkClientHandler = new CreditBasedPartitionRequestClientHandler(clientCreditBatchDelay);
 
 		return new ChannelHandler[]{
 			messageEncoder,
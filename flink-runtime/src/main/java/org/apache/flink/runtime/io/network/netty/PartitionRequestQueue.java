@@ -44,6 +44,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
 
 import static org.apache.flink.runtime.io.network.netty.NettyMessage.BufferResponse;
+import static org.apache.flink.util.Preconditions.checkArgument;
 
 /**
  * A nonEmptyReader of partition queues, which listens for channel writability changed
@@ -55,6 +56,12 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 
 	private final ChannelFutureListener writeListener = new WriteAndFlushNextMessageIfPossibleListener();
 
+	/**
+	 * The maximum number of buffer bytes written before the channel is flushed. With the default of
+	 * <tt>0</tt>, every buffer is flushed on its own.
+	 */
+	private final int maxBatchBytes;
+
 	/** The readers which are already enqueued available for transferring data. */
 	private final ArrayDeque<NetworkSequenceViewReader> availableReaders = new ArrayDeque<>();
 
@@ -65,6 +72,15 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 
 	private ChannelHandlerContext ctx;
 
+	PartitionRequestQueue() {
+		this(0);
+	}
+
+	PartitionRequestQueue(int maxBatchBytes) {
+		checkArgument(maxBatchBytes >= 0, "The maximum batch size must not be negative.");
+		this.maxBatchBytes = maxBatchBytes;
+	}
+
 	@Override
 	public void channelRegistered(final ChannelHandlerContext ctx) throws Exception {
 		if (this.ctx == null) {
@@ -203,6 +219,8 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 		// gate and the consumed views as the local input channels.
 
 		BufferAndAvailability next = null;
+		ChannelFuture lastWriteFuture = null;
+		int numBatchedBytes = 0;
 		try {
 			while (true) {
 				NetworkSequenceViewReader reader = pollAvailableReader();
@@ -210,7 +228,7 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 				// No queue with available data. We allow this here, because
 				// of the write callbacks that are executed after each write.
 				if (reader == null) {
-					return;
+					break;
 				}
 
 				next = reader.getNextBuffer();
@@ -239,12 +257,19 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 						reader.getSequenceNumber(),
 						reader.getReceiverId(),
 						next.buffersInBacklog());
+					numBatchedBytes += msg.bufferSize;
+					next = null;
 
-					// Write and flush and wait until this is done before
-					// trying to continue with the next buffer.
-					channel.writeAndFlush(msg).addListener(writeListener);
+					if (lastWriteFuture != null) {
+						lastWriteFuture.addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+					}
+					lastWriteFuture = channel.write(msg);
 
-					return;
+					// Continue batching small buffers (possibly of other readers) into the same
+					// flush as long as the batch is below the limit and the channel is writable.
+					if (numBatchedBytes >= maxBatchBytes || !channel.isWritable()) {
+						break;
+					}
 				}
 			}
 		} catch (Throwable t) {
@@ -253,6 +278,12 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 			}
 
 			throw new IOException(t.getMessage(), t);
+		} finally {
+			if (lastWriteFuture != null) {
+				// Flush and wait until this is done before trying to continue with the next buffer.
+				channel.flush();
+				lastWriteFuture.addListener(writeListener);
+			}
 		}
 	}
 
@@ -157,6 +157,7 @@ final class BoundedBlockingSubpartition extends ResultSubpartition {
 			try {
 				if (canBeCompressed(buffer)) {
 					final Buffer compressedBuffer = parent.bufferCompressor.compressToIntermediateBuffer(buffer);
+					updateCompressionStatistics(buffer.readableBytes(), compressedBuffer.readableBytes());
 					data.writeBuffer(compressedBuffer);
 					if (compressedBuffer != buffer) {
 						compressedBuffer.recycleBuffer();
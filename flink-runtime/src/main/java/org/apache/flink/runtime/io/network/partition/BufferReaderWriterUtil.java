@@ -105,14 +105,32 @@ final class BufferReaderWriterUtil {
 			Buffer buffer,
 			ByteBuffer[] arrayWithHeaderBuffer) throws IOException {
 
+		return writeToByteChannel(
+			channel,
+			buffer.getNioBufferReadable(),
+			buffer.isBuffer(),
+			buffer.isCompressed(),
+			arrayWithHeaderBuffer);
+	}
+
+	/**
+	 * Writes the readable bytes of the given {@link ByteBuffer} with the same header as a {@link Buffer}
+	 * would be written, so that it can later be read back via {@link #readFromByteChannel}.
+	 */
+	static long writeToByteChannel(
+			FileChannel channel,
+			ByteBuffer dataBuffer,
+			boolean isBuffer,
+			boolean isCompressed,
+			ByteBuffer[] arrayWithHeaderBuffer) throws IOException {
+
 		final ByteBuffer headerBuffer = arrayWithHeaderBuffer[0];
 		headerBuffer.clear();
-		headerBuffer.putShort(buffer.isBuffer() ? HEADER_VALUE_IS_BUFFER : HEADER_VALUE_IS_EVENT);
-		headerBuffer.putShort(buffer.isCompressed() ? BUFFER_IS_COMPRESSED : BUFFER_IS_NOT_COMPRESSED);
-		headerBuffer.putInt(buffer.getSize());
+		headerBuffer.putShort(isBuffer ? HEADER_VALUE_IS_BUFFER : HEADER_VALUE_IS_EVENT);
+		headerBuffer.putShort(isCompressed ? BUFFER_IS_COMPRESSED : BUFFER_IS_NOT_COMPRESSED);
+		headerBuffer.putInt(dataBuffer.remaining());
 		headerBuffer.flip();
 
-		final ByteBuffer dataBuffer = buffer.getNioBufferReadable();
 		arrayWithHeaderBuffer[1] = dataBuffer;
 
 		final long bytesExpected = HEADER_LENGTH + dataBuffer.remaining();
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * An in-memory buffer which collects the data of all subpartitions of a result partition and
+ * groups it by subpartition index, so that it can be written out as one sequential region per
+ * subpartition.
+ *
+ * <p>The data is copied into a fixed number of memory segments, which means that the network buffers
+ * the data was produced in can be recycled right away. The segments are network buffers of the buffer
+ * pool of the result partition, so the sort memory counts against the configured network memory. They
+ * are requested when the sort buffer is created, which is why the pool has to reserve them on top of
+ * the buffers of the subpartitions, and returned to the pool once the sort buffer is released.
+ *
+ * <p>This class is not thread-safe, it is only accessed by the single writer thread of the
+ * result partition.
+ */
+final class PartitionSortedBuffer {
+
+	/** The pool the segments are taken from and returned to. */
+	private final BufferPool bufferPool;
+
+	private final int segmentSize;
+
+	/** The segments holding the copied data. */
+	private final List<MemorySegment> segments;
+
+	/** For each subpartition, the list of appended entries in their arrival order. */
+	private final List<Entry>[] subpartitionEntries;
+
+	/** Index of the segment that is currently written to. */
+	private int writeSegmentIndex;
+
+	/** Position within the segment that is currently written to. */
+	private int writeOffset;
+
+	private int numEntries;
+
+	private boolean isReleased;
+
+	@SuppressWarnings("unchecked")
+	PartitionSortedBuffer(BufferPool bufferPool, int numSubpartitions, int numSegments) throws IOException {
+		checkArgument(numSubpartitions > 0, "Number of subpartitions must be positive.");
+		checkArgument(numSegments > 0, "Number of segments must be positive.");
+
+		this.bufferPool = checkNotNull(bufferPool);
+		this.subpartitionEntries = new List[numSubpartitions];
+		for (int i = 0; i < numSubpartitions; i++) {
+			subpartitionEntries[i] = new ArrayList<>();
+		}
+
+		this.segments = new ArrayList<>(numSegments);
+		try {
+			for (int i = 0; i < numSegments; i++) {
+				segments.add(bufferPool.requestBufferBuilderBlocking().getMemorySegment());
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			release();
+			throw new IOException("Interrupted while requesting the memory of the sort buffer.", e);
+		}
+		catch (Throwable t) {
+			release();
+			throw t;
+		}
+		this.segmentSize = segments.get(0).size();
+	}
+
+	/**
+	 * Checks whether a buffer of the given size can ever be held by this sort buffer. Larger buffers
+	 * have to bypass the sort buffer.
+	 */
+	boolean canHold(int size) {
+		return size <= segmentSize;
+	}
+
+	/**
+	 * Copies the readable bytes of the given buffer into this sort buffer. The buffer itself is not
+	 * recycled, the caller keeps its ownership.
+	 *
+	 * @return true if the data was appended, false if there is not enough space left.
+	 */
+	boolean append(int subpartitionIndex, Buffer buffer) {
+		checkState(!isReleased, "Sort buffer is already released.");
+
+		final int size = buffer.readableBytes();
+		checkArgument(canHold(size), "Buffer is larger than the segments of the sort buffer.");
+
+		if (writeOffset + size > segmentSize) {
+			if (writeSegmentIndex + 1 >= segments.size()) {
+				return false;
+			}
+			writeSegmentIndex++;
+			writeOffset = 0;
+		}
+
+		final MemorySegment segment = segments.get(writeSegmentIndex);
+		segment.put(writeOffset, buffer.getNioBufferReadable(), size);
+
+		subpartitionEntries[subpartitionIndex].add(new Entry(
+			writeSegmentIndex, writeOffset, size, buffer.isBuffer(), buffer.isCompressed()));
+		writeOffset += size;
+		numEntries++;
+		return true;
+	}
+
+	boolean isEmpty() {
+		return numEntries == 0;
+	}
+
+	int getNumSubpartitions() {
+		return subpartitionEntries.length;
+	}
+
+	/**
+	 * Gets the number of buffers and events of the given subpartition currently held.
+	 */
+	int getNumEntries(int subpartitionIndex) {
+		return subpartitionEntries[subpartitionIndex].size();
+	}
+
+	/**
+	 * Writes all entries of the given subpartition to the channel in their arrival order, using the
+	 * buffer encoding of {@link BufferReaderWriterUtil}.
+	 *
+	 * @return the number of bytes written, including the headers.
+	 */
+	long writeSubpartition(
+			int subpartitionIndex,
+			FileChannel channel,
+			ByteBuffer[] arrayWithHeaderBuffer) throws IOException {
+
+		long numBytes = 0;
+		for (Entry entry : subpartitionEntries[subpartitionIndex]) {
+			final ByteBuffer data = segments.get(entry.segmentIndex).wrap(entry.offset, entry.length);
+			numBytes += BufferReaderWriterUtil.writeToByteChannel(
+				channel, data, entry.isBuffer, entry.isCompressed, arrayWithHeaderBuffer);
+		}
+		return numBytes;
+	}
+
+	/**
+	 * Drops all held entries, keeping the allocated memory for reuse.
+	 */
+	void reset() {
+		for (List<Entry> entries : subpartitionEntries) {
+			entries.clear();
+		}
+		writeSegmentIndex = 0;
+		writeOffset = 0;
+		numEntries = 0;
+	}
+
+	/**
+	 * Drops all held entries and returns the memory to the buffer pool. The buffer cannot be used any
+	 * more after that.
+	 */
+	void release() {
+		if (isReleased) {
+			return;
+		}
+		isReleased = true;
+
+		reset();
+		for (MemorySegment segment : segments) {
+			bufferPool.recycle(segment);
+		}
+		segments.clear();
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Position and meta data of a single buffer or event copied into the sort buffer.
+	 */
+	private static final class Entry {
+
+		final int segmentIndex;
+
+		final int offset;
+
+		final int length;
+
+		final boolean isBuffer;
+
+		final boolean isCompressed;
+
+		Entry(int segmentIndex, int offset, int length, boolean isBuffer, boolean isCompressed) {
+			this.segmentIndex = segmentIndex;
+			this.offset = offset;
+			this.length = length;
+			this.isBuffer = isBuffer;
+			this.isCompressed = isCompressed;
+		}
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferRecycler;
+import org.apache.flink.util.IOUtils;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkElementIndex;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The data of all subpartitions of a sort-merge result partition, stored in one data file and
+ * one index file.
+ *
+ * <p>The data file consists of a sequence of regions. Each region holds the data of all
+ * subpartitions, grouped by subpartition index, as written by one spill of the
+ * {@link PartitionSortedBuffer}. The buffers are encoded as in {@link BufferReaderWriterUtil}.
+ *
+ * <p>The index file holds one entry per region and subpartition, ordered by region first and then
+ * by subpartition index. Each entry consists of the offset of the subpartition's data in the data
+ * file and the number of buffers (including events) it has in that region. A reader of one
+ * subpartition thus reads a few index entries and then one sequential run of data per region.
+ */
+final class PartitionedFile {
+
+	/** Size of one index entry: the data file offset (long) and the number of buffers (int). */
+	static final int INDEX_ENTRY_SIZE = 8 + 4;
+
+	private final int numSubpartitions;
+
+	private final int numRegions;
+
+	private final Path dataFilePath;
+
+	private final Path indexFilePath;
+
+	PartitionedFile(int numSubpartitions, int numRegions, Path dataFilePath, Path indexFilePath) {
+		checkArgument(numSubpartitions > 0, "Number of subpartitions must be positive.");
+		checkArgument(numRegions >= 0, "Number of regions must not be negative.");
+
+		this.numSubpartitions = numSubpartitions;
+		this.numRegions = numRegions;
+		this.dataFilePath = checkNotNull(dataFilePath);
+		this.indexFilePath = checkNotNull(indexFilePath);
+	}
+
+	int getNumSubpartitions() {
+		return numSubpartitions;
+	}
+
+	int getNumRegions() {
+		return numRegions;
+	}
+
+	Path getDataFilePath() {
+		return dataFilePath;
+	}
+
+	Path getIndexFilePath() {
+		return indexFilePath;
+	}
+
+	static long getIndexEntryOffset(int region, int subpartitionIndex, int numSubpartitions) {
+		return ((long) region * numSubpartitions + subpartitionIndex) * INDEX_ENTRY_SIZE;
+	}
+
+	/**
+	 * Creates a reader for the data of the given subpartition. Multiple readers may be created and
+	 * may be used concurrently, each of them opens its own file channels.
+	 */
+	BoundedData.Reader createReader(
+			int subpartitionIndex,
+			int memorySegmentSize,
+			ResultSubpartitionView subpartitionView) throws IOException {
+
+		checkElementIndex(subpartitionIndex, numSubpartitions, "Subpartition not found.");
+
+		final FileChannel dataChannel = FileChannel.open(dataFilePath, StandardOpenOption.READ);
+		try {
+			final FileChannel indexChannel = FileChannel.open(indexFilePath, StandardOpenOption.READ);
+			return new PartitionedFileReader(
+				this, subpartitionIndex, dataChannel, indexChannel, memorySegmentSize, subpartitionView);
+		}
+		catch (IOException e) {
+			IOUtils.closeQuietly(dataChannel);
+			throw e;
+		}
+	}
+
+	void deleteQuietly() {
+		deleteQuietly(dataFilePath);
+		deleteQuietly(indexFilePath);
+	}
+
+	static void deleteQuietly(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		}
+		catch (IOException ignored) {
+			// best effort, the file lives in a temp directory which is cleaned up on shutdown anyways
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PartitionedFile{" +
+			"numSubpartitions=" + numSubpartitions +
+			", numRegions=" + numRegions +
+			", dataFilePath=" + dataFilePath +
+			", indexFilePath=" + indexFilePath +
+			'}';
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Reads the data of one subpartition region by region. Like the reader of the
+	 * {@link FileChannelBoundedData}, it uses a simple dedicated pool of two buffers.
+	 */
+	static final class PartitionedFileReader implements BoundedData.Reader, BufferRecycler {
+
+		private static final int NUM_BUFFERS = 2;
+
+		private final PartitionedFile partitionedFile;
+
+		private final int subpartitionIndex;
+
+		private final FileChannel dataChannel;
+
+		private final FileChannel indexChannel;
+
+		private final ByteBuffer headerBuffer;
+
+		private final ByteBuffer indexEntryBuffer;
+
+		private final ArrayDeque<MemorySegment> buffers;
+
+		private final ResultSubpartitionView subpartitionView;
+
+		/** The next region to read the index entry for. */
+		private int nextRegion;
+
+		/** Number of buffers left to read in the current region. */
+		private int numRemainingBuffers;
+
+		/** The tag indicates whether we have read all data of this subpartition. */
+		private boolean isFinished;
+
+		PartitionedFileReader(
+				PartitionedFile partitionedFile,
+				int subpartitionIndex,
+				FileChannel dataChannel,
+				FileChannel indexChannel,
+				int bufferSize,
+				ResultSubpartitionView subpartitionView) {
+
+			this.partitionedFile = checkNotNull(partitionedFile);
+			this.subpartitionIndex = subpartitionIndex;
+			this.dataChannel = checkNotNull(dataChannel);
+			this.indexChannel = checkNotNull(indexChannel);
+			this.headerBuffer = BufferReaderWriterUtil.allocatedHeaderBuffer();
+			this.indexEntryBuffer = ByteBuffer.allocateDirect(INDEX_ENTRY_SIZE);
+			BufferReaderWriterUtil.configureByteBuffer(indexEntryBuffer);
+			this.buffers = new ArrayDeque<>(NUM_BUFFERS);
+
+			for (int i = 0; i < NUM_BUFFERS; i++) {
+				buffers.addLast(MemorySegmentFactory.allocateUnpooledOffHeapMemory(bufferSize, null));
+			}
+
+			this.subpartitionView = checkNotNull(subpartitionView);
+		}
+
+		@Nullable
+		@Override
+		public Buffer nextBuffer() throws IOException {
+			if (!moveToNextNonEmptyRegion()) {
+				isFinished = true;
+				return null;
+			}
+
+			final MemorySegment memory = buffers.pollFirst();
+			if (memory == null) {
+				return null;
+			}
+
+			final Buffer next = BufferReaderWriterUtil.readFromByteChannel(dataChannel, headerBuffer, memory, this);
+			if (next == null) {
+				recycle(memory);
+				throw new IOException("The partitioned data file is corrupt: premature end of file.");
+			}
+
+			numRemainingBuffers--;
+			return next;
+		}
+
+		private boolean moveToNextNonEmptyRegion() throws IOException {
+			final int numRegions = partitionedFile.getNumRegions();
+
+			while (numRemainingBuffers == 0 && nextRegion < numRegions) {
+				indexEntryBuffer.clear();
+				final long indexEntryOffset = getIndexEntryOffset(
+					nextRegion, subpartitionIndex, partitionedFile.getNumSubpartitions());
+				readFully(indexChannel, indexEntryBuffer, indexEntryOffset);
+				indexEntryBuffer.flip();
+
+				final long dataOffset = indexEntryBuffer.getLong();
+				numRemainingBuffers = indexEntryBuffer.getInt();
+				dataChannel.position(dataOffset);
+				nextRegion++;
+			}
+
+			return numRemainingBuffers > 0;
+		}
+
+		private static void readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+			while (target.hasRemaining()) {
+				final int numBytes = channel.read(target, position);
+				if (numBytes == -1) {
+					throw new IOException("The partitioned index file is corrupt: premature end of file.");
+				}
+				position += numBytes;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				dataChannel.close();
+			}
+			finally {
+				indexChannel.close();
+			}
+		}
+
+		@Override
+		public void recycle(MemorySegment memorySegment) {
+			buffers.addLast(memorySegment);
+
+			if (!isFinished) {
+				subpartitionView.notifyDataAvailable();
+			}
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition;
+
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferPool;
+import org.apache.flink.util.IOUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * Writes the data of all subpartitions of a result partition into a {@link PartitionedFile}.
+ *
+ * <p>Written buffers are first collected in a {@link PartitionSortedBuffer}. Whenever that buffer is
+ * full, its content is spilled as one region to the data file, grouped by subpartition index, and
+ * the index entries of the region are appended to the index file.
+ *
+ * <p>This class is not thread-safe. It is written by the single writer thread of the result
+ * partition, which serializes the writes with the release of the writer.
+ */
+final class PartitionedFileWriter {
+
+	private final int numSubpartitions;
+
+	private final Path dataFilePath;
+
+	private final Path indexFilePath;
+
+	private final FileChannel dataFileChannel;
+
+	private final FileChannel indexFileChannel;
+
+	private final PartitionSortedBuffer sortBuffer;
+
+	private final ByteBuffer[] headerAndBufferArray;
+
+	/** Reused buffer for the index entries of one region. */
+	private final ByteBuffer indexBuffer;
+
+	/** Number of bytes (including headers) written per subpartition. */
+	private final long[] subpartitionBytes;
+
+	/** Current write position in the data file. */
+	private long dataFileOffset;
+
+	private int numRegions;
+
+	private boolean isFinished;
+
+	private boolean isReleased;
+
+	PartitionedFileWriter(
+			int numSubpartitions,
+			Path dataFilePath,
+			Path indexFilePath,
+			BufferPool bufferPool,
+			int numSortBuffers) throws IOException {
+
+		this.numSubpartitions = numSubpartitions;
+		this.dataFilePath = checkNotNull(dataFilePath);
+		this.indexFilePath = checkNotNull(indexFilePath);
+		this.headerAndBufferArray = BufferReaderWriterUtil.allocatedWriteBufferArray();
+		this.indexBuffer = ByteBuffer.allocate(numSubpartitions * PartitionedFile.INDEX_ENTRY_SIZE);
+		BufferReaderWriterUtil.configureByteBuffer(indexBuffer);
+		this.subpartitionBytes = new long[numSubpartitions];
+
+		this.sortBuffer = new PartitionSortedBuffer(bufferPool, numSubpartitions, numSortBuffers);
+		try {
+			this.dataFileChannel = FileChannel.open(dataFilePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		}
+		catch (IOException e) {
+			sortBuffer.release();
+			throw e;
+		}
+		try {
+			this.indexFileChannel = FileChannel.open(indexFilePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		}
+		catch (IOException e) {
+			sortBuffer.release();
+			IOUtils.closeQuietly(dataFileChannel);
+			PartitionedFile.deleteQuietly(dataFilePath);
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the given buffer to the given subpartition. The data is copied, the caller keeps the
+	 * ownership of the buffer.
+	 */
+	void writeBuffer(int subpartitionIndex, Buffer buffer) throws IOException {
+		checkState(!isFinished, "File writer is already finished.");
+		checkState(!isReleased, "File writer is already released.");
+
+		subpartitionBytes[subpartitionIndex] += BufferReaderWriterUtil.HEADER_LENGTH + buffer.readableBytes();
+
+		if (!sortBuffer.canHold(buffer.readableBytes())) {
+			// oversized buffers (typically large events) bypass the sort buffer in a region of their own
+			spillSortBuffer();
+			writeSingleBufferRegion(subpartitionIndex, buffer);
+			return;
+		}
+
+		if (!sortBuffer.append(subpartitionIndex, buffer)) {
+			spillSortBuffer();
+			checkState(sortBuffer.append(subpartitionIndex, buffer), "Empty sort buffer rejected a buffer.");
+		}
+	}
+
+	/**
+	 * Spills the remaining data, closes the files and returns the written {@link PartitionedFile}.
+	 */
+	PartitionedFile finish() throws IOException {
+		checkState(!isFinished, "File writer is already finished.");
+		checkState(!isReleased, "File writer is already released.");
+
+		spillSortBuffer();
+		isFinished = true;
+
+		sortBuffer.release();
+		dataFileChannel.close();
+		indexFileChannel.close();
+
+		return new PartitionedFile(numSubpartitions, numRegions, dataFilePath, indexFilePath);
+	}
+
+	/**
+	 * Releases the sort memory and closes the file channels. Does not delete the files.
+	 */
+	void releaseQuietly() {
+		if (isReleased) {
+			return;
+		}
+		isReleased = true;
+
+		sortBuffer.release();
+		IOUtils.closeQuietly(dataFileChannel);
+		IOUtils.closeQuietly(indexFileChannel);
+	}
+
+	long getNumBytes(int subpartitionIndex) {
+		return subpartitionBytes[subpartitionIndex];
+	}
+
+	int getNumRegions() {
+		return numRegions;
+	}
+
+	// ------------------------------------------------------------------------
+
+	private void spillSortBuffer() throws IOException {
+		if (sortBuffer.isEmpty()) {
+			return;
+		}
+
+		indexBuffer.clear();
+		for (int i = 0; i < numSubpartitions; i++) {
+			indexBuffer.putLong(dataFileOffset);
+			indexBuffer.putInt(sortBuffer.getNumEntries(i));
+			dataFileOffset += sortBuffer.writeSubpartition(i, dataFileChannel, headerAndBufferArray);
+		}
+		finishRegion();
+
+		sortBuffer.reset();
+	}
+
+	private void writeSingleBufferRegion(int subpartitionIndex, Buffer buffer) throws IOException {
+		indexBuffer.clear();
+		for (int i = 0; i < numSubpartitions; i++) {
+			indexBuffer.putLong(dataFileOffset);
+			if (i == subpartitionIndex) {
+				indexBuffer.putInt(1);
+				dataFileOffset += BufferReaderWriterUtil.writeToByteChannel(dataFileChannel, buffer, headerAndBufferArray);
+			} else {
+				indexBuffer.putInt(0);
+			}
+		}
+		finishRegion();
+	}
+
+	private void finishRegion() throws IOException {
+		indexBuffer.flip();
+		while (indexBuffer.hasRemaining()) {
+			indexFileChannel.write(indexBuffer);
+		}
+		numRegions++;
+	}
+}
@@ -61,6 +61,13 @@ public class PipelinedSubpartition extends ResultSubpartition {
 
 	private static final Logger LOG = LoggerFactory.getLogger(PipelinedSubpartition.class);
 
+	/** Number of data buffers which are shipped uncompressed after a buffer did not compress well. */
+	@VisibleForTesting
+	static final int NUM_BUFFERS_TO_SKIP_COMPRESSION = 64;
+
+	/** Compressed to raw size ratio above which compressing the data does not pay off. */
+	private static final double MAX_WORTHWHILE_COMPRESSION_RATIO = 0.9;
+
 	// ------------------------------------------------------------------------
 
 	/** All buffers of this subpartition. Access to the buffers is synchronized on this object. */
@@ -95,6 +102,9 @@ public class PipelinedSubpartition extends ResultSubpartition {
 	@GuardedBy("buffers")
 	private boolean isBlockedByCheckpoint = false;
 
+	/** Number of upcoming data buffers which are not compressed, only accessed by the reader. */
+	private int numBuffersToSkipCompression;
+
 	// ------------------------------------------------------------------------
 
 	PipelinedSubpartition(int index, ResultPartition parent) {
@@ -225,6 +235,20 @@ public class PipelinedSubpartition extends ResultSubpartition {
 
 	@Nullable
 	BufferAndBacklog pollBuffer() {
+		final BufferAndBacklog next = pollUncompressedBuffer();
+		if (next == null || !canBeCompressed(next.buffer())) {
+			return next;
+		}
+
+		return new BufferAndBacklog(
+			compress(next.buffer()),
+			next.isDataAvailable(),
+			next.buffersInBacklog(),
+			next.isEventAvailable());
+	}
+
+	@Nullable
+	private BufferAndBacklog pollUncompressedBuffer() {
 		synchronized (buffers) {
 			if (isBlockedByCheckpoint) {
 				return null;
@@ -284,6 +308,41 @@ public class PipelinedSubpartition extends ResultSubpartition {
 		}
 	}
 
+	/**
+	 * Compresses the given data buffer in place, outside of the lock on the buffer queue.
+	 *
+	 * <p>Only buffers which are exclusively owned by the reader are compressed. Buffers which are
+	 * still shared, e.g. with an unfinished {@link BufferBuilder}, with the other subpartitions of a
+	 * broadcast or with an in-flight snapshot of an unaligned checkpoint, are shipped as they are.
+	 * After a buffer compressed badly, the next {@link #NUM_BUFFERS_TO_SKIP_COMPRESSION} buffers are
+	 * shipped uncompressed, so that incompressible data does not pay the compression costs.
+	 */
+	private Buffer compress(Buffer buffer) {
+		final int numRawBytes = buffer.readableBytes();
+		if (buffer.asByteBuf().refCnt() != 1) {
+			updateCompressionStatistics(numRawBytes, numRawBytes);
+			return buffer;
+		}
+		if (numBuffersToSkipCompression > 0) {
+			numBuffersToSkipCompression--;
+			updateCompressionStatistics(numRawBytes, numRawBytes);
+			return buffer;
+		}
+
+		final Buffer compressedBuffer;
+		// the compressor is shared by all subpartitions, which may be read by different threads
+		synchronized (parent.bufferCompressor) {
+			compressedBuffer = parent.bufferCompressor.compressToOriginalBuffer(buffer);
+		}
+
+		final int numShippedBytes = compressedBuffer.readableBytes();
+		if (numShippedBytes > numRawBytes * MAX_WORTHWHILE_COMPRESSION_RATIO) {
+			numBuffersToSkipCompression = NUM_BUFFERS_TO_SKIP_COMPRESSION;
+		}
+		updateCompressionStatistics(numRawBytes, numShippedBytes);
+		return compressedBuffer;
+	}
+
 	void resumeConsumption() {
 		synchronized (buffers) {
 			checkState(isBlockedByCheckpoint, "Should be blocked by checkpoint.");
@@ -393,6 +393,13 @@ public class ResultPartition implements ResultPartitionWriter, BufferPoolOwner {
 		return subpartitions;
 	}
 
+	/**
+	 * Whether the data buffers of this partition are compressed before they are shipped.
+	 */
+	public boolean isCompressionEnabled() {
+		return bufferCompressor != null;
+	}
+
 	// ------------------------------------------------------------------------
 
 	private void checkInProduceState() throws IllegalStateException {
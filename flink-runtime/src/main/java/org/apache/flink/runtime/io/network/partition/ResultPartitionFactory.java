@@ -34,6 +34,8 @@ import org.apache.flink.util.function.FunctionWithException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
 import java.io.IOException;
 
@@ -64,8 +66,16 @@ public class ResultPartitionFactory {
 
 	private final String compressionCodec;
 
+	private final boolean pipelinedShuffleCompressionEnabled;
+
+	private final String pipelinedCompressionCodec;
+
 	private final int maxBuffersPerChannel;
 
+	private final int sortShuffleMinParallelism;
+
+	private final int sortShuffleMinBuffers;
+
 	public ResultPartitionFactory(
 		ResultPartitionManager partitionManager,
 		FileChannelManager channelManager,
@@ -77,7 +87,11 @@ public class ResultPartitionFactory {
 		boolean forcePartitionReleaseOnConsumption,
 		boolean blockingShuffleCompressionEnabled,
 		String compressionCodec,
-		int maxBuffersPerChannel) {
+		boolean pipelinedShuffleCompressionEnabled,
+		String pipelinedCompressionCodec,
+		int maxBuffersPerChannel,
+		int sortShuffleMinParallelism,
+		int sortShuffleMinBuffers) {
 
 		this.partitionManager = partitionManager;
 		this.channelManager = channelManager;
@@ -89,7 +103,11 @@ public class ResultPartitionFactory {
 		this.forcePartitionReleaseOnConsumption = forcePartitionReleaseOnConsumption;
 		this.blockingShuffleCompressionEnabled = blockingShuffleCompressionEnabled;
 		this.compressionCodec = compressionCodec;
+		this.pipelinedShuffleCompressionEnabled = pipelinedShuffleCompressionEnabled;
+		this.pipelinedCompressionCodec = pipelinedCompressionCodec;
 		this.maxBuffersPerChannel = maxBuffersPerChannel;
+		this.sortShuffleMinParallelism = sortShuffleMinParallelism;
+		this.sortShuffleMinBuffers = sortShuffleMinBuffers;
 	}
 
 	public ResultPartition create(
@@ -118,9 +136,23 @@ public class ResultPartitionFactory {
 		BufferCompressor bufferCompressor = null;
 		if (type.isBlocking() && blockingShuffleCompressionEnabled) {
 			bufferCompressor = new BufferCompressor(networkBufferSize, compressionCodec);
+		} else if (type.isPipelined() && pipelinedShuffleCompressionEnabled) {
+			bufferCompressor = new BufferCompressor(networkBufferSize, pipelinedCompressionCodec);
 		}
 
 		ResultSubpartition[] subpartitions = new ResultSubpartition[numberOfSubpartitions];
+		if (isSortMergePartition(type, numberOfSubpartitions)) {
+			return createSortMergePartition(
+				taskNameWithSubtaskAndId,
+				partitionIndex,
+				id,
+				type,
+				subpartitions,
+				maxParallelism,
+				bufferCompressor,
+				bufferPoolFactory);
+		}
+
 		ResultPartition partition = forcePartitionReleaseOnConsumption || !type.isBlocking()
 			? new ReleaseOnConsumptionResultPartition(
 				taskNameWithSubtaskAndId,
@@ -150,6 +182,39 @@ public class ResultPartitionFactory {
 		return partition;
 	}
 
+	private SortMergeResultPartition createSortMergePartition(
+			String taskNameWithSubtaskAndId,
+			int partitionIndex,
+			ResultPartitionID id,
+			ResultPartitionType type,
+			ResultSubpartition[] subpartitions,
+			int maxParallelism,
+			@Nullable BufferCompressor bufferCompressor,
+			FunctionWithException<BufferPoolOwner, BufferPool, IOException> bufferPoolFactory) {
+		final SortMergeResultPartition partition = new SortMergeResultPartition(
+			taskNameWithSubtaskAndId,
+			partitionIndex,
+			id,
+			type,
+			subpartitions,
+			maxParallelism,
+			partitionManager,
+			bufferCompressor,
+			bufferPoolFactory,
+			channelManager.createChannel().getPathFile(),
+			sortShuffleMinBuffers,
+			networkBufferSize);
+
+		// all subpartitions store their data in the single partitioned file of the partition
+		for (int i = 0; i < subpartitions.length; i++) {
+			subpartitions[i] = new BoundedBlockingSubpartition(i, partition, partition.createSubpartitionData(i));
+		}
+
+		LOG.debug("{}: Initialized {}", taskNameWithSubtaskAndId, this);
+
+		return partition;
+	}
+
 	private void createSubpartitions(
 			ResultPartition partition,
 			ResultPartitionType type,
@@ -217,12 +282,15 @@ public class ResultPartitionFactory {
 			int numberOfSubpartitions,
 			ResultPartitionType type) {
 		return bufferPoolOwner -> {
+			// a sort-merge partition takes the memory of its sort buffer from the pool as well
+			int minNumberOfMemorySegments = isSortMergePartition(type, numberOfSubpartitions) ?
+				numberOfSubpartitions + 1 + sortShuffleMinBuffers : numberOfSubpartitions + 1;
 			int maxNumberOfMemorySegments = type.isBounded() ?
 				numberOfSubpartitions * networkBuffersPerChannel + floatingNetworkBuffersPerGate : Integer.MAX_VALUE;
 			// If the partition type is back pressure-free, we register with the buffer pool for
 			// callbacks to release memory.
 			return bufferPoolFactory.createBufferPool(
-				numberOfSubpartitions + 1,
+				minNumberOfMemorySegments,
 				maxNumberOfMemorySegments,
 				type.hasBackPressure() ? null : bufferPoolOwner,
 				numberOfSubpartitions,
@@ -230,6 +298,10 @@ public class ResultPartitionFactory {
 		};
 	}
 
+	private boolean isSortMergePartition(ResultPartitionType type, int numberOfSubpartitions) {
+		return type.isBlocking() && !forcePartitionReleaseOnConsumption && numberOfSubpartitions >= sortShuffleMinParallelism;
+	}
+
 	static BoundedBlockingSubpartitionType getBoundedBlockingType() {
 		switch (ProcessorArchitecture.getMemoryAddressSize()) {
 			case _64_BIT:
@@ -42,6 +42,12 @@ public abstract class ResultSubpartition {
 
 	// - Statistics ----------------------------------------------------------
 
+	/** The total number of data bytes which were eligible for compression. */
+	private long totalNumberOfBytesBeforeCompression;
+
+	/** The total number of bytes the data of {@link #totalNumberOfBytesBeforeCompression} was shipped with. */
+	private long totalNumberOfBytesAfterCompression;
+
 	public ResultSubpartition(int index, ResultPartition parent) {
 		this.parent = parent;
 		this.subpartitionInfo = new ResultSubpartitionInfo(parent.getPartitionIndex(), index);
@@ -55,6 +61,26 @@ public abstract class ResultSubpartition {
 		return parent.bufferCompressor != null && buffer.isBuffer() && buffer.readableBytes() > 0;
 	}
 
+	/**
+	 * Accounts a data buffer which was eligible for compression.
+	 *
+	 * @param numRawBytes size of the buffer before compression
+	 * @param numShippedBytes size of the buffer as it is shipped, which equals <tt>numRawBytes</tt> if
+	 * 		the buffer was not compressed
+	 */
+	protected void updateCompressionStatistics(int numRawBytes, int numShippedBytes) {
+		totalNumberOfBytesBeforeCompression += numRawBytes;
+		totalNumberOfBytesAfterCompression += numShippedBytes;
+	}
+
+	public long getTotalNumberOfBytesBeforeCompression() {
+		return totalNumberOfBytesBeforeCompression;
+	}
+
+	public long getTotalNumberOfBytesAfterCompression() {
+		return totalNumberOfBytesAfterCompression;
+	}
+
 	public ResultSubpartitionInfo getSubpartitionInfo() {
 		return subpartitionInfo;
 	}
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition;
+
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
+import org.apache.flink.runtime.io.network.buffer.BufferPool;
+import org.apache.flink.runtime.io.network.buffer.BufferPoolOwner;
+import org.apache.flink.util.function.FunctionWithException;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * A blocking {@link ResultPartition} which writes the data of all its subpartitions into a single
+ * data file and a single index file (see {@link PartitionedFile}), instead of one file per
+ * subpartition like the default blocking partition does.
+ *
+ * <p>The produced buffers are collected in a {@link PartitionSortedBuffer} and spilled grouped by
+ * subpartition index whenever that buffer is full. This keeps the number of files and file handles
+ * per partition constant and turns the writes into large sequential writes, which matters for
+ * batch jobs with a high parallelism.
+ *
+ * <p>The memory of the {@link PartitionSortedBuffer} is taken from the {@link BufferPool} of the
+ * partition, which therefore reserves the configured number of sort buffers on top of the buffers
+ * of the subpartitions. The sort memory is thus part of the network memory of the TaskManager.
+ *
+ * <p>The subpartitions are regular {@link BoundedBlockingSubpartition}s, backed by a view of their
+ * data in the shared file. Consumers therefore read through the usual
+ * {@link BoundedBlockingSubpartitionReader}, which reads one sequential run of data per region.
+ */
+public class SortMergeResultPartition extends ResultPartition {
+
+	/**
+	 * Guards the shared file against concurrent disposal by the subpartitions, and the sort memory
+	 * against being returned to the buffer pool while it is written.
+	 */
+	private final Object lock = new Object();
+
+	private final Path dataFilePath;
+
+	private final Path indexFilePath;
+
+	private final int numSortBuffers;
+
+	/** The writer of the shared file, created under the lock once the buffer pool is set up. */
+	@Nullable
+	private volatile PartitionedFileWriter fileWriter;
+
+	/** Whether all subpartitions have disposed their view of the shared file. */
+	@GuardedBy("lock")
+	private boolean isDisposed;
+
+	/** Size of the buffers used by the readers. */
+	private final int networkBufferSize;
+
+	/** The written file, set once writing is finished. */
+	@Nullable
+	private volatile PartitionedFile resultFile;
+
+	/** Number of subpartitions which have disposed their view of the shared file. */
+	@GuardedBy("lock")
+	private int numClosedSubpartitions;
+
+	SortMergeResultPartition(
+			String owningTaskName,
+			int partitionIndex,
+			ResultPartitionID partitionId,
+			ResultPartitionType partitionType,
+			ResultSubpartition[] subpartitions,
+			int numTargetKeyGroups,
+			ResultPartitionManager partitionManager,
+			@Nullable BufferCompressor bufferCompressor,
+			FunctionWithException<BufferPoolOwner, BufferPool, IOException> bufferPoolFactory,
+			File dataFile,
+			int numSortBuffers,
+			int networkBufferSize) {
+		super(
+			owningTaskName,
+			partitionIndex,
+			partitionId,
+			partitionType,
+			subpartitions,
+			numTargetKeyGroups,
+			partitionManager,
+			bufferCompressor,
+			bufferPoolFactory);
+
+		checkArgument(partitionType.isBlocking(), "Sort-merge partitions must be blocking.");
+
+		this.dataFilePath = dataFile.toPath();
+		this.indexFilePath = new File(dataFile.getPath() + ".index").toPath();
+		this.numSortBuffers = numSortBuffers;
+		this.networkBufferSize = networkBufferSize;
+	}
+
+	@Override
+	public void setup() throws IOException {
+		super.setup();
+
+		synchronized (lock) {
+			checkState(!isDisposed, "Sort-merge partition is already released.");
+			fileWriter = new PartitionedFileWriter(
+				subpartitions.length, dataFilePath, indexFilePath, getBufferPool(), numSortBuffers);
+		}
+	}
+
+	/**
+	 * Creates the {@link BoundedData} view of the given subpartition, which stores the data of that
+	 * subpartition in the shared file of this partition.
+	 */
+	BoundedData createSubpartitionData(int subpartitionIndex) {
+		return new SubpartitionData(subpartitionIndex);
+	}
+
+	@Override
+	public void finish() throws IOException {
+		super.finish();
+
+		synchronized (lock) {
+			resultFile = getFileWriter().finish();
+		}
+		LOG.debug("{}: Finished writing {}.", getOwningTaskName(), resultFile);
+	}
+
+	private PartitionedFileWriter getFileWriter() {
+		final PartitionedFileWriter writer = fileWriter;
+		checkState(writer != null, "Sort-merge partition is not set up.");
+		return writer;
+	}
+
+	private void onSubpartitionDataClosed() {
+		synchronized (lock) {
+			if (++numClosedSubpartitions < subpartitions.length) {
+				return;
+			}
+
+			isDisposed = true;
+			if (fileWriter != null) {
+				fileWriter.releaseQuietly();
+			}
+		}
+
+		final PartitionedFile file = resultFile;
+		if (file != null) {
+			file.deleteQuietly();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SortMergeResultPartition " + partitionId.toString() + " [" + partitionType + ", "
+			+ subpartitions.length + " subpartitions]";
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The data of one subpartition inside the shared {@link PartitionedFile}.
+	 */
+	private final class SubpartitionData implements BoundedData {
+
+		private final int subpartitionIndex;
+
+		private boolean isClosed;
+
+		SubpartitionData(int subpartitionIndex) {
+			this.subpartitionIndex = subpartitionIndex;
+		}
+
+		@Override
+		public void writeBuffer(Buffer buffer) throws IOException {
+			synchronized (lock) {
+				getFileWriter().writeBuffer(subpartitionIndex, buffer);
+			}
+		}
+
+		@Override
+		public void finishWrite() {
+			// the shared file is finished by the partition once all subpartitions are finished
+		}
+
+		@Override
+		public Reader createReader(ResultSubpartitionView subpartitionView) throws IOException {
+			final PartitionedFile file = resultFile;
+			checkState(file != null, "Writing of the sort-merge partition is not yet finished.");
+
+			return file.createReader(subpartitionIndex, networkBufferSize, subpartitionView);
+		}
+
+		@Override
+		public long getSize() {
+			final PartitionedFileWriter writer = fileWriter;
+			return writer == null ? 0 : writer.getNumBytes(subpartitionIndex);
+		}
+
+		@Override
+		public void close() {
+			if (!isClosed) {
+				isClosed = true;
+				onSubpartitionDataClosed();
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition.consumer;
+
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.configuration.NettyShuffleEnvironmentOptions;
+import org.apache.flink.runtime.util.ConfigurationParserUtils;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Configuration of the buffer debloating of the input gates, see {@link BufferDebloater}.
+ */
+public final class BufferDebloatConfiguration {
+
+	private final boolean enabled;
+
+	/** The time it should take to consume the in-flight data of a gate. */
+	private final Duration targetTotalTime;
+
+	/** The minimal time between two recalculations of the target. */
+	private final Duration period;
+
+	public BufferDebloatConfiguration(boolean enabled, Duration targetTotalTime, Duration period) {
+		this.enabled = enabled;
+		this.targetTotalTime = checkNotNull(targetTotalTime);
+		this.period = checkNotNull(period);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public Duration getTargetTotalTime() {
+		return targetTotalTime;
+	}
+
+	public Duration getPeriod() {
+		return period;
+	}
+
+	public static BufferDebloatConfiguration fromConfiguration(Configuration configuration) {
+		final Duration targetTotalTime = configuration.get(NettyShuffleEnvironmentOptions.NETWORK_BUFFER_DEBLOAT_TARGET);
+		ConfigurationParserUtils.checkConfigParameter(
+			!targetTotalTime.isNegative() && !targetTotalTime.isZero(), targetTotalTime,
+			NettyShuffleEnvironmentOptions.NETWORK_BUFFER_DEBLOAT_TARGET.key(),
+			"The buffer debloating target must be positive.");
+
+		final Duration period = configuration.get(NettyShuffleEnvironmentOptions.NETWORK_BUFFER_DEBLOAT_PERIOD);
+		ConfigurationParserUtils.checkConfigParameter(
+			!period.isNegative() && !period.isZero(), period,
+			NettyShuffleEnvironmentOptions.NETWORK_BUFFER_DEBLOAT_PERIOD.key(),
+			"The buffer debloating period must be positive.");
+
+		return new BufferDebloatConfiguration(
+			configuration.get(NettyShuffleEnvironmentOptions.NETWORK_BUFFER_DEBLOAT_ENABLED),
+			targetTotalTime,
+			period);
+	}
+
+	/**
+	 * Returns a configuration with buffer debloating disabled.
+	 */
+	public static BufferDebloatConfiguration disabled() {
+		return new BufferDebloatConfiguration(
+			false,
+			NettyShuffleEnvironmentOptions.NETWORK_BUFFER_DEBLOAT_TARGET.defaultValue(),
+			NettyShuffleEnvironmentOptions.NETWORK_BUFFER_DEBLOAT_PERIOD.defaultValue());
+	}
+
+	// ------------------------------------------------------------------------
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		BufferDebloatConfiguration that = (BufferDebloatConfiguration) o;
+		return enabled == that.enabled &&
+			targetTotalTime.equals(that.targetTotalTime) &&
+			period.equals(that.period);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(enabled, targetTotalTime, period);
+	}
+
+	@Override
+	public String toString() {
+		return "BufferDebloatConfiguration{" +
+			"enabled=" + enabled +
+			", targetTotalTime=" + targetTotalTime +
+			", period=" + period +
+			'}';
+	}
+}
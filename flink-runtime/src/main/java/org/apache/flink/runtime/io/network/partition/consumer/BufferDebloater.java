@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition.consumer;
+
+import org.apache.flink.annotation.VisibleForTesting;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * Derives the amount of in-flight data an input gate should keep from its measured consumption
+ * rate.
+ *
+ * <p>The debloater accumulates the bytes consumed by the task and, once per period, computes the
+ * consumption rate (smoothed over the previous periods) of the gate. The target amount of in-flight
+ * data is the amount of data the gate consumes within the configured target time. It is spread
+ * evenly over the channels of the gate and enforced by the channels through the number of buffers
+ * they announce as credit to the producers.
+ *
+ * <p>This class is not thread-safe for updates, which only happen in the task thread. The computed
+ * values may be read concurrently, e.g. by metrics.
+ */
+public class BufferDebloater {
+
+	/** Weight of the latest measurement in the smoothed consumption rate. */
+	private static final double THROUGHPUT_SMOOTHING_FACTOR = 0.5;
+
+	private final long targetTotalTimeNanos;
+
+	private final long periodNanos;
+
+	private final int bufferSize;
+
+	private final int numChannels;
+
+	private final int maxBuffersPerChannel;
+
+	/** Bytes consumed in the current period. */
+	private long bytesInPeriod;
+
+	/** Start of the current period, or -1 if nothing was consumed yet. */
+	private long periodStartNanos = -1;
+
+	/** The smoothed consumption rate in bytes per second. */
+	private volatile long throughput;
+
+	private volatile long targetInflightBytes;
+
+	private volatile int targetBuffersPerChannel;
+
+	public BufferDebloater(
+			BufferDebloatConfiguration configuration,
+			int bufferSize,
+			int numChannels,
+			int maxBuffersPerChannel) {
+
+		checkArgument(bufferSize > 0, "The buffer size must be positive.");
+		checkArgument(numChannels > 0, "The number of channels must be positive.");
+		checkArgument(maxBuffersPerChannel > 0, "The maximum number of buffers per channel must be positive.");
+
+		this.targetTotalTimeNanos = configuration.getTargetTotalTime().toNanos();
+		this.periodNanos = configuration.getPeriod().toNanos();
+		this.bufferSize = bufferSize;
+		this.numChannels = numChannels;
+		this.maxBuffersPerChannel = maxBuffersPerChannel;
+
+		this.targetBuffersPerChannel = maxBuffersPerChannel;
+		this.targetInflightBytes = (long) maxBuffersPerChannel * numChannels * bufferSize;
+	}
+
+	/**
+	 * Records a consumed buffer and recalculates the target once the current period is over.
+	 *
+	 * @param size the size of the consumed buffer in bytes
+	 * @param nowNanos the current time as given by {@link System#nanoTime()}
+	 * @return <tt>true</tt>, if the target was recalculated
+	 */
+	public boolean onBufferConsumed(int size, long nowNanos) {
+		if (periodStartNanos < 0) {
+			periodStartNanos = nowNanos;
+		}
+		bytesInPeriod += size;
+
+		final long elapsedNanos = nowNanos - periodStartNanos;
+		if (elapsedNanos < periodNanos) {
+			return false;
+		}
+
+		recalculate(elapsedNanos);
+
+		bytesInPeriod = 0;
+		periodStartNanos = nowNanos;
+		return true;
+	}
+
+	private void recalculate(long elapsedNanos) {
+		final double measuredThroughput = bytesInPeriod * 1_000_000_000.0 / elapsedNanos;
+		final double smoothedThroughput = throughput == 0 ?
+			measuredThroughput :
+			THROUGHPUT_SMOOTHING_FACTOR * measuredThroughput + (1 - THROUGHPUT_SMOOTHING_FACTOR) * throughput;
+		throughput = (long) smoothedThroughput;
+
+		final long desiredInflightBytes = (long) (smoothedThroughput * targetTotalTimeNanos / 1_000_000_000.0);
+		final long bytesPerChannel = (desiredInflightBytes + numChannels - 1) / numChannels;
+		final long buffersPerChannel = (bytesPerChannel + bufferSize - 1) / bufferSize;
+
+		targetBuffersPerChannel = (int) Math.max(1, Math.min(maxBuffersPerChannel, buffersPerChannel));
+		targetInflightBytes = desiredInflightBytes;
+	}
+
+	/**
+	 * Returns the number of buffers each channel should announce to its producer.
+	 */
+	public int getTargetBuffersPerChannel() {
+		return targetBuffersPerChannel;
+	}
+
+	/**
+	 * Returns the amount of in-flight data the gate should keep, in bytes.
+	 */
+	public long getTargetInflightBytes() {
+		return targetInflightBytes;
+	}
+
+	/**
+	 * Returns the smoothed consumption rate of the gate in bytes per second.
+	 */
+	public long getThroughput() {
+		return throughput;
+	}
+
+	@VisibleForTesting
+	int getMaxBuffersPerChannel() {
+		return maxBuffersPerChannel;
+	}
+}
@@ -27,6 +27,7 @@ import org.apache.flink.runtime.execution.CancelTaskException;
 import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
 import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferDecompressor;
 import org.apache.flink.runtime.io.network.partition.PartitionException;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
 import org.apache.flink.runtime.io.network.partition.ResultSubpartitionView;
@@ -39,6 +40,7 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
+import static org.apache.flink.util.Preconditions.checkState;
 
 /**
  * An input channel consumes a single {@link ResultSubpartitionView}.
@@ -304,6 +306,21 @@ public abstract class InputChannel {
 		return event.getClass() == CheckpointBarrier.class ? (CheckpointBarrier) event : null;
 	}
 
+	/**
+	 * Returns a retained view of the given received data buffer for persisting it as channel state.
+	 * Channel state is always persisted uncompressed, so compressed buffers are decompressed into a
+	 * new buffer.
+	 */
+	protected Buffer retainForChannelState(Buffer buffer) {
+		if (!buffer.isCompressed()) {
+			return buffer.retainBuffer();
+		}
+
+		final BufferDecompressor bufferDecompressor = inputGate.getBufferDecompressor();
+		checkState(bufferDecompressor != null, "Buffer decompressor not set.");
+		return bufferDecompressor.decompressToNewBuffer(buffer);
+	}
+
 	/**
 	 * A combination of a {@link Buffer} and a flag indicating availability of further buffers,
 	 * and the backlog length indicating how many non-event buffers are available in the
@@ -215,7 +215,7 @@ public class LocalInputChannel extends InputChannel implements BufferAvailabilit
 		if (notifyReceivedBarrier != null) {
 			receivedCheckpointId = notifyReceivedBarrier.getId();
 		} else if (receivedCheckpointId < lastRequestedCheckpointId && buffer.isBuffer()) {
-			inputGate.getBufferReceivedListener().notifyBufferReceived(buffer.retainBuffer(), channelInfo);
+			inputGate.getBufferReceivedListener().notifyBufferReceived(retainForChannelState(buffer), channelInfo);
 		}
 
 		numBytesIn.inc(buffer.getSize());
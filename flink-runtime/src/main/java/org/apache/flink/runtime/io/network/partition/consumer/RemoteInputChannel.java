@@ -43,6 +43,7 @@ import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
 import static org.apache.flink.util.Preconditions.checkState;
 
@@ -87,6 +88,16 @@ public class RemoteInputChannel extends InputChannel {
 	/** The number of available buffers that have not been announced to the producer yet. */
 	private final AtomicInteger unannouncedCredit = new AtomicInteger(0);
 
+	/**
+	 * The maximum number of buffers (including the exclusive ones) announced to the producer, as
+	 * set by the buffer debloating of the input gate. The exclusive buffers are always announced.
+	 */
+	private volatile int maxAnnouncedBuffers = Integer.MAX_VALUE;
+
+	/** The total size of the {@link #receivedBuffers} in bytes, which may be read without the lock. */
+	@GuardedBy("receivedBuffers")
+	private volatile long receivedBuffersSize;
+
 	/**
 	 * The latest already triggered checkpoint id which would be updated during
 	 * {@link #spillInflightBuffers(long, ChannelStateWriter)}.
@@ -178,6 +189,7 @@ public class RemoteInputChannel extends InputChannel {
 		synchronized (receivedBuffers) {
 			next = receivedBuffers.poll();
 			moreAvailable = !receivedBuffers.isEmpty();
+			receivedBuffersSize -= next.getSize();
 		}
 
 		numBytesIn.inc(next.getSize());
@@ -197,7 +209,7 @@ public class RemoteInputChannel extends InputChannel {
 					break;
 				}
 				if (buffer.isBuffer()) {
-					inflightBuffers.add(buffer.retainBuffer());
+					inflightBuffers.add(retainForChannelState(buffer));
 				}
 			}
 
@@ -244,6 +256,7 @@ public class RemoteInputChannel extends InputChannel {
 			ArrayDeque<Buffer> releasedBuffers;
 			synchronized (receivedBuffers) {
 				releasedBuffers = receivedBuffers;
+				receivedBuffersSize = 0;
 			}
 			bufferManager.releaseAllBuffers(releasedBuffers);
 
@@ -374,6 +387,16 @@ public class RemoteInputChannel extends InputChannel {
 		return Math.max(0, receivedBuffers.size());
 	}
 
+	/**
+	 * Gets the total size of the received buffers which have not been processed yet, in a
+	 * best-effort way.
+	 *
+	 * @return Size of the buffers queued for processing in bytes.
+	 */
+	public long unsynchronizedGetSizeOfQueuedBuffers() {
+		return Math.max(0, receivedBuffersSize);
+	}
+
 	public int unsynchronizedGetExclusiveBuffersUsed() {
 		return Math.max(0, initialCredit - bufferManager.unsynchronizedGetExclusiveBuffersUsed());
 	}
@@ -410,15 +433,33 @@ public class RemoteInputChannel extends InputChannel {
 		return bufferManager.requestBuffer();
 	}
 
+	/**
+	 * Limits the number of buffers announced to the producer. This only takes effect with the
+	 * next backlog announced by the producer and never limits the exclusive buffers.
+	 *
+	 * @param maxAnnouncedBuffers The maximum number of available buffers of this channel.
+	 */
+	void setMaxAnnouncedBuffers(int maxAnnouncedBuffers) {
+		checkArgument(maxAnnouncedBuffers > 0, "The maximum number of announced buffers must be positive.");
+		this.maxAnnouncedBuffers = maxAnnouncedBuffers;
+	}
+
+	@VisibleForTesting
+	int getMaxAnnouncedBuffers() {
+		return maxAnnouncedBuffers;
+	}
+
 	/**
 	 * Receives the backlog from the producer's buffer response. If the number of available
 	 * buffers is less than backlog + initialCredit, it will request floating buffers from
-	 * the buffer manager, and then notify unannounced credits to the producer.
+	 * the buffer manager, and then notify unannounced credits to the producer. The number of
+	 * required buffers is limited by the buffer debloating, if enabled.
 	 *
 	 * @param backlog The number of unsent buffers in the producer's sub partition.
 	 */
 	void onSenderBacklog(int backlog) throws IOException {
-		int numRequestedBuffers = bufferManager.requestFloatingBuffers(backlog + initialCredit);
+		final int numRequiredBuffers = Math.min(backlog + initialCredit, Math.max(initialCredit, maxAnnouncedBuffers));
+		int numRequestedBuffers = bufferManager.requestFloatingBuffers(numRequiredBuffers);
 		if (numRequestedBuffers > 0 && unannouncedCredit.getAndAdd(numRequestedBuffers) == 0) {
 			notifyCreditAvailable();
 		}
@@ -447,9 +488,10 @@ public class RemoteInputChannel extends InputChannel {
 
 				wasEmpty = receivedBuffers.isEmpty();
 				receivedBuffers.add(buffer);
+				receivedBuffersSize += buffer.getSize();
 
 				if (listener != null && buffer.isBuffer() && receivedCheckpointId < lastRequestedCheckpointId) {
-					notifyReceivedBuffer = buffer.retainBuffer();
+					notifyReceivedBuffer = retainForChannelState(buffer);
 				} else {
 					notifyReceivedBuffer = null;
 				}
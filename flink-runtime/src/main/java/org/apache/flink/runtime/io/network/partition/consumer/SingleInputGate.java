@@ -190,6 +190,10 @@ public class SingleInputGate extends IndexedInputGate {
 
 	private final MemorySegmentProvider memorySegmentProvider;
 
+	/** Adapts the credit announced by the remote channels to the consumption rate, if enabled. */
+	@Nullable
+	private BufferDebloater bufferDebloater;
+
 	public SingleInputGate(
 		String owningTaskName,
 		int gateIndex,
@@ -359,6 +363,20 @@ public class SingleInputGate extends IndexedInputGate {
 		return bufferReceivedListener;
 	}
 
+	/**
+	 * Sets the {@link BufferDebloater} of this gate. This method should be called only once, before
+	 * any data is consumed from this gate.
+	 */
+	public void setBufferDebloater(BufferDebloater bufferDebloater) {
+		checkState(this.bufferDebloater == null, "Bug in input gate setup logic: Already registered buffer debloater.");
+		this.bufferDebloater = checkNotNull(bufferDebloater);
+	}
+
+	@Nullable
+	public BufferDebloater getBufferDebloater() {
+		return bufferDebloater;
+	}
+
 	/**
 	 * Returns the type of this input channel's consumed result partition.
 	 *
@@ -380,6 +398,11 @@ public class SingleInputGate extends IndexedInputGate {
 		return memorySegmentProvider;
 	}
 
+	@Nullable
+	BufferDecompressor getBufferDecompressor() {
+		return bufferDecompressor;
+	}
+
 	public String getOwningTaskName() {
 		return owningTaskName;
 	}
@@ -618,12 +641,26 @@ public class SingleInputGate extends IndexedInputGate {
 		}
 
 		InputWithData<InputChannel, BufferAndAvailability> inputWithData = next.get();
+		if (bufferDebloater != null) {
+			onBufferConsumed(inputWithData.data.buffer().getSize());
+		}
 		return Optional.of(transformToBufferOrEvent(
 			inputWithData.data.buffer(),
 			inputWithData.moreAvailable,
 			inputWithData.input));
 	}
 
+	private void onBufferConsumed(int size) {
+		if (bufferDebloater.onBufferConsumed(size, System.nanoTime())) {
+			final int targetBuffersPerChannel = bufferDebloater.getTargetBuffersPerChannel();
+			for (InputChannel channel : channels) {
+				if (channel instanceof RemoteInputChannel) {
+					((RemoteInputChannel) channel).setMaxAnnouncedBuffers(targetBuffersPerChannel);
+				}
+			}
+		}
+	}
+
 	private Optional<InputWithData<InputChannel, BufferAndAvailability>> waitAndGetNextData(boolean blocking)
 			throws IOException, InterruptedException {
 		while (true) {
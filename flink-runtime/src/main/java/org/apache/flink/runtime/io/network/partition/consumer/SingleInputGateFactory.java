@@ -80,8 +80,14 @@ public class SingleInputGateFactory {
 
 	private final String compressionCodec;
 
+	private final boolean pipelinedShuffleCompressionEnabled;
+
+	private final String pipelinedCompressionCodec;
+
 	private final int networkBufferSize;
 
+	private final BufferDebloatConfiguration bufferDebloatConfiguration;
+
 	public SingleInputGateFactory(
 			@Nonnull ResourceID taskExecutorResourceId,
 			@Nonnull NettyShuffleEnvironmentConfiguration networkConfig,
@@ -96,7 +102,10 @@ public class SingleInputGateFactory {
 		this.floatingNetworkBuffersPerGate = networkConfig.floatingNetworkBuffersPerGate();
 		this.blockingShuffleCompressionEnabled = networkConfig.isBlockingShuffleCompressionEnabled();
 		this.compressionCodec = networkConfig.getCompressionCodec();
+		this.pipelinedShuffleCompressionEnabled = networkConfig.isPipelinedShuffleCompressionEnabled();
+		this.pipelinedCompressionCodec = networkConfig.getPipelinedCompressionCodec();
 		this.networkBufferSize = networkConfig.networkBufferSize();
+		this.bufferDebloatConfiguration = networkConfig.getBufferDebloatConfiguration();
 		this.connectionManager = connectionManager;
 		this.partitionManager = partitionManager;
 		this.taskEventPublisher = taskEventPublisher;
@@ -122,6 +131,8 @@ public class SingleInputGateFactory {
 		BufferDecompressor bufferDecompressor = null;
 		if (igdd.getConsumedPartitionType().isBlocking() && blockingShuffleCompressionEnabled) {
 			bufferDecompressor = new BufferDecompressor(networkBufferSize, compressionCodec);
+		} else if (igdd.getConsumedPartitionType().isPipelined() && pipelinedShuffleCompressionEnabled) {
+			bufferDecompressor = new BufferDecompressor(networkBufferSize, pipelinedCompressionCodec);
 		}
 
 		SingleInputGate inputGate = new SingleInputGate(
@@ -136,6 +147,14 @@ public class SingleInputGateFactory {
 			bufferDecompressor,
 			networkBufferPool);
 
+		if (bufferDebloatConfiguration.isEnabled()) {
+			inputGate.setBufferDebloater(new BufferDebloater(
+				bufferDebloatConfiguration,
+				networkBufferSize,
+				igdd.getShuffleDescriptors().length,
+				networkBuffersPerChannel + floatingNetworkBuffersPerGate));
+		}
+
 		createInputChannels(owningTaskName, igdd, inputGate, metrics);
 		return inputGate;
 	}
@@ -37,6 +37,11 @@ public class MetricNames {
 	public static final String IO_NUM_BYTES_IN_RATE = IO_NUM_BYTES_IN + SUFFIX_RATE;
 	public static final String IO_NUM_BYTES_OUT_RATE = IO_NUM_BYTES_OUT + SUFFIX_RATE;
 
+	public static final String IO_NUM_BYTES_IN_DIRECT = "numBytesInDirect";
+	public static final String IO_NUM_BYTES_IN_SPANNING = "numBytesInSpanning";
+	public static final String IO_NUM_BYTES_IN_DIRECT_RATE = IO_NUM_BYTES_IN_DIRECT + SUFFIX_RATE;
+	public static final String IO_NUM_BYTES_IN_SPANNING_RATE = IO_NUM_BYTES_IN_SPANNING + SUFFIX_RATE;
+
 	public static final String IO_NUM_BUFFERS_IN = "numBuffersIn";
 	public static final String IO_NUM_BUFFERS_OUT = "numBuffersOut";
 	public static final String IO_NUM_BUFFERS_OUT_RATE = IO_NUM_BUFFERS_OUT + SUFFIX_RATE;
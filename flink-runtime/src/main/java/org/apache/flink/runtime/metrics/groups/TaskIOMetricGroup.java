@@ -39,12 +39,16 @@ public class TaskIOMetricGroup extends ProxyMetricGroup<TaskMetricGroup> {
 	private final SumCounter numRecordsIn;
 	private final SumCounter numRecordsOut;
 	private final Counter numBuffersOut;
+	private final Counter numBytesInDirect;
+	private final Counter numBytesInSpanning;
 
 	private final Meter numBytesInRate;
 	private final Meter numBytesOutRate;
 	private final Meter numRecordsInRate;
 	private final Meter numRecordsOutRate;
 	private final Meter numBuffersOutRate;
+	private final Meter numBytesInDirectRate;
+	private final Meter numBytesInSpanningRate;
 	private final Meter idleTimePerSecond;
 
 	public TaskIOMetricGroup(TaskMetricGroup parent) {
@@ -63,6 +67,11 @@ public class TaskIOMetricGroup extends ProxyMetricGroup<TaskMetricGroup> {
 		this.numBuffersOut = counter(MetricNames.IO_NUM_BUFFERS_OUT);
 		this.numBuffersOutRate = meter(MetricNames.IO_NUM_BUFFERS_OUT_RATE, new MeterView(numBuffersOut));
 
+		this.numBytesInDirect = counter(MetricNames.IO_NUM_BYTES_IN_DIRECT);
+		this.numBytesInSpanning = counter(MetricNames.IO_NUM_BYTES_IN_SPANNING);
+		this.numBytesInDirectRate = meter(MetricNames.IO_NUM_BYTES_IN_DIRECT_RATE, new MeterView(numBytesInDirect));
+		this.numBytesInSpanningRate = meter(MetricNames.IO_NUM_BYTES_IN_SPANNING_RATE, new MeterView(numBytesInSpanning));
+
 		this.idleTimePerSecond = meter(MetricNames.TASK_IDLE_TIME, new MeterView(new SimpleCounter()));
 	}
 
@@ -94,6 +103,14 @@ public class TaskIOMetricGroup extends ProxyMetricGroup<TaskMetricGroup> {
 		return numBuffersOut;
 	}
 
+	public Counter getNumBytesInDirectCounter() {
+		return numBytesInDirect;
+	}
+
+	public Counter getNumBytesInSpanningCounter() {
+		return numBytesInSpanning;
+	}
+
 	public Meter getIdleTimeMsPerSecond() {
 		return idleTimePerSecond;
 	}
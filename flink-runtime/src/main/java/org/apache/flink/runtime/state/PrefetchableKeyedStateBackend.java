@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import java.util.Collection;
+
+/**
+ * A {@link KeyedStateBackend} which can read the state of several keys in one batch, ahead of the processing of
+ * these keys. Backends which keep their state on disk use this to replace many point lookups by one batched lookup.
+ *
+ * <p>Prefetching is only a hint, the state which is accessed afterwards is always consistent with all updates,
+ * including the updates made after the prefetch.
+ *
+ * @param <K> The key by which state is keyed.
+ */
+public interface PrefetchableKeyedStateBackend<K> extends KeyedStateBackend<K> {
+
+	/**
+	 * Reads the state of the given keys ahead of their processing. The prefetched state of previous calls may be
+	 * dropped.
+	 *
+	 * @param keys The keys which are processed next, in processing order.
+	 */
+	void prefetch(Collection<K> keys) throws Exception;
+}
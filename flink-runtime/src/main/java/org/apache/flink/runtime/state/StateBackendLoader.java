@@ -23,6 +23,7 @@ import org.apache.flink.configuration.Configuration;
 import org.apache.flink.configuration.IllegalConfigurationException;
 import org.apache.flink.configuration.ReadableConfig;
 import org.apache.flink.core.fs.Path;
+import org.apache.flink.runtime.state.changelog.ChangelogStateBackend;
 import org.apache.flink.runtime.state.filesystem.FsStateBackend;
 import org.apache.flink.runtime.state.filesystem.FsStateBackendFactory;
 import org.apache.flink.runtime.state.memory.MemoryStateBackend;
@@ -169,6 +170,9 @@ public class StateBackendLoader {
 	 * <p>Refer to {@link #loadStateBackendFromConfig(ReadableConfig, ClassLoader, Logger)} for details on
 	 * how the state backend is loaded from the configuration.
 	 *
+	 * <p>If {@link CheckpointingOptions#CHANGELOG_ENABLED} is set, the resulting state backend is wrapped by a
+	 * {@link ChangelogStateBackend}.
+	 *
 	 * @param config The configuration to load the state backend from
 	 * @param classLoader The class loader that should be used to load the state backend
 	 * @param logger Optionally, a logger to log actions to (may be null)
@@ -230,6 +234,14 @@ public class StateBackendLoader {
 			}
 		}
 
+		// (4) log the changes of the keyed state in front of the backend, if enabled
+		if (config.get(CheckpointingOptions.CHANGELOG_ENABLED) && !(backend instanceof ChangelogStateBackend)) {
+			if (logger != null) {
+				logger.info("Wrapping state backend {} with the changelog state backend", backend);
+			}
+			return new ChangelogStateBackend(backend).configure(config, classLoader);
+		}
+
 		return backend;
 	}
 
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.changelog;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.StateEntry;
+import org.apache.flink.runtime.state.heap.InternalKeyContext;
+import org.apache.flink.runtime.state.internal.InternalKvState;
+import org.apache.flink.util.FlinkRuntimeException;
+import org.apache.flink.util.function.SupplierWithException;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Base class for the wrappers of the states of a {@link ChangelogKeyedStateBackend}. Every change is applied to the
+ * wrapped state first and then logged.
+ *
+ * @param <K> The type of key the state is associated to
+ * @param <N> The type of the namespace
+ * @param <V> The type of values kept internally in state
+ * @param <S> Type of the wrapped state object
+ */
+abstract class AbstractChangelogState<K, N, V, S extends InternalKvState<K, N, V>> implements InternalKvState<K, N, V> {
+
+	/** Wrapped original state. */
+	final S original;
+
+	private final StateChangeLogger logger;
+
+	private final InternalKeyContext<K> keyContext;
+
+	private N currentNamespace;
+
+	AbstractChangelogState(S original, StateChangeLogger logger, InternalKeyContext<K> keyContext) {
+		this.original = original;
+		this.logger = logger;
+		this.keyContext = keyContext;
+	}
+
+	@Override
+	public TypeSerializer<K> getKeySerializer() {
+		return original.getKeySerializer();
+	}
+
+	@Override
+	public TypeSerializer<N> getNamespaceSerializer() {
+		return original.getNamespaceSerializer();
+	}
+
+	@Override
+	public TypeSerializer<V> getValueSerializer() {
+		return original.getValueSerializer();
+	}
+
+	@Override
+	public void setCurrentNamespace(N namespace) {
+		original.setCurrentNamespace(namespace);
+		this.currentNamespace = namespace;
+	}
+
+	@Override
+	public byte[] getSerializedValue(
+		byte[] serializedKeyAndNamespace,
+		TypeSerializer<K> safeKeySerializer,
+		TypeSerializer<N> safeNamespaceSerializer,
+		TypeSerializer<V> safeValueSerializer) throws Exception {
+		return original.getSerializedValue(
+			serializedKeyAndNamespace, safeKeySerializer, safeNamespaceSerializer, safeValueSerializer);
+	}
+
+	@Override
+	public void clear() {
+		original.clear();
+		try {
+			logClear(currentNamespace);
+		} catch (IOException e) {
+			throw new FlinkRuntimeException("Failed to log a state change.", e);
+		}
+	}
+
+	@Override
+	public StateIncrementalVisitor<K, N, V> getStateIncrementalVisitor(int recommendedMaxNumberOfReturnedRecords) {
+		return new LoggingStateIncrementalVisitor(original.getStateIncrementalVisitor(recommendedMaxNumberOfReturnedRecords));
+	}
+
+	// ------------------------------------------------------------------------
+	//  Logging
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Starts a change of the current key in the given namespace.
+	 */
+	DataOutputView beginChange(N namespace) throws IOException {
+		return beginChange(keyContext.getCurrentKey(), namespace);
+	}
+
+	void endChange(byte changeKind) throws IOException {
+		logger.endChange(keyContext.getCurrentKeyGroupIndex(), changeKind);
+	}
+
+	void logSet(N namespace, @Nullable V value) throws IOException {
+		if (value == null) {
+			logClear(namespace);
+		} else {
+			getValueSerializer().serialize(value, beginChange(namespace));
+			endChange(StateChangeLogger.SET);
+		}
+	}
+
+	void logClear(N namespace) throws IOException {
+		beginChange(namespace);
+		endChange(StateChangeLogger.CLEAR);
+	}
+
+	/**
+	 * Logs the merge of the given namespaces into the target namespace, as the clear of the sources and the new
+	 * value of the target.
+	 */
+	void logMerge(N target, Collection<N> sources, @Nullable V mergedValue) throws IOException {
+		for (N source : sources) {
+			if (source != null && !source.equals(target)) {
+				logClear(source);
+			}
+		}
+		logSet(target, mergedValue);
+	}
+
+	N getCurrentNamespace() {
+		return currentNamespace;
+	}
+
+	/**
+	 * Reads from the wrapped state in the given namespace and restores the current namespace afterwards.
+	 */
+	<R> R readInNamespace(N namespace, SupplierWithException<R, Exception> reader) throws Exception {
+		original.setCurrentNamespace(namespace);
+		try {
+			return reader.get();
+		} finally {
+			if (currentNamespace != null) {
+				original.setCurrentNamespace(currentNamespace);
+			}
+		}
+	}
+
+	private DataOutputView beginChange(K key, N namespace) throws IOException {
+		final DataOutputView out = logger.beginChange();
+		getKeySerializer().serialize(key, out);
+		getNamespaceSerializer().serialize(namespace, out);
+		return out;
+	}
+
+	/**
+	 * Logs the changes which are made through a {@link StateIncrementalVisitor}, which are not bound to the current
+	 * key.
+	 */
+	private class LoggingStateIncrementalVisitor implements StateIncrementalVisitor<K, N, V> {
+
+		private final StateIncrementalVisitor<K, N, V> visitor;
+
+		LoggingStateIncrementalVisitor(StateIncrementalVisitor<K, N, V> visitor) {
+			this.visitor = visitor;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return visitor.hasNext();
+		}
+
+		@Override
+		public Collection<StateEntry<K, N, V>> nextEntries() {
+			return visitor.nextEntries();
+		}
+
+		@Override
+		public void remove(StateEntry<K, N, V> stateEntry) {
+			visitor.remove(stateEntry);
+			try {
+				beginChange(stateEntry.getKey(), stateEntry.getNamespace());
+				endChange(stateEntry.getKey(), StateChangeLogger.CLEAR);
+			} catch (IOException e) {
+				throw new FlinkRuntimeException("Failed to log a state change.", e);
+			}
+		}
+
+		@Override
+		public void update(StateEntry<K, N, V> stateEntry, V newValue) {
+			visitor.update(stateEntry, newValue);
+			try {
+				getValueSerializer().serialize(newValue, beginChange(stateEntry.getKey(), stateEntry.getNamespace()));
+				endChange(stateEntry.getKey(), StateChangeLogger.SET);
+			} catch (IOException e) {
+				throw new FlinkRuntimeException("Failed to log a state change.", e);
+			}
+		}
+
+		private void endChange(K key, byte changeKind) throws IOException {
+			logger.endChange(
+				KeyGroupRangeAssignment.assignToKeyGroup(key, keyContext.getNumberOfKeyGroups()), changeKind);
+		}
+	}
+}
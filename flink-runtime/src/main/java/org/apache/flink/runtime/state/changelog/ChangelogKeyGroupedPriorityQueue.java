@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.changelog;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyGroupedInternalPriorityQueue;
+import org.apache.flink.runtime.state.Keyed;
+import org.apache.flink.util.CloseableIterator;
+import org.apache.flink.util.FlinkRuntimeException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * This class wraps a priority queue of a {@link ChangelogKeyedStateBackend} with changelog logic. Every added and
+ * removed element is logged in the key group of its key.
+ *
+ * @param <T> type of the stored elements.
+ */
+class ChangelogKeyGroupedPriorityQueue<T extends Keyed<?>> implements KeyGroupedInternalPriorityQueue<T> {
+
+	private final KeyGroupedInternalPriorityQueue<T> original;
+
+	private final StateChangeLogger logger;
+
+	private final TypeSerializer<T> elementSerializer;
+
+	private final int numberOfKeyGroups;
+
+	ChangelogKeyGroupedPriorityQueue(
+		KeyGroupedInternalPriorityQueue<T> original,
+		StateChangeLogger logger,
+		TypeSerializer<T> elementSerializer,
+		int numberOfKeyGroups) {
+		this.original = original;
+		this.logger = logger;
+		this.elementSerializer = elementSerializer;
+		this.numberOfKeyGroups = numberOfKeyGroups;
+	}
+
+	@Nullable
+	@Override
+	public T poll() {
+		final T polled = original.poll();
+		if (polled != null) {
+			log(polled, StateChangeLogger.REMOVE);
+		}
+		return polled;
+	}
+
+	@Nullable
+	@Override
+	public T peek() {
+		return original.peek();
+	}
+
+	@Override
+	public boolean add(@Nonnull T toAdd) {
+		final boolean headChanged = original.add(toAdd);
+		log(toAdd, StateChangeLogger.PUT);
+		return headChanged;
+	}
+
+	@Override
+	public boolean remove(@Nonnull T toRemove) {
+		final boolean headChanged = original.remove(toRemove);
+		log(toRemove, StateChangeLogger.REMOVE);
+		return headChanged;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return original.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return original.size();
+	}
+
+	@Override
+	public void addAll(@Nullable Collection<? extends T> toAdd) {
+		original.addAll(toAdd);
+		if (toAdd != null) {
+			for (T element : toAdd) {
+				log(element, StateChangeLogger.PUT);
+			}
+		}
+	}
+
+	@Nonnull
+	@Override
+	public CloseableIterator<T> iterator() {
+		return original.iterator();
+	}
+
+	@Nonnull
+	@Override
+	public Set<T> getSubsetForKeyGroup(int keyGroupId) {
+		return original.getSubsetForKeyGroup(keyGroupId);
+	}
+
+	private void log(T element, byte changeKind) {
+		try {
+			elementSerializer.serialize(element, logger.beginChange());
+			logger.endChange(KeyGroupRangeAssignment.assignToKeyGroup(element.getKey(), numberOfKeyGroups), changeKind);
+		} catch (IOException e) {
+			throw new FlinkRuntimeException("Failed to log a state change.", e);
+		}
+	}
+}
@@ -0,0 +1,765 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.changelog;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.State;
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerSchemaCompatibility;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.core.fs.CloseableRegistry;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.checkpoint.CheckpointType;
+import org.apache.flink.runtime.concurrent.FutureUtils;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
+import org.apache.flink.runtime.state.AsyncSnapshotCallable;
+import org.apache.flink.runtime.state.CheckpointStorageLocationReference;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.CheckpointedStateScope;
+import org.apache.flink.runtime.state.KeyGroupedInternalPriorityQueue;
+import org.apache.flink.runtime.state.KeyGroupsStateHandle;
+import org.apache.flink.runtime.state.Keyed;
+import org.apache.flink.runtime.state.KeyedStateFunction;
+import org.apache.flink.runtime.state.KeyedStateHandle;
+import org.apache.flink.runtime.state.PriorityComparable;
+import org.apache.flink.runtime.state.RegisteredKeyValueStateBackendMetaInfo;
+import org.apache.flink.runtime.state.RegisteredPriorityQueueStateBackendMetaInfo;
+import org.apache.flink.runtime.state.SnapshotResult;
+import org.apache.flink.runtime.state.StateHandleID;
+import org.apache.flink.runtime.state.StateSnapshotTransformer.StateSnapshotTransformFactory;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.changelog.ChangelogRestoreOperation.PendingState;
+import org.apache.flink.runtime.state.changelog.ChangelogRestoreOperation.RestoredKvState;
+import org.apache.flink.runtime.state.changelog.ChangelogRestoreOperation.RestoredPriorityQueue;
+import org.apache.flink.runtime.state.heap.HeapPriorityQueueElement;
+import org.apache.flink.runtime.state.heap.InternalKeyContextImpl;
+import org.apache.flink.runtime.state.internal.InternalAggregatingState;
+import org.apache.flink.runtime.state.internal.InternalKvState;
+import org.apache.flink.runtime.state.internal.InternalListState;
+import org.apache.flink.runtime.state.internal.InternalMapState;
+import org.apache.flink.runtime.state.internal.InternalReducingState;
+import org.apache.flink.runtime.state.internal.InternalValueState;
+import org.apache.flink.runtime.state.metainfo.StateMetaInfoSnapshot;
+import org.apache.flink.runtime.state.ttl.TtlTimeProvider;
+import org.apache.flink.runtime.util.ExecutorThreadFactory;
+import org.apache.flink.util.FlinkRuntimeException;
+import org.apache.flink.util.IOUtils;
+import org.apache.flink.util.StateMigrationException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RunnableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A keyed state backend which logs the changes of the keyed state of another backend. See
+ * {@link ChangelogStateBackend} for an overview.
+ *
+ * <p>All states of the wrapped backend are wrapped by states which log their changes to a {@link StateChangelogWriter}.
+ * A checkpoint consists of the last materialization of the wrapped backend and the segments of the changelog since
+ * then. A materialization is a full snapshot of the wrapped backend which is taken with the first checkpoint after
+ * the materialization interval elapsed, but which completes independently of the checkpoint. The changelog is cut at
+ * the start of the materialization, so the segments after the cut complement it.
+ *
+ * <p>Savepoints are taken by the wrapped backend directly and do not involve the changelog.
+ *
+ * @param <K> The key by which state is keyed.
+ */
+public class ChangelogKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ChangelogKeyedStateBackend.class);
+
+	/** Materializations are full snapshots of the wrapped backend, which are self-contained like savepoints. */
+	private static final CheckpointOptions MATERIALIZATION_OPTIONS = new CheckpointOptions(
+		CheckpointType.SAVEPOINT, CheckpointStorageLocationReference.getDefault(), true, false);
+
+	/** The backend which holds the state. */
+	private final AbstractKeyedStateBackend<K> delegate;
+
+	private final StateChangelogWriter writer;
+
+	/** Runs the asynchronous part of the materializations. */
+	private final ExecutorService materializationExecutor;
+
+	/** The minimum time between the start of two materializations. */
+	private final long materializationInterval;
+
+	/** Makes the ids of the materializations unique across backends. */
+	private final String backendIdentifier;
+
+	/** The restored changes of the states which were not yet registered, by name. */
+	private final Map<String, PendingState> pendingKvStates;
+
+	/** The restored changes of the priority queues which were not yet registered, by name. */
+	private final Map<String, PendingState> pendingPriorityQueues;
+
+	/** The states which were created from their pending changes before their registration, by name. */
+	private final Map<String, RestoredKvState<K>> restoredKvStates;
+
+	/** The priority queues which were created from their pending changes before their registration, by name. */
+	private final Map<String, RestoredPriorityQueue> restoredPriorityQueues;
+
+	/** The id of the next state which logs its changes. */
+	private int nextStateId;
+
+	/** The last completed materialization, null if the first checkpoint has to wait for a materialization. */
+	@Nullable
+	private Materialization baseline;
+
+	@Nullable
+	private PendingMaterialization pendingMaterialization;
+
+	private long nextMaterializationId;
+
+	private long lastMaterializationTime;
+
+	public ChangelogKeyedStateBackend(
+		AbstractKeyedStateBackend<K> delegate,
+		TaskKvStateRegistry kvStateRegistry,
+		ExecutionConfig executionConfig,
+		ClassLoader userCodeClassLoader,
+		TtlTimeProvider ttlTimeProvider,
+		CloseableRegistry cancelStreamRegistry,
+		long materializationInterval,
+		long segmentSize) {
+		super(
+			kvStateRegistry,
+			delegate.getKeySerializer(),
+			userCodeClassLoader,
+			executionConfig,
+			ttlTimeProvider,
+			cancelStreamRegistry,
+			delegate.getKeyGroupCompressionDecorator(),
+			new InternalKeyContextImpl<>(delegate.getKeyGroupRange(), delegate.getNumberOfKeyGroups()));
+		this.delegate = delegate;
+		this.backendIdentifier = UUID.randomUUID().toString();
+		this.writer = new StateChangelogWriter(backendIdentifier + "-changelog-", getKeySerializer(), segmentSize);
+		this.materializationExecutor = Executors.newSingleThreadExecutor(
+			new ExecutorThreadFactory("changelog-materialization"));
+		this.materializationInterval = materializationInterval;
+		this.pendingKvStates = new HashMap<>();
+		this.pendingPriorityQueues = new HashMap<>();
+		this.restoredKvStates = new HashMap<>();
+		this.restoredPriorityQueues = new HashMap<>();
+
+		// without restored state, the changelog from its start is a complete checkpoint
+		this.baseline = new Materialization(0L, 0L, null, null);
+		this.nextMaterializationId = 1L;
+		this.lastMaterializationTime = System.currentTimeMillis();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Restore
+	// ------------------------------------------------------------------------
+
+	Map<String, PendingState> getPendingKvStates() {
+		return pendingKvStates;
+	}
+
+	Map<String, PendingState> getPendingPriorityQueues() {
+		return pendingPriorityQueues;
+	}
+
+	/**
+	 * Continues the restored changelog, whose materialization and segments remain part of the checkpoints until the
+	 * next materialization.
+	 */
+	void continueChangelog(ChangelogStateHandle restored) {
+		for (Map.Entry<StateHandleID, StreamStateHandle> segment : restored.getChangelogSegments().entrySet()) {
+			writer.addRestoredSegment(segment.getKey(), segment.getValue());
+		}
+		this.baseline = new Materialization(
+			restored.getMaterializationId(),
+			0L,
+			restored.getMaterializedStateId(),
+			restored.getMaterializedState());
+		this.nextMaterializationId = restored.getMaterializationId() + 1;
+	}
+
+	/**
+	 * Starts a new changelog after restoring state which the changelog cannot continue, so the first checkpoint
+	 * waits for a materialization of the restored state.
+	 */
+	void startNewChangelog(long lastMaterializationId) {
+		this.baseline = null;
+		this.nextMaterializationId = lastMaterializationId + 1;
+	}
+
+	/**
+	 * Creates the states with pending changes in the wrapped backend, before the wrapped backend is snapshotted.
+	 * Otherwise their changes would be missing from the snapshot.
+	 */
+	private void restorePendingStates() throws Exception {
+		if (pendingKvStates.isEmpty() && pendingPriorityQueues.isEmpty()) {
+			return;
+		}
+
+		for (Map.Entry<String, PendingState> pendingState : pendingKvStates.entrySet()) {
+			restoredKvStates.put(
+				pendingState.getKey(),
+				ChangelogRestoreOperation.restoreKvState(delegate, pendingState.getValue()));
+		}
+		pendingKvStates.clear();
+
+		for (Map.Entry<String, PendingState> pendingQueue : pendingPriorityQueues.entrySet()) {
+			restoredPriorityQueues.put(
+				pendingQueue.getKey(),
+				ChangelogRestoreOperation.restorePriorityQueue(delegate, pendingQueue.getValue()));
+		}
+		pendingPriorityQueues.clear();
+
+		restoreCurrentKey();
+	}
+
+	/**
+	 * Sets the current key of the wrapped backend again, after replaying the changelog changed it.
+	 */
+	private void restoreCurrentKey() {
+		final K currentKey = getCurrentKey();
+		if (currentKey != null) {
+			delegate.setCurrentKey(currentKey);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  State access
+	// ------------------------------------------------------------------------
+
+	@Override
+	public void setCurrentKey(K newKey) {
+		super.setCurrentKey(newKey);
+		delegate.setCurrentKey(newKey);
+	}
+
+	@Override
+	public <N> Stream<K> getKeys(String state, N namespace) {
+		return delegate.getKeys(state, namespace);
+	}
+
+	@Override
+	public <N, S extends State, T> void applyToAllKeys(
+		final N namespace,
+		final TypeSerializer<N> namespaceSerializer,
+		final StateDescriptor<S, T> stateDescriptor,
+		final KeyedStateFunction<K, S> function) throws Exception {
+
+		// the keys are collected first, because the function may change the state which the keys are read from
+		try (Stream<K> keyStream = getKeys(stateDescriptor.getName(), namespace)) {
+			final List<K> keys = keyStream.collect(Collectors.toList());
+
+			final S state = getPartitionedState(namespace, namespaceSerializer, stateDescriptor);
+
+			for (K key : keys) {
+				setCurrentKey(key);
+				function.process(key, state);
+			}
+		}
+	}
+
+	@Override
+	public int numKeyValueStateEntries() {
+		return delegate.numKeyValueStateEntries();
+	}
+
+	@Override
+	public boolean supportsAsynchronousSnapshots() {
+		return delegate.supportsAsynchronousSnapshots();
+	}
+
+	@Override
+	public boolean requiresLegacySynchronousTimerSnapshots() {
+		return delegate.requiresLegacySynchronousTimerSnapshots();
+	}
+
+	@Nonnull
+	@Override
+	@SuppressWarnings("unchecked")
+	public <N, SV, SEV, S extends State, IS extends S> IS createInternalState(
+		@Nonnull TypeSerializer<N> namespaceSerializer,
+		@Nonnull StateDescriptor<S, SV> stateDesc,
+		@Nonnull StateSnapshotTransformFactory<SEV> snapshotTransformFactory) throws Exception {
+
+		final InternalKvState<K, N, SV> original;
+		final RestoredKvState<K> restored = restoredKvStates.get(stateDesc.getName());
+		if (restored != null) {
+			final StateMetaInfoSnapshot restoredMetaInfo = restored.getMetaInfoSnapshot();
+			restored.getMetaInfo().checkStateMetaInfo(stateDesc);
+			checkCompatibleAsIs(
+				restoredMetaInfo, StateMetaInfoSnapshot.CommonSerializerKeys.NAMESPACE_SERIALIZER, namespaceSerializer);
+			checkCompatibleAsIs(
+				restoredMetaInfo, StateMetaInfoSnapshot.CommonSerializerKeys.VALUE_SERIALIZER, stateDesc.getSerializer());
+			restored.bindFunctions(stateDesc);
+			original = (InternalKvState<K, N, SV>) restored.getState();
+		} else {
+			final PendingState pendingState = pendingKvStates.get(stateDesc.getName());
+			if (pendingState == null) {
+				original = delegate.createInternalState(namespaceSerializer, stateDesc, snapshotTransformFactory);
+			} else {
+				original = createPendingKvState(
+					pendingState.getMetaInfoSnapshot(), namespaceSerializer, stateDesc, snapshotTransformFactory);
+				pendingKvStates.remove(stateDesc.getName());
+				pendingState.replayKvState(delegate, original);
+				restoreCurrentKey();
+			}
+		}
+
+		final StateChangeLogger logger = new StateChangeLogger(
+			writer,
+			nextStateId++,
+			StateChangelogWriter.KV_STATE_META_INFO,
+			new RegisteredKeyValueStateBackendMetaInfo<>(
+				stateDesc.getType(),
+				stateDesc.getName(),
+				original.getNamespaceSerializer(),
+				original.getValueSerializer()).snapshot());
+		logger.logMetaInfo();
+
+		switch (stateDesc.getType()) {
+			case VALUE:
+				return (IS) new ChangelogValueState<>((InternalValueState<K, N, SV>) original, logger, keyContext);
+			case LIST:
+				return (IS) new ChangelogListState<>((InternalListState<K, N, ?>) original, logger, keyContext);
+			case MAP:
+				return (IS) new ChangelogMapState<>((InternalMapState<K, N, ?, ?>) original, logger, keyContext);
+			case REDUCING:
+				return (IS) new ChangelogReducingState<>((InternalReducingState<K, N, SV>) original, logger, keyContext);
+			case AGGREGATING:
+				return (IS) new ChangelogAggregatingState<>(
+					(InternalAggregatingState<K, N, ?, SV, ?>) original, logger, keyContext);
+			default:
+				throw new FlinkRuntimeException(String.format(
+					"State %s of type %s is not supported by the changelog state backend.",
+					stateDesc.getName(), stateDesc.getType()));
+		}
+	}
+
+	@Nonnull
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T extends HeapPriorityQueueElement & PriorityComparable & Keyed> KeyGroupedInternalPriorityQueue<T> create(
+		@Nonnull String stateName,
+		@Nonnull TypeSerializer<T> byteOrderedElementSerializer) {
+
+		// timers which are written to the raw keyed state of the operator are not part of the changelog
+		if (delegate.requiresLegacySynchronousTimerSnapshots()) {
+			return delegate.create(stateName, byteOrderedElementSerializer);
+		}
+
+		final KeyGroupedInternalPriorityQueue<T> original;
+		final RestoredPriorityQueue restored = restoredPriorityQueues.get(stateName);
+		if (restored != null) {
+			try {
+				checkCompatibleAsIs(
+					restored.getMetaInfoSnapshot(),
+					StateMetaInfoSnapshot.CommonSerializerKeys.VALUE_SERIALIZER,
+					byteOrderedElementSerializer);
+			} catch (StateMigrationException e) {
+				throw new FlinkRuntimeException(e);
+			}
+			original = (KeyGroupedInternalPriorityQueue<T>) restored.getQueue();
+		} else {
+			original = delegate.create(stateName, byteOrderedElementSerializer);
+			final PendingState pendingQueue = pendingPriorityQueues.remove(stateName);
+			if (pendingQueue != null) {
+				try {
+					pendingQueue.replayPriorityQueue(original);
+				} catch (Exception e) {
+					throw new FlinkRuntimeException("Could not restore the priority queue " + stateName + '.', e);
+				}
+			}
+		}
+
+		final StateChangeLogger logger = new StateChangeLogger(
+			writer,
+			nextStateId++,
+			StateChangelogWriter.PQ_STATE_META_INFO,
+			new RegisteredPriorityQueueStateBackendMetaInfo<>(stateName, byteOrderedElementSerializer).snapshot());
+		try {
+			logger.logMetaInfo();
+		} catch (IOException e) {
+			throw new FlinkRuntimeException("Failed to log a state change.", e);
+		}
+		return new ChangelogKeyGroupedPriorityQueue<>(
+			original, logger, byteOrderedElementSerializer, numberOfKeyGroups);
+	}
+
+	/**
+	 * Creates a state in the wrapped backend which the user registers and which has pending changes. The state is
+	 * checked against the meta info with which the changelog last wrote it. The changes are replayed as objects, so a
+	 * serializer which requires migration is fine. A serializer which is compatible after reconfiguration, like a
+	 * Kryo serializer with other registrations, is used reconfigured, as other backends do for restored state.
+	 */
+	@SuppressWarnings("unchecked")
+	private <N, SV, SEV> InternalKvState<K, N, SV> createPendingKvState(
+		StateMetaInfoSnapshot pendingMetaInfo,
+		TypeSerializer<N> namespaceSerializer,
+		StateDescriptor<?, SV> stateDesc,
+		StateSnapshotTransformFactory<SEV> snapshotTransformFactory) throws Exception {
+
+		new RegisteredKeyValueStateBackendMetaInfo<>(pendingMetaInfo).checkStateMetaInfo(stateDesc);
+		final TypeSerializer<N> pendingNamespaceSerializer = checkCompatible(
+			pendingMetaInfo, StateMetaInfoSnapshot.CommonSerializerKeys.NAMESPACE_SERIALIZER, namespaceSerializer, false);
+		final TypeSerializer<SV> pendingStateSerializer = checkCompatible(
+			pendingMetaInfo, StateMetaInfoSnapshot.CommonSerializerKeys.VALUE_SERIALIZER, stateDesc.getSerializer(), false);
+
+		final StateDescriptor<?, SV> pendingStateDesc = pendingStateSerializer == stateDesc.getSerializer()
+			? stateDesc
+			: ChangelogRestoreOperation.withStateSerializer(stateDesc, pendingStateSerializer);
+		return delegate.createInternalState(
+			pendingNamespaceSerializer, (StateDescriptor<State, SV>) pendingStateDesc, snapshotTransformFactory);
+	}
+
+	/**
+	 * Checks that the serializer of a state which was restored from the changelog did not change. The wrapped
+	 * backend already holds the state with the restored serializer, so the state cannot be migrated.
+	 */
+	private static void checkCompatibleAsIs(
+		StateMetaInfoSnapshot restoredMetaInfo,
+		StateMetaInfoSnapshot.CommonSerializerKeys serializerKey,
+		TypeSerializer<?> newSerializer) throws StateMigrationException {
+
+		checkCompatible(restoredMetaInfo, serializerKey, newSerializer, true);
+	}
+
+	/**
+	 * Checks a new serializer against the serializer with which the changelog last wrote a state, and returns the
+	 * serializer for the state, which is the new serializer reconfigured if required.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> TypeSerializer<T> checkCompatible(
+		StateMetaInfoSnapshot previousMetaInfo,
+		StateMetaInfoSnapshot.CommonSerializerKeys serializerKey,
+		TypeSerializer<T> newSerializer,
+		boolean withoutMigration) throws StateMigrationException {
+
+		final TypeSerializerSnapshot<T> previousSerializerSnapshot =
+			(TypeSerializerSnapshot<T>) previousMetaInfo.getTypeSerializerSnapshot(serializerKey);
+		if (previousSerializerSnapshot == null) {
+			return newSerializer;
+		}
+
+		final TypeSerializerSchemaCompatibility<T> compatibility =
+			previousSerializerSnapshot.resolveSchemaCompatibility(newSerializer);
+		if (compatibility.isIncompatible()) {
+			throw new StateMigrationException("The new " + serializerKey + " for state " + previousMetaInfo.getName() +
+				" must not be incompatible.");
+		}
+		if (withoutMigration && compatibility.isCompatibleAfterMigration()) {
+			throw new StateMigrationException("The new " + serializerKey + " for state " + previousMetaInfo.getName() +
+				" must not require migration, because the state changed since its last materialization.");
+		}
+		return compatibility.isCompatibleWithReconfiguredSerializer()
+			? compatibility.getReconfiguredSerializer()
+			: newSerializer;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Snapshots
+	// ------------------------------------------------------------------------
+
+	@Nonnull
+	@Override
+	public RunnableFuture<SnapshotResult<KeyedStateHandle>> snapshot(
+		long checkpointId,
+		long timestamp,
+		@Nonnull CheckpointStreamFactory streamFactory,
+		@Nonnull CheckpointOptions checkpointOptions) throws Exception {
+
+		if (checkpointOptions.getCheckpointType().isSavepoint()) {
+			restorePendingStates();
+			return delegate.snapshot(checkpointId, timestamp, streamFactory, checkpointOptions);
+		}
+
+		writer.setStreamFactory(streamFactory);
+		completeMaterialization();
+		writer.closeSegment();
+
+		if (pendingMaterialization == null &&
+				(baseline == null || System.currentTimeMillis() - lastMaterializationTime >= materializationInterval)) {
+			restorePendingStates();
+			startMaterialization(checkpointId, timestamp, streamFactory);
+		}
+
+		// without a baseline, the checkpoint consists of the pending materialization and has to wait for it
+		final CompletableFuture<Materialization> materialization;
+		final long firstSequenceNumber;
+		if (baseline != null) {
+			materialization = CompletableFuture.completedFuture(baseline);
+			firstSequenceNumber = baseline.changelogSequenceNumber;
+		} else if (pendingMaterialization != null) {
+			materialization = pendingMaterialization.materialization;
+			firstSequenceNumber = pendingMaterialization.changelogSequenceNumber;
+		} else {
+			throw new IOException("Could not start the materialization of the keyed state.");
+		}
+
+		final Map<StateHandleID, CompletableFuture<StreamStateHandle>> segments = new LinkedHashMap<>();
+		for (StateChangelogWriter.Segment segment : writer.getSegmentsFrom(firstSequenceNumber)) {
+			segments.put(segment.id, segment.handle);
+		}
+
+		return new AsyncSnapshotCallable<SnapshotResult<KeyedStateHandle>>() {
+			@Override
+			protected SnapshotResult<KeyedStateHandle> callInternal() throws Exception {
+				// the materialization and the segments are shared with other checkpoints, so a cancellation of this
+				// snapshot only cancels the wait for them
+				final CompletableFuture<Void> uploads = CompletableFuture.allOf(
+					Stream.concat(Stream.of(materialization), segments.values().stream())
+						.toArray(CompletableFuture[]::new));
+				snapshotCloseableRegistry.registerCloseable(() -> uploads.cancel(false));
+				uploads.get();
+
+				final Materialization completedMaterialization = materialization.get();
+				final LinkedHashMap<StateHandleID, StreamStateHandle> uploadedSegments =
+					new LinkedHashMap<>(segments.size());
+				for (Map.Entry<StateHandleID, CompletableFuture<StreamStateHandle>> segment : segments.entrySet()) {
+					uploadedSegments.put(segment.getKey(), segment.getValue().get());
+				}
+
+				if (completedMaterialization.materializedState == null && uploadedSegments.isEmpty()) {
+					return SnapshotResult.empty();
+				}
+				return SnapshotResult.of(new ChangelogStateHandle(
+					keyGroupRange,
+					completedMaterialization.materializationId,
+					completedMaterialization.materializedStateId,
+					completedMaterialization.materializedState,
+					uploadedSegments));
+			}
+
+			@Override
+			protected void cleanupProvidedResources() {
+				// the segments and materializations are shared with other checkpoints
+			}
+
+			@Override
+			protected void logAsyncSnapshotComplete(long startTime) {
+				LOG.debug("Asynchronous part of the changelog snapshot of checkpoint {} took {} ms.",
+					checkpointId, System.currentTimeMillis() - startTime);
+			}
+		}.toAsyncSnapshotFutureTask(cancelStreamRegistry);
+	}
+
+	/**
+	 * Makes the pending materialization the baseline of the following checkpoints, once it completed.
+	 */
+	private void completeMaterialization() {
+		if (pendingMaterialization == null || !pendingMaterialization.materialization.isDone()) {
+			return;
+		}
+
+		try {
+			final Materialization materialization = pendingMaterialization.materialization.get();
+			baseline = materialization;
+			writer.truncate(materialization.changelogSequenceNumber);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			LOG.warn("Materialization {} of the keyed state failed, it is retried with the next checkpoint.",
+				pendingMaterialization.materializationId, e.getCause());
+		} finally {
+			pendingMaterialization = null;
+		}
+	}
+
+	private void startMaterialization(
+		long checkpointId,
+		long timestamp,
+		CheckpointStreamFactory streamFactory) {
+
+		final long materializationId = nextMaterializationId++;
+		final long changelogSequenceNumber = writer.startEpoch();
+		lastMaterializationTime = System.currentTimeMillis();
+
+		final RunnableFuture<SnapshotResult<KeyedStateHandle>> snapshot;
+		try {
+			snapshot = delegate.snapshot(
+				checkpointId, timestamp, new SharedScopeStreamFactory(streamFactory), MATERIALIZATION_OPTIONS);
+		} catch (Exception e) {
+			LOG.warn("Could not start materialization {} of the keyed state.", materializationId, e);
+			return;
+		}
+
+		final CompletableFuture<Materialization> materialization = new CompletableFuture<>();
+		materializationExecutor.execute(() -> {
+			try {
+				final SnapshotResult<KeyedStateHandle> result = FutureUtils.runIfNotDoneAndGet(snapshot);
+				if (result != null && result.getTaskLocalSnapshot() != null) {
+					result.getTaskLocalSnapshot().discardState();
+				}
+
+				final KeyedStateHandle materializedState = result != null ? result.getJobManagerOwnedSnapshot() : null;
+				if (materializedState != null && !(materializedState instanceof KeyGroupsStateHandle)) {
+					materializedState.discardState();
+					throw new IllegalStateException("Unexpected materialized state: " + materializedState);
+				}
+
+				materialization.complete(new Materialization(
+					materializationId,
+					changelogSequenceNumber,
+					materializedState != null ?
+						new StateHandleID(backendIdentifier + "-materialization-" + materializationId) :
+						null,
+					(KeyGroupsStateHandle) materializedState));
+			} catch (Throwable t) {
+				materialization.completeExceptionally(t);
+			}
+		});
+		pendingMaterialization = new PendingMaterialization(materializationId, changelogSequenceNumber, materialization);
+	}
+
+	@Override
+	public void notifyCheckpointComplete(long checkpointId) {
+		// the materializations of the wrapped backend are not checkpoints, so the notifications are not forwarded
+	}
+
+	// ------------------------------------------------------------------------
+	//  Shutdown
+	// ------------------------------------------------------------------------
+
+	@Override
+	public void dispose() {
+		// cancels the running snapshots before the uploads and materializations they wait for
+		IOUtils.closeQuietly(cancelStreamRegistry);
+		materializationExecutor.shutdownNow();
+		IOUtils.closeQuietly(writer);
+		delegate.dispose();
+		super.dispose();
+		pendingKvStates.clear();
+		pendingPriorityQueues.clear();
+		restoredKvStates.clear();
+		restoredPriorityQueues.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		// cancels the running snapshots before the uploads and materializations they wait for
+		try {
+			super.close();
+		} finally {
+			final PendingMaterialization materialization = pendingMaterialization;
+			try {
+				IOUtils.closeAll(Arrays.<AutoCloseable>asList(
+					materializationExecutor::shutdownNow,
+					() -> {
+						if (materialization != null) {
+							materialization.materialization.cancel(false);
+						}
+					},
+					writer,
+					delegate));
+			} catch (IOException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException("Could not close the changelog keyed state backend.", e);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ChangelogKeyedStateBackend{delegate=" + delegate + '}';
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A completed materialization, which together with the changelog from the given sequence number forms the state
+	 * of a checkpoint.
+	 */
+	private static final class Materialization {
+
+		final long materializationId;
+
+		/** The sequence number of the first segment of the changelog which is not part of the materialization. */
+		final long changelogSequenceNumber;
+
+		@Nullable
+		final StateHandleID materializedStateId;
+
+		@Nullable
+		final KeyGroupsStateHandle materializedState;
+
+		Materialization(
+			long materializationId,
+			long changelogSequenceNumber,
+			@Nullable StateHandleID materializedStateId,
+			@Nullable KeyGroupsStateHandle materializedState) {
+			this.materializationId = materializationId;
+			this.changelogSequenceNumber = changelogSequenceNumber;
+			this.materializedStateId = materializedStateId;
+			this.materializedState = materializedState;
+		}
+	}
+
+	private static final class PendingMaterialization {
+
+		final long materializationId;
+
+		final long changelogSequenceNumber;
+
+		final CompletableFuture<Materialization> materialization;
+
+		PendingMaterialization(
+			long materializationId,
+			long changelogSequenceNumber,
+			CompletableFuture<Materialization> materialization) {
+			this.materializationId = materializationId;
+			this.changelogSequenceNumber = changelogSequenceNumber;
+			this.materialization = materialization;
+		}
+	}
+
+	/**
+	 * Creates all streams of a materialization with shared scope, so that the materialization outlives the
+	 * checkpoint which started it.
+	 */
+	private static final class SharedScopeStreamFactory implements CheckpointStreamFactory {
+
+		private final CheckpointStreamFactory streamFactory;
+
+		SharedScopeStreamFactory(CheckpointStreamFactory streamFactory) {
+			this.streamFactory = streamFactory;
+		}
+
+		@Override
+		public CheckpointStateOutputStream createCheckpointStateOutputStream(
+			CheckpointedStateScope scope) throws IOException {
+			return streamFactory.createCheckpointStateOutputStream(CheckpointedStateScope.SHARED);
+		}
+	}
+}
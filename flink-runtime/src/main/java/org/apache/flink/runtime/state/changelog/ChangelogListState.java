@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.changelog;
+
+import org.apache.flink.api.common.typeutils.base.ListSerializer;
+import org.apache.flink.runtime.state.heap.InternalKeyContext;
+import org.apache.flink.runtime.state.internal.InternalListState;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class wraps list state with changelog logic. Appended elements are logged on their own, without the rest of
+ * the list.
+ *
+ * @param <K> The type of key the state is associated to
+ * @param <N> The type of the namespace
+ * @param <T> Type of the user entry value of state
+ */
+class ChangelogListState<K, N, T>
+	extends AbstractChangelogState<K, N, List<T>, InternalListState<K, N, T>>
+	implements InternalListState<K, N, T> {
+
+	ChangelogListState(
+		InternalListState<K, N, T> original,
+		StateChangeLogger logger,
+		InternalKeyContext<K> keyContext) {
+		super(original, logger, keyContext);
+	}
+
+	@Override
+	public Iterable<T> get() throws Exception {
+		return original.get();
+	}
+
+	@Override
+	public void add(T value) throws Exception {
+		original.add(value);
+		logAdded(Collections.singletonList(value));
+	}
+
+	@Override
+	public void addAll(List<T> values) throws Exception {
+		original.addAll(values);
+		if (values != null && !values.isEmpty()) {
+			logAdded(values);
+		}
+	}
+
+	@Override
+	public void update(List<T> values) throws Exception {
+		original.update(values);
+		logSet(getCurrentNamespace(), values == null || values.isEmpty() ? null : values);
+	}
+
+	@Override
+	public List<T> getInternal() throws Exception {
+		return original.getInternal();
+	}
+
+	@Override
+	public void updateInternal(List<T> valueToStore) throws Exception {
+		original.updateInternal(valueToStore);
+		logSet(getCurrentNamespace(), valueToStore);
+	}
+
+	@Override
+	public void mergeNamespaces(N target, Collection<N> sources) throws Exception {
+		original.mergeNamespaces(target, sources);
+		logMerge(target, sources, readInNamespace(target, original::getInternal));
+	}
+
+	private void logAdded(List<T> values) throws Exception {
+		getValueSerializer().serialize(values, beginChange(getCurrentNamespace()));
+		endChange(StateChangeLogger.ADD_ELEMENTS);
+	}
+
+	@Override
+	public ListSerializer<T> getValueSerializer() {
+		return (ListSerializer<T>) super.getValueSerializer();
+	}
+}
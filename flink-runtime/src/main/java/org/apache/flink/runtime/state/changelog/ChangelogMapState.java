@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.changelog;
+
+import org.apache.flink.api.common.typeutils.base.MapSerializer;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.runtime.state.heap.InternalKeyContext;
+import org.apache.flink.runtime.state.internal.InternalMapState;
+import org.apache.flink.util.FlinkRuntimeException;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * This class wraps map state with changelog logic. Every put and remove is logged on its own, without the rest of
+ * the map. This includes the changes made through the iterators and entries of the state.
+ *
+ * @param <K> The type of key the state is associated to
+ * @param <N> The type of the namespace
+ * @param <UK> Type of the user entry key of state
+ * @param <UV> Type of the user entry value of state
+ */
+class ChangelogMapState<K, N, UK, UV>
+	extends AbstractChangelogState<K, N, Map<UK, UV>, InternalMapState<K, N, UK, UV>>
+	implements InternalMapState<K, N, UK, UV> {
+
+	ChangelogMapState(
+		InternalMapState<K, N, UK, UV> original,
+		StateChangeLogger logger,
+		InternalKeyContext<K> keyContext) {
+		super(original, logger, keyContext);
+	}
+
+	@Override
+	public UV get(UK key) throws Exception {
+		return original.get(key);
+	}
+
+	@Override
+	public void put(UK key, UV value) throws Exception {
+		original.put(key, value);
+		logPut(key, value);
+	}
+
+	@Override
+	public void putAll(Map<UK, UV> map) throws Exception {
+		original.putAll(map);
+		if (map != null) {
+			for (Map.Entry<UK, UV> entry : map.entrySet()) {
+				logPut(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	@Override
+	public void remove(UK key) throws Exception {
+		original.remove(key);
+		logRemove(key);
+	}
+
+	@Override
+	public boolean contains(UK key) throws Exception {
+		return original.contains(key);
+	}
+
+	@Override
+	public Iterable<Map.Entry<UK, UV>> entries() throws Exception {
+		return entries(e -> e);
+	}
+
+	@Override
+	public Iterable<UK> keys() throws Exception {
+		return entries(Map.Entry::getKey);
+	}
+
+	@Override
+	public Iterable<UV> values() throws Exception {
+		return entries(Map.Entry::getValue);
+	}
+
+	@Override
+	public Iterator<Map.Entry<UK, UV>> iterator() throws Exception {
+		final Iterator<Map.Entry<UK, UV>> iterator = original.iterator();
+		return iterator == null ? null : new LoggingIterator<>(iterator, e -> e);
+	}
+
+	@Override
+	public boolean isEmpty() throws Exception {
+		return original.isEmpty();
+	}
+
+	@Override
+	public MapSerializer<UK, UV> getValueSerializer() {
+		return (MapSerializer<UK, UV>) super.getValueSerializer();
+	}
+
+	private <R> Iterable<R> entries(Function<Map.Entry<UK, UV>, R> resultMapper) throws Exception {
+		// the wrapped state may return null instead of no entries, which is passed on
+		final Iterable<Map.Entry<UK, UV>> entries = original.entries();
+		return entries == null ? null : () -> new LoggingIterator<>(entries.iterator(), resultMapper);
+	}
+
+	private void logPut(UK key, UV value) throws IOException {
+		final MapSerializer<UK, UV> serializer = getValueSerializer();
+		final DataOutputView out = beginChange(getCurrentNamespace());
+		serializer.getKeySerializer().serialize(key, out);
+		if (value == null) {
+			out.writeBoolean(true);
+		} else {
+			out.writeBoolean(false);
+			serializer.getValueSerializer().serialize(value, out);
+		}
+		endChange(StateChangeLogger.PUT);
+	}
+
+	private void logRemove(UK key) throws IOException {
+		getValueSerializer().getKeySerializer().serialize(key, beginChange(getCurrentNamespace()));
+		endChange(StateChangeLogger.REMOVE);
+	}
+
+	/**
+	 * Iterator over the entries of the wrapped state which logs the removal of entries and the update of their
+	 * values. Both refer to the current key and namespace at the time of the change.
+	 */
+	private class LoggingIterator<R> implements Iterator<R> {
+
+		private final Iterator<Map.Entry<UK, UV>> originalIterator;
+
+		private final Function<Map.Entry<UK, UV>, R> resultMapper;
+
+		private Map.Entry<UK, UV> lastReturned;
+
+		LoggingIterator(Iterator<Map.Entry<UK, UV>> originalIterator, Function<Map.Entry<UK, UV>, R> resultMapper) {
+			this.originalIterator = originalIterator;
+			this.resultMapper = resultMapper;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return originalIterator.hasNext();
+		}
+
+		@Override
+		public R next() {
+			lastReturned = new LoggingEntry(originalIterator.next());
+			return resultMapper.apply(lastReturned);
+		}
+
+		@Override
+		public void remove() {
+			originalIterator.remove();
+			try {
+				logRemove(lastReturned.getKey());
+			} catch (IOException e) {
+				throw new FlinkRuntimeException("Failed to log a state change.", e);
+			}
+		}
+	}
+
+	private class LoggingEntry implements Map.Entry<UK, UV> {
+
+		private final Map.Entry<UK, UV> entry;
+
+		LoggingEntry(Map.Entry<UK, UV> entry) {
+			this.entry = entry;
+		}
+
+		@Override
+		public UK getKey() {
+			return entry.getKey();
+		}
+
+		@Override
+		public UV getValue() {
+			return entry.getValue();
+		}
+
+		@Override
+		public UV setValue(UV value) {
+			final UV oldValue = entry.setValue(value);
+			try {
+				logPut(entry.getKey(), value);
+			} catch (IOException e) {
+				throw new FlinkRuntimeException("Failed to log a state change.", e);
+			}
+			return oldValue;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			final Map.Entry<?, ?> that = (Map.Entry<?, ?>) o;
+			return Objects.equals(getKey(), that.getKey()) && Objects.equals(getValue(), that.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+}
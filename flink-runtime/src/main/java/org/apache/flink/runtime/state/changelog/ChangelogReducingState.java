@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.changelog;
+
+import org.apache.flink.runtime.state.heap.InternalKeyContext;
+import org.apache.flink.runtime.state.internal.InternalReducingState;
+
+import java.util.Collection;
+
+/**
+ * This class wraps reducing state with changelog logic. The reduced value is logged after every change.
+ *
+ * @param <K> The type of key the state is associated to
+ * @param <N> The type of the namespace
+ * @param <T> Type of the user value of state
+ */
+class ChangelogReducingState<K, N, T>
+	extends AbstractChangelogState<K, N, T, InternalReducingState<K, N, T>>
+	implements InternalReducingState<K, N, T> {
+
+	ChangelogReducingState(
+		InternalReducingState<K, N, T> original,
+		StateChangeLogger logger,
+		InternalKeyContext<K> keyContext) {
+		super(original, logger, keyContext);
+	}
+
+	@Override
+	public T get() throws Exception {
+		return original.get();
+	}
+
+	@Override
+	public void add(T value) throws Exception {
+		original.add(value);
+		logSet(getCurrentNamespace(), original.getInternal());
+	}
+
+	@Override
+	public T getInternal() throws Exception {
+		return original.getInternal();
+	}
+
+	@Override
+	public void updateInternal(T valueToStore) throws Exception {
+		original.updateInternal(valueToStore);
+		logSet(getCurrentNamespace(), valueToStore);
+	}
+
+	@Override
+	public void mergeNamespaces(N target, Collection<N> sources) throws Exception {
+		original.mergeNamespaces(target, sources);
+		logMerge(target, sources, readInNamespace(target, original::getInternal));
+	}
+}
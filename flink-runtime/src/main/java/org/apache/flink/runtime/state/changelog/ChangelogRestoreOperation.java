@@ -0,0 +1,703 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.changelog;
+
+import org.apache.flink.api.common.functions.AggregateFunction;
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ReducingStateDescriptor;
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerSchemaCompatibility;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.api.common.typeutils.base.ListSerializer;
+import org.apache.flink.api.common.typeutils.base.MapSerializer;
+import org.apache.flink.core.fs.CloseableRegistry;
+import org.apache.flink.core.fs.FSDataInputStream;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupedInternalPriorityQueue;
+import org.apache.flink.runtime.state.Keyed;
+import org.apache.flink.runtime.state.PriorityComparable;
+import org.apache.flink.runtime.state.RegisteredKeyValueStateBackendMetaInfo;
+import org.apache.flink.runtime.state.RegisteredPriorityQueueStateBackendMetaInfo;
+import org.apache.flink.runtime.state.RestoreOperation;
+import org.apache.flink.runtime.state.StateHandleID;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.heap.HeapPriorityQueueElement;
+import org.apache.flink.runtime.state.internal.InternalAppendingState;
+import org.apache.flink.runtime.state.internal.InternalKvState;
+import org.apache.flink.runtime.state.internal.InternalListState;
+import org.apache.flink.runtime.state.internal.InternalMapState;
+import org.apache.flink.runtime.state.internal.InternalValueState;
+import org.apache.flink.runtime.state.metainfo.StateMetaInfoSnapshot;
+import org.apache.flink.runtime.state.metainfo.StateMetaInfoSnapshotReadersWriters;
+import org.apache.flink.util.FlinkRuntimeException;
+import org.apache.flink.util.StateMigrationException;
+
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * Restores a {@link ChangelogKeyedStateBackend} from {@link ChangelogStateHandle ChangelogStateHandles}, after the
+ * wrapped backend restored their materialized state.
+ *
+ * <p>The segments of the changelog are read in order, skipping the changes of key groups outside of the key group
+ * range of the backend. The changes are not applied right away, but collected per state as {@link PendingState}.
+ * They are replayed when the user registers the state, so that the wrapped backend checks and migrates the restored
+ * state against the serializers of the user like for any other restored state. States which are still pending when
+ * the wrapped backend is snapshotted are created from their meta info before, see {@link RestoredKvState}.
+ *
+ * @param <K> The data type that the serializer serializes.
+ */
+class ChangelogRestoreOperation<K> implements RestoreOperation<Void> {
+
+	private final ChangelogKeyedStateBackend<K> backend;
+
+	private final Collection<ChangelogStateHandle> restoreStateHandles;
+
+	private final ClassLoader userCodeClassLoader;
+
+	private final CloseableRegistry cancelStreamRegistry;
+
+	private final KeyGroupRange keyGroupRange;
+
+	/** The changes of the current changelog by the id of their state, as bound by the last meta info record. */
+	private final Map<Integer, ChangeChunk> chunksById;
+
+	/** The payload of the change which is currently read, reused for all changes. */
+	private byte[] payload;
+
+	/** The key serializer of the current epoch of the changelog. */
+	@Nullable
+	private TypeSerializer<?> changelogKeySerializer;
+
+	ChangelogRestoreOperation(
+		ChangelogKeyedStateBackend<K> backend,
+		Collection<ChangelogStateHandle> restoreStateHandles,
+		ClassLoader userCodeClassLoader,
+		CloseableRegistry cancelStreamRegistry) {
+		this.backend = backend;
+		this.restoreStateHandles = restoreStateHandles;
+		this.userCodeClassLoader = userCodeClassLoader;
+		this.cancelStreamRegistry = cancelStreamRegistry;
+		this.keyGroupRange = backend.getKeyGroupRange();
+		this.chunksById = new HashMap<>();
+		this.payload = new byte[128];
+	}
+
+	@Override
+	public Void restore() throws Exception {
+		for (ChangelogStateHandle handle : restoreStateHandles) {
+			chunksById.clear();
+			changelogKeySerializer = null;
+			for (Map.Entry<StateHandleID, StreamStateHandle> segment : handle.getChangelogSegments().entrySet()) {
+				readSegment(segment.getValue());
+			}
+		}
+		return null;
+	}
+
+	private void readSegment(StreamStateHandle segment) throws Exception {
+		final FSDataInputStream inputStream = segment.openInputStream();
+		cancelStreamRegistry.registerCloseable(inputStream);
+		try {
+			final DataInputViewStreamWrapper in =
+				new DataInputViewStreamWrapper(new BufferedInputStream(inputStream));
+			int kind;
+			while ((kind = in.read()) != -1) {
+				switch ((byte) kind) {
+					case StateChangelogWriter.KEY_SERIALIZER:
+						changelogKeySerializer = readKeySerializer(in);
+						chunksById.clear();
+						break;
+					case StateChangelogWriter.KV_STATE_META_INFO:
+						bindState(in.readInt(), backend.getPendingKvStates(), readMetaInfo(in));
+						break;
+					case StateChangelogWriter.PQ_STATE_META_INFO:
+						bindState(in.readInt(), backend.getPendingPriorityQueues(), readMetaInfo(in));
+						break;
+					case StateChangelogWriter.STATE_CHANGE:
+						readChange(in);
+						break;
+					default:
+						throw new IOException("Unexpected record in changelog segment " + segment + ": " + kind);
+				}
+			}
+		} finally {
+			if (cancelStreamRegistry.unregisterCloseable(inputStream)) {
+				IOUtils.closeQuietly(inputStream);
+			}
+		}
+	}
+
+	private TypeSerializer<K> readKeySerializer(DataInputView in) throws Exception {
+		final TypeSerializerSnapshot<K> keySerializerSnapshot =
+			TypeSerializerSnapshot.readVersionedSnapshot(in, userCodeClassLoader);
+		final TypeSerializerSchemaCompatibility<K> keySerializerCompatibility =
+			keySerializerSnapshot.resolveSchemaCompatibility(backend.getKeySerializer());
+		if (keySerializerCompatibility.isCompatibleAfterMigration() || keySerializerCompatibility.isIncompatible()) {
+			throw new StateMigrationException("The new key serializer must be compatible.");
+		}
+		return keySerializerSnapshot.restoreSerializer();
+	}
+
+	private StateMetaInfoSnapshot readMetaInfo(DataInputView in) throws IOException {
+		return StateMetaInfoSnapshotReadersWriters
+			.getReader(
+				StateMetaInfoSnapshotReadersWriters.CURRENT_STATE_META_INFO_SNAPSHOT_VERSION,
+				StateMetaInfoSnapshotReadersWriters.StateTypeHint.KEYED_STATE)
+			.readStateMetaInfoSnapshot(in, userCodeClassLoader);
+	}
+
+	private void bindState(
+		int stateId,
+		Map<String, PendingState> pendingStates,
+		StateMetaInfoSnapshot metaInfo) throws IOException {
+
+		if (changelogKeySerializer == null) {
+			throw new IOException("The changelog refers to state " + metaInfo.getName() + " before its key serializer.");
+		}
+		final PendingState pendingState = pendingStates.computeIfAbsent(metaInfo.getName(), name -> new PendingState());
+		chunksById.put(stateId, pendingState.startChunk(changelogKeySerializer, metaInfo));
+	}
+
+	private void readChange(DataInputView in) throws IOException {
+		final int stateId = in.readInt();
+		final int keyGroup = in.readInt();
+		final byte changeKind = in.readByte();
+		final int length = in.readInt();
+
+		if (!keyGroupRange.contains(keyGroup)) {
+			in.skipBytesToRead(length);
+			return;
+		}
+
+		final ChangeChunk chunk = chunksById.get(stateId);
+		if (chunk == null) {
+			throw new IOException("The changelog refers to state " + stateId + " before its meta info.");
+		}
+		if (payload.length < length) {
+			payload = new byte[Math.max(length, 2 * payload.length)];
+		}
+		in.readFully(payload, 0, length);
+		chunk.add(changeKind, payload, length);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Pending states
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The changes of the changelog to one state which were not yet replayed. The changes are grouped in chunks,
+	 * each of which is written with the serializers of its meta info. The serializers may differ from chunk to
+	 * chunk, if the state was restored with other serializers while the changelog was continued.
+	 */
+	static final class PendingState {
+
+		private final List<ChangeChunk> chunks = new ArrayList<>();
+
+		ChangeChunk startChunk(TypeSerializer<?> keySerializer, StateMetaInfoSnapshot metaInfo) {
+			final ChangeChunk chunk = new ChangeChunk(keySerializer, metaInfo);
+			chunks.add(chunk);
+			return chunk;
+		}
+
+		/**
+		 * Returns the meta info with which the state was last written to the changelog.
+		 */
+		StateMetaInfoSnapshot getMetaInfoSnapshot() {
+			return chunks.get(chunks.size() - 1).metaInfo;
+		}
+
+		/**
+		 * Replays the changes to a keyed state of the wrapped backend. This changes the current key of the wrapped
+		 * backend and the current namespace of the state.
+		 */
+		@SuppressWarnings("unchecked")
+		<K> void replayKvState(
+			AbstractKeyedStateBackend<K> delegate,
+			InternalKvState<K, ?, ?> state) throws Exception {
+
+			for (ChangeChunk chunk : chunks) {
+				final KvStateChanges<K> changes = new KvStateChanges<>(
+					(InternalKvState<K, Object, Object>) state,
+					StateDescriptor.Type.valueOf(
+						chunk.metaInfo.getOption(StateMetaInfoSnapshot.CommonOptionsKeys.KEYED_STATE_TYPE)),
+					chunk.valueSerializer);
+				final DataInputDeserializer in = chunk.open();
+				while (in.available() > 0) {
+					final byte changeKind = in.readByte();
+					delegate.setCurrentKey((K) chunk.keySerializer.deserialize(in));
+					changes.state.setCurrentNamespace(chunk.namespaceSerializer.deserialize(in));
+					changes.apply(changeKind, in);
+				}
+			}
+		}
+
+		/**
+		 * Replays the changes to a priority queue of the wrapped backend, which are additions and removals of
+		 * elements.
+		 */
+		@SuppressWarnings("unchecked")
+		void replayPriorityQueue(KeyGroupedInternalPriorityQueue<?> queue) throws Exception {
+			final KeyGroupedInternalPriorityQueue<Object> elements = (KeyGroupedInternalPriorityQueue<Object>) queue;
+			for (ChangeChunk chunk : chunks) {
+				final DataInputDeserializer in = chunk.open();
+				while (in.available() > 0) {
+					final byte changeKind = in.readByte();
+					final Object element = chunk.valueSerializer.deserialize(in);
+					switch (changeKind) {
+						case StateChangeLogger.PUT:
+							elements.add(element);
+							break;
+						case StateChangeLogger.REMOVE:
+							elements.remove(element);
+							break;
+						default:
+							throw new IOException("Unexpected change of priority queue: " + changeKind);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The changes to a state which were written with the same serializers, in order. Each change is stored as its
+	 * kind followed by its payload.
+	 *
+	 * <p>The serializers are restored right away, because resolving the compatibility of a new serializer may
+	 * reconfigure the serializer snapshots of the meta info.
+	 */
+	private static final class ChangeChunk {
+
+		private final TypeSerializer<?> keySerializer;
+
+		private final StateMetaInfoSnapshot metaInfo;
+
+		/** The namespace serializer of a keyed state, null for a priority queue. */
+		@Nullable
+		private final TypeSerializer<Object> namespaceSerializer;
+
+		/** The value serializer of a keyed state, or the element serializer of a priority queue. */
+		private final TypeSerializer<Object> valueSerializer;
+
+		private final DataOutputSerializer changes;
+
+		ChangeChunk(TypeSerializer<?> keySerializer, StateMetaInfoSnapshot metaInfo) {
+			this.keySerializer = keySerializer;
+			this.metaInfo = metaInfo;
+			this.namespaceSerializer = restoreSerializer(metaInfo, StateMetaInfoSnapshot.CommonSerializerKeys.NAMESPACE_SERIALIZER);
+			this.valueSerializer = restoreSerializer(metaInfo, StateMetaInfoSnapshot.CommonSerializerKeys.VALUE_SERIALIZER);
+			this.changes = new DataOutputSerializer(256);
+		}
+
+		@Nullable
+		@SuppressWarnings("unchecked")
+		private static TypeSerializer<Object> restoreSerializer(
+			StateMetaInfoSnapshot metaInfo,
+			StateMetaInfoSnapshot.CommonSerializerKeys serializerKey) {
+			final TypeSerializerSnapshot<?> serializerSnapshot = metaInfo.getTypeSerializerSnapshot(serializerKey);
+			return serializerSnapshot != null ? (TypeSerializer<Object>) serializerSnapshot.restoreSerializer() : null;
+		}
+
+		void add(byte changeKind, byte[] payload, int length) throws IOException {
+			changes.writeByte(changeKind);
+			changes.write(payload, 0, length);
+		}
+
+		DataInputDeserializer open() {
+			return new DataInputDeserializer(changes.getSharedBuffer(), 0, changes.length());
+		}
+	}
+
+	/**
+	 * Applies the changes of a keyed state, see {@link StateChangeLogger} for the format of the changes.
+	 */
+	private static final class KvStateChanges<K> {
+
+		private final InternalKvState<K, Object, Object> state;
+
+		private final StateDescriptor.Type stateType;
+
+		private final TypeSerializer<Object> stateSerializer;
+
+		KvStateChanges(
+			InternalKvState<K, Object, Object> state,
+			StateDescriptor.Type stateType,
+			TypeSerializer<Object> stateSerializer) {
+			this.state = state;
+			this.stateType = stateType;
+			this.stateSerializer = stateSerializer;
+		}
+
+		@SuppressWarnings("unchecked")
+		void apply(byte changeKind, DataInputView in) throws Exception {
+			switch (changeKind) {
+				case StateChangeLogger.SET:
+					final Object value = stateSerializer.deserialize(in);
+					if (stateType == StateDescriptor.Type.VALUE) {
+						((InternalValueState<K, Object, Object>) state).update(value);
+					} else if (stateType == StateDescriptor.Type.MAP) {
+						final InternalMapState<K, Object, Object, Object> mapState = asMapState();
+						mapState.clear();
+						mapState.putAll((Map<Object, Object>) value);
+					} else {
+						((InternalAppendingState<K, Object, ?, Object, ?>) state).updateInternal(value);
+					}
+					break;
+				case StateChangeLogger.CLEAR:
+					state.clear();
+					break;
+				case StateChangeLogger.ADD_ELEMENTS:
+					asListState().addAll((List<Object>) stateSerializer.deserialize(in));
+					break;
+				case StateChangeLogger.PUT:
+					final MapSerializer<Object, Object> mapSerializer = (MapSerializer<Object, Object>) (TypeSerializer) stateSerializer;
+					final Object userKey = mapSerializer.getKeySerializer().deserialize(in);
+					final Object userValue = in.readBoolean() ? null : mapSerializer.getValueSerializer().deserialize(in);
+					asMapState().put(userKey, userValue);
+					break;
+				case StateChangeLogger.REMOVE:
+					final TypeSerializer<Object> userKeySerializer =
+						((MapSerializer<Object, Object>) (TypeSerializer) stateSerializer).getKeySerializer();
+					asMapState().remove(userKeySerializer.deserialize(in));
+					break;
+				default:
+					throw new IOException("Unexpected change of keyed state: " + changeKind);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private InternalListState<K, Object, Object> asListState() {
+			return (InternalListState<K, Object, Object>) (InternalKvState<K, Object, ?>) state;
+		}
+
+		@SuppressWarnings("unchecked")
+		private InternalMapState<K, Object, Object, Object> asMapState() {
+			return (InternalMapState<K, Object, Object, Object>) (InternalKvState<K, Object, ?>) state;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  Pending states without registration
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates a pending keyed state in the wrapped backend from the meta info of the changelog, and replays its
+	 * changes.
+	 */
+	@SuppressWarnings("unchecked")
+	static <K> RestoredKvState<K> restoreKvState(
+		AbstractKeyedStateBackend<K> delegate,
+		PendingState pendingState) throws Exception {
+
+		final StateMetaInfoSnapshot snapshot = pendingState.getMetaInfoSnapshot();
+		final RegisteredKeyValueStateBackendMetaInfo<Object, Object> metaInfo =
+			new RegisteredKeyValueStateBackendMetaInfo<>(snapshot);
+		final String name = metaInfo.getName();
+		final TypeSerializer<Object> stateSerializer = metaInfo.getStateSerializer();
+		final StateDescriptor<?, Object> stateDesc;
+		DeferredReduceFunction<Object> reduceFunction = null;
+		DeferredAggregateFunction<Object, Object, Object> aggregateFunction = null;
+		switch (metaInfo.getStateType()) {
+			case VALUE:
+				stateDesc = new ValueStateDescriptor<>(name, stateSerializer);
+				break;
+			case LIST:
+				stateDesc = (StateDescriptor) new ListStateDescriptor<>(
+					name, ((ListSerializer<Object>) (TypeSerializer) stateSerializer).getElementSerializer());
+				break;
+			case MAP:
+				final MapSerializer<Object, Object> mapSerializer =
+					(MapSerializer<Object, Object>) (TypeSerializer) stateSerializer;
+				stateDesc = (StateDescriptor) new MapStateDescriptor<>(
+					name, mapSerializer.getKeySerializer(), mapSerializer.getValueSerializer());
+				break;
+			case REDUCING:
+				reduceFunction = new DeferredReduceFunction<>(name);
+				stateDesc = new ReducingStateDescriptor<>(name, reduceFunction, stateSerializer);
+				break;
+			case AGGREGATING:
+				aggregateFunction = new DeferredAggregateFunction<>(name);
+				stateDesc = (StateDescriptor) new AggregatingStateDescriptor<>(name, aggregateFunction, stateSerializer);
+				break;
+			default:
+				throw new FlinkRuntimeException(String.format(
+					"State %s of type %s is not supported by the changelog state backend.",
+					name, metaInfo.getStateType()));
+		}
+
+		final InternalKvState<K, Object, Object> state = (InternalKvState<K, Object, Object>)
+			delegate.createInternalState(metaInfo.getNamespaceSerializer(), (StateDescriptor) stateDesc);
+		pendingState.replayKvState(delegate, state);
+		return new RestoredKvState<>(state, snapshot, metaInfo, reduceFunction, aggregateFunction);
+	}
+
+	/**
+	 * Copies the state descriptor of the user with another serializer for the state. The copy is only used to create
+	 * the state in the wrapped backend, which does not read the time-to-live or queryable settings of the descriptor.
+	 */
+	@SuppressWarnings({"unchecked", "deprecation"})
+	static <T> StateDescriptor<?, T> withStateSerializer(
+		StateDescriptor<?, T> stateDesc,
+		TypeSerializer<T> stateSerializer) {
+
+		final String name = stateDesc.getName();
+		switch (stateDesc.getType()) {
+			case VALUE:
+				return new ValueStateDescriptor<>(name, stateSerializer, stateDesc.getDefaultValue());
+			case LIST:
+				return (StateDescriptor) new ListStateDescriptor<>(
+					name, ((ListSerializer<Object>) (TypeSerializer) stateSerializer).getElementSerializer());
+			case MAP:
+				final MapSerializer<Object, Object> mapSerializer =
+					(MapSerializer<Object, Object>) (TypeSerializer) stateSerializer;
+				return (StateDescriptor) new MapStateDescriptor<>(
+					name, mapSerializer.getKeySerializer(), mapSerializer.getValueSerializer());
+			case REDUCING:
+				return new ReducingStateDescriptor<>(
+					name, ((ReducingStateDescriptor<T>) (StateDescriptor) stateDesc).getReduceFunction(), stateSerializer);
+			case AGGREGATING:
+				return new AggregatingStateDescriptor<>(
+					name,
+					((AggregatingStateDescriptor<Object, T, Object>) (StateDescriptor) stateDesc).getAggregateFunction(),
+					stateSerializer);
+			default:
+				throw new FlinkRuntimeException(String.format(
+					"State %s of type %s is not supported by the changelog state backend.",
+					name, stateDesc.getType()));
+		}
+	}
+
+	/**
+	 * Creates a pending priority queue in the wrapped backend from the meta info of the changelog, and replays its
+	 * changes.
+	 */
+	static RestoredPriorityQueue restorePriorityQueue(
+		AbstractKeyedStateBackend<?> delegate,
+		PendingState pendingState) throws Exception {
+
+		final StateMetaInfoSnapshot snapshot = pendingState.getMetaInfoSnapshot();
+		final RegisteredPriorityQueueStateBackendMetaInfo<?> metaInfo =
+			new RegisteredPriorityQueueStateBackendMetaInfo<>(snapshot);
+		final KeyGroupedInternalPriorityQueue<?> queue = createPriorityQueue(delegate, metaInfo);
+		pendingState.replayPriorityQueue(queue);
+		return new RestoredPriorityQueue(queue, snapshot, metaInfo);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends HeapPriorityQueueElement & PriorityComparable & Keyed> KeyGroupedInternalPriorityQueue<T>
+		createPriorityQueue(
+			AbstractKeyedStateBackend<?> delegate,
+			RegisteredPriorityQueueStateBackendMetaInfo<?> metaInfo) {
+		return delegate.create(metaInfo.getName(), (TypeSerializer<T>) metaInfo.getElementSerializer());
+	}
+
+	// ------------------------------------------------------------------------
+	//  Restored states
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A keyed state of the wrapped backend which was created from the meta info of the changelog, because the
+	 * wrapped backend was snapshotted before the user registered it. The state is handed out when the user registers
+	 * a state with the same name, because backends do not support registering a restored state twice.
+	 *
+	 * @param <K> The type of key the state is associated to
+	 */
+	static final class RestoredKvState<K> {
+
+		private final InternalKvState<K, ?, ?> state;
+
+		private final StateMetaInfoSnapshot metaInfoSnapshot;
+
+		private final RegisteredKeyValueStateBackendMetaInfo<?, ?> metaInfo;
+
+		@Nullable
+		private final DeferredReduceFunction<?> reduceFunction;
+
+		@Nullable
+		private final DeferredAggregateFunction<?, ?, ?> aggregateFunction;
+
+		RestoredKvState(
+			InternalKvState<K, ?, ?> state,
+			StateMetaInfoSnapshot metaInfoSnapshot,
+			RegisteredKeyValueStateBackendMetaInfo<?, ?> metaInfo,
+			@Nullable DeferredReduceFunction<?> reduceFunction,
+			@Nullable DeferredAggregateFunction<?, ?, ?> aggregateFunction) {
+			this.state = state;
+			this.metaInfoSnapshot = metaInfoSnapshot;
+			this.metaInfo = metaInfo;
+			this.reduceFunction = reduceFunction;
+			this.aggregateFunction = aggregateFunction;
+		}
+
+		InternalKvState<K, ?, ?> getState() {
+			return state;
+		}
+
+		StateMetaInfoSnapshot getMetaInfoSnapshot() {
+			return metaInfoSnapshot;
+		}
+
+		RegisteredKeyValueStateBackendMetaInfo<?, ?> getMetaInfo() {
+			return metaInfo;
+		}
+
+		/**
+		 * Binds the functions of the user's state descriptor to the restored state.
+		 */
+		@SuppressWarnings("unchecked")
+		void bindFunctions(StateDescriptor<?, ?> stateDesc) {
+			if (reduceFunction != null) {
+				((DeferredReduceFunction<Object>) reduceFunction).setTarget(
+					((ReducingStateDescriptor<Object>) stateDesc).getReduceFunction());
+			}
+			if (aggregateFunction != null) {
+				((DeferredAggregateFunction<Object, Object, Object>) aggregateFunction).setTarget(
+					((AggregatingStateDescriptor<Object, Object, Object>) stateDesc).getAggregateFunction());
+			}
+		}
+	}
+
+	/**
+	 * A priority queue of the wrapped backend which was created from the meta info of the changelog, see
+	 * {@link RestoredKvState}.
+	 */
+	static final class RestoredPriorityQueue {
+
+		private final KeyGroupedInternalPriorityQueue<?> queue;
+
+		private final StateMetaInfoSnapshot metaInfoSnapshot;
+
+		private final RegisteredPriorityQueueStateBackendMetaInfo<?> metaInfo;
+
+		RestoredPriorityQueue(
+			KeyGroupedInternalPriorityQueue<?> queue,
+			StateMetaInfoSnapshot metaInfoSnapshot,
+			RegisteredPriorityQueueStateBackendMetaInfo<?> metaInfo) {
+			this.queue = queue;
+			this.metaInfoSnapshot = metaInfoSnapshot;
+			this.metaInfo = metaInfo;
+		}
+
+		KeyGroupedInternalPriorityQueue<?> getQueue() {
+			return queue;
+		}
+
+		StateMetaInfoSnapshot getMetaInfoSnapshot() {
+			return metaInfoSnapshot;
+		}
+
+		RegisteredPriorityQueueStateBackendMetaInfo<?> getMetaInfo() {
+			return metaInfo;
+		}
+	}
+
+	/**
+	 * A reduce function which forwards to the function of the user's state descriptor, once it is registered.
+	 * Replaying the changelog does not reduce, the function is only called after the registration.
+	 */
+	static final class DeferredReduceFunction<T> implements ReduceFunction<T> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String stateName;
+
+		private ReduceFunction<T> target;
+
+		DeferredReduceFunction(String stateName) {
+			this.stateName = stateName;
+		}
+
+		void setTarget(ReduceFunction<T> target) {
+			this.target = target;
+		}
+
+		@Override
+		public T reduce(T value1, T value2) throws Exception {
+			checkState(target != null, "The reducing state %s was used before it was registered.", stateName);
+			return target.reduce(value1, value2);
+		}
+	}
+
+	/**
+	 * An aggregate function which forwards to the function of the user's state descriptor, once it is registered.
+	 * Replaying the changelog does not aggregate, the function is only called after the registration.
+	 */
+	static final class DeferredAggregateFunction<IN, ACC, OUT> implements AggregateFunction<IN, ACC, OUT> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String stateName;
+
+		private AggregateFunction<IN, ACC, OUT> target;
+
+		DeferredAggregateFunction(String stateName) {
+			this.stateName = stateName;
+		}
+
+		void setTarget(AggregateFunction<IN, ACC, OUT> target) {
+			this.target = target;
+		}
+
+		@Override
+		public ACC createAccumulator() {
+			return getTarget().createAccumulator();
+		}
+
+		@Override
+		public ACC add(IN value, ACC accumulator) {
+			return getTarget().add(value, accumulator);
+		}
+
+		@Override
+		public OUT getResult(ACC accumulator) {
+			return getTarget().getResult(accumulator);
+		}
+
+		@Override
+		public ACC merge(ACC a, ACC b) {
+			return getTarget().merge(a, b);
+		}
+
+		private AggregateFunction<IN, ACC, OUT> getTarget() {
+			checkState(target != null, "The aggregating state %s was used before it was registered.", stateName);
+			return target;
+		}
+	}
+}
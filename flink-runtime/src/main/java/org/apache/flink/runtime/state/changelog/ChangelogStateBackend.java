@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.changelog;
+
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.configuration.CheckpointingOptions;
+import org.apache.flink.configuration.IllegalConfigurationException;
+import org.apache.flink.configuration.MemorySize;
+import org.apache.flink.configuration.ReadableConfig;
+import org.apache.flink.core.fs.CloseableRegistry;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.execution.Environment;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
+import org.apache.flink.runtime.state.AbstractStateBackend;
+import org.apache.flink.runtime.state.BackendBuildingException;
+import org.apache.flink.runtime.state.CheckpointStorage;
+import org.apache.flink.runtime.state.CompletedCheckpointStorageLocation;
+import org.apache.flink.runtime.state.ConfigurableStateBackend;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyedStateHandle;
+import org.apache.flink.runtime.state.OperatorStateBackend;
+import org.apache.flink.runtime.state.OperatorStateHandle;
+import org.apache.flink.runtime.state.StateBackend;
+import org.apache.flink.runtime.state.ttl.TtlTimeProvider;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * A state backend which records the changes of the keyed state of another state backend in a log, instead of
+ * snapshotting the whole state for every checkpoint.
+ *
+ * <p>The log is continuously written to the checkpoint file system, so a checkpoint only needs to upload the changes
+ * since the previous one and completes in time proportional to the rate of changes instead of the size of the state.
+ * In the background, the wrapped backend periodically materializes its state, after which the log before the
+ * materialization is no longer needed. A restore loads the last materialization into the wrapped backend and replays
+ * the log on top of it.
+ *
+ * <p>Savepoints and the operator state are written by the wrapped backend directly, as are the checkpoint storage and
+ * the resolution of checkpoint pointers.
+ *
+ * <p>The backend is enabled either by wrapping the state backend of the application, or by setting
+ * {@link CheckpointingOptions#CHANGELOG_ENABLED}, which wraps whichever backend is configured.
+ */
+@PublicEvolving
+public class ChangelogStateBackend extends AbstractStateBackend implements ConfigurableStateBackend {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The backend which holds the state. */
+	private final StateBackend delegate;
+
+	/** The minimum time between two materializations, null if not yet configured. */
+	@Nullable
+	private final Duration materializationInterval;
+
+	/** The size after which the changes are uploaded as a segment of the log, null if not yet configured. */
+	@Nullable
+	private final MemorySize segmentSize;
+
+	/**
+	 * Creates a changelog state backend which wraps the given backend. The materialization interval and the segment
+	 * size are taken from the configuration, or are the defaults.
+	 *
+	 * @param delegate The backend which holds the state.
+	 */
+	public ChangelogStateBackend(StateBackend delegate) {
+		this(delegate, null, null);
+	}
+
+	/**
+	 * Creates a changelog state backend which wraps the given backend.
+	 *
+	 * @param delegate The backend which holds the state.
+	 * @param materializationInterval The minimum time between two materializations of the state, null to take it
+	 *                                from the configuration.
+	 * @param segmentSize The size after which the changes are uploaded as a segment of the log, null to take it from
+	 *                    the configuration.
+	 */
+	public ChangelogStateBackend(
+			StateBackend delegate,
+			@Nullable Duration materializationInterval,
+			@Nullable MemorySize segmentSize) {
+		checkArgument(!(delegate instanceof ChangelogStateBackend), "The changelog state backend cannot be nested.");
+		checkArgument(materializationInterval == null || !materializationInterval.isNegative(),
+			"The materialization interval must not be negative.");
+		checkArgument(segmentSize == null || segmentSize.getBytes() > 0, "The segment size must be positive.");
+
+		this.delegate = checkNotNull(delegate);
+		this.materializationInterval = materializationInterval;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Private constructor that creates a re-configured copy of the state backend.
+	 *
+	 * @param original The state backend to re-configure.
+	 * @param config The configuration.
+	 * @param classLoader The class loader.
+	 */
+	private ChangelogStateBackend(ChangelogStateBackend original, ReadableConfig config, ClassLoader classLoader) {
+		this.delegate = original.delegate instanceof ConfigurableStateBackend ?
+			((ConfigurableStateBackend) original.delegate).configure(config, classLoader) :
+			original.delegate;
+		this.materializationInterval = original.materializationInterval != null ?
+			original.materializationInterval :
+			config.get(CheckpointingOptions.CHANGELOG_MATERIALIZATION_INTERVAL);
+		this.segmentSize = original.segmentSize != null ?
+			original.segmentSize :
+			config.get(CheckpointingOptions.CHANGELOG_SEGMENT_SIZE);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Properties
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Gets the backend which holds the state.
+	 */
+	public StateBackend getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Gets the minimum time between two materializations of the state.
+	 */
+	public Duration getMaterializationInterval() {
+		return materializationInterval != null ?
+			materializationInterval :
+			CheckpointingOptions.CHANGELOG_MATERIALIZATION_INTERVAL.defaultValue();
+	}
+
+	/**
+	 * Gets the size after which the changes are uploaded as a segment of the log.
+	 */
+	public MemorySize getSegmentSize() {
+		return segmentSize != null ? segmentSize : CheckpointingOptions.CHANGELOG_SEGMENT_SIZE.defaultValue();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Reconfiguration
+	// ------------------------------------------------------------------------
+
+	@Override
+	public ChangelogStateBackend configure(
+			ReadableConfig config,
+			ClassLoader classLoader) throws IllegalConfigurationException {
+		return new ChangelogStateBackend(this, config, classLoader);
+	}
+
+	// ------------------------------------------------------------------------
+	//  Checkpoint storage and state backends
+	// ------------------------------------------------------------------------
+
+	@Override
+	public CompletedCheckpointStorageLocation resolveCheckpoint(String externalPointer) throws IOException {
+		return delegate.resolveCheckpoint(externalPointer);
+	}
+
+	@Override
+	public CheckpointStorage createCheckpointStorage(JobID jobId) throws IOException {
+		return delegate.createCheckpointStorage(jobId);
+	}
+
+	@Override
+	public <K> AbstractKeyedStateBackend<K> createKeyedStateBackend(
+			Environment env,
+			JobID jobID,
+			String operatorIdentifier,
+			TypeSerializer<K> keySerializer,
+			int numberOfKeyGroups,
+			KeyGroupRange keyGroupRange,
+			TaskKvStateRegistry kvStateRegistry,
+			TtlTimeProvider ttlTimeProvider,
+			MetricGroup metricGroup,
+			@Nonnull Collection<KeyedStateHandle> stateHandles,
+			CloseableRegistry cancelStreamRegistry) throws IOException {
+
+		// the wrapped backend restores the materialized state, the changelog is replayed on top of it
+		final List<ChangelogStateHandle> changelogHandles = new ArrayList<>();
+		final List<KeyedStateHandle> delegateHandles = new ArrayList<>(stateHandles.size());
+		for (KeyedStateHandle handle : stateHandles) {
+			if (handle instanceof ChangelogStateHandle) {
+				final ChangelogStateHandle changelogHandle = (ChangelogStateHandle) handle;
+				changelogHandles.add(changelogHandle);
+				if (changelogHandle.getMaterializedState() != null) {
+					delegateHandles.add(changelogHandle.getMaterializedState());
+				}
+			} else if (handle != null) {
+				// a savepoint or a checkpoint of the wrapped backend alone
+				delegateHandles.add(handle);
+			}
+		}
+
+		final AbstractKeyedStateBackend<K> delegateBackend;
+		try {
+			delegateBackend = delegate.createKeyedStateBackend(
+				env,
+				jobID,
+				operatorIdentifier,
+				keySerializer,
+				numberOfKeyGroups,
+				keyGroupRange,
+				kvStateRegistry,
+				ttlTimeProvider,
+				metricGroup,
+				delegateHandles,
+				cancelStreamRegistry);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new BackendBuildingException("Failed to create the keyed state backend of " + delegate, e);
+		}
+
+		final ChangelogKeyedStateBackend<K> backend = new ChangelogKeyedStateBackend<>(
+			delegateBackend,
+			kvStateRegistry,
+			env.getExecutionConfig(),
+			env.getUserClassLoader(),
+			ttlTimeProvider,
+			cancelStreamRegistry,
+			getMaterializationInterval().toMillis(),
+			getSegmentSize().getBytes());
+
+		try {
+			new ChangelogRestoreOperation<>(
+				backend, changelogHandles, env.getUserClassLoader(), cancelStreamRegistry).restore();
+		} catch (Exception e) {
+			backend.dispose();
+			throw new BackendBuildingException("Failed to replay the changelog of the keyed state.", e);
+		}
+
+		// the changelog is only continued if it covers exactly the key groups of this backend, otherwise the first
+		// checkpoint waits for a new materialization
+		if (changelogHandles.size() == 1 && delegateHandles.size() <= 1 &&
+				changelogHandles.get(0).getKeyGroupRange().equals(keyGroupRange)) {
+			backend.continueChangelog(changelogHandles.get(0));
+		} else if (!delegateHandles.isEmpty() || !changelogHandles.isEmpty()) {
+			long lastMaterializationId = 0L;
+			for (ChangelogStateHandle handle : changelogHandles) {
+				lastMaterializationId = Math.max(lastMaterializationId, handle.getMaterializationId());
+			}
+			backend.startNewChangelog(lastMaterializationId);
+		}
+
+		return backend;
+	}
+
+	@Override
+	public OperatorStateBackend createOperatorStateBackend(
+			Environment env,
+			String operatorIdentifier,
+			@Nonnull Collection<OperatorStateHandle> stateHandles,
+			CloseableRegistry cancelStreamRegistry) throws Exception {
+		return delegate.createOperatorStateBackend(env, operatorIdentifier, stateHandles, cancelStreamRegistry);
+	}
+
+	// ------------------------------------------------------------------------
+	//  utilities
+	// ------------------------------------------------------------------------
+
+	@Override
+	public String toString() {
+		return "ChangelogStateBackend (delegate: " + delegate +
+			", materializationInterval: " + getMaterializationInterval() +
+			", segmentSize: " + getSegmentSize() + ")";
+	}
+}
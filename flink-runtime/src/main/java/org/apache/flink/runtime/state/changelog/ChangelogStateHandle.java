@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.changelog;
+
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupsStateHandle;
+import org.apache.flink.runtime.state.KeyedStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
+import org.apache.flink.runtime.state.SharedStateRegistryKey;
+import org.apache.flink.runtime.state.StateHandleID;
+import org.apache.flink.runtime.state.StateUtil;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.util.Preconditions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The keyed state of a {@link ChangelogKeyedStateBackend}: the last materialized snapshot of the wrapped backend and
+ * the segments of the changelog which were written since the materialization started.
+ *
+ * <p>The materialized snapshot and the segments are referenced by all checkpoints until the next materialization,
+ * so all of them are registered as shared state. Once registered, discarding the handle only drops the references
+ * of this checkpoint. A handle which was never registered does not delete anything, as its segments may still be
+ * referenced by later checkpoints of the same backend.
+ */
+public class ChangelogStateHandle implements KeyedStateHandle {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ChangelogStateHandle.class);
+
+	private static final long serialVersionUID = 1L;
+
+	/** The key-group range covered by this state handle. */
+	private final KeyGroupRange keyGroupRange;
+
+	/** The id of the materialization, which the wrapped backend used as checkpoint id. */
+	private final long materializationId;
+
+	/** The id under which the materialized state is registered, null if the materialized state is empty. */
+	@Nullable
+	private final StateHandleID materializedStateId;
+
+	/** The full snapshot of the wrapped backend, null if its state was empty. */
+	@Nullable
+	private final KeyGroupsStateHandle materializedState;
+
+	/** The segments of the changelog since the materialization, in the order in which they are replayed. */
+	private final LinkedHashMap<StateHandleID, StreamStateHandle> changelogSegments;
+
+	/** The registry with which the shared states of this handle were registered, null if it was not registered. */
+	private transient SharedStateRegistry sharedStateRegistry;
+
+	public ChangelogStateHandle(
+			KeyGroupRange keyGroupRange,
+			long materializationId,
+			@Nullable StateHandleID materializedStateId,
+			@Nullable KeyGroupsStateHandle materializedState,
+			LinkedHashMap<StateHandleID, StreamStateHandle> changelogSegments) {
+
+		Preconditions.checkArgument(
+			(materializedStateId == null) == (materializedState == null),
+			"The materialized state and its id must be given together.");
+
+		this.keyGroupRange = Preconditions.checkNotNull(keyGroupRange);
+		this.materializationId = materializationId;
+		this.materializedStateId = materializedStateId;
+		this.materializedState = materializedState;
+		this.changelogSegments = Preconditions.checkNotNull(changelogSegments);
+	}
+
+	@Override
+	public KeyGroupRange getKeyGroupRange() {
+		return keyGroupRange;
+	}
+
+	public long getMaterializationId() {
+		return materializationId;
+	}
+
+	@Nullable
+	public StateHandleID getMaterializedStateId() {
+		return materializedStateId;
+	}
+
+	@Nullable
+	public KeyGroupsStateHandle getMaterializedState() {
+		return materializedState;
+	}
+
+	public LinkedHashMap<StateHandleID, StreamStateHandle> getChangelogSegments() {
+		return changelogSegments;
+	}
+
+	@Nullable
+	@Override
+	public KeyedStateHandle getIntersection(KeyGroupRange otherKeyGroupRange) {
+		final KeyGroupRange intersection = keyGroupRange.getIntersection(otherKeyGroupRange);
+		if (KeyGroupRange.EMPTY_KEY_GROUP_RANGE.equals(intersection)) {
+			return null;
+		}
+
+		final KeyGroupsStateHandle intersectedState =
+			materializedState != null ? materializedState.getIntersection(otherKeyGroupRange) : null;
+
+		// the segments contain the changes of all key groups, the restore skips the foreign ones
+		return new ChangelogStateHandle(
+			intersection,
+			materializationId,
+			intersectedState != null ? materializedStateId : null,
+			intersectedState,
+			changelogSegments);
+	}
+
+	@Override
+	public void registerSharedStates(SharedStateRegistry stateRegistry) {
+		Preconditions.checkState(
+			sharedStateRegistry != stateRegistry,
+			"The state handle has already registered its shared states to the given registry.");
+
+		sharedStateRegistry = Preconditions.checkNotNull(stateRegistry);
+
+		if (materializedState != null) {
+			stateRegistry.registerReference(
+				createSharedStateRegistryKey(materializedStateId),
+				materializedState.getDelegateStateHandle());
+		}
+
+		for (Map.Entry<StateHandleID, StreamStateHandle> segment : changelogSegments.entrySet()) {
+			stateRegistry.registerReference(createSharedStateRegistryKey(segment.getKey()), segment.getValue());
+		}
+	}
+
+	@Override
+	public void discardState() throws Exception {
+		final SharedStateRegistry registry = this.sharedStateRegistry;
+		if (registry == null) {
+			LOG.debug("Not discarding the unregistered changelog state of materialization {}.", materializationId);
+			return;
+		}
+
+		if (materializedStateId != null) {
+			registry.unregisterReference(createSharedStateRegistryKey(materializedStateId));
+		}
+
+		for (StateHandleID segmentId : changelogSegments.keySet()) {
+			registry.unregisterReference(createSharedStateRegistryKey(segmentId));
+		}
+	}
+
+	@Override
+	public long getStateSize() {
+		long size = StateUtil.getStateSize(materializedState);
+		for (StreamStateHandle segment : changelogSegments.values()) {
+			size += segment.getStateSize();
+		}
+		return size;
+	}
+
+	private static SharedStateRegistryKey createSharedStateRegistryKey(StateHandleID stateHandleID) {
+		return new SharedStateRegistryKey(stateHandleID.getKeyString());
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+
+		ChangelogStateHandle that = (ChangelogStateHandle) o;
+		return materializationId == that.materializationId &&
+			keyGroupRange.equals(that.keyGroupRange) &&
+			Objects.equals(materializedStateId, that.materializedStateId) &&
+			Objects.equals(materializedState, that.materializedState) &&
+			changelogSegments.equals(that.changelogSegments);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(keyGroupRange, materializationId, materializedStateId, materializedState, changelogSegments);
+	}
+
+	@Override
+	public String toString() {
+		return "ChangelogStateHandle{" +
+			"keyGroupRange=" + keyGroupRange +
+			", materializationId=" + materializationId +
+			", materializedState=" + materializedState +
+			", changelogSegments=" + changelogSegments +
+			", registered=" + (sharedStateRegistry != null) +
+			'}';
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.changelog;
+
+import org.apache.flink.runtime.state.heap.InternalKeyContext;
+import org.apache.flink.runtime.state.internal.InternalValueState;
+
+import java.io.IOException;
+
+/**
+ * This class wraps value state with changelog logic.
+ *
+ * @param <K> The type of key the state is associated to
+ * @param <N> The type of the namespace
+ * @param <V> Type of the user value of state
+ */
+class ChangelogValueState<K, N, V>
+	extends AbstractChangelogState<K, N, V, InternalValueState<K, N, V>>
+	implements InternalValueState<K, N, V> {
+
+	ChangelogValueState(
+		InternalValueState<K, N, V> original,
+		StateChangeLogger logger,
+		InternalKeyContext<K> keyContext) {
+		super(original, logger, keyContext);
+	}
+
+	@Override
+	public V value() throws IOException {
+		return original.value();
+	}
+
+	@Override
+	public void update(V value) throws IOException {
+		original.update(value);
+		logSet(getCurrentNamespace(), value);
+	}
+}
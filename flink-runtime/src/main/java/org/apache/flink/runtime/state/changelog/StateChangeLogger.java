@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.changelog;
+
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.runtime.state.metainfo.StateMetaInfoSnapshot;
+
+import java.io.IOException;
+
+/**
+ * Logs the changes of one state to the {@link StateChangelogWriter}. The meta info of the state precedes its first
+ * change in every epoch of the writer.
+ */
+final class StateChangeLogger {
+
+	/** Sets the value, the payload is the full value. */
+	static final byte SET = 0;
+
+	/** Clears the value, there is no payload. */
+	static final byte CLEAR = 1;
+
+	/** Adds elements to a list, the payload is the list of the added elements. */
+	static final byte ADD_ELEMENTS = 2;
+
+	/** Puts an entry into a map, the payload is the user key and the user value, or an element of a queue. */
+	static final byte PUT = 3;
+
+	/** Removes an entry from a map, the payload is the user key, or an element of a queue. */
+	static final byte REMOVE = 4;
+
+	private final StateChangelogWriter writer;
+
+	private final int stateId;
+
+	private final byte metaInfoKind;
+
+	private final StateMetaInfoSnapshot metaInfo;
+
+	/** The epoch of the writer in which the meta info was last written. */
+	private int loggedEpoch = -1;
+
+	StateChangeLogger(StateChangelogWriter writer, int stateId, byte metaInfoKind, StateMetaInfoSnapshot metaInfo) {
+		this.writer = writer;
+		this.stateId = stateId;
+		this.metaInfoKind = metaInfoKind;
+		this.metaInfo = metaInfo;
+	}
+
+	/**
+	 * Writes the meta info of the state, if it was not yet written in the current epoch of the writer. This is
+	 * done on registration as well, so that the changelog restores states which were registered but not changed.
+	 */
+	void logMetaInfo() throws IOException {
+		if (loggedEpoch != writer.getEpoch()) {
+			writer.writeMetaInfo(metaInfoKind, stateId, metaInfo);
+			loggedEpoch = writer.getEpoch();
+		}
+	}
+
+	DataOutputSerializer beginChange() throws IOException {
+		logMetaInfo();
+		return writer.beginChange();
+	}
+
+	void endChange(int keyGroup, byte changeKind) throws IOException {
+		writer.endChange(stateId, keyGroup, changeKind);
+	}
+}
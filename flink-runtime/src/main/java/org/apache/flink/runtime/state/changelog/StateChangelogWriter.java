@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.changelog;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.CheckpointedStateScope;
+import org.apache.flink.runtime.state.StateHandleID;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.metainfo.StateMetaInfoSnapshot;
+import org.apache.flink.runtime.state.metainfo.StateMetaInfoSnapshotReadersWriters;
+import org.apache.flink.runtime.util.ExecutorThreadFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * Writes the changes of the keyed state of a {@link ChangelogKeyedStateBackend} to a log on the checkpoint file
+ * system.
+ *
+ * <p>The changes are collected in memory. Once they exceed the segment size, or when a checkpoint is taken, they are
+ * closed as a segment of the log, which is uploaded in the background. Segments are numbered consecutively, a
+ * materialization marks the number of the first segment which it does not contain.
+ *
+ * <p>The log is a sequence of records, each starting with its kind:
+ * <ul>
+ *     <li>{@link #KEY_SERIALIZER}: the snapshot of the key serializer, which precedes all other records of an
+ *     epoch.</li>
+ *     <li>{@link #KV_STATE_META_INFO} and {@link #PQ_STATE_META_INFO}: the id of a state and the
+ *     {@link StateMetaInfoSnapshot} of the state, which binds the id to the state until the next meta info record
+ *     with the same id.</li>
+ *     <li>{@link #STATE_CHANGE}: the id of the state, the key group, the kind of the change, the length of the
+ *     payload and the payload.</li>
+ * </ul>
+ * The key serializer and the meta info of every state are written again after each materialization, so that the
+ * segments since a materialization can be replayed without the ones before.
+ *
+ * <p>This class is not thread safe, except for the uploads. It is used by the task thread only.
+ */
+final class StateChangelogWriter implements Closeable {
+
+	static final byte KEY_SERIALIZER = 0;
+	static final byte KV_STATE_META_INFO = 1;
+	static final byte PQ_STATE_META_INFO = 2;
+	static final byte STATE_CHANGE = 3;
+
+	/** The prefix of the ids of the segments, which makes them unique across backends. */
+	private final String segmentIdPrefix;
+
+	private final TypeSerializerSnapshot<?> keySerializerSnapshot;
+
+	/** The size in bytes after which the collected changes are closed as a segment. */
+	private final long segmentSize;
+
+	/** The changes which were not yet closed as a segment. */
+	private final DataOutputSerializer buffer;
+
+	/** The payload of the change which is currently written, reused for all changes. */
+	private final DataOutputSerializer changeBuffer;
+
+	/** The segments since the last materialization, in order. */
+	private final ArrayDeque<Segment> segments;
+
+	/** The segments which were closed before a stream factory was known. */
+	private final List<Segment> pendingUploads;
+
+	private final ExecutorService uploadExecutor;
+
+	/** The stream factory of the last checkpoint, which creates the streams for the segments. */
+	@Nullable
+	private CheckpointStreamFactory streamFactory;
+
+	private long nextSequenceNumber;
+
+	/** Incremented with every materialization, after which the meta info of the states is written again. */
+	private int epoch;
+
+	/** The epoch in which the key serializer was last written. */
+	private int keySerializerEpoch = -1;
+
+	StateChangelogWriter(String segmentIdPrefix, TypeSerializer<?> keySerializer, long segmentSize) {
+		checkArgument(segmentSize > 0, "The segment size must be positive.");
+		this.segmentIdPrefix = segmentIdPrefix;
+		this.keySerializerSnapshot = keySerializer.snapshotConfiguration();
+		this.segmentSize = segmentSize;
+		this.buffer = new DataOutputSerializer(Math.toIntExact(Math.min(segmentSize, 64 * 1024)));
+		this.changeBuffer = new DataOutputSerializer(128);
+		this.segments = new ArrayDeque<>();
+		this.pendingUploads = new ArrayList<>();
+		this.uploadExecutor = Executors.newSingleThreadExecutor(new ExecutorThreadFactory("changelog-upload"));
+	}
+
+	int getEpoch() {
+		return epoch;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Records
+	// ------------------------------------------------------------------------
+
+	void writeMetaInfo(byte kind, int stateId, StateMetaInfoSnapshot metaInfo) throws IOException {
+		// every change is preceded by the meta info of its state in the same epoch
+		if (keySerializerEpoch != epoch) {
+			buffer.writeByte(KEY_SERIALIZER);
+			TypeSerializerSnapshot.writeVersionedSnapshot(buffer, keySerializerSnapshot);
+			keySerializerEpoch = epoch;
+		}
+		buffer.writeByte(kind);
+		buffer.writeInt(stateId);
+		StateMetaInfoSnapshotReadersWriters.getWriter().writeStateMetaInfoSnapshot(metaInfo, buffer);
+	}
+
+	/**
+	 * Starts a change, whose payload is written to the returned output before {@link #endChange(int, int, byte)}
+	 * is called.
+	 */
+	DataOutputSerializer beginChange() {
+		changeBuffer.clear();
+		return changeBuffer;
+	}
+
+	void endChange(int stateId, int keyGroup, byte changeKind) throws IOException {
+		buffer.writeByte(STATE_CHANGE);
+		buffer.writeInt(stateId);
+		buffer.writeInt(keyGroup);
+		buffer.writeByte(changeKind);
+		buffer.writeInt(changeBuffer.length());
+		buffer.write(changeBuffer.getSharedBuffer(), 0, changeBuffer.length());
+
+		if (buffer.length() >= segmentSize) {
+			closeSegment();
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  Segments
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Sets the stream factory for the uploads of the segments. Segments are written with shared scope, so they
+	 * outlive the checkpoint which provided the factory.
+	 */
+	void setStreamFactory(CheckpointStreamFactory streamFactory) {
+		this.streamFactory = streamFactory;
+		for (Segment segment : pendingUploads) {
+			upload(segment);
+		}
+		pendingUploads.clear();
+	}
+
+	/**
+	 * Closes the collected changes as a segment, if there are any, and starts its upload.
+	 */
+	void closeSegment() {
+		if (buffer.length() == 0) {
+			return;
+		}
+
+		final long sequenceNumber = nextSequenceNumber++;
+		final Segment segment = new Segment(
+			sequenceNumber,
+			new StateHandleID(segmentIdPrefix + sequenceNumber),
+			buffer.getCopyOfBuffer());
+		buffer.clear();
+		segments.add(segment);
+
+		if (streamFactory != null) {
+			upload(segment);
+		} else {
+			pendingUploads.add(segment);
+		}
+	}
+
+	/**
+	 * Closes the collected changes as a segment and starts a new epoch, in which the meta info of all states is
+	 * written again.
+	 *
+	 * @return the sequence number of the first segment of the new epoch.
+	 */
+	long startEpoch() {
+		closeSegment();
+		epoch++;
+		return nextSequenceNumber;
+	}
+
+	/**
+	 * Adds a segment of a restored changelog, which precedes all segments that are written afterwards.
+	 */
+	void addRestoredSegment(StateHandleID segmentId, StreamStateHandle segmentHandle) {
+		segments.add(new Segment(nextSequenceNumber++, segmentId, segmentHandle));
+	}
+
+	/**
+	 * Returns the segments with a sequence number of at least the given one. Segments whose upload failed are
+	 * uploaded again.
+	 */
+	List<Segment> getSegmentsFrom(long sequenceNumber) {
+		final List<Segment> result = new ArrayList<>(segments.size());
+		for (Segment segment : segments) {
+			if (segment.sequenceNumber >= sequenceNumber) {
+				if (segment.handle.isCompletedExceptionally() && streamFactory != null) {
+					segment.handle = new CompletableFuture<>();
+					upload(segment);
+				}
+				result.add(segment);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Drops the segments with a sequence number smaller than the given one, which are not needed for checkpoints
+	 * anymore.
+	 */
+	void truncate(long sequenceNumber) {
+		while (!segments.isEmpty() && segments.peek().sequenceNumber < sequenceNumber) {
+			segments.poll();
+		}
+	}
+
+	private void upload(Segment segment) {
+		final CheckpointStreamFactory factory = streamFactory;
+		final CompletableFuture<StreamStateHandle> handle = segment.handle;
+		final byte[] bytes = segment.bytes;
+		uploadExecutor.execute(() -> {
+			try (CheckpointStreamFactory.CheckpointStateOutputStream out =
+					factory.createCheckpointStateOutputStream(CheckpointedStateScope.SHARED)) {
+				out.write(bytes);
+				handle.complete(out.closeAndGetHandle());
+				// the bytes are only kept to retry failed uploads
+				segment.bytes = null;
+			} catch (Throwable t) {
+				handle.completeExceptionally(t);
+			}
+		});
+	}
+
+	@Override
+	public void close() {
+		uploadExecutor.shutdownNow();
+	}
+
+	/**
+	 * A segment of the changelog.
+	 */
+	static final class Segment {
+
+		final long sequenceNumber;
+
+		final StateHandleID id;
+
+		/** The handle of the uploaded segment, replaced if an upload is retried. */
+		volatile CompletableFuture<StreamStateHandle> handle;
+
+		/** The contents of the segment until it is uploaded. */
+		@Nullable
+		volatile byte[] bytes;
+
+		Segment(long sequenceNumber, StateHandleID id, byte[] bytes) {
+			this.sequenceNumber = sequenceNumber;
+			this.id = id;
+			this.handle = new CompletableFuture<>();
+			this.bytes = bytes;
+		}
+
+		Segment(long sequenceNumber, StateHandleID id, StreamStateHandle uploadedHandle) {
+			this.sequenceNumber = sequenceNumber;
+			this.id = id;
+			this.handle = CompletableFuture.completedFuture(uploadedHandle);
+			this.bytes = null;
+		}
+	}
+}
@@ -120,6 +120,22 @@ public class FsStateBackend extends AbstractFileStateBackend implements Configur
 	 * */
 	private final int writeBufferSize;
 
+	/** Switch to enable incremental checkpoints.
+	 * A value of 'undefined' means not yet configured, in which case the default will be used. */
+	private final TernaryBoolean incrementalCheckpoints;
+
+	/** The maximum number of deltas of an incremental checkpoint before a new base is written.
+	 * A value of '-1' means not yet configured, in which case the default will be used. */
+	private final int maxIncrementalDeltas;
+
+	/** Switch to spill the least recently used keyed state to local disk.
+	 * A value of 'undefined' means not yet configured, in which case the default will be used. */
+	private final TernaryBoolean spillColdState;
+
+	/** The fraction of the managed memory the keyed state may use before it is spilled.
+	 * A value of '-1' means not yet configured, in which case the default will be used. */
+	private final double spillManagedMemoryFraction;
+
 	// -----------------------------------------------------------------------
 
 	/**
@@ -333,10 +349,51 @@ public class FsStateBackend extends AbstractFileStateBackend implements Configur
 			int fileStateSizeThreshold,
 			int writeBufferSize,
 			TernaryBoolean asynchronousSnapshots) {
+		this(checkpointDirectory, defaultSavepointDirectory, fileStateSizeThreshold, writeBufferSize,
+				asynchronousSnapshots, TernaryBoolean.UNDEFINED);
+	}
+
+	/**
+	 * Creates a new state backend that stores its checkpoint data in the file system and location
+	 * defined by the given URI.
+	 *
+	 * <p>A file system for the file system scheme in the URI (e.g., 'file://', 'hdfs://', or 'S3://')
+	 * must be accessible via {@link FileSystem#get(URI)}.
+	 *
+	 * <p>For a state backend targeting HDFS, this means that the URI must either specify the authority
+	 * (host and port), or that the Hadoop configuration that describes that information must be in the
+	 * classpath.
+	 *
+	 * @param checkpointDirectory        The path to write checkpoint metadata to.
+	 * @param defaultSavepointDirectory  The path to write savepoints to. If null, the value from
+	 *                                   the runtime configuration will be used, or savepoint
+	 *                                   target locations need to be passed when triggering a savepoint.
+	 * @param fileStateSizeThreshold     State below this size will be stored as part of the metadata,
+	 *                                   rather than in files. If -1, the value configured in the
+	 *                                   runtime configuration will be used, or the default value (1KB)
+	 *                                   if nothing is configured.
+	 * @param writeBufferSize            Write buffer size used to serialize state. If -1, the value configured in the
+	 *                                   runtime configuration will be used, or the default value (4KB)
+	 *                                   if nothing is configured.
+	 * @param asynchronousSnapshots      Flag to switch between synchronous and asynchronous
+	 *                                   snapshot mode. If UNDEFINED, the value configured in the
+	 *                                   runtime configuration will be used.
+	 * @param incrementalCheckpoints     Flag to enable incremental checkpoints, which require asynchronous
+	 *                                   snapshots. If UNDEFINED, the value configured in the
+	 *                                   runtime configuration will be used.
+	 */
+	public FsStateBackend(
+			URI checkpointDirectory,
+			@Nullable URI defaultSavepointDirectory,
+			int fileStateSizeThreshold,
+			int writeBufferSize,
+			TernaryBoolean asynchronousSnapshots,
+			TernaryBoolean incrementalCheckpoints) {
 
 		super(checkNotNull(checkpointDirectory, "checkpoint directory is null"), defaultSavepointDirectory);
 
 		checkNotNull(asynchronousSnapshots, "asynchronousSnapshots");
+		checkNotNull(incrementalCheckpoints, "incrementalCheckpoints");
 		checkArgument(fileStateSizeThreshold >= -1 && fileStateSizeThreshold <= MAX_FILE_STATE_THRESHOLD,
 				"The threshold for file state size must be in [-1, %s], where '-1' means to use " +
 						"the value from the deployment's configuration.", MAX_FILE_STATE_THRESHOLD);
@@ -347,6 +404,10 @@ public class FsStateBackend extends AbstractFileStateBackend implements Configur
 		this.fileStateThreshold = fileStateSizeThreshold;
 		this.writeBufferSize = writeBufferSize;
 		this.asynchronousSnapshots = asynchronousSnapshots;
+		this.incrementalCheckpoints = incrementalCheckpoints;
+		this.maxIncrementalDeltas = -1;
+		this.spillColdState = TernaryBoolean.UNDEFINED;
+		this.spillManagedMemoryFraction = -1;
 	}
 
 	/**
@@ -386,6 +447,44 @@ public class FsStateBackend extends AbstractFileStateBackend implements Configur
 			configuration.get(CheckpointingOptions.FS_WRITE_BUFFER_SIZE);
 
 		this.writeBufferSize = Math.max(bufferSize, this.fileStateThreshold);
+
+		this.incrementalCheckpoints = original.incrementalCheckpoints.resolveUndefined(
+				configuration.get(CheckpointingOptions.INCREMENTAL_CHECKPOINTS));
+
+		final int maxDeltas = original.maxIncrementalDeltas >= 0 ?
+				original.maxIncrementalDeltas :
+				configuration.get(CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS);
+
+		if (maxDeltas >= 0) {
+			this.maxIncrementalDeltas = maxDeltas;
+		}
+		else {
+			this.maxIncrementalDeltas = CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS.defaultValue();
+
+			LoggerFactory.getLogger(AbstractFileStateBackend.class).warn(
+					"Ignoring invalid maximum number of incremental deltas ({}): {} - using default value {} instead.",
+					CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS.key(), maxDeltas,
+					CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS.defaultValue());
+		}
+
+		this.spillColdState = original.spillColdState.resolveUndefined(
+				configuration.get(CheckpointingOptions.FS_SPILL_ENABLED));
+
+		final double spillFraction = original.spillManagedMemoryFraction >= 0 ?
+				original.spillManagedMemoryFraction :
+				configuration.get(CheckpointingOptions.FS_SPILL_MANAGED_MEMORY_FRACTION);
+
+		if (spillFraction > 0 && spillFraction <= 1) {
+			this.spillManagedMemoryFraction = spillFraction;
+		}
+		else {
+			this.spillManagedMemoryFraction = CheckpointingOptions.FS_SPILL_MANAGED_MEMORY_FRACTION.defaultValue();
+
+			LoggerFactory.getLogger(AbstractFileStateBackend.class).warn(
+					"Ignoring invalid fraction of managed memory for spilling ({}): {} - using default value {} instead.",
+					CheckpointingOptions.FS_SPILL_MANAGED_MEMORY_FRACTION.key(), spillFraction,
+					CheckpointingOptions.FS_SPILL_MANAGED_MEMORY_FRACTION.defaultValue());
+		}
 	}
 
 	// ------------------------------------------------------------------------
@@ -459,6 +558,55 @@ public class FsStateBackend extends AbstractFileStateBackend implements Configur
 		return asynchronousSnapshots.getOrDefault(CheckpointingOptions.ASYNC_SNAPSHOTS.defaultValue());
 	}
 
+	/**
+	 * Gets whether incremental checkpoints are enabled. Only the changes since the last completed
+	 * checkpoint are written then, with a periodic full base. Incremental checkpoints require
+	 * asynchronous snapshots.
+	 *
+	 * <p>If not explicitly configured, this is the default value of
+	 * {@link CheckpointingOptions#INCREMENTAL_CHECKPOINTS}.
+	 */
+	public boolean isIncrementalCheckpointsEnabled() {
+		return incrementalCheckpoints.getOrDefault(CheckpointingOptions.INCREMENTAL_CHECKPOINTS.defaultValue());
+	}
+
+	/**
+	 * Gets the maximum number of deltas an incremental checkpoint builds on before it writes
+	 * the complete state as a new base.
+	 *
+	 * <p>If not explicitly configured, this is the default value of
+	 * {@link CheckpointingOptions#FS_INCREMENTAL_MAX_DELTAS}.
+	 */
+	public int getMaxIncrementalDeltas() {
+		return maxIncrementalDeltas >= 0 ?
+			maxIncrementalDeltas :
+			CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS.defaultValue();
+	}
+
+	/**
+	 * Gets whether the least recently used keyed state is spilled to local disk, once the state
+	 * on the heap exceeds its share of the managed memory. Spilling requires asynchronous snapshots.
+	 *
+	 * <p>If not explicitly configured, this is the default value of
+	 * {@link CheckpointingOptions#FS_SPILL_ENABLED}.
+	 */
+	public boolean isSpillingColdState() {
+		return spillColdState.getOrDefault(CheckpointingOptions.FS_SPILL_ENABLED.defaultValue());
+	}
+
+	/**
+	 * Gets the fraction of the managed memory of a slot that the keyed state on the heap may use
+	 * before it is spilled.
+	 *
+	 * <p>If not explicitly configured, this is the default value of
+	 * {@link CheckpointingOptions#FS_SPILL_MANAGED_MEMORY_FRACTION}.
+	 */
+	public double getSpillManagedMemoryFraction() {
+		return spillManagedMemoryFraction >= 0 ?
+			spillManagedMemoryFraction :
+			CheckpointingOptions.FS_SPILL_MANAGED_MEMORY_FRACTION.defaultValue();
+	}
+
 	// ------------------------------------------------------------------------
 	//  Reconfiguration
 	// ------------------------------------------------------------------------
@@ -513,7 +661,7 @@ public class FsStateBackend extends AbstractFileStateBackend implements Configur
 		HeapPriorityQueueSetFactory priorityQueueSetFactory =
 			new HeapPriorityQueueSetFactory(keyGroupRange, numberOfKeyGroups, 128);
 
-		return new HeapKeyedStateBackendBuilder<>(
+		HeapKeyedStateBackendBuilder<K> builder = new HeapKeyedStateBackendBuilder<>(
 			kvStateRegistry,
 			keySerializer,
 			env.getUserClassLoader(),
@@ -526,7 +674,18 @@ public class FsStateBackend extends AbstractFileStateBackend implements Configur
 			localRecoveryConfig,
 			priorityQueueSetFactory,
 			isUsingAsynchronousSnapshots(),
-			cancelStreamRegistry).build();
+			cancelStreamRegistry)
+			.setEnableIncrementalCheckpointing(isIncrementalCheckpointsEnabled())
+			.setMaxIncrementalDeltas(getMaxIncrementalDeltas());
+
+		if (isSpillingColdState()) {
+			builder.setSpillColdState(
+				env.getMemoryManager(),
+				getSpillManagedMemoryFraction(),
+				env.getIOManager().getSpillingDirectories(),
+				metricGroup);
+		}
+		return builder.build();
 	}
 
 	@Override
@@ -554,6 +713,8 @@ public class FsStateBackend extends AbstractFileStateBackend implements Configur
 				"checkpoints: '" + getCheckpointPath() +
 				"', savepoints: '" + getSavepointPath() +
 				"', asynchronous: " + asynchronousSnapshots +
+				", incremental: " + incrementalCheckpoints +
+				", spillColdState: " + spillColdState +
 				", fileStateThreshold: " + fileStateThreshold + ")";
 	}
 }
@@ -21,6 +21,8 @@ package org.apache.flink.runtime.state.heap;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.runtime.state.RegisteredKeyValueStateBackendMetaInfo;
 
+import javax.annotation.Nullable;
+
 /**
  * Asynchronous behavior for heap snapshot strategy.
  *
@@ -28,6 +30,18 @@ import org.apache.flink.runtime.state.RegisteredKeyValueStateBackendMetaInfo;
  */
 class AsyncSnapshotStrategySynchronicityBehavior<K> implements SnapshotStrategySynchronicityBehavior<K> {
 
+	/** The manager which spills the state tables to disk, or null to keep all state in memory. */
+	@Nullable
+	private final HeapSpillManager spillManager;
+
+	AsyncSnapshotStrategySynchronicityBehavior() {
+		this(null);
+	}
+
+	AsyncSnapshotStrategySynchronicityBehavior(@Nullable HeapSpillManager spillManager) {
+		this.spillManager = spillManager;
+	}
+
 	@Override
 	public boolean isAsynchronous() {
 		return true;
@@ -38,6 +52,10 @@ class AsyncSnapshotStrategySynchronicityBehavior<K> implements SnapshotStrategyS
 		InternalKeyContext<K> keyContext,
 		RegisteredKeyValueStateBackendMetaInfo<N, V> newMetaInfo,
 		TypeSerializer<K> keySerializer) {
-		return new CopyOnWriteStateTable<>(keyContext, newMetaInfo, keySerializer);
+		CopyOnWriteStateTable<K, N, V> stateTable = new CopyOnWriteStateTable<>(keyContext, newMetaInfo, keySerializer);
+		if (spillManager != null) {
+			stateTable.enableSpilling(spillManager);
+		}
+		return stateTable;
 	}
 }
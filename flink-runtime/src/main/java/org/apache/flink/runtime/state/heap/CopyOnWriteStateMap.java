@@ -23,6 +23,7 @@ import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.runtime.state.StateEntry;
 import org.apache.flink.runtime.state.StateTransformationFunction;
 import org.apache.flink.runtime.state.internal.InternalKvState;
+import org.apache.flink.util.FlinkRuntimeException;
 import org.apache.flink.util.MathUtils;
 import org.apache.flink.util.Preconditions;
 
@@ -32,6 +33,8 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
@@ -190,6 +193,26 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 	 */
 	private int highestRequiredSnapshotVersion;
 
+	/**
+	 * The version of this map that was taken by the last confirmed checkpoint. Entries with a state version equal to
+	 * or higher than this version were changed since that checkpoint. Zero if changes are not tracked.
+	 */
+	private int changeTrackingBaseVersion;
+
+	/**
+	 * Entries that were removed since the version {@link #changeTrackingBaseVersion}. Their state version is the
+	 * version of the map at the time of removal. Only maintained while changes are tracked.
+	 */
+	private final ArrayList<StateMapEntry<K, N, S>> removedEntries;
+
+	/**
+	 * The entries of this map which were spilled to disk, or null if all entries are in memory. While spilled, the
+	 * in-memory tables are empty. All operations except for snapshots load the spilled entries back into memory
+	 * first, snapshots read them from disk.
+	 */
+	@Nullable
+	private SpilledStateMap<K, N, S> spilledState;
+
 	/**
 	 * The last namespace that was actually inserted. This is a small optimization to reduce duplicate namespace objects.
 	 */
@@ -242,6 +265,8 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 		this.stateMapVersion = 0;
 		this.highestRequiredSnapshotVersion = 0;
 		this.snapshotVersions = new TreeSet<>();
+		this.changeTrackingBaseVersion = 0;
+		this.removedEntries = new ArrayList<>();
 
 		if (capacity < 0) {
 			throw new IllegalArgumentException("Capacity: " + capacity);
@@ -271,11 +296,14 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 	 */
 	@Override
 	public int size() {
-		return primaryTableSize + incrementalRehashTableSize;
+		return spilledState == null ? sizeInMemory() : spilledState.size();
 	}
 
 	@Override
 	public S get(K key, N namespace) {
+		if (spilledState != null) {
+			loadSpilledState();
+		}
 
 		final int hash = computeHashForOperationAndDoIncrementalRehash(key, namespace);
 		final int requiredVersion = highestRequiredSnapshotVersion;
@@ -295,6 +323,10 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 					}
 					e.stateVersion = stateMapVersion;
 					e.state = getStateSerializer().copy(e.state);
+				} else if (changeTrackingBaseVersion > 0) {
+					// the caller may modify the returned state object in place, so we have to consider it changed.
+					// The entry is not shared with any snapshot here, because its state is newer than all of them.
+					e.stateVersion = stateMapVersion;
 				}
 
 				return e.state;
@@ -306,6 +338,9 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 
 	@Override
 	public boolean containsKey(K key, N namespace) {
+		if (spilledState != null) {
+			loadSpilledState();
+		}
 		final int hash = computeHashForOperationAndDoIncrementalRehash(key, namespace);
 		final StateMapEntry<K, N, S>[] tab = selectActiveTable(hash);
 		int index = hash & (tab.length - 1);
@@ -323,6 +358,9 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 
 	@Override
 	public void put(K key, N namespace, S value) {
+		if (spilledState != null) {
+			loadSpilledState();
+		}
 		final StateMapEntry<K, N, S> e = putEntry(key, namespace);
 
 		e.state = value;
@@ -331,6 +369,9 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 
 	@Override
 	public S putAndGetOld(K key, N namespace, S state) {
+		if (spilledState != null) {
+			loadSpilledState();
+		}
 		final StateMapEntry<K, N, S> e = putEntry(key, namespace);
 
 		// copy-on-write check for state
@@ -346,11 +387,17 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 
 	@Override
 	public void remove(K key, N namespace) {
+		if (spilledState != null) {
+			loadSpilledState();
+		}
 		removeEntry(key, namespace);
 	}
 
 	@Override
 	public S removeAndGetOld(K key, N namespace) {
+		if (spilledState != null) {
+			loadSpilledState();
+		}
 
 		final StateMapEntry<K, N, S> e = removeEntry(key, namespace);
 
@@ -375,6 +422,9 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 		N namespace,
 		T value,
 		StateTransformationFunction<S, T> transformation) throws Exception {
+		if (spilledState != null) {
+			loadSpilledState();
+		}
 
 		final StateMapEntry<K, N, S> entry = putEntry(key, namespace);
 
@@ -411,7 +461,7 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 		}
 
 		++modCount;
-		if (size() > threshold) {
+		if (sizeInMemory() > threshold) {
 			doubleCapacity();
 		}
 
@@ -444,6 +494,10 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 				} else {
 					--incrementalRehashTableSize;
 				}
+				if (changeTrackingBaseVersion > 0) {
+					removedEntries.add(new StateMapEntry<>(
+						e.key, e.namespace, null, e.hash, null, stateMapVersion, stateMapVersion));
+				}
 				return e;
 			}
 		}
@@ -455,9 +509,112 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 	@Nonnull
 	@Override
 	public Iterator<StateEntry<K, N, S>> iterator() {
+		if (spilledState != null) {
+			loadSpilledState();
+		}
 		return new StateEntryIterator();
 	}
 
+	// Spilling  -------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns the number of entries of this map which are in memory.
+	 */
+	int sizeInMemory() {
+		return primaryTableSize + incrementalRehashTableSize;
+	}
+
+	boolean isSpilled() {
+		return spilledState != null;
+	}
+
+	/**
+	 * Writes all entries of this map to the given file and drops them from memory. Snapshots of this map that are
+	 * still running are not affected, because they hold on to the dropped tables. This method must be called by the
+	 * same Thread that does modifications to the {@link CopyOnWriteStateMap}.
+	 *
+	 * @return the spilled entries.
+	 */
+	SpilledStateMap<K, N, S> spill(
+		File file,
+		TypeSerializer<K> keySerializer,
+		TypeSerializer<N> namespaceSerializer,
+		TypeSerializer<S> stateSerializer,
+		HeapSpillManager spillManager) throws IOException {
+
+		Preconditions.checkState(spilledState == null, "The state map is already spilled.");
+
+		final StateEntryIterator entries = new StateEntryIterator();
+		spilledState = SpilledStateMap.write(
+			file,
+			new Iterator<StateMapEntry<K, N, S>>() {
+				@Override
+				public boolean hasNext() {
+					return entries.hasNext();
+				}
+
+				@Override
+				public StateMapEntry<K, N, S> next() {
+					return entries.next();
+				}
+			},
+			sizeInMemory(),
+			keySerializer,
+			namespaceSerializer,
+			stateSerializer,
+			spillManager);
+
+		resetTables();
+		return spilledState;
+	}
+
+	/**
+	 * Returns an additional reference to the spilled entries of this map, or null if all entries are in memory. The
+	 * reference must be released by the caller.
+	 */
+	@Nullable
+	SpilledStateMap<K, N, S> retainSpilledState() {
+		return spilledState != null ? spilledState.retain() : null;
+	}
+
+	/**
+	 * Loads the spilled entries back into memory, if any, with the state versions they had when they were spilled.
+	 */
+	void loadSpilledState() {
+		final SpilledStateMap<K, N, S> spilled = spilledState;
+		if (spilled == null) {
+			return;
+		}
+		spilledState = null;
+
+		try {
+			spilled.read((key, namespace, state, stateVersion) -> {
+				final StateMapEntry<K, N, S> e = putEntry(key, namespace);
+				e.state = state;
+				e.stateVersion = stateVersion;
+			});
+		} catch (IOException e) {
+			throw new FlinkRuntimeException("Could not load the spilled state from " + spilled + '.', e);
+		}
+
+		spilled.onLoaded();
+	}
+
+	/**
+	 * Drops all entries by replacing the tables with a new table of minimum capacity. The shared empty table must not
+	 * become the primary table, because entries would be added to it.
+	 */
+	@SuppressWarnings("unchecked")
+	private void resetTables() {
+		primaryTable = makeTable(MINIMUM_CAPACITY);
+		incrementalRehashTable = (StateMapEntry<K, N, S>[]) EMPTY_TABLE;
+		primaryTableSize = 0;
+		incrementalRehashTableSize = 0;
+		rehashIndex = 0;
+		lastNamespace = null;
+		++modCount;
+	}
+
 	// Private utility functions for StateMap management -------------------------------------------------------------
 
 	/**
@@ -504,7 +661,7 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 		// need to do this check when isRehashing() is false, but in order to get a more robust code(in case that
 		// the rehashing algorithm may changed in the future), we do this check for all the case.
 		final int totalMapIndexSize = rehashIndex + table.length;
-		final int copiedArraySize = Math.max(totalMapIndexSize, size());
+		final int copiedArraySize = Math.max(totalMapIndexSize, sizeInMemory());
 		final StateMapEntry<K, N, S>[] copy = new StateMapEntry[copiedArraySize];
 
 		if (isRehashing()) {
@@ -531,6 +688,33 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 		return stateMapVersion;
 	}
 
+	/**
+	 * Starts or advances the tracking of changes, relative to the given version which was taken by a snapshot of
+	 * this map that is now confirmed. Removals before that version are forgotten. This method must be called by the
+	 * same Thread that does modifications to the {@link CopyOnWriteStateMap}.
+	 */
+	void confirmSnapshot(int snapshotVersion) {
+		if (snapshotVersion > changeTrackingBaseVersion) {
+			changeTrackingBaseVersion = snapshotVersion;
+			removedEntries.removeIf(removed -> removed.stateVersion < snapshotVersion);
+		}
+	}
+
+	/**
+	 * Returns the version since which changes are tracked, or zero if changes are not tracked.
+	 */
+	int getChangeTrackingBaseVersion() {
+		return changeTrackingBaseVersion;
+	}
+
+	/**
+	 * Returns a copy of the entries that were removed since the version of {@link #getChangeTrackingBaseVersion()}.
+	 */
+	@SuppressWarnings("unchecked")
+	StateMapEntry<K, N, S>[] snapshotRemovedEntries() {
+		return removedEntries.toArray(new StateMapEntry[0]);
+	}
+
 	/**
 	 * Allocate a table of the given capacity and set the threshold accordingly.
 	 *
@@ -749,7 +933,7 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 	/**
 	 * Helper function that creates and scrambles a composite hash for key and namespace.
 	 */
-	private static int compositeHash(Object key, Object namespace) {
+	static int compositeHash(Object key, Object namespace) {
 		// create composite key through XOR, then apply some bit-mixing for better distribution of skewed keys.
 		return MathUtils.bitMix(key.hashCode() ^ namespace.hashCode());
 	}
@@ -938,6 +1122,9 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 
 	@Override
 	public InternalKvState.StateIncrementalVisitor<K, N, S> getStateIncrementalVisitor(int recommendedMaxNumberOfReturnedRecords) {
+		if (spilledState != null) {
+			loadSpilledState();
+		}
 		return new StateIncrementalVisitorImpl(recommendedMaxNumberOfReturnedRecords);
 	}
 
@@ -961,7 +1148,7 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 
 		@Override
 		public boolean hasNext() {
-			return size() > 0 && (nextMapPosition < activeTable.length || activeTable == primaryTable);
+			return sizeInMemory() > 0 && (nextMapPosition < activeTable.length || activeTable == primaryTable);
 		}
 
 		@Override
@@ -1022,7 +1209,7 @@ public class CopyOnWriteStateMap<K, N, S> extends StateMap<K, N, S> {
 		}
 
 		@Override
-		public StateEntry<K, N, S> next() {
+		public StateMapEntry<K, N, S> next() {
 			if (modCount != expectedModCount) {
 				throw new ConcurrentModificationException();
 			}
@@ -19,6 +19,7 @@
 package org.apache.flink.runtime.state.heap;
 
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
 import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.runtime.state.StateEntry;
 import org.apache.flink.runtime.state.StateSnapshotTransformer;
@@ -53,6 +54,15 @@ import java.util.Objects;
 public class CopyOnWriteStateMapSnapshot<K, N, S>
 	extends StateMapSnapshot<K, N, S, CopyOnWriteStateMap<K, N, S>> {
 
+	/** Marks the end of the changes written by {@link #writeStateChanges}. */
+	static final byte CHANGE_END = 0;
+
+	/** Marks a changed mapping of namespace, key and state written by {@link #writeStateChanges}. */
+	static final byte CHANGE_PUT = 1;
+
+	/** Marks a removed mapping of namespace and key written by {@link #writeStateChanges}. */
+	static final byte CHANGE_REMOVE = 2;
+
 	/**
 	 * Version of the {@link CopyOnWriteStateMap} when this snapshot was created. This can be used to release the snapshot.
 	 */
@@ -70,6 +80,26 @@ public class CopyOnWriteStateMapSnapshot<K, N, S>
 	@Nonnegative
 	private final int numberOfEntriesInSnapshotData;
 
+	/**
+	 * The entries of the {@link CopyOnWriteStateMap} which were spilled to disk when this snapshot was created, or
+	 * null if there were none. The in-memory tables of a spilled state map are empty, so these are all entries of the
+	 * snapshot. They are streamed from the spill file whenever the snapshot is written.
+	 */
+	@Nullable
+	private SpilledStateMap<K, N, S> spilledState;
+
+	/**
+	 * The version of the {@link CopyOnWriteStateMap} since which it tracked changes when this snapshot was created,
+	 * or zero if it did not track changes.
+	 */
+	private final int changeTrackingBaseVersion;
+
+	/**
+	 * The entries removed from the {@link CopyOnWriteStateMap} since {@link #changeTrackingBaseVersion}.
+	 */
+	@Nonnull
+	private final CopyOnWriteStateMap.StateMapEntry<K, N, S>[] removedEntries;
+
 	/**
 	 * Whether this snapshot has been released.
 	 */
@@ -85,7 +115,12 @@ public class CopyOnWriteStateMapSnapshot<K, N, S>
 
 		this.snapshotData = owningStateMap.snapshotMapArrays();
 		this.snapshotVersion = owningStateMap.getStateMapVersion();
-		this.numberOfEntriesInSnapshotData = owningStateMap.size();
+		this.numberOfEntriesInSnapshotData = owningStateMap.sizeInMemory();
+		this.spilledState = owningStateMap.retainSpilledState();
+		Preconditions.checkState(
+			spilledState == null || numberOfEntriesInSnapshotData == 0, "A spilled state map has no entries in memory.");
+		this.changeTrackingBaseVersion = owningStateMap.getChangeTrackingBaseVersion();
+		this.removedEntries = owningStateMap.snapshotRemovedEntries();
 		this.released = false;
 	}
 
@@ -93,6 +128,7 @@ public class CopyOnWriteStateMapSnapshot<K, N, S>
 	public void release() {
 		if (!released) {
 			owningStateMap.releaseSnapshot(this);
+			releaseSpilledState();
 			released = true;
 		}
 	}
@@ -116,6 +152,11 @@ public class CopyOnWriteStateMapSnapshot<K, N, S>
 		TypeSerializer<S> stateSerializer,
 		@Nonnull DataOutputView dov,
 		@Nullable StateSnapshotTransformer<S> stateSnapshotTransformer) throws IOException {
+		if (spilledState != null) {
+			writeSpilledState(keySerializer, namespaceSerializer, stateSerializer, dov, stateSnapshotTransformer);
+			return;
+		}
+
 		SnapshotIterator<K, N, S> snapshotIterator = stateSnapshotTransformer == null ?
 			new NonTransformSnapshotIterator<>(numberOfEntriesInSnapshotData, snapshotData) :
 			new TransformedSnapshotIterator<>(numberOfEntriesInSnapshotData, snapshotData, stateSnapshotTransformer);
@@ -130,6 +171,144 @@ public class CopyOnWriteStateMapSnapshot<K, N, S>
 		}
 	}
 
+	/**
+	 * Returns true if the owning {@link CopyOnWriteStateMap} tracked changes when this snapshot was created, so that
+	 * {@link #writeStateChanges} can write only the changes since the last confirmed snapshot.
+	 */
+	boolean isChangeTracked() {
+		return changeTrackingBaseVersion > 0;
+	}
+
+	/**
+	 * Writes the mappings of this snapshot as a sequence of changes, terminated by {@link #CHANGE_END}. If
+	 * {@code onlyChanges} is true, only the mappings that were removed or changed since the last confirmed snapshot
+	 * are written, otherwise all mappings are written.
+	 *
+	 * <p>Finding the changed mappings still traverses the whole snapshot, but skips the serialization of all
+	 * unchanged state, which is what dominates the costs of a full snapshot.
+	 */
+	void writeStateChanges(
+		TypeSerializer<K> keySerializer,
+		TypeSerializer<N> namespaceSerializer,
+		TypeSerializer<S> stateSerializer,
+		@Nonnull DataOutputView dov,
+		@Nullable StateSnapshotTransformer<S> stateSnapshotTransformer,
+		boolean onlyChanges) throws IOException {
+
+		Preconditions.checkState(!onlyChanges || isChangeTracked(), "The state map did not track changes.");
+
+		if (onlyChanges) {
+			for (CopyOnWriteStateMap.StateMapEntry<K, N, S> removedEntry : removedEntries) {
+				dov.writeByte(CHANGE_REMOVE);
+				namespaceSerializer.serialize(removedEntry.namespace, dov);
+				keySerializer.serialize(removedEntry.key, dov);
+			}
+		}
+
+		final int sinceVersion = onlyChanges ? changeTrackingBaseVersion : 0;
+		if (spilledState != null) {
+			spilledState.readRecords((stateVersion, recordLength, in) -> {
+				if (stateVersion < sinceVersion) {
+					in.skipBytesToRead(recordLength);
+				} else if (stateSnapshotTransformer == null) {
+					dov.writeByte(CHANGE_PUT);
+					dov.write(in, recordLength);
+				} else {
+					final N namespace = namespaceSerializer.deserialize(in);
+					final K key = keySerializer.deserialize(in);
+					final S state = stateSerializer.deserialize(in);
+					writeStateChange(
+						keySerializer, namespaceSerializer, stateSerializer, dov, stateSnapshotTransformer, onlyChanges,
+						key, namespace, state);
+				}
+			});
+		}
+
+		for (CopyOnWriteStateMap.StateMapEntry<K, N, S> chain : snapshotData) {
+			for (CopyOnWriteStateMap.StateMapEntry<K, N, S> entry = chain; entry != null; entry = entry.next) {
+				if (entry.stateVersion >= sinceVersion) {
+					writeStateChange(
+						keySerializer, namespaceSerializer, stateSerializer, dov, stateSnapshotTransformer, onlyChanges,
+						entry.key, entry.namespace, entry.state);
+				}
+			}
+		}
+
+		dov.writeByte(CHANGE_END);
+	}
+
+	private static <K, N, S> void writeStateChange(
+		TypeSerializer<K> keySerializer,
+		TypeSerializer<N> namespaceSerializer,
+		TypeSerializer<S> stateSerializer,
+		DataOutputView dov,
+		@Nullable StateSnapshotTransformer<S> stateSnapshotTransformer,
+		boolean onlyChanges,
+		K key,
+		N namespace,
+		S state) throws IOException {
+
+		final S transformedState = stateSnapshotTransformer == null ?
+			state :
+			stateSnapshotTransformer.filterOrTransform(state);
+
+		if (transformedState != null) {
+			dov.writeByte(CHANGE_PUT);
+			namespaceSerializer.serialize(namespace, dov);
+			keySerializer.serialize(key, dov);
+			stateSerializer.serialize(transformedState, dov);
+		} else if (onlyChanges) {
+			// the filtered mapping may still exist in the snapshots that this one builds upon
+			dov.writeByte(CHANGE_REMOVE);
+			namespaceSerializer.serialize(namespace, dov);
+			keySerializer.serialize(key, dov);
+		}
+	}
+
+	/**
+	 * Writes the spilled entries of this snapshot in the format of {@link #writeState}, streaming them from the spill
+	 * file. Without a transformer, the serialized records are copied as they are. With a transformer, the number of
+	 * entries is only known after all of them were transformed, so the entries of the state map are serialized to a
+	 * buffer first, which is dropped once it is written.
+	 */
+	private void writeSpilledState(
+		TypeSerializer<K> keySerializer,
+		TypeSerializer<N> namespaceSerializer,
+		TypeSerializer<S> stateSerializer,
+		DataOutputView dov,
+		@Nullable StateSnapshotTransformer<S> stateSnapshotTransformer) throws IOException {
+
+		if (stateSnapshotTransformer == null) {
+			dov.writeInt(spilledState.size());
+			spilledState.readRecords((stateVersion, recordLength, in) -> dov.write(in, recordLength));
+			return;
+		}
+
+		final DataOutputSerializer transformedEntries = new DataOutputSerializer(4096);
+		final int[] numberOfTransformedEntries = {0};
+		spilledState.readRecords((stateVersion, recordLength, in) -> {
+			final N namespace = namespaceSerializer.deserialize(in);
+			final K key = keySerializer.deserialize(in);
+			final S state = stateSnapshotTransformer.filterOrTransform(stateSerializer.deserialize(in));
+			if (state != null) {
+				namespaceSerializer.serialize(namespace, transformedEntries);
+				keySerializer.serialize(key, transformedEntries);
+				stateSerializer.serialize(state, transformedEntries);
+				numberOfTransformedEntries[0]++;
+			}
+		});
+
+		dov.writeInt(numberOfTransformedEntries[0]);
+		dov.write(transformedEntries.getSharedBuffer(), 0, transformedEntries.length());
+	}
+
+	private void releaseSpilledState() {
+		if (spilledState != null) {
+			spilledState.release();
+			spilledState = null;
+		}
+	}
+
 	/**
 	 * Iterator over state entries in a {@link CopyOnWriteStateMapSnapshot}.
 	 */
@@ -20,8 +20,10 @@ package org.apache.flink.runtime.state.heap;
 
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.runtime.state.RegisteredKeyValueStateBackendMetaInfo;
+import org.apache.flink.util.Preconditions;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -35,6 +37,24 @@ import java.util.List;
  */
 public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> {
 
+	/**
+	 * The manager which spills the least recently used state maps of this table to disk, or null if the state is
+	 * kept in memory.
+	 */
+	@Nullable
+	private HeapSpillManager spillManager;
+
+	/**
+	 * The times of the last accesses to the state maps, by key-group index, if the table is spilled.
+	 */
+	@Nullable
+	private long[] lastAccesses;
+
+	/**
+	 * The estimated size of an entry in memory, or a negative value if not yet estimated.
+	 */
+	private double estimatedEntrySize = -1;
+
 	/**
 	 * Constructs a new {@code CopyOnWriteStateTable}.
 	 *
@@ -54,6 +74,50 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> {
 		return new CopyOnWriteStateMap<>(getStateSerializer());
 	}
 
+	@Override
+	StateMap<K, N, S> getMapForKeyGroup(int keyGroupIndex) {
+		final StateMap<K, N, S> stateMap = super.getMapForKeyGroup(keyGroupIndex);
+		if (spillManager != null) {
+			lastAccesses[keyGroupIndex - keyGroupOffset] = spillManager.recordAccess(stateMap);
+		}
+		return stateMap;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void setMetaInfo(RegisteredKeyValueStateBackendMetaInfo<N, S> metaInfo) {
+		// spilled state maps must be read with the serializers which wrote them
+		if (spillManager != null) {
+			for (StateMap<K, N, S> stateMap : keyGroupedStateMaps) {
+				((CopyOnWriteStateMap<K, N, S>) stateMap).loadSpilledState();
+			}
+		}
+		super.setMetaInfo(metaInfo);
+	}
+
+	// Spilling --------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Lets the given manager spill the least recently used state maps of this table to disk.
+	 */
+	void enableSpilling(HeapSpillManager spillManager) {
+		this.spillManager = Preconditions.checkNotNull(spillManager);
+		this.lastAccesses = new long[keyGroupedStateMaps.length];
+		spillManager.register(this);
+	}
+
+	long getLastAccess(int stateMapIndex) {
+		return lastAccesses[stateMapIndex];
+	}
+
+	double getEstimatedEntrySize() {
+		return estimatedEntrySize;
+	}
+
+	void setEstimatedEntrySize(double estimatedEntrySize) {
+		this.estimatedEntrySize = estimatedEntrySize;
+	}
+
 	// Snapshotting ----------------------------------------------------------------------------------------------------
 
 	/**
@@ -81,4 +145,17 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> {
 		}
 		return snapshotList;
 	}
+
+	/**
+	 * Confirms the given versions of the state maps, as returned by
+	 * {@link CopyOnWriteStateTableSnapshot#getStateMapSnapshotVersions()}, so that the state maps track their changes
+	 * relative to that snapshot.
+	 */
+	@SuppressWarnings("unchecked")
+	void confirmSnapshot(int[] stateMapSnapshotVersions) {
+		Preconditions.checkArgument(stateMapSnapshotVersions.length == keyGroupedStateMaps.length);
+		for (int i = 0; i < keyGroupedStateMaps.length; i++) {
+			((CopyOnWriteStateMap<K, N, S>) keyGroupedStateMaps[i]).confirmSnapshot(stateMapSnapshotVersions[i]);
+		}
+	}
 }
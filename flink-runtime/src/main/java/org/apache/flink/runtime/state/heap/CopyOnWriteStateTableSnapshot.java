@@ -20,10 +20,12 @@ package org.apache.flink.runtime.state.heap;
 
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.runtime.state.StateSnapshotTransformer;
 
 import javax.annotation.Nonnull;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -80,6 +82,48 @@ public class CopyOnWriteStateTableSnapshot<K, N, S> extends AbstractStateTableSn
 		return stateMapSnapshot;
 	}
 
+	/**
+	 * Returns true if all state maps of the table tracked changes when this snapshot was created.
+	 */
+	boolean isChangeTracked() {
+		for (CopyOnWriteStateMapSnapshot<K, N, S> snapshot : stateMapSnapshots) {
+			if (!snapshot.isChangeTracked()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the versions of the state maps that were taken by this snapshot, in the order of their key-groups.
+	 */
+	int[] getStateMapSnapshotVersions() {
+		int[] versions = new int[stateMapSnapshots.size()];
+		for (int i = 0; i < versions.length; i++) {
+			versions[i] = stateMapSnapshots.get(i).getSnapshotVersion();
+		}
+		return versions;
+	}
+
+	/**
+	 * Writes the state of the given key-group as a sequence of changes and releases the state map snapshot of the
+	 * key-group afterwards.
+	 *
+	 * @see CopyOnWriteStateMapSnapshot#writeStateChanges
+	 */
+	void writeStateChangesInKeyGroup(DataOutputView dov, int keyGroupId, boolean onlyChanges) throws IOException {
+		CopyOnWriteStateMapSnapshot<K, N, S> stateMapSnapshot =
+			(CopyOnWriteStateMapSnapshot<K, N, S>) getStateMapSnapshotForKeyGroup(keyGroupId);
+		stateMapSnapshot.writeStateChanges(
+			localKeySerializer,
+			localNamespaceSerializer,
+			localStateSerializer,
+			dov,
+			stateSnapshotTransformer,
+			onlyChanges);
+		stateMapSnapshot.release();
+	}
+
 	@Override
 	public void release() {
 		for (CopyOnWriteStateMapSnapshot snapshot : stateMapSnapshots) {
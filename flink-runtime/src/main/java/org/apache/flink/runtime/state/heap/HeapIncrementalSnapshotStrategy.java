@@ -0,0 +1,552 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.fs.CloseableRegistry;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.state.AsyncSnapshotCallable;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.CheckpointedStateScope;
+import org.apache.flink.runtime.state.IncrementalRemoteKeyedStateHandle;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyedBackendSerializationProxy;
+import org.apache.flink.runtime.state.KeyedStateHandle;
+import org.apache.flink.runtime.state.LocalRecoveryConfig;
+import org.apache.flink.runtime.state.PlaceholderStreamStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
+import org.apache.flink.runtime.state.SnapshotResult;
+import org.apache.flink.runtime.state.StateHandleID;
+import org.apache.flink.runtime.state.StateObject;
+import org.apache.flink.runtime.state.StateSerializerProvider;
+import org.apache.flink.runtime.state.StateSnapshot;
+import org.apache.flink.runtime.state.StateUtil;
+import org.apache.flink.runtime.state.StreamCompressionDecorator;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.UncompressedStreamCompressionDecorator;
+import org.apache.flink.runtime.state.metainfo.StateMetaInfoSnapshot;
+import org.apache.flink.util.Preconditions;
+import org.apache.flink.util.function.BiConsumerWithException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.RunnableFuture;
+
+/**
+ * Snapshot strategy of the heap backend that takes incremental snapshots, based on the change tracking of the
+ * {@link CopyOnWriteStateMap}.
+ *
+ * <p>Every checkpoint writes one shared file with the key/value state. This file either holds the complete state and
+ * becomes the base of a new chain of files, or it holds only the mappings that changed since the last confirmed
+ * checkpoint and is appended to the chain of that checkpoint. Checkpoints reference the files of their chain through
+ * an {@link IncrementalRemoteKeyedStateHandle}, so that the files are shared via the {@link SharedStateRegistry}.
+ * After a configured number of deltas, or whenever a delta is not possible (e.g. for new states or changed
+ * serializers), the next checkpoint compacts the state into a new base.
+ *
+ * <p>Priority queue state is not change tracked and written completely, as private state, with every checkpoint. The
+ * meta data file holds the serialization proxy and the layout of all files. Savepoints are always taken in the
+ * regular, self-contained format of {@link HeapSnapshotStrategy}.
+ */
+class HeapIncrementalSnapshotStrategy<K> extends HeapSnapshotStrategy<K> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(HeapIncrementalSnapshotStrategy.class);
+
+	/** Magic number at the beginning of the meta data file of an incremental snapshot. */
+	static final int META_DATA_MAGIC_NUMBER = 0x48454150;
+
+	/** The identifier of this backend, part of the keys of its shared state. */
+	private final UUID backendUID;
+
+	/** The maximum number of delta files on top of a base file. */
+	private final int maxDeltas;
+
+	/** Snapshots that were taken, but are not confirmed yet, by checkpoint id. */
+	private final SortedMap<Long, ChainedSnapshot> pendingSnapshots;
+
+	/** The last confirmed snapshot, on which deltas build. Only accessed by the task thread. */
+	@Nullable
+	private ChainedSnapshot confirmedSnapshot;
+
+	/** The id of the last confirmed checkpoint. Only accessed by the task thread. */
+	private long lastConfirmedCheckpointId;
+
+	HeapIncrementalSnapshotStrategy(
+		SnapshotStrategySynchronicityBehavior<K> snapshotStrategySynchronicityTrait,
+		Map<String, StateTable<K, ?, ?>> registeredKVStates,
+		Map<String, HeapPriorityQueueSnapshotRestoreWrapper> registeredPQStates,
+		StreamCompressionDecorator keyGroupCompressionDecorator,
+		LocalRecoveryConfig localRecoveryConfig,
+		KeyGroupRange keyGroupRange,
+		CloseableRegistry cancelStreamRegistry,
+		StateSerializerProvider<K> keySerializerProvider,
+		UUID backendUID,
+		int maxDeltas) {
+		super(
+			snapshotStrategySynchronicityTrait,
+			registeredKVStates,
+			registeredPQStates,
+			keyGroupCompressionDecorator,
+			localRecoveryConfig,
+			keyGroupRange,
+			cancelStreamRegistry,
+			keySerializerProvider);
+		Preconditions.checkArgument(maxDeltas >= 0, "The maximum number of deltas must not be negative.");
+		this.backendUID = Preconditions.checkNotNull(backendUID);
+		this.maxDeltas = maxDeltas;
+		this.pendingSnapshots = new TreeMap<>();
+		this.lastConfirmedCheckpointId = -1L;
+	}
+
+	@Nonnull
+	@Override
+	public RunnableFuture<SnapshotResult<KeyedStateHandle>> snapshot(
+		long checkpointId,
+		long timestamp,
+		@Nonnull CheckpointStreamFactory primaryStreamFactory,
+		@Nonnull CheckpointOptions checkpointOptions) throws IOException {
+
+		if (checkpointOptions.getCheckpointType().isSavepoint() || !hasRegisteredState()) {
+			return super.snapshot(checkpointId, timestamp, primaryStreamFactory, checkpointOptions);
+		}
+
+		final int numStates = registeredKVStates.size() + registeredPQStates.size();
+		final List<StateMetaInfoSnapshot> metaInfoSnapshots = new ArrayList<>(numStates);
+		final Map<StateUID, StateSnapshot> stateSnapshots = new HashMap<>(numStates);
+
+		processSnapshotMetaInfoForAllStates(
+			metaInfoSnapshots,
+			stateSnapshots,
+			new HashMap<>(numStates),
+			registeredKVStates,
+			StateMetaInfoSnapshot.BackendStateType.KEY_VALUE);
+
+		processSnapshotMetaInfoForAllStates(
+			metaInfoSnapshots,
+			stateSnapshots,
+			new HashMap<>(numStates),
+			registeredPQStates,
+			StateMetaInfoSnapshot.BackendStateType.PRIORITY_QUEUE);
+
+		final Map<String, CopyOnWriteStateTableSnapshot<K, ?, ?>> kvStateSnapshots = new LinkedHashMap<>();
+		final Map<String, StateSnapshot> pqStateSnapshots = new LinkedHashMap<>();
+		final Map<String, TableSnapshot> tableSnapshots = new HashMap<>();
+
+		for (Map.Entry<StateUID, StateSnapshot> stateSnapshot : stateSnapshots.entrySet()) {
+			final String stateName = stateSnapshot.getKey().getStateName();
+			if (stateSnapshot.getKey().getStateType() == StateMetaInfoSnapshot.BackendStateType.KEY_VALUE) {
+				final CopyOnWriteStateTableSnapshot<K, ?, ?> tableSnapshot =
+					(CopyOnWriteStateTableSnapshot<K, ?, ?>) stateSnapshot.getValue();
+				kvStateSnapshots.put(stateName, tableSnapshot);
+				tableSnapshots.put(stateName, new TableSnapshot(
+					(CopyOnWriteStateTable<K, ?, ?>) registeredKVStates.get(stateName),
+					tableSnapshot.getStateMapSnapshotVersions()));
+			} else {
+				pqStateSnapshots.put(stateName, stateSnapshot.getValue());
+			}
+		}
+
+		final List<StateFile> baseFiles = canSnapshotChanges(kvStateSnapshots, tableSnapshots) ?
+			Objects.requireNonNull(confirmedSnapshot).files :
+			Collections.emptyList();
+
+		LOG.trace("Taking incremental snapshot for checkpoint {} on top of {} files of the last confirmed checkpoint {}.",
+			checkpointId, baseFiles.size(), lastConfirmedCheckpointId);
+
+		final ChainedSnapshot chainedSnapshot = new ChainedSnapshot(tableSnapshots);
+		synchronized (pendingSnapshots) {
+			pendingSnapshots.put(checkpointId, chainedSnapshot);
+		}
+
+		final KeyedBackendSerializationProxy<K> serializationProxy =
+			new KeyedBackendSerializationProxy<>(
+				getKeySerializer(),
+				metaInfoSnapshots,
+				!Objects.equals(UncompressedStreamCompressionDecorator.INSTANCE, keyGroupCompressionDecorator));
+
+		final HeapIncrementalSnapshotOperation snapshotOperation = new HeapIncrementalSnapshotOperation(
+			checkpointId,
+			primaryStreamFactory,
+			serializationProxy,
+			kvStateSnapshots,
+			pqStateSnapshots,
+			baseFiles,
+			chainedSnapshot);
+
+		return snapshotOperation.toAsyncSnapshotFutureTask(cancelStreamRegistry);
+	}
+
+	@Override
+	public void notifyCheckpointComplete(long checkpointId) {
+		if (checkpointId <= lastConfirmedCheckpointId) {
+			return;
+		}
+
+		final ChainedSnapshot completedSnapshot;
+		synchronized (pendingSnapshots) {
+			completedSnapshot = pendingSnapshots.get(checkpointId);
+			pendingSnapshots.headMap(checkpointId + 1).clear();
+
+			// savepoints and failed snapshots have no files to build on
+			if (completedSnapshot == null || completedSnapshot.files == null) {
+				return;
+			}
+		}
+
+		for (TableSnapshot tableSnapshot : completedSnapshot.tables.values()) {
+			tableSnapshot.table.confirmSnapshot(tableSnapshot.stateMapVersions);
+		}
+		confirmedSnapshot = completedSnapshot;
+		lastConfirmedCheckpointId = checkpointId;
+	}
+
+	/**
+	 * Checks whether the snapshot can consist only of the changes since the last confirmed snapshot. This is the case
+	 * if the last confirmed snapshot does not exceed the maximum number of deltas and holds exactly the current
+	 * states, with the same serializers.
+	 */
+	private boolean canSnapshotChanges(
+		Map<String, CopyOnWriteStateTableSnapshot<K, ?, ?>> kvStateSnapshots,
+		Map<String, TableSnapshot> tableSnapshots) {
+
+		final ChainedSnapshot baseSnapshot = confirmedSnapshot;
+		if (baseSnapshot == null || baseSnapshot.files.size() > maxDeltas ||
+			baseSnapshot.tables.size() != tableSnapshots.size()) {
+			return false;
+		}
+
+		for (Map.Entry<String, TableSnapshot> tableSnapshot : tableSnapshots.entrySet()) {
+			final TableSnapshot baseTableSnapshot = baseSnapshot.tables.get(tableSnapshot.getKey());
+			if (baseTableSnapshot == null ||
+				!baseTableSnapshot.isSameSchema(tableSnapshot.getValue()) ||
+				!kvStateSnapshots.get(tableSnapshot.getKey()).isChangeTracked()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Encapsulates the asynchronous part of an incremental snapshot.
+	 */
+	private final class HeapIncrementalSnapshotOperation
+		extends AsyncSnapshotCallable<SnapshotResult<KeyedStateHandle>> {
+
+		private final long checkpointId;
+
+		@Nonnull
+		private final CheckpointStreamFactory streamFactory;
+
+		@Nonnull
+		private final KeyedBackendSerializationProxy<K> serializationProxy;
+
+		@Nonnull
+		private final Map<String, CopyOnWriteStateTableSnapshot<K, ?, ?>> kvStateSnapshots;
+
+		@Nonnull
+		private final Map<String, StateSnapshot> pqStateSnapshots;
+
+		/** The files of the last confirmed snapshot to build on, or empty to write a new base. */
+		@Nonnull
+		private final List<StateFile> baseFiles;
+
+		@Nonnull
+		private final ChainedSnapshot chainedSnapshot;
+
+		private HeapIncrementalSnapshotOperation(
+			long checkpointId,
+			@Nonnull CheckpointStreamFactory streamFactory,
+			@Nonnull KeyedBackendSerializationProxy<K> serializationProxy,
+			@Nonnull Map<String, CopyOnWriteStateTableSnapshot<K, ?, ?>> kvStateSnapshots,
+			@Nonnull Map<String, StateSnapshot> pqStateSnapshots,
+			@Nonnull List<StateFile> baseFiles,
+			@Nonnull ChainedSnapshot chainedSnapshot) {
+			this.checkpointId = checkpointId;
+			this.streamFactory = streamFactory;
+			this.serializationProxy = serializationProxy;
+			this.kvStateSnapshots = kvStateSnapshots;
+			this.pqStateSnapshots = pqStateSnapshots;
+			this.baseFiles = baseFiles;
+			this.chainedSnapshot = chainedSnapshot;
+		}
+
+		@Override
+		protected SnapshotResult<KeyedStateHandle> callInternal() throws Exception {
+
+			boolean completed = false;
+
+			final List<StateFile> files = new ArrayList<>(baseFiles.size() + 1);
+			final Map<StateHandleID, StreamStateHandle> sharedState = new HashMap<>(baseFiles.size() + 1);
+			final Map<StateHandleID, StreamStateHandle> privateState = new HashMap<>(1);
+			final List<StateObject> writtenStates = new ArrayList<>(3);
+
+			try {
+				// the files of the base are already registered by the previous checkpoints
+				for (StateFile baseFile : baseFiles) {
+					files.add(baseFile);
+					sharedState.put(baseFile.id, new PlaceholderStreamStateHandle());
+				}
+
+				if (!kvStateSnapshots.isEmpty()) {
+					final boolean onlyChanges = !baseFiles.isEmpty();
+					final StateFile kvFile = new StateFile(kvStateSnapshots.keySet(), keyGroupRange.getNumberOfKeyGroups());
+					final StreamStateHandle kvHandle = writeStateFile(
+						kvFile,
+						CheckpointedStateScope.SHARED,
+						(dov, keyGroupId) -> {
+							for (CopyOnWriteStateTableSnapshot<K, ?, ?> kvStateSnapshot : kvStateSnapshots.values()) {
+								kvStateSnapshot.writeStateChangesInKeyGroup(dov, keyGroupId, onlyChanges);
+							}
+						});
+					writtenStates.add(kvHandle);
+					files.add(kvFile);
+					sharedState.put(kvFile.id, kvHandle);
+				}
+
+				StateFile pqFile = null;
+				if (!pqStateSnapshots.isEmpty()) {
+					pqFile = new StateFile(pqStateSnapshots.keySet(), keyGroupRange.getNumberOfKeyGroups());
+					final StreamStateHandle pqHandle = writeStateFile(
+						pqFile,
+						CheckpointedStateScope.EXCLUSIVE,
+						(dov, keyGroupId) -> {
+							for (StateSnapshot pqStateSnapshot : pqStateSnapshots.values()) {
+								pqStateSnapshot.getKeyGroupWriter().writeStateInKeyGroup(dov, keyGroupId);
+							}
+						});
+					writtenStates.add(pqHandle);
+					privateState.put(pqFile.id, pqHandle);
+				}
+
+				final StreamStateHandle metaStateHandle = writeMetaData(files, pqFile);
+				writtenStates.add(metaStateHandle);
+
+				synchronized (pendingSnapshots) {
+					chainedSnapshot.files = files;
+				}
+
+				completed = true;
+
+				return SnapshotResult.of(new IncrementalRemoteKeyedStateHandle(
+					backendUID,
+					keyGroupRange,
+					checkpointId,
+					sharedState,
+					privateState,
+					metaStateHandle));
+			} finally {
+				if (!completed) {
+					try {
+						StateUtil.bestEffortDiscardAllStateObjects(writtenStates);
+					} catch (Exception e) {
+						LOG.warn("Could not properly discard states.", e);
+					}
+				}
+			}
+		}
+
+		@Override
+		protected void cleanupProvidedResources() {
+			for (StateSnapshot kvStateSnapshot : kvStateSnapshots.values()) {
+				kvStateSnapshot.release();
+			}
+			for (StateSnapshot pqStateSnapshot : pqStateSnapshots.values()) {
+				pqStateSnapshot.release();
+			}
+		}
+
+		@Override
+		protected void logAsyncSnapshotComplete(long startTime) {
+			logAsyncCompleted(streamFactory, startTime);
+		}
+
+		private StreamStateHandle writeStateFile(
+			StateFile stateFile,
+			CheckpointedStateScope scope,
+			BiConsumerWithException<DataOutputView, Integer, IOException> keyGroupWriter) throws IOException {
+
+			final CheckpointStreamFactory.CheckpointStateOutputStream outputStream =
+				streamFactory.createCheckpointStateOutputStream(scope);
+			snapshotCloseableRegistry.registerCloseable(outputStream);
+
+			final DataOutputViewStreamWrapper outView = new DataOutputViewStreamWrapper(outputStream);
+			for (int keyGroupPos = 0; keyGroupPos < keyGroupRange.getNumberOfKeyGroups(); ++keyGroupPos) {
+				final int keyGroupId = keyGroupRange.getKeyGroupId(keyGroupPos);
+				stateFile.keyGroupOffsets[keyGroupPos] = outputStream.getPos();
+				outView.writeInt(keyGroupId);
+
+				try (OutputStream kgCompressionOut = keyGroupCompressionDecorator.decorateWithCompression(outputStream)) {
+					keyGroupWriter.accept(new DataOutputViewStreamWrapper(kgCompressionOut), keyGroupId);
+				} // this will just close the outer compression stream
+			}
+
+			return closeAndGetHandle(outputStream);
+		}
+
+		private StreamStateHandle writeMetaData(List<StateFile> files, @Nullable StateFile pqFile) throws IOException {
+			final CheckpointStreamFactory.CheckpointStateOutputStream outputStream =
+				streamFactory.createCheckpointStateOutputStream(CheckpointedStateScope.EXCLUSIVE);
+			snapshotCloseableRegistry.registerCloseable(outputStream);
+
+			final DataOutputViewStreamWrapper outView = new DataOutputViewStreamWrapper(outputStream);
+			outView.writeInt(META_DATA_MAGIC_NUMBER);
+			serializationProxy.write(outView);
+
+			outView.writeInt(files.size());
+			for (StateFile file : files) {
+				file.write(outView);
+			}
+
+			outView.writeBoolean(pqFile != null);
+			if (pqFile != null) {
+				pqFile.write(outView);
+			}
+
+			return closeAndGetHandle(outputStream);
+		}
+
+		private StreamStateHandle closeAndGetHandle(
+			CheckpointStreamFactory.CheckpointStateOutputStream outputStream) throws IOException {
+			if (snapshotCloseableRegistry.unregisterCloseable(outputStream)) {
+				return Preconditions.checkNotNull(outputStream.closeAndGetHandle());
+			} else {
+				throw new IOException("Stream already unregistered.");
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The layout of one file of an incremental snapshot: the names of the states in the order in which they are
+	 * written per key-group, and the offsets of the key-groups of the snapshotted key-group range.
+	 */
+	static final class StateFile {
+
+		final StateHandleID id;
+
+		final List<String> stateNames;
+
+		final long[] keyGroupOffsets;
+
+		private StateFile(Collection<String> stateNames, int numberOfKeyGroups) {
+			this.id = new StateHandleID(UUID.randomUUID().toString());
+			this.stateNames = new ArrayList<>(stateNames);
+			this.keyGroupOffsets = new long[numberOfKeyGroups];
+		}
+
+		private StateFile(StateHandleID id, List<String> stateNames, long[] keyGroupOffsets) {
+			this.id = id;
+			this.stateNames = stateNames;
+			this.keyGroupOffsets = keyGroupOffsets;
+		}
+
+		void write(DataOutputView out) throws IOException {
+			out.writeUTF(id.getKeyString());
+			out.writeInt(stateNames.size());
+			for (String stateName : stateNames) {
+				out.writeUTF(stateName);
+			}
+			out.writeInt(keyGroupOffsets.length);
+			for (long keyGroupOffset : keyGroupOffsets) {
+				out.writeLong(keyGroupOffset);
+			}
+		}
+
+		static StateFile read(DataInputView in) throws IOException {
+			final StateHandleID id = new StateHandleID(in.readUTF());
+			final int numStates = in.readInt();
+			final List<String> stateNames = new ArrayList<>(numStates);
+			for (int i = 0; i < numStates; i++) {
+				stateNames.add(in.readUTF());
+			}
+			final long[] keyGroupOffsets = new long[in.readInt()];
+			for (int i = 0; i < keyGroupOffsets.length; i++) {
+				keyGroupOffsets[i] = in.readLong();
+			}
+			return new StateFile(id, stateNames, keyGroupOffsets);
+		}
+	}
+
+	/**
+	 * A snapshot of the backend, together with what is needed to build the next snapshot on top of it.
+	 */
+	private static final class ChainedSnapshot {
+
+		/** The key/value states of the snapshot, by state name. */
+		final Map<String, TableSnapshot> tables;
+
+		/** The shared files of the snapshot, oldest first. Null until the snapshot is written. */
+		@Nullable
+		List<StateFile> files;
+
+		ChainedSnapshot(Map<String, TableSnapshot> tables) {
+			this.tables = tables;
+		}
+	}
+
+	/**
+	 * The snapshotted versions of the state maps of one {@link CopyOnWriteStateTable}, and the serializers that the
+	 * state was written with.
+	 */
+	private static final class TableSnapshot {
+
+		final CopyOnWriteStateTable<?, ?, ?> table;
+
+		final TypeSerializer<?> namespaceSerializer;
+
+		final TypeSerializer<?> stateSerializer;
+
+		final int[] stateMapVersions;
+
+		TableSnapshot(CopyOnWriteStateTable<?, ?, ?> table, int[] stateMapVersions) {
+			this.table = table;
+			this.namespaceSerializer = table.getNamespaceSerializer();
+			this.stateSerializer = table.getStateSerializer();
+			this.stateMapVersions = stateMapVersions;
+		}
+
+		boolean isSameSchema(TableSnapshot other) {
+			return table == other.table &&
+				namespaceSerializer == other.namespaceSerializer &&
+				stateSerializer == other.stateSerializer;
+		}
+	}
+}
@@ -20,7 +20,10 @@ package org.apache.flink.runtime.state.heap;
 
 import org.apache.flink.api.common.ExecutionConfig;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.configuration.CheckpointingOptions;
 import org.apache.flink.core.fs.CloseableRegistry;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.memory.MemoryManager;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.AbstractKeyedStateBackendBuilder;
 import org.apache.flink.runtime.state.BackendBuildingException;
@@ -29,11 +32,21 @@ import org.apache.flink.runtime.state.KeyedStateHandle;
 import org.apache.flink.runtime.state.LocalRecoveryConfig;
 import org.apache.flink.runtime.state.StreamCompressionDecorator;
 import org.apache.flink.runtime.state.ttl.TtlTimeProvider;
+import org.apache.flink.util.IOUtils;
+import org.apache.flink.util.Preconditions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Builder class for {@link HeapKeyedStateBackend} which handles all necessary initializations and clean ups.
@@ -41,6 +54,9 @@ import java.util.Map;
  * @param <K> The data type that the key serializer serializes.
  */
 public class HeapKeyedStateBackendBuilder<K> extends AbstractKeyedStateBackendBuilder<K> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(HeapKeyedStateBackendBuilder.class);
+
 	/**
 	 * The configuration of local recovery.
 	 */
@@ -53,7 +69,31 @@ public class HeapKeyedStateBackendBuilder<K> extends AbstractKeyedStateBackendBu
 	 * Whether asynchronous snapshot is enabled.
 	 */
 	private final boolean asynchronousSnapshots;
-
+	/**
+	 * Whether incremental checkpoints are enabled.
+	 */
+	private boolean enableIncrementalCheckpointing = false;
+	/**
+	 * The maximum number of deltas an incremental checkpoint builds on before writing a new base.
+	 */
+	private int maxIncrementalDeltas = CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS.defaultValue();
+	/**
+	 * The memory manager whose managed memory bounds the state in memory, null to not spill state to disk.
+	 */
+	@Nullable
+	private MemoryManager spillMemoryManager;
+	/**
+	 * The fraction of the managed memory which the state in memory may use before it is spilled.
+	 */
+	private double spillManagedMemoryFraction;
+	/**
+	 * The directories to spill the state to.
+	 */
+	private File[] spillDirectories;
+	/**
+	 * The metric group for the spilling metrics.
+	 */
+	private MetricGroup spillMetricGroup;
 
 	public HeapKeyedStateBackendBuilder(
 		TaskKvStateRegistry kvStateRegistry,
@@ -85,6 +125,42 @@ public class HeapKeyedStateBackendBuilder<K> extends AbstractKeyedStateBackendBu
 		this.asynchronousSnapshots = asynchronousSnapshots;
 	}
 
+	/**
+	 * Enables incremental checkpoints, which only write the state that changed since the last completed checkpoint.
+	 * Incremental checkpoints require asynchronous snapshots.
+	 */
+	public HeapKeyedStateBackendBuilder<K> setEnableIncrementalCheckpointing(boolean enableIncrementalCheckpointing) {
+		this.enableIncrementalCheckpointing = enableIncrementalCheckpointing;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of deltas an incremental checkpoint builds on before it writes a new base.
+	 */
+	public HeapKeyedStateBackendBuilder<K> setMaxIncrementalDeltas(int maxIncrementalDeltas) {
+		Preconditions.checkArgument(maxIncrementalDeltas >= 0, "The maximum number of deltas must not be negative.");
+		this.maxIncrementalDeltas = maxIncrementalDeltas;
+		return this;
+	}
+
+	/**
+	 * Enables spilling the least recently used state to the given directories, once the state in memory exceeds the
+	 * given fraction of the managed memory of the slot. Spilling requires asynchronous snapshots.
+	 */
+	public HeapKeyedStateBackendBuilder<K> setSpillColdState(
+		MemoryManager memoryManager,
+		double managedMemoryFraction,
+		File[] spillDirectories,
+		MetricGroup metricGroup) {
+		Preconditions.checkArgument(managedMemoryFraction > 0 && managedMemoryFraction <= 1,
+			"The fraction of managed memory must be in (0, 1], but is %s.", managedMemoryFraction);
+		this.spillMemoryManager = Preconditions.checkNotNull(memoryManager);
+		this.spillManagedMemoryFraction = managedMemoryFraction;
+		this.spillDirectories = Preconditions.checkNotNull(spillDirectories);
+		this.spillMetricGroup = Preconditions.checkNotNull(metricGroup);
+		return this;
+	}
+
 	@Override
 	public HeapKeyedStateBackend<K> build() throws BackendBuildingException {
 		// Map of registered Key/Value states
@@ -92,8 +168,13 @@ public class HeapKeyedStateBackendBuilder<K> extends AbstractKeyedStateBackendBu
 		// Map of registered priority queue set states
 		Map<String, HeapPriorityQueueSnapshotRestoreWrapper> registeredPQStates = new HashMap<>();
 		CloseableRegistry cancelStreamRegistryForBackend = new CloseableRegistry();
-		HeapSnapshotStrategy<K> snapshotStrategy = initSnapshotStrategy(
-			asynchronousSnapshots, registeredKVStates, registeredPQStates, cancelStreamRegistryForBackend);
+		HeapSnapshotStrategy<K> snapshotStrategy;
+		try {
+			snapshotStrategy = initSnapshotStrategy(
+				asynchronousSnapshots, registeredKVStates, registeredPQStates, cancelStreamRegistryForBackend);
+		} catch (IOException e) {
+			throw new BackendBuildingException("Failed to create the snapshot strategy of the heap backend", e);
+		}
 		InternalKeyContext<K> keyContext = new InternalKeyContextImpl<>(
 			keyGroupRange,
 			numberOfKeyGroups
@@ -113,6 +194,7 @@ public class HeapKeyedStateBackendBuilder<K> extends AbstractKeyedStateBackendBu
 		try {
 			restoreOperation.restore();
 		} catch (Exception e) {
+			IOUtils.closeQuietly(cancelStreamRegistryForBackend);
 			throw new BackendBuildingException("Failed when trying to restore heap backend", e);
 		}
 		return new HeapKeyedStateBackend<>(
@@ -135,10 +217,27 @@ public class HeapKeyedStateBackendBuilder<K> extends AbstractKeyedStateBackendBu
 		boolean asynchronousSnapshots,
 		Map<String, StateTable<K, ?, ?>> registeredKVStates,
 		Map<String, HeapPriorityQueueSnapshotRestoreWrapper> registeredPQStates,
-		CloseableRegistry cancelStreamRegistry) {
-		SnapshotStrategySynchronicityBehavior<K> synchronicityTrait = asynchronousSnapshots ?
-			new AsyncSnapshotStrategySynchronicityBehavior<>() :
-			new SyncSnapshotStrategySynchronicityBehavior<>();
+		CloseableRegistry cancelStreamRegistry) throws IOException {
+		SnapshotStrategySynchronicityBehavior<K> synchronicityTrait =
+			createSnapshotStrategySynchronicityBehavior(asynchronousSnapshots, cancelStreamRegistry);
+		if (enableIncrementalCheckpointing) {
+			// only the copy-on-write state tables track their changes
+			if (synchronicityTrait instanceof AsyncSnapshotStrategySynchronicityBehavior) {
+				return new HeapIncrementalSnapshotStrategy<>(
+					synchronicityTrait,
+					registeredKVStates,
+					registeredPQStates,
+					keyGroupCompressionDecorator,
+					localRecoveryConfig,
+					keyGroupRange,
+					cancelStreamRegistry,
+					keySerializerProvider,
+					UUID.randomUUID(),
+					maxIncrementalDeltas);
+			}
+			LOG.warn("Incremental checkpoints of the heap backend require asynchronous snapshots with copy-on-write " +
+				"state tables. Falling back to full checkpoints.");
+		}
 		return new HeapSnapshotStrategy<>(
 			synchronicityTrait,
 			registeredKVStates,
@@ -149,4 +248,35 @@ public class HeapKeyedStateBackendBuilder<K> extends AbstractKeyedStateBackendBu
 			cancelStreamRegistry,
 			keySerializerProvider);
 	}
+
+	/**
+	 * Creates the behavior which determines whether snapshots are asynchronous and which {@link StateTable}s
+	 * hold the state. Resources of the behavior can be registered with the given registry, which is closed
+	 * when the backend is disposed.
+	 */
+	SnapshotStrategySynchronicityBehavior<K> createSnapshotStrategySynchronicityBehavior(
+		boolean asynchronousSnapshots,
+		CloseableRegistry backendCloseableRegistry) throws IOException {
+		if (!asynchronousSnapshots) {
+			if (spillMemoryManager != null) {
+				LOG.warn("Spilling the state of the heap backend requires asynchronous snapshots with copy-on-write " +
+					"state tables. Keeping all state in memory.");
+			}
+			return new SyncSnapshotStrategySynchronicityBehavior<>();
+		}
+
+		HeapSpillManager spillManager = null;
+		if (spillMemoryManager != null) {
+			try {
+				spillManager = HeapSpillManager.create(
+					spillMemoryManager, spillManagedMemoryFraction, spillDirectories, spillMetricGroup);
+			} catch (Exception e) {
+				throw new IOException("Could not create the spill manager of the heap backend.", e);
+			}
+			if (spillManager != null) {
+				backendCloseableRegistry.registerCloseable(spillManager);
+			}
+		}
+		return new AsyncSnapshotStrategySynchronicityBehavior<>(spillManager);
+	}
 }
@@ -19,11 +19,14 @@
 package org.apache.flink.runtime.state.heap;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.common.typeutils.TypeSerializerSchemaCompatibility;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.core.fs.CloseableRegistry;
 import org.apache.flink.core.fs.FSDataInputStream;
+import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.runtime.state.IncrementalRemoteKeyedStateHandle;
 import org.apache.flink.runtime.state.KeyExtractorFunction;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
@@ -40,16 +43,19 @@ import org.apache.flink.runtime.state.StateSerializerProvider;
 import org.apache.flink.runtime.state.StateSnapshotKeyGroupReader;
 import org.apache.flink.runtime.state.StateSnapshotRestore;
 import org.apache.flink.runtime.state.StreamCompressionDecorator;
+import org.apache.flink.runtime.state.StreamStateHandle;
 import org.apache.flink.runtime.state.UncompressedStreamCompressionDecorator;
 import org.apache.flink.runtime.state.metainfo.StateMetaInfoSnapshot;
 import org.apache.flink.util.Preconditions;
 import org.apache.flink.util.StateMigrationException;
+import org.apache.flink.util.function.BiConsumerWithException;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -114,6 +120,12 @@ public class HeapRestoreOperation<K> implements RestoreOperation<Void> {
 				continue;
 			}
 
+			if (keyedStateHandle instanceof IncrementalRemoteKeyedStateHandle) {
+				restoreIncrementalStateHandle((IncrementalRemoteKeyedStateHandle) keyedStateHandle, !keySerializerRestored);
+				keySerializerRestored = true;
+				continue;
+			}
+
 			if (!(keyedStateHandle instanceof KeyGroupsStateHandle)) {
 				throw new IllegalStateException("Unexpected state handle type, " +
 					"expected: " + KeyGroupsStateHandle.class +
@@ -133,14 +145,7 @@ public class HeapRestoreOperation<K> implements RestoreOperation<Void> {
 				serializationProxy.read(inView);
 
 				if (!keySerializerRestored) {
-					// check for key serializer compatibility; this also reconfigures the
-					// key serializer to be compatible, if it is required and is possible
-					TypeSerializerSchemaCompatibility<K> keySerializerSchemaCompat =
-						keySerializerProvider.setPreviousSerializerSnapshotForRestoredState(serializationProxy.getKeySerializerSnapshot());
-					if (keySerializerSchemaCompat.isCompatibleAfterMigration() || keySerializerSchemaCompat.isIncompatible()) {
-						throw new StateMigrationException("The new key serializer must be compatible.");
-					}
-
+					restoreKeySerializer(serializationProxy);
 					keySerializerRestored = true;
 				}
 
@@ -167,6 +172,166 @@ public class HeapRestoreOperation<K> implements RestoreOperation<Void> {
 		return null;
 	}
 
+	private void restoreKeySerializer(KeyedBackendSerializationProxy<K> serializationProxy) throws StateMigrationException {
+		// check for key serializer compatibility; this also reconfigures the
+		// key serializer to be compatible, if it is required and is possible
+		TypeSerializerSchemaCompatibility<K> keySerializerSchemaCompat =
+			keySerializerProvider.setPreviousSerializerSnapshotForRestoredState(serializationProxy.getKeySerializerSnapshot());
+		if (keySerializerSchemaCompat.isCompatibleAfterMigration() || keySerializerSchemaCompat.isIncompatible()) {
+			throw new StateMigrationException("The new key serializer must be compatible.");
+		}
+	}
+
+	/**
+	 * Restores a snapshot of the {@link HeapIncrementalSnapshotStrategy} by replaying the files of its chain, oldest
+	 * first, and restoring the priority queue state from the private file.
+	 */
+	private void restoreIncrementalStateHandle(
+		IncrementalRemoteKeyedStateHandle stateHandle,
+		boolean restoreKeySerializer) throws Exception {
+
+		final KeyedBackendSerializationProxy<K> serializationProxy =
+			new KeyedBackendSerializationProxy<>(userCodeClassLoader);
+		final List<HeapIncrementalSnapshotStrategy.StateFile> kvFiles = new ArrayList<>();
+		HeapIncrementalSnapshotStrategy.StateFile pqFile = null;
+
+		FSDataInputStream metaInputStream = stateHandle.getMetaStateHandle().openInputStream();
+		cancelStreamRegistry.registerCloseable(metaInputStream);
+		try {
+			DataInputViewStreamWrapper inView = new DataInputViewStreamWrapper(metaInputStream);
+
+			int magicNumber = inView.readInt();
+			if (magicNumber != HeapIncrementalSnapshotStrategy.META_DATA_MAGIC_NUMBER) {
+				throw new IOException("Unexpected magic number " + magicNumber + " in the meta data of an " +
+					"incremental heap snapshot.");
+			}
+
+			serializationProxy.read(inView);
+
+			int numKvFiles = inView.readInt();
+			for (int i = 0; i < numKvFiles; i++) {
+				kvFiles.add(HeapIncrementalSnapshotStrategy.StateFile.read(inView));
+			}
+			if (inView.readBoolean()) {
+				pqFile = HeapIncrementalSnapshotStrategy.StateFile.read(inView);
+			}
+		} finally {
+			if (cancelStreamRegistry.unregisterCloseable(metaInputStream)) {
+				IOUtils.closeQuietly(metaInputStream);
+			}
+		}
+
+		if (restoreKeySerializer) {
+			restoreKeySerializer(serializationProxy);
+		}
+
+		createOrCheckStateForMetaInfo(serializationProxy.getStateMetaInfoSnapshots(), new HashMap<>());
+
+		final StreamCompressionDecorator streamCompressionDecorator = serializationProxy.isUsingKeyGroupCompression() ?
+			SnappyStreamCompressionDecorator.INSTANCE : UncompressedStreamCompressionDecorator.INSTANCE;
+
+		for (HeapIncrementalSnapshotStrategy.StateFile kvFile : kvFiles) {
+			readIncrementalStateFile(
+				stateHandle.getSharedState().get(kvFile.id),
+				kvFile,
+				stateHandle.getKeyGroupRange(),
+				streamCompressionDecorator,
+				(inView, keyGroupId) -> {
+					for (String stateName : kvFile.stateNames) {
+						readStateChanges(registeredKVStates.get(stateName), inView, keyGroupId);
+					}
+				});
+		}
+
+		if (pqFile != null) {
+			final List<String> pqStateNames = pqFile.stateNames;
+			final int readVersion = serializationProxy.getReadVersion();
+			readIncrementalStateFile(
+				stateHandle.getPrivateState().get(pqFile.id),
+				pqFile,
+				stateHandle.getKeyGroupRange(),
+				streamCompressionDecorator,
+				(inView, keyGroupId) -> {
+					for (String stateName : pqStateNames) {
+						registeredPQStates.get(stateName)
+							.keyGroupReader(readVersion)
+							.readMappingsInKeyGroup(inView, keyGroupId);
+					}
+				});
+		}
+	}
+
+	private void readIncrementalStateFile(
+		StreamStateHandle fileHandle,
+		HeapIncrementalSnapshotStrategy.StateFile stateFile,
+		KeyGroupRange fileKeyGroupRange,
+		StreamCompressionDecorator streamCompressionDecorator,
+		BiConsumerWithException<DataInputView, Integer, IOException> keyGroupReader) throws IOException {
+
+		Preconditions.checkState(fileHandle != null, "Missing file %s of the incremental heap snapshot.", stateFile.id);
+		Preconditions.checkState(stateFile.keyGroupOffsets.length == fileKeyGroupRange.getNumberOfKeyGroups(),
+			"Unexpected number of key-groups in restore.");
+
+		FSDataInputStream fsDataInputStream = fileHandle.openInputStream();
+		cancelStreamRegistry.registerCloseable(fsDataInputStream);
+		try {
+			DataInputViewStreamWrapper inView = new DataInputViewStreamWrapper(fsDataInputStream);
+
+			for (int keyGroupPos = 0; keyGroupPos < fileKeyGroupRange.getNumberOfKeyGroups(); ++keyGroupPos) {
+				int keyGroupIndex = fileKeyGroupRange.getKeyGroupId(keyGroupPos);
+
+				// after rescaling, the file can contain key groups of other backends
+				if (!keyGroupRange.contains(keyGroupIndex)) {
+					continue;
+				}
+
+				fsDataInputStream.seek(stateFile.keyGroupOffsets[keyGroupPos]);
+
+				int writtenKeyGroupIndex = inView.readInt();
+				Preconditions.checkState(writtenKeyGroupIndex == keyGroupIndex,
+					"Unexpected key-group in restore.");
+
+				try (InputStream kgCompressionInStream =
+						streamCompressionDecorator.decorateWithCompression(fsDataInputStream)) {
+					keyGroupReader.accept(new DataInputViewStreamWrapper(kgCompressionInStream), keyGroupIndex);
+				}
+			}
+		} finally {
+			if (cancelStreamRegistry.unregisterCloseable(fsDataInputStream)) {
+				IOUtils.closeQuietly(fsDataInputStream);
+			}
+		}
+	}
+
+	/**
+	 * Applies the changes written by {@link CopyOnWriteStateMapSnapshot#writeStateChanges} to the given key-group.
+	 */
+	private <N, S> void readStateChanges(
+		StateTable<K, N, S> stateTable,
+		DataInputView inView,
+		int keyGroupIndex) throws IOException {
+
+		final TypeSerializer<K> keySerializer = stateTable.getKeySerializer();
+		final TypeSerializer<N> namespaceSerializer = stateTable.getNamespaceSerializer();
+		final TypeSerializer<S> stateSerializer = stateTable.getStateSerializer();
+		final StateMap<K, N, S> stateMap = stateTable.getMapForKeyGroup(keyGroupIndex);
+
+		for (byte change = inView.readByte();
+				change != CopyOnWriteStateMapSnapshot.CHANGE_END;
+				change = inView.readByte()) {
+
+			N namespace = namespaceSerializer.deserialize(inView);
+			K key = keySerializer.deserialize(inView);
+			if (change == CopyOnWriteStateMapSnapshot.CHANGE_PUT) {
+				stateMap.put(key, namespace, stateSerializer.deserialize(inView));
+			} else if (change == CopyOnWriteStateMapSnapshot.CHANGE_REMOVE) {
+				stateMap.remove(key, namespace);
+			} else {
+				throw new IOException("Unexpected change type " + change + " in restore.");
+			}
+		}
+	}
+
 	private void createOrCheckStateForMetaInfo(
 		List<StateMetaInfoSnapshot> restoredMetaInfo,
 		Map<Integer, StateMetaInfoSnapshot> kvStatesById) {
@@ -24,6 +24,7 @@ import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
 import org.apache.flink.runtime.checkpoint.CheckpointOptions;
 import org.apache.flink.runtime.state.AbstractSnapshotStrategy;
 import org.apache.flink.runtime.state.AsyncSnapshotCallable;
+import org.apache.flink.runtime.state.CheckpointListener;
 import org.apache.flink.runtime.state.CheckpointStreamFactory;
 import org.apache.flink.runtime.state.CheckpointStreamWithResultProvider;
 import org.apache.flink.runtime.state.CheckpointedStateScope;
@@ -61,15 +62,16 @@ import java.util.concurrent.RunnableFuture;
  * the concrete strategies. Subclasses must be threadsafe.
  */
 class HeapSnapshotStrategy<K>
-	extends AbstractSnapshotStrategy<KeyedStateHandle> implements SnapshotStrategySynchronicityBehavior<K> {
+	extends AbstractSnapshotStrategy<KeyedStateHandle>
+	implements SnapshotStrategySynchronicityBehavior<K>, CheckpointListener {
 
 	private final SnapshotStrategySynchronicityBehavior<K> snapshotStrategySynchronicityTrait;
-	private final Map<String, StateTable<K, ?, ?>> registeredKVStates;
-	private final Map<String, HeapPriorityQueueSnapshotRestoreWrapper> registeredPQStates;
-	private final StreamCompressionDecorator keyGroupCompressionDecorator;
+	protected final Map<String, StateTable<K, ?, ?>> registeredKVStates;
+	protected final Map<String, HeapPriorityQueueSnapshotRestoreWrapper> registeredPQStates;
+	protected final StreamCompressionDecorator keyGroupCompressionDecorator;
 	private final LocalRecoveryConfig localRecoveryConfig;
-	private final KeyGroupRange keyGroupRange;
-	private final CloseableRegistry cancelStreamRegistry;
+	protected final KeyGroupRange keyGroupRange;
+	protected final CloseableRegistry cancelStreamRegistry;
 	private final StateSerializerProvider<K> keySerializerProvider;
 
 	HeapSnapshotStrategy(
@@ -225,6 +227,11 @@ class HeapSnapshotStrategy<K>
 		return task;
 	}
 
+	@Override
+	public void notifyCheckpointComplete(long checkpointId) {
+		// nothing to do, full snapshots do not depend on previous checkpoints
+	}
+
 	@Override
 	public void finalizeSnapshotBeforeReturnHook(Runnable runnable) {
 		snapshotStrategySynchronicityTrait.finalizeSnapshotBeforeReturnHook(runnable);
@@ -243,7 +250,7 @@ class HeapSnapshotStrategy<K>
 		return snapshotStrategySynchronicityTrait.newStateTable(keyContext, newMetaInfo, keySerializer);
 	}
 
-	private void processSnapshotMetaInfoForAllStates(
+	void processSnapshotMetaInfoForAllStates(
 		List<StateMetaInfoSnapshot> metaInfoSnapshots,
 		Map<StateUID, StateSnapshot> cowStateStableSnapshots,
 		Map<StateUID, Integer> stateNamesToId,
@@ -262,7 +269,7 @@ class HeapSnapshotStrategy<K>
 		}
 	}
 
-	private boolean hasRegisteredState() {
+	boolean hasRegisteredState() {
 		return !(registeredKVStates.isEmpty() && registeredPQStates.isEmpty());
 	}
 
@@ -0,0 +1,413 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.memory.MemoryManager;
+import org.apache.flink.runtime.memory.OpaqueMemoryResource;
+import org.apache.flink.runtime.state.StateEntry;
+import org.apache.flink.util.FileUtils;
+import org.apache.flink.util.FlinkRuntimeException;
+import org.apache.flink.util.Preconditions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spills the least recently used state maps of the {@link CopyOnWriteStateTable}s of one heap keyed state backend to
+ * local disk, once the estimated size of the state in memory exceeds a memory budget. This keeps a hot set of keys
+ * as objects on the heap, while the cold tail of a skewed key space lives serialized on disk.
+ *
+ * <p>The unit of spilling is the state map of one state and one key-group. The tables record the accesses to their
+ * state maps, and the manager checks the budget every {@link #CHECK_INTERVAL} accesses. A spilled state map loads
+ * its entries back into memory on the next access, snapshots read them from disk instead.
+ *
+ * <p>The size of the state in memory is estimated from the serialized size of the entries of each state, sampled
+ * from the state or measured when spilling, plus a fixed overhead per entry.
+ *
+ * <p>The budget is shared by all heap backends in a slot and taken from the managed memory of the slot. The
+ * manager may only be used by the task thread of its backend, except for the metrics.
+ */
+final class HeapSpillManager implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(HeapSpillManager.class);
+
+	/** The identifier of the memory budget that all heap backends of a slot share. */
+	static final String MANAGED_MEMORY_RESOURCE_ID = "state-heap-spill-budget";
+
+	/** The number of state accesses between two checks of the memory budget. */
+	@VisibleForTesting
+	static final int CHECK_INTERVAL = 1024;
+
+	/** The fraction of the budget that spilling frees up to, to not spill again on the next check. */
+	private static final double SPILL_TARGET_USAGE = 0.8;
+
+	/** The number of entries whose serialized size is sampled to estimate the size of the entries of a state. */
+	private static final int SAMPLE_SIZE = 32;
+
+	/** The number of budget checks after which the estimated entry sizes are sampled again. */
+	private static final int RESAMPLE_INTERVAL = 64;
+
+	/** The estimated size in memory of an entry of a state map, besides its key, namespace and state. */
+	private static final int ENTRY_OVERHEAD_BYTES = 48;
+
+	private final MemoryBudget memoryBudget;
+
+	/** The lease of the shared memory budget, closed with this manager. */
+	@Nullable
+	private final AutoCloseable memoryBudgetLease;
+
+	private final File[] spillDirectories;
+
+	private final List<CopyOnWriteStateTable<?, ?, ?>> stateTables;
+
+	private final Counter numSpills;
+
+	private final Counter numSpilledBytes;
+
+	private final Counter numLoads;
+
+	private final Counter numLoadedBytes;
+
+	/** The number of state accesses so far, which serves as the clock for the recency of the accesses. */
+	private long accessCount;
+
+	private int numChecks;
+
+	private int nextSpillFileId;
+
+	/** The estimated size of the state in memory, as accounted in the memory budget. */
+	private volatile long estimatedStateSize;
+
+	/** The size of the state on disk, that is of all currently spilled state maps. */
+	private volatile long spilledStateSize;
+
+	private boolean closed;
+
+	@VisibleForTesting
+	HeapSpillManager(
+		MemoryBudget memoryBudget,
+		@Nullable AutoCloseable memoryBudgetLease,
+		File[] spillDirectories,
+		MetricGroup metricGroup) throws IOException {
+
+		Preconditions.checkArgument(spillDirectories.length > 0, "No directories to spill to.");
+		this.memoryBudget = memoryBudget;
+		this.memoryBudgetLease = memoryBudgetLease;
+		this.spillDirectories = new File[spillDirectories.length];
+		this.stateTables = new ArrayList<>();
+
+		final String directoryName = "flink-heap-spill-" + UUID.randomUUID();
+		for (int i = 0; i < spillDirectories.length; i++) {
+			File directory = new File(spillDirectories[i], directoryName);
+			if (!directory.mkdirs()) {
+				deleteSpillDirectories();
+				throw new IOException("Could not create the spill directory " + directory + '.');
+			}
+			this.spillDirectories[i] = directory;
+		}
+
+		final MetricGroup spillMetricGroup = metricGroup.addGroup("heapSpill");
+		this.numSpills = spillMetricGroup.counter("numSpills");
+		this.numSpilledBytes = spillMetricGroup.counter("numSpilledBytes");
+		this.numLoads = spillMetricGroup.counter("numLoads");
+		this.numLoadedBytes = spillMetricGroup.counter("numLoadedBytes");
+		spillMetricGroup.gauge("estimatedStateSize", (Gauge<Long>) () -> estimatedStateSize);
+		spillMetricGroup.gauge("spilledStateSize", (Gauge<Long>) () -> spilledStateSize);
+	}
+
+	/**
+	 * Creates a spill manager whose budget is the given fraction of the managed memory of the slot, shared with all
+	 * other heap backends of the slot. Returns null if the slot has no managed memory.
+	 */
+	@Nullable
+	static HeapSpillManager create(
+		MemoryManager memoryManager,
+		double managedMemoryFraction,
+		File[] spillDirectories,
+		MetricGroup metricGroup) throws Exception {
+
+		final OpaqueMemoryResource<MemoryBudget> memoryResource = memoryManager.getSharedMemoryResourceForManagedMemory(
+			MANAGED_MEMORY_RESOURCE_ID, MemoryBudget::new, managedMemoryFraction);
+
+		if (memoryResource.getSize() == 0) {
+			memoryResource.close();
+			LOG.warn("Not spilling the heap keyed state to disk, because the slot has no managed memory.");
+			return null;
+		}
+
+		try {
+			return new HeapSpillManager(
+				memoryResource.getResourceHandle(), memoryResource, spillDirectories, metricGroup);
+		} catch (Throwable t) {
+			memoryResource.close();
+			throw t;
+		}
+	}
+
+	/**
+	 * Registers a state table whose state maps are spilled by this manager.
+	 */
+	void register(CopyOnWriteStateTable<?, ?, ?> stateTable) {
+		stateTables.add(stateTable);
+	}
+
+	/**
+	 * Records an access to a state map and returns the time of the access. Checks the memory budget every
+	 * {@link #CHECK_INTERVAL} accesses, which may spill any state map except for the accessed one.
+	 */
+	long recordAccess(StateMap<?, ?, ?> accessedStateMap) {
+		if (++accessCount % CHECK_INTERVAL == 0) {
+			checkMemoryBudget(accessedStateMap);
+		}
+		return accessCount;
+	}
+
+	/**
+	 * Called by a {@link SpilledStateMap} once its state map loaded it back into memory.
+	 */
+	void onLoaded(SpilledStateMap<?, ?, ?> spilledStateMap) {
+		numLoads.inc();
+		numLoadedBytes.inc(spilledStateMap.getSizeInBytes());
+		spilledStateSize -= spilledStateMap.getSizeInBytes();
+	}
+
+	@VisibleForTesting
+	void checkMemoryBudget(@Nullable StateMap<?, ?, ?> accessedStateMap) {
+		final boolean resample = numChecks++ % RESAMPLE_INTERVAL == 0;
+		for (CopyOnWriteStateTable<?, ?, ?> stateTable : stateTables) {
+			if (resample || stateTable.getEstimatedEntrySize() < 0) {
+				sampleEntrySize(stateTable);
+			}
+		}
+
+		final long stateSize = updateEstimatedStateSize();
+		final long excess = memoryBudget.getUsed() - memoryBudget.getSize();
+		if (excess > 0) {
+			final long bytesToFree = excess + (long) (memoryBudget.getSize() * (1 - SPILL_TARGET_USAGE));
+			spillLeastRecentlyUsed(Math.min(bytesToFree, stateSize), accessedStateMap);
+			updateEstimatedStateSize();
+		}
+	}
+
+	private long updateEstimatedStateSize() {
+		long stateSize = 0;
+		for (CopyOnWriteStateTable<?, ?, ?> stateTable : stateTables) {
+			final double entrySize = Math.max(0, stateTable.getEstimatedEntrySize());
+			for (StateMap<?, ?, ?> stateMap : stateTable.getState()) {
+				stateSize += (long) (((CopyOnWriteStateMap<?, ?, ?>) stateMap).sizeInMemory() * entrySize);
+			}
+		}
+
+		memoryBudget.add(stateSize - estimatedStateSize);
+		estimatedStateSize = stateSize;
+		return stateSize;
+	}
+
+	private void spillLeastRecentlyUsed(long bytesToFree, @Nullable StateMap<?, ?, ?> accessedStateMap) {
+		final List<SpillCandidate> candidates = new ArrayList<>();
+		for (CopyOnWriteStateTable<?, ?, ?> stateTable : stateTables) {
+			final StateMap<?, ?, ?>[] stateMaps = stateTable.getState();
+			for (int i = 0; i < stateMaps.length; i++) {
+				CopyOnWriteStateMap<?, ?, ?> stateMap = (CopyOnWriteStateMap<?, ?, ?>) stateMaps[i];
+				if (stateMap != accessedStateMap && !stateMap.isSpilled() && stateMap.sizeInMemory() > 0) {
+					candidates.add(new SpillCandidate(stateTable, i, stateTable.getLastAccess(i)));
+				}
+			}
+		}
+		candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+
+		long freedBytes = 0;
+		int numSpilledStateMaps = 0;
+		for (Iterator<SpillCandidate> iterator = candidates.iterator(); iterator.hasNext() && freedBytes < bytesToFree; ) {
+			SpillCandidate candidate = iterator.next();
+			freedBytes += spill(candidate.stateTable, candidate.stateMapIndex);
+			numSpilledStateMaps++;
+		}
+
+		LOG.debug("Spilled {} state maps to free an estimated {} of {} requested bytes.",
+			numSpilledStateMaps, freedBytes, bytesToFree);
+	}
+
+	/**
+	 * Spills the state map at the given index of the given table and returns the estimated freed memory.
+	 */
+	private <K, N, S> long spill(CopyOnWriteStateTable<K, N, S> stateTable, int stateMapIndex) {
+		final CopyOnWriteStateMap<K, N, S> stateMap = (CopyOnWriteStateMap<K, N, S>) stateTable.getState()[stateMapIndex];
+		final long estimatedSize = (long) (stateMap.sizeInMemory() * stateTable.getEstimatedEntrySize());
+		final File file = new File(
+			spillDirectories[nextSpillFileId % spillDirectories.length], nextSpillFileId + ".spill");
+		nextSpillFileId++;
+
+		final SpilledStateMap<K, N, S> spilledStateMap;
+		try {
+			spilledStateMap = stateMap.spill(
+				file,
+				stateTable.getKeySerializer(),
+				stateTable.getNamespaceSerializer(),
+				stateTable.getStateSerializer(),
+				this);
+		} catch (IOException e) {
+			throw new FlinkRuntimeException("Could not spill the state of " + stateTable.getMetaInfo().getName() +
+				" to " + file + '.', e);
+		}
+
+		numSpills.inc();
+		numSpilledBytes.inc(spilledStateMap.getSizeInBytes());
+		spilledStateSize += spilledStateMap.getSizeInBytes();
+
+		// the spilled records are the exact serialized size of the entries
+		stateTable.setEstimatedEntrySize(spilledStateMap.getAverageRecordSize() + ENTRY_OVERHEAD_BYTES);
+		return estimatedSize;
+	}
+
+	/**
+	 * Estimates the size of the entries of the given table from the serialized size of some of its entries.
+	 */
+	private static <K, N, S> void sampleEntrySize(CopyOnWriteStateTable<K, N, S> stateTable) {
+		final DataOutputSerializer out = new DataOutputSerializer(1024);
+		int numSampled = 0;
+		try {
+			for (StateMap<K, N, S> stateMap : stateTable.getState()) {
+				final CopyOnWriteStateMap<K, N, S> copyOnWriteStateMap = (CopyOnWriteStateMap<K, N, S>) stateMap;
+				if (copyOnWriteStateMap.isSpilled()) {
+					continue;
+				}
+				for (Iterator<StateEntry<K, N, S>> iterator = copyOnWriteStateMap.iterator();
+						iterator.hasNext() && numSampled < SAMPLE_SIZE; numSampled++) {
+					StateEntry<K, N, S> entry = iterator.next();
+					stateTable.getNamespaceSerializer().serialize(entry.getNamespace(), out);
+					stateTable.getKeySerializer().serialize(entry.getKey(), out);
+					stateTable.getStateSerializer().serialize(entry.getState(), out);
+				}
+				if (numSampled == SAMPLE_SIZE) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			throw new FlinkRuntimeException("Could not estimate the size of " + stateTable.getMetaInfo().getName(), e);
+		}
+
+		if (numSampled > 0) {
+			stateTable.setEstimatedEntrySize((double) out.length() / numSampled + ENTRY_OVERHEAD_BYTES);
+		}
+	}
+
+	@VisibleForTesting
+	long getEstimatedStateSize() {
+		return estimatedStateSize;
+	}
+
+	@VisibleForTesting
+	long getSpilledStateSize() {
+		return spilledStateSize;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		memoryBudget.add(-estimatedStateSize);
+		estimatedStateSize = 0;
+		deleteSpillDirectories();
+
+		if (memoryBudgetLease != null) {
+			try {
+				memoryBudgetLease.close();
+			} catch (Exception e) {
+				throw new IOException("Could not release the memory budget for spilling.", e);
+			}
+		}
+	}
+
+	private void deleteSpillDirectories() {
+		for (File directory : spillDirectories) {
+			if (directory != null) {
+				FileUtils.deleteDirectoryQuietly(directory);
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The memory budget for the state in memory, shared by all heap backends of a slot.
+	 */
+	static final class MemoryBudget implements AutoCloseable {
+
+		private final long size;
+
+		private final AtomicLong used;
+
+		MemoryBudget(long size) {
+			this.size = size;
+			this.used = new AtomicLong();
+		}
+
+		long getSize() {
+			return size;
+		}
+
+		long getUsed() {
+			return used.get();
+		}
+
+		void add(long bytes) {
+			used.addAndGet(bytes);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static final class SpillCandidate {
+
+		final CopyOnWriteStateTable<?, ?, ?> stateTable;
+
+		final int stateMapIndex;
+
+		final long lastAccess;
+
+		SpillCandidate(CopyOnWriteStateTable<?, ?, ?> stateTable, int stateMapIndex, long lastAccess) {
+			this.stateTable = stateTable;
+			this.stateMapIndex = stateMapIndex;
+			this.lastAccess = lastAccess;
+		}
+	}
+}
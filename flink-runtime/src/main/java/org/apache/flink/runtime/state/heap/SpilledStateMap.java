@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.util.Preconditions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The entries of a {@link CopyOnWriteStateMap} which the {@link HeapSpillManager} spilled to a local file. The file
+ * is immutable. It is deleted once the state map loaded the entries back into memory and all snapshots which read
+ * from it are released.
+ *
+ * @param <K> type of key.
+ * @param <N> type of namespace.
+ * @param <S> type of state.
+ */
+final class SpilledStateMap<K, N, S> {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The size of the state version and the record length which precede the record of each entry. */
+	private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+	private final File file;
+
+	/** The number of entries in the file. */
+	private final int size;
+
+	/** The size of the file in bytes. */
+	private final long sizeInBytes;
+
+	/** The serializers which wrote the file. They may only be used by the task thread. */
+	private final TypeSerializer<K> keySerializer;
+
+	private final TypeSerializer<N> namespaceSerializer;
+
+	private final TypeSerializer<S> stateSerializer;
+
+	private final HeapSpillManager spillManager;
+
+	/** References by the owning state map and by snapshots, the file is deleted when this drops to zero. */
+	private final AtomicInteger referenceCount;
+
+	private SpilledStateMap(
+		File file,
+		int size,
+		long sizeInBytes,
+		TypeSerializer<K> keySerializer,
+		TypeSerializer<N> namespaceSerializer,
+		TypeSerializer<S> stateSerializer,
+		HeapSpillManager spillManager) {
+		this.file = file;
+		this.size = size;
+		this.sizeInBytes = sizeInBytes;
+		this.keySerializer = keySerializer;
+		this.namespaceSerializer = namespaceSerializer;
+		this.stateSerializer = stateSerializer;
+		this.spillManager = spillManager;
+		this.referenceCount = new AtomicInteger(1);
+	}
+
+	/**
+	 * Writes the given entries to the given file. Every entry is written as its state version and the length of its
+	 * record, followed by the record with the namespace, key and state of the entry, in the order in which snapshots
+	 * write them. This lets snapshots copy or skip the records without deserializing them.
+	 */
+	static <K, N, S> SpilledStateMap<K, N, S> write(
+		File file,
+		Iterator<CopyOnWriteStateMap.StateMapEntry<K, N, S>> entries,
+		int size,
+		TypeSerializer<K> keySerializer,
+		TypeSerializer<N> namespaceSerializer,
+		TypeSerializer<S> stateSerializer,
+		HeapSpillManager spillManager) throws IOException {
+
+		int numWritten = 0;
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+			DataOutputViewStreamWrapper dov = new DataOutputViewStreamWrapper(out);
+			DataOutputSerializer record = new DataOutputSerializer(128);
+			while (entries.hasNext()) {
+				CopyOnWriteStateMap.StateMapEntry<K, N, S> entry = entries.next();
+				record.clear();
+				namespaceSerializer.serialize(entry.namespace, record);
+				keySerializer.serialize(entry.key, record);
+				stateSerializer.serialize(entry.state, record);
+				dov.writeInt(entry.stateVersion);
+				dov.writeInt(record.length());
+				dov.write(record.getSharedBuffer(), 0, record.length());
+				numWritten++;
+			}
+		} catch (IOException | RuntimeException e) {
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+			throw e;
+		}
+
+		Preconditions.checkState(numWritten == size, "Expected %s entries, but wrote %s.", size, numWritten);
+		return new SpilledStateMap<>(
+			file, size, file.length(), keySerializer, namespaceSerializer, stateSerializer, spillManager);
+	}
+
+	/**
+	 * Reads the entries with the serializers which wrote them. This may only be called by the task thread.
+	 */
+	void read(EntryConsumer<K, N, S> consumer) throws IOException {
+		readRecords((stateVersion, recordLength, in) -> {
+			N namespace = namespaceSerializer.deserialize(in);
+			K key = keySerializer.deserialize(in);
+			S state = stateSerializer.deserialize(in);
+			consumer.accept(key, namespace, state, stateVersion);
+		});
+	}
+
+	/**
+	 * Reads the serialized records of the entries one by one, see {@link #write}. The consumer has to read or skip
+	 * exactly the bytes of the record. Nothing is retained between the records.
+	 */
+	void readRecords(RecordConsumer consumer) throws IOException {
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+			DataInputViewStreamWrapper div = new DataInputViewStreamWrapper(in);
+			for (int i = 0; i < size; i++) {
+				int stateVersion = div.readInt();
+				int recordLength = div.readInt();
+				consumer.accept(stateVersion, recordLength, div);
+			}
+		}
+	}
+
+	/**
+	 * Called by the owning state map once it loaded the entries back into memory. Releases the reference of the
+	 * state map.
+	 */
+	void onLoaded() {
+		spillManager.onLoaded(this);
+		release();
+	}
+
+	SpilledStateMap<K, N, S> retain() {
+		Preconditions.checkState(referenceCount.getAndIncrement() > 0, "The spilled state map is already released.");
+		return this;
+	}
+
+	void release() {
+		if (referenceCount.decrementAndGet() == 0) {
+			if (!file.delete() && file.exists()) {
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	long getSizeInBytes() {
+		return sizeInBytes;
+	}
+
+	/**
+	 * Returns the average serialized size of the namespace, key and state of the entries.
+	 */
+	double getAverageRecordSize() {
+		return (double) (sizeInBytes - (long) size * RECORD_HEADER_SIZE) / size;
+	}
+
+	@Override
+	public String toString() {
+		return "SpilledStateMap{file=" + file + ", size=" + size + ", sizeInBytes=" + sizeInBytes + '}';
+	}
+
+	/**
+	 * Consumer of the entries read from a {@link SpilledStateMap}.
+	 */
+	@FunctionalInterface
+	interface EntryConsumer<K, N, S> {
+		void accept(K key, N namespace, S state, int stateVersion);
+	}
+
+	/**
+	 * Consumer of the serialized records read from a {@link SpilledStateMap}.
+	 */
+	@FunctionalInterface
+	interface RecordConsumer {
+		void accept(int stateVersion, int recordLength, DataInputView in) throws IOException;
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.internal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * An {@link InternalValueState} whose value can be read without blocking the calling thread, for state backends
+ * that read state from disk.
+ *
+ * <p>See {@link InternalKvState} for a description of the internal state hierarchy.
+ *
+ * @param <K> The type of key the state is associated to
+ * @param <N> The type of the namespace
+ * @param <T> The type of the value of the state
+ */
+public interface InternalAsyncValueState<K, N, T> extends InternalValueState<K, N, T> {
+
+	/**
+	 * Reads the value of the current key and namespace asynchronously. The key and namespace are captured when this
+	 * method is called, so they may be changed right after.
+	 *
+	 * <p>The value is deserialized by the given executor, which also completes the returned future. Like all other
+	 * state access, the executor must run in the thread of the task. The returned future is completed exceptionally
+	 * by another thread, if the read fails.
+	 *
+	 * @param completionExecutor The executor which deserializes the value and completes the future.
+	 * @return The future value, or the default value if there is no value.
+	 */
+	CompletableFuture<T> asyncValue(Executor completionExecutor);
+}
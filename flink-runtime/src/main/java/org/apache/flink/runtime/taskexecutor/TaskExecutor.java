@@ -629,6 +629,7 @@ public class TaskExecutor extends RpcEndpoint implements TaskExecutorGateway {
 				classLoaderHandle,
 				fileCache,
 				taskManagerConfiguration,
+				taskExecutorServices.getTaskManagerSharedResources(),
 				taskMetricGroup,
 				resultPartitionConsumableNotifier,
 				partitionStateChecker,
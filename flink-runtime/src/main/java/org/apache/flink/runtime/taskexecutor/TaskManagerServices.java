@@ -78,6 +78,7 @@ public class TaskManagerServices {
 	private final TaskEventDispatcher taskEventDispatcher;
 	private final ExecutorService ioExecutor;
 	private final LibraryCacheManager libraryCacheManager;
+	private final TaskManagerSharedResources taskManagerSharedResources;
 
 	TaskManagerServices(
 		UnresolvedTaskManagerLocation unresolvedTaskManagerLocation,
@@ -107,6 +108,7 @@ public class TaskManagerServices {
 		this.taskEventDispatcher = Preconditions.checkNotNull(taskEventDispatcher);
 		this.ioExecutor = Preconditions.checkNotNull(ioExecutor);
 		this.libraryCacheManager = Preconditions.checkNotNull(libraryCacheManager);
+		this.taskManagerSharedResources = new TaskManagerSharedResources();
 	}
 
 	// --------------------------------------------------------------------------------------------
@@ -165,6 +167,10 @@ public class TaskManagerServices {
 		return libraryCacheManager;
 	}
 
+	public TaskManagerSharedResources getTaskManagerSharedResources() {
+		return taskManagerSharedResources;
+	}
+
 	// --------------------------------------------------------------------------------------------
 	//  Shut down method
 	// --------------------------------------------------------------------------------------------
@@ -182,6 +188,12 @@ public class TaskManagerServices {
 			exception = e;
 		}
 
+		try {
+			taskManagerSharedResources.close();
+		} catch (Exception e) {
+			exception = ExceptionUtils.firstOrSuppressed(e, exception);
+		}
+
 		try {
 			ioManager.close();
 		} catch (Exception e) {
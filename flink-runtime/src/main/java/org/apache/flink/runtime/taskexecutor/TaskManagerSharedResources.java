@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.taskexecutor;
+
+import org.apache.flink.util.IOUtils;
+import org.apache.flink.util.function.SupplierWithException;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * Resources which are shared by all tasks of a TaskManager, for example services of state backends
+ * which coordinate the work of all their instances on the TaskManager.
+ *
+ * <p>A resource is created by the first task which asks for it and kept until the TaskManager
+ * shuts down. Resources which are {@link AutoCloseable} are closed then.
+ */
+public class TaskManagerSharedResources implements AutoCloseable {
+
+	private final Object lock = new Object();
+
+	/** The resources by their type. */
+	@GuardedBy("lock")
+	private final Map<Class<?>, Object> resources = new HashMap<>();
+
+	@GuardedBy("lock")
+	private boolean isClosed;
+
+	/**
+	 * Returns the resource of the given type, creating it with the given factory if it does not exist yet.
+	 *
+	 * <p>The type identifies the resource. Classes which are loaded by different class loaders, e.g. by
+	 * the class loaders of different jobs, are different types and thus have different resources.
+	 */
+	public <T, E extends Exception> T getOrCreate(Class<T> type, SupplierWithException<T, E> factory) throws E {
+		checkNotNull(type);
+		checkNotNull(factory);
+
+		synchronized (lock) {
+			checkState(!isClosed, "The shared resources of the TaskManager are already closed.");
+
+			Object resource = resources.get(type);
+			if (resource == null) {
+				resource = checkNotNull(factory.get(), "The factory created no resource.");
+				resources.put(type, resource);
+			}
+			return type.cast(resource);
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		final List<AutoCloseable> closeables = new ArrayList<>();
+		synchronized (lock) {
+			if (isClosed) {
+				return;
+			}
+			isClosed = true;
+
+			for (Object resource : resources.values()) {
+				if (resource instanceof AutoCloseable) {
+					closeables.add((AutoCloseable) resource);
+				}
+			}
+			resources.clear();
+		}
+
+		IOUtils.closeAll(closeables);
+	}
+}
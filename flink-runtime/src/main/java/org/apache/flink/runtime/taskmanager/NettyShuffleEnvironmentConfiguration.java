@@ -24,6 +24,7 @@ import org.apache.flink.configuration.MemorySize;
 import org.apache.flink.configuration.NettyShuffleEnvironmentOptions;
 import org.apache.flink.runtime.io.network.netty.NettyConfig;
 import org.apache.flink.runtime.io.network.partition.BoundedBlockingSubpartitionType;
+import org.apache.flink.runtime.io.network.partition.consumer.BufferDebloatConfiguration;
 import org.apache.flink.runtime.util.ConfigurationParserUtils;
 import org.apache.flink.util.Preconditions;
 
@@ -74,8 +75,18 @@ public class NettyShuffleEnvironmentConfiguration {
 
 	private final String compressionCodec;
 
+	private final boolean pipelinedShuffleCompressionEnabled;
+
+	private final String pipelinedCompressionCodec;
+
 	private final int maxBuffersPerChannel;
 
+	private final int sortShuffleMinParallelism;
+
+	private final int sortShuffleMinBuffers;
+
+	private final BufferDebloatConfiguration bufferDebloatConfiguration;
+
 	public NettyShuffleEnvironmentConfiguration(
 			int numNetworkBuffers,
 			int networkBufferSize,
@@ -91,7 +102,12 @@ public class NettyShuffleEnvironmentConfiguration {
 			boolean forcePartitionReleaseOnConsumption,
 			boolean blockingShuffleCompressionEnabled,
 			String compressionCodec,
-			int maxBuffersPerChannel) {
+			boolean pipelinedShuffleCompressionEnabled,
+			String pipelinedCompressionCodec,
+			int maxBuffersPerChannel,
+			int sortShuffleMinParallelism,
+			int sortShuffleMinBuffers,
+			BufferDebloatConfiguration bufferDebloatConfiguration) {
 
 		this.numNetworkBuffers = numNetworkBuffers;
 		this.networkBufferSize = networkBufferSize;
@@ -107,7 +123,12 @@ public class NettyShuffleEnvironmentConfiguration {
 		this.forcePartitionReleaseOnConsumption = forcePartitionReleaseOnConsumption;
 		this.blockingShuffleCompressionEnabled = blockingShuffleCompressionEnabled;
 		this.compressionCodec = Preconditions.checkNotNull(compressionCodec);
+		this.pipelinedShuffleCompressionEnabled = pipelinedShuffleCompressionEnabled;
+		this.pipelinedCompressionCodec = Preconditions.checkNotNull(pipelinedCompressionCodec);
 		this.maxBuffersPerChannel = maxBuffersPerChannel;
+		this.sortShuffleMinParallelism = sortShuffleMinParallelism;
+		this.sortShuffleMinBuffers = sortShuffleMinBuffers;
+		this.bufferDebloatConfiguration = Preconditions.checkNotNull(bufferDebloatConfiguration);
 	}
 
 	// ------------------------------------------------------------------------
@@ -168,10 +189,30 @@ public class NettyShuffleEnvironmentConfiguration {
 		return compressionCodec;
 	}
 
+	public boolean isPipelinedShuffleCompressionEnabled() {
+		return pipelinedShuffleCompressionEnabled;
+	}
+
+	public String getPipelinedCompressionCodec() {
+		return pipelinedCompressionCodec;
+	}
+
 	public int getMaxBuffersPerChannel() {
 		return maxBuffersPerChannel;
 	}
 
+	public int getSortShuffleMinParallelism() {
+		return sortShuffleMinParallelism;
+	}
+
+	public int getSortShuffleMinBuffers() {
+		return sortShuffleMinBuffers;
+	}
+
+	public BufferDebloatConfiguration getBufferDebloatConfiguration() {
+		return bufferDebloatConfiguration;
+	}
+
 	// ------------------------------------------------------------------------
 
 	/**
@@ -224,6 +265,19 @@ public class NettyShuffleEnvironmentConfiguration {
 		boolean blockingShuffleCompressionEnabled =
 			configuration.get(NettyShuffleEnvironmentOptions.BLOCKING_SHUFFLE_COMPRESSION_ENABLED);
 		String compressionCodec = configuration.getString(NettyShuffleEnvironmentOptions.SHUFFLE_COMPRESSION_CODEC);
+		boolean pipelinedShuffleCompressionEnabled =
+			configuration.get(NettyShuffleEnvironmentOptions.PIPELINED_SHUFFLE_COMPRESSION_ENABLED);
+		String pipelinedCompressionCodec =
+			configuration.get(NettyShuffleEnvironmentOptions.PIPELINED_SHUFFLE_COMPRESSION_CODEC);
+
+		int sortShuffleMinParallelism = configuration.get(NettyShuffleEnvironmentOptions.NETWORK_SORT_SHUFFLE_MIN_PARALLELISM);
+		int sortShuffleMinBuffers = configuration.get(NettyShuffleEnvironmentOptions.NETWORK_SORT_SHUFFLE_MIN_BUFFERS);
+		ConfigurationParserUtils.checkConfigParameter(
+			sortShuffleMinBuffers > 0, sortShuffleMinBuffers,
+			NettyShuffleEnvironmentOptions.NETWORK_SORT_SHUFFLE_MIN_BUFFERS.key(),
+			"The number of sort buffers must be positive.");
+
+		BufferDebloatConfiguration bufferDebloatConfiguration = BufferDebloatConfiguration.fromConfiguration(configuration);
 
 		return new NettyShuffleEnvironmentConfiguration(
 			numberOfNetworkBuffers,
@@ -240,7 +294,12 @@ public class NettyShuffleEnvironmentConfiguration {
 			forcePartitionReleaseOnConsumption,
 			blockingShuffleCompressionEnabled,
 			compressionCodec,
-			maxBuffersPerChannel);
+			pipelinedShuffleCompressionEnabled,
+			pipelinedCompressionCodec,
+			maxBuffersPerChannel,
+			sortShuffleMinParallelism,
+			sortShuffleMinBuffers,
+			bufferDebloatConfiguration);
 	}
 
 	/**
@@ -362,7 +421,12 @@ public class NettyShuffleEnvironmentConfiguration {
 		result = 31 * result + (forcePartitionReleaseOnConsumption ? 1 : 0);
 		result = 31 * result + (blockingShuffleCompressionEnabled ? 1 : 0);
 		result = 31 * result + Objects.hashCode(compressionCodec);
+		result = 31 * result + (pipelinedShuffleCompressionEnabled ? 1 : 0);
+		result = 31 * result + Objects.hashCode(pipelinedCompressionCodec);
 		result = 31 * result + maxBuffersPerChannel;
+		result = 31 * result + sortShuffleMinParallelism;
+		result = 31 * result + sortShuffleMinBuffers;
+		result = 31 * result + bufferDebloatConfiguration.hashCode();
 		return result;
 	}
 
@@ -388,8 +452,13 @@ public class NettyShuffleEnvironmentConfiguration {
 					Arrays.equals(this.tempDirs, that.tempDirs) &&
 					this.forcePartitionReleaseOnConsumption == that.forcePartitionReleaseOnConsumption &&
 					this.blockingShuffleCompressionEnabled == that.blockingShuffleCompressionEnabled &&
+					this.pipelinedShuffleCompressionEnabled == that.pipelinedShuffleCompressionEnabled &&
 					this.maxBuffersPerChannel == that.maxBuffersPerChannel &&
-					Objects.equals(this.compressionCodec, that.compressionCodec);
+					this.sortShuffleMinParallelism == that.sortShuffleMinParallelism &&
+					this.sortShuffleMinBuffers == that.sortShuffleMinBuffers &&
+					this.bufferDebloatConfiguration.equals(that.bufferDebloatConfiguration) &&
+					Objects.equals(this.compressionCodec, that.compressionCodec) &&
+					Objects.equals(this.pipelinedCompressionCodec, that.pipelinedCompressionCodec);
 		}
 	}
 
@@ -408,7 +477,12 @@ public class NettyShuffleEnvironmentConfiguration {
 				", forcePartitionReleaseOnConsumption=" + forcePartitionReleaseOnConsumption +
 				", blockingShuffleCompressionEnabled=" + blockingShuffleCompressionEnabled +
 				", compressionCodec=" + compressionCodec +
+				", pipelinedShuffleCompressionEnabled=" + pipelinedShuffleCompressionEnabled +
+				", pipelinedCompressionCodec=" + pipelinedCompressionCodec +
 				", maxBuffersPerChannel=" + maxBuffersPerChannel +
+				", sortShuffleMinParallelism=" + sortShuffleMinParallelism +
+				", sortShuffleMinBuffers=" + sortShuffleMinBuffers +
+				", bufferDebloatConfiguration=" + bufferDebloatConfiguration +
 				'}';
 	}
 }
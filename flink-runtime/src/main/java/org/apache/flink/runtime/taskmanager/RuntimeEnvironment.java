@@ -41,6 +41,7 @@ import org.apache.flink.runtime.metrics.groups.TaskMetricGroup;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.TaskStateManager;
 import org.apache.flink.runtime.taskexecutor.GlobalAggregateManager;
+import org.apache.flink.runtime.taskexecutor.TaskManagerSharedResources;
 
 import java.util.Map;
 import java.util.concurrent.Future;
@@ -86,6 +87,7 @@ public class RuntimeEnvironment implements Environment {
 	private final TaskKvStateRegistry kvStateRegistry;
 
 	private final TaskManagerRuntimeInfo taskManagerInfo;
+	private final TaskManagerSharedResources taskManagerSharedResources;
 	private final TaskMetricGroup metrics;
 
 	private final Task containingTask;
@@ -116,6 +118,7 @@ public class RuntimeEnvironment implements Environment {
 			CheckpointResponder checkpointResponder,
 			TaskOperatorEventGateway operatorEventGateway,
 			TaskManagerRuntimeInfo taskManagerInfo,
+			TaskManagerSharedResources taskManagerSharedResources,
 			TaskMetricGroup metrics,
 			Task containingTask) {
 
@@ -142,6 +145,7 @@ public class RuntimeEnvironment implements Environment {
 		this.checkpointResponder = checkNotNull(checkpointResponder);
 		this.operatorEventGateway = checkNotNull(operatorEventGateway);
 		this.taskManagerInfo = checkNotNull(taskManagerInfo);
+		this.taskManagerSharedResources = checkNotNull(taskManagerSharedResources);
 		this.containingTask = containingTask;
 		this.metrics = metrics;
 	}
@@ -188,6 +192,11 @@ public class RuntimeEnvironment implements Environment {
 		return taskManagerInfo;
 	}
 
+	@Override
+	public TaskManagerSharedResources getTaskManagerSharedResources() {
+		return taskManagerSharedResources;
+	}
+
 	@Override
 	public TaskMetricGroup getMetricGroup() {
 		return metrics;
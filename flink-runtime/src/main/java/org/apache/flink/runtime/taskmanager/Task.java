@@ -74,6 +74,7 @@ import org.apache.flink.runtime.taskexecutor.BackPressureSampleableTask;
 import org.apache.flink.runtime.taskexecutor.GlobalAggregateManager;
 import org.apache.flink.runtime.taskexecutor.KvStateService;
 import org.apache.flink.runtime.taskexecutor.PartitionProducerStateChecker;
+import org.apache.flink.runtime.taskexecutor.TaskManagerSharedResources;
 import org.apache.flink.runtime.taskexecutor.slot.TaskSlotPayload;
 import org.apache.flink.runtime.util.FatalExitExceptionHandler;
 import org.apache.flink.types.Either;
@@ -182,6 +183,9 @@ public class Task implements Runnable, TaskSlotPayload, TaskActions, PartitionPr
 	/** Access to task manager configuration and host names. */
 	private final TaskManagerRuntimeInfo taskManagerConfig;
 
+	/** The resources shared by all tasks of the task manager. */
+	private final TaskManagerSharedResources taskManagerSharedResources;
+
 	/** The memory manager to be used by this task. */
 	private final MemoryManager memoryManager;
 
@@ -303,6 +307,7 @@ public class Task implements Runnable, TaskSlotPayload, TaskActions, PartitionPr
 		LibraryCacheManager.ClassLoaderHandle classLoaderHandle,
 		FileCache fileCache,
 		TaskManagerRuntimeInfo taskManagerConfig,
+		TaskManagerSharedResources taskManagerSharedResources,
 		@Nonnull TaskMetricGroup metricGroup,
 		ResultPartitionConsumableNotifier resultPartitionConsumableNotifier,
 		PartitionProducerStateChecker partitionProducerStateChecker,
@@ -356,6 +361,7 @@ public class Task implements Runnable, TaskSlotPayload, TaskActions, PartitionPr
 		this.fileCache = Preconditions.checkNotNull(fileCache);
 		this.kvStateService = Preconditions.checkNotNull(kvStateService);
 		this.taskManagerConfig = Preconditions.checkNotNull(taskManagerConfig);
+		this.taskManagerSharedResources = Preconditions.checkNotNull(taskManagerSharedResources);
 
 		this.metrics = metricGroup;
 
@@ -679,6 +685,7 @@ public class Task implements Runnable, TaskSlotPayload, TaskActions, PartitionPr
 				checkpointResponder,
 				operatorCoordinatorEventGateway,
 				taskManagerConfig,
+				taskManagerSharedResources,
 				metrics,
 				this);
 
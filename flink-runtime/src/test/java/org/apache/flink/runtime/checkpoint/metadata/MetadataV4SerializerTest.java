@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.checkpoint.metadata;
+
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.core.memory.ByteArrayInputStreamWithPos;
+import org.apache.flink.core.memory.ByteArrayOutputStreamWithPos;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.runtime.checkpoint.MasterState;
+import org.apache.flink.runtime.checkpoint.OperatorState;
+import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
+import org.apache.flink.runtime.jobgraph.OperatorID;
+import org.apache.flink.runtime.state.IncrementalRemoteKeyedStateHandle;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.StateHandleID;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.filesystem.FileStateHandle;
+
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Various tests for the version 4 format serializer of a checkpoint.
+ */
+public class MetadataV4SerializerTest {
+
+	@Test
+	public void testCheckpointWithMasterAndTaskState() throws Exception {
+		final Random rnd = new Random();
+
+		final int maxNumMasterStates = 5;
+		final int maxTaskStates = 20;
+		final int maxNumSubtasks = 20;
+
+		for (int i = 0; i < 100; ++i) {
+			final long checkpointId = rnd.nextLong() & 0x7fffffffffffffffL;
+
+			final int numTasks = rnd.nextInt(maxTaskStates) + 1;
+			final int numSubtasks = rnd.nextInt(maxNumSubtasks) + 1;
+			final Collection<OperatorState> taskStates =
+					CheckpointTestUtils.createOperatorStates(rnd, numTasks, numSubtasks);
+
+			final int numMasterStates = rnd.nextInt(maxNumMasterStates);
+			final Collection<MasterState> masterStates =
+					CheckpointTestUtils.createRandomMasterStates(rnd, numMasterStates);
+
+			final CheckpointMetadata metadata = new CheckpointMetadata(checkpointId, taskStates, masterStates);
+			testCheckpointSerialization(metadata, false);
+			testCheckpointSerialization(metadata, true);
+		}
+	}
+
+	@Test
+	public void testCheckpointWithSharedIncrementalState() throws Exception {
+		final CheckpointMetadata metadata = createIncrementalCheckpoint(new Random(42L), 200, 50);
+
+		final byte[] compact = testCheckpointSerialization(metadata, false);
+		final byte[] compressed = testCheckpointSerialization(metadata, true);
+
+		final ByteArrayOutputStreamWithPos baos = new ByteArrayOutputStreamWithPos();
+		MetadataV3Serializer.serialize(metadata, new DataOutputStream(baos));
+		final byte[] previousFormat = baos.toByteArray();
+
+		assertTrue(compact.length * 4 < previousFormat.length);
+		assertTrue(compressed.length < compact.length);
+	}
+
+	@Test
+	public void testRepeatedHandlesAreDeserializedOnce() throws Exception {
+		final CheckpointMetadata metadata = createIncrementalCheckpoint(new Random(42L), 2, 1);
+
+		final ByteArrayOutputStreamWithPos baos = new ByteArrayOutputStreamWithPos();
+		MetadataV4Serializer.serialize(metadata, new DataOutputStream(baos));
+
+		final CheckpointMetadata deserialized = MetadataV4Serializer.INSTANCE.deserialize(
+			new DataInputStream(new ByteArrayInputStreamWithPos(baos.toByteArray())),
+			getClass().getClassLoader());
+
+		final OperatorState operatorState = deserialized.getOperatorStates().iterator().next();
+		final StreamStateHandle first = getSharedFile(operatorState.getState(0));
+		final StreamStateHandle second = getSharedFile(operatorState.getState(1));
+
+		assertEquals(first, second);
+		assertTrue(first == second);
+	}
+
+	// ------------------------------------------------------------------------
+
+	private byte[] testCheckpointSerialization(CheckpointMetadata metadata, boolean compressed) throws IOException {
+		ByteArrayOutputStreamWithPos baos = new ByteArrayOutputStreamWithPos();
+		DataOutputStream out = new DataOutputViewStreamWrapper(baos);
+
+		MetadataV4Serializer.serialize(metadata, out, compressed);
+		out.close();
+
+		byte[] bytes = baos.toByteArray();
+
+		DataInputStream in = new DataInputViewStreamWrapper(new ByteArrayInputStreamWithPos(bytes));
+		CheckpointMetadata deserialized = MetadataV4Serializer.INSTANCE.deserialize(in, getClass().getClassLoader());
+
+		assertEquals(metadata.getCheckpointId(), deserialized.getCheckpointId());
+		assertEquals(metadata.getOperatorStates(), deserialized.getOperatorStates());
+
+		assertEquals(metadata.getMasterStates().size(), deserialized.getMasterStates().size());
+		for (Iterator<MasterState> a = metadata.getMasterStates().iterator(), b = deserialized.getMasterStates().iterator();
+				a.hasNext();) {
+			CheckpointTestUtils.assertMasterStateEquality(a.next(), b.next());
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Creates the metadata of an incremental checkpoint in which all subtasks reference the same
+	 * shared files, as it happens after rescaling.
+	 */
+	private static CheckpointMetadata createIncrementalCheckpoint(Random rnd, int numSubtasks, int numSharedFiles) {
+		final String checkpointsDirectory = "hdfs://namenode:9000/flink/checkpoints/" + new UUID(rnd.nextLong(), rnd.nextLong());
+
+		final Map<StateHandleID, StreamStateHandle> sharedState = new HashMap<>();
+		for (int i = 0; i < numSharedFiles; i++) {
+			final String fileName = new UUID(rnd.nextLong(), rnd.nextLong()).toString();
+			sharedState.put(
+				new StateHandleID(i + ".sst"),
+				new FileStateHandle(new Path(checkpointsDirectory + "/shared/" + fileName), rnd.nextInt(1 << 20)));
+		}
+
+		final OperatorState operatorState = new OperatorState(new OperatorID(), numSubtasks, 1024);
+		for (int subtask = 0; subtask < numSubtasks; subtask++) {
+			final String privateDirectory = checkpointsDirectory + "/chk-42/";
+			final Map<StateHandleID, StreamStateHandle> privateState = Collections.singletonMap(
+				new StateHandleID("MANIFEST"),
+				new FileStateHandle(new Path(privateDirectory + new UUID(rnd.nextLong(), rnd.nextLong())), 1024));
+
+			final IncrementalRemoteKeyedStateHandle keyedStateHandle = new IncrementalRemoteKeyedStateHandle(
+				new UUID(rnd.nextLong(), rnd.nextLong()),
+				KeyGroupRange.of(subtask, subtask),
+				42L,
+				sharedState,
+				privateState,
+				new FileStateHandle(new Path(privateDirectory + new UUID(rnd.nextLong(), rnd.nextLong())), 512));
+
+			operatorState.putState(subtask, new OperatorSubtaskState(null, null, keyedStateHandle, null, null, null));
+		}
+
+		return new CheckpointMetadata(42L, Collections.singletonList(operatorState), Collections.emptyList());
+	}
+
+	private static StreamStateHandle getSharedFile(OperatorSubtaskState subtaskState) {
+		final IncrementalRemoteKeyedStateHandle keyedStateHandle =
+			(IncrementalRemoteKeyedStateHandle) subtaskState.getManagedKeyedState().iterator().next();
+		return keyedStateHandle.getSharedState().get(new StateHandleID("0.sst"));
+	}
+}
@@ -24,7 +24,9 @@ import org.junit.Test;
 import java.nio.ByteBuffer;
 
 import static org.apache.flink.runtime.io.compression.Lz4BlockCompressionFactory.HEADER_LENGTH;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
 
 /**
  * Tests for block compression.
@@ -43,6 +45,30 @@ public class BlockCompressionTest {
 		runByteBufferTest(factory, true, 16);
 	}
 
+	@Test
+	public void testSnappy() {
+		BlockCompressionFactory factory = new SnappyBlockCompressionFactory();
+		runArrayTest(factory, 32768);
+		runArrayTest(factory, 16);
+
+		runByteBufferTest(factory, false, 32768);
+		runByteBufferTest(factory, false, 16);
+		runByteBufferTest(factory, true, 32768);
+		runByteBufferTest(factory, true, 16);
+
+		runMixedByteBufferTest(factory, 32768);
+	}
+
+	@Test
+	public void testCreateFactoryByName() {
+		assertThat(
+			BlockCompressionFactory.createBlockCompressionFactory("lz4"),
+			instanceOf(Lz4BlockCompressionFactory.class));
+		assertThat(
+			BlockCompressionFactory.createBlockCompressionFactory("SNAPPY"),
+			instanceOf(SnappyBlockCompressionFactory.class));
+	}
+
 	private void runArrayTest(BlockCompressionFactory factory, int originalLen) {
 		BlockCompressor compressor = factory.getCompressor();
 		BlockDecompressor decompressor = factory.getDecompressor();
@@ -173,4 +199,36 @@ public class BlockCompressionTest {
 			assertEquals((byte) i, decompressedData.get());
 		}
 	}
+
+	/**
+	 * Compresses direct memory into heap memory and back, like the network stack does with
+	 * off-heap network buffers and heap intermediate buffers.
+	 */
+	private void runMixedByteBufferTest(BlockCompressionFactory factory, int originalLen) {
+		BlockCompressor compressor = factory.getCompressor();
+		BlockDecompressor decompressor = factory.getDecompressor();
+
+		ByteBuffer data = ByteBuffer.allocateDirect(originalLen);
+		for (int i = 0; i < originalLen; i++) {
+			data.put((byte) (i % 7));
+		}
+		data.flip();
+
+		ByteBuffer compressedData = ByteBuffer.allocate(compressor.getMaxCompressedSize(originalLen));
+		int compressedLen = compressor.compress(data, 0, originalLen, compressedData, 0);
+		assertEquals(compressedLen, compressedData.position());
+		compressedData.flip();
+
+		ByteBuffer copiedCompressedData = ByteBuffer.allocateDirect(compressedLen);
+		copiedCompressedData.put(compressedData);
+		copiedCompressedData.flip();
+
+		ByteBuffer decompressedData = ByteBuffer.allocate(originalLen);
+		int decompressedLen = decompressor.decompress(copiedCompressedData, 0, compressedLen, decompressedData, 0);
+		assertEquals(originalLen, decompressedLen);
+
+		for (int i = 0; i < originalLen; i++) {
+			assertEquals((byte) (i % 7), decompressedData.get(i));
+		}
+	}
 }
@@ -22,6 +22,7 @@ import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.runtime.clusterframework.types.ResourceID;
 import org.apache.flink.runtime.io.network.netty.NettyConfig;
 import org.apache.flink.runtime.io.network.partition.BoundedBlockingSubpartitionType;
+import org.apache.flink.runtime.io.network.partition.consumer.BufferDebloatConfiguration;
 import org.apache.flink.runtime.metrics.groups.UnregisteredMetricGroups;
 import org.apache.flink.runtime.taskmanager.NettyShuffleEnvironmentConfiguration;
 import org.apache.flink.runtime.util.EnvironmentInformation;
@@ -57,6 +58,16 @@ public class NettyShuffleEnvironmentBuilder {
 
 	private String compressionCodec = "LZ4";
 
+	private boolean pipelinedShuffleCompressionEnabled = false;
+
+	private String pipelinedCompressionCodec = "LZ4";
+
+	private int sortShuffleMinParallelism = Integer.MAX_VALUE;
+
+	private int sortShuffleMinBuffers = 64;
+
+	private BufferDebloatConfiguration bufferDebloatConfiguration = BufferDebloatConfiguration.disabled();
+
 	private ResourceID taskManagerLocation = ResourceID.generate();
 
 	private NettyConfig nettyConfig;
@@ -113,6 +124,31 @@ public class NettyShuffleEnvironmentBuilder {
 		return this;
 	}
 
+	public NettyShuffleEnvironmentBuilder setPipelinedShuffleCompressionEnabled(boolean pipelinedShuffleCompressionEnabled) {
+		this.pipelinedShuffleCompressionEnabled = pipelinedShuffleCompressionEnabled;
+		return this;
+	}
+
+	public NettyShuffleEnvironmentBuilder setPipelinedCompressionCodec(String pipelinedCompressionCodec) {
+		this.pipelinedCompressionCodec = pipelinedCompressionCodec;
+		return this;
+	}
+
+	public NettyShuffleEnvironmentBuilder setSortShuffleMinParallelism(int sortShuffleMinParallelism) {
+		this.sortShuffleMinParallelism = sortShuffleMinParallelism;
+		return this;
+	}
+
+	public NettyShuffleEnvironmentBuilder setSortShuffleMinBuffers(int sortShuffleMinBuffers) {
+		this.sortShuffleMinBuffers = sortShuffleMinBuffers;
+		return this;
+	}
+
+	public NettyShuffleEnvironmentBuilder setBufferDebloatConfiguration(BufferDebloatConfiguration bufferDebloatConfiguration) {
+		this.bufferDebloatConfiguration = bufferDebloatConfiguration;
+		return this;
+	}
+
 	public NettyShuffleEnvironmentBuilder setNettyConfig(NettyConfig nettyConfig) {
 		this.nettyConfig = nettyConfig;
 		return this;
@@ -140,7 +176,12 @@ public class NettyShuffleEnvironmentBuilder {
 				false,
 				blockingShuffleCompressionEnabled,
 				compressionCodec,
-				maxBuffersPerChannel),
+				pipelinedShuffleCompressionEnabled,
+				pipelinedCompressionCodec,
+				maxBuffersPerChannel,
+				sortShuffleMinParallelism,
+				sortShuffleMinBuffers,
+				bufferDebloatConfiguration),
 			taskManagerLocation,
 			new TaskEventDispatcher(),
 			metricGroup);
@@ -54,6 +54,8 @@ import org.apache.flink.runtime.io.network.partition.ResultSubpartitionView;
 import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
 import org.apache.flink.runtime.io.network.util.DeserializationUtils;
 import org.apache.flink.runtime.io.network.util.TestPooledBufferProvider;
+import org.apache.flink.runtime.metrics.groups.TaskIOMetricGroup;
+import org.apache.flink.runtime.metrics.groups.UnregisteredMetricGroups;
 import org.apache.flink.runtime.operators.shipping.OutputEmitter;
 import org.apache.flink.runtime.operators.shipping.ShipStrategyType;
 import org.apache.flink.runtime.taskmanager.ConsumableNotifyingResultPartitionWriterDecorator;
@@ -86,6 +88,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils.buildSingleBuffer;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -554,6 +557,78 @@ public class RecordWriterTest {
 		assertNotNull(asyncRequestResult.get());
 	}
 
+	/**
+	 * Tests that aligned records do not span buffers and are deserialized without an intermediate copy.
+	 */
+	@Test
+	public void testAlignRecordsToBuffers() throws Exception {
+		// 2 records of 14 bytes fit into one buffer, leaving 4 bytes unused when aligned
+		final TaskIOMetricGroup alignedMetrics = emitAndDeserialize(true, 6, 10, 32);
+		assertEquals(6 * 14, alignedMetrics.getNumBytesInDirectCounter().getCount());
+		assertEquals(0, alignedMetrics.getNumBytesInSpanningCounter().getCount());
+
+		final TaskIOMetricGroup unalignedMetrics = emitAndDeserialize(false, 6, 10, 32);
+		assertThat(unalignedMetrics.getNumBytesInSpanningCounter().getCount(), Matchers.greaterThan(0L));
+		assertEquals(
+			6 * 14,
+			unalignedMetrics.getNumBytesInDirectCounter().getCount() + unalignedMetrics.getNumBytesInSpanningCounter().getCount());
+	}
+
+	/**
+	 * Tests that records larger than a buffer still span buffers when aligning records.
+	 */
+	@Test
+	public void testAlignRecordsToBuffersWithLargeRecords() throws Exception {
+		final TaskIOMetricGroup metrics = emitAndDeserialize(true, 3, 60, 32);
+		assertEquals(0, metrics.getNumBytesInDirectCounter().getCount());
+		assertEquals(3 * 64, metrics.getNumBytesInSpanningCounter().getCount());
+	}
+
+	private TaskIOMetricGroup emitAndDeserialize(
+			boolean alignRecordsToBuffers,
+			int numRecords,
+			int recordSize,
+			int bufferSize) throws Exception {
+		@SuppressWarnings("unchecked")
+		final Queue<BufferConsumer>[] queues = new Queue[] { new ArrayDeque<>() };
+		final TestPooledBufferProvider bufferProvider = new TestPooledBufferProvider(Integer.MAX_VALUE, bufferSize);
+		final RecordWriter<ByteArrayIO> writer = new RecordWriterBuilder<ByteArrayIO>()
+			.setAlignRecordsToBuffers(alignRecordsToBuffers)
+			.build(new CollectingPartitionWriter(queues, bufferProvider));
+
+		final Random random = new Random(42);
+		final List<byte[]> records = new ArrayList<>();
+		for (int i = 0; i < numRecords; i++) {
+			final byte[] bytes = new byte[recordSize];
+			random.nextBytes(bytes);
+			records.add(bytes);
+			writer.emit(new ByteArrayIO(bytes.clone()));
+		}
+		writer.clearBuffers();
+
+		final TaskIOMetricGroup metrics = UnregisteredMetricGroups.createUnregisteredTaskMetricGroup().getIOMetricGroup();
+		final SpillingAdaptiveSpanningRecordDeserializer<ByteArrayIO> deserializer =
+			new SpillingAdaptiveSpanningRecordDeserializer<>(new String[]{ tempFolder.getRoot().getAbsolutePath() });
+		deserializer.setMetricGroup(metrics);
+
+		int numDeserialized = 0;
+		while (!queues[0].isEmpty()) {
+			deserializer.setNextBuffer(buildSingleBuffer(queues[0].remove()));
+			RecordDeserializer.DeserializationResult result;
+			do {
+				final ByteArrayIO target = new ByteArrayIO(new byte[recordSize]);
+				result = deserializer.getNextRecord(target);
+				if (result.isFullRecord()) {
+					assertArrayEquals(records.get(numDeserialized++), target.bytes);
+				}
+			} while (!result.isBufferConsumed());
+			deserializer.getCurrentBuffer().recycleBuffer();
+		}
+		assertEquals(numRecords, numDeserialized);
+
+		return metrics;
+	}
+
 	private void verifyBroadcastBufferOrEventIndependence(boolean broadcastEvent) throws Exception {
 		@SuppressWarnings("unchecked")
 		ArrayDeque<BufferConsumer>[] queues = new ArrayDeque[]{new ArrayDeque(), new ArrayDeque()};
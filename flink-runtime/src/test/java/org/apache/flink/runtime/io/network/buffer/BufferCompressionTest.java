@@ -48,6 +48,8 @@ public class BufferCompressionTest {
 
 	private static final int NUM_LONGS = BUFFER_SIZE / 8;
 
+	private final String codec;
+
 	private final boolean compressToOriginalBuffer;
 
 	private final boolean decompressToOriginalBuffer;
@@ -67,6 +69,9 @@ public class BufferCompressionTest {
 			{false, "LZ4", true, false},
 			{false, "LZ4", false, true},
 			{false, "LZ4", false, false},
+			{true, "SNAPPY", true, false},
+			{true, "SNAPPY", false, true},
+			{false, "SNAPPY", false, false},
 		});
 	}
 
@@ -75,6 +80,7 @@ public class BufferCompressionTest {
 			String compressionCodec,
 			boolean compressToOriginalBuffer,
 			boolean decompressToOriginalBuffer) {
+		this.codec = compressionCodec;
 		this.compressToOriginalBuffer = compressToOriginalBuffer;
 		this.decompressToOriginalBuffer = decompressToOriginalBuffer;
 		this.compressor = new BufferCompressor(BUFFER_SIZE, compressionCodec);
@@ -108,6 +114,29 @@ public class BufferCompressionTest {
 		verifyDecompressionResult(decompressedBuffer, NUM_LONGS / 4, NUM_LONGS / 2);
 	}
 
+	@Test
+	public void testDecompressToNewBuffer() {
+		Buffer compressedBuffer = compress(compressor, bufferToCompress, compressToOriginalBuffer);
+		assertTrue(compressedBuffer.isCompressed());
+		int compressedSize = compressedBuffer.getSize();
+
+		// hold the intermediate buffer, decompressing into a new buffer must not need it
+		Buffer intermediateBuffer = decompressor.decompressToIntermediateBuffer(
+			compress(new BufferCompressor(BUFFER_SIZE, codec), createBufferAndFillWithLongValues(false), false));
+
+		Buffer decompressedBuffer = decompressor.decompressToNewBuffer(compressedBuffer);
+		assertFalse(decompressedBuffer.isCompressed());
+		assertTrue(decompressedBuffer.isBuffer());
+		verifyDecompressionResult(decompressedBuffer, 0, NUM_LONGS);
+
+		// the input buffer is left untouched
+		assertTrue(compressedBuffer.isCompressed());
+		assertEquals(compressedSize, compressedBuffer.getSize());
+
+		decompressedBuffer.recycleBuffer();
+		intermediateBuffer.recycleBuffer();
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testCompressEmptyBuffer() {
 		compress(compressor, bufferToCompress.readOnlySlice(0, 0), compressToOriginalBuffer);
@@ -45,11 +45,14 @@ import org.apache.flink.shaded.netty4.io.netty.buffer.ByteBuf;
 import org.apache.flink.shaded.netty4.io.netty.buffer.UnpooledByteBufAllocator;
 import org.apache.flink.shaded.netty4.io.netty.channel.Channel;
 import org.apache.flink.shaded.netty4.io.netty.channel.ChannelHandlerContext;
+import org.apache.flink.shaded.netty4.io.netty.channel.ChannelOutboundHandlerAdapter;
 import org.apache.flink.shaded.netty4.io.netty.channel.embedded.EmbeddedChannel;
 
 import org.junit.Test;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.flink.runtime.io.network.netty.PartitionRequestQueueTest.blockChannel;
 import static org.apache.flink.runtime.io.network.partition.InputChannelTestUtils.createRemoteInputChannel;
@@ -411,6 +414,78 @@ public class CreditBasedPartitionRequestClientHandlerTest {
 		}
 	}
 
+	/**
+	 * Verifies that the credit announcements of multiple input channels are held back for the
+	 * configured delay and then sent with a single flush.
+	 */
+	@Test
+	public void testBatchedCreditAnnouncement() throws Exception {
+		final Duration creditBatchDelay = Duration.ofMillis(200);
+		final AtomicInteger numFlushes = new AtomicInteger();
+		final ChannelOutboundHandlerAdapter flushCounter = new ChannelOutboundHandlerAdapter() {
+			@Override
+			public void flush(ChannelHandlerContext ctx) throws Exception {
+				numFlushes.incrementAndGet();
+				super.flush(ctx);
+			}
+		};
+
+		final CreditBasedPartitionRequestClientHandler handler = new CreditBasedPartitionRequestClientHandler(creditBatchDelay);
+		final NetworkBufferAllocator allocator = new NetworkBufferAllocator(handler);
+		final EmbeddedChannel channel = new EmbeddedChannel(flushCounter, handler);
+		final PartitionRequestClient client = new NettyPartitionRequestClient(
+			channel, handler, mock(ConnectionID.class), mock(PartitionRequestClientFactory.class));
+
+		final NetworkBufferPool networkBufferPool = new NetworkBufferPool(10, 32, 2);
+		final SingleInputGate inputGate = createSingleInputGate(2, networkBufferPool);
+		final RemoteInputChannel[] inputChannels = new RemoteInputChannel[2];
+		inputChannels[0] = createRemoteInputChannel(inputGate, client);
+		inputChannels[1] = createRemoteInputChannel(inputGate, client);
+		try {
+			inputGate.setInputChannels(inputChannels);
+			final BufferPool bufferPool = networkBufferPool.createBufferPool(6, 6);
+			inputGate.setBufferPool(bufferPool);
+			inputGate.assignExclusiveSegments();
+
+			inputChannels[0].requestSubpartition(0);
+			inputChannels[1].requestSubpartition(0);
+			assertThat(channel.readOutbound(), instanceOf(PartitionRequest.class));
+			assertThat(channel.readOutbound(), instanceOf(PartitionRequest.class));
+			numFlushes.set(0);
+
+			final long startNanos = System.nanoTime();
+			for (RemoteInputChannel inputChannel : inputChannels) {
+				handler.channelRead(mock(ChannelHandlerContext.class), createBufferResponse(
+					TestBufferFactory.createBuffer(32),
+					0,
+					inputChannel.getInputChannelId(),
+					1,
+					allocator));
+			}
+			channel.runPendingTasks();
+
+			// the credit is held back
+			if (System.nanoTime() - startNanos < creditBatchDelay.toNanos()) {
+				assertNull(channel.readOutbound());
+			}
+
+			Thread.sleep(creditBatchDelay.toMillis());
+			channel.runScheduledPendingTasks();
+
+			for (RemoteInputChannel inputChannel : inputChannels) {
+				Object readFromOutbound = channel.readOutbound();
+				assertThat(readFromOutbound, instanceOf(AddCredit.class));
+				assertEquals(inputChannel.getInputChannelId(), ((AddCredit) readFromOutbound).receiverId);
+				assertEquals(2, ((AddCredit) readFromOutbound).credit);
+			}
+			assertNull(channel.readOutbound());
+			assertEquals(1, numFlushes.get());
+		} finally {
+			releaseResource(inputGate, networkBufferPool);
+			channel.close();
+		}
+	}
+
 	/**
 	 * Verifies that {@link RemoteInputChannel} is enqueued in the pipeline, but {@link AddCredit}
 	 * message is not sent actually when this input channel is released.
@@ -44,6 +44,8 @@ import org.apache.flink.runtime.io.network.util.TestBufferFactory;
 
 import org.apache.flink.shaded.netty4.io.netty.buffer.ByteBuf;
 import org.apache.flink.shaded.netty4.io.netty.buffer.Unpooled;
+import org.apache.flink.shaded.netty4.io.netty.channel.ChannelHandlerContext;
+import org.apache.flink.shaded.netty4.io.netty.channel.ChannelOutboundHandlerAdapter;
 import org.apache.flink.shaded.netty4.io.netty.channel.embedded.EmbeddedChannel;
 
 import org.junit.AfterClass;
@@ -201,6 +203,70 @@ public class PartitionRequestQueueTest {
 		assertNull(read);
 	}
 
+	/**
+	 * Tests that the buffers of multiple readers are written with a single flush if a write batch
+	 * size is configured.
+	 */
+	@Test
+	public void testBatchedBufferWriting() throws Exception {
+		// 3 readers with 2 buffers each: one flush to unblock the channel, one for all buffers
+		assertEquals(2, writeBuffersOfReaders(1024, 3));
+	}
+
+	/**
+	 * Tests that every buffer is flushed on its own if no write batch size is configured.
+	 */
+	@Test
+	public void testUnbatchedBufferWriting() throws Exception {
+		assertEquals(1 + 3 * 2, writeBuffersOfReaders(0, 3));
+	}
+
+	/**
+	 * Writes two buffers of each of the given number of readers and returns the number of flushes.
+	 */
+	private static int writeBuffersOfReaders(int maxBatchBytes, int numReaders) throws Exception {
+		final AtomicInteger numFlushes = new AtomicInteger();
+		final ChannelOutboundHandlerAdapter flushCounter = new ChannelOutboundHandlerAdapter() {
+			@Override
+			public void flush(ChannelHandlerContext ctx) throws Exception {
+				numFlushes.incrementAndGet();
+				super.flush(ctx);
+			}
+		};
+
+		final PartitionRequestQueue queue = new PartitionRequestQueue(maxBatchBytes);
+		final EmbeddedChannel channel = new EmbeddedChannel(flushCounter, queue);
+
+		// block the channel so that all readers are enqueued before anything is written
+		ByteBuf channelBlockingBuffer = blockChannel(channel);
+
+		for (int i = 0; i < numReaders; i++) {
+			final ResultSubpartitionView view = new DefaultBufferResultSubpartitionView(2);
+			final CreditBasedSequenceNumberingViewReader reader = new CreditBasedSequenceNumberingViewReader(
+				new InputChannelID(),
+				Integer.MAX_VALUE,
+				queue);
+			reader.requestSubpartitionView(
+				(partitionId, index, availabilityListener) -> view,
+				new ResultPartitionID(),
+				0);
+			reader.notifyDataAvailable();
+		}
+		channel.runPendingTasks();
+		assertEquals(numReaders, queue.getAvailableReaders().size());
+
+		// unblock the channel
+		channel.flush();
+		assertSame(channelBlockingBuffer, channel.readOutbound());
+
+		for (int i = 0; i < numReaders * 2; i++) {
+			assertThat(channel.readOutbound(), instanceOf(NettyMessage.BufferResponse.class));
+		}
+		assertNull(channel.readOutbound());
+
+		return numFlushes.get();
+	}
+
 	private static class DefaultBufferResultSubpartitionView extends NoOpResultSubpartitionView {
 		/** Number of buffer in the backlog to report with every {@link #getNextBuffer()} call. */
 		private final AtomicInteger buffersInBacklog;
@@ -26,7 +26,9 @@ import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.BufferBuilder;
 import org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils;
 import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
+import org.apache.flink.runtime.io.network.buffer.BufferDecompressor;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
+import org.apache.flink.runtime.io.network.buffer.FreeingBufferRecycler;
 import org.apache.flink.runtime.io.network.util.TestConsumerCallback;
 import org.apache.flink.runtime.io.network.util.TestPooledBufferProvider;
 import org.apache.flink.runtime.io.network.util.TestProducerSource;
@@ -41,6 +43,7 @@ import org.junit.Test;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Random;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -65,6 +68,8 @@ import static org.mockito.Mockito.when;
  */
 public class PipelinedSubpartitionTest extends SubpartitionTestBase {
 
+	private static final int COMPRESSION_BUFFER_SIZE = 1024;
+
 	/** Executor service for concurrent produce/consume tests. */
 	private static final ExecutorService executorService = Executors.newCachedThreadPool();
 
@@ -325,6 +330,95 @@ public class PipelinedSubpartitionTest extends SubpartitionTestBase {
 		assertTrue(view.isReleased());
 	}
 
+	@Test
+	public void testCompressPolledBuffers() throws Exception {
+		final ResultPartition partition = createCompressingPartition();
+		partition.addBufferConsumer(createBufferConsumer(true), 0);
+		partition.addBufferConsumer(createBufferConsumer(true), 0);
+		partition.finish();
+
+		final ResultSubpartitionView view = partition.createSubpartitionView(0, new NoOpBufferAvailablityListener());
+		final BufferDecompressor decompressor = new BufferDecompressor(COMPRESSION_BUFFER_SIZE, "LZ4");
+		for (int i = 0; i < 2; i++) {
+			final Buffer buffer = view.getNextBuffer().buffer();
+			assertTrue(buffer.isCompressed());
+
+			final Buffer decompressedBuffer = decompressor.decompressToIntermediateBuffer(buffer);
+			assertEquals(COMPRESSION_BUFFER_SIZE, decompressedBuffer.getSize());
+			decompressedBuffer.recycleBuffer();
+			buffer.recycleBuffer();
+		}
+
+		// events are never compressed
+		assertFalse(view.getNextBuffer().buffer().isCompressed());
+
+		final ResultSubpartition subpartition = partition.getAllPartitions()[0];
+		assertEquals(2 * COMPRESSION_BUFFER_SIZE, subpartition.getTotalNumberOfBytesBeforeCompression());
+		assertTrue(subpartition.getTotalNumberOfBytesAfterCompression() < COMPRESSION_BUFFER_SIZE);
+	}
+
+	@Test
+	public void testSharedBuffersAreNotCompressed() throws Exception {
+		final ResultPartition partition = createCompressingPartition();
+		final BufferConsumer bufferConsumer = createBufferConsumer(true);
+		// like a broadcast, both subpartitions share the same memory segment
+		partition.addBufferConsumer(bufferConsumer.copy(), 1);
+		partition.addBufferConsumer(bufferConsumer, 0);
+
+		final ResultSubpartitionView view = partition.createSubpartitionView(0, new NoOpBufferAvailablityListener());
+		partition.flushAll();
+		final Buffer buffer = view.getNextBuffer().buffer();
+		assertFalse(buffer.isCompressed());
+		assertEquals(COMPRESSION_BUFFER_SIZE, buffer.getSize());
+		buffer.recycleBuffer();
+
+		final ResultSubpartition subpartition = partition.getAllPartitions()[0];
+		assertEquals(COMPRESSION_BUFFER_SIZE, subpartition.getTotalNumberOfBytesBeforeCompression());
+		assertEquals(COMPRESSION_BUFFER_SIZE, subpartition.getTotalNumberOfBytesAfterCompression());
+	}
+
+	@Test
+	public void testSkipCompressionAfterIncompressibleBuffer() throws Exception {
+		final ResultPartition partition = createCompressingPartition();
+		partition.addBufferConsumer(createBufferConsumer(false), 0);
+		for (int i = 0; i <= PipelinedSubpartition.NUM_BUFFERS_TO_SKIP_COMPRESSION; i++) {
+			partition.addBufferConsumer(createBufferConsumer(true), 0);
+		}
+		partition.finish();
+
+		final ResultSubpartitionView view = partition.createSubpartitionView(0, new NoOpBufferAvailablityListener());
+		assertFalse(pollAndRecycle(view).isCompressed());
+		for (int i = 0; i < PipelinedSubpartition.NUM_BUFFERS_TO_SKIP_COMPRESSION; i++) {
+			assertFalse(pollAndRecycle(view).isCompressed());
+		}
+
+		// compression is probed again afterwards
+		assertTrue(pollAndRecycle(view).isCompressed());
+	}
+
+	private static ResultPartition createCompressingPartition() {
+		return new ResultPartitionBuilder()
+			.setResultPartitionType(ResultPartitionType.PIPELINED)
+			.setNumberOfSubpartitions(2)
+			.setNetworkBufferSize(COMPRESSION_BUFFER_SIZE)
+			.setPipelinedShuffleCompressionEnabled(true)
+			.build();
+	}
+
+	private static BufferConsumer createBufferConsumer(boolean isCompressible) {
+		final byte[] data = new byte[COMPRESSION_BUFFER_SIZE];
+		if (!isCompressible) {
+			new Random(42).nextBytes(data);
+		}
+		return new BufferConsumer(MemorySegmentFactory.wrap(data), FreeingBufferRecycler.INSTANCE, Buffer.DataType.DATA_BUFFER);
+	}
+
+	private static Buffer pollAndRecycle(ResultSubpartitionView view) throws Exception {
+		final Buffer buffer = view.getNextBuffer().buffer();
+		buffer.recycleBuffer();
+		return buffer;
+	}
+
 	public static PipelinedSubpartition createPipelinedSubpartition() {
 		final ResultPartition parent = PartitionTestUtils.createPartition();
 
@@ -69,6 +69,14 @@ public class ResultPartitionBuilder {
 
 	private String compressionCodec = "LZ4";
 
+	private boolean pipelinedShuffleCompressionEnabled = false;
+
+	private String pipelinedCompressionCodec = "LZ4";
+
+	private int sortShuffleMinParallelism = Integer.MAX_VALUE;
+
+	private int sortShuffleMinBuffers = 64;
+
 	public ResultPartitionBuilder setResultPartitionIndex(int partitionIndex) {
 		this.partitionIndex = partitionIndex;
 		return this;
@@ -152,6 +160,26 @@ public class ResultPartitionBuilder {
 		return this;
 	}
 
+	public ResultPartitionBuilder setPipelinedShuffleCompressionEnabled(boolean pipelinedShuffleCompressionEnabled) {
+		this.pipelinedShuffleCompressionEnabled = pipelinedShuffleCompressionEnabled;
+		return this;
+	}
+
+	public ResultPartitionBuilder setPipelinedCompressionCodec(String pipelinedCompressionCodec) {
+		this.pipelinedCompressionCodec = pipelinedCompressionCodec;
+		return this;
+	}
+
+	public ResultPartitionBuilder setSortShuffleMinParallelism(int sortShuffleMinParallelism) {
+		this.sortShuffleMinParallelism = sortShuffleMinParallelism;
+		return this;
+	}
+
+	public ResultPartitionBuilder setSortShuffleMinBuffers(int sortShuffleMinBuffers) {
+		this.sortShuffleMinBuffers = sortShuffleMinBuffers;
+		return this;
+	}
+
 	ResultPartitionBuilder setBoundedBlockingSubpartitionType(
 			@SuppressWarnings("SameParameterValue") BoundedBlockingSubpartitionType blockingSubpartitionType) {
 		this.blockingSubpartitionType = blockingSubpartitionType;
@@ -170,7 +198,11 @@ public class ResultPartitionBuilder {
 			releasedOnConsumption,
 			blockingShuffleCompressionEnabled,
 			compressionCodec,
-			maxBuffersPerChannel);
+			pipelinedShuffleCompressionEnabled,
+			pipelinedCompressionCodec,
+			maxBuffersPerChannel,
+			sortShuffleMinParallelism,
+			sortShuffleMinBuffers);
 
 		FunctionWithException<BufferPoolOwner, BufferPool, IOException> factory = bufferPoolFactory.orElseGet(() ->
 			resultPartitionFactory.createBufferPoolFactory(numberOfSubpartitions, partitionType));
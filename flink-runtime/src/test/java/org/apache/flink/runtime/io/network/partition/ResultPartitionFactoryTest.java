@@ -87,9 +87,36 @@ public class ResultPartitionFactoryTest extends TestLogger {
 		assertThat(resultPartition, not(instanceOf(ReleaseOnConsumptionResultPartition.class)));
 	}
 
+	@Test
+	public void testSortMergePartitionCreated() {
+		final ResultPartition resultPartition = createResultPartition(false, ResultPartitionType.BLOCKING, 1);
+		assertThat(resultPartition, instanceOf(SortMergeResultPartition.class));
+		Arrays.stream(resultPartition.subpartitions).forEach(sp -> assertThat(sp, instanceOf(BoundedBlockingSubpartition.class)));
+		resultPartition.release();
+	}
+
+	@Test
+	public void testSortMergePartitionNotCreatedBelowMinParallelism() {
+		final ResultPartition resultPartition = createResultPartition(false, ResultPartitionType.BLOCKING, 2);
+		assertThat(resultPartition, not(instanceOf(SortMergeResultPartition.class)));
+	}
+
+	@Test
+	public void testSortMergePartitionNotCreatedForPipelined() {
+		final ResultPartition resultPartition = createResultPartition(false, ResultPartitionType.PIPELINED, 1);
+		assertThat(resultPartition, not(instanceOf(SortMergeResultPartition.class)));
+	}
+
 	private static ResultPartition createResultPartition(
 			boolean releasePartitionOnConsumption,
 			ResultPartitionType partitionType) {
+		return createResultPartition(releasePartitionOnConsumption, partitionType, Integer.MAX_VALUE);
+	}
+
+	private static ResultPartition createResultPartition(
+			boolean releasePartitionOnConsumption,
+			ResultPartitionType partitionType,
+			int sortShuffleMinParallelism) {
 		ResultPartitionFactory factory = new ResultPartitionFactory(
 			new ResultPartitionManager(),
 			fileChannelManager,
@@ -101,7 +128,11 @@ public class ResultPartitionFactoryTest extends TestLogger {
 			releasePartitionOnConsumption,
 			false,
 			"LZ4",
-			Integer.MAX_VALUE);
+			false,
+			"LZ4",
+			Integer.MAX_VALUE,
+			sortShuffleMinParallelism,
+			1);
 
 		final ResultPartitionDeploymentDescriptor descriptor = new ResultPartitionDeploymentDescriptor(
 			PartitionDescriptorBuilder
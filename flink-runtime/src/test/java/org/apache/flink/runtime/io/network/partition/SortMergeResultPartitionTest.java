@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.io.disk.FileChannelManager;
+import org.apache.flink.runtime.io.disk.FileChannelManagerImpl;
+import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
+import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
+import org.apache.flink.runtime.io.network.buffer.NetworkBufferPool;
+import org.apache.flink.runtime.io.network.partition.ResultSubpartition.BufferAndBacklog;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link SortMergeResultPartition}.
+ */
+public class SortMergeResultPartitionTest extends TestLogger {
+
+	private static final int BUFFER_SIZE = 1024;
+
+	private static final int NUM_SUBPARTITIONS = 10;
+
+	private static final int NUM_NETWORK_BUFFERS = 100;
+
+	@Rule
+	public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private FileChannelManager fileChannelManager;
+
+	private NetworkBufferPool networkBufferPool;
+
+	@Before
+	public void setUp() throws IOException {
+		fileChannelManager = new FileChannelManagerImpl(new String[] {tmpFolder.newFolder().getPath()}, "testing");
+		networkBufferPool = new NetworkBufferPool(NUM_NETWORK_BUFFERS, BUFFER_SIZE, 1);
+	}
+
+	@After
+	public void shutdown() throws Exception {
+		fileChannelManager.close();
+		networkBufferPool.destroy();
+	}
+
+	@Test
+	public void testWriteAndRead() throws Exception {
+		final int numBuffersPerSubpartition = 50;
+
+		// two sort buffers force many regions in the data file
+		final ResultPartition partition = createPartition(2);
+		assertThat(partition, instanceOf(SortMergeResultPartition.class));
+
+		for (int i = 0; i < numBuffersPerSubpartition; i++) {
+			for (int subpartition = 0; subpartition < NUM_SUBPARTITIONS; subpartition++) {
+				partition.addBufferConsumer(createBufferConsumer(subpartition, i), subpartition);
+			}
+		}
+		partition.finish();
+
+		for (int subpartition = 0; subpartition < NUM_SUBPARTITIONS; subpartition++) {
+			final ResultSubpartitionView view = partition.createSubpartitionView(subpartition, () -> {});
+			readAndVerify(view, subpartition, numBuffersPerSubpartition);
+			view.releaseAllResources();
+		}
+
+		partition.release();
+	}
+
+	@Test
+	public void testSkewedDataIsReadInOrder() throws Exception {
+		final ResultPartition partition = createPartition(3);
+
+		final int numBuffers = 100;
+		for (int i = 0; i < numBuffers; i++) {
+			partition.addBufferConsumer(createBufferConsumer(7, i), 7);
+		}
+		partition.addBufferConsumer(createBufferConsumer(3, 0), 3);
+		partition.finish();
+
+		readAndVerify(partition.createSubpartitionView(7, () -> {}), 7, numBuffers);
+		readAndVerify(partition.createSubpartitionView(3, () -> {}), 3, 1);
+		readAndVerify(partition.createSubpartitionView(0, () -> {}), 0, 0);
+
+		partition.release();
+	}
+
+	@Test
+	public void testFilesDeletedOnRelease() throws Exception {
+		final ResultPartition partition = createPartition(2);
+		for (int i = 0; i < 10; i++) {
+			partition.addBufferConsumer(createBufferConsumer(0, i), 0);
+		}
+		partition.finish();
+
+		final File[] dirs = fileChannelManager.getPaths();
+		assertEquals(2, countFiles(dirs));
+
+		final ResultSubpartitionView view = partition.createSubpartitionView(0, () -> {});
+		partition.release();
+
+		// the files are kept as long as there is a reader
+		assertEquals(2, countFiles(dirs));
+
+		view.releaseAllResources();
+		assertEquals(0, countFiles(dirs));
+	}
+
+	@Test
+	public void testSortBufferUsesNetworkBuffers() throws Exception {
+		final ResultPartition partition = createPartition(3);
+
+		// the pool reserves the sort buffers on top of the buffers of the subpartitions
+		assertEquals(NUM_SUBPARTITIONS + 1 + 3, partition.getBufferPool().getNumberOfRequiredMemorySegments());
+		assertEquals(3, partition.getBufferPool().bestEffortGetNumOfUsedBuffers());
+		assertEquals(NUM_NETWORK_BUFFERS - 3, networkBufferPool.getNumberOfAvailableMemorySegments());
+
+		for (int i = 0; i < 10; i++) {
+			partition.addBufferConsumer(createBufferConsumer(0, i), 0);
+		}
+		partition.finish();
+
+		// the sort buffers are returned once the data is written
+		assertEquals(0, partition.getBufferPool().bestEffortGetNumOfUsedBuffers());
+
+		partition.release();
+		partition.close();
+		assertEquals(NUM_NETWORK_BUFFERS, networkBufferPool.getNumberOfAvailableMemorySegments());
+	}
+
+	@Test
+	public void testSortBufferReturnedOnRelease() throws Exception {
+		final ResultPartition partition = createPartition(3);
+		partition.addBufferConsumer(createBufferConsumer(0, 0), 0);
+		partition.addBufferConsumer(createBufferConsumer(0, 1), 0);
+
+		partition.release();
+		partition.close();
+		assertEquals(NUM_NETWORK_BUFFERS, networkBufferPool.getNumberOfAvailableMemorySegments());
+	}
+
+	// ------------------------------------------------------------------------
+
+	private ResultPartition createPartition(int numSortBuffers) throws IOException {
+		final ResultPartition partition = new ResultPartitionBuilder()
+			.setResultPartitionType(ResultPartitionType.BLOCKING)
+			.setFileChannelManager(fileChannelManager)
+			.setNetworkBufferPool(networkBufferPool)
+			.setNumberOfSubpartitions(NUM_SUBPARTITIONS)
+			.setNetworkBufferSize(BUFFER_SIZE)
+			.setSortShuffleMinParallelism(1)
+			.setSortShuffleMinBuffers(numSortBuffers)
+			.build();
+		partition.setup();
+		return partition;
+	}
+
+	private static BufferConsumer createBufferConsumer(int subpartition, int sequenceNumber) {
+		final MemorySegment segment = MemorySegmentFactory.allocateUnpooledSegment(BUFFER_SIZE);
+		segment.putIntBigEndian(0, subpartition);
+		segment.putIntBigEndian(4, sequenceNumber);
+		return new BufferConsumer(segment, (ignored) -> {}, 8, Buffer.DataType.DATA_BUFFER);
+	}
+
+	private static void readAndVerify(
+			ResultSubpartitionView view,
+			int subpartition,
+			int numExpectedBuffers) throws Exception {
+
+		for (int i = 0; i < numExpectedBuffers; i++) {
+			final BufferAndBacklog next = view.getNextBuffer();
+			assertTrue(next.buffer().isBuffer());
+
+			final ByteBuffer data = next.buffer().getNioBufferReadable();
+			assertEquals(subpartition, data.getInt());
+			assertEquals(i, data.getInt());
+			assertFalse(data.hasRemaining());
+			next.buffer().recycleBuffer();
+		}
+
+		final BufferAndBacklog last = view.getNextBuffer();
+		assertFalse(last.buffer().isBuffer());
+		assertEquals(
+			EndOfPartitionEvent.INSTANCE,
+			EventSerializer.fromBuffer(last.buffer(), SortMergeResultPartitionTest.class.getClassLoader()));
+		last.buffer().recycleBuffer();
+
+		assertNull(view.getNextBuffer());
+	}
+
+	private static int countFiles(File[] dirs) {
+		int numFiles = 0;
+		for (File dir : dirs) {
+			final String[] files = dir.list();
+			numFiles += files == null ? 0 : files.length;
+		}
+		return numFiles;
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.partition.consumer;
+
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link BufferDebloater}.
+ */
+public class BufferDebloaterTest extends TestLogger {
+
+	private static final int BUFFER_SIZE = 1024;
+
+	private static final long PERIOD_NANOS = Duration.ofMillis(100).toNanos();
+
+	@Test
+	public void testInitialTargetIsMaximum() {
+		final BufferDebloater debloater = createDebloater(4, 10);
+
+		assertEquals(10, debloater.getTargetBuffersPerChannel());
+		assertEquals(4L * 10 * BUFFER_SIZE, debloater.getTargetInflightBytes());
+		assertEquals(0, debloater.getThroughput());
+	}
+
+	@Test
+	public void testTargetRecalculatedOncePerPeriod() {
+		final BufferDebloater debloater = createDebloater(4, 10);
+
+		assertFalse(debloater.onBufferConsumed(BUFFER_SIZE, 0));
+		assertFalse(debloater.onBufferConsumed(BUFFER_SIZE, PERIOD_NANOS - 1));
+		assertTrue(debloater.onBufferConsumed(BUFFER_SIZE, PERIOD_NANOS));
+		assertFalse(debloater.onBufferConsumed(BUFFER_SIZE, PERIOD_NANOS + 1));
+	}
+
+	@Test
+	public void testTargetFollowsThroughput() {
+		// 1 second target, 4 channels
+		final BufferDebloater debloater = createDebloater(4, 100);
+
+		// 8 buffers in 100 ms: 80 buffers per second, 20 buffers per channel
+		consume(debloater, 8, 0);
+		assertEquals(80L * BUFFER_SIZE, debloater.getThroughput());
+		assertEquals(80L * BUFFER_SIZE, debloater.getTargetInflightBytes());
+		assertEquals(20, debloater.getTargetBuffersPerChannel());
+
+		// 2 buffers in 100 ms: 20 buffers per second, smoothed to 50 buffers per second
+		consume(debloater, 2, PERIOD_NANOS);
+		assertEquals(50L * BUFFER_SIZE, debloater.getThroughput());
+		assertEquals(13, debloater.getTargetBuffersPerChannel());
+	}
+
+	@Test
+	public void testTargetIsBounded() {
+		final BufferDebloater debloater = createDebloater(4, 10);
+
+		// far more than the maximum number of buffers per channel per second
+		consume(debloater, 1000, 0);
+		assertEquals(10, debloater.getTargetBuffersPerChannel());
+
+		final BufferDebloater slowDebloater = createDebloater(4, 10);
+
+		// a single small buffer still leaves one buffer per channel
+		slowDebloater.onBufferConsumed(1, 0);
+		slowDebloater.onBufferConsumed(1, 10 * PERIOD_NANOS);
+		assertEquals(1, slowDebloater.getTargetBuffersPerChannel());
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static BufferDebloater createDebloater(int numChannels, int maxBuffersPerChannel) {
+		return new BufferDebloater(
+			new BufferDebloatConfiguration(true, Duration.ofSeconds(1), Duration.ofNanos(PERIOD_NANOS)),
+			BUFFER_SIZE,
+			numChannels,
+			maxBuffersPerChannel);
+	}
+
+	/**
+	 * Consumes the given number of buffers within one period which started at the given time.
+	 */
+	private static void consume(BufferDebloater debloater, int numBuffers, long periodStartNanos) {
+		for (int i = 0; i < numBuffers - 1; i++) {
+			assertFalse(debloater.onBufferConsumed(BUFFER_SIZE, periodStartNanos + i));
+		}
+		assertTrue(debloater.onBufferConsumed(BUFFER_SIZE, periodStartNanos + PERIOD_NANOS));
+	}
+}
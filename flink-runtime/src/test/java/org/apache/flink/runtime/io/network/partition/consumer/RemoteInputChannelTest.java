@@ -636,6 +636,52 @@ public class RemoteInputChannelTest {
 		}
 	}
 
+	/**
+	 * Tests to verify that the number of buffers required on a backlog is limited by the maximum
+	 * number of announced buffers, but never below the number of exclusive buffers.
+	 */
+	@Test
+	public void testMaxAnnouncedBuffersLimitRequiredBuffers() throws Exception {
+		// Setup
+		final NetworkBufferPool networkBufferPool = new NetworkBufferPool(16, 32, 2);
+		final int numFloatingBuffers = 14;
+
+		final SingleInputGate inputGate = createSingleInputGate(1, networkBufferPool);
+		final RemoteInputChannel inputChannel = createRemoteInputChannel(inputGate);
+		inputGate.setInputChannels(inputChannel);
+		Throwable thrown = null;
+		try {
+			final BufferPool bufferPool = networkBufferPool.createBufferPool(numFloatingBuffers, numFloatingBuffers);
+			inputGate.setBufferPool(bufferPool);
+			inputGate.assignExclusiveSegments();
+			inputChannel.requestSubpartition(0);
+
+			// Limit the channel to 5 buffers and receive a larger backlog
+			inputChannel.setMaxAnnouncedBuffers(5);
+			inputChannel.onSenderBacklog(12);
+
+			assertEquals("There should be 5 buffers available in the channel",
+				5, inputChannel.getNumberOfAvailableBuffers());
+			assertEquals("There should be 5 buffers required in the channel",
+				5, inputChannel.getNumberOfRequiredBuffers());
+			assertEquals("There should be 3 unannounced credits",
+				3, inputChannel.getUnannouncedCredit());
+
+			// A limit below the number of exclusive buffers still requires the exclusive buffers
+			inputChannel.setMaxAnnouncedBuffers(1);
+			inputChannel.onSenderBacklog(12);
+
+			assertEquals("There should be 2 buffers required in the channel",
+				2, inputChannel.getNumberOfRequiredBuffers());
+			assertEquals("There should be 3 unannounced credits",
+				3, inputChannel.getUnannouncedCredit());
+		} catch (Throwable t) {
+			thrown = t;
+		} finally {
+			cleanup(networkBufferPool, null, null, thrown, inputChannel);
+		}
+	}
+
 	/**
 	 * Tests to verify that the buffer pool will distribute available floating buffers among
 	 * all the channel listeners in a fair way.
@@ -44,6 +44,7 @@ import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.TaskStateManager;
 import org.apache.flink.runtime.state.TestTaskStateManager;
 import org.apache.flink.runtime.taskexecutor.GlobalAggregateManager;
+import org.apache.flink.runtime.taskexecutor.TaskManagerSharedResources;
 import org.apache.flink.runtime.taskexecutor.TestGlobalAggregateManager;
 import org.apache.flink.runtime.taskmanager.NoOpTaskOperatorEventGateway;
 import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
@@ -64,6 +65,7 @@ public class DummyEnvironment implements Environment {
 	private TaskStateManager taskStateManager;
 	private final GlobalAggregateManager aggregateManager;
 	private final AccumulatorRegistry accumulatorRegistry = new AccumulatorRegistry(jobId, executionId);
+	private final TaskManagerSharedResources taskManagerSharedResources = new TaskManagerSharedResources();
 	private ClassLoader userClassLoader;
 
 	public DummyEnvironment() {
@@ -123,6 +125,11 @@ public class DummyEnvironment implements Environment {
 		return new TestingTaskManagerRuntimeInfo();
 	}
 
+	@Override
+	public TaskManagerSharedResources getTaskManagerSharedResources() {
+		return taskManagerSharedResources;
+	}
+
 	@Override
 	public TaskMetricGroup getMetricGroup() {
 		return UnregisteredMetricGroups.createUnregisteredTaskMetricGroup();
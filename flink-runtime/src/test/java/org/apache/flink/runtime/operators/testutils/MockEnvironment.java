@@ -48,6 +48,7 @@ import org.apache.flink.runtime.query.KvStateRegistry;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.TaskStateManager;
 import org.apache.flink.runtime.taskexecutor.GlobalAggregateManager;
+import org.apache.flink.runtime.taskexecutor.TaskManagerSharedResources;
 import org.apache.flink.runtime.taskmanager.NoOpTaskOperatorEventGateway;
 import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
 import org.apache.flink.types.Record;
@@ -99,6 +100,8 @@ public class MockEnvironment implements Environment, AutoCloseable {
 
 	private final TaskManagerRuntimeInfo taskManagerRuntimeInfo;
 
+	private final TaskManagerSharedResources taskManagerSharedResources = new TaskManagerSharedResources();
+
 	private final BroadcastVariableManager bcVarManager = new BroadcastVariableManager();
 
 	private final AccumulatorRegistry accumulatorRegistry;
@@ -240,6 +243,11 @@ public class MockEnvironment implements Environment, AutoCloseable {
 		return this.taskManagerRuntimeInfo;
 	}
 
+	@Override
+	public TaskManagerSharedResources getTaskManagerSharedResources() {
+		return taskManagerSharedResources;
+	}
+
 	@Override
 	public TaskMetricGroup getMetricGroup() {
 		return taskMetricGroup;
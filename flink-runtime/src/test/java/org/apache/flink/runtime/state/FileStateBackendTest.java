@@ -18,7 +18,17 @@
 
 package org.apache.flink.runtime.state;
 
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.configuration.CheckpointingOptions;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
 import org.apache.flink.runtime.state.filesystem.FsStateBackend;
+import org.apache.flink.util.IOUtils;
+import org.apache.flink.util.TernaryBoolean;
 
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -28,8 +38,16 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 /**
  * Tests for the keyed state backend and operator state backend, as created by the
@@ -38,21 +56,38 @@ import java.util.List;
 @RunWith(Parameterized.class)
 public class FileStateBackendTest extends StateBackendTestBase<FsStateBackend> {
 
-	@Parameterized.Parameters
-	public static List<Boolean> modes() {
-		return Arrays.asList(true, false);
+	private static final int MAX_INCREMENTAL_DELTAS = 2;
+
+	@Parameterized.Parameters(name = "async: {0}, incremental: {1}")
+	public static List<Object[]> modes() {
+		return Arrays.asList(
+			new Object[] {true, false},
+			new Object[] {false, false},
+			new Object[] {true, true});
 	}
 
 	@Parameterized.Parameter
 	public boolean useAsyncMode;
 
+	@Parameterized.Parameter(1)
+	public boolean useIncrementalCheckpoints;
+
 	@Rule
 	public final TemporaryFolder tempFolder = new TemporaryFolder();
 
 	@Override
 	protected FsStateBackend getStateBackend() throws Exception {
 		File checkpointPath = tempFolder.newFolder();
-		return new FsStateBackend(checkpointPath.toURI(), useAsyncMode);
+		Configuration configuration = new Configuration();
+		configuration.set(CheckpointingOptions.FS_INCREMENTAL_MAX_DELTAS, MAX_INCREMENTAL_DELTAS);
+		return new FsStateBackend(
+			checkpointPath.toURI(),
+			null,
+			-1,
+			-1,
+			TernaryBoolean.fromBoolean(useAsyncMode),
+			TernaryBoolean.fromBoolean(useIncrementalCheckpoints))
+			.configure(configuration, getClass().getClassLoader());
 	}
 
 	@Override
@@ -83,4 +118,149 @@ public class FileStateBackendTest extends StateBackendTestBase<FsStateBackend> {
 		super.testConcurrentMapIfQueryable();
 	}
 
+	@Test
+	public void testIncrementalCheckpointRestoresChanges() throws Exception {
+		assumeTrue(useIncrementalCheckpoints);
+
+		ValueStateDescriptor<String> valueStateDescriptor = new ValueStateDescriptor<>("value", String.class);
+		ListStateDescriptor<Integer> listStateDescriptor = new ListStateDescriptor<>("list", Integer.class);
+		SharedStateRegistry sharedStateRegistry = new SharedStateRegistry();
+		CheckpointStreamFactory streamFactory = createStreamFactory();
+
+		AbstractKeyedStateBackend<Integer> backend = createKeyedBackend(IntSerializer.INSTANCE);
+		IncrementalRemoteKeyedStateHandle baseHandle;
+		IncrementalRemoteKeyedStateHandle deltaHandle;
+		try {
+			ValueState<String> valueState = backend.getPartitionedState(
+				VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, valueStateDescriptor);
+			ListState<Integer> listState = backend.getPartitionedState(
+				VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, listStateDescriptor);
+
+			for (int key = 0; key < 100; key++) {
+				backend.setCurrentKey(key);
+				valueState.update("v-" + key);
+				listState.add(key);
+			}
+
+			baseHandle = (IncrementalRemoteKeyedStateHandle) runSnapshot(
+				backend.snapshot(1L, 1L, streamFactory, CheckpointOptions.forCheckpointWithDefaultLocation()),
+				sharedStateRegistry);
+			backend.notifyCheckpointComplete(1L);
+
+			backend.setCurrentKey(1);
+			valueState.update("updated");
+			backend.setCurrentKey(2);
+			valueState.clear();
+			listState.clear();
+			// modifies the list of the existing entry in place
+			backend.setCurrentKey(3);
+			listState.add(42);
+			backend.setCurrentKey(100);
+			valueState.update("new");
+
+			deltaHandle = (IncrementalRemoteKeyedStateHandle) runSnapshot(
+				backend.snapshot(2L, 2L, streamFactory, CheckpointOptions.forCheckpointWithDefaultLocation()),
+				sharedStateRegistry);
+			backend.notifyCheckpointComplete(2L);
+		} finally {
+			IOUtils.closeQuietly(backend);
+			backend.dispose();
+		}
+
+		assertEquals(1, baseHandle.getSharedState().size());
+		assertEquals(2, deltaHandle.getSharedState().size());
+		assertTrue(deltaHandle.getSharedState().keySet().containsAll(baseHandle.getSharedState().keySet()));
+
+		long baseSize = baseHandle.getSharedState().values().iterator().next().getStateSize();
+		for (Map.Entry<StateHandleID, StreamStateHandle> file : deltaHandle.getSharedState().entrySet()) {
+			if (!baseHandle.getSharedState().containsKey(file.getKey())) {
+				assertTrue(file.getValue().getStateSize() < baseSize);
+			}
+		}
+
+		backend = restoreKeyedBackend(IntSerializer.INSTANCE, deltaHandle);
+		try {
+			ValueState<String> valueState = backend.getPartitionedState(
+				VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, valueStateDescriptor);
+			ListState<Integer> listState = backend.getPartitionedState(
+				VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, listStateDescriptor);
+
+			for (int key = 0; key < 100; key++) {
+				backend.setCurrentKey(key);
+				if (key == 1) {
+					assertEquals("updated", valueState.value());
+				} else if (key == 2) {
+					assertNull(valueState.value());
+					assertNull(listState.get());
+					continue;
+				} else {
+					assertEquals("v-" + key, valueState.value());
+				}
+
+				List<Integer> expectedList = key == 3 ? Arrays.asList(3, 42) : Collections.singletonList(key);
+				assertEquals(expectedList, toList(listState.get()));
+			}
+
+			backend.setCurrentKey(100);
+			assertEquals("new", valueState.value());
+		} finally {
+			IOUtils.closeQuietly(backend);
+			backend.dispose();
+		}
+	}
+
+	@Test
+	public void testIncrementalCheckpointCompactsAfterMaxDeltas() throws Exception {
+		assumeTrue(useIncrementalCheckpoints);
+
+		ValueStateDescriptor<Integer> stateDescriptor = new ValueStateDescriptor<>("value", Integer.class);
+		SharedStateRegistry sharedStateRegistry = new SharedStateRegistry();
+		CheckpointStreamFactory streamFactory = createStreamFactory();
+
+		AbstractKeyedStateBackend<Integer> backend = createKeyedBackend(IntSerializer.INSTANCE);
+		IncrementalRemoteKeyedStateHandle stateHandle = null;
+		try {
+			ValueState<Integer> state = backend.getPartitionedState(
+				VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, stateDescriptor);
+
+			// the second checkpoint is never confirmed, so that the third one builds on the first one
+			int[] expectedNumberOfFiles = {1, 2, 2, 3, 1, 2};
+			for (int checkpointId = 1; checkpointId <= expectedNumberOfFiles.length; checkpointId++) {
+				backend.setCurrentKey(checkpointId);
+				state.update(checkpointId);
+
+				stateHandle = (IncrementalRemoteKeyedStateHandle) runSnapshot(
+					backend.snapshot(checkpointId, checkpointId, streamFactory, CheckpointOptions.forCheckpointWithDefaultLocation()),
+					sharedStateRegistry);
+				assertEquals(expectedNumberOfFiles[checkpointId - 1], stateHandle.getSharedState().size());
+
+				if (checkpointId != 2) {
+					backend.notifyCheckpointComplete(checkpointId);
+				}
+			}
+		} finally {
+			IOUtils.closeQuietly(backend);
+			backend.dispose();
+		}
+
+		backend = restoreKeyedBackend(IntSerializer.INSTANCE, stateHandle);
+		try {
+			ValueState<Integer> state = backend.getPartitionedState(
+				VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, stateDescriptor);
+			for (int key = 1; key <= 6; key++) {
+				backend.setCurrentKey(key);
+				assertEquals(Integer.valueOf(key), state.value());
+			}
+		} finally {
+			IOUtils.closeQuietly(backend);
+			backend.dispose();
+		}
+	}
+
+	private static <T> List<T> toList(Iterable<T> iterable) {
+		List<T> list = new ArrayList<>();
+		iterable.forEach(list::add);
+		return list;
+	}
+
 }
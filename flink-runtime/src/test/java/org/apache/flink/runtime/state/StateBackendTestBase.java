@@ -50,6 +50,7 @@ import org.apache.flink.api.common.typeutils.base.LongSerializer;
 import org.apache.flink.api.common.typeutils.base.StringSerializer;
 import org.apache.flink.api.java.typeutils.GenericTypeInfo;
 import org.apache.flink.api.java.typeutils.TypeExtractor;
+import org.apache.flink.api.java.typeutils.runtime.NullableSerializer;
 import org.apache.flink.api.java.typeutils.runtime.PojoSerializer;
 import org.apache.flink.api.java.typeutils.runtime.kryo.JavaSerializer;
 import org.apache.flink.api.java.typeutils.runtime.kryo.KryoSerializer;
@@ -2478,7 +2479,7 @@ public abstract class StateBackendTestBase<B extends AbstractStateBackend> exten
 		backend.dispose();
 		// restore the second snapshot and validate it
 		backend = restoreKeyedBackend(IntSerializer.INSTANCE, snapshot2);
-		snapshot1.discardState();
+		snapshot2.discardState();
 
 		@SuppressWarnings("unchecked")
 		FoldingState<Integer, String> restored2 = backend.getPartitionedState(VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, kvId);
@@ -2690,6 +2691,86 @@ public abstract class StateBackendTestBase<B extends AbstractStateBackend> exten
 		}
 	}
 
+	/**
+	 * Verifies that repeated accesses to the same user keys of a {@link MapState} while processing one key observe
+	 * all preceding modifications, including those through iterators and bulk operations.
+	 */
+	@Test
+	public void testMapStateRepeatedAccessWithinKey() throws Exception {
+		// null values need a serializer which supports them
+		MapStateDescriptor<Integer, Long> kvId = new MapStateDescriptor<>(
+			"id", IntSerializer.INSTANCE, NullableSerializer.wrap(LongSerializer.INSTANCE, true));
+
+		AbstractKeyedStateBackend<Integer> backend = createKeyedBackend(IntSerializer.INSTANCE);
+
+		try {
+			MapState<Integer, Long> state = backend.getPartitionedState(VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, kvId);
+
+			backend.setCurrentKey(1);
+			assertNull(state.get(1));
+			assertFalse(state.contains(1));
+			state.put(1, 10L);
+			assertEquals(Long.valueOf(10L), state.get(1));
+			assertTrue(state.contains(1));
+			state.put(1, null);
+			assertNull(state.get(1));
+			assertTrue(state.contains(1));
+
+			backend.setCurrentKey(2);
+			assertFalse(state.contains(1));
+			state.put(1, 20L);
+
+			backend.setCurrentKey(1);
+			assertTrue(state.contains(1));
+			assertNull(state.get(1));
+
+			Map<Integer, Long> entries = new HashMap<>();
+			entries.put(1, 11L);
+			entries.put(2, 12L);
+			state.putAll(entries);
+			assertEquals(Long.valueOf(11L), state.get(1));
+			assertEquals(Long.valueOf(12L), state.get(2));
+
+			Iterator<Map.Entry<Integer, Long>> iterator = state.iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<Integer, Long> entry = iterator.next();
+				if (entry.getKey() == 1) {
+					entry.setValue(21L);
+				} else {
+					iterator.remove();
+				}
+			}
+			assertEquals(Long.valueOf(21L), state.get(1));
+			assertFalse(state.contains(2));
+
+			state.remove(1);
+			assertNull(state.get(1));
+			assertFalse(state.contains(1));
+
+			state.put(1, 31L);
+			state.clear();
+			assertFalse(state.contains(1));
+			assertTrue(state.isEmpty());
+
+			backend.setCurrentKey(2);
+			assertEquals(Long.valueOf(20L), state.get(1));
+
+			// iterate over a map which is larger than any number of entries loaded at once
+			int numEntries = 10000;
+			for (int i = 0; i < numEntries; i++) {
+				state.put(i, (long) i);
+			}
+			int numIterated = 0;
+			for (Map.Entry<Integer, Long> entry : state.entries()) {
+				assertEquals(Long.valueOf(entry.getKey()), entry.getValue());
+				numIterated++;
+			}
+			assertEquals(numEntries, numIterated);
+		} finally {
+			backend.dispose();
+		}
+	}
+
 	/**
 	 * Verify iterator of {@link MapState} supporting arbitrary access, see [FLINK-10267] to know more details.
 	 */
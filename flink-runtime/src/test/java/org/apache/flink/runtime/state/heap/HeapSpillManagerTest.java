@@ -0,0 +1,329 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.memory.ByteArrayOutputStreamWithPos;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
+import org.apache.flink.runtime.state.KeyedBackendSerializationProxy;
+import org.apache.flink.runtime.state.RegisteredKeyValueStateBackendMetaInfo;
+import org.apache.flink.runtime.state.StateSnapshotKeyGroupReader;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link HeapSpillManager} and the spilling of {@link CopyOnWriteStateTable}s.
+ */
+public class HeapSpillManagerTest extends TestLogger {
+
+	private static final int NUMBER_OF_KEY_GROUPS = 10;
+
+	private static final int NUMBER_OF_KEYS = 1000;
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File spillDirectory;
+
+	private HeapSpillManager spillManager;
+
+	@Before
+	public void setUp() throws IOException {
+		spillDirectory = temporaryFolder.newFolder();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (spillManager != null) {
+			spillManager.close();
+		}
+	}
+
+	@Test
+	public void testSpillsLeastRecentlyUsedStateMaps() throws IOException {
+		spillManager = createSpillManager(20 * 1024);
+		MockInternalKeyContext<Integer> keyContext = createKeyContext();
+		CopyOnWriteStateTable<Integer, Integer, String> table = createStateTable(keyContext);
+
+		putAll(keyContext, table);
+		// access the last key-group, so that it is the most recently used one
+		keyContext.setCurrentKeyAndKeyGroup(keyOfKeyGroup(NUMBER_OF_KEY_GROUPS - 1));
+		table.get(0);
+
+		spillManager.checkMemoryBudget(null);
+
+		assertTrue(spillManager.getSpilledStateSize() > 0);
+		assertTrue(spillManager.getEstimatedStateSize() <= 20 * 1024);
+		assertTrue(getStateMap(table, 0).isSpilled());
+		assertFalse(getStateMap(table, NUMBER_OF_KEY_GROUPS - 1).isSpilled());
+		assertEquals(NUMBER_OF_KEYS, table.size());
+
+		// accessing the state loads it back into memory
+		for (int key = 0; key < NUMBER_OF_KEYS; key++) {
+			keyContext.setCurrentKeyAndKeyGroup(key);
+			assertEquals(String.valueOf(key), table.get(0));
+		}
+
+		for (int keyGroup = 0; keyGroup < NUMBER_OF_KEY_GROUPS; keyGroup++) {
+			assertFalse(getStateMap(table, keyGroup).isSpilled());
+		}
+		assertEquals(0, spillManager.getSpilledStateSize());
+		assertEquals(0, countSpillFiles());
+	}
+
+	@Test
+	public void testSnapshotReadsSpilledStateMaps() throws IOException {
+		spillManager = createSpillManager(1);
+		MockInternalKeyContext<Integer> keyContext = createKeyContext();
+		CopyOnWriteStateTable<Integer, Integer, String> table = createStateTable(keyContext);
+
+		putAll(keyContext, table);
+		spillManager.checkMemoryBudget(null);
+		for (int keyGroup = 0; keyGroup < NUMBER_OF_KEY_GROUPS; keyGroup++) {
+			assertTrue(getStateMap(table, keyGroup).isSpilled());
+		}
+
+		CopyOnWriteStateTableSnapshot<Integer, Integer, String> snapshot = table.stateSnapshot();
+
+		// modifications after the snapshot load the state back, but do not affect the snapshot
+		for (int key = 0; key < NUMBER_OF_KEYS; key++) {
+			keyContext.setCurrentKeyAndKeyGroup(key);
+			table.put(0, "modified");
+		}
+		assertEquals(NUMBER_OF_KEY_GROUPS, countSpillFiles());
+
+		MockInternalKeyContext<Integer> restoredKeyContext = createKeyContext();
+		CopyOnWriteStateTable<Integer, Integer, String> restoredTable = createStateTable(restoredKeyContext);
+		StateSnapshotKeyGroupReader reader = restoredTable.keyGroupReader(KeyedBackendSerializationProxy.VERSION);
+		for (int keyGroup = 0; keyGroup < NUMBER_OF_KEY_GROUPS; keyGroup++) {
+			ByteArrayOutputStreamWithPos out = new ByteArrayOutputStreamWithPos();
+			snapshot.writeStateInKeyGroup(new DataOutputViewStreamWrapper(out), keyGroup);
+			reader.readMappingsInKeyGroup(
+				new DataInputViewStreamWrapper(new ByteArrayInputStream(out.getBuf(), 0, out.getPosition())),
+				keyGroup);
+		}
+		snapshot.release();
+
+		// only the files of the state maps which were spilled again remain
+		int numSpilledStateMaps = 0;
+		for (int keyGroup = 0; keyGroup < NUMBER_OF_KEY_GROUPS; keyGroup++) {
+			numSpilledStateMaps += getStateMap(table, keyGroup).isSpilled() ? 1 : 0;
+		}
+		assertEquals(numSpilledStateMaps, countSpillFiles());
+		assertEquals(NUMBER_OF_KEYS, restoredTable.size());
+		for (int key = 0; key < NUMBER_OF_KEYS; key++) {
+			restoredKeyContext.setCurrentKeyAndKeyGroup(key);
+			assertEquals(String.valueOf(key), restoredTable.get(0));
+		}
+	}
+
+	@Test
+	public void testSpillingRetainsChangeTracking() throws IOException {
+		spillManager = createSpillManager(1);
+		CopyOnWriteStateMap<Integer, Integer, String> stateMap = new CopyOnWriteStateMap<>(StringSerializer.INSTANCE);
+		for (int key = 0; key < 100; key++) {
+			stateMap.put(key, 0, String.valueOf(key));
+		}
+
+		CopyOnWriteStateMapSnapshot<Integer, Integer, String> confirmedSnapshot = stateMap.stateSnapshot();
+		confirmedSnapshot.release();
+		stateMap.confirmSnapshot(confirmedSnapshot.getSnapshotVersion());
+
+		stateMap.put(42, 0, "changed");
+		stateMap.spill(
+			new File(spillDirectory, "test.spill"),
+			IntSerializer.INSTANCE,
+			IntSerializer.INSTANCE,
+			StringSerializer.INSTANCE,
+			spillManager);
+		assertTrue(stateMap.isSpilled());
+
+		CopyOnWriteStateMapSnapshot<Integer, Integer, String> snapshot = stateMap.stateSnapshot();
+		ByteArrayOutputStreamWithPos out = new ByteArrayOutputStreamWithPos();
+		snapshot.writeStateChanges(
+			IntSerializer.INSTANCE,
+			IntSerializer.INSTANCE,
+			StringSerializer.INSTANCE,
+			new DataOutputViewStreamWrapper(out),
+			null,
+			true);
+		snapshot.release();
+
+		DataInputViewStreamWrapper in =
+			new DataInputViewStreamWrapper(new ByteArrayInputStream(out.getBuf(), 0, out.getPosition()));
+		assertEquals(CopyOnWriteStateMapSnapshot.CHANGE_PUT, in.readByte());
+		assertEquals(0, (int) IntSerializer.INSTANCE.deserialize(in));
+		assertEquals(42, (int) IntSerializer.INSTANCE.deserialize(in));
+		assertEquals("changed", StringSerializer.INSTANCE.deserialize(in));
+		assertEquals(CopyOnWriteStateMapSnapshot.CHANGE_END, in.readByte());
+
+		// the loaded entries keep their state versions
+		assertEquals("changed", stateMap.get(42, 0));
+		assertFalse(stateMap.isSpilled());
+		assertEquals(100, stateMap.size());
+	}
+
+	@Test
+	public void testSnapshotTransformsSpilledStateMaps() throws IOException {
+		spillManager = createSpillManager(1);
+		CopyOnWriteStateMap<Integer, Integer, String> stateMap = new CopyOnWriteStateMap<>(StringSerializer.INSTANCE);
+		for (int key = 0; key < 100; key++) {
+			stateMap.put(key, 0, String.valueOf(key));
+		}
+		stateMap.spill(
+			new File(spillDirectory, "test.spill"),
+			IntSerializer.INSTANCE,
+			IntSerializer.INSTANCE,
+			StringSerializer.INSTANCE,
+			spillManager);
+
+		CopyOnWriteStateMapSnapshot<Integer, Integer, String> snapshot = stateMap.stateSnapshot();
+		ByteArrayOutputStreamWithPos out = new ByteArrayOutputStreamWithPos();
+		snapshot.writeState(
+			IntSerializer.INSTANCE,
+			IntSerializer.INSTANCE,
+			StringSerializer.INSTANCE,
+			new DataOutputViewStreamWrapper(out),
+			state -> Integer.parseInt(state) % 2 == 0 ? state + "!" : null);
+		snapshot.release();
+
+		DataInputViewStreamWrapper in =
+			new DataInputViewStreamWrapper(new ByteArrayInputStream(out.getBuf(), 0, out.getPosition()));
+		assertEquals(50, in.readInt());
+		for (int i = 0; i < 50; i++) {
+			assertEquals(0, (int) IntSerializer.INSTANCE.deserialize(in));
+			int key = IntSerializer.INSTANCE.deserialize(in);
+			assertEquals(0, key % 2);
+			assertEquals(key + "!", StringSerializer.INSTANCE.deserialize(in));
+		}
+		assertEquals(0, in.available());
+	}
+
+	@Test
+	public void testSpilledStateMapsDoNotShareTables() throws IOException {
+		spillManager = createSpillManager(1);
+		CopyOnWriteStateMap<Integer, Integer, String> first = new CopyOnWriteStateMap<>(StringSerializer.INSTANCE);
+		CopyOnWriteStateMap<Integer, Integer, String> second = new CopyOnWriteStateMap<>(StringSerializer.INSTANCE);
+		first.put(1, 0, "first");
+		second.put(2, 0, "second");
+
+		first.spill(
+			new File(spillDirectory, "first.spill"),
+			IntSerializer.INSTANCE,
+			IntSerializer.INSTANCE,
+			StringSerializer.INSTANCE,
+			spillManager);
+		second.spill(
+			new File(spillDirectory, "second.spill"),
+			IntSerializer.INSTANCE,
+			IntSerializer.INSTANCE,
+			StringSerializer.INSTANCE,
+			spillManager);
+
+		assertEquals("first", first.get(1, 0));
+		assertEquals("second", second.get(2, 0));
+		assertNull(first.get(2, 0));
+		assertNull(second.get(1, 0));
+		assertEquals(1, first.size());
+		assertEquals(1, second.size());
+	}
+
+	// ------------------------------------------------------------------------
+
+	private HeapSpillManager createSpillManager(long budget) throws IOException {
+		return new HeapSpillManager(
+			new HeapSpillManager.MemoryBudget(budget),
+			null,
+			new File[] {spillDirectory},
+			new UnregisteredMetricsGroup());
+	}
+
+	private static MockInternalKeyContext<Integer> createKeyContext() {
+		return new MockInternalKeyContext<>(0, NUMBER_OF_KEY_GROUPS - 1, NUMBER_OF_KEY_GROUPS);
+	}
+
+	private CopyOnWriteStateTable<Integer, Integer, String> createStateTable(InternalKeyContext<Integer> keyContext) {
+		RegisteredKeyValueStateBackendMetaInfo<Integer, String> metaInfo =
+			new RegisteredKeyValueStateBackendMetaInfo<>(
+				StateDescriptor.Type.VALUE,
+				"test",
+				IntSerializer.INSTANCE,
+				StringSerializer.INSTANCE);
+
+		CopyOnWriteStateTable<Integer, Integer, String> table =
+			new CopyOnWriteStateTable<>(keyContext, metaInfo, IntSerializer.INSTANCE);
+		table.enableSpilling(spillManager);
+		return table;
+	}
+
+	private static void putAll(
+		MockInternalKeyContext<Integer> keyContext,
+		CopyOnWriteStateTable<Integer, Integer, String> table) {
+		for (int key = 0; key < NUMBER_OF_KEYS; key++) {
+			keyContext.setCurrentKeyAndKeyGroup(key);
+			table.put(0, String.valueOf(key));
+		}
+	}
+
+	private static int keyOfKeyGroup(int keyGroup) {
+		MockInternalKeyContext<Integer> keyContext = createKeyContext();
+		for (int key = 0; ; key++) {
+			keyContext.setCurrentKeyAndKeyGroup(key);
+			if (keyContext.getCurrentKeyGroupIndex() == keyGroup) {
+				return key;
+			}
+		}
+	}
+
+	private static CopyOnWriteStateMap<Integer, Integer, String> getStateMap(
+		CopyOnWriteStateTable<Integer, Integer, String> table,
+		int keyGroup) {
+		return (CopyOnWriteStateMap<Integer, Integer, String>) table.getState()[keyGroup];
+	}
+
+	private int countSpillFiles() {
+		int numFiles = 0;
+		File[] directories = spillDirectory.listFiles();
+		if (directories != null) {
+			for (File directory : directories) {
+				String[] files = directory.list();
+				numFiles += files == null ? 0 : files.length;
+			}
+		}
+		return numFiles;
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.taskexecutor;
+
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link TaskManagerSharedResources}.
+ */
+public class TaskManagerSharedResourcesTest extends TestLogger {
+
+	@Test
+	public void testResourceIsCreatedOnce() throws Exception {
+		final TaskManagerSharedResources sharedResources = new TaskManagerSharedResources();
+		final AtomicInteger numCreated = new AtomicInteger();
+
+		final TestResource first = sharedResources.getOrCreate(TestResource.class, () -> {
+			numCreated.incrementAndGet();
+			return new TestResource();
+		});
+		final TestResource second = sharedResources.getOrCreate(TestResource.class, () -> {
+			numCreated.incrementAndGet();
+			return new TestResource();
+		});
+
+		assertSame(first, second);
+		assertEquals(1, numCreated.get());
+	}
+
+	@Test
+	public void testResourcesAreNotSharedBetweenInstances() throws Exception {
+		final TestResource first = new TaskManagerSharedResources().getOrCreate(TestResource.class, TestResource::new);
+		final TestResource second = new TaskManagerSharedResources().getOrCreate(TestResource.class, TestResource::new);
+
+		assertTrue(first != second);
+	}
+
+	@Test
+	public void testCloseClosesResources() throws Exception {
+		final TaskManagerSharedResources sharedResources = new TaskManagerSharedResources();
+		final TestResource resource = sharedResources.getOrCreate(TestResource.class, TestResource::new);
+
+		sharedResources.close();
+		sharedResources.close();
+
+		assertEquals(1, resource.numClosed);
+	}
+
+	@Test
+	public void testGetOrCreateFailsAfterClose() throws Exception {
+		final TaskManagerSharedResources sharedResources = new TaskManagerSharedResources();
+		sharedResources.close();
+
+		try {
+			sharedResources.getOrCreate(TestResource.class, TestResource::new);
+			fail("Expected an exception.");
+		} catch (IllegalStateException ignored) {
+			// expected
+		}
+	}
+
+	private static final class TestResource implements AutoCloseable {
+
+		private int numClosed;
+
+		@Override
+		public void close() {
+			numClosed++;
+		}
+	}
+}
@@ -81,6 +81,13 @@ public final class CopyOnWriteSkipListStateMap<K, N, S> extends StateMap<K, N, S
 	 */
 	static final float DEFAULT_LOGICAL_REMOVED_KEYS_RATIO = 0.2f;
 
+	/**
+	 * Serializers of the key, namespace and state, duplicated for lookups from other threads.
+	 */
+	private final TypeSerializer<K> keySerializer;
+	private final TypeSerializer<N> namespaceSerializer;
+	private final TypeSerializer<S> stateSerializer;
+
 	/**
 	 * The serializer used to serialize the key and namespace to bytes stored in skip list.
 	 */
@@ -175,6 +182,9 @@ public final class CopyOnWriteSkipListStateMap<K, N, S> extends StateMap<K, N, S
 			@Nonnull Allocator spaceAllocator,
 			int numKeysToDeleteOneTime,
 			float logicalRemovedKeysRatio) {
+		this.keySerializer = keySerializer;
+		this.namespaceSerializer = namespaceSerializer;
+		this.stateSerializer = stateSerializer;
 		this.skipListKeySerializer = new SkipListKeySerializer<>(keySerializer, namespaceSerializer);
 		this.skipListValueSerializer = new SkipListValueSerializer<>(stateSerializer);
 		this.spaceAllocator = spaceAllocator;
@@ -228,6 +238,39 @@ public final class CopyOnWriteSkipListStateMap<K, N, S> extends StateMap<K, N, S
 		return getNodeInternal(key, namespace);
 	}
 
+	/**
+	 * Returns the state for the given key and namespace, like {@link #get(Object, Object)}, but without
+	 * using the reusable serialization buffers and without physically removing nodes on the way. This
+	 * may therefore be called by another thread than the one modifying the map, as queryable state does.
+	 *
+	 * @param key       the key.
+	 * @param namespace the namespace.
+	 * @return the state, or null if the key does not exist.
+	 */
+	@Nullable
+	S getConcurrently(K key, N namespace) {
+		MemorySegment keySegment = new SkipListKeySerializer<>(keySerializer.duplicate(), namespaceSerializer.duplicate())
+			.serializeToSegment(key, namespace);
+		int keyLen = keySegment.size();
+
+		long currentNode = helpGetNextNode(findPredecessor(keySegment, 0, 1), 0);
+		while (currentNode != NIL_NODE) {
+			int c = compareSegmentAndNode(keySegment, 0, keyLen, currentNode);
+			if (c < 0) {
+				break;
+			} else if (c == 0) {
+				if (isNodeRemoved(currentNode)) {
+					return null;
+				}
+				Node nodeStorage = getNodeSegmentAndOffset(currentNode);
+				long valuePointer = SkipListUtils.getValuePointer(nodeStorage.nodeSegment, nodeStorage.nodeOffset);
+				return helpGetState(valuePointer, new SkipListValueSerializer<>(stateSerializer.duplicate()));
+			}
+			currentNode = helpGetNextNode(currentNode, 0);
+		}
+		return null;
+	}
+
 	@Override
 	public boolean containsKey(K key, N namespace) {
 		updateStat();
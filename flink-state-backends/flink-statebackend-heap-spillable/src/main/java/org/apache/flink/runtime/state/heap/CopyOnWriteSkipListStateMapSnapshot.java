@@ -60,6 +60,11 @@ public class CopyOnWriteSkipListStateMapSnapshot<K, N, S>
 	 */
 	private final ResourceGuard.Lease lease;
 
+	/**
+	 * Whether this snapshot has been released.
+	 */
+	private boolean released;
+
 	/**
 	 * Creates a new {@link CopyOnWriteSkipListStateMap}.
 	 *
@@ -74,6 +79,7 @@ public class CopyOnWriteSkipListStateMapSnapshot<K, N, S>
 		this.snapshotVersion = owningStateMap.getStateMapVersion();
 		this.numberOfEntriesInSnapshotData = owningStateMap.size();
 		this.lease = lease;
+		this.released = false;
 	}
 
 	/**
@@ -85,8 +91,15 @@ public class CopyOnWriteSkipListStateMapSnapshot<K, N, S>
 
 	@Override
 	public void release() {
-		owningStateMap.releaseSnapshot(this);
-		lease.close();
+		if (!released) {
+			owningStateMap.releaseSnapshot(this);
+			lease.close();
+			released = true;
+		}
+	}
+
+	public boolean isReleased() {
+		return released;
 	}
 
 	@Override
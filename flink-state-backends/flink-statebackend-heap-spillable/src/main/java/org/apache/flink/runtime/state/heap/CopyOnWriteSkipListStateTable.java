@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.RegisteredKeyValueStateBackendMetaInfo;
+import org.apache.flink.runtime.state.StateEntry;
+import org.apache.flink.runtime.state.StateTransformationFunction;
+import org.apache.flink.runtime.state.heap.space.Allocator;
+import org.apache.flink.runtime.state.internal.InternalKvState.StateIncrementalVisitor;
+import org.apache.flink.util.Preconditions;
+
+import javax.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * This implementation of {@link StateTable} uses {@link CopyOnWriteSkipListStateMap}, i.e. it keeps the
+ * state serialized in the space of the given {@link Allocator} instead of on the heap. This implementation
+ * supports asynchronous snapshots.
+ *
+ * <p>{@link HeapListState} and {@link HeapMapState} modify the object returned by {@link #get(Object)}
+ * in place, which a serialized map would not see. For these states, this table therefore keeps the last
+ * accessed entry deserialized and writes it back once another entry is accessed, or before the table
+ * is iterated or snapshotted. This also avoids deserializing the same list or map for every access to
+ * it with the same key. {@link #get(Object, Object)}, which queryable state calls from other threads, does
+ * not read the cached entry and therefore sees its state as of the last write-back.
+ *
+ * @param <K> type of key.
+ * @param <N> type of namespace.
+ * @param <S> type of state.
+ */
+public class CopyOnWriteSkipListStateTable<K, N, S> extends StateTable<K, N, S> implements AutoCloseable {
+
+	private final Allocator spaceAllocator;
+
+	/** Whether the states are modified in place and need to be written back. */
+	private final boolean isWriteBack;
+
+	/** Key of the entry which is kept deserialized, null if there is none. */
+	private K cachedKey;
+
+	private int cachedKeyGroup;
+
+	private N cachedNamespace;
+
+	private S cachedState;
+
+	/**
+	 * Constructs a new {@code CopyOnWriteSkipListStateTable}.
+	 *
+	 * @param keyContext     the key context.
+	 * @param metaInfo       the meta information, including the type serializers.
+	 * @param keySerializer  the serializer of the key.
+	 * @param spaceAllocator the allocator of the space for the serialized state.
+	 */
+	CopyOnWriteSkipListStateTable(
+		InternalKeyContext<K> keyContext,
+		RegisteredKeyValueStateBackendMetaInfo<N, S> metaInfo,
+		TypeSerializer<K> keySerializer,
+		Allocator spaceAllocator) {
+		super(keyContext, metaInfo, keySerializer);
+		this.spaceAllocator = spaceAllocator;
+		this.isWriteBack = metaInfo.getStateType() == StateDescriptor.Type.LIST
+			|| metaInfo.getStateType() == StateDescriptor.Type.MAP;
+
+		for (int i = 0; i < keyGroupedStateMaps.length; i++) {
+			keyGroupedStateMaps[i] = newStateMap();
+		}
+	}
+
+	@Override
+	protected StateMap<K, N, S> createStateMap() {
+		// called by the constructor of the super class before the allocator is set,
+		// the maps are created in the constructor of this class instead
+		return null;
+	}
+
+	private CopyOnWriteSkipListStateMap<K, N, S> newStateMap() {
+		return new CopyOnWriteSkipListStateMap<>(
+			keySerializer,
+			getNamespaceSerializer(),
+			getStateSerializer(),
+			spaceAllocator,
+			CopyOnWriteSkipListStateMap.DEFAULT_MAX_KEYS_TO_DELETE_ONE_TIME,
+			CopyOnWriteSkipListStateMap.DEFAULT_LOGICAL_REMOVED_KEYS_RATIO);
+	}
+
+	// Write-back of the cached entry -------------------------------------------------------------
+
+	@Override
+	public S get(N namespace) {
+		if (!isWriteBack) {
+			return super.get(namespace);
+		}
+
+		K key = keyContext.getCurrentKey();
+		if (isCached(key, namespace)) {
+			return cachedState;
+		}
+
+		flushCachedEntry();
+		S state = super.get(namespace);
+		if (state != null) {
+			cache(key, keyContext.getCurrentKeyGroupIndex(), namespace, state);
+		}
+		return state;
+	}
+
+	@Override
+	public S get(K key, N namespace) {
+		// called by queryable state from another thread, so neither the cached entry nor the
+		// reusable serialization buffers of the state map may be used
+		Preconditions.checkNotNull(key, "No key set. This method should not be called outside of a keyed context.");
+		Preconditions.checkNotNull(namespace, "Provided namespace is null.");
+		int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(key, keyContext.getNumberOfKeyGroups());
+		CopyOnWriteSkipListStateMap<K, N, S> stateMap =
+			(CopyOnWriteSkipListStateMap<K, N, S>) getMapForKeyGroup(keyGroup);
+		return stateMap == null ? null : stateMap.getConcurrently(key, namespace);
+	}
+
+	@Override
+	public boolean containsKey(N namespace) {
+		return (isWriteBack && isCached(keyContext.getCurrentKey(), namespace)) || super.containsKey(namespace);
+	}
+
+	@Override
+	public void put(K key, int keyGroup, N namespace, S state) {
+		if (!isWriteBack) {
+			super.put(key, keyGroup, namespace, state);
+		} else if (isCached(key, namespace)) {
+			cachedState = state;
+		} else {
+			flushCachedEntry();
+			super.put(key, keyGroup, namespace, state);
+			cache(key, keyGroup, namespace, state);
+		}
+	}
+
+	@Override
+	public void remove(N namespace) {
+		if (isWriteBack && isCached(keyContext.getCurrentKey(), namespace)) {
+			clearCachedEntry();
+		}
+		super.remove(namespace);
+	}
+
+	@Override
+	public S removeAndGetOld(N namespace) {
+		if (isWriteBack && isCached(keyContext.getCurrentKey(), namespace)) {
+			S state = cachedState;
+			clearCachedEntry();
+			super.remove(namespace);
+			return state;
+		}
+		return super.removeAndGetOld(namespace);
+	}
+
+	@Override
+	public <T> void transform(N namespace, T value, StateTransformationFunction<S, T> transformation) throws Exception {
+		if (isWriteBack && isCached(keyContext.getCurrentKey(), namespace)) {
+			cachedState = transformation.apply(cachedState, value);
+		} else {
+			flushCachedEntry();
+			super.transform(namespace, value, transformation);
+		}
+	}
+
+	@Override
+	public int size() {
+		flushCachedEntry();
+		return super.size();
+	}
+
+	@Override
+	public int sizeOfNamespace(Object namespace) {
+		flushCachedEntry();
+		return super.sizeOfNamespace(namespace);
+	}
+
+	@Override
+	public Stream<K> getKeys(N namespace) {
+		flushCachedEntry();
+		return super.getKeys(namespace);
+	}
+
+	@Override
+	public StateIncrementalVisitor<K, N, S> getStateIncrementalVisitor(int recommendedMaxNumberOfReturnedRecords) {
+		flushCachedEntry();
+		return super.getStateIncrementalVisitor(recommendedMaxNumberOfReturnedRecords);
+	}
+
+	@Override
+	public Iterator<StateEntry<K, N, S>> iterator() {
+		flushCachedEntry();
+		return super.iterator();
+	}
+
+	private boolean isCached(K key, N namespace) {
+		return cachedKey != null && Objects.equals(cachedKey, key) && Objects.equals(cachedNamespace, namespace);
+	}
+
+	private void cache(K key, int keyGroup, N namespace, S state) {
+		cachedKey = key;
+		cachedKeyGroup = keyGroup;
+		cachedNamespace = namespace;
+		cachedState = state;
+	}
+
+	private void clearCachedEntry() {
+		cachedKey = null;
+		cachedNamespace = null;
+		cachedState = null;
+	}
+
+	/**
+	 * Writes the cached entry back to its state map, because it may have been modified in place.
+	 */
+	private void flushCachedEntry() {
+		if (cachedKey != null) {
+			getMapForKeyGroup(cachedKeyGroup).put(cachedKey, cachedNamespace, cachedState);
+			clearCachedEntry();
+		}
+	}
+
+	// Snapshotting ----------------------------------------------------------------------------------------------------
+
+	/**
+	 * Creates a snapshot of this {@link CopyOnWriteSkipListStateTable}, to be written in checkpointing.
+	 *
+	 * @return a snapshot from this {@link CopyOnWriteSkipListStateTable}, for checkpointing.
+	 */
+	@Nonnull
+	@Override
+	public CopyOnWriteSkipListStateTableSnapshot<K, N, S> stateSnapshot() {
+		flushCachedEntry();
+		return new CopyOnWriteSkipListStateTableSnapshot<>(
+			this,
+			getKeySerializer().duplicate(),
+			getNamespaceSerializer().duplicate(),
+			getStateSerializer().duplicate(),
+			getMetaInfo().getStateSnapshotTransformFactory().createForDeserializedState().orElse(null));
+	}
+
+	@SuppressWarnings("unchecked")
+	List<CopyOnWriteSkipListStateMapSnapshot<K, N, S>> getStateMapSnapshotList() {
+		List<CopyOnWriteSkipListStateMapSnapshot<K, N, S>> snapshotList = new ArrayList<>(keyGroupedStateMaps.length);
+		for (StateMap<K, N, S> stateMap : keyGroupedStateMaps) {
+			snapshotList.add(((CopyOnWriteSkipListStateMap<K, N, S>) stateMap).stateSnapshot());
+		}
+		return snapshotList;
+	}
+
+	/**
+	 * Closes the state maps, which waits for running snapshots and frees their space.
+	 */
+	@Override
+	public void close() {
+		clearCachedEntry();
+		for (StateMap<K, N, S> stateMap : keyGroupedStateMaps) {
+			((CopyOnWriteSkipListStateMap<K, N, S>) stateMap).close();
+		}
+	}
+}
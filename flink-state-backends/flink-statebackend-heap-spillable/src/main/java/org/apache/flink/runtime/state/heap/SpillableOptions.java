@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.configuration.ConfigOption;
+import org.apache.flink.configuration.ConfigOptions;
+import org.apache.flink.configuration.MemorySize;
+import org.apache.flink.runtime.state.heap.space.Constants;
+
+/**
+ * Configuration options for the {@link SpillableStateBackend}.
+ */
+@PublicEvolving
+public class SpillableOptions {
+
+	/** The size of the chunks which hold the serialized state. */
+	public static final ConfigOption<MemorySize> CHUNK_SIZE = ConfigOptions
+		.key("state.backend.spillable.chunk-size")
+		.memoryType()
+		.defaultValue(new MemorySize(Constants.BUCKET_SIZE))
+		.withDescription("The size of the off-heap chunks which hold the serialized keyed state. It must be a " +
+			"power of two. The chunks are reserved from the managed memory of the slot, entries larger than a " +
+			"quarter of the chunk size are stored in chunks of their own.");
+
+	/** Whether state which exceeds the managed memory is spilled to local disk. */
+	public static final ConfigOption<Boolean> SPILL_TO_DISK = ConfigOptions
+		.key("state.backend.spillable.spill-to-disk")
+		.booleanType()
+		.defaultValue(true)
+		.withDescription("Whether chunks which do not fit into the managed memory of the slot are created as " +
+			"memory-mapped files in the temporary directories of the TaskManager, so that the operating system " +
+			"can evict their cold pages to disk. If disabled, accessing the state fails once the managed memory " +
+			"is exhausted.");
+}
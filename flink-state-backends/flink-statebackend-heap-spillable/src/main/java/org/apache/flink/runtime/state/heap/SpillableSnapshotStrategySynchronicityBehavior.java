@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.RegisteredKeyValueStateBackendMetaInfo;
+import org.apache.flink.runtime.state.heap.space.Allocator;
+import org.apache.flink.util.IOUtils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshot behavior of the {@link SpillableStateBackend}, which creates {@link CopyOnWriteSkipListStateTable}s
+ * on a shared {@link Allocator} for both synchronous and asynchronous snapshots. Closing it closes the tables
+ * and the allocator.
+ *
+ * @param <K> type of key.
+ */
+class SpillableSnapshotStrategySynchronicityBehavior<K> implements SnapshotStrategySynchronicityBehavior<K>, Closeable {
+
+	private final boolean asynchronousSnapshots;
+
+	private final Allocator spaceAllocator;
+
+	private final List<CopyOnWriteSkipListStateTable<K, ?, ?>> stateTables;
+
+	SpillableSnapshotStrategySynchronicityBehavior(boolean asynchronousSnapshots, Allocator spaceAllocator) {
+		this.asynchronousSnapshots = asynchronousSnapshots;
+		this.spaceAllocator = spaceAllocator;
+		this.stateTables = new ArrayList<>();
+	}
+
+	@Override
+	public void finalizeSnapshotBeforeReturnHook(Runnable runnable) {
+		if (!asynchronousSnapshots) {
+			// this triggers a synchronous execution from the main checkpointing thread.
+			runnable.run();
+		}
+	}
+
+	@Override
+	public boolean isAsynchronous() {
+		return asynchronousSnapshots;
+	}
+
+	@Override
+	public <N, V> StateTable<K, N, V> newStateTable(
+		InternalKeyContext<K> keyContext,
+		RegisteredKeyValueStateBackendMetaInfo<N, V> newMetaInfo,
+		TypeSerializer<K> keySerializer) {
+		CopyOnWriteSkipListStateTable<K, N, V> stateTable =
+			new CopyOnWriteSkipListStateTable<>(keyContext, newMetaInfo, keySerializer, spaceAllocator);
+		synchronized (stateTables) {
+			stateTables.add(stateTable);
+		}
+		return stateTable;
+	}
+
+	@Override
+	public void close() {
+		synchronized (stateTables) {
+			for (CopyOnWriteSkipListStateTable<K, ?, ?> stateTable : stateTables) {
+				stateTable.close();
+			}
+			stateTables.clear();
+		}
+		IOUtils.closeQuietly(spaceAllocator);
+	}
+}
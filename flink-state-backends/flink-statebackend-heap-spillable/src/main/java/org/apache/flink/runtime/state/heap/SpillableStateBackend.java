@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.configuration.MemorySize;
+import org.apache.flink.configuration.ReadableConfig;
+import org.apache.flink.core.fs.CloseableRegistry;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.execution.Environment;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
+import org.apache.flink.runtime.state.AbstractStateBackend;
+import org.apache.flink.runtime.state.BackendBuildingException;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyedStateHandle;
+import org.apache.flink.runtime.state.LocalRecoveryConfig;
+import org.apache.flink.runtime.state.filesystem.FsStateBackend;
+import org.apache.flink.runtime.state.ttl.TtlTimeProvider;
+import org.apache.flink.util.MathUtils;
+import org.apache.flink.util.TernaryBoolean;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Collection;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * A variant of the {@link FsStateBackend} which keeps the keyed state serialized in off-heap memory
+ * instead of as objects on the JVM heap. This keeps large keyed state out of the reach of the garbage
+ * collector and allows it to exceed the heap size.
+ *
+ * <p>The state is stored in copy-on-write skip lists (see {@link CopyOnWriteSkipListStateMap}) whose
+ * chunks are reserved from the managed memory of the slot. Once that is exhausted, further chunks are
+ * memory-mapped files in the temporary directories, whose cold pages the operating system keeps on disk
+ * (see {@link SpillableOptions}).
+ *
+ * <p>Checkpoints are written to a file system exactly like by the {@link FsStateBackend}, and in the
+ * same format. Both backends can therefore restore each other's snapshots.
+ *
+ * <p>This backend shares packages with the Flink runtime, so its jar needs to be in the {@code lib}
+ * folder of the distribution. It can then be selected by setting {@code state.backend} to the
+ * {@link SpillableStateBackendFactory}.
+ */
+@PublicEvolving
+public class SpillableStateBackend extends FsStateBackend {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The chunk size, null to use the value from the configuration. */
+	@Nullable
+	private final MemorySize chunkSize;
+
+	/** Whether to spill to disk, undefined to use the value from the configuration. */
+	private final TernaryBoolean spillToDisk;
+
+	/**
+	 * Creates a new state backend that keeps the working state off-heap and stores its checkpoint
+	 * data in the file system and location defined by the given URI.
+	 *
+	 * @param checkpointDataUri URI of the checkpoint data directory, see {@link FsStateBackend#FsStateBackend(String)}.
+	 */
+	public SpillableStateBackend(String checkpointDataUri) {
+		super(checkpointDataUri);
+		this.chunkSize = null;
+		this.spillToDisk = TernaryBoolean.UNDEFINED;
+	}
+
+	/**
+	 * Private constructor that creates a re-configured copy of the state backend.
+	 */
+	private SpillableStateBackend(
+			SpillableStateBackend original,
+			FsStateBackend configuredFsStateBackend,
+			ReadableConfig config) {
+		super(
+			configuredFsStateBackend.getCheckpointPath().toUri(),
+			toUri(configuredFsStateBackend.getSavepointPath()),
+			configuredFsStateBackend.getMinFileSizeThreshold(),
+			configuredFsStateBackend.getWriteBufferSize(),
+			TernaryBoolean.fromBoolean(configuredFsStateBackend.isUsingAsynchronousSnapshots()));
+
+		this.chunkSize = original.chunkSize != null ? original.chunkSize : config.get(SpillableOptions.CHUNK_SIZE);
+		this.spillToDisk = original.spillToDisk.resolveUndefined(config.get(SpillableOptions.SPILL_TO_DISK));
+
+		checkArgument(MathUtils.isPowerOf2(getChunkSize().getBytes()) && getChunkSize().getBytes() <= Integer.MAX_VALUE,
+			"The chunk size must be a power of two of at most 1 gb, but is %s.", getChunkSize());
+	}
+
+	// ------------------------------------------------------------------------
+	//  Properties
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Gets the size of the chunks which hold the serialized state.
+	 */
+	public MemorySize getChunkSize() {
+		return chunkSize != null ? chunkSize : SpillableOptions.CHUNK_SIZE.defaultValue();
+	}
+
+	/**
+	 * Gets whether state which exceeds the managed memory is spilled to local disk.
+	 */
+	public boolean isSpillToDisk() {
+		return spillToDisk.getOrDefault(SpillableOptions.SPILL_TO_DISK.defaultValue());
+	}
+
+	// ------------------------------------------------------------------------
+	//  Reconfiguration
+	// ------------------------------------------------------------------------
+
+	@Override
+	public SpillableStateBackend configure(ReadableConfig config, ClassLoader classLoader) {
+		return new SpillableStateBackend(this, super.configure(config, classLoader), config);
+	}
+
+	// ------------------------------------------------------------------------
+	//  initialization and cleanup
+	// ------------------------------------------------------------------------
+
+	@Override
+	public <K> AbstractKeyedStateBackend<K> createKeyedStateBackend(
+		Environment env,
+		JobID jobID,
+		String operatorIdentifier,
+		TypeSerializer<K> keySerializer,
+		int numberOfKeyGroups,
+		KeyGroupRange keyGroupRange,
+		TaskKvStateRegistry kvStateRegistry,
+		TtlTimeProvider ttlTimeProvider,
+		MetricGroup metricGroup,
+		@Nonnull Collection<KeyedStateHandle> stateHandles,
+		CloseableRegistry cancelStreamRegistry) throws BackendBuildingException {
+
+		LocalRecoveryConfig localRecoveryConfig = env.getTaskStateManager().createLocalRecoveryConfig();
+		HeapPriorityQueueSetFactory priorityQueueSetFactory =
+			new HeapPriorityQueueSetFactory(keyGroupRange, numberOfKeyGroups, 128);
+
+		return new SpillableKeyedStateBackendBuilder<>(
+			kvStateRegistry,
+			keySerializer,
+			env.getUserClassLoader(),
+			numberOfKeyGroups,
+			keyGroupRange,
+			env.getExecutionConfig(),
+			ttlTimeProvider,
+			stateHandles,
+			AbstractStateBackend.getCompressionDecorator(env.getExecutionConfig()),
+			localRecoveryConfig,
+			priorityQueueSetFactory,
+			isUsingAsynchronousSnapshots(),
+			cancelStreamRegistry,
+			(int) getChunkSize().getBytes(),
+			env.getMemoryManager(),
+			isSpillToDisk() ? env.getIOManager().getSpillingDirectories() : new File[0]).build();
+	}
+
+	// ------------------------------------------------------------------------
+	//  utilities
+	// ------------------------------------------------------------------------
+
+	@Nullable
+	private static URI toUri(@Nullable Path path) {
+		return path != null ? path.toUri() : null;
+	}
+
+	@Override
+	public String toString() {
+		return "Spillable State Backend (" +
+				"checkpoints: '" + getCheckpointPath() +
+				"', savepoints: '" + getSavepointPath() +
+				"', asynchronous: " + isUsingAsynchronousSnapshots() +
+				", chunkSize: " + getChunkSize() +
+				", spillToDisk: " + spillToDisk + ")";
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap.space;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.util.Preconditions;
+
+import javax.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+
+import static org.apache.flink.runtime.state.heap.space.Constants.NO_SPACE;
+
+/**
+ * A {@link Chunk} backed by a single {@link MemorySegment} which is divided into blocks of one fixed
+ * size. Blocks are handed out by bumping an offset and freed blocks are kept in an intrusive free list,
+ * i.e. the first four bytes of a free block hold the offset of the next free block. This needs no
+ * bookkeeping memory besides the chunk itself.
+ *
+ * <p>This class is not thread-safe, it is guarded by the owning {@link SpaceAllocator}.
+ */
+final class SlabChunk implements Chunk {
+
+	private final int chunkId;
+
+	private final MemorySegment segment;
+
+	private final int blockSize;
+
+	/** Number of bytes reserved from the memory manager for this chunk, 0 if it is not managed. */
+	private final long reservedBytes;
+
+	/** The mapped buffer if this chunk lives in a spill file, null otherwise. */
+	@Nullable
+	private final ByteBuffer mappedBuffer;
+
+	/** Offset of the first block which has never been allocated. */
+	private int bumpOffset;
+
+	/** Offset of the first block in the free list, {@link Constants#NO_SPACE} if the list is empty. */
+	private int freeListHead;
+
+	private int numUsedBlocks;
+
+	SlabChunk(
+			int chunkId,
+			MemorySegment segment,
+			int blockSize,
+			long reservedBytes,
+			@Nullable ByteBuffer mappedBuffer) {
+		Preconditions.checkArgument(blockSize >= Integer.BYTES && blockSize <= segment.size(),
+			"Illegal block size " + blockSize + " for a chunk of " + segment.size() + " bytes.");
+		this.chunkId = chunkId;
+		this.segment = segment;
+		this.blockSize = blockSize;
+		this.reservedBytes = reservedBytes;
+		this.mappedBuffer = mappedBuffer;
+		this.bumpOffset = 0;
+		this.freeListHead = NO_SPACE;
+		this.numUsedBlocks = 0;
+	}
+
+	@Override
+	public int allocate(int len) {
+		Preconditions.checkArgument(len <= blockSize,
+			"Can't allocate " + len + " bytes from a chunk with block size " + blockSize);
+
+		final int offset;
+		if (freeListHead != NO_SPACE) {
+			offset = freeListHead;
+			freeListHead = segment.getInt(offset);
+		} else if (bumpOffset <= segment.size() - blockSize) {
+			offset = bumpOffset;
+			bumpOffset += blockSize;
+		} else {
+			return NO_SPACE;
+		}
+
+		numUsedBlocks++;
+		return offset;
+	}
+
+	@Override
+	public void free(int interChunkOffset) {
+		segment.putInt(interChunkOffset, freeListHead);
+		freeListHead = interChunkOffset;
+		numUsedBlocks--;
+	}
+
+	@Override
+	public int getChunkId() {
+		return chunkId;
+	}
+
+	@Override
+	public int getChunkCapacity() {
+		return segment.size();
+	}
+
+	@Override
+	public MemorySegment getMemorySegment(int chunkOffset) {
+		return segment;
+	}
+
+	@Override
+	public int getOffsetInSegment(int offsetInChunk) {
+		return offsetInChunk;
+	}
+
+	int getBlockSize() {
+		return blockSize;
+	}
+
+	long getReservedBytes() {
+		return reservedBytes;
+	}
+
+	@Nullable
+	ByteBuffer getMappedBuffer() {
+		return mappedBuffer;
+	}
+
+	boolean isFull() {
+		return freeListHead == NO_SPACE && bumpOffset > segment.size() - blockSize;
+	}
+
+	boolean isEmpty() {
+		return numUsedBlocks == 0;
+	}
+}
@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap.space;
+
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.core.memory.MemoryType;
+import org.apache.flink.runtime.memory.MemoryManager;
+import org.apache.flink.runtime.memory.MemoryReservationException;
+import org.apache.flink.util.MathUtils;
+import org.apache.flink.util.Preconditions;
+
+import org.apache.flink.shaded.netty4.io.netty.util.internal.PlatformDependent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.UUID;
+
+/**
+ * An {@link Allocator} which serves the space of the state maps from off-heap chunks.
+ *
+ * <p>Requests of up to a quarter of the chunk size are rounded up to a power of two and served by
+ * chunks which are divided into blocks of exactly that size (see {@link SlabChunk}). Larger requests
+ * get a dedicated chunk. Chunks which become empty are released, except for the last one of each
+ * block size.
+ *
+ * <p>The memory of the chunks is reserved from the given {@link MemoryManager}. Once the managed
+ * memory is exhausted, new chunks are created as memory-mapped files in the spill directories, so
+ * the operating system moves their cold pages to disk. Without spill directories the allocation fails
+ * instead. Without a memory manager, chunks are allocated off-heap without any limit.
+ *
+ * <p>Allocations and frees are thread-safe, because snapshots prune old values concurrently with the
+ * task thread. {@link #getChunkById(int)} does not lock.
+ */
+public final class SpaceAllocator implements Allocator {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SpaceAllocator.class);
+
+	/** The size of the smallest blocks, i.e. the granularity of small allocations. */
+	@VisibleForTesting
+	static final int MIN_BLOCK_SIZE = 16;
+
+	private static final int MIN_BLOCK_SIZE_BITS = MathUtils.log2strict(MIN_BLOCK_SIZE);
+
+	private final Object lock = new Object();
+
+	private final int chunkSize;
+
+	/** Largest block size served from shared chunks, larger requests get a dedicated chunk. */
+	private final int maxBlockSize;
+
+	@Nullable
+	private final MemoryManager memoryManager;
+
+	private final File[] spillDirectories;
+
+	@GuardedBy("lock")
+	private int nextSpillDirectory;
+
+	/** All chunks indexed by their id, replaced on every modification to publish it to readers. */
+	private volatile Chunk[] chunks;
+
+	@GuardedBy("lock")
+	private final ArrayDeque<Integer> freeChunkIds;
+
+	@GuardedBy("lock")
+	private int numChunkIds;
+
+	/** Chunks with free blocks, per block size. */
+	@GuardedBy("lock")
+	private final LinkedHashSet<SlabChunk>[] availableChunks;
+
+	@GuardedBy("lock")
+	private long managedMemorySize;
+
+	@GuardedBy("lock")
+	private long spilledMemorySize;
+
+	@GuardedBy("lock")
+	private boolean closed;
+
+	/**
+	 * Creates a new allocator.
+	 *
+	 * @param chunkSize size of the shared chunks, must be a power of two.
+	 * @param memoryManager the memory manager to reserve the memory from, or null for unlimited memory.
+	 * @param spillDirectories directories for chunks which exceed the managed memory, may be empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public SpaceAllocator(int chunkSize, @Nullable MemoryManager memoryManager, File[] spillDirectories) {
+		Preconditions.checkArgument(MathUtils.isPowerOf2(chunkSize) && chunkSize >= 4 * MIN_BLOCK_SIZE,
+			"The chunk size must be a power of two and at least " + 4 * MIN_BLOCK_SIZE + ", but is " + chunkSize);
+		this.chunkSize = chunkSize;
+		this.maxBlockSize = chunkSize / 4;
+		this.memoryManager = memoryManager;
+		this.spillDirectories = Preconditions.checkNotNull(spillDirectories);
+		this.chunks = new Chunk[16];
+		this.freeChunkIds = new ArrayDeque<>();
+
+		int numBlockSizes = MathUtils.log2strict(maxBlockSize) - MIN_BLOCK_SIZE_BITS + 1;
+		this.availableChunks = new LinkedHashSet[numBlockSizes];
+		for (int i = 0; i < numBlockSizes; i++) {
+			availableChunks[i] = new LinkedHashSet<>();
+		}
+	}
+
+	@Override
+	public long allocate(int size) throws Exception {
+		Preconditions.checkArgument(size > 0, "Can't allocate " + size + " bytes.");
+
+		synchronized (lock) {
+			Preconditions.checkState(!closed, "The allocator is already closed.");
+
+			if (size > maxBlockSize) {
+				int dedicatedSize = (size + 7) & ~7;
+				SlabChunk chunk = newChunk(dedicatedSize, dedicatedSize);
+				return SpaceUtils.getAddress(chunk.getChunkId(), chunk.allocate(size));
+			}
+
+			LinkedHashSet<SlabChunk> available = availableChunks[getBlockSizeIndex(size)];
+			SlabChunk chunk;
+			if (available.isEmpty()) {
+				chunk = newChunk(chunkSize, MIN_BLOCK_SIZE << getBlockSizeIndex(size));
+				available.add(chunk);
+			} else {
+				chunk = available.iterator().next();
+			}
+
+			int offset = chunk.allocate(size);
+			if (chunk.isFull()) {
+				available.remove(chunk);
+			}
+			return SpaceUtils.getAddress(chunk.getChunkId(), offset);
+		}
+	}
+
+	@Override
+	public void free(long address) {
+		int chunkId = SpaceUtils.getChunkIdByAddress(address);
+		int offset = SpaceUtils.getChunkOffsetByAddress(address);
+
+		synchronized (lock) {
+			if (closed) {
+				// all chunks are released already
+				return;
+			}
+
+			SlabChunk chunk = (SlabChunk) chunks[chunkId];
+			Preconditions.checkState(chunk != null, "Chunk " + chunkId + " does not exist.");
+
+			if (chunk.getBlockSize() > maxBlockSize) {
+				releaseChunk(chunk);
+				return;
+			}
+
+			LinkedHashSet<SlabChunk> available = availableChunks[getBlockSizeIndex(chunk.getBlockSize())];
+			if (chunk.isFull()) {
+				available.add(chunk);
+			}
+			chunk.free(offset);
+
+			// keep one chunk per block size to not allocate and release chunks back-to-back
+			if (chunk.isEmpty() && available.size() > 1) {
+				available.remove(chunk);
+				releaseChunk(chunk);
+			}
+		}
+	}
+
+	@Override
+	public Chunk getChunkById(int chunkId) {
+		Chunk chunk = chunks[chunkId];
+		Preconditions.checkNotNull(chunk, "Chunk " + chunkId + " does not exist.");
+		return chunk;
+	}
+
+	@Override
+	public void close() {
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+
+			for (Chunk chunk : chunks) {
+				if (chunk != null) {
+					releaseChunk((SlabChunk) chunk);
+				}
+			}
+			for (LinkedHashSet<SlabChunk> available : availableChunks) {
+				available.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of the chunks in managed (or unlimited off-heap) memory.
+	 */
+	public long getManagedMemorySize() {
+		synchronized (lock) {
+			return managedMemorySize;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of the chunks in spill files.
+	 */
+	public long getSpilledMemorySize() {
+		synchronized (lock) {
+			return spilledMemorySize;
+		}
+	}
+
+	@VisibleForTesting
+	int getNumberOfChunks() {
+		synchronized (lock) {
+			return numChunkIds - freeChunkIds.size();
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private int getBlockSizeIndex(int size) {
+		int log2 = size <= MIN_BLOCK_SIZE ? MIN_BLOCK_SIZE_BITS : MathUtils.log2floor(size - 1) + 1;
+		return log2 - MIN_BLOCK_SIZE_BITS;
+	}
+
+	@GuardedBy("lock")
+	private SlabChunk newChunk(int capacity, int blockSize) throws IOException {
+		int chunkId = freeChunkIds.isEmpty() ? numChunkIds++ : freeChunkIds.poll();
+		SlabChunk chunk = createChunk(chunkId, capacity, blockSize);
+
+		Chunk[] chunkArray = chunkId < chunks.length ? chunks : Arrays.copyOf(chunks, chunks.length * 2);
+		chunkArray[chunkId] = chunk;
+		chunks = chunkArray;
+		return chunk;
+	}
+
+	@GuardedBy("lock")
+	private SlabChunk createChunk(int chunkId, int capacity, int blockSize) throws IOException {
+		if (memoryManager != null) {
+			try {
+				memoryManager.reserveMemory(this, MemoryType.OFF_HEAP, capacity);
+			} catch (MemoryReservationException e) {
+				if (spillDirectories.length == 0) {
+					throw new IOException("Not enough managed memory for a state chunk of " + capacity + " bytes.", e);
+				}
+				return createSpilledChunk(chunkId, capacity, blockSize);
+			}
+		}
+
+		MemorySegment segment;
+		try {
+			segment = MemorySegmentFactory.allocateOffHeapUnsafeMemory(capacity, this);
+		} catch (Throwable t) {
+			if (memoryManager != null) {
+				memoryManager.releaseMemory(this, MemoryType.OFF_HEAP, capacity);
+			}
+			throw t;
+		}
+
+		managedMemorySize += capacity;
+		return new SlabChunk(chunkId, segment, blockSize, memoryManager != null ? capacity : 0L, null);
+	}
+
+	@GuardedBy("lock")
+	private SlabChunk createSpilledChunk(int chunkId, int capacity, int blockSize) throws IOException {
+		File directory = spillDirectories[nextSpillDirectory];
+		nextSpillDirectory = (nextSpillDirectory + 1) % spillDirectories.length;
+		File file = new File(directory, "state-chunk-" + UUID.randomUUID());
+
+		ByteBuffer buffer;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(capacity);
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		} finally {
+			// the mapping stays valid without the file, this way no files are left behind
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+
+		LOG.debug("Managed memory exhausted, spilled state chunk {} of {} bytes to {}.", chunkId, capacity, directory);
+		spilledMemorySize += capacity;
+		return new SlabChunk(chunkId, MemorySegmentFactory.wrapOffHeapMemory(buffer), blockSize, 0L, buffer);
+	}
+
+	@GuardedBy("lock")
+	private void releaseChunk(SlabChunk chunk) {
+		Chunk[] chunkArray = chunks;
+		chunkArray[chunk.getChunkId()] = null;
+		chunks = chunkArray;
+		freeChunkIds.add(chunk.getChunkId());
+
+		chunk.getMemorySegment(0).free();
+		if (chunk.getMappedBuffer() != null) {
+			PlatformDependent.freeDirectBuffer(chunk.getMappedBuffer());
+			spilledMemorySize -= chunk.getChunkCapacity();
+		} else {
+			managedMemorySize -= chunk.getChunkCapacity();
+		}
+		if (chunk.getReservedBytes() > 0) {
+			memoryManager.releaseMemory(this, MemoryType.OFF_HEAP, chunk.getReservedBytes());
+		}
+	}
+}
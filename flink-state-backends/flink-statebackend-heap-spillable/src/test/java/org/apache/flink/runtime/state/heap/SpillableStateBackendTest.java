@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.configuration.CheckpointingOptions;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.queryablestate.client.state.serialization.KvStateSerializer;
+import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
+import org.apache.flink.runtime.state.StateBackendTestBase;
+import org.apache.flink.runtime.state.VoidNamespace;
+import org.apache.flink.runtime.state.VoidNamespaceSerializer;
+import org.apache.flink.runtime.state.internal.InternalKvState;
+
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the keyed state backend and operator state backend, as created by the
+ * {@link SpillableStateBackend}.
+ */
+@RunWith(Parameterized.class)
+public class SpillableStateBackendTest extends StateBackendTestBase<SpillableStateBackend> {
+
+	@Parameterized.Parameters(name = "async: {0}")
+	public static List<Boolean> modes() {
+		return Arrays.asList(true, false);
+	}
+
+	@Parameterized.Parameter
+	public boolean useAsyncMode;
+
+	@Rule
+	public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Override
+	protected SpillableStateBackend getStateBackend() throws Exception {
+		File checkpointPath = tempFolder.newFolder();
+		Configuration config = new Configuration();
+		config.setBoolean(CheckpointingOptions.ASYNC_SNAPSHOTS, useAsyncMode);
+		return new SpillableStateBackend(checkpointPath.toURI().toString()).configure(config, getClass().getClassLoader());
+	}
+
+	@Override
+	protected boolean isSerializerPresenceRequiredOnRestore() {
+		return true;
+	}
+
+	// disable these because the verification does not work for this state backend
+	@Override
+	@Test
+	public void testValueStateRestoreWithWrongSerializers() {}
+
+	@Override
+	@Test
+	public void testListStateRestoreWithWrongSerializers() {}
+
+	@Override
+	@Test
+	public void testReducingStateRestoreWithWrongSerializers() {}
+
+	@Override
+	@Test
+	public void testMapStateRestoreWithWrongSerializers() {}
+
+	/**
+	 * Tests that a queryable state lookup sees the changes to the entry which was cached for write-back
+	 * once the entry has been written back.
+	 */
+	@Test
+	public void testSerializedValueOfWrittenBackEntry() throws Exception {
+		AbstractKeyedStateBackend<Integer> backend = createKeyedBackend(IntSerializer.INSTANCE);
+		try {
+			ListStateDescriptor<String> kvId = new ListStateDescriptor<>("id", String.class);
+			ListState<String> state = backend.getPartitionedState(
+				VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, kvId);
+			@SuppressWarnings("unchecked")
+			InternalKvState<Integer, VoidNamespace, List<String>> kvState =
+				(InternalKvState<Integer, VoidNamespace, List<String>>) state;
+
+			backend.setCurrentKey(1);
+			state.add("a");
+			state.add("b");
+
+			// accessing another key writes the cached entry back
+			backend.setCurrentKey(2);
+			state.get();
+
+			byte[] serializedKeyAndNamespace = KvStateSerializer.serializeKeyAndNamespace(
+				1, IntSerializer.INSTANCE, VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE);
+			byte[] serializedValue = kvState.getSerializedValue(
+				serializedKeyAndNamespace,
+				kvState.getKeySerializer(),
+				kvState.getNamespaceSerializer(),
+				kvState.getValueSerializer());
+
+			assertEquals(
+				Arrays.asList("a", "b"),
+				KvStateSerializer.deserializeList(serializedValue, StringSerializer.INSTANCE));
+		} finally {
+			backend.dispose();
+		}
+	}
+
+	@Ignore
+	@Test
+	public void testConcurrentMapIfQueryable() throws Exception {
+		super.testConcurrentMapIfQueryable();
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap.space;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemoryType;
+import org.apache.flink.runtime.memory.MemoryManager;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link SpaceAllocator}.
+ */
+public class SpaceAllocatorTest extends TestLogger {
+
+	private static final int CHUNK_SIZE = 4096;
+
+	@Rule
+	public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testAllocateAndFree() throws Exception {
+		try (SpaceAllocator allocator = new SpaceAllocator(CHUNK_SIZE, null, new File[0])) {
+			List<Long> addresses = new ArrayList<>();
+			for (int i = 0; i < 1000; i++) {
+				long address = allocator.allocate(1 + i % 100);
+				write(allocator, address, i);
+				addresses.add(address);
+			}
+
+			assertEquals("Addresses must be unique", addresses.size(), new HashSet<>(addresses).size());
+			for (int i = 0; i < addresses.size(); i++) {
+				assertEquals(i, read(allocator, addresses.get(i)));
+			}
+
+			for (long address : addresses) {
+				allocator.free(address);
+			}
+			// one chunk per block size is kept
+			assertTrue(allocator.getNumberOfChunks() <= 4);
+		}
+	}
+
+	@Test
+	public void testFreedBlocksAreReused() throws Exception {
+		try (SpaceAllocator allocator = new SpaceAllocator(CHUNK_SIZE, null, new File[0])) {
+			long address = allocator.allocate(20);
+			allocator.allocate(20);
+			allocator.free(address);
+
+			assertEquals(address, allocator.allocate(32));
+			assertNotEquals(address, allocator.allocate(17));
+			assertEquals(1, allocator.getNumberOfChunks());
+		}
+	}
+
+	@Test
+	public void testLargeAllocationGetsDedicatedChunk() throws Exception {
+		try (SpaceAllocator allocator = new SpaceAllocator(CHUNK_SIZE, null, new File[0])) {
+			int size = 3 * CHUNK_SIZE + 5;
+			long address = allocator.allocate(size);
+			Chunk chunk = allocator.getChunkById(SpaceUtils.getChunkIdByAddress(address));
+
+			MemorySegment segment = chunk.getMemorySegment(0);
+			assertTrue(segment.size() >= size);
+			segment.putLong(size - Long.BYTES, 42L);
+			assertEquals(42L, segment.getLong(size - Long.BYTES));
+
+			allocator.free(address);
+			assertEquals(0, allocator.getNumberOfChunks());
+			assertEquals(0L, allocator.getManagedMemorySize());
+		}
+	}
+
+	@Test
+	public void testManagedMemoryIsReservedAndReleased() throws Exception {
+		MemoryManager memoryManager = MemoryManager.forDefaultPageSize(4 * CHUNK_SIZE);
+		try (SpaceAllocator allocator = new SpaceAllocator(CHUNK_SIZE, memoryManager, new File[0])) {
+			allocator.allocate(16);
+			allocator.allocate(64);
+			assertEquals(2 * CHUNK_SIZE, allocator.getManagedMemorySize());
+			assertEquals(2 * CHUNK_SIZE, memoryManager.availableMemory(MemoryType.OFF_HEAP));
+		}
+
+		assertEquals(4 * CHUNK_SIZE, memoryManager.availableMemory(MemoryType.OFF_HEAP));
+		memoryManager.shutdown();
+	}
+
+	@Test
+	public void testAllocationFailsWithoutManagedMemoryAndSpilling() throws Exception {
+		MemoryManager memoryManager = MemoryManager.forDefaultPageSize(CHUNK_SIZE);
+		try (SpaceAllocator allocator = new SpaceAllocator(CHUNK_SIZE, memoryManager, new File[0])) {
+			allocator.allocate(16);
+			try {
+				allocator.allocate(1024);
+				fail("Expected an exception");
+			} catch (IOException ignored) {
+				// expected
+			}
+		}
+		memoryManager.shutdown();
+	}
+
+	@Test
+	public void testSpillWhenManagedMemoryIsExhausted() throws Exception {
+		File spillDirectory = tempFolder.newFolder();
+		MemoryManager memoryManager = MemoryManager.forDefaultPageSize(CHUNK_SIZE);
+		try (SpaceAllocator allocator = new SpaceAllocator(CHUNK_SIZE, memoryManager, new File[] {spillDirectory})) {
+			Set<Long> addresses = new HashSet<>();
+			for (int i = 0; i < 100; i++) {
+				long address = allocator.allocate(CHUNK_SIZE / 4);
+				write(allocator, address, i);
+				addresses.add(address);
+			}
+
+			assertEquals(CHUNK_SIZE, allocator.getManagedMemorySize());
+			assertEquals(24 * CHUNK_SIZE, allocator.getSpilledMemorySize());
+			assertEquals(0, memoryManager.availableMemory(MemoryType.OFF_HEAP));
+
+			for (long address : addresses) {
+				allocator.free(address);
+			}
+			assertEquals(1, allocator.getNumberOfChunks());
+		}
+
+		// spill files are removed right after they are mapped
+		String[] files = spillDirectory.list();
+		assertEquals(0, files == null ? 0 : files.length);
+		assertEquals(CHUNK_SIZE, memoryManager.availableMemory(MemoryType.OFF_HEAP));
+		memoryManager.shutdown();
+	}
+
+	private static void write(Allocator allocator, long address, int value) {
+		Chunk chunk = allocator.getChunkById(SpaceUtils.getChunkIdByAddress(address));
+		int offset = SpaceUtils.getChunkOffsetByAddress(address);
+		chunk.getMemorySegment(offset).putInt(chunk.getOffsetInSegment(offset), value);
+	}
+
+	private static int read(Allocator allocator, long address) {
+		Chunk chunk = allocator.getChunkById(SpaceUtils.getChunkIdByAddress(address));
+		int offset = SpaceUtils.getChunkOffsetByAddress(address);
+		return chunk.getMemorySegment(offset).getInt(chunk.getOffsetInSegment(offset));
+	}
+}
@@ -108,7 +108,9 @@ public abstract class AbstractRocksDBState<K, N, V> implements InternalKvState<K
 	@Override
 	public void clear() {
 		try {
-			backend.db.delete(columnFamily, writeOptions, serializeCurrentKeyWithGroupAndNamespace());
+			final byte[] rawKeyBytes = serializeCurrentKeyWithGroupAndNamespace();
+			backend.getPrefetchCache().invalidate(columnFamily, rawKeyBytes);
+			backend.db.delete(columnFamily, writeOptions, rawKeyBytes);
 		} catch (RocksDBException e) {
 			throw new FlinkRuntimeException("Error while removing entry from RocksDB", e);
 		}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.runtime.util.ExecutorThreadFactory;
+import org.apache.flink.util.Preconditions;
+import org.apache.flink.util.ResourceGuard;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Reads values from RocksDB in a pool of threads, so that the task thread does not block on disk reads. The
+ * requests that queue up while the threads are busy are read together in one {@code multiGet}.
+ *
+ * <p>The threads acquire the resource guard of the backend for each read, so that the RocksDB instance cannot be
+ * disposed while it is read.
+ */
+class RocksDBAsyncReader implements Closeable {
+
+	/** The maximum number of keys read by one {@code multiGet}. */
+	@VisibleForTesting
+	static final int MAX_BATCH_SIZE = 64;
+
+	private final RocksDB db;
+
+	private final ResourceGuard rocksDBResourceGuard;
+
+	private final BlockingQueue<ReadRequest> requests;
+
+	private final ExecutorService executorService;
+
+	private volatile boolean closed;
+
+	RocksDBAsyncReader(RocksDB db, ResourceGuard rocksDBResourceGuard, int numberOfThreads) {
+		Preconditions.checkArgument(numberOfThreads > 0, "The number of read threads must be positive.");
+		this.db = Preconditions.checkNotNull(db);
+		this.rocksDBResourceGuard = Preconditions.checkNotNull(rocksDBResourceGuard);
+		this.requests = new LinkedBlockingQueue<>();
+		this.executorService = Executors.newFixedThreadPool(
+			numberOfThreads, new ExecutorThreadFactory("flink-rocksdb-async-read"));
+
+		for (int i = 0; i < numberOfThreads; i++) {
+			executorService.execute(this::readRequests);
+		}
+	}
+
+	/**
+	 * Reads the value of the given key. The returned future is completed by one of the read threads, with null if
+	 * there is no value.
+	 */
+	CompletableFuture<byte[]> get(ColumnFamilyHandle columnFamily, byte[] key) {
+		final ReadRequest request = new ReadRequest(columnFamily, key);
+		requests.add(request);
+
+		if (closed) {
+			failPendingRequests();
+		}
+		return request.future;
+	}
+
+	private void readRequests() {
+		final List<ReadRequest> batch = new ArrayList<>(MAX_BATCH_SIZE);
+		try {
+			while (!closed) {
+				batch.add(requests.take());
+				requests.drainTo(batch, MAX_BATCH_SIZE - 1);
+				read(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			// the reader was closed
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void read(List<ReadRequest> batch) {
+		final List<ColumnFamilyHandle> columnFamilies = new ArrayList<>(batch.size());
+		final List<byte[]> keys = new ArrayList<>(batch.size());
+		for (ReadRequest request : batch) {
+			columnFamilies.add(request.columnFamily);
+			keys.add(request.key);
+		}
+
+		final List<byte[]> values;
+		try (ResourceGuard.Lease ignored = rocksDBResourceGuard.acquireResource()) {
+			values = multiGetAsList(columnFamilies, keys);
+		} catch (Throwable t) {
+			for (ReadRequest request : batch) {
+				request.future.completeExceptionally(t);
+			}
+			return;
+		}
+
+		for (int i = 0; i < batch.size(); i++) {
+			batch.get(i).future.complete(values.get(i));
+		}
+	}
+
+	/**
+	 * Returns the values of the given keys in the order of the keys, with null for keys without a value.
+	 *
+	 * <p>This is {@code RocksDB#multiGetAsList}, which the RocksDB version of Flink does not have yet. Its
+	 * {@code multiGet} returns a map instead, which leaves out the keys without a value and is keyed by the identity
+	 * of the given key arrays. This relies on every request having a key array of its own.
+	 */
+	private List<byte[]> multiGetAsList(
+			List<ColumnFamilyHandle> columnFamilies,
+			List<byte[]> keys) throws RocksDBException {
+
+		final Map<byte[], byte[]> valuesByKey = db.multiGet(columnFamilies, keys);
+
+		final List<byte[]> values = new ArrayList<>(keys.size());
+		for (byte[] key : keys) {
+			values.add(valuesByKey.get(key));
+		}
+		return values;
+	}
+
+	private void failPendingRequests() {
+		ReadRequest request;
+		while ((request = requests.poll()) != null) {
+			request.future.completeExceptionally(new IllegalStateException("The RocksDB reader is closed."));
+		}
+	}
+
+	/**
+	 * Stops the read threads and fails all requests which were not read yet. Reads in progress are finished, the
+	 * resource guard of the backend waits for them.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		executorService.shutdownNow();
+		failPendingRequests();
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static final class ReadRequest {
+
+		final ColumnFamilyHandle columnFamily;
+
+		final byte[] key;
+
+		final CompletableFuture<byte[]> future;
+
+		ReadRequest(ColumnFamilyHandle columnFamily, byte[] key) {
+			this.columnFamily = columnFamily;
+			this.key = key;
+			this.future = new CompletableFuture<>();
+		}
+	}
+}
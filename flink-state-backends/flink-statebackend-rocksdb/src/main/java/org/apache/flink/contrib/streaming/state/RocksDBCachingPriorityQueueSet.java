@@ -41,7 +41,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import static org.apache.flink.contrib.streaming.state.RocksDBCachingPriorityQueueSet.OrderedByteArraySetCache.LEXICOGRAPHIC_BYTE_COMPARATOR;
@@ -51,6 +53,11 @@ import static org.apache.flink.contrib.streaming.state.RocksDBCachingPriorityQue
  * of up to the first n elements from RocksDB in memory to reduce interaction with RocksDB, in particular seek
  * operations. Cache uses a simple write-through policy.
  *
+ * <p>If a {@link RocksDBPriorityQueueWriteBuffer} is given, writes to RocksDB are buffered in memory instead. An
+ * element that is removed while its insertion is still buffered, and that was not contained before, is then never
+ * written to RocksDB at all. Buffered writes are written before this set reads from RocksDB, and when the write buffer
+ * is flushed.
+ *
  * @param <E> the type of the contained elements in the queue.
  */
 public class RocksDBCachingPriorityQueueSet<E extends HeapPriorityQueueElement>
@@ -108,6 +115,14 @@ public class RocksDBCachingPriorityQueueSet<E extends HeapPriorityQueueElement>
 	/** Index for management as a {@link HeapPriorityQueueElement}. */
 	private int internalIndex;
 
+	/** The write buffer that decides when buffered writes are written, or null if writes are not buffered. */
+	@Nullable
+	private final RocksDBPriorityQueueWriteBuffer writeBuffer;
+
+	/** The buffered writes of this set, ordered like the elements in RocksDB. */
+	@Nonnull
+	private final TreeMap<byte[], BufferedWrite> bufferedWrites;
+
 	RocksDBCachingPriorityQueueSet(
 		@Nonnegative int keyGroupId,
 		@Nonnegative int keyGroupPrefixBytes,
@@ -117,7 +132,8 @@ public class RocksDBCachingPriorityQueueSet<E extends HeapPriorityQueueElement>
 		@Nonnull DataOutputSerializer outputStream,
 		@Nonnull DataInputDeserializer inputStream,
 		@Nonnull RocksDBWriteBatchWrapper batchWrapper,
-		@Nonnull OrderedByteArraySetCache orderedByteArraySetCache) {
+		@Nonnull OrderedByteArraySetCache orderedByteArraySetCache,
+		@Nullable RocksDBPriorityQueueWriteBuffer writeBuffer) {
 		this.db = db;
 		this.columnFamilyHandle = columnFamilyHandle;
 		this.byteOrderProducingSerializer = byteOrderProducingSerializer;
@@ -129,6 +145,8 @@ public class RocksDBCachingPriorityQueueSet<E extends HeapPriorityQueueElement>
 		this.groupPrefixBytes = createKeyGroupBytes(keyGroupId, keyGroupPrefixBytes);
 		this.seekHint = groupPrefixBytes;
 		this.internalIndex = HeapPriorityQueueElement.NOT_CONTAINED;
+		this.writeBuffer = writeBuffer;
+		this.bufferedWrites = new TreeMap<>(LEXICOGRAPHIC_BYTE_COMPARATOR);
 	}
 
 	@Nullable
@@ -198,8 +216,8 @@ public class RocksDBCachingPriorityQueueSet<E extends HeapPriorityQueueElement>
 			}
 
 			if (orderedCache.add(toAddBytes)) {
-				// write-through sync
-				addToRocksDB(toAddBytes);
+				// write-through sync, the cache holds all elements up to its last one, so RocksDB did not contain it
+				addToRocksDB(toAddBytes, true);
 				if (toAddBytes == orderedCache.peekFirst()) {
 					peekCache = null;
 					return true;
@@ -207,7 +225,7 @@ public class RocksDBCachingPriorityQueueSet<E extends HeapPriorityQueueElement>
 			}
 		} else {
 			// we only added to the store
-			addToRocksDB(toAddBytes);
+			addToRocksDB(toAddBytes, false);
 			allElementsInCache = false;
 		}
 		return false;
@@ -299,8 +317,33 @@ public class RocksDBCachingPriorityQueueSet<E extends HeapPriorityQueueElement>
 		this.internalIndex = newIndex;
 	}
 
+	/**
+	 * Writes the buffered writes of this set to the write batch.
+	 *
+	 * @return the number of written elements.
+	 */
+	int writeBufferedWrites() {
+		final int numWrites = bufferedWrites.size();
+		try {
+			for (Map.Entry<byte[], BufferedWrite> write : bufferedWrites.entrySet()) {
+				if (write.getValue() == BufferedWrite.DELETE) {
+					batchWrapper.remove(columnFamilyHandle, write.getKey());
+				} else {
+					batchWrapper.put(columnFamilyHandle, write.getKey(), DUMMY_BYTES);
+				}
+			}
+		} catch (RocksDBException e) {
+			throw new FlinkRuntimeException(e);
+		}
+		bufferedWrites.clear();
+		return numWrites;
+	}
+
 	@Nonnull
 	private RocksBytesIterator orderedBytesIterator() {
+		if (writeBuffer != null) {
+			writeBuffer.flush(this);
+		}
 		flushWriteBatch();
 		return new RocksBytesIterator(
 			new RocksIteratorWrapper(
@@ -318,7 +361,19 @@ public class RocksDBCachingPriorityQueueSet<E extends HeapPriorityQueueElement>
 		}
 	}
 
-	private void addToRocksDB(@Nonnull byte[] toAddBytes) {
+	private void addToRocksDB(@Nonnull byte[] toAddBytes, boolean notInRocksDB) {
+		if (writeBuffer != null) {
+			final BufferedWrite previous = bufferedWrites.get(toAddBytes);
+			if (previous == null) {
+				bufferedWrites.put(toAddBytes, notInRocksDB ? BufferedWrite.INSERT : BufferedWrite.PUT);
+				writeBuffer.add(this, 1);
+			} else if (previous == BufferedWrite.DELETE) {
+				// RocksDB may still contain the element from before the deletion
+				bufferedWrites.put(toAddBytes, BufferedWrite.PUT);
+			}
+			return;
+		}
+
 		try {
 			batchWrapper.put(columnFamilyHandle, toAddBytes, DUMMY_BYTES);
 		} catch (RocksDBException e) {
@@ -327,6 +382,18 @@ public class RocksDBCachingPriorityQueueSet<E extends HeapPriorityQueueElement>
 	}
 
 	private void removeFromRocksDB(@Nonnull byte[] toRemoveBytes) {
+		if (writeBuffer != null) {
+			final BufferedWrite previous = bufferedWrites.put(toRemoveBytes, BufferedWrite.DELETE);
+			if (previous == BufferedWrite.INSERT) {
+				// the element never reached RocksDB, so neither does its deletion
+				bufferedWrites.remove(toRemoveBytes);
+				writeBuffer.add(this, -1);
+			} else if (previous == null) {
+				writeBuffer.add(this, 1);
+			}
+			return;
+		}
+
 		try {
 			batchWrapper.remove(columnFamilyHandle, toRemoveBytes);
 		} catch (RocksDBException e) {
@@ -391,6 +458,21 @@ public class RocksDBCachingPriorityQueueSet<E extends HeapPriorityQueueElement>
 		}
 	}
 
+	/**
+	 * A write to RocksDB which is buffered in memory.
+	 */
+	private enum BufferedWrite {
+
+		/** Inserts an element which RocksDB does not contain. */
+		INSERT,
+
+		/** Inserts an element which RocksDB may already contain. */
+		PUT,
+
+		/** Deletes an element. */
+		DELETE
+	}
+
 	/**
 	 * Wraps an iterator over byte-arrays with deserialization logic, so that it iterates over deserialized objects.
 	 */
@@ -21,14 +21,20 @@ import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyedStateHandle;
 
 import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.IngestExternalFileOptions;
+import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
+import org.rocksdb.SstFileWriter;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.BiFunction;
 
@@ -64,7 +70,7 @@ public class RocksDBIncrementalCheckpointUtils {
 
 	/**
 	 * The method to clip the db instance according to the target key group range using
-	 * the {@link RocksDB#delete(ColumnFamilyHandle, byte[])}.
+	 * the {@link RocksDB#deleteRange(ColumnFamilyHandle, byte[], byte[])}.
 	 *
 	 * @param db the RocksDB instance to be clipped.
 	 * @param columnFamilyHandles the column families in the db instance.
@@ -77,8 +83,7 @@ public class RocksDBIncrementalCheckpointUtils {
 		@Nonnull List<ColumnFamilyHandle> columnFamilyHandles,
 		@Nonnull KeyGroupRange targetKeyGroupRange,
 		@Nonnull KeyGroupRange currentKeyGroupRange,
-		@Nonnegative int keyGroupPrefixBytes,
-		@Nonnegative long writeBatchSize) throws RocksDBException {
+		@Nonnegative int keyGroupPrefixBytes) throws RocksDBException {
 
 		final byte[] beginKeyGroupBytes = new byte[keyGroupPrefixBytes];
 		final byte[] endKeyGroupBytes = new byte[keyGroupPrefixBytes];
@@ -88,7 +93,7 @@ public class RocksDBIncrementalCheckpointUtils {
 				currentKeyGroupRange.getStartKeyGroup(), beginKeyGroupBytes);
 			RocksDBKeySerializationUtils.serializeKeyGroup(
 				targetKeyGroupRange.getStartKeyGroup(), endKeyGroupBytes);
-			deleteRange(db, columnFamilyHandles, beginKeyGroupBytes, endKeyGroupBytes, writeBatchSize);
+			deleteRange(db, columnFamilyHandles, beginKeyGroupBytes, endKeyGroupBytes);
 		}
 
 		if (currentKeyGroupRange.getEndKeyGroup() > targetKeyGroupRange.getEndKeyGroup()) {
@@ -96,13 +101,16 @@ public class RocksDBIncrementalCheckpointUtils {
 				targetKeyGroupRange.getEndKeyGroup() + 1, beginKeyGroupBytes);
 			RocksDBKeySerializationUtils.serializeKeyGroup(
 				currentKeyGroupRange.getEndKeyGroup() + 1, endKeyGroupBytes);
-			deleteRange(db, columnFamilyHandles, beginKeyGroupBytes, endKeyGroupBytes, writeBatchSize);
+			deleteRange(db, columnFamilyHandles, beginKeyGroupBytes, endKeyGroupBytes);
 		}
 	}
 
 	/**
 	 * Delete the record falls into [beginKeyBytes, endKeyBytes) of the db.
 	 *
+	 * <p>The records are deleted with a single range tombstone per column family, instead of one tombstone per
+	 * record, so the cost does not depend on the number of deleted records.
+	 *
 	 * @param db the target need to be clipped.
 	 * @param columnFamilyHandles the column family need to be clipped.
 	 * @param beginKeyBytes the begin key bytes
@@ -112,26 +120,77 @@ public class RocksDBIncrementalCheckpointUtils {
 		RocksDB db,
 		List<ColumnFamilyHandle> columnFamilyHandles,
 		byte[] beginKeyBytes,
-		byte[] endKeyBytes,
-		@Nonnegative long writeBatchSize) throws RocksDBException {
+		byte[] endKeyBytes) throws RocksDBException {
 
 		for (ColumnFamilyHandle columnFamilyHandle : columnFamilyHandles) {
-			try (RocksIteratorWrapper iteratorWrapper = RocksDBOperationUtils.getRocksIterator(db, columnFamilyHandle);
-				RocksDBWriteBatchWrapper writeBatchWrapper = new RocksDBWriteBatchWrapper(db, writeBatchSize)) {
-
-				iteratorWrapper.seek(beginKeyBytes);
-
-				while (iteratorWrapper.isValid()) {
-					final byte[] currentKey = iteratorWrapper.key();
-					if (beforeThePrefixBytes(currentKey, endKeyBytes)) {
-						writeBatchWrapper.remove(columnFamilyHandle, currentKey);
-					} else {
-						break;
-					}
-					iteratorWrapper.next();
+			db.deleteRange(columnFamilyHandle, beginKeyBytes, endKeyBytes);
+		}
+	}
+
+	/**
+	 * Copies the records of the target key group range from a column family of one db instance into a column family
+	 * of another. The records are written into an SST file, which is then ingested into the target db instance.
+	 * Compared to inserting them one by one, this bypasses the memtables of the target db instance and the
+	 * compactions that flushing them would cause.
+	 *
+	 * @param sourceDb the db instance to copy from.
+	 * @param sourceColumnFamilyHandle the column family to copy from.
+	 * @param targetDb the db instance to copy into.
+	 * @param targetColumnFamilyHandle the column family to copy into.
+	 * @param targetKeyGroupRange the target key group range.
+	 * @param keyGroupPrefixBytes Number of bytes required to prefix the key groups.
+	 * @param sstFile the file to write the records into, which is moved into the target db instance.
+	 * @return the number of copied records.
+	 */
+	public static long ingestKeyGroupRange(
+		@Nonnull RocksDB sourceDb,
+		@Nonnull ColumnFamilyHandle sourceColumnFamilyHandle,
+		@Nonnull RocksDB targetDb,
+		@Nonnull ColumnFamilyHandle targetColumnFamilyHandle,
+		@Nonnull KeyGroupRange targetKeyGroupRange,
+		@Nonnegative int keyGroupPrefixBytes,
+		@Nonnull File sstFile) throws RocksDBException {
+
+		final byte[] startKeyGroupPrefixBytes = new byte[keyGroupPrefixBytes];
+		RocksDBKeySerializationUtils.serializeKeyGroup(targetKeyGroupRange.getStartKeyGroup(), startKeyGroupPrefixBytes);
+
+		final byte[] stopKeyGroupPrefixBytes = new byte[keyGroupPrefixBytes];
+		RocksDBKeySerializationUtils.serializeKeyGroup(targetKeyGroupRange.getEndKeyGroup() + 1, stopKeyGroupPrefixBytes);
+
+		long numRecords = 0L;
+		try (EnvOptions envOptions = new EnvOptions();
+			Options options = new Options();
+			SstFileWriter sstFileWriter = new SstFileWriter(envOptions, options);
+			RocksIteratorWrapper iterator = RocksDBOperationUtils.getRocksIterator(sourceDb, sourceColumnFamilyHandle)) {
+
+			iterator.seek(startKeyGroupPrefixBytes);
+
+			// the iterator visits the records in the sorted order which the SST file requires
+			while (iterator.isValid() && beforeThePrefixBytes(iterator.key(), stopKeyGroupPrefixBytes)) {
+				if (numRecords == 0L) {
+					// RocksDB cannot create SST files without records
+					sstFileWriter.open(sstFile.getAbsolutePath());
 				}
+				sstFileWriter.put(iterator.key(), iterator.value());
+				numRecords++;
+				iterator.next();
+			}
+
+			if (numRecords > 0L) {
+				sstFileWriter.finish();
+			}
+		}
+
+		if (numRecords > 0L) {
+			try (IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions()) {
+				ingestOptions.setMoveFiles(true);
+				targetDb.ingestExternalFile(
+					targetColumnFamilyHandle,
+					Collections.singletonList(sstFile.getAbsolutePath()),
+					ingestOptions);
 			}
 		}
+		return numRecords;
 	}
 
 	/**
@@ -40,12 +40,15 @@ import org.apache.flink.core.fs.CloseableRegistry;
 import org.apache.flink.core.memory.DataInputDeserializer;
 import org.apache.flink.core.memory.DataOutputSerializer;
 import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.memory.OpaqueMemoryResource;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
 import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.runtime.state.KeyGroupedInternalPriorityQueue;
 import org.apache.flink.runtime.state.Keyed;
 import org.apache.flink.runtime.state.KeyedStateHandle;
+import org.apache.flink.runtime.state.PrefetchableKeyedStateBackend;
 import org.apache.flink.runtime.state.PriorityComparable;
 import org.apache.flink.runtime.state.PriorityQueueSetFactory;
 import org.apache.flink.runtime.state.RegisteredKeyValueStateBackendMetaInfo;
@@ -53,6 +56,8 @@ import org.apache.flink.runtime.state.RegisteredStateMetaInfoBase;
 import org.apache.flink.runtime.state.SnapshotResult;
 import org.apache.flink.runtime.state.StateSnapshotTransformer.StateSnapshotTransformFactory;
 import org.apache.flink.runtime.state.StreamCompressionDecorator;
+import org.apache.flink.runtime.state.VoidNamespace;
+import org.apache.flink.runtime.state.VoidNamespaceSerializer;
 import org.apache.flink.runtime.state.heap.HeapPriorityQueueElement;
 import org.apache.flink.runtime.state.heap.HeapPriorityQueueSetFactory;
 import org.apache.flink.runtime.state.heap.InternalKeyContext;
@@ -75,10 +80,13 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -104,7 +112,7 @@ import static org.apache.flink.util.Preconditions.checkState;
  + <a href="https://github.com/facebook/rocksdb/wiki/RocksJava-Basics#opening-a-database-with-column-families">
  * this document</a>.
  */
-public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
+public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> implements PrefetchableKeyedStateBackend<K> {
 
 	private static final Logger LOG = LoggerFactory.getLogger(RocksDBKeyedStateBackend.class);
 
@@ -190,6 +198,11 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 	 */
 	private final RocksDBSerializedCompositeKeyBuilder<K> sharedRocksKeyBuilder;
 
+	/**
+	 * Incremented whenever the current key is set, so that states can scope caches to the current key.
+	 */
+	private long currentKeyVersion;
+
 	/**
 	 * Our RocksDB database, this is used by the actual subclasses of {@link AbstractRocksDBState}
 	 * to store state. The different k/v states that we have don't each have their own RocksDB
@@ -202,6 +215,29 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 
 	private final RocksDbTtlCompactFiltersManager ttlCompactFiltersManager;
 
+	/** The number of threads of the {@link #asyncReader}. */
+	private final int numberOfAsyncReadThreads;
+
+	/** Reads state for the asynchronous state access, created on first use. */
+	@Nullable
+	private RocksDBAsyncReader asyncReader;
+
+	/** The values of value states which were read ahead by {@link #prefetch(Collection)}. */
+	private final RocksDBPrefetchCache prefetchCache;
+
+	/** Builds the composite keys of prefetched keys, which are not the current key. */
+	private final RocksDBSerializedCompositeKeyBuilder<K> prefetchKeyBuilder;
+
+	/**
+	 * The lease of the RocksDB instance shared by the backends of the slot, which {@link #db} belongs to, or null if
+	 * this backend has a RocksDB instance of its own.
+	 */
+	@Nullable
+	private final OpaqueMemoryResource<RocksDBSharedInstance> sharedInstance;
+
+	/** The prefix of the names of the column families of this backend, to tell them apart in a shared instance. */
+	private final String columnFamilyNamePrefix;
+
 	public RocksDBKeyedStateBackend(
 		ClassLoader userCodeClassLoader,
 		File instanceBasePath,
@@ -226,7 +262,11 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		PriorityQueueSetFactory priorityQueueFactory,
 		RocksDbTtlCompactFiltersManager ttlCompactFiltersManager,
 		InternalKeyContext<K> keyContext,
-		@Nonnegative long writeBatchSize) {
+		@Nonnegative long writeBatchSize,
+		int numberOfAsyncReadThreads,
+		RocksDBPrefetchCache prefetchCache,
+		@Nullable OpaqueMemoryResource<RocksDBSharedInstance> sharedInstance,
+		String columnFamilyNamePrefix) {
 
 		super(
 			kvStateRegistry,
@@ -262,6 +302,12 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		this.nativeMetricMonitor = nativeMetricMonitor;
 		this.sharedRocksKeyBuilder = sharedRocksKeyBuilder;
 		this.priorityQueueFactory = priorityQueueFactory;
+		checkArgument(numberOfAsyncReadThreads > 0, "The number of async read threads must be positive.");
+		this.numberOfAsyncReadThreads = numberOfAsyncReadThreads;
+		this.prefetchCache = prefetchCache;
+		this.prefetchKeyBuilder = new RocksDBSerializedCompositeKeyBuilder<>(keySerializer, keyGroupPrefixBytes, 32);
+		this.sharedInstance = sharedInstance;
+		this.columnFamilyNamePrefix = Preconditions.checkNotNull(columnFamilyNamePrefix);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -310,6 +356,62 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 	public void setCurrentKey(K newKey) {
 		super.setCurrentKey(newKey);
 		sharedRocksKeyBuilder.setKeyAndKeyGroup(getCurrentKey(), getCurrentKeyGroupIndex());
+		currentKeyVersion++;
+	}
+
+	/**
+	 * Returns a version of the current key, which changes whenever the current key is set, even to an equal key.
+	 */
+	long getCurrentKeyVersion() {
+		return currentKeyVersion;
+	}
+
+	/**
+	 * Reads the values of all value states in the default namespace for the given keys in one multi-get. The values
+	 * are kept until the next call, and are served to the value states unless they are updated.
+	 */
+	@Override
+	public void prefetch(Collection<K> keys) throws Exception {
+		prefetchCache.reset();
+
+		final List<ColumnFamilyHandle> valueStateColumnFamilies = new ArrayList<>();
+		for (RocksDbKvStateInfo stateInfo : kvStateInformation.values()) {
+			if (stateInfo.metaInfo instanceof RegisteredKeyValueStateBackendMetaInfo) {
+				final RegisteredKeyValueStateBackendMetaInfo<?, ?> metaInfo =
+					(RegisteredKeyValueStateBackendMetaInfo<?, ?>) stateInfo.metaInfo;
+				if (metaInfo.getStateType() == StateDescriptor.Type.VALUE &&
+					metaInfo.getNamespaceSerializer() instanceof VoidNamespaceSerializer) {
+					valueStateColumnFamilies.add(stateInfo.columnFamilyHandle);
+				}
+			}
+		}
+		if (valueStateColumnFamilies.isEmpty()) {
+			return;
+		}
+
+		final Collection<K> distinctKeys = new HashSet<>(keys);
+		final int numLookups = distinctKeys.size() * valueStateColumnFamilies.size();
+		final List<ColumnFamilyHandle> columnFamilies = new ArrayList<>(numLookups);
+		final List<byte[]> rawKeys = new ArrayList<>(numLookups);
+		for (K key : distinctKeys) {
+			prefetchKeyBuilder.setKeyAndKeyGroup(key, KeyGroupRangeAssignment.assignToKeyGroup(key, numberOfKeyGroups));
+			for (ColumnFamilyHandle columnFamily : valueStateColumnFamilies) {
+				// every lookup needs its own array, as the result is keyed by array identity
+				columnFamilies.add(columnFamily);
+				rawKeys.add(prefetchKeyBuilder.buildCompositeKeyNamespace(
+					VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE));
+			}
+		}
+
+		final Map<byte[], byte[]> values = db.multiGet(columnFamilies, rawKeys);
+		for (int i = 0; i < numLookups; i++) {
+			final byte[] rawKey = rawKeys.get(i);
+			prefetchCache.put(columnFamilies.get(i), rawKey, values.get(rawKey));
+		}
+	}
+
+	RocksDBPrefetchCache getPrefetchCache() {
+		return prefetchCache;
 	}
 
 	/**
@@ -322,6 +424,9 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		}
 		super.dispose();
 
+		// fail the pending asynchronous reads, the reads in progress hold on to the resource guard
+		IOUtils.closeQuietly(asyncReader);
+
 		// This call will block until all clients that still acquire access to the RocksDB instance have released it,
 		// so that we cannot release the native resources while clients are still working with it in parallel.
 		rocksDBResourceGuard.close();
@@ -351,11 +456,19 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 			// ... continue with the ones created by Flink...
 			for (RocksDbKvStateInfo kvStateInfo : kvStateInformation.values()) {
 				RocksDBOperationUtils.addColumnFamilyOptionsToCloseLater(columnFamilyOptions, kvStateInfo.columnFamilyHandle);
+				if (sharedInstance != null) {
+					// the state of this backend must not outlive it in the shared instance
+					sharedInstance.getResourceHandle().dropColumnFamily(kvStateInfo.columnFamilyHandle);
+				}
 				IOUtils.closeQuietly(kvStateInfo.columnFamilyHandle);
 			}
 
-			// ... and finally close the DB instance ...
-			IOUtils.closeQuietly(db);
+			// ... and finally close the DB instance, or release it if it is shared with other backends ...
+			if (sharedInstance != null) {
+				IOUtils.closeQuietly(sharedInstance);
+			} else {
+				IOUtils.closeQuietly(db);
+			}
 
 			columnFamilyOptions.forEach(IOUtils::closeQuietly);
 
@@ -439,6 +552,9 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		long startTime = System.currentTimeMillis();
 
 		// flush everything into db before taking a snapshot
+		if (priorityQueueFactory instanceof RocksDBPriorityQueueSetFactory) {
+			((RocksDBPriorityQueueSetFactory) priorityQueueFactory).flushWriteBuffer();
+		}
 		writeBatchWrapper.flush();
 
 		RocksDBSnapshotStrategyBase<K> chosenSnapshotStrategy =
@@ -505,7 +621,7 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 				StateSnapshotTransformFactory.noTransform());
 
 			newRocksStateInfo = RocksDBOperationUtils.createStateInfo(
-				newMetaInfo, db, columnFamilyOptionsFactory, ttlCompactFiltersManager);
+				newMetaInfo, db, columnFamilyOptionsFactory, ttlCompactFiltersManager, columnFamilyNamePrefix);
 			RocksDBOperationUtils.registerKvStateInformation(this.kvStateInformation, this.nativeMetricMonitor,
 				stateDesc.getName(), newRocksStateInfo);
 		}
@@ -556,6 +672,9 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		StateDescriptor<S, SV> stateDesc,
 		Tuple2<ColumnFamilyHandle, RegisteredKeyValueStateBackendMetaInfo<N, SV>> stateMetaInfo) throws Exception {
 
+		// the prefetched values are serialized with the previous serializer
+		prefetchCache.clear();
+
 		if (stateDesc.getType() == StateDescriptor.Type.MAP) {
 			TypeSerializerSnapshot<SV> previousSerializerSnapshot = stateMetaInfo.f1.getPreviousStateSerializerSnapshot();
 			checkState(previousSerializerSnapshot != null, "the previous serializer snapshot should exist.");
@@ -720,4 +839,15 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 	long getWriteBatchSize() {
 		return writeBatchSize;
 	}
+
+	/**
+	 * Returns the reader for asynchronous state access, which is created on first use.
+	 */
+	RocksDBAsyncReader getAsyncReader() {
+		if (asyncReader == null) {
+			checkState(!disposed, "The backend has been disposed.");
+			asyncReader = new RocksDBAsyncReader(db, rocksDBResourceGuard, numberOfAsyncReadThreads);
+		}
+		return asyncReader;
+	}
 }
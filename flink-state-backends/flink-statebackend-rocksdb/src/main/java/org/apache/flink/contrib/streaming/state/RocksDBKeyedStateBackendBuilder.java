@@ -32,6 +32,7 @@ import org.apache.flink.contrib.streaming.state.snapshot.RocksIncrementalSnapsho
 import org.apache.flink.contrib.streaming.state.ttl.RocksDbTtlCompactFiltersManager;
 import org.apache.flink.core.fs.CloseableRegistry;
 import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.memory.OpaqueMemoryResource;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.AbstractKeyedStateBackendBuilder;
 import org.apache.flink.runtime.state.BackendBuildingException;
@@ -60,6 +61,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import java.io.File;
 import java.io.IOException;
@@ -112,7 +114,13 @@ public class RocksDBKeyedStateBackendBuilder<K> extends AbstractKeyedStateBacken
 	private boolean enableTtlCompactionFilter;
 	private RocksDBNativeMetricOptions nativeMetricOptions;
 	private int numberOfTransferingThreads;
+	private int numberOfAsyncReadThreads;
 	private long writeBatchSize = RocksDBConfigurableOptions.WRITE_BATCH_SIZE.defaultValue().getBytes();
+	private int timerWriteBufferSize = RocksDBOptions.TIMER_SERVICE_WRITE_BUFFER_SIZE.defaultValue();
+	/** The lease of the RocksDB instance shared by the backends of the slot, null if the backend has its own. */
+	@Nullable
+	private OpaqueMemoryResource<RocksDBSharedInstance> sharedInstance;
+	private RocksDBStateTransferService stateTransferService = RocksDBStateTransferService.UNLIMITED;
 
 	private RocksDB injectedTestDB; // for testing
 	private ColumnFamilyHandle injectedDefaultColumnFamilyHandle; // for testing
@@ -160,6 +168,7 @@ public class RocksDBKeyedStateBackendBuilder<K> extends AbstractKeyedStateBacken
 		this.enableIncrementalCheckpointing = false;
 		this.nativeMetricOptions = new RocksDBNativeMetricOptions();
 		this.numberOfTransferingThreads = RocksDBOptions.CHECKPOINT_TRANSFER_THREAD_NUM.defaultValue();
+		this.numberOfAsyncReadThreads = RocksDBOptions.ASYNC_READ_THREAD_NUM.defaultValue();
 	}
 
 	@VisibleForTesting
@@ -226,12 +235,34 @@ public class RocksDBKeyedStateBackendBuilder<K> extends AbstractKeyedStateBacken
 		return this;
 	}
 
+	RocksDBKeyedStateBackendBuilder<K> setNumberOfAsyncReadThreads(int numberOfAsyncReadThreads) {
+		checkArgument(numberOfAsyncReadThreads > 0, "The number of async read threads should be positive.");
+		this.numberOfAsyncReadThreads = numberOfAsyncReadThreads;
+		return this;
+	}
+
 	RocksDBKeyedStateBackendBuilder<K> setWriteBatchSize(long writeBatchSize) {
 		checkArgument(writeBatchSize >= 0, "Write batch size should be non negative.");
 		this.writeBatchSize = writeBatchSize;
 		return this;
 	}
 
+	RocksDBKeyedStateBackendBuilder<K> setTimerWriteBufferSize(int timerWriteBufferSize) {
+		checkArgument(timerWriteBufferSize >= 0, "Timer write buffer size should be non negative.");
+		this.timerWriteBufferSize = timerWriteBufferSize;
+		return this;
+	}
+
+	RocksDBKeyedStateBackendBuilder<K> setSharedInstance(@Nullable OpaqueMemoryResource<RocksDBSharedInstance> sharedInstance) {
+		this.sharedInstance = sharedInstance;
+		return this;
+	}
+
+	RocksDBKeyedStateBackendBuilder<K> setStateTransferService(RocksDBStateTransferService stateTransferService) {
+		this.stateTransferService = Preconditions.checkNotNull(stateTransferService);
+		return this;
+	}
+
 	private static void checkAndCreateDirectory(File directory) throws IOException {
 		if (directory.exists()) {
 			if (!directory.isDirectory()) {
@@ -262,6 +293,8 @@ public class RocksDBKeyedStateBackendBuilder<K> extends AbstractKeyedStateBacken
 		RocksDBSerializedCompositeKeyBuilder<K> sharedRocksKeyBuilder;
 		// Number of bytes required to prefix the key groups.
 		int keyGroupPrefixBytes = RocksDBKeySerializationUtils.computeRequiredBytesInKeyGroupPrefix(numberOfKeyGroups);
+		// The column families of backends which share a RocksDB instance are told apart by the prefix of their names.
+		String columnFamilyNamePrefix = sharedInstance != null ? RocksDBSharedInstance.newColumnFamilyNamePrefix() : "";
 		try {
 			// Variables for snapshot strategy when incremental checkpoint is enabled
 			UUID backendUID = UUID.randomUUID();
@@ -273,9 +306,15 @@ public class RocksDBKeyedStateBackendBuilder<K> extends AbstractKeyedStateBacken
 				nativeMetricMonitor = nativeMetricOptions.isEnabled() ?
 					new RocksDBNativeMetricMonitor(nativeMetricOptions, metricGroup, db) : null;
 			} else {
-				prepareDirectories();
 				restoreOperation = getRocksDBRestoreOperation(
 					keyGroupPrefixBytes, cancelStreamRegistry, kvStateInformation, ttlCompactFiltersManager);
+				if (sharedInstance != null) {
+					Preconditions.checkState(!(restoreOperation instanceof RocksDBIncrementalRestoreOperation),
+						"Incremental checkpoints cannot be restored into a shared RocksDB instance.");
+					restoreOperation.setSharedDB(sharedInstance.getResourceHandle().getDb(), columnFamilyNamePrefix);
+				} else {
+					prepareDirectories();
+				}
 				RocksDBRestoreResult restoreResult = restoreOperation.restore();
 				db = restoreResult.getDb();
 				defaultColumnFamilyHandle = restoreResult.getDefaultColumnFamilyHandle();
@@ -301,7 +340,7 @@ public class RocksDBKeyedStateBackendBuilder<K> extends AbstractKeyedStateBacken
 				kvStateInformation, keyGroupPrefixBytes, db, backendUID, materializedSstFiles, lastCompletedCheckpointId);
 			// init priority queue factory
 			priorityQueueFactory = initPriorityQueueFactory(keyGroupPrefixBytes, kvStateInformation, db,
-				writeBatchWrapper, nativeMetricMonitor);
+				writeBatchWrapper, nativeMetricMonitor, columnFamilyNamePrefix);
 		} catch (Throwable e) {
 			// Do clean up
 			List<ColumnFamilyOptions> columnFamilyOptions = new ArrayList<>(kvStateInformation.values().size());
@@ -312,14 +351,20 @@ public class RocksDBKeyedStateBackendBuilder<K> extends AbstractKeyedStateBacken
 			IOUtils.closeQuietly(nativeMetricMonitor);
 			for (RocksDBKeyedStateBackend.RocksDbKvStateInfo kvStateInfo : kvStateInformation.values()) {
 				RocksDBOperationUtils.addColumnFamilyOptionsToCloseLater(columnFamilyOptions, kvStateInfo.columnFamilyHandle);
+				if (sharedInstance != null) {
+					sharedInstance.getResourceHandle().dropColumnFamily(kvStateInfo.columnFamilyHandle);
+				}
 				IOUtils.closeQuietly(kvStateInfo.columnFamilyHandle);
 			}
-			IOUtils.closeQuietly(db);
+			if (sharedInstance == null) {
+				IOUtils.closeQuietly(db);
+			}
 			// it's possible that db has been initialized but later restore steps failed
 			IOUtils.closeQuietly(restoreOperation);
 			IOUtils.closeAllQuietly(columnFamilyOptions);
 			IOUtils.closeQuietly(optionsContainer);
 			IOUtils.closeQuietly(writeOptions);
+			IOUtils.closeQuietly(sharedInstance);
 			ttlCompactFiltersManager.disposeAndClearRegisteredCompactionFactories();
 			kvStateInformation.clear();
 			try {
@@ -364,7 +409,11 @@ public class RocksDBKeyedStateBackendBuilder<K> extends AbstractKeyedStateBacken
 			priorityQueueFactory,
 			ttlCompactFiltersManager,
 			keyContext,
-			writeBatchSize);
+			writeBatchSize,
+			numberOfAsyncReadThreads,
+			new RocksDBPrefetchCache(metricGroup),
+			sharedInstance,
+			columnFamilyNamePrefix);
 	}
 
 	private AbstractRocksDBRestoreOperation<K> getRocksDBRestoreOperation(
@@ -410,7 +459,7 @@ public class RocksDBKeyedStateBackendBuilder<K> extends AbstractKeyedStateBacken
 				metricGroup,
 				restoreStateHandles,
 				ttlCompactFiltersManager,
-				writeBatchSize);
+				stateTransferService);
 		} else {
 			return new RocksDBFullRestoreOperation<>(
 				keyGroupRange,
@@ -467,7 +516,8 @@ public class RocksDBKeyedStateBackendBuilder<K> extends AbstractKeyedStateBacken
 				backendUID,
 				materializedSstFiles,
 				lastCompletedCheckpointId,
-				numberOfTransferingThreads);
+				numberOfTransferingThreads,
+				stateTransferService);
 		} else {
 			checkpointSnapshotStrategy = savepointSnapshotStrategy;
 		}
@@ -479,7 +529,8 @@ public class RocksDBKeyedStateBackendBuilder<K> extends AbstractKeyedStateBacken
 		Map<String, RocksDBKeyedStateBackend.RocksDbKvStateInfo> kvStateInformation,
 		RocksDB db,
 		RocksDBWriteBatchWrapper writeBatchWrapper,
-		RocksDBNativeMetricMonitor nativeMetricMonitor) {
+		RocksDBNativeMetricMonitor nativeMetricMonitor,
+		String columnFamilyNamePrefix) {
 		PriorityQueueSetFactory priorityQueueFactory;
 		switch (priorityQueueStateType) {
 			case HEAP:
@@ -494,7 +545,9 @@ public class RocksDBKeyedStateBackendBuilder<K> extends AbstractKeyedStateBacken
 					db,
 					writeBatchWrapper,
 					nativeMetricMonitor,
-					columnFamilyOptionsFactory
+					columnFamilyOptionsFactory,
+					columnFamilyNamePrefix,
+					timerWriteBufferSize
 				);
 				break;
 			default:
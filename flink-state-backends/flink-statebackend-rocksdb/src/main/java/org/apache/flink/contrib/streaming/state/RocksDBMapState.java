@@ -46,8 +46,10 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -67,10 +69,27 @@ class RocksDBMapState<K, N, UK, UV>
 
 	private static final Logger LOG = LoggerFactory.getLogger(RocksDBMapState.class);
 
+	/** The maximum number of entries in the read cache, which is dropped once it grows larger. */
+	private static final int READ_CACHE_SIZE_LIMIT = 128;
+
 	/** Serializer for the keys and values. */
 	private final TypeSerializer<UK> userKeySerializer;
 	private final TypeSerializer<UV> userValueSerializer;
 
+	/** Marks a user key without value in the read cache. */
+	private static final byte[] ABSENT_VALUE = new byte[0];
+
+	/**
+	 * Cache of the raw values read or written since the current key was set, by their raw key bytes. Operators often
+	 * access the same user keys several times while processing one record, e.g. the map views of SQL aggregations,
+	 * and the cache saves the round trips to RocksDB. Values are still deserialized on every access, so that every
+	 * returned value is a new object, just like without the cache.
+	 */
+	private final Map<ByteBuffer, byte[]> readCache;
+
+	/** The version of the current key of the backend for which the read cache is valid. */
+	private long readCacheKeyVersion;
+
 	/**
 	 * Creates a new {@code RocksDBMapState}.
 	 *
@@ -94,6 +113,8 @@ class RocksDBMapState<K, N, UK, UV>
 		MapSerializer<UK, UV> castedMapSerializer = (MapSerializer<UK, UV>) valueSerializer;
 		this.userKeySerializer = castedMapSerializer.getKeySerializer();
 		this.userValueSerializer = castedMapSerializer.getValueSerializer();
+		this.readCache = new HashMap<>();
+		this.readCacheKeyVersion = -1L;
 	}
 
 	@Override
@@ -118,9 +139,9 @@ class RocksDBMapState<K, N, UK, UV>
 	@Override
 	public UV get(UK userKey) throws IOException, RocksDBException {
 		byte[] rawKeyBytes = serializeCurrentKeyWithGroupAndNamespacePlusUserKey(userKey, userKeySerializer);
-		byte[] rawValueBytes = backend.db.get(columnFamily, rawKeyBytes);
+		byte[] rawValueBytes = getRawValue(rawKeyBytes);
 
-		return (rawValueBytes == null ? null : deserializeUserValue(dataInputView, rawValueBytes, userValueSerializer));
+		return (rawValueBytes == ABSENT_VALUE ? null : deserializeUserValue(dataInputView, rawValueBytes, userValueSerializer));
 	}
 
 	@Override
@@ -130,6 +151,7 @@ class RocksDBMapState<K, N, UK, UV>
 		byte[] rawValueBytes = serializeValueNullSensitive(userValue, userValueSerializer);
 
 		backend.db.put(columnFamily, writeOptions, rawKeyBytes, rawValueBytes);
+		cacheRawValue(rawKeyBytes, rawValueBytes);
 	}
 
 	@Override
@@ -138,6 +160,9 @@ class RocksDBMapState<K, N, UK, UV>
 			return;
 		}
 
+		// the written entries are not cached, bulk writes rarely read the same keys right after
+		invalidateReadCache();
+
 		try (RocksDBWriteBatchWrapper writeBatchWrapper = new RocksDBWriteBatchWrapper(backend.db, writeOptions, backend.getWriteBatchSize())) {
 			for (Map.Entry<UK, UV> entry : map.entrySet()) {
 				byte[] rawKeyBytes = serializeCurrentKeyWithGroupAndNamespacePlusUserKey(entry.getKey(), userKeySerializer);
@@ -152,14 +177,14 @@ class RocksDBMapState<K, N, UK, UV>
 		byte[] rawKeyBytes = serializeCurrentKeyWithGroupAndNamespacePlusUserKey(userKey, userKeySerializer);
 
 		backend.db.delete(columnFamily, writeOptions, rawKeyBytes);
+		cacheRawValue(rawKeyBytes, ABSENT_VALUE);
 	}
 
 	@Override
 	public boolean contains(UK userKey) throws IOException, RocksDBException {
 		byte[] rawKeyBytes = serializeCurrentKeyWithGroupAndNamespacePlusUserKey(userKey, userKeySerializer);
-		byte[] rawValueBytes = backend.db.get(columnFamily, rawKeyBytes);
 
-		return (rawValueBytes != null);
+		return getRawValue(rawKeyBytes) != ABSENT_VALUE;
 	}
 
 	@Override
@@ -253,6 +278,8 @@ class RocksDBMapState<K, N, UK, UV>
 
 	@Override
 	public void clear() {
+		invalidateReadCache();
+
 		try {
 			try (RocksIteratorWrapper iterator = RocksDBOperationUtils.getRocksIterator(backend.db, columnFamily);
 				RocksDBWriteBatchWrapper rocksDBWriteBatchWrapper = new RocksDBWriteBatchWrapper(backend.db, backend.getWriteOptions(), backend.getWriteBatchSize())) {
@@ -331,6 +358,53 @@ class RocksDBMapState<K, N, UK, UV>
 		return KvStateSerializer.serializeMap(() -> iterator, dupUserKeySerializer, dupUserValueSerializer);
 	}
 
+	// ------------------------------------------------------------------------
+	//  Read Cache
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the raw value of the given raw key, or {@link #ABSENT_VALUE}, from the read cache or from RocksDB.
+	 */
+	private byte[] getRawValue(byte[] rawKeyBytes) throws RocksDBException {
+		checkReadCacheKeyVersion();
+
+		byte[] rawValueBytes = readCache.get(ByteBuffer.wrap(rawKeyBytes));
+		if (rawValueBytes == null) {
+			rawValueBytes = backend.db.get(columnFamily, rawKeyBytes);
+			if (rawValueBytes == null) {
+				rawValueBytes = ABSENT_VALUE;
+			}
+			cacheRawValue(rawKeyBytes, rawValueBytes);
+		}
+
+		return rawValueBytes;
+	}
+
+	private void cacheRawValue(byte[] rawKeyBytes, byte[] rawValueBytes) {
+		checkReadCacheKeyVersion();
+
+		if (readCache.size() >= READ_CACHE_SIZE_LIMIT) {
+			readCache.clear();
+		}
+		readCache.put(ByteBuffer.wrap(rawKeyBytes), rawValueBytes);
+	}
+
+	/**
+	 * Drops the read cache if the current key was set since the cache was filled, which keeps the cache scoped to
+	 * the processing of one record.
+	 */
+	private void checkReadCacheKeyVersion() {
+		long currentKeyVersion = backend.getCurrentKeyVersion();
+		if (readCacheKeyVersion != currentKeyVersion) {
+			readCache.clear();
+			readCacheKeyVersion = currentKeyVersion;
+		}
+	}
+
+	private void invalidateReadCache() {
+		readCache.clear();
+	}
+
 	// ------------------------------------------------------------------------
 	//  Serialization Methods
 	// ------------------------------------------------------------------------
@@ -432,6 +506,7 @@ class RocksDBMapState<K, N, UK, UV>
 			} catch (RocksDBException e) {
 				throw new FlinkRuntimeException("Error while removing data from RocksDB.", e);
 			}
+			readCache.remove(ByteBuffer.wrap(rawKeyBytes));
 		}
 
 		@Override
@@ -480,6 +555,7 @@ class RocksDBMapState<K, N, UK, UV>
 			} catch (IOException | RocksDBException e) {
 				throw new FlinkRuntimeException("Error while putting data into RocksDB.", e);
 			}
+			readCache.remove(ByteBuffer.wrap(rawKeyBytes));
 
 			return oldValue;
 		}
@@ -488,7 +564,14 @@ class RocksDBMapState<K, N, UK, UV>
 	/** An auxiliary utility to scan all entries under the given key. */
 	private abstract class RocksDBMapIterator<T> implements Iterator<T> {
 
-		private static final int CACHE_SIZE_LIMIT = 128;
+		/**
+		 * The number of entries of the first load. It is small, because many scans only look at the first entries.
+		 * Every following load doubles the number of entries up to {@link #MAX_CACHE_SIZE_LIMIT}, which saves the
+		 * creation and seek of a RocksDB iterator per load when scanning large maps.
+		 */
+		private static final int MIN_CACHE_SIZE_LIMIT = 128;
+
+		private static final int MAX_CACHE_SIZE_LIMIT = 4096;
 
 		/** The db where data resides. */
 		private final RocksDB db;
@@ -514,6 +597,9 @@ class RocksDBMapState<K, N, UK, UV>
 		private RocksDBMapEntry currentEntry;
 		private int cacheIndex = 0;
 
+		/** The maximum number of entries of the next load. */
+		private int cacheSizeLimit = MIN_CACHE_SIZE_LIMIT;
+
 		private final TypeSerializer<UK> keySerializer;
 		private final TypeSerializer<UV> valueSerializer;
 		private final DataInputDeserializer dataInputView;
@@ -605,7 +691,8 @@ class RocksDBMapState<K, N, UK, UV>
 						break;
 					}
 
-					if (cacheEntries.size() >= CACHE_SIZE_LIMIT) {
+					if (cacheEntries.size() >= cacheSizeLimit) {
+						cacheSizeLimit = Math.min(cacheSizeLimit * 2, MAX_CACHE_SIZE_LIMIT);
 						break;
 					}
 
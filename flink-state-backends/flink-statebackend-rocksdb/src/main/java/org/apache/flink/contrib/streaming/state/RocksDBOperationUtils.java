@@ -126,8 +126,25 @@ public class RocksDBOperationUtils {
 		Function<String, ColumnFamilyOptions> columnFamilyOptionsFactory,
 		@Nullable RocksDbTtlCompactFiltersManager ttlCompactFiltersManager) {
 
+		return createStateInfo(metaInfoBase, db, columnFamilyOptionsFactory, ttlCompactFiltersManager, "");
+	}
+
+	/**
+	 * Creates a state info from a new meta info to use with a k/v state, whose column family name starts with the
+	 * given prefix.
+	 *
+	 * <p>Creates the column family for the state.
+	 * Sets TTL compaction filter if {@code ttlCompactFiltersManager} is not {@code null}.
+	 */
+	public static RocksDBKeyedStateBackend.RocksDbKvStateInfo createStateInfo(
+		RegisteredStateMetaInfoBase metaInfoBase,
+		RocksDB db,
+		Function<String, ColumnFamilyOptions> columnFamilyOptionsFactory,
+		@Nullable RocksDbTtlCompactFiltersManager ttlCompactFiltersManager,
+		String columnFamilyNamePrefix) {
+
 		ColumnFamilyDescriptor columnFamilyDescriptor = createColumnFamilyDescriptor(
-			metaInfoBase, columnFamilyOptionsFactory, ttlCompactFiltersManager);
+			metaInfoBase, columnFamilyOptionsFactory, ttlCompactFiltersManager, columnFamilyNamePrefix);
 		return new RocksDBKeyedStateBackend.RocksDbKvStateInfo(createColumnFamily(columnFamilyDescriptor, db), metaInfoBase);
 	}
 
@@ -141,11 +158,26 @@ public class RocksDBOperationUtils {
 		Function<String, ColumnFamilyOptions> columnFamilyOptionsFactory,
 		@Nullable RocksDbTtlCompactFiltersManager ttlCompactFiltersManager) {
 
+		return createColumnFamilyDescriptor(metaInfoBase, columnFamilyOptionsFactory, ttlCompactFiltersManager, "");
+	}
+
+	/**
+	 * Creates a column descriptor for sate column family, whose name starts with the given prefix. A non-empty prefix
+	 * separates the column families of backends which share a RocksDB instance, see {@link RocksDBSharedInstance}.
+	 *
+	 * <p>Sets TTL compaction filter if {@code ttlCompactFiltersManager} is not {@code null}.
+	 */
+	public static ColumnFamilyDescriptor createColumnFamilyDescriptor(
+		RegisteredStateMetaInfoBase metaInfoBase,
+		Function<String, ColumnFamilyOptions> columnFamilyOptionsFactory,
+		@Nullable RocksDbTtlCompactFiltersManager ttlCompactFiltersManager,
+		String columnFamilyNamePrefix) {
+
 		ColumnFamilyOptions options = createColumnFamilyOptions(columnFamilyOptionsFactory, metaInfoBase.getName());
 		if (ttlCompactFiltersManager != null) {
 			ttlCompactFiltersManager.setAndRegisterCompactFilterIfStateTtl(metaInfoBase, options);
 		}
-		byte[] nameBytes = metaInfoBase.getName().getBytes(ConfigConstants.DEFAULT_CHARSET);
+		byte[] nameBytes = (columnFamilyNamePrefix + metaInfoBase.getName()).getBytes(ConfigConstants.DEFAULT_CHARSET);
 		Preconditions.checkState(!Arrays.equals(RocksDB.DEFAULT_COLUMN_FAMILY, nameBytes),
 			"The chosen state name 'default' collides with the name of the default column family!");
 
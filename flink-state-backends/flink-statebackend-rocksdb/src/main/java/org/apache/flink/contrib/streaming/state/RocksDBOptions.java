@@ -56,6 +56,20 @@ public class RocksDBOptions {
 			"are either %s (heap-based, default) or %s for an implementation based on RocksDB .",
 			HEAP.name(), ROCKSDB.name()));
 
+	/**
+	 * The maximum number of timer writes which RocksDBStateBackend buffers in memory.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_ROCKSDB)
+	public static final ConfigOption<Integer> TIMER_SERVICE_WRITE_BUFFER_SIZE = ConfigOptions
+		.key("state.backend.rocksdb.timer-service.write-buffer-size")
+		.intType()
+		.defaultValue(0)
+		.withDescription(String.format("The maximum number of insertions and deletions of timers which a " +
+			"RocksDBStateBackend buffers in memory before it writes them to RocksDB, when the timers are stored in " +
+			"RocksDB ('%s' is %s). A timer which is deleted while its insertion is still buffered is never written to " +
+			"RocksDB. Buffered writes are also written before every checkpoint. A value of 0 disables the buffer.",
+			TIMER_SERVICE_FACTORY.key(), ROCKSDB.name()));
+
 	/**
 	 * The number of threads used to transfer (download and upload) files in RocksDBStateBackend.
 	 */
@@ -65,6 +79,81 @@ public class RocksDBOptions {
 		.defaultValue(1)
 		.withDescription("The number of threads (per stateful operator) used to transfer (download and upload) files in RocksDBStateBackend.");
 
+	/**
+	 * The maximum number of state files which all RocksDBStateBackends of a TaskManager transfer at the same time.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_ROCKSDB)
+	public static final ConfigOption<Integer> TRANSFER_MAX_CONCURRENT_FILES = ConfigOptions
+		.key("state.backend.rocksdb.transfer.max-concurrent-files")
+		.intType()
+		.defaultValue(0)
+		.withDescription("The maximum number of state files (or ranges of large files) which the RocksDBStateBackends " +
+			"of all operators in a TaskManager download and upload at the same time. Each operator additionally uses at " +
+			"most 'state.backend.rocksdb.checkpoint.transfer.thread.num' threads. A value of 0 disables the limit. " +
+			"This option is read from the TaskManager configuration.");
+
+	/**
+	 * The maximum number of bytes per second which all RocksDBStateBackends of a TaskManager transfer.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_ROCKSDB)
+	public static final ConfigOption<MemorySize> TRANSFER_MAX_BANDWIDTH = ConfigOptions
+		.key("state.backend.rocksdb.transfer.max-bandwidth")
+		.memoryType()
+		.defaultValue(MemorySize.ZERO)
+		.withDescription("The maximum number of bytes per second which the RocksDBStateBackends of all operators in a " +
+			"TaskManager download and upload together. A value of 0 disables the limit. This option is read from the " +
+			"TaskManager configuration.");
+
+	/**
+	 * The size of the ranges in which large state files are downloaded in parallel.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_ROCKSDB)
+	public static final ConfigOption<MemorySize> TRANSFER_CHUNK_SIZE = ConfigOptions
+		.key("state.backend.rocksdb.transfer.chunk-size")
+		.memoryType()
+		.defaultValue(MemorySize.parse("64mb"))
+		.withDescription("State files which are larger than this size are downloaded in ranges of this size, which " +
+			"are transferred in parallel like separate files. This option is read from the TaskManager configuration.");
+
+	/**
+	 * Whether SST files which are still present in local recovery directories are reused instead of downloaded.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_ROCKSDB)
+	public static final ConfigOption<Boolean> TRANSFER_REUSE_LOCAL_FILES = ConfigOptions
+		.key("state.backend.rocksdb.transfer.reuse-local-files")
+		.booleanType()
+		.defaultValue(true)
+		.withDescription("Whether a restore links SST files which the TaskManager uploaded from its local recovery " +
+			"directories, and which are still present there, instead of downloading them again. This also applies to " +
+			"restores which cannot use local recovery as a whole, e.g. after rescaling. Requires local recovery to be " +
+			"enabled. This option is read from the TaskManager configuration.");
+
+	/**
+	 * The number of threads used to read state asynchronously in RocksDBStateBackend.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_ROCKSDB)
+	public static final ConfigOption<Integer> ASYNC_READ_THREAD_NUM = ConfigOptions
+		.key("state.backend.rocksdb.async-read.thread.num")
+		.intType()
+		.defaultValue(4)
+		.withDescription("The number of threads (per stateful operator) used to read state asynchronously in " +
+			"RocksDBStateBackend, for operators which access their state asynchronously. Reads which are requested " +
+			"while all threads are busy are batched into one multi-get.");
+
+	/**
+	 * Whether the keyed state backends of a slot share one RocksDB instance.
+	 */
+	@Documentation.Section(Documentation.Sections.EXPERT_ROCKSDB)
+	public static final ConfigOption<Boolean> SHARED_INSTANCE_ENABLED = ConfigOptions
+		.key("state.backend.rocksdb.shared-instance.enabled")
+		.booleanType()
+		.defaultValue(false)
+		.withDescription("Whether the keyed state backends of all stateful operators in a slot keep their state in " +
+			"one RocksDB instance, with separate column families per operator and state, instead of one instance per " +
+			"operator. The operators then share the memtables, the background compaction and flush threads, and the " +
+			"open files of the instance. Snapshots and rescaling remain per operator. Only applies to full checkpoints " +
+			"and savepoints; operators with incremental checkpoints keep a RocksDB instance of their own.");
+
 	/**
 	 * This determines if compaction filter to cleanup state with TTL is enabled.
 	 *
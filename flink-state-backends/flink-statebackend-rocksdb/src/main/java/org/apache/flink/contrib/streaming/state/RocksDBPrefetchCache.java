@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.SimpleCounter;
+import org.apache.flink.util.Preconditions;
+
+import org.rocksdb.ColumnFamilyHandle;
+
+import javax.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the serialized values of value states which were prefetched by the {@link RocksDBKeyedStateBackend}, until
+ * they are updated or the next keys are prefetched.
+ *
+ * <p>The hits and misses of the reads of value states are reported as metrics once keys are prefetched for the
+ * first time.
+ */
+class RocksDBPrefetchCache {
+
+	/** Marks keys which were prefetched, but have no value. */
+	static final byte[] ABSENT_VALUE = new byte[0];
+
+	@Nullable
+	private final MetricGroup metricGroup;
+
+	/** The prefetched values by column family and by serialized key and namespace. */
+	private final Map<ColumnFamilyHandle, Map<ByteBuffer, byte[]>> values;
+
+	private boolean enabled;
+
+	private Counter numPrefetchedKeys;
+
+	private Counter numHits;
+
+	private Counter numMisses;
+
+	RocksDBPrefetchCache(@Nullable MetricGroup metricGroup) {
+		this.metricGroup = metricGroup;
+		this.values = new HashMap<>();
+	}
+
+	/**
+	 * Drops all prefetched values, and registers the metrics when keys are prefetched for the first time.
+	 */
+	void reset() {
+		values.clear();
+
+		if (!enabled) {
+			enabled = true;
+			final MetricGroup prefetchMetricGroup = metricGroup != null ?
+				metricGroup.addGroup("rocksdbPrefetch") : null;
+			numPrefetchedKeys = register(prefetchMetricGroup, "numPrefetchedKeys");
+			numHits = register(prefetchMetricGroup, "numHits");
+			numMisses = register(prefetchMetricGroup, "numMisses");
+			if (prefetchMetricGroup != null) {
+				prefetchMetricGroup.gauge("hitRate", this::getHitRate);
+			}
+		}
+	}
+
+	/**
+	 * Adds the value of a prefetched key, which is null if the key has no value.
+	 */
+	void put(ColumnFamilyHandle columnFamily, byte[] rawKeyBytes, @Nullable byte[] rawValueBytes) {
+		Preconditions.checkState(enabled);
+		values.computeIfAbsent(columnFamily, ignored -> new HashMap<>())
+			.put(ByteBuffer.wrap(rawKeyBytes), rawValueBytes == null ? ABSENT_VALUE : rawValueBytes);
+		numPrefetchedKeys.inc();
+	}
+
+	/**
+	 * Returns the prefetched value of the key, or null if the key was not prefetched. Keys without a value are
+	 * returned as {@link #ABSENT_VALUE}.
+	 */
+	@Nullable
+	byte[] get(ColumnFamilyHandle columnFamily, byte[] rawKeyBytes) {
+		if (!enabled) {
+			return null;
+		}
+
+		final Map<ByteBuffer, byte[]> columnFamilyValues = values.get(columnFamily);
+		final byte[] rawValueBytes = columnFamilyValues != null ?
+			columnFamilyValues.get(ByteBuffer.wrap(rawKeyBytes)) : null;
+		if (rawValueBytes != null) {
+			numHits.inc();
+		} else {
+			numMisses.inc();
+		}
+		return rawValueBytes;
+	}
+
+	/**
+	 * Drops the prefetched value of the key, as it is updated.
+	 */
+	void invalidate(ColumnFamilyHandle columnFamily, byte[] rawKeyBytes) {
+		if (values.isEmpty()) {
+			return;
+		}
+
+		final Map<ByteBuffer, byte[]> columnFamilyValues = values.get(columnFamily);
+		if (columnFamilyValues != null) {
+			columnFamilyValues.remove(ByteBuffer.wrap(rawKeyBytes));
+		}
+	}
+
+	/**
+	 * Drops all prefetched values.
+	 */
+	void clear() {
+		values.clear();
+	}
+
+	private double getHitRate() {
+		final long hits = numHits.getCount();
+		final long reads = hits + numMisses.getCount();
+		return reads == 0 ? 0.0 : (double) hits / reads;
+	}
+
+	private static Counter register(@Nullable MetricGroup metricGroup, String name) {
+		return metricGroup != null ? metricGroup.counter(name) : new SimpleCounter();
+	}
+}
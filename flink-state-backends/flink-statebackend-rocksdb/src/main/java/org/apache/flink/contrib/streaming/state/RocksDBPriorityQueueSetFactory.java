@@ -39,6 +39,7 @@ import org.rocksdb.ColumnFamilyOptions;
 import org.rocksdb.RocksDB;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import java.util.Map;
 import java.util.function.Function;
@@ -74,6 +75,11 @@ public class RocksDBPriorityQueueSetFactory implements PriorityQueueSetFactory {
 	private final RocksDBWriteBatchWrapper writeBatchWrapper;
 	private final RocksDBNativeMetricMonitor nativeMetricMonitor;
 	private final Function<String, ColumnFamilyOptions> columnFamilyOptionsFactory;
+	private final String columnFamilyNamePrefix;
+
+	/** The buffer for the writes of all queues, or null if the queues write through to RocksDB. */
+	@Nullable
+	private final RocksDBPriorityQueueWriteBuffer writeBuffer;
 
 	RocksDBPriorityQueueSetFactory(
 		KeyGroupRange keyGroupRange,
@@ -83,7 +89,9 @@ public class RocksDBPriorityQueueSetFactory implements PriorityQueueSetFactory {
 		RocksDB db,
 		RocksDBWriteBatchWrapper writeBatchWrapper,
 		RocksDBNativeMetricMonitor nativeMetricMonitor,
-		Function<String, ColumnFamilyOptions> columnFamilyOptionsFactory) {
+		Function<String, ColumnFamilyOptions> columnFamilyOptionsFactory,
+		String columnFamilyNamePrefix,
+		int writeBufferSize) {
 		this.keyGroupRange = keyGroupRange;
 		this.keyGroupPrefixBytes = keyGroupPrefixBytes;
 		this.numberOfKeyGroups = numberOfKeyGroups;
@@ -92,8 +100,10 @@ public class RocksDBPriorityQueueSetFactory implements PriorityQueueSetFactory {
 		this.writeBatchWrapper = writeBatchWrapper;
 		this.nativeMetricMonitor = nativeMetricMonitor;
 		this.columnFamilyOptionsFactory = columnFamilyOptionsFactory;
+		this.columnFamilyNamePrefix = columnFamilyNamePrefix;
 		this.sharedElementOutView = new DataOutputSerializer(128);
 		this.sharedElementInView = new DataInputDeserializer();
+		this.writeBuffer = writeBufferSize > 0 ? new RocksDBPriorityQueueWriteBuffer(writeBufferSize) : null;
 	}
 
 	@Nonnull
@@ -127,7 +137,8 @@ public class RocksDBPriorityQueueSetFactory implements PriorityQueueSetFactory {
 						sharedElementOutView,
 						sharedElementInView,
 						writeBatchWrapper,
-						orderedSetCache
+						orderedSetCache,
+						writeBuffer
 					);
 				}
 			},
@@ -135,6 +146,15 @@ public class RocksDBPriorityQueueSetFactory implements PriorityQueueSetFactory {
 			numberOfKeyGroups);
 	}
 
+	/**
+	 * Writes the buffered writes of all queues to the write batch, which must be flushed before a snapshot.
+	 */
+	void flushWriteBuffer() {
+		if (writeBuffer != null) {
+			writeBuffer.flush();
+		}
+	}
+
 	@Nonnull
 	private <T> RocksDBKeyedStateBackend.RocksDbKvStateInfo tryRegisterPriorityQueueMetaInfo(
 		@Nonnull String stateName,
@@ -147,7 +167,8 @@ public class RocksDBPriorityQueueSetFactory implements PriorityQueueSetFactory {
 			// so no need to register compact filter when creating column family
 			RegisteredPriorityQueueStateBackendMetaInfo<T> metaInfo =
 				new RegisteredPriorityQueueStateBackendMetaInfo<>(stateName, byteOrderedElementSerializer);
-			stateInfo = RocksDBOperationUtils.createStateInfo(metaInfo, db, columnFamilyOptionsFactory, null);
+			stateInfo = RocksDBOperationUtils.createStateInfo(
+				metaInfo, db, columnFamilyOptionsFactory, null, columnFamilyNamePrefix);
 			RocksDBOperationUtils.registerKvStateInformation(kvStateInformation, nativeMetricMonitor, stateName, stateInfo);
 		} else {
 			// TODO we implement the simple way of supporting the current functionality, mimicking keyed state
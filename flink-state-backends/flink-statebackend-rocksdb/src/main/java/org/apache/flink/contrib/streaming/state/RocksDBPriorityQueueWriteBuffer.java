@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.util.Preconditions;
+
+import javax.annotation.Nonnull;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Bounds the writes which the {@link RocksDBCachingPriorityQueueSet RocksDB priority queues} of a backend buffer in
+ * memory. Each queue buffers the writes of its key-group, so that timers which are registered and deleted again
+ * before the buffer is flushed never cause writes to RocksDB. When the total number of buffered writes exceeds the
+ * limit, and before the backend takes a snapshot, all buffered writes are written to the
+ * {@link RocksDBWriteBatchWrapper write batch} of the backend.
+ */
+class RocksDBPriorityQueueWriteBuffer {
+
+	/** The maximum number of buffered writes of all queues. */
+	private final int maxBufferedWrites;
+
+	/** The queues that currently buffer writes. */
+	@Nonnull
+	private final Set<RocksDBCachingPriorityQueueSet<?>> queuesWithBufferedWrites;
+
+	/** The number of buffered writes of all queues. */
+	private int numBufferedWrites;
+
+	RocksDBPriorityQueueWriteBuffer(int maxBufferedWrites) {
+		Preconditions.checkArgument(maxBufferedWrites > 0, "The size of the write buffer must be positive.");
+		this.maxBufferedWrites = maxBufferedWrites;
+		this.queuesWithBufferedWrites = new LinkedHashSet<>();
+	}
+
+	/**
+	 * Called by a queue when the number of its buffered writes changed.
+	 */
+	void add(@Nonnull RocksDBCachingPriorityQueueSet<?> queue, int delta) {
+		numBufferedWrites += delta;
+		if (delta > 0) {
+			queuesWithBufferedWrites.add(queue);
+			if (numBufferedWrites > maxBufferedWrites) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Writes the buffered writes of the given queue to the write batch.
+	 */
+	void flush(@Nonnull RocksDBCachingPriorityQueueSet<?> queue) {
+		if (queuesWithBufferedWrites.remove(queue)) {
+			numBufferedWrites -= queue.writeBufferedWrites();
+		}
+	}
+
+	/**
+	 * Writes the buffered writes of all queues to the write batch.
+	 */
+	void flush() {
+		for (RocksDBCachingPriorityQueueSet<?> queue : queuesWithBufferedWrites) {
+			queue.writeBufferedWrites();
+		}
+		queuesWithBufferedWrites.clear();
+		numBufferedWrites = 0;
+	}
+
+	int getNumBufferedWrites() {
+		return numBufferedWrites;
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.util.FileUtils;
+import org.apache.flink.util.IOUtils;
+import org.apache.flink.util.Preconditions;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A RocksDB instance which hosts the keyed state of all {@link RocksDBKeyedStateBackend}s of a slot, instead of one
+ * instance per backend. The backends share the memtables, the background compaction and flush threads, and the
+ * open files of the instance.
+ *
+ * <p>Every backend keeps its states in column families of its own, whose names start with a prefix that is unique
+ * within the instance, and drops them when it is disposed. Snapshots, restores and rescaling thus stay per backend.
+ * Only full snapshots are supported, because an incremental snapshot would capture the files of all backends.
+ *
+ * <p>The instance is acquired as a shared resource of the memory manager of the slot, see
+ * {@link RocksDBStateBackend#createKeyedStateBackend}, and closed once the last backend released it.
+ */
+class RocksDBSharedInstance implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RocksDBSharedInstance.class);
+
+	/** The identifier of the instance among the shared resources of the memory manager of a slot. */
+	static final String RESOURCE_ID = "state-rocks-shared-instance";
+
+	/** The directory which holds the files of the instance. */
+	private final File instanceBasePath;
+
+	/** The container of the options of the instance, which is closed with the instance. */
+	private final RocksDBResourceContainer optionsContainer;
+
+	private final RocksDB db;
+
+	private final ColumnFamilyHandle defaultColumnFamily;
+
+	private RocksDBSharedInstance(
+			File instanceBasePath,
+			RocksDBResourceContainer optionsContainer,
+			RocksDB db,
+			ColumnFamilyHandle defaultColumnFamily) {
+		this.instanceBasePath = instanceBasePath;
+		this.optionsContainer = optionsContainer;
+		this.db = db;
+		this.defaultColumnFamily = defaultColumnFamily;
+	}
+
+	/**
+	 * Opens a new shared instance in the given directory. The instance takes ownership of the options container.
+	 */
+	static RocksDBSharedInstance open(File instanceBasePath, RocksDBResourceContainer optionsContainer) throws IOException {
+		try {
+			if (instanceBasePath.exists()) {
+				FileUtils.deleteDirectory(instanceBasePath);
+			}
+			if (!instanceBasePath.mkdirs()) {
+				throw new IOException("Could not create RocksDB data directory at " + instanceBasePath);
+			}
+
+			final ColumnFamilyOptions defaultColumnFamilyOptions =
+				RocksDBOperationUtils.createColumnFamilyOptions(ignored -> optionsContainer.getColumnOptions(), "default");
+			final List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>(1);
+			final RocksDB db = RocksDBOperationUtils.openDB(
+				new File(instanceBasePath, "db").getAbsolutePath(),
+				Collections.emptyList(),
+				columnFamilyHandles,
+				defaultColumnFamilyOptions,
+				optionsContainer.getDbOptions());
+
+			LOG.info("Opened RocksDB instance shared by the keyed state backends of the slot in {}.", instanceBasePath);
+			return new RocksDBSharedInstance(instanceBasePath, optionsContainer, db, columnFamilyHandles.get(0));
+		} catch (Throwable t) {
+			IOUtils.closeQuietly(optionsContainer);
+			throw t;
+		}
+	}
+
+	RocksDB getDb() {
+		return db;
+	}
+
+	/**
+	 * Drops the column family of a backend from the instance, so that its data is deleted. The handle itself still
+	 * needs to be closed by the caller.
+	 */
+	void dropColumnFamily(ColumnFamilyHandle columnFamilyHandle) {
+		try {
+			db.dropColumnFamily(columnFamilyHandle);
+		} catch (RocksDBException e) {
+			LOG.warn("Could not drop a column family from the shared RocksDB instance.", e);
+		}
+	}
+
+	/**
+	 * Returns a new prefix for the names of the column families of a backend, which no other backend of the
+	 * instance uses.
+	 */
+	static String newColumnFamilyNamePrefix() {
+		return UUID.randomUUID() + "/";
+	}
+
+	@Override
+	public void close() throws Exception {
+		Preconditions.checkState(db.isOwningHandle(), "The shared RocksDB instance was already closed.");
+
+		// the default column family needs to be closed before the instance, the options only after it
+		IOUtils.closeQuietly(defaultColumnFamily);
+		IOUtils.closeQuietly(db);
+		IOUtils.closeQuietly(optionsContainer);
+
+		try {
+			FileUtils.deleteDirectory(instanceBasePath);
+		} catch (IOException e) {
+			LOG.warn("Could not delete the directory of the shared RocksDB instance: {}", instanceBasePath, e);
+		}
+	}
+}
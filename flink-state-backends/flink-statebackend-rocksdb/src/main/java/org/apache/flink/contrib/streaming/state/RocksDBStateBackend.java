@@ -36,6 +36,7 @@ import org.apache.flink.runtime.state.CheckpointStorage;
 import org.apache.flink.runtime.state.CompletedCheckpointStorageLocation;
 import org.apache.flink.runtime.state.ConfigurableStateBackend;
 import org.apache.flink.runtime.state.DefaultOperatorStateBackendBuilder;
+import org.apache.flink.runtime.state.IncrementalKeyedStateHandle;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyedStateHandle;
 import org.apache.flink.runtime.state.LocalRecoveryConfig;
@@ -72,8 +73,11 @@ import java.util.Random;
 import java.util.UUID;
 
 import static org.apache.flink.contrib.streaming.state.RocksDBConfigurableOptions.WRITE_BATCH_SIZE;
+import static org.apache.flink.contrib.streaming.state.RocksDBOptions.ASYNC_READ_THREAD_NUM;
 import static org.apache.flink.contrib.streaming.state.RocksDBOptions.CHECKPOINT_TRANSFER_THREAD_NUM;
+import static org.apache.flink.contrib.streaming.state.RocksDBOptions.SHARED_INSTANCE_ENABLED;
 import static org.apache.flink.contrib.streaming.state.RocksDBOptions.TIMER_SERVICE_FACTORY;
+import static org.apache.flink.contrib.streaming.state.RocksDBOptions.TIMER_SERVICE_WRITE_BUFFER_SIZE;
 import static org.apache.flink.contrib.streaming.state.RocksDBOptions.TTL_COMPACT_FILTER_ENABLED;
 import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
@@ -112,7 +116,9 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 	private static boolean rocksDbInitialized = false;
 
 	private static final int UNDEFINED_NUMBER_OF_TRANSFER_THREADS = -1;
+	private static final int UNDEFINED_NUMBER_OF_ASYNC_READ_THREADS = -1;
 	private static final long UNDEFINED_WRITE_BATCH_SIZE = -1;
+	private static final int UNDEFINED_TIMER_WRITE_BUFFER_SIZE = -1;
 
 	// ------------------------------------------------------------------------
 
@@ -141,6 +147,12 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 	/** Thread number used to transfer (download and upload) state, default value: 1. */
 	private int numberOfTransferThreads;
 
+	/** Thread number used to read state asynchronously, default value: 4. */
+	private int numberOfAsyncReadThreads;
+
+	/** The maximum number of buffered timer writes, default value: 0 (no buffering). */
+	private int timerWriteBufferSize;
+
 	/**
 	 * This determines if compaction filter to cleanup state with TTL is enabled.
 	 *
@@ -149,6 +161,9 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 	 */
 	private TernaryBoolean enableTtlCompactionFilter;
 
+	/** This determines if the keyed state backends of a slot share one RocksDB instance. */
+	private TernaryBoolean enableSharedInstance;
+
 	/** The configuration for memory settings (pool sizes, etc.). */
 	private final RocksDBMemoryConfiguration memoryConfiguration;
 
@@ -275,10 +290,13 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 		this.checkpointStreamBackend = checkNotNull(checkpointStreamBackend);
 		this.enableIncrementalCheckpointing = enableIncrementalCheckpointing;
 		this.numberOfTransferThreads = UNDEFINED_NUMBER_OF_TRANSFER_THREADS;
+		this.numberOfAsyncReadThreads = UNDEFINED_NUMBER_OF_ASYNC_READ_THREADS;
 		this.defaultMetricOptions = new RocksDBNativeMetricOptions();
 		this.enableTtlCompactionFilter = TernaryBoolean.UNDEFINED;
+		this.enableSharedInstance = TernaryBoolean.UNDEFINED;
 		this.memoryConfiguration = new RocksDBMemoryConfiguration();
 		this.writeBatchSize = UNDEFINED_WRITE_BATCH_SIZE;
+		this.timerWriteBufferSize = UNDEFINED_TIMER_WRITE_BUFFER_SIZE;
 	}
 
 	/**
@@ -321,13 +339,27 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 			this.numberOfTransferThreads = original.numberOfTransferThreads;
 		}
 
+		if (original.numberOfAsyncReadThreads == UNDEFINED_NUMBER_OF_ASYNC_READ_THREADS) {
+			this.numberOfAsyncReadThreads = config.get(ASYNC_READ_THREAD_NUM);
+		} else {
+			this.numberOfAsyncReadThreads = original.numberOfAsyncReadThreads;
+		}
+
 		if (original.writeBatchSize == UNDEFINED_WRITE_BATCH_SIZE) {
 			this.writeBatchSize = config.get(WRITE_BATCH_SIZE).getBytes();
 		} else {
 			this.writeBatchSize = original.writeBatchSize;
 		}
+
+		if (original.timerWriteBufferSize == UNDEFINED_TIMER_WRITE_BUFFER_SIZE) {
+			this.timerWriteBufferSize = config.get(TIMER_SERVICE_WRITE_BUFFER_SIZE);
+		} else {
+			this.timerWriteBufferSize = original.timerWriteBufferSize;
+		}
 		this.enableTtlCompactionFilter = original.enableTtlCompactionFilter
 			.resolveUndefined(config.get(TTL_COMPACT_FILTER_ENABLED));
+		this.enableSharedInstance = original.enableSharedInstance
+			.resolveUndefined(config.get(SHARED_INSTANCE_ENABLED));
 
 		this.memoryConfiguration = RocksDBMemoryConfiguration.fromOtherAndConfiguration(original.memoryConfiguration, config);
 		this.memoryConfiguration.validate();
@@ -519,6 +551,13 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 		}
 		final RocksDBResourceContainer resourceContainer = createOptionsAndResourceContainer(sharedResources);
 
+		final OpaqueMemoryResource<RocksDBSharedInstance> sharedInstance;
+		if (isSharedInstanceEnabled() && !isIncrementalCheckpointsEnabled() && !hasIncrementalStateHandles(stateHandles)) {
+			sharedInstance = acquireSharedInstance(env);
+		} else {
+			sharedInstance = null;
+		}
+
 		ExecutionConfig executionConfig = env.getExecutionConfig();
 		StreamCompressionDecorator keyGroupCompressionDecorator = getCompressionDecorator(executionConfig);
 		RocksDBKeyedStateBackendBuilder<K> builder = new RocksDBKeyedStateBackendBuilder<>(
@@ -543,11 +582,47 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 			.setEnableIncrementalCheckpointing(isIncrementalCheckpointsEnabled())
 			.setEnableTtlCompactionFilter(isTtlCompactionFilterEnabled())
 			.setNumberOfTransferingThreads(getNumberOfTransferThreads())
+			.setNumberOfAsyncReadThreads(getNumberOfAsyncReadThreads())
 			.setNativeMetricOptions(resourceContainer.getMemoryWatcherOptions(defaultMetricOptions))
-			.setWriteBatchSize(getWriteBatchSize());
+			.setWriteBatchSize(getWriteBatchSize())
+			.setTimerWriteBufferSize(getTimerWriteBufferSize())
+			.setSharedInstance(sharedInstance)
+			.setStateTransferService(env.getTaskManagerSharedResources().getOrCreate(
+				RocksDBStateTransferService.class,
+				() -> RocksDBStateTransferService.fromConfiguration(env.getTaskManagerInfo().getConfiguration())));
 		return builder.build();
 	}
 
+	private OpaqueMemoryResource<RocksDBSharedInstance> acquireSharedInstance(Environment env) throws IOException {
+		final File instanceBasePath = new File(
+			getNextStoragePath(),
+			"job_" + jobId + "_shared_uuid_" + UUID.randomUUID());
+
+		try {
+			final OpaqueMemoryResource<RocksDBSharedInstance> sharedInstance = env.getMemoryManager()
+				.getExternalSharedMemoryResource(
+					RocksDBSharedInstance.RESOURCE_ID,
+					size -> RocksDBSharedInstance.open(
+						instanceBasePath,
+						createOptionsAndResourceContainer(RocksDBOperationUtils
+							.allocateSharedCachesIfConfigured(memoryConfiguration, env.getMemoryManager(), LOG))),
+					0L);
+			LOG.info("Obtained RocksDB instance shared by the keyed state backends of the slot.");
+			return sharedInstance;
+		} catch (Exception e) {
+			throw new IOException("Failed to acquire the shared RocksDB instance", e);
+		}
+	}
+
+	private static boolean hasIncrementalStateHandles(Collection<KeyedStateHandle> stateHandles) {
+		for (KeyedStateHandle stateHandle : stateHandles) {
+			if (stateHandle instanceof IncrementalKeyedStateHandle) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public OperatorStateBackend createOperatorStateBackend(
 		Environment env,
@@ -770,6 +845,23 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 		enableTtlCompactionFilter = TernaryBoolean.FALSE;
 	}
 
+	/**
+	 * Gets whether the keyed state backends of a slot share one RocksDB instance.
+	 */
+	public boolean isSharedInstanceEnabled() {
+		return enableSharedInstance.getOrDefault(SHARED_INSTANCE_ENABLED.defaultValue());
+	}
+
+	/**
+	 * Sets whether the keyed state backends of a slot share one RocksDB instance, with separate column families
+	 * per operator and state. The shared instance is only used by backends with full checkpoints.
+	 *
+	 * @param enableSharedInstance True if the keyed state backends of a slot share one RocksDB instance.
+	 */
+	public void setSharedInstanceEnabled(boolean enableSharedInstance) {
+		this.enableSharedInstance = TernaryBoolean.fromBoolean(enableSharedInstance);
+	}
+
 	/**
 	 * Gets the type of the priority queue state. It will fallback to the default value, if it is not explicitly set.
 	 * @return The type of the priority queue state.
@@ -895,6 +987,44 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 		this.numberOfTransferThreads = numberOfTransferThreads;
 	}
 
+	/**
+	 * Gets the number of threads used to read state asynchronously.
+	 */
+	public int getNumberOfAsyncReadThreads() {
+		return numberOfAsyncReadThreads == UNDEFINED_NUMBER_OF_ASYNC_READ_THREADS ?
+			ASYNC_READ_THREAD_NUM.defaultValue() : numberOfAsyncReadThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to read state asynchronously.
+	 *
+	 * @param numberOfAsyncReadThreads The number of threads used to read state asynchronously.
+	 */
+	public void setNumberOfAsyncReadThreads(int numberOfAsyncReadThreads) {
+		Preconditions.checkArgument(numberOfAsyncReadThreads > 0,
+			"The number of threads used to read state asynchronously in RocksDBStateBackend should be greater than zero.");
+		this.numberOfAsyncReadThreads = numberOfAsyncReadThreads;
+	}
+
+	/**
+	 * Gets the maximum number of timer writes which are buffered in memory.
+	 */
+	public int getTimerWriteBufferSize() {
+		return timerWriteBufferSize == UNDEFINED_TIMER_WRITE_BUFFER_SIZE ?
+			TIMER_SERVICE_WRITE_BUFFER_SIZE.defaultValue() : timerWriteBufferSize;
+	}
+
+	/**
+	 * Sets the maximum number of timer writes which are buffered in memory, when timers are stored in RocksDB.
+	 *
+	 * @param timerWriteBufferSize The maximum number of buffered timer writes, or 0 to write timers immediately.
+	 */
+	public void setTimerWriteBufferSize(int timerWriteBufferSize) {
+		Preconditions.checkArgument(timerWriteBufferSize >= 0,
+			"The size of the timer write buffer in RocksDBStateBackend must not be negative.");
+		this.timerWriteBufferSize = timerWriteBufferSize;
+	}
+
 	/**
 	 * @deprecated Typo in method name. Use {@link #getNumberOfTransferThreads} instead.
 	 */
@@ -955,7 +1085,10 @@ public class RocksDBStateBackend extends AbstractStateBackend implements Configu
 				", localRocksDbDirectories=" + Arrays.toString(localRocksDbDirectories) +
 				", enableIncrementalCheckpointing=" + enableIncrementalCheckpointing +
 				", numberOfTransferThreads=" + numberOfTransferThreads +
+				", numberOfAsyncReadThreads=" + numberOfAsyncReadThreads +
+				", enableSharedInstance=" + enableSharedInstance +
 				", writeBatchSize=" + writeBatchSize +
+				", timerWriteBufferSize=" + timerWriteBufferSize +
 				'}';
 	}
 
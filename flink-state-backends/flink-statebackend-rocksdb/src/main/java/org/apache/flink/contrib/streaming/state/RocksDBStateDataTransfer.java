@@ -30,7 +30,11 @@ class RocksDBStateDataTransfer implements Closeable {
 
 	protected final ExecutorService executorService;
 
-	RocksDBStateDataTransfer(int threadNum) {
+	/** Limits the transfers of all backends of the TaskManager. */
+	protected final RocksDBStateTransferService transferService;
+
+	RocksDBStateDataTransfer(int threadNum, RocksDBStateTransferService transferService) {
+		this.transferService = transferService;
 		if (threadNum > 1) {
 			executorService = Executors.newFixedThreadPool(threadNum);
 		} else {
@@ -27,10 +27,18 @@ import org.apache.flink.util.ExceptionUtils;
 import org.apache.flink.util.FlinkRuntimeException;
 import org.apache.flink.util.function.ThrowingRunnable;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -41,8 +49,17 @@ import java.util.concurrent.ExecutionException;
  * Help class for downloading RocksDB state files.
  */
 public class RocksDBStateDownloader extends RocksDBStateDataTransfer {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RocksDBStateDownloader.class);
+
+	private static final int READ_BUFFER_SIZE = 8 * 1024;
+
 	public RocksDBStateDownloader(int restoringThreadNum) {
-		super(restoringThreadNum);
+		this(restoringThreadNum, RocksDBStateTransferService.UNLIMITED);
+	}
+
+	public RocksDBStateDownloader(int restoringThreadNum, RocksDBStateTransferService transferService) {
+		super(restoringThreadNum, transferService);
 	}
 
 	/**
@@ -63,8 +80,8 @@ public class RocksDBStateDownloader extends RocksDBStateDataTransfer {
 		final Map<StateHandleID, StreamStateHandle> miscFiles =
 			restoreStateHandle.getPrivateState();
 
-		downloadDataForAllStateHandles(sstFiles, dest, closeableRegistry);
-		downloadDataForAllStateHandles(miscFiles, dest, closeableRegistry);
+		downloadDataForAllStateHandles(sstFiles, dest, closeableRegistry, true);
+		downloadDataForAllStateHandles(miscFiles, dest, closeableRegistry, false);
 	}
 
 	/**
@@ -74,10 +91,12 @@ public class RocksDBStateDownloader extends RocksDBStateDataTransfer {
 	private void downloadDataForAllStateHandles(
 		Map<StateHandleID, StreamStateHandle> stateHandleMap,
 		Path restoreInstancePath,
-		CloseableRegistry closeableRegistry) throws Exception {
+		CloseableRegistry closeableRegistry,
+		boolean reuseLocalFiles) throws Exception {
 
 		try {
-			List<Runnable> runnables = createDownloadRunnables(stateHandleMap, restoreInstancePath, closeableRegistry);
+			List<Runnable> runnables = createDownloadRunnables(
+				stateHandleMap, restoreInstancePath, closeableRegistry, reuseLocalFiles);
 			List<CompletableFuture<Void>> futures = new ArrayList<>(runnables.size());
 			for (Runnable runnable : runnables) {
 				futures.add(CompletableFuture.runAsync(runnable, executorService));
@@ -97,7 +116,8 @@ public class RocksDBStateDownloader extends RocksDBStateDataTransfer {
 	private List<Runnable> createDownloadRunnables(
 		Map<StateHandleID, StreamStateHandle> stateHandleMap,
 		Path restoreInstancePath,
-		CloseableRegistry closeableRegistry) {
+		CloseableRegistry closeableRegistry,
+		boolean reuseLocalFiles) throws IOException {
 		List<Runnable> runnables = new ArrayList<>(stateHandleMap.size());
 		for (Map.Entry<StateHandleID, StreamStateHandle> entry : stateHandleMap.entrySet()) {
 			StateHandleID stateHandleID = entry.getKey();
@@ -105,23 +125,70 @@ public class RocksDBStateDownloader extends RocksDBStateDataTransfer {
 
 			Path path = restoreInstancePath.resolve(stateHandleID.toString());
 
-			runnables.add(ThrowingRunnable.unchecked(
-				() -> downloadDataForStateHandle(path, remoteFileHandle, closeableRegistry)));
+			if (reuseLocalFiles && reuseLocalFile(path, remoteFileHandle)) {
+				continue;
+			}
+
+			final long fileSize = remoteFileHandle.getStateSize();
+			final long chunkSize = transferService.getChunkSize();
+			if (fileSize > chunkSize) {
+				// large files are downloaded in ranges, which are written into the file at their offsets
+				Files.createDirectories(path.getParent());
+				Files.newOutputStream(path).close();
+				for (long offset = 0L; offset < fileSize; offset += chunkSize) {
+					final long rangeOffset = offset;
+					final long rangeLength = Math.min(chunkSize, fileSize - offset);
+					runnables.add(ThrowingRunnable.unchecked(
+						() -> downloadRangeForStateHandle(path, remoteFileHandle, rangeOffset, rangeLength, closeableRegistry)));
+				}
+			} else {
+				runnables.add(ThrowingRunnable.unchecked(
+					() -> downloadDataForStateHandle(path, remoteFileHandle, closeableRegistry)));
+			}
 		}
 		return runnables;
 	}
 
+	/**
+	 * Links or copies a local file with the same contents as the given remote file to the given path, if there is
+	 * one.
+	 *
+	 * @return true if the file does not need to be downloaded.
+	 */
+	private boolean reuseLocalFile(Path restoreFilePath, StreamStateHandle remoteFileHandle) {
+		final Path localFile = transferService.getLocalFile(remoteFileHandle);
+		if (localFile == null) {
+			return false;
+		}
+
+		try {
+			Files.createDirectories(restoreFilePath.getParent());
+			try {
+				// hardlink'ing the immutable sst-files.
+				Files.createLink(restoreFilePath, localFile);
+			} catch (IOException | UnsupportedOperationException e) {
+				Files.copy(localFile, restoreFilePath, StandardCopyOption.REPLACE_EXISTING);
+			}
+			LOG.debug("Reused local file {} instead of downloading {}.", localFile, remoteFileHandle);
+			return true;
+		} catch (IOException e) {
+			LOG.debug("Could not reuse local file {}, downloading {}.", localFile, remoteFileHandle, e);
+			return false;
+		}
+	}
+
 	/**
 	 * Copies the file from a single state handle to the given path.
 	 */
 	private void downloadDataForStateHandle(
 		Path restoreFilePath,
 		StreamStateHandle remoteFileHandle,
-		CloseableRegistry closeableRegistry) throws IOException {
+		CloseableRegistry closeableRegistry) throws IOException, InterruptedException {
 
 		FSDataInputStream inputStream = null;
 		OutputStream outputStream = null;
 
+		transferService.acquireTransfer();
 		try {
 			inputStream = remoteFileHandle.openInputStream();
 			closeableRegistry.registerCloseable(inputStream);
@@ -130,16 +197,19 @@ public class RocksDBStateDownloader extends RocksDBStateDataTransfer {
 			outputStream = Files.newOutputStream(restoreFilePath);
 			closeableRegistry.registerCloseable(outputStream);
 
-			byte[] buffer = new byte[8 * 1024];
+			byte[] buffer = new byte[READ_BUFFER_SIZE];
 			while (true) {
 				int numBytes = inputStream.read(buffer);
 				if (numBytes == -1) {
 					break;
 				}
 
+				transferService.acquireBytes(numBytes);
 				outputStream.write(buffer, 0, numBytes);
 			}
 		} finally {
+			transferService.releaseTransfer();
+
 			if (closeableRegistry.unregisterCloseable(inputStream)) {
 				inputStream.close();
 			}
@@ -149,4 +219,55 @@ public class RocksDBStateDownloader extends RocksDBStateDataTransfer {
 			}
 		}
 	}
+
+	/**
+	 * Copies a range of the file from a single state handle to the same range of the file at the given path.
+	 */
+	private void downloadRangeForStateHandle(
+		Path restoreFilePath,
+		StreamStateHandle remoteFileHandle,
+		long offset,
+		long length,
+		CloseableRegistry closeableRegistry) throws IOException, InterruptedException {
+
+		FSDataInputStream inputStream = null;
+		FileChannel outputChannel = null;
+
+		transferService.acquireTransfer();
+		try {
+			inputStream = remoteFileHandle.openInputStream();
+			closeableRegistry.registerCloseable(inputStream);
+			inputStream.seek(offset);
+
+			outputChannel = FileChannel.open(restoreFilePath, StandardOpenOption.WRITE);
+			closeableRegistry.registerCloseable(outputChannel);
+
+			byte[] buffer = new byte[READ_BUFFER_SIZE];
+			long position = offset;
+			long remaining = length;
+			while (remaining > 0) {
+				int numBytes = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (numBytes == -1) {
+					throw new EOFException("Unexpected end of " + remoteFileHandle + " at offset " + position + '.');
+				}
+
+				transferService.acquireBytes(numBytes);
+				ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, numBytes);
+				while (byteBuffer.hasRemaining()) {
+					position += outputChannel.write(byteBuffer, position);
+				}
+				remaining -= numBytes;
+			}
+		} finally {
+			transferService.releaseTransfer();
+
+			if (closeableRegistry.unregisterCloseable(inputStream)) {
+				inputStream.close();
+			}
+
+			if (closeableRegistry.unregisterCloseable(outputChannel)) {
+				outputChannel.close();
+			}
+		}
+	}
 }
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.configuration.ReadableConfig;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.filesystem.FileStateHandle;
+
+import org.apache.flink.shaded.guava18.com.google.common.util.concurrent.RateLimiter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Semaphore;
+
+import static org.apache.flink.contrib.streaming.state.RocksDBOptions.TRANSFER_CHUNK_SIZE;
+import static org.apache.flink.contrib.streaming.state.RocksDBOptions.TRANSFER_MAX_BANDWIDTH;
+import static org.apache.flink.contrib.streaming.state.RocksDBOptions.TRANSFER_MAX_CONCURRENT_FILES;
+import static org.apache.flink.contrib.streaming.state.RocksDBOptions.TRANSFER_REUSE_LOCAL_FILES;
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * Coordinates the transfer of RocksDB state files between all {@link RocksDBKeyedStateBackend}s of a TaskManager.
+ *
+ * <p>The backends transfer files with thread pools of their own, see {@link RocksDBStateDownloader} and
+ * {@link RocksDBStateUploader}. This service limits the number of files which are transferred at the same time
+ * and the bandwidth of all transfers together, so that a TaskManager which restores many operators at once does not
+ * saturate its network and the checkpoint storage. It also keeps track of the SST files which were uploaded from
+ * local recovery directories, so that they can be reused instead of being downloaded again.
+ */
+public class RocksDBStateTransferService {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RocksDBStateTransferService.class);
+
+	/** The maximum number of local files which are kept track of. */
+	private static final int MAX_NUM_LOCAL_FILES = 100_000;
+
+	/** A service without limits, which does not reuse local files. */
+	static final RocksDBStateTransferService UNLIMITED = new RocksDBStateTransferService(0, 0L, Long.MAX_VALUE, false);
+
+	/** The permits for concurrent transfers, null if the number of concurrent transfers is not limited. */
+	@Nullable
+	private final Semaphore transferPermits;
+
+	/** Limits the bytes per second of all transfers, null if the bandwidth is not limited. */
+	@Nullable
+	private final RateLimiter rateLimiter;
+
+	/** Files larger than this are downloaded in ranges of this size in parallel. */
+	private final long chunkSize;
+
+	/** The local copies of remote files, by the path of the remote file. Null if local files are not reused. */
+	@GuardedBy("localFiles")
+	@Nullable
+	private final LinkedHashMap<String, Path> localFiles;
+
+	@VisibleForTesting
+	RocksDBStateTransferService(int maxConcurrentFiles, long maxBytesPerSecond, long chunkSize, boolean reuseLocalFiles) {
+		checkArgument(maxConcurrentFiles >= 0, "The maximum number of concurrent transfers must not be negative.");
+		checkArgument(maxBytesPerSecond >= 0, "The maximum transfer bandwidth must not be negative.");
+		checkArgument(chunkSize > 0, "The transfer chunk size must be positive.");
+
+		this.transferPermits = maxConcurrentFiles > 0 ? new Semaphore(maxConcurrentFiles, true) : null;
+		this.rateLimiter = maxBytesPerSecond > 0 ? RateLimiter.create(maxBytesPerSecond) : null;
+		this.chunkSize = chunkSize;
+		this.localFiles = reuseLocalFiles ? new LinkedHashMap<>(16, 0.75f, true) : null;
+	}
+
+	/**
+	 * Creates the service for the backends of a TaskManager from the configuration of the TaskManager. The service is
+	 * kept in the {@link org.apache.flink.runtime.taskexecutor.TaskManagerSharedResources} of the TaskManager, so
+	 * that all its backends share it.
+	 */
+	static RocksDBStateTransferService fromConfiguration(ReadableConfig taskManagerConfig) {
+		RocksDBStateTransferService service = new RocksDBStateTransferService(
+			taskManagerConfig.get(TRANSFER_MAX_CONCURRENT_FILES),
+			taskManagerConfig.get(TRANSFER_MAX_BANDWIDTH).getBytes(),
+			taskManagerConfig.get(TRANSFER_CHUNK_SIZE).getBytes(),
+			taskManagerConfig.get(TRANSFER_REUSE_LOCAL_FILES));
+		LOG.info("Created RocksDB state transfer service: {}.", service);
+		return service;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Limits
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Blocks until the transfer of one more file, or range of a file, is allowed. Every call must be followed by a
+	 * call to {@link #releaseTransfer()}.
+	 */
+	void acquireTransfer() throws InterruptedException {
+		if (transferPermits != null) {
+			transferPermits.acquire();
+		}
+	}
+
+	void releaseTransfer() {
+		if (transferPermits != null) {
+			transferPermits.release();
+		}
+	}
+
+	/**
+	 * Blocks until the given number of bytes may be transferred without exceeding the bandwidth limit.
+	 */
+	void acquireBytes(int numBytes) {
+		if (rateLimiter != null && numBytes > 0) {
+			rateLimiter.acquire(numBytes);
+		}
+	}
+
+	long getChunkSize() {
+		return chunkSize;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Local files
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Remembers that the given local file has the same contents as the given remote file. Only files whose
+	 * contents never change, i.e. SST files, may be registered.
+	 */
+	public void registerLocalFile(StreamStateHandle remoteFile, Path localFile) {
+		final String remotePath = getRemotePath(remoteFile);
+		if (localFiles == null || remotePath == null) {
+			return;
+		}
+
+		synchronized (localFiles) {
+			localFiles.put(remotePath, localFile);
+			if (localFiles.size() > MAX_NUM_LOCAL_FILES) {
+				// drop the least recently used entry
+				localFiles.remove(localFiles.keySet().iterator().next());
+			}
+		}
+	}
+
+	/**
+	 * Returns a local file with the same contents as the given remote file, or null if there is none.
+	 */
+	@Nullable
+	Path getLocalFile(StreamStateHandle remoteFile) {
+		final String remotePath = getRemotePath(remoteFile);
+		if (localFiles == null || remotePath == null) {
+			return null;
+		}
+
+		final Path localFile;
+		synchronized (localFiles) {
+			localFile = localFiles.get(remotePath);
+		}
+		if (localFile == null) {
+			return null;
+		}
+
+		// the local recovery directories are removed once their checkpoint was subsumed
+		try {
+			if (Files.size(localFile) == remoteFile.getStateSize()) {
+				return localFile;
+			}
+		} catch (IOException ignored) {
+			// the file does not exist anymore
+		}
+
+		synchronized (localFiles) {
+			localFiles.remove(remotePath, localFile);
+		}
+		return null;
+	}
+
+	@Nullable
+	private static String getRemotePath(StreamStateHandle remoteFile) {
+		// only file state handles have an identity, other handles are small and inlined into the metadata
+		return remoteFile instanceof FileStateHandle ? ((FileStateHandle) remoteFile).getFilePath().toString() : null;
+	}
+
+	@Override
+	public String toString() {
+		return "RocksDBStateTransferService{" +
+			"maxConcurrentFiles=" + (transferPermits != null ? transferPermits.availablePermits() : "unlimited") +
+			", maxBytesPerSecond=" + (rateLimiter != null ? (long) rateLimiter.getRate() : "unlimited") +
+			", chunkSize=" + chunkSize +
+			", reuseLocalFiles=" + (localFiles != null) +
+			'}';
+	}
+}
@@ -48,7 +48,11 @@ public class RocksDBStateUploader extends RocksDBStateDataTransfer {
 	private static final int READ_BUFFER_SIZE = 16 * 1024;
 
 	public RocksDBStateUploader(int numberOfSnapshottingThreads) {
-		super(numberOfSnapshottingThreads);
+		this(numberOfSnapshottingThreads, RocksDBStateTransferService.UNLIMITED);
+	}
+
+	public RocksDBStateUploader(int numberOfSnapshottingThreads, RocksDBStateTransferService transferService) {
+		super(numberOfSnapshottingThreads, transferService);
 	}
 
 	/**
@@ -106,11 +110,12 @@ public class RocksDBStateUploader extends RocksDBStateDataTransfer {
 	private StreamStateHandle uploadLocalFileToCheckpointFs(
 		Path filePath,
 		CheckpointStreamFactory checkpointStreamFactory,
-		CloseableRegistry closeableRegistry) throws IOException {
+		CloseableRegistry closeableRegistry) throws IOException, InterruptedException {
 
 		InputStream inputStream = null;
 		CheckpointStreamFactory.CheckpointStateOutputStream outputStream = null;
 
+		transferService.acquireTransfer();
 		try {
 			final byte[] buffer = new byte[READ_BUFFER_SIZE];
 
@@ -128,6 +133,7 @@ public class RocksDBStateUploader extends RocksDBStateDataTransfer {
 					break;
 				}
 
+				transferService.acquireBytes(numBytes);
 				outputStream.write(buffer, 0, numBytes);
 			}
 
@@ -139,6 +145,7 @@ public class RocksDBStateUploader extends RocksDBStateDataTransfer {
 			return result;
 
 		} finally {
+			transferService.releaseTransfer();
 
 			if (closeableRegistry.unregisterCloseable(inputStream)) {
 				IOUtils.closeQuietly(inputStream);
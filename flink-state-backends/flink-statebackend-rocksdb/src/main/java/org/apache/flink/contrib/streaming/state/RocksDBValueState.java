@@ -24,24 +24,30 @@ import org.apache.flink.api.common.state.ValueState;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.runtime.state.RegisteredKeyValueStateBackendMetaInfo;
-import org.apache.flink.runtime.state.internal.InternalValueState;
+import org.apache.flink.runtime.state.internal.InternalAsyncValueState;
 import org.apache.flink.util.FlinkRuntimeException;
 
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDBException;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * {@link ValueState} implementation that stores state in RocksDB.
  *
+ * <p>Besides the synchronous {@link #value()}, the state can be read asynchronously through
+ * {@link #asyncValue(Executor)}, which looks up the value on the {@link RocksDBAsyncReader} of the backend.
+ * Values which the backend prefetched are read from its {@link RocksDBPrefetchCache}.
+ *
  * @param <K> The type of the key.
  * @param <N> The type of the namespace.
  * @param <V> The type of value that the state state stores.
  */
 class RocksDBValueState<K, N, V>
 	extends AbstractRocksDBState<K, N, V>
-	implements InternalValueState<K, N, V> {
+	implements InternalAsyncValueState<K, N, V> {
 
 	/**
 	 * Creates a new {@code RocksDBValueState}.
@@ -80,10 +86,13 @@ class RocksDBValueState<K, N, V>
 	@Override
 	public V value() {
 		try {
-			byte[] valueBytes = backend.db.get(columnFamily,
-				serializeCurrentKeyWithGroupAndNamespace());
-
+			final byte[] rawKeyBytes = serializeCurrentKeyWithGroupAndNamespace();
+			byte[] valueBytes = backend.getPrefetchCache().get(columnFamily, rawKeyBytes);
 			if (valueBytes == null) {
+				valueBytes = backend.db.get(columnFamily, rawKeyBytes);
+			}
+
+			if (valueBytes == null || valueBytes == RocksDBPrefetchCache.ABSENT_VALUE) {
 				return getDefaultValue();
 			}
 			dataInputView.setBuffer(valueBytes);
@@ -93,6 +102,29 @@ class RocksDBValueState<K, N, V>
 		}
 	}
 
+	@Override
+	public CompletableFuture<V> asyncValue(Executor completionExecutor) {
+		final byte[] rawKeyBytes = serializeCurrentKeyWithGroupAndNamespace();
+		final byte[] prefetchedValueBytes = backend.getPrefetchCache().get(columnFamily, rawKeyBytes);
+		final CompletableFuture<byte[]> rawValueBytes = prefetchedValueBytes != null ?
+			CompletableFuture.completedFuture(prefetchedValueBytes) :
+			backend.getAsyncReader().get(columnFamily, rawKeyBytes);
+
+		return rawValueBytes.thenApplyAsync(
+			valueBytes -> {
+				if (valueBytes == null || valueBytes == RocksDBPrefetchCache.ABSENT_VALUE) {
+					return getDefaultValue();
+				}
+				try {
+					dataInputView.setBuffer(valueBytes);
+					return valueSerializer.deserialize(dataInputView);
+				} catch (IOException e) {
+					throw new FlinkRuntimeException("Error while deserializing data from RocksDB.", e);
+				}
+			},
+			completionExecutor);
+	}
+
 	@Override
 	public void update(V value) {
 		if (value == null) {
@@ -101,9 +133,9 @@ class RocksDBValueState<K, N, V>
 		}
 
 		try {
-			backend.db.put(columnFamily, writeOptions,
-				serializeCurrentKeyWithGroupAndNamespace(),
-				serializeValue(value));
+			final byte[] rawKeyBytes = serializeCurrentKeyWithGroupAndNamespace();
+			backend.getPrefetchCache().invalidate(columnFamily, rawKeyBytes);
+			backend.db.put(columnFamily, writeOptions, rawKeyBytes, serializeValue(value));
 		} catch (Exception e) {
 			throw new FlinkRuntimeException("Error while adding data to RocksDB", e);
 		}
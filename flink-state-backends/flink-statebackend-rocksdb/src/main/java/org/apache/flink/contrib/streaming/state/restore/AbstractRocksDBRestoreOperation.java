@@ -34,6 +34,7 @@ import org.apache.flink.runtime.state.RegisteredStateMetaInfoBase;
 import org.apache.flink.runtime.state.StateSerializerProvider;
 import org.apache.flink.runtime.state.metainfo.StateMetaInfoSnapshot;
 import org.apache.flink.util.IOUtils;
+import org.apache.flink.util.Preconditions;
 import org.apache.flink.util.StateMigrationException;
 
 import org.rocksdb.ColumnFamilyDescriptor;
@@ -88,6 +89,10 @@ public abstract class AbstractRocksDBRestoreOperation<K> implements RocksDBResto
 
 	protected RocksDB db;
 	protected ColumnFamilyHandle defaultColumnFamilyHandle;
+	/** Whether {@link #db} is shared with other backends, and thus neither opened nor closed by this operation. */
+	protected boolean isSharedDB;
+	/** The prefix of the names of the column families which are created for the restored states. */
+	protected String columnFamilyNamePrefix = "";
 	protected RocksDBNativeMetricMonitor nativeMetricMonitor;
 	protected boolean isKeySerializerCompatibilityChecked;
 
@@ -127,15 +132,31 @@ public abstract class AbstractRocksDBRestoreOperation<K> implements RocksDBResto
 		this.columnFamilyDescriptors = Collections.emptyList();
 	}
 
+	/**
+	 * Restores into the given RocksDB instance, which is shared with other backends, instead of opening an instance
+	 * of its own. The column families of the restored states get names with the given prefix.
+	 */
+	public void setSharedDB(RocksDB sharedDB, String columnFamilyNamePrefix) {
+		this.db = sharedDB;
+		this.isSharedDB = true;
+		this.columnFamilyNamePrefix = columnFamilyNamePrefix;
+	}
+
 	void openDB() throws IOException {
-		db = RocksDBOperationUtils.openDB(
-			dbPath,
-			columnFamilyDescriptors,
-			columnFamilyHandles,
-			RocksDBOperationUtils.createColumnFamilyOptions(columnFamilyOptionsFactory, "default"),
-			dbOptions);
-		// remove the default column family which is located at the first index
-		defaultColumnFamilyHandle = columnFamilyHandles.remove(0);
+		if (isSharedDB) {
+			// the default column family belongs to the shared instance
+			Preconditions.checkState(columnFamilyDescriptors.isEmpty(),
+				"Column families cannot be restored into a shared RocksDB instance on opening.");
+		} else {
+			db = RocksDBOperationUtils.openDB(
+				dbPath,
+				columnFamilyDescriptors,
+				columnFamilyHandles,
+				RocksDBOperationUtils.createColumnFamilyOptions(columnFamilyOptionsFactory, "default"),
+				dbOptions);
+			// remove the default column family which is located at the first index
+			defaultColumnFamilyHandle = columnFamilyHandles.remove(0);
+		}
 		// init native metrics monitor if configured
 		nativeMetricMonitor = nativeMetricOptions.isEnabled() ?
 			new RocksDBNativeMetricMonitor(nativeMetricOptions, metricGroup, db) : null;
@@ -159,7 +180,7 @@ public abstract class AbstractRocksDBRestoreOperation<K> implements RocksDBResto
 				RegisteredStateMetaInfoBase.fromMetaInfoSnapshot(stateMetaInfoSnapshot);
 			if (columnFamilyHandle == null) {
 				registeredStateMetaInfoEntry = RocksDBOperationUtils.createStateInfo(
-					stateMetaInfo, db, columnFamilyOptionsFactory, ttlCompactFiltersManager);
+					stateMetaInfo, db, columnFamilyOptionsFactory, ttlCompactFiltersManager, columnFamilyNamePrefix);
 			} else {
 				registeredStateMetaInfoEntry = new RocksDbKvStateInfo(columnFamilyHandle, stateMetaInfo);
 			}
@@ -207,7 +228,9 @@ public abstract class AbstractRocksDBRestoreOperation<K> implements RocksDBResto
 	public void close() {
 		IOUtils.closeQuietly(defaultColumnFamilyHandle);
 		IOUtils.closeQuietly(nativeMetricMonitor);
-		IOUtils.closeQuietly(db);
+		if (!isSharedDB) {
+			IOUtils.closeQuietly(db);
+		}
 		// Making sure the already created column family options will be closed
 		columnFamilyDescriptors.forEach((cfd) -> IOUtils.closeQuietly(cfd.getOptions()));
 	}
@@ -19,13 +19,11 @@
 package org.apache.flink.contrib.streaming.state.restore;
 
 import org.apache.flink.contrib.streaming.state.RocksDBIncrementalCheckpointUtils;
-import org.apache.flink.contrib.streaming.state.RocksDBKeySerializationUtils;
 import org.apache.flink.contrib.streaming.state.RocksDBKeyedStateBackend.RocksDbKvStateInfo;
 import org.apache.flink.contrib.streaming.state.RocksDBNativeMetricOptions;
 import org.apache.flink.contrib.streaming.state.RocksDBOperationUtils;
 import org.apache.flink.contrib.streaming.state.RocksDBStateDownloader;
-import org.apache.flink.contrib.streaming.state.RocksDBWriteBatchWrapper;
-import org.apache.flink.contrib.streaming.state.RocksIteratorWrapper;
+import org.apache.flink.contrib.streaming.state.RocksDBStateTransferService;
 import org.apache.flink.contrib.streaming.state.ttl.RocksDbTtlCompactFiltersManager;
 import org.apache.flink.core.fs.CloseableRegistry;
 import org.apache.flink.core.memory.DataInputView;
@@ -56,7 +54,6 @@ import org.rocksdb.RocksDBException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 
 import java.io.File;
@@ -78,7 +75,6 @@ import java.util.UUID;
 import java.util.function.Function;
 
 import static org.apache.flink.contrib.streaming.state.snapshot.RocksSnapshotUtil.SST_FILE_SUFFIX;
-import static org.apache.flink.util.Preconditions.checkArgument;
 
 /**
  * Encapsulates the process of restoring a RocksDB instance from an incremental snapshot.
@@ -86,11 +82,23 @@ import static org.apache.flink.util.Preconditions.checkArgument;
 public class RocksDBIncrementalRestoreOperation<K> extends AbstractRocksDBRestoreOperation<K> {
 	private static final Logger LOG = LoggerFactory.getLogger(RocksDBIncrementalRestoreOperation.class);
 
+	/** The name of the metric group of the durations of the restore phases. */
+	private static final String RESTORE_METRIC_GROUP = "rocksdbRestore";
+
 	private final String operatorIdentifier;
 	private final SortedMap<Long, Set<StateHandleID>> restoredSstFiles;
 	private long lastCompletedCheckpointId;
 	private UUID backendUID;
-	private final long writeBatchSize;
+
+	/** Time spent on downloading the files of remote state handles, in milliseconds. */
+	private long downloadDurationMillis;
+	/** Time spent on clipping the initial db instance to the key group range of the backend, in milliseconds. */
+	private long clipDurationMillis;
+	/** Time spent on copying the key groups of the other state handles into the db instance, in milliseconds. */
+	private long ingestDurationMillis;
+
+	/** Limits the downloads of this operation together with the other transfers of the TaskManager. */
+	private final RocksDBStateTransferService transferService;
 
 	public RocksDBIncrementalRestoreOperation(
 		String operatorIdentifier,
@@ -109,7 +117,7 @@ public class RocksDBIncrementalRestoreOperation<K> extends AbstractRocksDBRestor
 		MetricGroup metricGroup,
 		@Nonnull Collection<KeyedStateHandle> restoreStateHandles,
 		@Nonnull RocksDbTtlCompactFiltersManager ttlCompactFiltersManager,
-		@Nonnegative long writeBatchSize) {
+		@Nonnull RocksDBStateTransferService transferService) {
 		super(keyGroupRange,
 			keyGroupPrefixBytes,
 			numberOfTransferringThreads,
@@ -129,8 +137,7 @@ public class RocksDBIncrementalRestoreOperation<K> extends AbstractRocksDBRestor
 		this.restoredSstFiles = new TreeMap<>();
 		this.lastCompletedCheckpointId = -1L;
 		this.backendUID = UUID.randomUUID();
-		checkArgument(writeBatchSize >= 0, "Write batch size have to be no negative.");
-		this.writeBatchSize = writeBatchSize;
+		this.transferService = transferService;
 	}
 
 	/**
@@ -153,10 +160,27 @@ public class RocksDBIncrementalRestoreOperation<K> extends AbstractRocksDBRestor
 		} else {
 			restoreWithoutRescaling(theFirstStateHandle);
 		}
+		registerRestoreMetrics(isRescaling);
 		return new RocksDBRestoreResult(this.db, defaultColumnFamilyHandle,
 			nativeMetricMonitor, lastCompletedCheckpointId, backendUID, restoredSstFiles);
 	}
 
+	private void registerRestoreMetrics(boolean isRescaling) {
+		LOG.info("Restored keyed backend of operator {} from incremental snapshot {} rescaling. " +
+				"Download took {} ms, clipping took {} ms, ingestion took {} ms.",
+			operatorIdentifier, isRescaling ? "with" : "without",
+			downloadDurationMillis, clipDurationMillis, ingestDurationMillis);
+
+		final long downloadDuration = downloadDurationMillis;
+		final long clipDuration = clipDurationMillis;
+		final long ingestDuration = ingestDurationMillis;
+
+		final MetricGroup restoreMetricGroup = metricGroup.addGroup(RESTORE_METRIC_GROUP);
+		restoreMetricGroup.gauge("downloadDuration", () -> downloadDuration);
+		restoreMetricGroup.gauge("clipDuration", () -> clipDuration);
+		restoreMetricGroup.gauge("ingestDuration", () -> ingestDuration);
+	}
+
 	/**
 	 * Recovery from a single remote incremental state without rescaling.
 	 */
@@ -225,12 +249,7 @@ public class RocksDBIncrementalRestoreOperation<K> extends AbstractRocksDBRestor
 		Path temporaryRestoreInstancePath,
 		IncrementalRemoteKeyedStateHandle restoreStateHandle) throws Exception {
 
-		try (RocksDBStateDownloader rocksDBStateDownloader = new RocksDBStateDownloader(numberOfTransferringThreads)) {
-			rocksDBStateDownloader.transferAllStateDataToDirectory(
-				restoreStateHandle,
-				temporaryRestoreInstancePath,
-				cancelStreamRegistry);
-		}
+		downloadStateData(restoreStateHandle, temporaryRestoreInstancePath);
 
 		// since we transferred all remote state to a local directory, we can use the same code as for
 		// local recovery.
@@ -243,6 +262,20 @@ public class RocksDBIncrementalRestoreOperation<K> extends AbstractRocksDBRestor
 			restoreStateHandle.getSharedState().keySet());
 	}
 
+	private void downloadStateData(
+		IncrementalRemoteKeyedStateHandle restoreStateHandle,
+		Path temporaryRestoreInstancePath) throws Exception {
+
+		final long startMillis = System.currentTimeMillis();
+		try (RocksDBStateDownloader rocksDBStateDownloader = new RocksDBStateDownloader(numberOfTransferringThreads, transferService)) {
+			rocksDBStateDownloader.transferAllStateDataToDirectory(
+				restoreStateHandle,
+				temporaryRestoreInstancePath,
+				cancelStreamRegistry);
+		}
+		downloadDurationMillis += System.currentTimeMillis() - startMillis;
+	}
+
 	private void cleanUpPathQuietly(@Nonnull Path path) {
 		try {
 			FileUtils.deleteDirectory(path.toFile());
@@ -260,8 +293,9 @@ public class RocksDBIncrementalRestoreOperation<K> extends AbstractRocksDBRestor
 
 	/**
 	 * Recovery from multi incremental states with rescaling. For rescaling, this method creates a temporary
-	 * RocksDB instance for a key-groups shard. All contents from the temporary instance are copied into the
-	 * real restore instance and then the temporary instance is discarded.
+	 * RocksDB instance for a key-groups shard. The contents of the target key-group range are written from the
+	 * temporary instance into SST files, which are ingested into the real restore instance, and then the temporary
+	 * instance is discarded.
 	 */
 	private void restoreWithRescaling(Collection<KeyedStateHandle> restoreStateHandles) throws Exception {
 
@@ -278,12 +312,6 @@ public class RocksDBIncrementalRestoreOperation<K> extends AbstractRocksDBRestor
 		}
 
 		// Transfer remaining key-groups from temporary instance into base DB
-		byte[] startKeyGroupPrefixBytes = new byte[keyGroupPrefixBytes];
-		RocksDBKeySerializationUtils.serializeKeyGroup(keyGroupRange.getStartKeyGroup(), startKeyGroupPrefixBytes);
-
-		byte[] stopKeyGroupPrefixBytes = new byte[keyGroupPrefixBytes];
-		RocksDBKeySerializationUtils.serializeKeyGroup(keyGroupRange.getEndKeyGroup() + 1, stopKeyGroupPrefixBytes);
-
 		for (KeyedStateHandle rawStateHandle : restoreStateHandles) {
 
 			if (!(rawStateHandle instanceof IncrementalRemoteKeyedStateHandle)) {
@@ -293,10 +321,13 @@ public class RocksDBIncrementalRestoreOperation<K> extends AbstractRocksDBRestor
 			}
 
 			Path temporaryRestoreInstancePath = instanceBasePath.getAbsoluteFile().toPath().resolve(UUID.randomUUID().toString());
+			Path temporarySstFilesPath = instanceBasePath.getAbsoluteFile().toPath().resolve(UUID.randomUUID().toString());
 			try (RestoredDBInstance tmpRestoreDBInfo = restoreDBInstanceFromStateHandle(
 				(IncrementalRemoteKeyedStateHandle) rawStateHandle,
-				temporaryRestoreInstancePath);
-				RocksDBWriteBatchWrapper writeBatchWrapper = new RocksDBWriteBatchWrapper(this.db, writeBatchSize)) {
+				temporaryRestoreInstancePath)) {
+
+				Files.createDirectories(temporarySstFilesPath);
+				final long startMillis = System.currentTimeMillis();
 
 				List<ColumnFamilyDescriptor> tmpColumnFamilyDescriptors = tmpRestoreDBInfo.columnFamilyDescriptors;
 				List<ColumnFamilyHandle> tmpColumnFamilyHandles = tmpRestoreDBInfo.columnFamilyHandles;
@@ -309,26 +340,20 @@ public class RocksDBIncrementalRestoreOperation<K> extends AbstractRocksDBRestor
 						null, tmpRestoreDBInfo.stateMetaInfoSnapshots.get(i))
 						.columnFamilyHandle;
 
-					try (RocksIteratorWrapper iterator = RocksDBOperationUtils.getRocksIterator(tmpRestoreDBInfo.db, tmpColumnFamilyHandle)) {
-
-						iterator.seek(startKeyGroupPrefixBytes);
-
-						while (iterator.isValid()) {
-
-							if (RocksDBIncrementalCheckpointUtils.beforeThePrefixBytes(iterator.key(), stopKeyGroupPrefixBytes)) {
-								writeBatchWrapper.put(targetColumnFamilyHandle, iterator.key(), iterator.value());
-							} else {
-								// Since the iterator will visit the record according to the sorted order,
-								// we can just break here.
-								break;
-							}
-
-							iterator.next();
-						}
-					} // releases native iterator resources
+					RocksDBIncrementalCheckpointUtils.ingestKeyGroupRange(
+						tmpRestoreDBInfo.db,
+						tmpColumnFamilyHandle,
+						this.db,
+						targetColumnFamilyHandle,
+						keyGroupRange,
+						keyGroupPrefixBytes,
+						temporarySstFilesPath.resolve(i + SST_FILE_SUFFIX).toFile());
 				}
+
+				ingestDurationMillis += System.currentTimeMillis() - startMillis;
 			} finally {
 				cleanUpPathQuietly(temporaryRestoreInstancePath);
+				cleanUpPathQuietly(temporarySstFilesPath);
 			}
 		}
 	}
@@ -341,14 +366,15 @@ public class RocksDBIncrementalRestoreOperation<K> extends AbstractRocksDBRestor
 		restoreFromRemoteState((IncrementalRemoteKeyedStateHandle) initialHandle);
 
 		// 2. Clip the base DB instance
+		final long startMillis = System.currentTimeMillis();
 		try {
 			RocksDBIncrementalCheckpointUtils.clipDBWithKeyGroupRange(
 				db,
 				columnFamilyHandles,
 				keyGroupRange,
 				initialHandle.getKeyGroupRange(),
-				keyGroupPrefixBytes,
-				writeBatchSize);
+				keyGroupPrefixBytes);
+			clipDurationMillis = System.currentTimeMillis() - startMillis;
 		} catch (RocksDBException e) {
 			String errMsg = "Failed to clip DB after initialization.";
 			LOG.error(errMsg, e);
@@ -404,13 +430,7 @@ public class RocksDBIncrementalRestoreOperation<K> extends AbstractRocksDBRestor
 		IncrementalRemoteKeyedStateHandle restoreStateHandle,
 		Path temporaryRestoreInstancePath) throws Exception {
 
-		try (RocksDBStateDownloader rocksDBStateDownloader =
-				new RocksDBStateDownloader(numberOfTransferringThreads)) {
-			rocksDBStateDownloader.transferAllStateDataToDirectory(
-				restoreStateHandle,
-				temporaryRestoreInstancePath,
-				cancelStreamRegistry);
-		}
+		downloadStateData(restoreStateHandle, temporaryRestoreInstancePath);
 
 		KeyedBackendSerializationProxy<K> serializationProxy = readMetaData(restoreStateHandle.getMetaStateHandle());
 		// read meta data
@@ -20,6 +20,7 @@ package org.apache.flink.contrib.streaming.state.snapshot;
 
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.contrib.streaming.state.RocksDBKeyedStateBackend.RocksDbKvStateInfo;
+import org.apache.flink.contrib.streaming.state.RocksDBStateTransferService;
 import org.apache.flink.contrib.streaming.state.RocksDBStateUploader;
 import org.apache.flink.core.fs.CloseableRegistry;
 import org.apache.flink.core.memory.DataOutputView;
@@ -102,6 +103,9 @@ public class RocksIncrementalSnapshotStrategy<K> extends RocksDBSnapshotStrategy
 	/** The identifier of the last completed checkpoint. */
 	private long lastCompletedCheckpointId;
 
+	/** Limits the uploads of this strategy and keeps track of the local copies of uploaded sst files. */
+	private final RocksDBStateTransferService transferService;
+
 	/** The help class used to upload state files. */
 	private final RocksDBStateUploader stateUploader;
 
@@ -121,7 +125,8 @@ public class RocksIncrementalSnapshotStrategy<K> extends RocksDBSnapshotStrategy
 		@Nonnull UUID backendUID,
 		@Nonnull SortedMap<Long, Set<StateHandleID>> materializedSstFiles,
 		long lastCompletedCheckpointId,
-		int numberOfTransferingThreads) {
+		int numberOfTransferingThreads,
+		@Nonnull RocksDBStateTransferService transferService) {
 
 		super(
 			DESCRIPTION,
@@ -138,7 +143,8 @@ public class RocksIncrementalSnapshotStrategy<K> extends RocksDBSnapshotStrategy
 		this.backendUID = backendUID;
 		this.materializedSstFiles = materializedSstFiles;
 		this.lastCompletedCheckpointId = lastCompletedCheckpointId;
-		this.stateUploader = new RocksDBStateUploader(numberOfTransferingThreads);
+		this.transferService = transferService;
+		this.stateUploader = new RocksDBStateUploader(numberOfTransferingThreads, transferService);
 		this.localDirectoryName = backendUID.toString().replaceAll("[\\-]", "");
 	}
 
@@ -420,10 +426,18 @@ public class RocksIncrementalSnapshotStrategy<K> extends RocksDBSnapshotStrategy
 			if (files != null) {
 				createUploadFilePaths(files, sstFiles, sstFilePaths, miscFilePaths);
 
-				sstFiles.putAll(stateUploader.uploadFilesToCheckpointFs(
+				Map<StateHandleID, StreamStateHandle> uploadedSstFiles = stateUploader.uploadFilesToCheckpointFs(
 					sstFilePaths,
 					checkpointStreamFactory,
-					snapshotCloseableRegistry));
+					snapshotCloseableRegistry);
+				sstFiles.putAll(uploadedSstFiles);
+
+				if (localRecoveryConfig.isLocalRecoveryEnabled()) {
+					// the local backup directory is kept for local recovery, so a later restore can reuse its sst files
+					for (Map.Entry<StateHandleID, StreamStateHandle> entry : uploadedSstFiles.entrySet()) {
+						transferService.registerLocalFile(entry.getValue(), sstFilePaths.get(entry.getKey()));
+					}
+				}
 				miscFiles.putAll(stateUploader.uploadFilesToCheckpointFs(
 					miscFilePaths,
 					checkpointStreamFactory,
@@ -26,6 +26,8 @@ import org.apache.flink.runtime.state.heap.KeyGroupPartitionedPriorityQueue;
 
 import org.junit.Rule;
 
+import javax.annotation.Nullable;
+
 /**
  * Test of {@link KeyGroupPartitionedPriorityQueue} powered by a {@link RocksDBCachingPriorityQueueSet}.
  */
@@ -48,9 +50,19 @@ public class KeyGroupPartitionedPriorityQueueWithRocksDBStoreTest extends Intern
 		return true;
 	}
 
+	/**
+	 * Returns the write buffer for the queues of one {@link KeyGroupPartitionedPriorityQueue}, or null if the queues
+	 * write through to RocksDB.
+	 */
+	@Nullable
+	protected RocksDBPriorityQueueWriteBuffer newWriteBuffer() {
+		return null;
+	}
+
 	private KeyGroupPartitionedPriorityQueue.PartitionQueueSetFactory<
 		TestElement, RocksDBCachingPriorityQueueSet<TestElement>> newFactory() {
 
+		final RocksDBPriorityQueueWriteBuffer writeBuffer = newWriteBuffer();
 		return (keyGroupId, numKeyGroups, keyExtractorFunction, elementComparator) -> {
 			DataOutputSerializer outputStreamWithPos = new DataOutputSerializer(128);
 			DataInputDeserializer inputStreamWithPos = new DataInputDeserializer();
@@ -65,7 +77,8 @@ public class KeyGroupPartitionedPriorityQueueWithRocksDBStoreTest extends Intern
 				outputStreamWithPos,
 				inputStreamWithPos,
 				rocksDBResource.getBatchWrapper(),
-				orderedSetCache);
+				orderedSetCache,
+				writeBuffer);
 		};
 	}
 }
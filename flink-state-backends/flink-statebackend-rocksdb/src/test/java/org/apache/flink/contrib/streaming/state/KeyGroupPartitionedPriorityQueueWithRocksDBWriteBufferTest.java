@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.runtime.state.InternalPriorityQueue;
+
+import org.junit.Test;
+import org.rocksdb.RocksIterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Test of {@link RocksDBCachingPriorityQueueSet RocksDB priority queues} which buffer their writes in a
+ * {@link RocksDBPriorityQueueWriteBuffer}.
+ */
+public class KeyGroupPartitionedPriorityQueueWithRocksDBWriteBufferTest
+	extends KeyGroupPartitionedPriorityQueueWithRocksDBStoreTest {
+
+	private RocksDBPriorityQueueWriteBuffer writeBuffer;
+
+	@Override
+	protected RocksDBPriorityQueueWriteBuffer newWriteBuffer() {
+		// a small buffer, so that the tests also cover flushing on a full buffer
+		writeBuffer = new RocksDBPriorityQueueWriteBuffer(16);
+		return writeBuffer;
+	}
+
+	@Test
+	public void testShortLivedElementsAreNotWrittenToRocksDB() throws Exception {
+		final InternalPriorityQueue<TestElement> priorityQueue = newPriorityQueue(1);
+
+		for (int i = 0; i < 1000; ++i) {
+			final TestElement element = new TestElement(i, i);
+			priorityQueue.add(element);
+			priorityQueue.remove(element);
+		}
+		assertEquals(0, writeBuffer.getNumBufferedWrites());
+
+		writeBuffer.flush();
+		rocksDBResource.getBatchWrapper().flush();
+		try (RocksIterator iterator = rocksDBResource.getRocksDB().newIterator(rocksDBResource.getDefaultColumnFamily())) {
+			iterator.seekToFirst();
+			assertFalse(iterator.isValid());
+		}
+		assertEquals(0, priorityQueue.size());
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.api.java.typeutils.TupleTypeInfo;
+import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
+import org.apache.flink.runtime.state.VoidNamespace;
+import org.apache.flink.runtime.state.VoidNamespaceSerializer;
+import org.apache.flink.runtime.state.internal.InternalAsyncValueState;
+import org.apache.flink.streaming.api.operators.StreamGroupedReduce;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the asynchronous state access of the {@link RocksDBKeyedStateBackend}, with the
+ * {@link RocksDBAsyncReader} and the {@link StreamGroupedReduce} which uses it.
+ */
+public class RocksDBAsyncStateAccessTest extends TestLogger {
+
+	private static final int NUM_KEYS = 7;
+
+	@Rule
+	public final TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testAsyncValueReadsBatchesOfKeys() throws Exception {
+		RocksDBKeyedStateBackend<Integer> backend = RocksDBTestUtils
+			.builderForTestDefaults(tmp.newFolder(), IntSerializer.INSTANCE)
+			.build();
+
+		try {
+			@SuppressWarnings("unchecked")
+			InternalAsyncValueState<Integer, VoidNamespace, String> state =
+				(InternalAsyncValueState<Integer, VoidNamespace, String>) backend.getPartitionedState(
+					VoidNamespace.INSTANCE,
+					VoidNamespaceSerializer.INSTANCE,
+					new ValueStateDescriptor<>("value", StringSerializer.INSTANCE));
+
+			// more keys than one multi-get reads, half of them without a value
+			int numKeys = 3 * RocksDBAsyncReader.MAX_BATCH_SIZE;
+			for (int key = 0; key < numKeys; key += 2) {
+				backend.setCurrentKey(key);
+				state.update("value-" + key);
+			}
+
+			// the completion executor stands in for the mailbox of the task
+			BlockingQueue<Runnable> completions = new LinkedBlockingQueue<>();
+			List<CompletableFuture<String>> values = new ArrayList<>(numKeys);
+			for (int key = 0; key < numKeys; key++) {
+				backend.setCurrentKey(key);
+				values.add(state.asyncValue(completions::add));
+			}
+
+			for (int i = 0; i < numKeys; i++) {
+				completions.take().run();
+			}
+
+			for (int key = 0; key < numKeys; key++) {
+				if (key % 2 == 0) {
+					assertEquals("value-" + key, values.get(key).get());
+				} else {
+					assertNull(values.get(key).get());
+				}
+			}
+		} finally {
+			backend.dispose();
+		}
+	}
+
+	@Test
+	public void testGroupedReduceReadsStateAsynchronously() throws Exception {
+		try (KeyedOneInputStreamOperatorTestHarness<Integer, Tuple2<Integer, Integer>, Tuple2<Integer, Integer>> harness =
+				createReduceHarness()) {
+			harness.open();
+
+			harness.processElement(new StreamRecord<>(Tuple2.of(0, 1), 1L));
+			// the result is emitted once the state is read
+			assertTrue(harness.getOutput().isEmpty());
+
+			// more records than reads may be in flight
+			int numRecords = 1000;
+			for (int i = 1; i < numRecords; i++) {
+				harness.processElement(new StreamRecord<>(Tuple2.of(i % NUM_KEYS, 1), 1L));
+			}
+			harness.processWatermark(new Watermark(1L));
+
+			// the watermark follows all results
+			List<Object> output = new ArrayList<>(harness.getOutput());
+			assertEquals(numRecords + 1, output.size());
+			assertEquals(new Watermark(1L), output.get(numRecords));
+			assertRunningCounts(output.subList(0, numRecords), new HashMap<>());
+		}
+	}
+
+	@Test
+	public void testGroupedReduceDrainsReadsBeforeCheckpoint() throws Exception {
+		OperatorSubtaskState snapshot;
+		Map<Integer, Integer> counts = new HashMap<>();
+
+		try (KeyedOneInputStreamOperatorTestHarness<Integer, Tuple2<Integer, Integer>, Tuple2<Integer, Integer>> harness =
+				createReduceHarness()) {
+			harness.open();
+
+			for (int i = 0; i < 100; i++) {
+				harness.processElement(new StreamRecord<>(Tuple2.of(i % NUM_KEYS, 1)));
+			}
+			harness.prepareSnapshotPreBarrier(0L);
+
+			// all results are emitted before the barrier, and their state is in the snapshot
+			assertEquals(100, harness.getOutput().size());
+			assertRunningCounts(new ArrayList<>(harness.getOutput()), counts);
+			snapshot = harness.snapshot(0L, 0L);
+		}
+
+		try (KeyedOneInputStreamOperatorTestHarness<Integer, Tuple2<Integer, Integer>, Tuple2<Integer, Integer>> harness =
+				createReduceHarness()) {
+			harness.initializeState(snapshot);
+			harness.open();
+
+			for (int i = 0; i < 100; i++) {
+				harness.processElement(new StreamRecord<>(Tuple2.of(i % NUM_KEYS, 1)));
+			}
+			harness.endInput();
+
+			assertEquals(100, harness.getOutput().size());
+			assertRunningCounts(new ArrayList<>(harness.getOutput()), counts);
+		}
+	}
+
+	/**
+	 * Checks that the results of each key count up from the given counts, i.e. that the records of a key were
+	 * reduced in order and each saw the state of the previous one.
+	 */
+	private static void assertRunningCounts(List<Object> output, Map<Integer, Integer> counts) {
+		for (Object element : output) {
+			@SuppressWarnings("unchecked")
+			Tuple2<Integer, Integer> result = ((StreamRecord<Tuple2<Integer, Integer>>) element).getValue();
+			int count = counts.merge(result.f0, 1, Integer::sum);
+			assertEquals(Tuple2.of(result.f0, count), result);
+		}
+	}
+
+	private KeyedOneInputStreamOperatorTestHarness<Integer, Tuple2<Integer, Integer>, Tuple2<Integer, Integer>> createReduceHarness()
+			throws Exception {
+
+		TypeInformation<Tuple2<Integer, Integer>> type =
+			new TupleTypeInfo<>(BasicTypeInfo.INT_TYPE_INFO, BasicTypeInfo.INT_TYPE_INFO);
+		KeySelector<Tuple2<Integer, Integer>, Integer> keySelector = value -> value.f0;
+		ReduceFunction<Tuple2<Integer, Integer>> sum = (value1, value2) -> Tuple2.of(value1.f0, value1.f1 + value2.f1);
+
+		KeyedOneInputStreamOperatorTestHarness<Integer, Tuple2<Integer, Integer>, Tuple2<Integer, Integer>> harness =
+			new KeyedOneInputStreamOperatorTestHarness<>(
+				new StreamGroupedReduce<>(sum, type.createSerializer(null)),
+				keySelector,
+				BasicTypeInfo.INT_TYPE_INFO);
+		harness.getExecutionConfig().enableAsyncStateAccess();
+		harness.setStateBackend(new RocksDBStateBackend("file://" + tmp.newFolder().getAbsolutePath()));
+		return harness;
+	}
+}
@@ -32,6 +32,7 @@ import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -68,6 +69,63 @@ public class RocksDBIncrementalCheckpointUtilsTest extends TestLogger {
 		testClipDBWithKeyGroupRangeHelper(new KeyGroupRange(Short.MAX_VALUE - 15, Short.MAX_VALUE - 1), new KeyGroupRange(Short.MAX_VALUE - 10, Short.MAX_VALUE), 2);
 	}
 
+	@Test
+	public void testIngestKeyGroupRange() throws Exception {
+		final KeyGroupRange sourceGroupRange = new KeyGroupRange(0, 9);
+		final KeyGroupRange targetGroupRange = new KeyGroupRange(3, 6);
+		final int keyGroupPrefixBytes = 1;
+
+		try (
+			RocksDB sourceDB = RocksDB.open(tmp.newFolder().getAbsolutePath());
+			ColumnFamilyHandle sourceColumnFamilyHandle = sourceDB.createColumnFamily(
+				new ColumnFamilyDescriptor("test".getBytes()));
+			RocksDB targetDB = RocksDB.open(tmp.newFolder().getAbsolutePath());
+			ColumnFamilyHandle targetColumnFamilyHandle = targetDB.createColumnFamily(
+				new ColumnFamilyDescriptor("test".getBytes()))) {
+
+			DataOutputSerializer outputView = new DataOutputSerializer(32);
+			for (int i = sourceGroupRange.getStartKeyGroup(); i <= sourceGroupRange.getEndKeyGroup(); ++i) {
+				for (int j = 0; j < 100; ++j) {
+					sourceDB.put(sourceColumnFamilyHandle, serializeKey(outputView, i, j, keyGroupPrefixBytes), String.valueOf(j).getBytes());
+				}
+			}
+
+			// a record of the target range, which the ingested records are written on top of
+			targetDB.put(targetColumnFamilyHandle, serializeKey(outputView, 3, 0, keyGroupPrefixBytes), "old".getBytes());
+
+			long numRecords = RocksDBIncrementalCheckpointUtils.ingestKeyGroupRange(
+				sourceDB,
+				sourceColumnFamilyHandle,
+				targetDB,
+				targetColumnFamilyHandle,
+				targetGroupRange,
+				keyGroupPrefixBytes,
+				new File(tmp.newFolder(), "ingest.sst"));
+			Assert.assertEquals(targetGroupRange.getNumberOfKeyGroups() * 100, numRecords);
+
+			for (int i = sourceGroupRange.getStartKeyGroup(); i <= sourceGroupRange.getEndKeyGroup(); ++i) {
+				for (int j = 0; j < 100; ++j) {
+					byte[] value = targetDB.get(targetColumnFamilyHandle, serializeKey(outputView, i, j, keyGroupPrefixBytes));
+					if (targetGroupRange.contains(i)) {
+						Assert.assertEquals(String.valueOf(j), new String(value));
+					} else {
+						Assert.assertNull(value);
+					}
+				}
+			}
+
+			// nothing to ingest from an empty key group range
+			Assert.assertEquals(0L, RocksDBIncrementalCheckpointUtils.ingestKeyGroupRange(
+				sourceDB,
+				sourceColumnFamilyHandle,
+				targetDB,
+				targetColumnFamilyHandle,
+				new KeyGroupRange(20, 30),
+				keyGroupPrefixBytes,
+				new File(tmp.newFolder(), "empty.sst")));
+		}
+	}
+
 	@Test
 	public void testChooseTheBestStateHandleForInitial() {
 
@@ -145,8 +203,7 @@ public class RocksDBIncrementalCheckpointUtilsTest extends TestLogger {
 				Collections.singletonList(columnFamilyHandle),
 				targetGroupRange,
 				currentGroupRange,
-				keyGroupPrefixBytes,
-				RocksDBConfigurableOptions.WRITE_BATCH_SIZE.defaultValue().getBytes());
+				keyGroupPrefixBytes);
 
 			for (int i = currentGroupRangeStart; i <= currentGroupRangeEnd; ++i) {
 				for (int j = 0; j < 100; ++j) {
@@ -167,4 +224,16 @@ public class RocksDBIncrementalCheckpointUtilsTest extends TestLogger {
 			}
 		}
 	}
+
+	private static byte[] serializeKey(
+		DataOutputSerializer outputView,
+		int keyGroup,
+		int key,
+		int keyGroupPrefixBytes) throws IOException {
+
+		outputView.clear();
+		RocksDBKeySerializationUtils.writeKeyGroup(keyGroup, keyGroupPrefixBytes, outputView);
+		RocksDBKeySerializationUtils.writeKey(key, IntSerializer.INSTANCE, outputView, false);
+		return outputView.getCopyOfBuffer();
+	}
 }
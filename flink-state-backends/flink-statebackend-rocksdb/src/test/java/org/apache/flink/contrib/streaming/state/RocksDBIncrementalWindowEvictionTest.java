@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.streaming.api.functions.windowing.WindowFunction;
+import org.apache.flink.streaming.api.windowing.assigners.GlobalWindows;
+import org.apache.flink.streaming.api.windowing.evictors.CountEvictor;
+import org.apache.flink.streaming.api.windowing.evictors.Evictor;
+import org.apache.flink.streaming.api.windowing.evictors.TimeEvictor;
+import org.apache.flink.streaming.api.windowing.time.Time;
+import org.apache.flink.streaming.api.windowing.triggers.CountTrigger;
+import org.apache.flink.streaming.api.windowing.windows.GlobalWindow;
+import org.apache.flink.streaming.runtime.operators.windowing.EvictingWindowOperator;
+import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalIterableWindowFunction;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the incremental window eviction of the {@link EvictingWindowOperator} with the
+ * {@link RocksDBKeyedStateBackend}, whose map state iterates the window contents lazily and in
+ * arrival order. The results must be the same as with the list state of the window contents.
+ */
+public class RocksDBIncrementalWindowEvictionTest extends TestLogger {
+
+	/** More elements per key than the map state iterator reads at once. */
+	private static final int NUM_ELEMENTS = 1000;
+
+	@Rule
+	public final TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testCountEvictorBefore() throws Exception {
+		testSameResultsAsListState(CountEvictor.of(150), true);
+	}
+
+	@Test
+	public void testCountEvictorAfter() throws Exception {
+		testSameResultsAsListState(CountEvictor.of(150, true), true);
+	}
+
+	@Test
+	public void testTimeEvictorInOrder() throws Exception {
+		testSameResultsAsListState(TimeEvictor.of(Time.milliseconds(300)), true);
+	}
+
+	@Test
+	public void testTimeEvictorOutOfOrder() throws Exception {
+		testSameResultsAsListState(TimeEvictor.of(Time.milliseconds(300)), false);
+	}
+
+	private void testSameResultsAsListState(Evictor<Object, GlobalWindow> evictor, boolean inOrder) throws Exception {
+		assertEquals(runWindows(evictor, inOrder, false), runWindows(evictor, inOrder, true));
+	}
+
+	private List<Object> runWindows(
+			Evictor<Object, GlobalWindow> evictor,
+			boolean inOrder,
+			boolean incrementalEviction) throws Exception {
+
+		try (KeyedOneInputStreamOperatorTestHarness<Integer, Integer, String> harness = createHarness(evictor)) {
+			if (incrementalEviction) {
+				harness.getExecutionConfig().enableIncrementalWindowEviction();
+			}
+			harness.open();
+
+			for (int i = 0; i < NUM_ELEMENTS; i++) {
+				// out of order, every tenth element is late
+				long timestamp = !inOrder && i % 10 == 0 ? i - 50 : i;
+				harness.processElement(new StreamRecord<>(i, timestamp));
+			}
+			return new ArrayList<>(harness.getOutput());
+		}
+	}
+
+	private KeyedOneInputStreamOperatorTestHarness<Integer, Integer, String> createHarness(
+			Evictor<Object, GlobalWindow> evictor) throws Exception {
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		TypeSerializer<StreamRecord<Integer>> streamRecordSerializer =
+			(TypeSerializer<StreamRecord<Integer>>) new StreamElementSerializer(IntSerializer.INSTANCE);
+		KeySelector<Integer, Integer> keySelector = value -> value % 2;
+
+		// emits the elements of the window in the order the window function sees them
+		WindowFunction<Integer, String, Integer, GlobalWindow> windowFunction = (key, window, input, out) -> {
+			StringJoiner elements = new StringJoiner(",");
+			for (Integer element : input) {
+				elements.add(element.toString());
+			}
+			out.collect(elements.toString());
+		};
+
+		EvictingWindowOperator<Integer, Integer, String, GlobalWindow> operator = new EvictingWindowOperator<>(
+			GlobalWindows.create(),
+			new GlobalWindow.Serializer(),
+			keySelector,
+			IntSerializer.INSTANCE,
+			new ListStateDescriptor<>("window-contents", streamRecordSerializer),
+			new InternalIterableWindowFunction<>(windowFunction),
+			CountTrigger.of(100),
+			evictor,
+			0,
+			null /* late data output tag */);
+
+		KeyedOneInputStreamOperatorTestHarness<Integer, Integer, String> harness =
+			new KeyedOneInputStreamOperatorTestHarness<>(operator, keySelector, BasicTypeInfo.INT_TYPE_INFO);
+		harness.setStateBackend(new RocksDBStateBackend("file://" + tmp.newFolder().getAbsolutePath()));
+		return harness;
+	}
+}
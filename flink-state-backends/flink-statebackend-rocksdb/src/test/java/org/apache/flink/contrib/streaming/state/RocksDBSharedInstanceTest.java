@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.core.fs.CloseableRegistry;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.checkpoint.StateAssignmentOperation;
+import org.apache.flink.runtime.concurrent.FutureUtils;
+import org.apache.flink.runtime.execution.Environment;
+import org.apache.flink.runtime.operators.testutils.MockEnvironment;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyedStateHandle;
+import org.apache.flink.runtime.state.VoidNamespace;
+import org.apache.flink.runtime.state.VoidNamespaceSerializer;
+import org.apache.flink.runtime.state.memory.MemCheckpointStreamFactory;
+import org.apache.flink.runtime.state.ttl.TtlTimeProvider;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for snapshots and restores of {@link RocksDBKeyedStateBackend}s which share a {@link RocksDBSharedInstance}.
+ */
+public class RocksDBSharedInstanceTest extends TestLogger {
+
+	private static final int MAX_PARALLELISM = 128;
+
+	private static final int NUM_KEYS = 100;
+
+	private static final ValueStateDescriptor<String> SHARED_NAME_STATE =
+		new ValueStateDescriptor<>("state", StringSerializer.INSTANCE);
+
+	private static final ValueStateDescriptor<Integer> FIRST_ONLY_STATE =
+		new ValueStateDescriptor<>("first-only", IntSerializer.INSTANCE);
+
+	@Rule
+	public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+	/**
+	 * Snapshots two backends in one shared instance, whose states have the same name, and restores them rescaled into
+	 * another shared instance. Each restored backend must only see the states of its operator and its key groups.
+	 */
+	@Test
+	public void testSnapshotAndRescaleWithSharedInstance() throws Exception {
+		final MockEnvironment env = RocksDBStateBackendConfigTest.getMockEnvironment(tempFolder.newFolder());
+		final RocksDBStateBackend stateBackend = createStateBackend();
+		final KeyGroupRange allKeyGroups = KeyGroupRange.of(0, MAX_PARALLELISM - 1);
+
+		final KeyedStateHandle firstSnapshot;
+		final KeyedStateHandle secondSnapshot;
+		RocksDBKeyedStateBackend<Integer> first = null;
+		RocksDBKeyedStateBackend<Integer> second = null;
+		try {
+			first = createKeyedStateBackend(stateBackend, env, "first", allKeyGroups, Collections.emptyList());
+			second = createKeyedStateBackend(stateBackend, env, "second", allKeyGroups, Collections.emptyList());
+			assertSame(first.db, second.db);
+
+			ValueState<String> firstState = getState(first, SHARED_NAME_STATE);
+			ValueState<Integer> firstOnlyState = getState(first, FIRST_ONLY_STATE);
+			ValueState<String> secondState = getState(second, SHARED_NAME_STATE);
+			for (int key = 0; key < NUM_KEYS; key++) {
+				first.setCurrentKey(key);
+				firstState.update("first-" + key);
+				firstOnlyState.update(key);
+				second.setCurrentKey(key);
+				secondState.update("second-" + key);
+			}
+
+			firstSnapshot = snapshot(first);
+			secondSnapshot = snapshot(second);
+		} finally {
+			dispose(first);
+			dispose(second);
+		}
+
+		final KeyGroupRange lowerKeyGroups = KeyGroupRangeAssignment.computeKeyGroupRangeForOperatorIndex(MAX_PARALLELISM, 2, 0);
+		final KeyGroupRange upperKeyGroups = KeyGroupRangeAssignment.computeKeyGroupRangeForOperatorIndex(MAX_PARALLELISM, 2, 1);
+		RocksDBKeyedStateBackend<Integer> lower = null;
+		RocksDBKeyedStateBackend<Integer> upper = null;
+		RocksDBKeyedStateBackend<Integer> restoredSecond = null;
+		try {
+			lower = createKeyedStateBackend(stateBackend, env, "first", lowerKeyGroups, intersect(firstSnapshot, lowerKeyGroups));
+			upper = createKeyedStateBackend(stateBackend, env, "first", upperKeyGroups, intersect(firstSnapshot, upperKeyGroups));
+			restoredSecond = createKeyedStateBackend(stateBackend, env, "second", allKeyGroups, Collections.singletonList(secondSnapshot));
+			assertSame(lower.db, upper.db);
+			assertSame(lower.db, restoredSecond.db);
+
+			// every backend restored the state into column families of its own
+			assertEquals(3, new HashSet<>(Arrays.asList(
+				new String(lower.getColumnFamilyHandle(SHARED_NAME_STATE.getName()).getName()),
+				new String(upper.getColumnFamilyHandle(SHARED_NAME_STATE.getName()).getName()),
+				new String(restoredSecond.getColumnFamilyHandle(SHARED_NAME_STATE.getName()).getName()))).size());
+			assertNotNull(lower.getColumnFamilyHandle(FIRST_ONLY_STATE.getName()));
+			assertNull(restoredSecond.getColumnFamilyHandle(FIRST_ONLY_STATE.getName()));
+
+			int numLowerKeys = 0;
+			for (int key = 0; key < NUM_KEYS; key++) {
+				boolean inLower = lowerKeyGroups.contains(KeyGroupRangeAssignment.assignToKeyGroup(key, MAX_PARALLELISM));
+				numLowerKeys += inLower ? 1 : 0;
+				RocksDBKeyedStateBackend<Integer> owner = inLower ? lower : upper;
+				RocksDBKeyedStateBackend<Integer> other = inLower ? upper : lower;
+
+				owner.setCurrentKey(key);
+				assertEquals("first-" + key, getState(owner, SHARED_NAME_STATE).value());
+				assertEquals(Integer.valueOf(key), getState(owner, FIRST_ONLY_STATE).value());
+				other.setCurrentKey(key);
+				assertNull(getState(other, SHARED_NAME_STATE).value());
+				assertNull(getState(other, FIRST_ONLY_STATE).value());
+
+				restoredSecond.setCurrentKey(key);
+				assertEquals("second-" + key, getState(restoredSecond, SHARED_NAME_STATE).value());
+			}
+
+			// the backends only count the entries of their own column families
+			assertEquals(2 * numLowerKeys, lower.numKeyValueStateEntries());
+			assertEquals(2 * (NUM_KEYS - numLowerKeys), upper.numKeyValueStateEntries());
+			assertEquals(NUM_KEYS, restoredSecond.numKeyValueStateEntries());
+		} finally {
+			dispose(lower);
+			dispose(upper);
+			dispose(restoredSecond);
+			env.close();
+		}
+	}
+
+	private RocksDBStateBackend createStateBackend() throws Exception {
+		Configuration configuration = new Configuration();
+		configuration.set(RocksDBOptions.SHARED_INSTANCE_ENABLED, true);
+		return new RocksDBStateBackend(tempFolder.newFolder().toURI().toString(), false)
+			.configure(configuration, Thread.currentThread().getContextClassLoader());
+	}
+
+	private static RocksDBKeyedStateBackend<Integer> createKeyedStateBackend(
+			RocksDBStateBackend stateBackend,
+			Environment env,
+			String operatorIdentifier,
+			KeyGroupRange keyGroupRange,
+			List<KeyedStateHandle> stateHandles) throws Exception {
+
+		return (RocksDBKeyedStateBackend<Integer>) stateBackend.createKeyedStateBackend(
+			env,
+			env.getJobID(),
+			operatorIdentifier,
+			IntSerializer.INSTANCE,
+			MAX_PARALLELISM,
+			keyGroupRange,
+			env.getTaskKvStateRegistry(),
+			TtlTimeProvider.DEFAULT,
+			new UnregisteredMetricsGroup(),
+			stateHandles,
+			new CloseableRegistry());
+	}
+
+	private static <T> ValueState<T> getState(
+			RocksDBKeyedStateBackend<Integer> backend,
+			ValueStateDescriptor<T> descriptor) throws Exception {
+		return backend.getPartitionedState(VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, descriptor);
+	}
+
+	private static KeyedStateHandle snapshot(RocksDBKeyedStateBackend<Integer> backend) throws Exception {
+		return FutureUtils.runIfNotDoneAndGet(backend.snapshot(
+			1L,
+			1L,
+			new MemCheckpointStreamFactory(4 * 1024 * 1024),
+			CheckpointOptions.forCheckpointWithDefaultLocation())).getJobManagerOwnedSnapshot();
+	}
+
+	private static List<KeyedStateHandle> intersect(KeyedStateHandle snapshot, KeyGroupRange keyGroupRange) {
+		List<KeyedStateHandle> stateHandles = new ArrayList<>();
+		StateAssignmentOperation.extractIntersectingState(Collections.singletonList(snapshot), keyGroupRange, stateHandles);
+		return stateHandles;
+	}
+
+	private static void dispose(RocksDBKeyedStateBackend<Integer> backend) {
+		if (backend != null) {
+			backend.dispose();
+		}
+	}
+}
@@ -18,6 +18,8 @@
 
 package org.apache.flink.contrib.streaming.state;
 
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeutils.base.IntSerializer;
 import org.apache.flink.configuration.CheckpointingOptions;
 import org.apache.flink.configuration.ConfigOption;
@@ -38,6 +40,8 @@ import org.apache.flink.runtime.query.KvStateRegistry;
 import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.StateBackend;
+import org.apache.flink.runtime.state.VoidNamespace;
+import org.apache.flink.runtime.state.VoidNamespaceSerializer;
 import org.apache.flink.runtime.state.filesystem.FsStateBackend;
 import org.apache.flink.runtime.state.heap.HeapPriorityQueueSetFactory;
 import org.apache.flink.runtime.state.memory.MemoryStateBackend;
@@ -71,6 +75,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
@@ -176,6 +181,46 @@ public class RocksDBStateBackendConfigTest {
 		env.close();
 	}
 
+	@Test
+	public void testSharedInstance() throws Exception {
+		final MockEnvironment env = getMockEnvironment(tempFolder.newFolder());
+
+		final RocksDBStateBackend rocksDbBackend = new RocksDBStateBackend(tempFolder.newFolder().toURI().toString(), false);
+		assertFalse(rocksDbBackend.isSharedInstanceEnabled());
+
+		Configuration conf = new Configuration();
+		conf.set(RocksDBOptions.SHARED_INSTANCE_ENABLED, true);
+		final RocksDBStateBackend configuredBackend =
+			rocksDbBackend.configure(conf, Thread.currentThread().getContextClassLoader());
+		assertTrue(configuredBackend.isSharedInstanceEnabled());
+
+		final ValueStateDescriptor<Integer> descriptor = new ValueStateDescriptor<>("state", IntSerializer.INSTANCE);
+		final RocksDBKeyedStateBackend<Integer> first = createKeyedStateBackend(configuredBackend, env);
+		final RocksDBKeyedStateBackend<Integer> second = createKeyedStateBackend(configuredBackend, env);
+
+		try {
+			assertSame(first.db, second.db);
+
+			// the state of the backends is kept apart, even though the state names are the same
+			first.setCurrentKey(1);
+			first.getPartitionedState(VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, descriptor).update(42);
+			second.setCurrentKey(1);
+			assertNull(second.getPartitionedState(VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, descriptor).value());
+
+			// the instance stays open for the remaining backend
+			first.dispose();
+			ValueState<Integer> state =
+				second.getPartitionedState(VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, descriptor);
+			state.update(7);
+			assertEquals(Integer.valueOf(7), state.value());
+		}
+		finally {
+			first.dispose();
+			second.dispose();
+			env.close();
+		}
+	}
+
 	/**
 	 * Validates that user custom configuration from code should override the flink-conf.yaml.
 	 */
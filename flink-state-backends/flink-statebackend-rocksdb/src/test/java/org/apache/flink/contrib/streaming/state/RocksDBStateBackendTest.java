@@ -437,6 +437,46 @@ public class RocksDBStateBackendTest extends StateBackendTestBase<RocksDBStateBa
 		assertEquals(1, allFilesInDbDir.size());
 	}
 
+	@Test
+	public void testPrefetchedValuesReflectUpdates() throws Exception {
+		RocksDBKeyedStateBackend<Integer> backend =
+			(RocksDBKeyedStateBackend<Integer>) createKeyedBackend(IntSerializer.INSTANCE);
+		try {
+			ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+			kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+			ValueState<String> state =
+				backend.getPartitionedState(VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, kvId);
+
+			backend.setCurrentKey(1);
+			state.update("one");
+			backend.setCurrentKey(2);
+			state.update("two");
+
+			backend.prefetch(Arrays.asList(1, 2, 3, 1));
+
+			backend.setCurrentKey(1);
+			assertEquals("one", state.value());
+			state.update("uno");
+			assertEquals("uno", state.value());
+
+			backend.setCurrentKey(2);
+			state.clear();
+			assertEquals(null, state.value());
+
+			backend.setCurrentKey(3);
+			assertEquals(null, state.value());
+
+			// keys which were not prefetched are read from RocksDB
+			backend.setCurrentKey(4);
+			state.update("four");
+			assertEquals("four", state.value());
+		} finally {
+			IOUtils.closeQuietly(backend);
+			backend.dispose();
+		}
+	}
+
 	@Test
 	public void testSharedIncrementalStateDeRegistration() throws Exception {
 		if (enableIncrementalCheckpointing) {
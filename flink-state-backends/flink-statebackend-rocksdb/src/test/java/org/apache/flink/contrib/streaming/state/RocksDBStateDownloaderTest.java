@@ -24,6 +24,7 @@ import org.apache.flink.runtime.state.IncrementalRemoteKeyedStateHandle;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.StateHandleID;
 import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.filesystem.FileStateHandle;
 import org.apache.flink.runtime.state.memory.ByteStreamStateHandle;
 import org.apache.flink.util.TestLogger;
 
@@ -143,6 +144,74 @@ public class RocksDBStateDownloaderTest extends TestLogger {
 		}
 	}
 
+	/**
+	 * Tests that files larger than the chunk size are downloaded in ranges correctly.
+	 */
+	@Test
+	public void testChunkedRestoreCorrectly() throws Exception {
+		byte[] content = new byte[100000];
+		new Random().nextBytes(content);
+		StreamStateHandle handle = new ByteStreamStateHandle("state", content);
+
+		Map<StateHandleID, StreamStateHandle> sharedStates = new HashMap<>(1);
+		sharedStates.put(new StateHandleID("sharedState"), handle);
+
+		IncrementalRemoteKeyedStateHandle incrementalKeyedStateHandle =
+			new IncrementalRemoteKeyedStateHandle(
+				UUID.randomUUID(),
+				KeyGroupRange.of(0, 1),
+				1,
+				sharedStates,
+				new HashMap<>(),
+				handle);
+
+		Path dstPath = temporaryFolder.newFolder().toPath();
+		RocksDBStateTransferService transferService = new RocksDBStateTransferService(2, 0L, 999L, false);
+		try (RocksDBStateDownloader rocksDBStateDownloader = new RocksDBStateDownloader(5, transferService)) {
+			rocksDBStateDownloader.transferAllStateDataToDirectory(incrementalKeyedStateHandle, dstPath, new CloseableRegistry());
+		}
+
+		assertStateContentEqual(content, dstPath.resolve("sharedState"));
+	}
+
+	/**
+	 * Tests that registered local copies of shared files are used instead of downloading the remote files.
+	 */
+	@Test
+	public void testRestoreReusesLocalFiles() throws Exception {
+		byte[] content = new byte[1000];
+		new Random().nextBytes(content);
+		Path localFile = temporaryFolder.newFile().toPath();
+		Files.write(localFile, content);
+
+		// the remote file does not exist, so the restore fails if it is downloaded
+		StreamStateHandle handle = new FileStateHandle(
+			new org.apache.flink.core.fs.Path(temporaryFolder.getRoot().toURI().toString(), "missing"),
+			content.length);
+
+		RocksDBStateTransferService transferService = new RocksDBStateTransferService(0, 0L, Long.MAX_VALUE, true);
+		transferService.registerLocalFile(handle, localFile);
+
+		Map<StateHandleID, StreamStateHandle> sharedStates = new HashMap<>(1);
+		sharedStates.put(new StateHandleID("sharedState"), handle);
+
+		IncrementalRemoteKeyedStateHandle incrementalKeyedStateHandle =
+			new IncrementalRemoteKeyedStateHandle(
+				UUID.randomUUID(),
+				KeyGroupRange.of(0, 1),
+				1,
+				sharedStates,
+				new HashMap<>(),
+				handle);
+
+		Path dstPath = temporaryFolder.newFolder().toPath();
+		try (RocksDBStateDownloader rocksDBStateDownloader = new RocksDBStateDownloader(1, transferService)) {
+			rocksDBStateDownloader.transferAllStateDataToDirectory(incrementalKeyedStateHandle, dstPath, new CloseableRegistry());
+		}
+
+		assertStateContentEqual(content, dstPath.resolve("sharedState"));
+	}
+
 	private void assertStateContentEqual(byte[] expected, Path path) throws IOException {
 		byte[] actual = Files.readAllBytes(Paths.get(path.toUri()));
 		assertArrayEquals(expected, actual);
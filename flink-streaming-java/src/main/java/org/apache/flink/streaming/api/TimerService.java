@@ -58,6 +58,30 @@ public interface TimerService {
 	 */
 	void registerEventTimeTimer(long time);
 
+	/**
+	 * Registers a timer like {@link #registerProcessingTimeTimer(long)}, but rounds the given time up to the next
+	 * multiple of the granularity. All timers of a key within one interval of the granularity are thereby coalesced
+	 * into a single timer, and the timers of different keys fire together.
+	 *
+	 * @param time the earliest time at which the timer should fire.
+	 * @param granularity the granularity in milliseconds to which the timer is rounded up.
+	 */
+	default void registerCoalescedProcessingTimeTimer(long time, long granularity) {
+		registerProcessingTimeTimer(getCoalescedTimerTime(time, granularity));
+	}
+
+	/**
+	 * Registers a timer like {@link #registerEventTimeTimer(long)}, but rounds the given time up to the next
+	 * multiple of the granularity. All timers of a key within one interval of the granularity are thereby coalesced
+	 * into a single timer, and the timers of different keys fire together.
+	 *
+	 * @param time the earliest time at which the timer should fire.
+	 * @param granularity the granularity in milliseconds to which the timer is rounded up.
+	 */
+	default void registerCoalescedEventTimeTimer(long time, long granularity) {
+		registerEventTimeTimer(getCoalescedTimerTime(time, granularity));
+	}
+
 	/**
 	 * Deletes the processing-time timer with the given trigger time. This method has only an effect if such a timer
 	 * was previously registered and did not already expire.
@@ -75,4 +99,26 @@ public interface TimerService {
 	 * it is removed from the current keyed context.
 	 */
 	void deleteEventTimeTimer(long time);
+
+	/**
+	 * Returns the time of the timer which {@link #registerCoalescedEventTimeTimer(long, long)} and
+	 * {@link #registerCoalescedProcessingTimeTimer(long, long)} register for the given time and granularity. This is
+	 * the time with which a coalesced timer can be deleted.
+	 *
+	 * @param time the earliest time at which the timer should fire.
+	 * @param granularity the granularity in milliseconds to which the timer is rounded up.
+	 * @return the smallest multiple of the granularity that is not before the given time.
+	 */
+	static long getCoalescedTimerTime(long time, long granularity) {
+		if (granularity <= 0) {
+			throw new IllegalArgumentException("The timer granularity must be positive.");
+		}
+
+		final long remainder = Math.floorMod(time, granularity);
+		if (remainder == 0) {
+			return time;
+		}
+		// timers near the end of time fire at the end of time instead of overflowing
+		return time > Long.MAX_VALUE - (granularity - remainder) ? Long.MAX_VALUE : time + (granularity - remainder);
+	}
 }
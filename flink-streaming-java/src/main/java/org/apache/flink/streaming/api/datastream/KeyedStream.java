@@ -30,6 +30,7 @@ import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeinfo.BasicArrayTypeInfo;
 import org.apache.flink.api.common.typeinfo.PrimitiveArrayTypeInfo;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.dag.Transformation;
 import org.apache.flink.api.java.Utils;
 import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.api.java.typeutils.EnumTypeInfo;
@@ -52,6 +53,7 @@ import org.apache.flink.streaming.api.operators.KeyedProcessOperator;
 import org.apache.flink.streaming.api.operators.LegacyKeyedProcessOperator;
 import org.apache.flink.streaming.api.operators.StreamGroupedFold;
 import org.apache.flink.streaming.api.operators.StreamGroupedReduce;
+import org.apache.flink.streaming.api.operators.StreamLocalReduce;
 import org.apache.flink.streaming.api.operators.StreamOperatorFactory;
 import org.apache.flink.streaming.api.operators.co.IntervalJoinOperator;
 import org.apache.flink.streaming.api.transformations.OneInputTransformation;
@@ -703,6 +705,63 @@ public class KeyedStream<T, KEY> extends DataStream<T> {
 				clean(reducer), getType().createSerializer(getExecutionConfig())));
 	}
 
+	/**
+	 * Applies a reduce transformation on the grouped data stream like {@link #reduce(ReduceFunction)},
+	 * but pre-combines the elements of each key before they are partitioned. Every parallel instance
+	 * of the input stream buffers up to {@code maxBundleSize} elements and emits one partial
+	 * result per key of the bundle. The keyed reduce then combines the partial results, which
+	 * relieves it of hot keys.
+	 *
+	 * <p>The resulting stream contains the same final value per key as with
+	 * {@link #reduce(ReduceFunction)}, but fewer intermediate values, as the keyed reduce emits one
+	 * value per partial result instead of one per element. The {@link ReduceFunction} must be
+	 * associative, and must not depend on the order of the elements of different parallel inputs.
+	 *
+	 * <p>A stream which is not partitioned by its key, for example one from
+	 * {@link DataStreamUtils#reinterpretAsKeyedStream(DataStream, KeySelector)}, has no partitioning
+	 * to relieve. It is reduced with {@link #reduce(ReduceFunction)}.
+	 *
+	 * @param reducer
+	 *            The {@link ReduceFunction} that is applied before and after the partitioning.
+	 * @param maxBundleSize
+	 *            The maximum number of elements that are pre-combined before the partitioning.
+	 * @param maxBundleLatency
+	 *            The maximum time that elements are held back before the partitioning. Elements
+	 *            are also released when a watermark or a checkpoint barrier is forwarded.
+	 * @return The transformed DataStream.
+	 */
+	@PublicEvolving
+	public SingleOutputStreamOperator<T> reduceWithLocalAggregation(ReduceFunction<T> reducer, int maxBundleSize, Time maxBundleLatency) {
+		reducer = clean(reducer);
+
+		if (!isPartitionedByKey()) {
+			return reduce(reducer);
+		}
+
+		final PartitionTransformation<T> partitionTransformation = (PartitionTransformation<T>) getTransformation();
+		final Transformation<T> input = partitionTransformation.getInput();
+
+		final SingleOutputStreamOperator<T> localReduce = new DataStream<>(getExecutionEnvironment(), input)
+			.transform("Local Reduce", getType(), new StreamLocalReduce<>(
+				reducer, keySelector, maxBundleSize, maxBundleLatency.toMilliseconds()))
+			.setParallelism(input.getParallelism());
+
+		return new KeyedStream<>(
+			localReduce,
+			new PartitionTransformation<>(localReduce.getTransformation(), partitionTransformation.getPartitioner().copy()),
+			keySelector,
+			keyType).reduce(reducer);
+	}
+
+	/**
+	 * Returns whether the elements of this stream are partitioned by their key, and not only
+	 * reinterpreted as partitioned.
+	 */
+	private boolean isPartitionedByKey() {
+		return getTransformation() instanceof PartitionTransformation
+			&& ((PartitionTransformation<T>) getTransformation()).getPartitioner() instanceof KeyGroupStreamPartitioner;
+	}
+
 	/**
 	 * Applies a fold transformation on the grouped data stream grouped on by
 	 * the given key position. The {@link FoldFunction} will receive input
@@ -28,9 +28,11 @@ import org.apache.flink.api.common.functions.Function;
 import org.apache.flink.api.common.functions.ReduceFunction;
 import org.apache.flink.api.common.functions.RichFunction;
 import org.apache.flink.api.common.state.AggregatingStateDescriptor;
+import org.apache.flink.api.common.state.AppendingState;
 import org.apache.flink.api.common.state.FoldingStateDescriptor;
 import org.apache.flink.api.common.state.ListStateDescriptor;
 import org.apache.flink.api.common.state.ReducingStateDescriptor;
+import org.apache.flink.api.common.state.StateDescriptor;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.java.Utils;
@@ -57,6 +59,8 @@ import org.apache.flink.streaming.api.windowing.time.Time;
 import org.apache.flink.streaming.api.windowing.triggers.Trigger;
 import org.apache.flink.streaming.api.windowing.windows.Window;
 import org.apache.flink.streaming.runtime.operators.windowing.EvictingWindowOperator;
+import org.apache.flink.streaming.runtime.operators.windowing.MiniBatchWindowOperator;
+import org.apache.flink.streaming.runtime.operators.windowing.PanedSlidingWindowOperator;
 import org.apache.flink.streaming.runtime.operators.windowing.WindowOperator;
 import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalAggregateProcessWindowFunction;
 import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalIterableProcessWindowFunction;
@@ -297,6 +301,20 @@ public class WindowedStream<T, K, W extends Window> {
 					allowedLateness,
 					lateDataOutputTag);
 
+		} else if (isPaneSharingApplicable()) {
+			ReducingStateDescriptor<T> stateDesc = new ReducingStateDescriptor<>("window-panes",
+				reduceFunction,
+				input.getType().createSerializer(getExecutionEnvironment().getConfig()));
+
+			operator = createPanedSlidingWindowOperator(stateDesc, new InternalSingleValueWindowFunction<>(function));
+
+		} else if (isMiniBatchApplicable()) {
+			ReducingStateDescriptor<T> stateDesc = new ReducingStateDescriptor<>("window-contents",
+				reduceFunction,
+				input.getType().createSerializer(getExecutionEnvironment().getConfig()));
+
+			operator = createMiniBatchWindowOperator(stateDesc, new InternalSingleValueWindowFunction<>(function));
+
 		} else {
 			ReducingStateDescriptor<T> stateDesc = new ReducingStateDescriptor<>("window-contents",
 				reduceFunction,
@@ -383,6 +401,20 @@ public class WindowedStream<T, K, W extends Window> {
 							allowedLateness,
 							lateDataOutputTag);
 
+		} else if (isPaneSharingApplicable()) {
+			ReducingStateDescriptor<T> stateDesc = new ReducingStateDescriptor<>("window-panes",
+					reduceFunction,
+					input.getType().createSerializer(getExecutionEnvironment().getConfig()));
+
+			operator = createPanedSlidingWindowOperator(stateDesc, new InternalSingleValueProcessWindowFunction<>(function));
+
+		} else if (isMiniBatchApplicable()) {
+			ReducingStateDescriptor<T> stateDesc = new ReducingStateDescriptor<>("window-contents",
+					reduceFunction,
+					input.getType().createSerializer(getExecutionEnvironment().getConfig()));
+
+			operator = createMiniBatchWindowOperator(stateDesc, new InternalSingleValueProcessWindowFunction<>(function));
+
 		} else {
 			ReducingStateDescriptor<T> stateDesc = new ReducingStateDescriptor<>("window-contents",
 					reduceFunction,
@@ -832,6 +864,18 @@ public class WindowedStream<T, K, W extends Window> {
 					allowedLateness,
 					lateDataOutputTag);
 
+		} else if (isPaneSharingApplicable()) {
+			AggregatingStateDescriptor<T, ACC, V> stateDesc = new AggregatingStateDescriptor<>("window-panes",
+					aggregateFunction, accumulatorType.createSerializer(getExecutionEnvironment().getConfig()));
+
+			operator = createPanedSlidingWindowOperator(stateDesc, new InternalSingleValueWindowFunction<>(windowFunction));
+
+		} else if (isMiniBatchApplicable()) {
+			AggregatingStateDescriptor<T, ACC, V> stateDesc = new AggregatingStateDescriptor<>("window-contents",
+					aggregateFunction, accumulatorType.createSerializer(getExecutionEnvironment().getConfig()));
+
+			operator = createMiniBatchWindowOperator(stateDesc, new InternalSingleValueWindowFunction<>(windowFunction));
+
 		} else {
 			AggregatingStateDescriptor<T, ACC, V> stateDesc = new AggregatingStateDescriptor<>("window-contents",
 					aggregateFunction, accumulatorType.createSerializer(getExecutionEnvironment().getConfig()));
@@ -982,6 +1026,18 @@ public class WindowedStream<T, K, W extends Window> {
 					allowedLateness,
 					lateDataOutputTag);
 
+		} else if (isPaneSharingApplicable()) {
+			AggregatingStateDescriptor<T, ACC, V> stateDesc = new AggregatingStateDescriptor<>("window-panes",
+					aggregateFunction, accumulatorType.createSerializer(getExecutionEnvironment().getConfig()));
+
+			operator = createPanedSlidingWindowOperator(stateDesc, new InternalSingleValueProcessWindowFunction<>(windowFunction));
+
+		} else if (isMiniBatchApplicable()) {
+			AggregatingStateDescriptor<T, ACC, V> stateDesc = new AggregatingStateDescriptor<>("window-contents",
+					aggregateFunction, accumulatorType.createSerializer(getExecutionEnvironment().getConfig()));
+
+			operator = createMiniBatchWindowOperator(stateDesc, new InternalSingleValueProcessWindowFunction<>(windowFunction));
+
 		} else {
 			AggregatingStateDescriptor<T, ACC, V> stateDesc = new AggregatingStateDescriptor<>("window-contents",
 					aggregateFunction, accumulatorType.createSerializer(getExecutionEnvironment().getConfig()));
@@ -1303,6 +1359,64 @@ public class WindowedStream<T, K, W extends Window> {
 		return input.transform(opName, resultType, operator);
 	}
 
+	/**
+	 * Returns whether the windows of this stream are evaluated by a
+	 * {@link PanedSlidingWindowOperator}, which is the case if pane sharing is enabled in the
+	 * {@link org.apache.flink.api.common.ExecutionConfig} and the windows are sliding time windows
+	 * with their default trigger and without an evictor.
+	 */
+	private boolean isPaneSharingApplicable() {
+		return evictor == null
+			&& getExecutionEnvironment().getConfig().isWindowPaneSharingEnabled()
+			&& PanedSlidingWindowOperator.isApplicable(windowAssigner, trigger);
+	}
+
+	/**
+	 * Returns whether the windows of this stream are evaluated by a {@link MiniBatchWindowOperator},
+	 * which is the case if a mini-batch size is set in the
+	 * {@link org.apache.flink.api.common.ExecutionConfig} and the windows are non-merging windows
+	 * with their default trigger and without an evictor.
+	 */
+	private boolean isMiniBatchApplicable() {
+		return evictor == null
+			&& getExecutionEnvironment().getConfig().getWindowMiniBatchSize() > 0
+			&& MiniBatchWindowOperator.isApplicable(windowAssigner, trigger);
+	}
+
+	private <ACC, R> OneInputStreamOperator<T, R> createMiniBatchWindowOperator(
+			StateDescriptor<? extends AppendingState<T, ACC>, ?> stateDesc,
+			InternalWindowFunction<ACC, R, K, W> windowFunction) {
+		return new MiniBatchWindowOperator<>(
+			windowAssigner,
+			windowAssigner.getWindowSerializer(getExecutionEnvironment().getConfig()),
+			input.getKeySelector(),
+			input.getKeyType().createSerializer(getExecutionEnvironment().getConfig()),
+			stateDesc,
+			windowFunction,
+			trigger,
+			allowedLateness,
+			lateDataOutputTag,
+			getExecutionEnvironment().getConfig().getWindowMiniBatchSize(),
+			getExecutionEnvironment().getConfig().getWindowMiniBatchLatency());
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private <ACC, R> OneInputStreamOperator<T, R> createPanedSlidingWindowOperator(
+			StateDescriptor<? extends AppendingState<T, ACC>, ?> stateDesc,
+			InternalWindowFunction<ACC, R, K, W> windowFunction) {
+		// the assigner is known to produce TimeWindows, see PanedSlidingWindowOperator#isApplicable()
+		return new PanedSlidingWindowOperator<K, T, ACC, R>(
+			(WindowAssigner) windowAssigner,
+			(TypeSerializer) windowAssigner.getWindowSerializer(getExecutionEnvironment().getConfig()),
+			input.getKeySelector(),
+			input.getKeyType().createSerializer(getExecutionEnvironment().getConfig()),
+			stateDesc,
+			(InternalWindowFunction) windowFunction,
+			(Trigger) trigger,
+			allowedLateness,
+			lateDataOutputTag);
+	}
+
 	private static String generateFunctionName(Function function) {
 		Class<? extends Function> functionClass = function.getClass();
 		if (functionClass.isAnonymousClass()) {
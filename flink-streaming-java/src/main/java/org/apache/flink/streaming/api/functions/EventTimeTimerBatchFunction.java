@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.functions;
+
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.streaming.api.TimerService;
+import org.apache.flink.util.Collector;
+
+/**
+ * Interface for a {@link KeyedProcessFunction} that handles all event-time timers which fire at the same timestamp in
+ * one call, instead of one call of {@link KeyedProcessFunction#onTimer(long, KeyedProcessFunction.OnTimerContext,
+ * Collector)} per timer. This pays off when many keys have timers at the same timestamp, for example timers that are
+ * registered with {@link TimerService#registerCoalescedEventTimeTimer(long, long)}.
+ *
+ * <p>Processing-time timers are still handled by {@link KeyedProcessFunction#onTimer(long,
+ * KeyedProcessFunction.OnTimerContext, Collector)}.
+ *
+ * @param <K> Type of the key.
+ * @param <O> Type of the output elements.
+ */
+@PublicEvolving
+public interface EventTimeTimerBatchFunction<K, O> {
+
+	/**
+	 * Called when the event-time timers of the given timestamp fire.
+	 *
+	 * <p>The keys are iterated in no particular order. While iterating, the current key of the keyed state and of
+	 * the timer service is the key that the iterator returned last, so state can be accessed and timers can be
+	 * registered for every key just like in {@link KeyedProcessFunction#onTimer(long,
+	 * KeyedProcessFunction.OnTimerContext, Collector)}.
+	 *
+	 * @param timestamp The timestamp of the firing timers.
+	 * @param keys The keys whose timers fire. They are only valid during the invocation of this method.
+	 * @param timerService The {@link TimerService} for registering timers and querying the time.
+	 * @param out The collector for returning result values.
+	 *
+	 * @throws Exception This method may throw exceptions. Throwing an exception will cause the operation
+	 *                   to fail and may trigger recovery.
+	 */
+	void onEventTimeTimers(long timestamp, Iterable<K> keys, TimerService timerService, Collector<O> out) throws Exception;
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+
+import java.util.List;
+
+/**
+ * A {@link Triggerable} that is called once with all event-time timers which fire at the same timestamp, instead of
+ * once per timer.
+ *
+ * @param <K> Type of the keys to which timers are scoped.
+ * @param <N> Type of the namespace to which timers are scoped.
+ */
+@Internal
+public interface BatchTriggerable<K, N> extends Triggerable<K, N> {
+
+	/**
+	 * Invoked when event-time timers fire, with all timers of the given timestamp. In contrast to
+	 * {@link #onEventTime(InternalTimer)}, the current key is not set to the keys of the timers.
+	 */
+	void onEventTimeBatch(long timestamp, List<InternalTimer<K, N>> timers) throws Exception;
+}
@@ -23,7 +23,6 @@ import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
-import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyGroupedInternalPriorityQueue;
 import org.apache.flink.runtime.state.KeyGroupsList;
@@ -31,6 +30,7 @@ import org.apache.flink.runtime.state.KeyedStateBackend;
 import org.apache.flink.runtime.state.KeyedStateCheckpointOutputStream;
 import org.apache.flink.runtime.state.PriorityQueueSetFactory;
 import org.apache.flink.runtime.state.StateSnapshotContext;
+import org.apache.flink.runtime.state.heap.HeapPriorityQueueSetFactory;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.tasks.ProcessingTimeService;
 import org.apache.flink.util.Preconditions;
@@ -38,8 +38,11 @@ import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -76,17 +79,43 @@ public class InternalTimeServiceManager<K> {
 
 	private final boolean useLegacySynchronousSnapshots;
 
+	private final int numberOfKeyGroups;
+
+	/**
+	 * The resolution of the timing wheels for processing-time timers, or null if the processing-time timers are kept
+	 * in the queues of the state backend.
+	 */
+	@Nullable
+	private final Duration timingWheelResolution;
+
+	/** The factory for the heap queues of event-time timers, if the timing wheel is used. */
+	private final PriorityQueueSetFactory eventTimeQueueFactory;
+
+	/** Whether timers are moved from the queues of the state backend to the heap, if the timing wheel is used. */
+	private final boolean moveTimersFromStateBackend;
+
 	InternalTimeServiceManager(
 		KeyGroupRange localKeyGroupRange,
 		KeyContext keyContext,
 		PriorityQueueSetFactory priorityQueueSetFactory,
-		ProcessingTimeService processingTimeService, boolean useLegacySynchronousSnapshots) {
+		ProcessingTimeService processingTimeService,
+		boolean useLegacySynchronousSnapshots,
+		int numberOfKeyGroups,
+		@Nullable Duration timingWheelResolution) {
 
 		this.localKeyGroupRange = Preconditions.checkNotNull(localKeyGroupRange);
 		this.priorityQueueSetFactory = Preconditions.checkNotNull(priorityQueueSetFactory);
 		this.keyContext = Preconditions.checkNotNull(keyContext);
 		this.processingTimeService = Preconditions.checkNotNull(processingTimeService);
-		this.useLegacySynchronousSnapshots = useLegacySynchronousSnapshots;
+		this.numberOfKeyGroups = numberOfKeyGroups;
+		this.timingWheelResolution = timingWheelResolution;
+
+		// the timing wheel lives on the heap, so all timers are written synchronously to the raw keyed state
+		this.moveTimersFromStateBackend = timingWheelResolution != null && !useLegacySynchronousSnapshots;
+		this.useLegacySynchronousSnapshots = useLegacySynchronousSnapshots || timingWheelResolution != null;
+		this.eventTimeQueueFactory = moveTimersFromStateBackend ?
+			new HeapPriorityQueueSetFactory(localKeyGroupRange, numberOfKeyGroups, 128) :
+			priorityQueueSetFactory;
 
 		this.timerServices = new HashMap<>();
 	}
@@ -129,8 +158,8 @@ public class InternalTimeServiceManager<K> {
 				localKeyGroupRange,
 				keyContext,
 				processingTimeService,
-				createTimerPriorityQueue(PROCESSING_TIMER_PREFIX + name, timerSerializer),
-				createTimerPriorityQueue(EVENT_TIMER_PREFIX + name, timerSerializer));
+				createTimerPriorityQueue(PROCESSING_TIMER_PREFIX + name, timerSerializer, true),
+				createTimerPriorityQueue(EVENT_TIMER_PREFIX + name, timerSerializer, false));
 
 			timerServices.put(name, timerService);
 		}
@@ -143,10 +172,29 @@ public class InternalTimeServiceManager<K> {
 
 	private <N> KeyGroupedInternalPriorityQueue<TimerHeapInternalTimer<K, N>> createTimerPriorityQueue(
 		String name,
-		TimerSerializer<K, N> timerSerializer) {
-		return priorityQueueSetFactory.create(
-			name,
-			timerSerializer);
+		TimerSerializer<K, N> timerSerializer,
+		boolean processingTime) {
+
+		if (timingWheelResolution == null) {
+			return priorityQueueSetFactory.create(
+				name,
+				timerSerializer);
+		}
+
+		final KeyGroupedInternalPriorityQueue<TimerHeapInternalTimer<K, N>> queue = processingTime ?
+			new TimingWheelTimerQueue<>(localKeyGroupRange, numberOfKeyGroups, timingWheelResolution.toMillis()) :
+			eventTimeQueueFactory.create(name, timerSerializer);
+
+		if (moveTimersFromStateBackend) {
+			// timers of checkpoints without the timing wheel were restored to the queues of the state backend
+			final KeyGroupedInternalPriorityQueue<TimerHeapInternalTimer<K, N>> backendQueue =
+				priorityQueueSetFactory.create(name, timerSerializer);
+			TimerHeapInternalTimer<K, N> timer;
+			while ((timer = backendQueue.poll()) != null) {
+				queue.add(timer);
+			}
+		}
+		return queue;
 	}
 
 	public void advanceWatermark(Watermark watermark) throws Exception {
@@ -162,8 +210,7 @@ public class InternalTimeServiceManager<K> {
 			StateSnapshotContext context,
 			String operatorName) throws Exception {
 		//TODO all of this can be removed once heap-based timers are integrated with RocksDB incremental snapshots
-		if (keyedStateBackend instanceof AbstractKeyedStateBackend &&
-			((AbstractKeyedStateBackend<?>) keyedStateBackend).requiresLegacySynchronousTimerSnapshots()) {
+		if (useLegacySynchronousSnapshots) {
 
 			KeyedStateCheckpointOutputStream out;
 			try {
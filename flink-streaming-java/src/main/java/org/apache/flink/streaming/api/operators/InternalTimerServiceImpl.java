@@ -268,6 +268,11 @@ public class InternalTimerServiceImpl<K, N> implements InternalTimerService<N> {
 	public void advanceWatermark(long time) throws Exception {
 		currentWatermark = time;
 
+		if (triggerTarget instanceof BatchTriggerable) {
+			advanceWatermarkInBatches((BatchTriggerable<K, N>) triggerTarget, time);
+			return;
+		}
+
 		InternalTimer<K, N> timer;
 
 		while ((timer = eventTimeTimersQueue.peek()) != null && timer.getTimestamp() <= time) {
@@ -277,6 +282,20 @@ public class InternalTimerServiceImpl<K, N> implements InternalTimerService<N> {
 		}
 	}
 
+	private void advanceWatermarkInBatches(BatchTriggerable<K, N> batchTriggerTarget, long time) throws Exception {
+		InternalTimer<K, N> timer;
+
+		while ((timer = eventTimeTimersQueue.peek()) != null && timer.getTimestamp() <= time) {
+			final long timestamp = timer.getTimestamp();
+			final List<InternalTimer<K, N>> timers = new ArrayList<>();
+			do {
+				timers.add(eventTimeTimersQueue.poll());
+			} while ((timer = eventTimeTimersQueue.peek()) != null && timer.getTimestamp() == timestamp);
+
+			batchTriggerTarget.onEventTimeBatch(timestamp, timers);
+		}
+	}
+
 	/**
 	 * Snapshots the timers (both processing and event time ones) for a given {@code keyGroupIdx}.
 	 *
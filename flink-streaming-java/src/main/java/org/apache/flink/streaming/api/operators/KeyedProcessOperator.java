@@ -23,10 +23,15 @@ import org.apache.flink.runtime.state.VoidNamespaceSerializer;
 import org.apache.flink.streaming.api.SimpleTimerService;
 import org.apache.flink.streaming.api.TimeDomain;
 import org.apache.flink.streaming.api.TimerService;
+import org.apache.flink.streaming.api.functions.EventTimeTimerBatchFunction;
 import org.apache.flink.streaming.api.functions.KeyedProcessFunction;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 import org.apache.flink.util.OutputTag;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
 import static org.apache.flink.util.Preconditions.checkNotNull;
 import static org.apache.flink.util.Preconditions.checkState;
 
@@ -57,8 +62,11 @@ public class KeyedProcessOperator<K, IN, OUT>
 		super.open();
 		collector = new TimestampedCollector<>(output);
 
+		Triggerable<K, VoidNamespace> triggerable =
+				userFunction instanceof EventTimeTimerBatchFunction ? new BatchTriggerableImpl() : this;
+
 		InternalTimerService<VoidNamespace> internalTimerService =
-				getInternalTimerService("user-timers", VoidNamespaceSerializer.INSTANCE, this);
+				getInternalTimerService("user-timers", VoidNamespaceSerializer.INSTANCE, triggerable);
 
 		TimerService timerService = new SimpleTimerService(internalTimerService);
 
@@ -96,6 +104,60 @@ public class KeyedProcessOperator<K, IN, OUT>
 		onTimerContext.timer = null;
 	}
 
+	/**
+	 * Passes the event-time timers of one timestamp at once to an {@link EventTimeTimerBatchFunction}.
+	 */
+	private class BatchTriggerableImpl implements BatchTriggerable<K, VoidNamespace> {
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void onEventTimeBatch(long timestamp, List<InternalTimer<K, VoidNamespace>> timers) throws Exception {
+			collector.setAbsoluteTimestamp(timestamp);
+			((EventTimeTimerBatchFunction<K, OUT>) userFunction).onEventTimeTimers(
+				timestamp, () -> new KeyIterator(timers), onTimerContext.timerService(), collector);
+		}
+
+		@Override
+		public void onEventTime(InternalTimer<K, VoidNamespace> timer) throws Exception {
+			KeyedProcessOperator.this.onEventTime(timer);
+		}
+
+		@Override
+		public void onProcessingTime(InternalTimer<K, VoidNamespace> timer) throws Exception {
+			KeyedProcessOperator.this.onProcessingTime(timer);
+		}
+	}
+
+	/**
+	 * Iterates the keys of timers and sets each key as the current key.
+	 */
+	private class KeyIterator implements Iterator<K> {
+
+		private final List<InternalTimer<K, VoidNamespace>> timers;
+
+		private int index;
+
+		KeyIterator(List<InternalTimer<K, VoidNamespace>> timers) {
+			this.timers = timers;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return index < timers.size();
+		}
+
+		@Override
+		public K next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			K key = timers.get(index++).getKey();
+			setCurrentKey(key);
+			return key;
+		}
+	}
+
 	private class ContextImpl extends KeyedProcessFunction<K, IN, OUT>.Context {
 
 		private final TimerService timerService;
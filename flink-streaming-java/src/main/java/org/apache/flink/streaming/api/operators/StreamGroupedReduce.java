@@ -18,27 +18,46 @@
 package org.apache.flink.streaming.api.operators;
 
 import org.apache.flink.annotation.Internal;
+import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.functions.ReduceFunction;
 import org.apache.flink.api.common.state.ValueState;
 import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.internal.InternalAsyncValueState;
+import org.apache.flink.streaming.api.operators.async.KeyedAsyncStateReader;
+import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 
+import javax.annotation.Nullable;
+
 /**
  * A {@link StreamOperator} for executing a {@link ReduceFunction} on a
  * {@link org.apache.flink.streaming.api.datastream.KeyedStream}.
+ *
+ * <p>If asynchronous state access is enabled and the state backend supports it, the state is read
+ * with a {@link KeyedAsyncStateReader} and the records are reduced once their state is read. The
+ * pending reads are drained before a watermark is forwarded, before the checkpoint barrier is
+ * emitted and at the end of the input, so that no result is emitted after them.
  */
 
 @Internal
 public class StreamGroupedReduce<IN> extends AbstractUdfStreamOperator<IN, ReduceFunction<IN>>
-		implements OneInputStreamOperator<IN, IN> {
+		implements OneInputStreamOperator<IN, IN>, BoundedOneInput {
 
 	private static final long serialVersionUID = 1L;
 
 	private static final String STATE_NAME = "_op_state";
 
+	/** The maximum number of asynchronous state reads in flight. */
+	@VisibleForTesting
+	static final int ASYNC_STATE_READ_CAPACITY = 100;
+
 	private transient ValueState<IN> values;
 
+	/** Reads the state asynchronously, null if the state is read synchronously. */
+	@Nullable
+	private transient KeyedAsyncStateReader asyncStateReader;
+
 	private TypeSerializer<IN> serializer;
 
 	public StreamGroupedReduce(ReduceFunction<IN> reducer, TypeSerializer<IN> serializer) {
@@ -51,12 +70,31 @@ public class StreamGroupedReduce<IN> extends AbstractUdfStreamOperator<IN, Reduc
 		super.open();
 		ValueStateDescriptor<IN> stateId = new ValueStateDescriptor<>(STATE_NAME, serializer);
 		values = getPartitionedState(stateId);
+
+		if (getExecutionConfig().isAsyncStateAccessEnabled() && values instanceof InternalAsyncValueState) {
+			asyncStateReader = new KeyedAsyncStateReader(
+				this,
+				getContainingTask().getMailboxExecutorFactory().createExecutor(getOperatorConfig().getChainIndex()),
+				ASYNC_STATE_READ_CAPACITY);
+		}
 	}
 
 	@Override
 	public void processElement(StreamRecord<IN> element) throws Exception {
+		if (asyncStateReader == null) {
+			reduce(element, values.value());
+			return;
+		}
+
+		// the record may be reused by the input once this method returns
+		IN value = getExecutionConfig().isObjectReuseEnabled() ? serializer.copy(element.getValue()) : element.getValue();
+		StreamRecord<IN> record = element.hasTimestamp() ?
+			new StreamRecord<>(value, element.getTimestamp()) : new StreamRecord<>(value);
+		asyncStateReader.read(values, currentValue -> reduce(record, currentValue));
+	}
+
+	private void reduce(StreamRecord<IN> element, @Nullable IN currentValue) throws Exception {
 		IN value = element.getValue();
-		IN currentValue = values.value();
 
 		if (currentValue != null) {
 			IN reduced = userFunction.reduce(currentValue, value);
@@ -67,4 +105,33 @@ public class StreamGroupedReduce<IN> extends AbstractUdfStreamOperator<IN, Reduc
 			output.collect(element.replace(value));
 		}
 	}
+
+	@Override
+	public void processWatermark(Watermark mark) throws Exception {
+		drainAsyncStateReads();
+		super.processWatermark(mark);
+	}
+
+	@Override
+	public void prepareSnapshotPreBarrier(long checkpointId) throws Exception {
+		drainAsyncStateReads();
+		super.prepareSnapshotPreBarrier(checkpointId);
+	}
+
+	@Override
+	public void endInput() throws Exception {
+		drainAsyncStateReads();
+	}
+
+	@Override
+	public void close() throws Exception {
+		drainAsyncStateReads();
+		super.close();
+	}
+
+	private void drainAsyncStateReads() throws InterruptedException {
+		if (asyncStateReader != null) {
+			asyncStateReader.drain();
+		}
+	}
 }
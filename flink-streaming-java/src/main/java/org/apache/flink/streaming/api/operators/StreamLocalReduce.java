@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * A {@link StreamOperator} that pre-combines the elements of each key with a
+ * {@link ReduceFunction} before they are shuffled to a {@link StreamGroupedReduce}.
+ *
+ * <p>The operator runs in front of the key partitioning, so it keeps no keyed state. Instead,
+ * it buffers one partial result per key in memory and emits the partial results when the
+ * bundle holds the configured number of elements, after the configured latency, before
+ * watermarks and checkpoint barriers are forwarded, and when the operator is closed. A partial
+ * result carries the timestamp of the last element that was added to it.
+ *
+ * <p>The metric {@code reductionRatio} reports the number of consumed elements per emitted
+ * partial result.
+ *
+ * @param <KEY> The type of the key.
+ * @param <IN> The type of the elements.
+ */
+@Internal
+public class StreamLocalReduce<KEY, IN> extends AbstractUdfStreamOperator<IN, ReduceFunction<IN>>
+		implements OneInputStreamOperator<IN, IN> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final KeySelector<IN, KEY> keySelector;
+
+	private final int maxBundleSize;
+
+	private final long maxBundleLatency;
+
+	/** The partial results of the current bundle. */
+	private transient Map<KEY, StreamRecord<IN>> bundle;
+
+	private transient int numBundledElements;
+
+	private transient boolean isLatencyTimerRegistered;
+
+	private transient long numConsumedElements;
+
+	private transient long numEmittedElements;
+
+	public StreamLocalReduce(ReduceFunction<IN> reducer, KeySelector<IN, KEY> keySelector, int maxBundleSize, long maxBundleLatency) {
+		super(reducer);
+		checkArgument(maxBundleSize > 0, "The maximum bundle size must be positive.");
+		checkArgument(maxBundleLatency >= 0, "The maximum bundle latency must not be negative.");
+
+		this.keySelector = checkNotNull(keySelector);
+		this.maxBundleSize = maxBundleSize;
+		this.maxBundleLatency = maxBundleLatency;
+
+		chainingStrategy = ChainingStrategy.ALWAYS;
+	}
+
+	@Override
+	public void open() throws Exception {
+		super.open();
+
+		bundle = new HashMap<>();
+		numBundledElements = 0;
+		isLatencyTimerRegistered = false;
+
+		getMetricGroup().gauge("reductionRatio", (Gauge<Double>) this::getReductionRatio);
+	}
+
+	@Override
+	public void processElement(StreamRecord<IN> element) throws Exception {
+		final IN value = element.getValue();
+		final KEY key = keySelector.getKey(value);
+
+		final StreamRecord<IN> partialResult = bundle.get(key);
+		if (partialResult == null) {
+			bundle.put(key, element.copy(value));
+		} else {
+			IN reduced = userFunction.reduce(partialResult.getValue(), value);
+			if (element.hasTimestamp()) {
+				partialResult.replace(reduced, element.getTimestamp());
+			} else {
+				partialResult.replace(reduced);
+			}
+		}
+
+		numConsumedElements++;
+		if (++numBundledElements >= maxBundleSize) {
+			flushBundle();
+		} else if (maxBundleLatency > 0 && !isLatencyTimerRegistered) {
+			isLatencyTimerRegistered = true;
+			getProcessingTimeService().registerTimer(
+				getProcessingTimeService().getCurrentProcessingTime() + maxBundleLatency,
+				timestamp -> {
+					isLatencyTimerRegistered = false;
+					flushBundle();
+				});
+		}
+	}
+
+	@Override
+	public void processWatermark(Watermark mark) throws Exception {
+		// the partial results must not become late behind the watermark
+		flushBundle();
+		super.processWatermark(mark);
+	}
+
+	@Override
+	public void prepareSnapshotPreBarrier(long checkpointId) throws Exception {
+		super.prepareSnapshotPreBarrier(checkpointId);
+		flushBundle();
+	}
+
+	@Override
+	public void close() throws Exception {
+		flushBundle();
+		super.close();
+	}
+
+	private void flushBundle() {
+		if (bundle == null || bundle.isEmpty()) {
+			return;
+		}
+
+		for (StreamRecord<IN> partialResult : bundle.values()) {
+			output.collect(partialResult);
+		}
+
+		numEmittedElements += bundle.size();
+		numBundledElements = 0;
+		bundle.clear();
+	}
+
+	/**
+	 * Returns the number of consumed elements per emitted partial result.
+	 */
+	@VisibleForTesting
+	double getReductionRatio() {
+		return numEmittedElements == 0 ? 0.0 : (double) numConsumedElements / numEmittedElements;
+	}
+}
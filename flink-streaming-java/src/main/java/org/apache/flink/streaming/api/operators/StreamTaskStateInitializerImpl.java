@@ -22,6 +22,8 @@ import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.TaskInfo;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.configuration.CheckpointingOptions;
+import org.apache.flink.configuration.Configuration;
 import org.apache.flink.core.fs.CloseableRegistry;
 import org.apache.flink.core.fs.FSDataInputStream;
 import org.apache.flink.metrics.MetricGroup;
@@ -56,6 +58,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -222,7 +225,9 @@ public class StreamTaskStateInitializerImpl implements StreamTaskStateInitialize
 			keyContext,
 			keyedStatedBackend,
 			processingTimeService,
-			keyedStatedBackend.requiresLegacySynchronousTimerSnapshots());
+			keyedStatedBackend.requiresLegacySynchronousTimerSnapshots(),
+			keyedStatedBackend.getNumberOfKeyGroups(),
+			timingWheelResolution());
 
 		// and then initialize the timer services
 		for (KeyGroupStatePartitionStreamProvider streamProvider : rawKeyedStates) {
@@ -239,6 +244,14 @@ public class StreamTaskStateInitializerImpl implements StreamTaskStateInitialize
 		return timeServiceManager;
 	}
 
+	@Nullable
+	private Duration timingWheelResolution() {
+		final Configuration configuration = environment.getTaskManagerInfo().getConfiguration();
+		return configuration.getBoolean(CheckpointingOptions.TIMER_SERVICE_TIMING_WHEEL_ENABLED) ?
+			configuration.get(CheckpointingOptions.TIMER_SERVICE_TIMING_WHEEL_RESOLUTION) :
+			null;
+	}
+
 	protected OperatorStateBackend operatorStateBackend(
 		String operatorIdentifierText,
 		PrioritizedOperatorSubtaskState prioritizedOperatorSubtaskStates,
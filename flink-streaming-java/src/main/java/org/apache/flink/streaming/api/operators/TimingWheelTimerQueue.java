@@ -0,0 +1,400 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyGroupedInternalPriorityQueue;
+import org.apache.flink.runtime.state.heap.HeapPriorityQueueSet;
+import org.apache.flink.util.CloseableIterator;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * A {@link KeyGroupedInternalPriorityQueue} for timers that is backed by a hierarchical timing wheel. Registering and
+ * deleting a timer takes constant time, in contrast to the logarithmic time of a {@link HeapPriorityQueueSet}.
+ *
+ * <p>Timestamps are divided into ticks of the configured resolution. The wheel has {@link #NUM_LEVELS} levels of
+ * {@link #NUM_SLOTS} slots each, and a slot of a level spans all slots of the level below. A timer is kept in the
+ * lowest level in which its tick differs from the current tick of the wheel, in the slot for its tick. Only when the
+ * timers of the current tick are due, they are moved to a binary heap and sorted by their exact timestamp, so the
+ * resolution does not change when timers fire, only how many timers are sorted at once. When no timers of the current
+ * tick are left, the wheel advances to its first occupied slot and moves the timers of that slot down one or more
+ * levels. Timers which are too far in the future for the wheel are kept in an overflow list.
+ *
+ * <p>Like {@link HeapPriorityQueueSet}, the queue keeps one hash map per key-group to deduplicate timers, to find
+ * them on deletion and to return the timers of a key-group for snapshots.
+ *
+ * @param <K> type of the timer keys.
+ * @param <N> type of the timer namespaces.
+ */
+final class TimingWheelTimerQueue<K, N> implements KeyGroupedInternalPriorityQueue<TimerHeapInternalTimer<K, N>> {
+
+	/** The number of bits of a tick that select the slot in one level. */
+	private static final int SLOT_BITS = 6;
+
+	/** The number of slots per level, which is the number of bits of a level's occupancy bitmap. */
+	private static final int NUM_SLOTS = 1 << SLOT_BITS;
+
+	/** The number of levels, which lets the wheel span 2^30 ticks. */
+	private static final int NUM_LEVELS = 5;
+
+	/** Slot of nodes in the heap of due timers. */
+	private static final int DUE = -1;
+
+	/** Slot of nodes which were deleted while they were in the heap of due timers. */
+	private static final int REMOVED = -2;
+
+	/** Slot of the overflow list for timers beyond the range of the wheel. */
+	private static final int OVERFLOW = NUM_LEVELS * NUM_SLOTS;
+
+	/** Minimum number of deleted nodes in the heap of due timers before they are removed eagerly. */
+	private static final int MIN_REMOVED_FOR_COMPACTION = 1024;
+
+	/** The key-group range of the timers in this queue. */
+	private final KeyGroupRange keyGroupRange;
+
+	/** The total number of key-groups of the job. */
+	private final int totalNumberOfKeyGroups;
+
+	/** The time which one tick of the wheel spans, in milliseconds. */
+	private final long resolution;
+
+	/** One map per key-group from the timers to their nodes. */
+	private final HashMap<TimerHeapInternalTimer<K, N>, Node<K, N>>[] nodesByKeyGroup;
+
+	/** The heads of the doubly linked lists of all slots, followed by the head of the overflow list. */
+	private final Node<K, N>[] slots;
+
+	/** One bitmap per level of the slots which contain timers. */
+	private final long[] occupiedSlots;
+
+	/** The timers of the current tick and before, ordered by their timestamps. */
+	private final PriorityQueue<Node<K, N>> dueTimers;
+
+	/** The current tick of the wheel. All timers in the slots are in later ticks. */
+	private long currentTick;
+
+	/** The number of timers in this queue. */
+	private int size;
+
+	/** The number of timers in the slots and the overflow list. */
+	private int numTimersInWheel;
+
+	/** The number of deleted nodes which are still in the heap of due timers. */
+	private int numRemovedDueTimers;
+
+	@SuppressWarnings("unchecked")
+	TimingWheelTimerQueue(
+		@Nonnull KeyGroupRange keyGroupRange,
+		@Nonnegative int totalNumberOfKeyGroups,
+		long resolution) {
+
+		checkArgument(resolution > 0, "The resolution of the timing wheel must be positive.");
+		this.keyGroupRange = keyGroupRange;
+		this.totalNumberOfKeyGroups = totalNumberOfKeyGroups;
+		this.resolution = resolution;
+
+		this.nodesByKeyGroup = new HashMap[keyGroupRange.getNumberOfKeyGroups()];
+		for (int i = 0; i < nodesByKeyGroup.length; ++i) {
+			nodesByKeyGroup[i] = new HashMap<>();
+		}
+		this.slots = new Node[OVERFLOW + 1];
+		this.occupiedSlots = new long[NUM_LEVELS];
+		this.dueTimers = new PriorityQueue<>((left, right) -> left.timer.comparePriorityTo(right.timer));
+	}
+
+	@Nullable
+	@Override
+	public TimerHeapInternalTimer<K, N> poll() {
+		final Node<K, N> head = peekNode();
+		if (head == null) {
+			return null;
+		}
+		dueTimers.poll();
+		getNodesForTimer(head.timer).remove(head.timer);
+		--size;
+		return head.timer;
+	}
+
+	@Nullable
+	@Override
+	public TimerHeapInternalTimer<K, N> peek() {
+		final Node<K, N> head = peekNode();
+		return head != null ? head.timer : null;
+	}
+
+	/**
+	 * Adds the timer to the queue, if no equal timer is already contained.
+	 *
+	 * @return <code>true</code> if the timer is the new head of the queue or if it is unclear if the head changed.
+	 */
+	@Override
+	public boolean add(@Nonnull TimerHeapInternalTimer<K, N> toAdd) {
+		final HashMap<TimerHeapInternalTimer<K, N>, Node<K, N>> nodes = getNodesForTimer(toAdd);
+		if (nodes.containsKey(toAdd)) {
+			return false;
+		}
+
+		final long tick = Math.floorDiv(toAdd.getTimestamp(), resolution);
+		if (size == 0) {
+			// the wheel is empty, so it can restart at the tick of the new timer
+			dueTimers.clear();
+			numRemovedDueTimers = 0;
+			currentTick = tick;
+		}
+
+		final Node<K, N> node = new Node<>(toAdd);
+		nodes.put(toAdd, node);
+		++size;
+
+		if (tick > currentTick) {
+			addToWheel(node, tick);
+			return !hasDueTimers();
+		} else {
+			node.slot = DUE;
+			dueTimers.add(node);
+			return peekDueNode() == node;
+		}
+	}
+
+	/**
+	 * Removes the timer from the queue, if an equal timer is contained.
+	 *
+	 * @return <code>true</code> if the timer was the head of the queue or if it is unclear if the head changed.
+	 */
+	@Override
+	public boolean remove(@Nonnull TimerHeapInternalTimer<K, N> toRemove) {
+		final Node<K, N> node = getNodesForTimer(toRemove).remove(toRemove);
+		if (node == null) {
+			return false;
+		}
+		--size;
+
+		if (node.slot != DUE) {
+			unlink(node);
+			return !hasDueTimers();
+		}
+
+		if (peekDueNode() == node) {
+			dueTimers.poll();
+			return true;
+		}
+
+		// deleting from the middle of the heap takes linear time, so the node is skipped when it reaches the head
+		node.slot = REMOVED;
+		++numRemovedDueTimers;
+		if (numRemovedDueTimers > MIN_REMOVED_FOR_COMPACTION && numRemovedDueTimers > dueTimers.size() / 2) {
+			dueTimers.removeIf(dueNode -> dueNode.slot == REMOVED);
+			numRemovedDueTimers = 0;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void addAll(@Nullable Collection<? extends TimerHeapInternalTimer<K, N>> toAdd) {
+		if (toAdd == null) {
+			return;
+		}
+
+		for (TimerHeapInternalTimer<K, N> timer : toAdd) {
+			add(timer);
+		}
+	}
+
+	@Nonnull
+	@Override
+	public CloseableIterator<TimerHeapInternalTimer<K, N>> iterator() {
+		return CloseableIterator.adapterForIterator(
+			Arrays.stream(nodesByKeyGroup).flatMap(nodes -> nodes.keySet().stream()).iterator());
+	}
+
+	@Nonnull
+	@Override
+	public Set<TimerHeapInternalTimer<K, N>> getSubsetForKeyGroup(int keyGroupId) {
+		return getNodesForKeyGroup(keyGroupId).keySet();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Wheel
+	// ------------------------------------------------------------------------
+
+	private boolean hasDueTimers() {
+		return dueTimers.size() > numRemovedDueTimers;
+	}
+
+	@Nullable
+	private Node<K, N> peekDueNode() {
+		Node<K, N> head;
+		while ((head = dueTimers.peek()) != null && head.slot == REMOVED) {
+			dueTimers.poll();
+			--numRemovedDueTimers;
+		}
+		return head;
+	}
+
+	@Nullable
+	private Node<K, N> peekNode() {
+		Node<K, N> head = peekDueNode();
+		while (head == null && numTimersInWheel > 0) {
+			advance();
+			head = peekDueNode();
+		}
+		return head;
+	}
+
+	/**
+	 * Advances the current tick to the first occupied slot and redistributes the timers of that slot. Timers of the
+	 * new current tick go to the heap of due timers, the others to lower levels.
+	 */
+	private void advance() {
+		for (int level = 0; level < NUM_LEVELS; ++level) {
+			final long occupied = occupiedSlots[level];
+			if (occupied != 0L) {
+				final int index = Long.numberOfTrailingZeros(occupied);
+				final int shift = level * SLOT_BITS;
+				currentTick = (currentTick & ~((1L << (shift + SLOT_BITS)) - 1L)) | ((long) index << shift);
+				redistribute(level * NUM_SLOTS + index);
+				return;
+			}
+		}
+
+		// only the overflow list is left
+		long minTick = Long.MAX_VALUE;
+		for (Node<K, N> node = slots[OVERFLOW]; node != null; node = node.next) {
+			minTick = Math.min(minTick, Math.floorDiv(node.timer.getTimestamp(), resolution));
+		}
+		currentTick = minTick;
+		redistribute(OVERFLOW);
+	}
+
+	private void redistribute(int slot) {
+		Node<K, N> node = slots[slot];
+		clearSlot(slot);
+		while (node != null) {
+			final Node<K, N> next = node.next;
+			node.prev = null;
+			node.next = null;
+			--numTimersInWheel;
+
+			final long tick = Math.floorDiv(node.timer.getTimestamp(), resolution);
+			if (tick > currentTick) {
+				addToWheel(node, tick);
+			} else {
+				node.slot = DUE;
+				dueTimers.add(node);
+			}
+			node = next;
+		}
+	}
+
+	private void addToWheel(Node<K, N> node, long tick) {
+		final int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(tick ^ currentTick)) / SLOT_BITS;
+		final int slot;
+		if (level < NUM_LEVELS) {
+			final int index = (int) ((tick >>> (level * SLOT_BITS)) & (NUM_SLOTS - 1));
+			slot = level * NUM_SLOTS + index;
+			occupiedSlots[level] |= 1L << index;
+		} else {
+			slot = OVERFLOW;
+		}
+
+		node.slot = slot;
+		node.next = slots[slot];
+		if (node.next != null) {
+			node.next.prev = node;
+		}
+		slots[slot] = node;
+		++numTimersInWheel;
+	}
+
+	private void unlink(Node<K, N> node) {
+		if (node.prev != null) {
+			node.prev.next = node.next;
+		} else {
+			slots[node.slot] = node.next;
+			if (node.next == null) {
+				clearSlot(node.slot);
+			}
+		}
+		if (node.next != null) {
+			node.next.prev = node.prev;
+		}
+		node.prev = null;
+		node.next = null;
+		--numTimersInWheel;
+	}
+
+	private void clearSlot(int slot) {
+		slots[slot] = null;
+		if (slot != OVERFLOW) {
+			occupiedSlots[slot / NUM_SLOTS] &= ~(1L << (slot % NUM_SLOTS));
+		}
+	}
+
+	private HashMap<TimerHeapInternalTimer<K, N>, Node<K, N>> getNodesForKeyGroup(int keyGroupId) {
+		checkArgument(keyGroupRange.contains(keyGroupId), "%s does not contain key group %s", keyGroupRange, keyGroupId);
+		return nodesByKeyGroup[keyGroupId - keyGroupRange.getStartKeyGroup()];
+	}
+
+	private HashMap<TimerHeapInternalTimer<K, N>, Node<K, N>> getNodesForTimer(TimerHeapInternalTimer<K, N> timer) {
+		return getNodesForKeyGroup(KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), totalNumberOfKeyGroups));
+	}
+
+	/**
+	 * A timer in the wheel, linked with the other timers of its slot.
+	 */
+	private static final class Node<K, N> {
+
+		final TimerHeapInternalTimer<K, N> timer;
+
+		@Nullable
+		Node<K, N> prev;
+
+		@Nullable
+		Node<K, N> next;
+
+		/** The slot of the node, or {@link TimingWheelTimerQueue#DUE} or {@link TimingWheelTimerQueue#REMOVED}. */
+		int slot;
+
+		Node(TimerHeapInternalTimer<K, N> timer) {
+			this.timer = timer;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.async;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.runtime.concurrent.FutureUtils;
+import org.apache.flink.runtime.state.internal.InternalAsyncValueState;
+import org.apache.flink.streaming.api.operators.KeyContext;
+import org.apache.flink.streaming.api.operators.MailboxExecutor;
+import org.apache.flink.util.FlinkException;
+import org.apache.flink.util.Preconditions;
+import org.apache.flink.util.function.ThrowingConsumer;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads keyed {@link ValueState} asynchronously for an operator, so that the task thread keeps processing records
+ * while the state backend reads state from disk. The value is handed to a continuation, which runs in the mailbox
+ * of the task with the key of the read set as the current key.
+ *
+ * <p>The reads of one key are issued one after the other, each after the continuation of the previous read ran. A
+ * read therefore observes the updates that the continuations of earlier reads of the same key made. Reads of
+ * different keys complete in any order. Only the state of the default namespace can be read, as the namespace is
+ * not captured.
+ *
+ * <p>At most {@code capacity} reads are in flight. Further reads yield to the mailbox until a read completes, like
+ * the {@link AsyncWaitOperator} does when its queue is full. Operators must call {@link #drain()} in
+ * {@code prepareSnapshotPreBarrier()} and at the end of their input, so that no continuation is pending when the
+ * state is snapshotted. They must also call it before they forward a watermark and before their timers fire, as a
+ * continuation could otherwise emit a record after a later watermark, or see the state before a timer updated it.
+ * The {@link org.apache.flink.streaming.api.operators.StreamGroupedReduce} shows how.
+ *
+ * <p>State which cannot be read asynchronously is read synchronously, the continuation still runs in a mail.
+ *
+ * <p>This class is not thread safe, all methods must be called from the task thread.
+ */
+@Internal
+public final class KeyedAsyncStateReader {
+
+	private final KeyContext keyContext;
+
+	private final MailboxExecutor mailboxExecutor;
+
+	/** Deserializes the values which were read asynchronously in the mailbox. */
+	private final Executor completionExecutor;
+
+	private final int capacity;
+
+	/** The reads which are not completed yet by key, the head of each queue is the read in flight. */
+	private final Map<Object, ArrayDeque<ReadRequest<?>>> pendingReadsByKey;
+
+	private int numPendingReads;
+
+	public KeyedAsyncStateReader(KeyContext keyContext, MailboxExecutor mailboxExecutor, int capacity) {
+		Preconditions.checkArgument(capacity > 0, "The number of concurrent reads must be positive.");
+		this.keyContext = Preconditions.checkNotNull(keyContext);
+		this.mailboxExecutor = Preconditions.checkNotNull(mailboxExecutor);
+		this.completionExecutor = command -> mailboxExecutor.execute(
+			command::run, "KeyedAsyncStateReader#deserialize");
+		this.capacity = capacity;
+		this.pendingReadsByKey = new HashMap<>();
+	}
+
+	/**
+	 * Reads the value of the given state for the current key and passes it to the continuation, once it is read.
+	 * Yields to the mailbox while the maximum number of reads is in flight.
+	 *
+	 * @param state The state to read, of the current key.
+	 * @param continuation Consumes the value, in the mailbox and with the current key set to the key of the read.
+	 * @throws InterruptedException if the task thread is interrupted while yielding to the mailbox.
+	 */
+	public <V> void read(ValueState<V> state, ThrowingConsumer<V, Exception> continuation) throws InterruptedException {
+		final Object key = keyContext.getCurrentKey();
+
+		if (numPendingReads >= capacity) {
+			while (numPendingReads >= capacity) {
+				mailboxExecutor.yield();
+			}
+			// the mails may have changed the current key
+			keyContext.setCurrentKey(key);
+		}
+
+		final ReadRequest<V> request = new ReadRequest<>(key, state, continuation);
+		final ArrayDeque<ReadRequest<?>> readsOfKey = pendingReadsByKey.computeIfAbsent(key, ignored -> new ArrayDeque<>());
+		readsOfKey.add(request);
+		numPendingReads++;
+
+		if (readsOfKey.size() == 1) {
+			issue(request);
+		}
+	}
+
+	/**
+	 * Yields to the mailbox until all reads are completed and their continuations ran.
+	 *
+	 * @throws InterruptedException if the task thread is interrupted while yielding to the mailbox.
+	 */
+	public void drain() throws InterruptedException {
+		while (numPendingReads > 0) {
+			mailboxExecutor.yield();
+		}
+	}
+
+	/** Returns the number of reads whose continuation did not run yet. */
+	public int getNumPendingReads() {
+		return numPendingReads;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <V> void issue(ReadRequest<V> request) {
+		CompletableFuture<V> value;
+		if (request.state instanceof InternalAsyncValueState) {
+			value = ((InternalAsyncValueState<?, ?, V>) request.state).asyncValue(completionExecutor);
+		} else {
+			try {
+				value = CompletableFuture.completedFuture(request.state.value());
+			} catch (Exception e) {
+				value = FutureUtils.completedExceptionally(e);
+			}
+		}
+
+		// the continuation runs in a mail of its own, so that its exceptions fail the task
+		value.whenComplete((result, error) -> mailboxExecutor.execute(
+			() -> {
+				if (error != null) {
+					throw new FlinkException("Could not read state of key " + request.key + '.', error);
+				}
+				complete(request, result);
+			},
+			"KeyedAsyncStateReader#complete"));
+	}
+
+	private <V> void complete(ReadRequest<V> request, V value) throws Exception {
+		final ArrayDeque<ReadRequest<?>> readsOfKey = pendingReadsByKey.get(request.key);
+		readsOfKey.poll();
+		numPendingReads--;
+
+		// the next read of the key is issued after the continuation, so that it sees its updates
+		final ReadRequest<?> next = readsOfKey.peek();
+		if (next == null) {
+			pendingReadsByKey.remove(request.key);
+		}
+
+		keyContext.setCurrentKey(request.key);
+		request.continuation.accept(value);
+
+		if (next != null) {
+			keyContext.setCurrentKey(next.key);
+			issue(next);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static final class ReadRequest<V> {
+
+		final Object key;
+
+		final ValueState<V> state;
+
+		final ThrowingConsumer<V, Exception> continuation;
+
+		ReadRequest(Object key, ValueState<V> state, ThrowingConsumer<V, Exception> continuation) {
+			this.key = key;
+			this.state = state;
+			this.continuation = continuation;
+		}
+	}
+}
@@ -19,7 +19,6 @@
 package org.apache.flink.streaming.api.windowing.evictors;
 
 import org.apache.flink.annotation.PublicEvolving;
-import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.streaming.api.windowing.time.Time;
 import org.apache.flink.streaming.api.windowing.windows.Window;
 import org.apache.flink.streaming.runtime.operators.windowing.TimestampedValue;
@@ -109,11 +108,20 @@ public class TimeEvictor<W extends Window> implements Evictor<Object, W> {
 		return "TimeEvictor(" + windowSize + ")";
 	}
 
-	@VisibleForTesting
+	/**
+	 * Returns the amount of time for which elements are kept.
+	 */
 	public long getWindowSize() {
 		return windowSize;
 	}
 
+	/**
+	 * Returns whether the eviction is done after the window function.
+	 */
+	public boolean isEvictAfter() {
+		return doEvictAfter;
+	}
+
 	/**
 	 * Creates a {@code TimeEvictor} that keeps the given number of elements.
 	 * Eviction is done before the window function.
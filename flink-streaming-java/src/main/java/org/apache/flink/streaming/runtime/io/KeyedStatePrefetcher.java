@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.runtime.state.KeyedStateBackend;
+import org.apache.flink.runtime.state.PrefetchableKeyedStateBackend;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+import org.apache.flink.util.Preconditions;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Prefetches the keyed state of the records which a {@link StreamTaskNetworkInput} deserialized ahead of their
+ * processing, if the keyed state backend of the operator is a {@link PrefetchableKeyedStateBackend}.
+ *
+ * <p>The backend is looked up when the first records are prefetched, as it is created after the inputs.
+ *
+ * @param <T> The type of the records.
+ */
+@Internal
+public final class KeyedStatePrefetcher<T> {
+
+	private final KeySelector<T, ?> keySelector;
+
+	private final Supplier<KeyedStateBackend<?>> keyedStateBackendSupplier;
+
+	private final int windowSize;
+
+	private final List<Object> keys;
+
+	@Nullable
+	private PrefetchableKeyedStateBackend<Object> backend;
+
+	private boolean initialized;
+
+	public KeyedStatePrefetcher(
+			KeySelector<T, ?> keySelector,
+			Supplier<KeyedStateBackend<?>> keyedStateBackendSupplier,
+			int windowSize) {
+		Preconditions.checkArgument(windowSize > 1, "The prefetch window must contain more than one record.");
+		this.keySelector = Preconditions.checkNotNull(keySelector);
+		this.keyedStateBackendSupplier = Preconditions.checkNotNull(keyedStateBackendSupplier);
+		this.windowSize = windowSize;
+		this.keys = new ArrayList<>(windowSize);
+	}
+
+	/**
+	 * Returns the maximum number of records which are deserialized ahead of their processing.
+	 */
+	int getWindowSize() {
+		return windowSize;
+	}
+
+	/**
+	 * Returns whether the keyed state backend supports prefetching. Records need not be looked ahead otherwise.
+	 */
+	@SuppressWarnings("unchecked")
+	boolean isEnabled() {
+		if (!initialized) {
+			final KeyedStateBackend<?> keyedStateBackend = keyedStateBackendSupplier.get();
+			if (keyedStateBackend instanceof PrefetchableKeyedStateBackend) {
+				backend = (PrefetchableKeyedStateBackend<Object>) keyedStateBackend;
+			}
+			initialized = true;
+		}
+		return backend != null;
+	}
+
+	/**
+	 * Prefetches the state of the keys of the records among the given elements.
+	 */
+	@SuppressWarnings("unchecked")
+	void prefetch(Collection<StreamElement> elements) throws Exception {
+		if (!isEnabled()) {
+			return;
+		}
+
+		keys.clear();
+		for (StreamElement element : elements) {
+			if (element.isRecord()) {
+				keys.add(keySelector.getKey((T) element.asRecord().getValue()));
+			}
+		}
+		if (keys.size() > 1) {
+			backend.prefetch(keys);
+		}
+	}
+}
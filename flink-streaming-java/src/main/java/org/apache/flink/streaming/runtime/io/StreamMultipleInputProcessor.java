@@ -23,6 +23,7 @@ import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.metrics.Counter;
 import org.apache.flink.runtime.checkpoint.channel.ChannelStateWriter;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.metrics.groups.TaskIOMetricGroup;
 import org.apache.flink.streaming.api.operators.Input;
 import org.apache.flink.streaming.api.operators.InputSelection;
 import org.apache.flink.streaming.api.operators.MultipleInputStreamOperator;
@@ -72,6 +73,7 @@ public final class StreamMultipleInputProcessor implements StreamInputProcessor
 			CheckpointedInputGate[] checkpointedInputGates,
 			TypeSerializer<?>[] inputSerializers,
 			IOManager ioManager,
+			TaskIOMetricGroup taskIOMetricGroup,
 			StreamStatusMaintainer streamStatusMaintainer,
 			MultipleInputStreamOperator<?> streamOperator,
 			MultipleInputSelectionHandler inputSelectionHandler,
@@ -102,6 +104,7 @@ public final class StreamMultipleInputProcessor implements StreamInputProcessor
 					checkpointedInputGates[i],
 					inputSerializers[i],
 					ioManager,
+					taskIOMetricGroup,
 					new StatusWatermarkValve(checkpointedInputGates[i].getNumberOfInputChannels(), dataOutput),
 					i));
 		}
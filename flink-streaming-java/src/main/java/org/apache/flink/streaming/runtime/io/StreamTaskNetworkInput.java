@@ -32,6 +32,7 @@ import org.apache.flink.runtime.io.network.api.serialization.SpillingAdaptiveSpa
 import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
 import org.apache.flink.runtime.io.network.partition.consumer.InputChannel;
+import org.apache.flink.runtime.metrics.groups.TaskIOMetricGroup;
 import org.apache.flink.runtime.plugable.DeserializationDelegate;
 import org.apache.flink.runtime.plugable.NonReusingDeserializationDelegate;
 import org.apache.flink.streaming.api.watermark.Watermark;
@@ -40,7 +41,10 @@ import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
 import org.apache.flink.streaming.runtime.streamstatus.StatusWatermarkValve;
 import org.apache.flink.streaming.runtime.streamstatus.StreamStatus;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
@@ -58,6 +62,11 @@ import static org.apache.flink.util.Preconditions.checkState;
  * <p>Forwarding elements, watermarks, or status status elements must be protected by synchronizing
  * on the given lock object. This ensures that we don't call methods on a
  * {@link StreamInputProcessor} concurrently with the timer callback or other things.
+ *
+ * <p>If a {@link KeyedStatePrefetcher} is given, the records which follow a record in the same buffer are
+ * deserialized ahead of their processing, up to the window size of the prefetcher, and their state is prefetched.
+ * The elements looked ahead are processed before the next buffer or event is polled, so that they never cross a
+ * checkpoint barrier.
  */
 @Internal
 public final class StreamTaskNetworkInput<T> implements StreamTaskInput<T> {
@@ -77,13 +86,31 @@ public final class StreamTaskNetworkInput<T> implements StreamTaskInput<T> {
 
 	private RecordDeserializer<DeserializationDelegate<StreamElement>> currentRecordDeserializer = null;
 
-	@SuppressWarnings("unchecked")
+	@Nullable
+	private final KeyedStatePrefetcher<T> prefetcher;
+
+	/** The elements which were deserialized ahead of their processing. */
+	private final ArrayDeque<StreamElement> lookahead;
+
 	public StreamTaskNetworkInput(
 			CheckpointedInputGate checkpointedInputGate,
 			TypeSerializer<?> inputSerializer,
 			IOManager ioManager,
+			TaskIOMetricGroup metrics,
 			StatusWatermarkValve statusWatermarkValve,
 			int inputIndex) {
+		this(checkpointedInputGate, inputSerializer, ioManager, metrics, statusWatermarkValve, inputIndex, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	public StreamTaskNetworkInput(
+			CheckpointedInputGate checkpointedInputGate,
+			TypeSerializer<?> inputSerializer,
+			IOManager ioManager,
+			TaskIOMetricGroup metrics,
+			StatusWatermarkValve statusWatermarkValve,
+			int inputIndex,
+			@Nullable KeyedStatePrefetcher<T> prefetcher) {
 		this.checkpointedInputGate = checkpointedInputGate;
 		this.deserializationDelegate = new NonReusingDeserializationDelegate<>(
 			new StreamElementSerializer<>(inputSerializer));
@@ -91,12 +118,16 @@ public final class StreamTaskNetworkInput<T> implements StreamTaskInput<T> {
 		// Initialize one deserializer per input channel
 		this.recordDeserializers = new SpillingAdaptiveSpanningRecordDeserializer[checkpointedInputGate.getNumberOfInputChannels()];
 		for (int i = 0; i < recordDeserializers.length; i++) {
-			recordDeserializers[i] = new SpillingAdaptiveSpanningRecordDeserializer<>(
-				ioManager.getSpillingDirectoriesPaths());
+			SpillingAdaptiveSpanningRecordDeserializer<DeserializationDelegate<StreamElement>> deserializer =
+				new SpillingAdaptiveSpanningRecordDeserializer<>(ioManager.getSpillingDirectoriesPaths());
+			deserializer.setMetricGroup(metrics);
+			recordDeserializers[i] = deserializer;
 		}
 
 		this.statusWatermarkValve = checkNotNull(statusWatermarkValve);
 		this.inputIndex = inputIndex;
+		this.prefetcher = prefetcher;
+		this.lookahead = new ArrayDeque<>();
 	}
 
 	@VisibleForTesting
@@ -113,12 +144,21 @@ public final class StreamTaskNetworkInput<T> implements StreamTaskInput<T> {
 		this.recordDeserializers = recordDeserializers;
 		this.statusWatermarkValve = statusWatermarkValve;
 		this.inputIndex = inputIndex;
+		this.prefetcher = null;
+		this.lookahead = new ArrayDeque<>();
 	}
 
 	@Override
 	public InputStatus emitNext(DataOutput<T> output) throws Exception {
 
 		while (true) {
+			// process the elements which were deserialized ahead first
+			final StreamElement nextElement = lookahead.poll();
+			if (nextElement != null) {
+				processElement(nextElement, output);
+				return InputStatus.MORE_AVAILABLE;
+			}
+
 			// get the stream element from the deserializer
 			if (currentRecordDeserializer != null) {
 				DeserializationResult result = currentRecordDeserializer.getNextRecord(deserializationDelegate);
@@ -128,7 +168,12 @@ public final class StreamTaskNetworkInput<T> implements StreamTaskInput<T> {
 				}
 
 				if (result.isFullRecord()) {
-					processElement(deserializationDelegate.getInstance(), output);
+					StreamElement element = deserializationDelegate.getInstance();
+					if (prefetcher != null && currentRecordDeserializer != null && element.isRecord() && prefetcher.isEnabled()) {
+						lookAheadAndPrefetch(element);
+						element = lookahead.poll();
+					}
+					processElement(element, output);
 					return InputStatus.MORE_AVAILABLE;
 				}
 			}
@@ -151,6 +196,26 @@ public final class StreamTaskNetworkInput<T> implements StreamTaskInput<T> {
 		}
 	}
 
+	/**
+	 * Deserializes the elements which follow the given record in the current buffer, up to the window size of the
+	 * prefetcher, and prefetches the state of the records among them.
+	 */
+	private void lookAheadAndPrefetch(StreamElement firstElement) throws Exception {
+		lookahead.add(firstElement);
+		while (lookahead.size() < prefetcher.getWindowSize() && currentRecordDeserializer != null) {
+			DeserializationResult result = currentRecordDeserializer.getNextRecord(deserializationDelegate);
+			if (result.isBufferConsumed()) {
+				currentRecordDeserializer.getCurrentBuffer().recycleBuffer();
+				currentRecordDeserializer = null;
+			}
+
+			if (result.isFullRecord()) {
+				lookahead.add(deserializationDelegate.getInstance());
+			}
+		}
+		prefetcher.prefetch(lookahead);
+	}
+
 	private void processElement(StreamElement recordOrMark, DataOutput<T> output) throws Exception {
 		if (recordOrMark.isRecord()){
 			output.emitRecord(recordOrMark.asRecord());
@@ -196,7 +261,7 @@ public final class StreamTaskNetworkInput<T> implements StreamTaskInput<T> {
 
 	@Override
 	public CompletableFuture<?> getAvailableFuture() {
-		if (currentRecordDeserializer != null) {
+		if (currentRecordDeserializer != null || !lookahead.isEmpty()) {
 			return AVAILABLE;
 		}
 		return checkpointedInputGate.getAvailableFuture();
@@ -206,6 +271,7 @@ public final class StreamTaskNetworkInput<T> implements StreamTaskInput<T> {
 	public CompletableFuture<Void> prepareSnapshot(
 			ChannelStateWriter channelStateWriter,
 			long checkpointId) throws IOException {
+		checkState(lookahead.isEmpty(), "Records which were looked ahead cannot be persisted as channel state.");
 		for (int channelIndex = 0; channelIndex < recordDeserializers.length; channelIndex++) {
 			final InputChannel channel = checkpointedInputGate.getChannel(channelIndex);
 
@@ -227,6 +293,8 @@ public final class StreamTaskNetworkInput<T> implements StreamTaskInput<T> {
 
 	@Override
 	public void close() throws IOException {
+		lookahead.clear();
+
 		// release the deserializers . this part should not ever fail
 		for (int channelIndex = 0; channelIndex < recordDeserializers.length; channelIndex++) {
 			releaseDeserializer(channelIndex);
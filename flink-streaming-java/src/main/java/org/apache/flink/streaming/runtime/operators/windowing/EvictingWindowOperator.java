@@ -22,27 +22,44 @@ import org.apache.flink.annotation.Internal;
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.state.AppendingState;
 import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapStateDescriptor;
 import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.BooleanSerializer;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.api.common.typeutils.base.array.LongPrimitiveArraySerializer;
 import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.state.StateInitializationContext;
+import org.apache.flink.runtime.state.StateSnapshotContext;
+import org.apache.flink.runtime.state.heap.HeapKeyedStateBackend;
 import org.apache.flink.runtime.state.internal.InternalListState;
+import org.apache.flink.runtime.state.internal.InternalMapState;
+import org.apache.flink.runtime.state.internal.InternalValueState;
 import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.windowing.assigners.GlobalWindows;
 import org.apache.flink.streaming.api.windowing.assigners.MergingWindowAssigner;
 import org.apache.flink.streaming.api.windowing.assigners.WindowAssigner;
 import org.apache.flink.streaming.api.windowing.evictors.Evictor;
+import org.apache.flink.streaming.api.windowing.evictors.TimeEvictor;
 import org.apache.flink.streaming.api.windowing.triggers.Trigger;
 import org.apache.flink.streaming.api.windowing.triggers.TriggerResult;
+import org.apache.flink.streaming.api.windowing.windows.GlobalWindow;
 import org.apache.flink.streaming.api.windowing.windows.Window;
 import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalWindowFunction;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 import org.apache.flink.util.OutputTag;
+import org.apache.flink.util.StateMigrationException;
 
 import org.apache.flink.shaded.guava18.com.google.common.base.Function;
 import org.apache.flink.shaded.guava18.com.google.common.collect.FluentIterable;
 import org.apache.flink.shaded.guava18.com.google.common.collect.Iterables;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.stream.Stream;
 
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
@@ -53,6 +70,12 @@ import static org.apache.flink.util.Preconditions.checkNotNull;
  * {@link InternalWindowFunction} and after the window evaluation gets triggered by a
  * {@link org.apache.flink.streaming.api.windowing.triggers.Trigger}.
  *
+ * <p>If incremental window eviction is enabled in the {@link org.apache.flink.api.common.ExecutionConfig},
+ * the contents of non-merging windows are kept in an {@link IncrementalEvictingWindowState}, so that
+ * evicting elements does not rewrite the whole window. These contents cannot be converted to or from
+ * the list state that is used otherwise. The operator therefore keeps in operator state whether it
+ * uses incremental eviction, and restoring a snapshot that was taken with the other setting fails.
+ *
  * @param <K> The type of key returned by the {@code KeySelector}.
  * @param <IN> The type of the incoming elements.
  * @param <OUT> The type of elements emitted by the {@code InternalWindowFunction}.
@@ -64,6 +87,9 @@ public class EvictingWindowOperator<K, IN, OUT, W extends Window>
 
 	private static final long serialVersionUID = 1L;
 
+	/** The name of the operator state that holds whether the window contents are kept for incremental eviction. */
+	static final String INCREMENTAL_EVICTION_STATE_NAME = "window-incremental-eviction";
+
 	// ------------------------------------------------------------------------
 	// these fields are set by the API stream graph builder to configure the operator
 
@@ -78,6 +104,16 @@ public class EvictingWindowOperator<K, IN, OUT, W extends Window>
 
 	private transient InternalListState<K, W, StreamRecord<IN>> evictingWindowState;
 
+	/**
+	 * The window contents if incremental eviction is enabled, in which case the
+	 * {@link #evictingWindowState} is not used.
+	 */
+	private transient IncrementalEvictingWindowState<K, W, IN> incrementalWindowState;
+
+	private transient ListState<Boolean> incrementalEvictionState;
+
+	private transient boolean restored;
+
 	// ------------------------------------------------------------------------
 
 	public EvictingWindowOperator(WindowAssigner<? super IN, W> windowAssigner,
@@ -199,8 +235,12 @@ public class EvictingWindowOperator<K, IN, OUT, W extends Window>
 				}
 				isSkippedElement = false;
 
-				evictingWindowState.setCurrentNamespace(window);
-				evictingWindowState.add(element);
+				setWindowContentsNamespace(window);
+				if (incrementalWindowState != null) {
+					incrementalWindowState.add(element);
+				} else {
+					evictingWindowState.add(element);
+				}
 
 				triggerContext.key = key;
 				triggerContext.window = window;
@@ -210,16 +250,14 @@ public class EvictingWindowOperator<K, IN, OUT, W extends Window>
 				TriggerResult triggerResult = triggerContext.onElement(element);
 
 				if (triggerResult.isFire()) {
-					Iterable<StreamRecord<IN>> contents = evictingWindowState.get();
-					if (contents == null) {
+					if (!emitWindowContents(window)) {
 						// if we have no state, there is nothing to do
 						continue;
 					}
-					emitWindowContents(window, contents, evictingWindowState);
 				}
 
 				if (triggerResult.isPurge()) {
-					evictingWindowState.clear();
+					clearWindowContents();
 				}
 				registerCleanupTimer(window);
 			}
@@ -260,24 +298,21 @@ public class EvictingWindowOperator<K, IN, OUT, W extends Window>
 				evictingWindowState.setCurrentNamespace(stateWindow);
 			}
 		} else {
-			evictingWindowState.setCurrentNamespace(triggerContext.window);
+			setWindowContentsNamespace(triggerContext.window);
 		}
 
 		TriggerResult triggerResult = triggerContext.onEventTime(timer.getTimestamp());
 
 		if (triggerResult.isFire()) {
-			Iterable<StreamRecord<IN>> contents = evictingWindowState.get();
-			if (contents != null) {
-				emitWindowContents(triggerContext.window, contents, evictingWindowState);
-			}
+			emitWindowContents(triggerContext.window);
 		}
 
 		if (triggerResult.isPurge()) {
-			evictingWindowState.clear();
+			clearWindowContents();
 		}
 
 		if (windowAssigner.isEventTime() && isCleanupTime(triggerContext.window, timer.getTimestamp())) {
-			clearAllState(triggerContext.window, evictingWindowState, mergingWindows);
+			clearAllState(triggerContext.window, mergingWindows);
 		}
 
 		if (mergingWindows != null) {
@@ -307,24 +342,21 @@ public class EvictingWindowOperator<K, IN, OUT, W extends Window>
 				evictingWindowState.setCurrentNamespace(stateWindow);
 			}
 		} else {
-			evictingWindowState.setCurrentNamespace(triggerContext.window);
+			setWindowContentsNamespace(triggerContext.window);
 		}
 
 		TriggerResult triggerResult = triggerContext.onProcessingTime(timer.getTimestamp());
 
 		if (triggerResult.isFire()) {
-			Iterable<StreamRecord<IN>> contents = evictingWindowState.get();
-			if (contents != null) {
-				emitWindowContents(triggerContext.window, contents, evictingWindowState);
-			}
+			emitWindowContents(triggerContext.window);
 		}
 
 		if (triggerResult.isPurge()) {
-			evictingWindowState.clear();
+			clearWindowContents();
 		}
 
 		if (!windowAssigner.isEventTime() && isCleanupTime(triggerContext.window, timer.getTimestamp())) {
-			clearAllState(triggerContext.window, evictingWindowState, mergingWindows);
+			clearAllState(triggerContext.window, mergingWindows);
 		}
 
 		if (mergingWindows != null) {
@@ -333,6 +365,84 @@ public class EvictingWindowOperator<K, IN, OUT, W extends Window>
 		}
 	}
 
+	private void setWindowContentsNamespace(W window) {
+		if (incrementalWindowState != null) {
+			incrementalWindowState.setCurrentNamespace(window);
+		} else {
+			evictingWindowState.setCurrentNamespace(window);
+		}
+	}
+
+	private void clearWindowContents() {
+		if (incrementalWindowState != null) {
+			incrementalWindowState.clear();
+		} else {
+			evictingWindowState.clear();
+		}
+	}
+
+	/**
+	 * Emits the contents of the given window, whose namespace must already be set.
+	 *
+	 * @return {@code false} if the window had no contents to emit.
+	 */
+	private boolean emitWindowContents(W window) throws Exception {
+		if (incrementalWindowState != null) {
+			IncrementalEvictingWindowState<K, W, IN>.Contents contents = incrementalWindowState.get();
+			if (contents == null) {
+				return false;
+			}
+			emitWindowContents(window, contents);
+		} else {
+			Iterable<StreamRecord<IN>> contents = evictingWindowState.get();
+			if (contents == null) {
+				return false;
+			}
+			emitWindowContents(window, contents, evictingWindowState);
+		}
+		return true;
+	}
+
+	private void emitWindowContents(W window, IncrementalEvictingWindowState<K, W, IN>.Contents contents) throws Exception {
+		timestampedCollector.setAbsoluteTimestamp(window.maxTimestamp());
+
+		if (!evictByTime(contents, false)) {
+			evictorContext.evictBefore(contents, contents.size());
+		}
+
+		FluentIterable<IN> projectedContents = FluentIterable
+			.from(contents)
+			.transform(new Function<TimestampedValue<IN>, IN>() {
+				@Override
+				public IN apply(TimestampedValue<IN> input) {
+					return input.getValue();
+				}
+			});
+
+		processContext.window = triggerContext.window;
+		userFunction.process(triggerContext.key, triggerContext.window, processContext, projectedContents, timestampedCollector);
+
+		if (!evictByTime(contents, true)) {
+			evictorContext.evictAfter(contents, contents.size());
+		}
+
+		// only the evicted elements were removed from state, the metadata is updated once
+		contents.persist();
+	}
+
+	/**
+	 * Evicts the elements of a {@link TimeEvictor} without reading all elements, if possible.
+	 *
+	 * @return {@code true} if the evictor has nothing more to evict at this point.
+	 */
+	private boolean evictByTime(IncrementalEvictingWindowState<K, W, IN>.Contents contents, boolean afterFunction) {
+		if (evictor.getClass() != TimeEvictor.class) {
+			return false;
+		}
+		TimeEvictor<?> timeEvictor = (TimeEvictor<?>) evictor;
+		return timeEvictor.isEvictAfter() != afterFunction || contents.evictByTime(timeEvictor.getWindowSize());
+	}
+
 	private void emitWindowContents(W window, Iterable<StreamRecord<IN>> contents, ListState<StreamRecord<IN>> windowState) throws Exception {
 		timestampedCollector.setAbsoluteTimestamp(window.maxTimestamp());
 
@@ -367,11 +477,8 @@ public class EvictingWindowOperator<K, IN, OUT, W extends Window>
 		}
 	}
 
-	private void clearAllState(
-			W window,
-			ListState<StreamRecord<IN>> windowState,
-			MergingWindowSet<W> mergingWindows) throws Exception {
-		windowState.clear();
+	private void clearAllState(W window, MergingWindowSet<W> mergingWindows) throws Exception {
+		clearWindowContents();
 		triggerContext.clear();
 		processContext.window = window;
 		processContext.clear();
@@ -425,13 +532,92 @@ public class EvictingWindowOperator<K, IN, OUT, W extends Window>
 		}
 	}
 
+	@Override
+	public void initializeState(StateInitializationContext context) throws Exception {
+		super.initializeState(context);
+
+		incrementalEvictionState = context.getOperatorStateStore().getUnionListState(
+			new ListStateDescriptor<>(INCREMENTAL_EVICTION_STATE_NAME, BooleanSerializer.INSTANCE));
+		restored = context.isRestored();
+	}
+
 	@Override
 	public void open() throws Exception {
 		super.open();
 
 		evictorContext = new EvictorContext(null, null);
-		evictingWindowState = (InternalListState<K, W, StreamRecord<IN>>)
-				getOrCreateKeyedState(windowSerializer, evictingWindowStateDescriptor);
+
+		boolean incrementalEviction = getExecutionConfig().isIncrementalWindowEvictionEnabled()
+			&& !(windowAssigner instanceof MergingWindowAssigner)
+			&& evictingWindowStateDescriptor instanceof ListStateDescriptor;
+		if (restored) {
+			checkRestoredWindowContents(incrementalEviction);
+		}
+		incrementalEvictionState.update(Collections.singletonList(incrementalEviction));
+
+		if (incrementalEviction) {
+			evictingWindowStateDescriptor.initializeSerializerUnlessSet(getExecutionConfig());
+			@SuppressWarnings("unchecked")
+			TypeSerializer<StreamRecord<IN>> recordSerializer =
+					((ListStateDescriptor<StreamRecord<IN>>) (StateDescriptor<?, ?>) evictingWindowStateDescriptor).getElementSerializer();
+
+			MapStateDescriptor<Long, StreamRecord<IN>> elementsDescriptor =
+					new MapStateDescriptor<>("window-elements", LongSerializer.INSTANCE, recordSerializer);
+			ValueStateDescriptor<long[]> metadataDescriptor =
+					new ValueStateDescriptor<>("window-elements-metadata", LongPrimitiveArraySerializer.INSTANCE);
+
+			incrementalWindowState = new IncrementalEvictingWindowState<>(
+					(InternalMapState<K, W, Long, StreamRecord<IN>>) getOrCreateKeyedState(windowSerializer, elementsDescriptor),
+					(InternalValueState<K, W, long[]>) getOrCreateKeyedState(windowSerializer, metadataDescriptor),
+					this,
+					// the heap backends keep map states in hash maps, the others sort them by their serialized keys
+					!(getKeyedStateBackend() instanceof HeapKeyedStateBackend));
+		} else {
+			evictingWindowState = (InternalListState<K, W, StreamRecord<IN>>)
+					getOrCreateKeyedState(windowSerializer, evictingWindowStateDescriptor);
+		}
+	}
+
+	/**
+	 * Fails if the restored window contents were kept with the other incremental eviction setting.
+	 */
+	private void checkRestoredWindowContents(boolean incrementalEviction) throws Exception {
+		boolean marked = false;
+		for (boolean restoredIncrementalEviction : incrementalEvictionState.get()) {
+			if (restoredIncrementalEviction != incrementalEviction) {
+				rejectWindowContents(restoredIncrementalEviction);
+			}
+			marked = true;
+		}
+
+		// snapshots without the marker were taken before incremental eviction existed and keep the
+		// windows in the list state, a window with contents has a timer or is the global window
+		if (!marked && incrementalEviction) {
+			internalTimerService.forEachEventTimeTimer((window, timestamp) -> rejectWindowContents(false));
+			internalTimerService.forEachProcessingTimeTimer((window, timestamp) -> rejectWindowContents(false));
+			if (windowAssigner instanceof GlobalWindows) {
+				try (Stream<K> keys = this.<K>getKeyedStateBackend().getKeys(evictingWindowStateDescriptor.getName(), GlobalWindow.get())) {
+					if (keys.findAny().isPresent()) {
+						rejectWindowContents(false);
+					}
+				}
+			}
+		}
+	}
+
+	private static void rejectWindowContents(boolean restoredIncrementalEviction) throws StateMigrationException {
+		throw new StateMigrationException("The snapshot contains window contents that were kept with incremental" +
+			" window eviction " + (restoredIncrementalEviction ? "enabled" : "disabled") + ", which cannot be restored" +
+			" with it " + (restoredIncrementalEviction ? "disabled" : "enabled") + ". Restore the snapshot with the" +
+			" previous setting, see ExecutionConfig#enableIncrementalWindowEviction().");
+	}
+
+	@Override
+	public void snapshotState(StateSnapshotContext context) throws Exception {
+		super.snapshotState(context);
+		if (incrementalWindowState != null) {
+			incrementalWindowState.flush();
+		}
 	}
 
 	@Override
@@ -0,0 +1,391 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.runtime.state.internal.InternalMapState;
+import org.apache.flink.runtime.state.internal.InternalValueState;
+import org.apache.flink.streaming.api.operators.KeyContext;
+import org.apache.flink.streaming.api.windowing.evictors.TimeEvictor;
+import org.apache.flink.streaming.api.windowing.windows.Window;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * The window contents of an {@link EvictingWindowOperator} with incremental eviction.
+ *
+ * <p>The elements of a window are kept in a {@link MapState} keyed by their arrival sequence
+ * number, instead of a {@code ListState} that has to be cleared and re-added completely after
+ * every eviction. Evicting an element removes only its entry, and the evictor and the window
+ * function read the elements lazily, in arrival order.
+ *
+ * <p>A small {@link ValueState} per window keeps the range of sequence numbers, the number of
+ * elements, their minimum and maximum timestamp, and whether they arrived in timestamp order.
+ * With it, the eviction of a {@link TimeEvictor} reads no elements if none is old enough.
+ *
+ * <p>Adding an element does not read and write this metadata every time. The metadata of the
+ * windows that elements were added to is kept in memory, and written to state when the operator
+ * is snapshotted with {@link #flush()}, or when more than {@link #MAX_PENDING_METADATA} windows
+ * have pending metadata.
+ *
+ * <p>Backends that keep the map serialized, such as RocksDB, iterate it in the order of the
+ * sequence numbers, so the evictor and the window function read the elements lazily, each with
+ * its own scan of the map state. The heap backends keep the map unordered but in memory, so their
+ * entries are sorted once per evaluation of a window.
+ *
+ * @param <K> The type of the key.
+ * @param <W> The type of the window.
+ * @param <IN> The type of the window elements.
+ */
+class IncrementalEvictingWindowState<K, W extends Window, IN> {
+
+	private static final int FIRST_SEQUENCE = 0;
+	private static final int NEXT_SEQUENCE = 1;
+	private static final int SIZE = 2;
+	private static final int MIN_TIMESTAMP = 3;
+	private static final int MAX_TIMESTAMP = 4;
+	private static final int FLAGS = 5;
+
+	/** Flag for elements that arrived in timestamp order. */
+	private static final long IN_TIMESTAMP_ORDER = 1L;
+
+	/** Flag for elements that all have a timestamp. */
+	private static final long ALL_TIMESTAMPED = 1L << 1;
+
+	/** The maximum number of windows whose metadata is kept in memory before it is flushed. */
+	static final int MAX_PENDING_METADATA = 1024;
+
+	private final InternalMapState<K, W, Long, StreamRecord<IN>> elementsState;
+
+	private final InternalValueState<K, W, long[]> metadataState;
+
+	private final KeyContext keyContext;
+
+	/** Whether the map state iterates its entries in the order of their keys. */
+	private final boolean orderedEntries;
+
+	/** The metadata by key and window which was not yet written to state. */
+	private final Map<Tuple2<Object, W>, long[]> pendingMetadata;
+
+	private W currentWindow;
+
+	IncrementalEvictingWindowState(
+			InternalMapState<K, W, Long, StreamRecord<IN>> elementsState,
+			InternalValueState<K, W, long[]> metadataState,
+			KeyContext keyContext,
+			boolean orderedEntries) {
+		this.elementsState = elementsState;
+		this.metadataState = metadataState;
+		this.keyContext = keyContext;
+		this.orderedEntries = orderedEntries;
+		this.pendingMetadata = new HashMap<>();
+	}
+
+	void setCurrentNamespace(W window) {
+		currentWindow = window;
+		elementsState.setCurrentNamespace(window);
+		metadataState.setCurrentNamespace(window);
+	}
+
+	void add(StreamRecord<IN> element) throws Exception {
+		Tuple2<Object, W> pendingKey = new Tuple2<>(keyContext.getCurrentKey(), currentWindow);
+		long[] metadata = pendingMetadata.get(pendingKey);
+		if (metadata == null) {
+			if (pendingMetadata.size() >= MAX_PENDING_METADATA) {
+				flush();
+			}
+			metadata = readMetadata();
+			pendingMetadata.put(pendingKey, metadata);
+		}
+
+		elementsState.put(metadata[NEXT_SEQUENCE]++, element);
+		metadata[SIZE]++;
+
+		if (element.hasTimestamp()) {
+			long timestamp = element.getTimestamp();
+			if (timestamp < metadata[MAX_TIMESTAMP]) {
+				metadata[FLAGS] &= ~IN_TIMESTAMP_ORDER;
+			}
+			metadata[MIN_TIMESTAMP] = Math.min(metadata[MIN_TIMESTAMP], timestamp);
+			metadata[MAX_TIMESTAMP] = Math.max(metadata[MAX_TIMESTAMP], timestamp);
+		} else {
+			metadata[FLAGS] &= ~ALL_TIMESTAMPED;
+		}
+	}
+
+	/**
+	 * Returns the elements of the current window, or {@code null} if the window is empty. Elements
+	 * that are removed through the returned contents are only removed from state, and the metadata
+	 * is only updated, on {@link Contents#persist()}.
+	 */
+	Contents get() throws Exception {
+		long[] metadata = pendingMetadata.get(currentPendingKey());
+		if (metadata == null) {
+			metadata = metadataState.value();
+		}
+		return metadata == null ? null : new Contents(metadata.clone());
+	}
+
+	void clear() {
+		elementsState.clear();
+		metadataState.clear();
+		pendingMetadata.remove(currentPendingKey());
+	}
+
+	/**
+	 * Writes the metadata that is kept in memory to state. This sets the current key of the
+	 * operator, and restores it afterwards.
+	 */
+	void flush() throws Exception {
+		if (pendingMetadata.isEmpty()) {
+			return;
+		}
+
+		Object currentKey = keyContext.getCurrentKey();
+		for (Map.Entry<Tuple2<Object, W>, long[]> entry : pendingMetadata.entrySet()) {
+			keyContext.setCurrentKey(entry.getKey().f0);
+			metadataState.setCurrentNamespace(entry.getKey().f1);
+			metadataState.update(entry.getValue());
+		}
+		pendingMetadata.clear();
+
+		if (currentKey != null) {
+			keyContext.setCurrentKey(currentKey);
+		}
+		if (currentWindow != null) {
+			metadataState.setCurrentNamespace(currentWindow);
+		}
+	}
+
+	private Tuple2<Object, W> currentPendingKey() {
+		return new Tuple2<>(keyContext.getCurrentKey(), currentWindow);
+	}
+
+	private long[] readMetadata() throws Exception {
+		long[] metadata = metadataState.value();
+		if (metadata == null) {
+			return new long[] {0L, 0L, 0L, Long.MAX_VALUE, Long.MIN_VALUE, IN_TIMESTAMP_ORDER | ALL_TIMESTAMPED};
+		}
+		return metadata.clone();
+	}
+
+	/**
+	 * The elements of one window. They are read from state by every iteration, or, if the map state
+	 * is unordered, sorted on the first iteration.
+	 */
+	class Contents implements Iterable<TimestampedValue<IN>> {
+
+		private final long[] metadata;
+
+		/**
+		 * The sorted elements if the map state is unordered, in arrival order. Evicted elements are
+		 * set to null.
+		 */
+		private List<Map.Entry<Long, StreamRecord<IN>>> sortedElements;
+
+		private Contents(long[] metadata) {
+			this.metadata = metadata;
+		}
+
+		int size() {
+			return (int) metadata[SIZE];
+		}
+
+		/**
+		 * Evicts all elements whose timestamp is at most the maximum timestamp minus the given window
+		 * size, like a {@link TimeEvictor} does.
+		 *
+		 * @return {@code false} if the elements must be read completely to find the elements to
+		 *         evict, because they did not arrive in timestamp order or not all have a timestamp.
+		 *         Nothing was evicted in that case.
+		 */
+		boolean evictByTime(long windowSize) {
+			if (metadata[SIZE] == 0) {
+				return true;
+			}
+			if ((metadata[FLAGS] & ALL_TIMESTAMPED) == 0) {
+				return false;
+			}
+
+			long evictCutoff = metadata[MAX_TIMESTAMP] - windowSize;
+			if (metadata[MIN_TIMESTAMP] > evictCutoff) {
+				return true;
+			}
+			if ((metadata[FLAGS] & IN_TIMESTAMP_ORDER) == 0) {
+				return false;
+			}
+
+			// the elements are ordered by timestamp, so only a prefix is evicted
+			for (Iterator<TimestampedValue<IN>> iterator = iterator(); iterator.hasNext(); ) {
+				long timestamp = iterator.next().getTimestamp();
+				if (timestamp > evictCutoff) {
+					metadata[MIN_TIMESTAMP] = timestamp;
+					break;
+				}
+				iterator.remove();
+			}
+			return true;
+		}
+
+		/**
+		 * Writes the updated metadata of the window, or clears the window if all its elements were
+		 * evicted.
+		 */
+		void persist() throws Exception {
+			if (metadata[SIZE] == 0) {
+				clear();
+			} else if (pendingMetadata.containsKey(currentPendingKey())) {
+				pendingMetadata.put(currentPendingKey(), metadata);
+			} else {
+				metadataState.update(metadata);
+			}
+		}
+
+		@Override
+		public Iterator<TimestampedValue<IN>> iterator() {
+			return orderedEntries ? new OrderedIterator() : new SortedIterator();
+		}
+
+		private void evicted(long sequence) {
+			if (sequence == metadata[FIRST_SEQUENCE]) {
+				metadata[FIRST_SEQUENCE] = sequence + 1;
+			}
+			metadata[SIZE]--;
+		}
+
+		/**
+		 * Iterates the entries of the map state lazily, in the order of the sequence numbers.
+		 */
+		private class OrderedIterator implements Iterator<TimestampedValue<IN>> {
+
+			private final Iterator<Map.Entry<Long, StreamRecord<IN>>> entries;
+
+			private long lastSequence = Long.MIN_VALUE;
+
+			private boolean canRemove;
+
+			private OrderedIterator() {
+				try {
+					entries = elementsState.iterator();
+				} catch (Exception e) {
+					throw new RuntimeException("Error while reading the window contents.", e);
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			@Override
+			public TimestampedValue<IN> next() {
+				Map.Entry<Long, StreamRecord<IN>> entry = entries.next();
+				if (entry.getKey() <= lastSequence) {
+					throw new IllegalStateException("The map state does not iterate the window contents in arrival order.");
+				}
+				lastSequence = entry.getKey();
+				canRemove = true;
+				return TimestampedValue.from(entry.getValue());
+			}
+
+			@Override
+			public void remove() {
+				if (!canRemove) {
+					throw new IllegalStateException();
+				}
+				entries.remove();
+				evicted(lastSequence);
+				canRemove = false;
+			}
+		}
+
+		/**
+		 * Iterates the entries of an unordered map state, which are read and sorted once for all
+		 * iterations of the window contents.
+		 */
+		private class SortedIterator implements Iterator<TimestampedValue<IN>> {
+
+			private final List<Map.Entry<Long, StreamRecord<IN>>> elements;
+
+			private int position;
+
+			private int current = -1;
+
+			private SortedIterator() {
+				if (sortedElements == null) {
+					sortedElements = new ArrayList<>(size());
+					try {
+						Iterable<Map.Entry<Long, StreamRecord<IN>>> entries = elementsState.entries();
+						if (entries != null) {
+							for (Map.Entry<Long, StreamRecord<IN>> entry : entries) {
+								sortedElements.add(entry);
+							}
+						}
+					} catch (Exception e) {
+						throw new RuntimeException("Error while reading the window contents.", e);
+					}
+					sortedElements.sort(Map.Entry.comparingByKey());
+				}
+				elements = sortedElements;
+			}
+
+			@Override
+			public boolean hasNext() {
+				// evicted elements leave gaps
+				while (position < elements.size() && elements.get(position) == null) {
+					position++;
+				}
+				return position < elements.size();
+			}
+
+			@Override
+			public TimestampedValue<IN> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				current = position++;
+				return TimestampedValue.from(elements.get(current).getValue());
+			}
+
+			@Override
+			public void remove() {
+				if (current < 0) {
+					throw new IllegalStateException();
+				}
+				long sequence = elements.get(current).getKey();
+				try {
+					elementsState.remove(sequence);
+				} catch (Exception e) {
+					throw new RuntimeException("Error while evicting from the window contents.", e);
+				}
+				elements.set(current, null);
+				evicted(sequence);
+				current = -1;
+			}
+		}
+	}
+}
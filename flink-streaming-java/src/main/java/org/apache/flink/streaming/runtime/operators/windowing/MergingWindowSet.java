@@ -95,6 +95,18 @@ public class MergingWindowSet<W extends Window> {
 		initialMapping.putAll(mapping);
 	}
 
+	/**
+	 * Creates a {@link MergingWindowSet} that is not backed by a list of window pairs. Subclasses
+	 * that use this constructor keep the windows in their own representation and must override
+	 * all public methods.
+	 */
+	protected MergingWindowSet(MergingWindowAssigner<?, W> windowAssigner) {
+		this.windowAssigner = windowAssigner;
+		this.mapping = new HashMap<>();
+		this.initialMapping = new HashMap<>();
+		this.state = null;
+	}
+
 	/**
 	 * Persist the updated mapping to the given state if the mapping changed since
 	 * initialization.
@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.api.common.functions.AggregateFunction;
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
+import org.apache.flink.api.common.state.AppendingState;
+import org.apache.flink.api.common.state.ReducingStateDescriptor;
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.runtime.state.internal.InternalAppendingState;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.api.windowing.assigners.MergingWindowAssigner;
+import org.apache.flink.streaming.api.windowing.assigners.WindowAssigner;
+import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.ProcessingTimeTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.Trigger;
+import org.apache.flink.streaming.api.windowing.triggers.TriggerResult;
+import org.apache.flink.streaming.api.windowing.windows.Window;
+import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalWindowFunction;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.util.OutputTag;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * A {@link WindowOperator} that buffers the incrementally aggregated window contents of a
+ * bundle of elements in memory and only writes them to the window state when the bundle is
+ * flushed.
+ *
+ * <p>The first element of a key and window in a bundle reads the window contents from the state,
+ * all further elements of that key and window are added to the buffered copy. The state is thus
+ * read and written once per key and window of a bundle instead of once per element, which matters
+ * for hot keys on state backends that serialize on every access.
+ *
+ * <p>A bundle is flushed when it holds the configured number of elements, after the configured
+ * latency, before a checkpoint barrier is emitted, before watermarks and processing time timers
+ * are processed, and when the operator is closed. The flush writes the window contents and calls
+ * the trigger, once per key and window. This is why the operator is restricted to the default
+ * triggers ({@link EventTimeTrigger} and {@link ProcessingTimeTrigger}), whose decisions only
+ * depend on the window and the current time, and to non-merging windows.
+ *
+ * <p>The results are the same as those of the {@link WindowOperator}, except for late elements
+ * within the allowed lateness: the {@link WindowOperator} fires the window once per late element,
+ * this operator fires it once per bundle that contains late elements of the window.
+ *
+ * @param <K> The type of key returned by the {@code KeySelector}.
+ * @param <IN> The type of the incoming elements.
+ * @param <ACC> The type of the window contents that is given to the {@code InternalWindowFunction}.
+ * @param <OUT> The type of elements emitted by the {@code InternalWindowFunction}.
+ * @param <W> The type of {@code Window} that the {@code WindowAssigner} assigns.
+ */
+@Internal
+public class MiniBatchWindowOperator<K, IN, ACC, OUT, W extends Window> extends WindowOperator<K, IN, ACC, OUT, W> {
+
+	private static final long serialVersionUID = 1L;
+
+	// ------------------------------------------------------------------------
+	// these fields are set by the API stream graph builder to configure the operator
+
+	private final int maxBundleSize;
+
+	private final long maxBundleLatency;
+
+	// ------------------------------------------------------------------------
+	// the fields below are instantiated once the operator runs in the runtime
+
+	/** The same state as the window state of the {@link WindowOperator}, typed by its internal value. */
+	private transient InternalAppendingState<K, W, IN, Object, ACC> windowContentsState;
+
+	/** Copies the window contents that are read from the state, so that they can be modified. */
+	private transient TypeSerializer<Object> windowContentsSerializer;
+
+	private transient ReduceFunction<Object> reduceFunction;
+
+	private transient AggregateFunction<IN, Object, ACC> aggregateFunction;
+
+	/** The buffered window contents and the last element per key and window. */
+	private transient Map<Tuple2<K, W>, BundleEntry<IN>> bundle;
+
+	private transient int numBundledElements;
+
+	/** The time of the earliest registered flush, or {@code Long.MAX_VALUE} if there is none. */
+	private transient long nextFlushTime;
+
+	private transient StreamRecord<IN> reuseRecord;
+
+	// ------------------------------------------------------------------------
+
+	public MiniBatchWindowOperator(
+			WindowAssigner<? super IN, W> windowAssigner,
+			TypeSerializer<W> windowSerializer,
+			KeySelector<IN, K> keySelector,
+			TypeSerializer<K> keySerializer,
+			StateDescriptor<? extends AppendingState<IN, ACC>, ?> windowStateDescriptor,
+			InternalWindowFunction<ACC, OUT, K, W> windowFunction,
+			Trigger<? super IN, ? super W> trigger,
+			long allowedLateness,
+			OutputTag<IN> lateDataOutputTag,
+			int maxBundleSize,
+			long maxBundleLatency) {
+
+		super(windowAssigner, windowSerializer, keySelector,
+			keySerializer, windowStateDescriptor, windowFunction, trigger, allowedLateness, lateDataOutputTag);
+
+		checkArgument(isApplicable(windowAssigner, trigger),
+			"Only non-merging windows with their default trigger can be evaluated in mini-batches.");
+		checkArgument(windowStateDescriptor instanceof ReducingStateDescriptor || windowStateDescriptor instanceof AggregatingStateDescriptor,
+			"Only windows with a reducing or aggregating state can be evaluated in mini-batches.");
+		checkArgument(maxBundleSize > 0, "The maximum bundle size must be positive.");
+		checkArgument(maxBundleLatency >= 0, "The maximum bundle latency must not be negative.");
+
+		this.maxBundleSize = maxBundleSize;
+		this.maxBundleLatency = maxBundleLatency;
+	}
+
+	/**
+	 * Returns whether the windows of the given assigner and trigger can be evaluated in
+	 * mini-batches.
+	 */
+	public static boolean isApplicable(WindowAssigner<?, ?> windowAssigner, Trigger<?, ?> trigger) {
+		return !(windowAssigner instanceof MergingWindowAssigner)
+			&& (trigger.getClass() == EventTimeTrigger.class || trigger.getClass() == ProcessingTimeTrigger.class);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void open() throws Exception {
+		super.open();
+
+		// this is the state that the WindowOperator created, the backend caches the state by name
+		windowContentsState = (InternalAppendingState<K, W, IN, Object, ACC>)
+			getOrCreateKeyedState(windowSerializer, getStateDescriptor());
+		windowContentsSerializer = (TypeSerializer<Object>) getStateDescriptor().getSerializer().duplicate();
+
+		if (getStateDescriptor() instanceof ReducingStateDescriptor) {
+			reduceFunction = ((ReducingStateDescriptor<Object>) getStateDescriptor()).getReduceFunction();
+		} else {
+			aggregateFunction = ((AggregatingStateDescriptor<IN, Object, ACC>) getStateDescriptor()).getAggregateFunction();
+		}
+
+		bundle = new LinkedHashMap<>();
+		numBundledElements = 0;
+		nextFlushTime = Long.MAX_VALUE;
+		reuseRecord = new StreamRecord<>(null);
+	}
+
+	@Override
+	public void close() throws Exception {
+		flushBundle();
+		super.close();
+		bundle = null;
+		reuseRecord = null;
+	}
+
+	@Override
+	public void dispose() throws Exception {
+		super.dispose();
+		bundle = null;
+		reuseRecord = null;
+	}
+
+	@Override
+	public void processElement(StreamRecord<IN> element) throws Exception {
+		final Collection<W> elementWindows = windowAssigner.assignWindows(
+			element.getValue(), element.getTimestamp(), windowAssignerContext);
+
+		//if element is handled by none of assigned elementWindows
+		boolean isSkippedElement = true;
+
+		final K key = this.<K>getKeyedStateBackend().getCurrentKey();
+
+		for (W window : elementWindows) {
+
+			// drop if the window is already late
+			if (isWindowLate(window)) {
+				continue;
+			}
+			isSkippedElement = false;
+
+			final Tuple2<K, W> bundleKey = new Tuple2<>(key, window);
+			BundleEntry<IN> entry = bundle.get(bundleKey);
+			if (entry == null) {
+				windowContentsState.setCurrentNamespace(window);
+				final Object contents = windowContentsState.getInternal();
+				entry = new BundleEntry<>(contents == null ? null : windowContentsSerializer.copy(contents));
+				bundle.put(bundleKey, entry);
+
+				// processing time windows must not miss their end while they are only in the bundle
+				if (!windowAssigner.isEventTime()) {
+					registerFlush(window.maxTimestamp());
+				}
+			}
+
+			entry.contents = add(entry.contents, element.getValue());
+			entry.lastValue = element.getValue();
+			entry.lastTimestamp = element.getTimestamp();
+		}
+
+		// side output input event if
+		// element not handled by any window
+		// late arriving tag has been set
+		// windowAssigner is event time and current timestamp + allowed lateness no less than element timestamp
+		if (isSkippedElement) {
+			if (isElementLate(element)) {
+				if (lateDataOutputTag != null) {
+					sideOutput(element);
+				} else {
+					this.numLateRecordsDropped.inc();
+				}
+			}
+			return;
+		}
+
+		if (++numBundledElements >= maxBundleSize) {
+			flushBundle();
+		} else if (maxBundleLatency > 0 && numBundledElements == 1) {
+			registerFlush(getProcessingTimeService().getCurrentProcessingTime() + maxBundleLatency);
+		}
+	}
+
+	/**
+	 * Makes sure that the bundle is flushed no later than the given processing time. Callbacks of
+	 * superseded flushes are not cancelled, they merely flush the bundle early.
+	 */
+	private void registerFlush(long time) {
+		if (time < nextFlushTime) {
+			nextFlushTime = time;
+			getProcessingTimeService().registerTimer(time, timestamp -> {
+				if (timestamp >= nextFlushTime) {
+					nextFlushTime = Long.MAX_VALUE;
+				}
+				flushBundle();
+			});
+		}
+	}
+
+	@Override
+	public void processWatermark(Watermark mark) throws Exception {
+		// the event time timers and the late firing of windows depend on the buffered contents
+		flushBundle();
+		super.processWatermark(mark);
+	}
+
+	@Override
+	public void onProcessingTime(InternalTimer<K, W> timer) throws Exception {
+		flushBundle();
+		super.onProcessingTime(timer);
+	}
+
+	@Override
+	public void prepareSnapshotPreBarrier(long checkpointId) throws Exception {
+		super.prepareSnapshotPreBarrier(checkpointId);
+		flushBundle();
+	}
+
+	/**
+	 * Writes the buffered window contents to the state and evaluates the trigger for them, like
+	 * the {@link WindowOperator} does for every element.
+	 */
+	private void flushBundle() throws Exception {
+		if (bundle == null || bundle.isEmpty()) {
+			return;
+		}
+
+		// flushing may happen while the key context is set for a timer or an element
+		final Object currentKey = getCurrentKey();
+
+		for (Map.Entry<Tuple2<K, W>, BundleEntry<IN>> bundleEntry : bundle.entrySet()) {
+			final K key = bundleEntry.getKey().f0;
+			final W window = bundleEntry.getKey().f1;
+			final BundleEntry<IN> entry = bundleEntry.getValue();
+
+			setCurrentKey(key);
+			windowContentsState.setCurrentNamespace(window);
+			windowContentsState.updateInternal(entry.contents);
+
+			triggerContext.key = key;
+			triggerContext.window = window;
+
+			TriggerResult triggerResult = triggerContext.onElement(reuseRecord.replace(entry.lastValue, entry.lastTimestamp));
+
+			if (triggerResult.isFire()) {
+				ACC contents = windowContentsState.get();
+				if (contents == null) {
+					continue;
+				}
+				emitWindowContents(window, contents);
+			}
+
+			if (triggerResult.isPurge()) {
+				windowContentsState.clear();
+			}
+			registerCleanupTimer(window);
+		}
+
+		bundle.clear();
+		numBundledElements = 0;
+		nextFlushTime = Long.MAX_VALUE;
+
+		if (currentKey != null) {
+			setCurrentKey(currentKey);
+		}
+	}
+
+	private Object add(Object contents, IN value) throws Exception {
+		if (reduceFunction != null) {
+			return contents == null ? value : reduceFunction.reduce(contents, value);
+		} else {
+			return aggregateFunction.add(value, contents == null ? aggregateFunction.createAccumulator() : contents);
+		}
+	}
+
+	/**
+	 * The buffered contents of a key and window, together with the last element that was added.
+	 */
+	private static final class BundleEntry<IN> {
+
+		private Object contents;
+
+		private IN lastValue;
+
+		private long lastTimestamp;
+
+		private BundleEntry(Object contents) {
+			this.contents = contents;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Getters for testing
+	// ------------------------------------------------------------------------
+
+	@VisibleForTesting
+	public int getMaxBundleSize() {
+		return maxBundleSize;
+	}
+
+	@VisibleForTesting
+	public long getMaxBundleLatency() {
+		return maxBundleLatency;
+	}
+}
@@ -0,0 +1,436 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.api.common.functions.AggregateFunction;
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
+import org.apache.flink.api.common.state.AppendingState;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.ReducingStateDescriptor;
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.runtime.state.StateInitializationContext;
+import org.apache.flink.runtime.state.internal.InternalAppendingState;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingProcessingTimeWindows;
+import org.apache.flink.streaming.api.windowing.assigners.WindowAssigner;
+import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.ProcessingTimeTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.Trigger;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalWindowFunction;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.util.OutputTag;
+import org.apache.flink.util.StateMigrationException;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * A {@link WindowOperator} for sliding time windows that keeps the incrementally aggregated
+ * contents per pane instead of per window.
+ *
+ * <p>A pane is a slice of the time axis whose length is the greatest common divisor of the window
+ * size and slide, so that every window consists of a fixed number of panes. An element is added
+ * to the one pane that contains it, instead of to each of the {@code size / slide} windows it
+ * belongs to. When a window fires, the contents of its panes are combined with the
+ * {@link ReduceFunction} or {@link AggregateFunction#merge(Object, Object) AggregateFunction}
+ * of the window state.
+ *
+ * <p>The operator only supports the default triggers of the sliding assigners
+ * ({@link EventTimeTrigger} and {@link ProcessingTimeTrigger}), whose behaviour it implements
+ * directly, including the firing for late elements within the allowed lateness. Instead of one
+ * timer per window and element, each key has a timer for the first window that has not fired
+ * yet. Firing a window registers the timer for the next window if that window shares non-empty
+ * panes with the fired one.
+ *
+ * <p>The results are the same as those of the {@link WindowOperator}, with one exception: an
+ * element of a window that has already been purged, but is not late, is combined with the
+ * remaining panes of that window, whereas the {@link WindowOperator} creates a new window that
+ * only contains the elements that arrived after the purge. This can only happen for event time
+ * windows before the first watermark after a restore, and for processing time windows if the
+ * element arrives in the millisecond in which the window fired.
+ *
+ * <p>The pane state cannot be converted to or from the per-window state of the {@link WindowOperator},
+ * or to panes of another size. The operator therefore keeps its pane size in operator state, and
+ * restoring a snapshot of the other operator, or one with another pane size, fails.
+ *
+ * @param <K> The type of key returned by the {@code KeySelector}.
+ * @param <IN> The type of the incoming elements.
+ * @param <ACC> The type of the window contents that is given to the {@code InternalWindowFunction}.
+ * @param <OUT> The type of elements emitted by the {@code InternalWindowFunction}.
+ */
+@Internal
+public class PanedSlidingWindowOperator<K, IN, ACC, OUT> extends WindowOperator<K, IN, ACC, OUT, TimeWindow> {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The name of the operator state that holds the pane size, which marks snapshots with pane state. */
+	static final String PANE_SIZE_STATE_NAME = "window-pane-size";
+
+	// ------------------------------------------------------------------------
+	// these fields are set by the API stream graph builder to configure the operator
+
+	private final StateDescriptor<? extends AppendingState<IN, ACC>, ?> paneStateDescriptor;
+
+	private final long slide;
+
+	private final long paneSize;
+
+	private final long paneOffset;
+
+	// ------------------------------------------------------------------------
+	// the fields below are instantiated once the operator runs in the runtime
+
+	/** The pane contents, the namespace is the pane. The internal value is the accumulator. */
+	private transient InternalAppendingState<K, TimeWindow, IN, Object, ACC> paneState;
+
+	/** Copies the pane contents before they are combined, so that the state is never modified. */
+	private transient TypeSerializer<Object> paneContentsSerializer;
+
+	private transient ReduceFunction<Object> reduceFunction;
+
+	private transient AggregateFunction<IN, Object, ACC> aggregateFunction;
+
+	private transient FixedTimeWindowAssignerContext fixedTimeAssignerContext;
+
+	/** Whether the operator was restored from a snapshot that has no pane state. */
+	private transient boolean restoredWithoutPanes;
+
+	// ------------------------------------------------------------------------
+
+	public PanedSlidingWindowOperator(
+			WindowAssigner<? super IN, TimeWindow> windowAssigner,
+			TypeSerializer<TimeWindow> windowSerializer,
+			KeySelector<IN, K> keySelector,
+			TypeSerializer<K> keySerializer,
+			StateDescriptor<? extends AppendingState<IN, ACC>, ?> paneStateDescriptor,
+			InternalWindowFunction<ACC, OUT, K, TimeWindow> windowFunction,
+			Trigger<? super IN, ? super TimeWindow> trigger,
+			long allowedLateness,
+			OutputTag<IN> lateDataOutputTag) {
+
+		super(windowAssigner, windowSerializer, keySelector,
+			keySerializer, null, windowFunction, trigger, allowedLateness, lateDataOutputTag);
+
+		checkArgument(isApplicable(windowAssigner, trigger),
+			"Panes can only be shared by sliding time windows with their default trigger.");
+		checkArgument(paneStateDescriptor instanceof ReducingStateDescriptor || paneStateDescriptor instanceof AggregatingStateDescriptor,
+			"Panes can only be shared by windows with a reducing or aggregating state.");
+		checkArgument(paneStateDescriptor.isSerializerInitialized(),
+			"window state serializer is not properly initialized");
+
+		final long size;
+		final long offset;
+		if (windowAssigner instanceof SlidingEventTimeWindows) {
+			SlidingEventTimeWindows assigner = (SlidingEventTimeWindows) windowAssigner;
+			size = assigner.getSize();
+			this.slide = assigner.getSlide();
+			offset = assigner.getOffset();
+		} else {
+			SlidingProcessingTimeWindows assigner = (SlidingProcessingTimeWindows) windowAssigner;
+			size = assigner.getSize();
+			this.slide = assigner.getSlide();
+			offset = assigner.getOffset();
+		}
+
+		this.paneStateDescriptor = checkNotNull(paneStateDescriptor);
+		this.paneSize = gcd(size, slide);
+		this.paneOffset = offset % paneSize;
+	}
+
+	/**
+	 * Returns whether panes can be shared by the windows of the given assigner and trigger.
+	 */
+	public static boolean isApplicable(WindowAssigner<?, ?> windowAssigner, Trigger<?, ?> trigger) {
+		return (windowAssigner.getClass() == SlidingEventTimeWindows.class && trigger.getClass() == EventTimeTrigger.class)
+			|| (windowAssigner.getClass() == SlidingProcessingTimeWindows.class && trigger.getClass() == ProcessingTimeTrigger.class);
+	}
+
+	@Override
+	public void initializeState(StateInitializationContext context) throws Exception {
+		super.initializeState(context);
+
+		final ListState<Long> paneSizeState = context.getOperatorStateStore().getUnionListState(
+			new ListStateDescriptor<>(PANE_SIZE_STATE_NAME, LongSerializer.INSTANCE));
+
+		if (context.isRestored()) {
+			restoredWithoutPanes = true;
+			for (long restoredPaneSize : paneSizeState.get()) {
+				if (restoredPaneSize != paneSize) {
+					throw new StateMigrationException("The snapshot contains panes of " + restoredPaneSize +
+						" ms, which cannot be restored as panes of " + paneSize + " ms. Restore the snapshot" +
+						" with the previous window size and slide, or without state for this operator.");
+				}
+				restoredWithoutPanes = false;
+			}
+		}
+		paneSizeState.update(Collections.singletonList(paneSize));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void open() throws Exception {
+		super.open();
+
+		// a snapshot without pane state but with timers holds the windows of a WindowOperator
+		if (restoredWithoutPanes) {
+			internalTimerService.forEachEventTimeTimer((window, timestamp) -> rejectWindowState());
+			internalTimerService.forEachProcessingTimeTimer((window, timestamp) -> rejectWindowState());
+		}
+
+		fixedTimeAssignerContext = new FixedTimeWindowAssignerContext();
+
+		paneState = (InternalAppendingState<K, TimeWindow, IN, Object, ACC>)
+			getOrCreateKeyedState(windowSerializer, paneStateDescriptor);
+		paneContentsSerializer = (TypeSerializer<Object>) paneStateDescriptor.getSerializer().duplicate();
+
+		if (paneStateDescriptor instanceof ReducingStateDescriptor) {
+			reduceFunction = ((ReducingStateDescriptor<Object>) paneStateDescriptor).getReduceFunction();
+		} else {
+			aggregateFunction = ((AggregatingStateDescriptor<IN, Object, ACC>) paneStateDescriptor).getAggregateFunction();
+		}
+	}
+
+	private static void rejectWindowState() throws StateMigrationException {
+		throw new StateMigrationException("The snapshot contains the state of windows that do not share" +
+			" panes, which cannot be restored with window pane sharing. Restore the snapshot with window" +
+			" pane sharing disabled, see ExecutionConfig#enableWindowPaneSharing().");
+	}
+
+	@Override
+	public void close() throws Exception {
+		super.close();
+		fixedTimeAssignerContext = null;
+	}
+
+	@Override
+	public void dispose() throws Exception {
+		super.dispose();
+		fixedTimeAssignerContext = null;
+	}
+
+	@Override
+	public void processElement(StreamRecord<IN> element) throws Exception {
+		// the assigner and the pane must see the same processing time
+		final long time = windowAssigner.isEventTime() ?
+			element.getTimestamp() : internalTimerService.currentProcessingTime();
+		fixedTimeAssignerContext.time = time;
+
+		final Collection<TimeWindow> elementWindows = windowAssigner.assignWindows(
+			element.getValue(), time, fixedTimeAssignerContext);
+
+		//if element is handled by none of assigned elementWindows
+		boolean isSkippedElement = true;
+		for (TimeWindow window : elementWindows) {
+			if (!isWindowLate(window)) {
+				isSkippedElement = false;
+				break;
+			}
+		}
+
+		if (isSkippedElement) {
+			if (isElementLate(element)) {
+				if (lateDataOutputTag != null) {
+					sideOutput(element);
+				} else {
+					this.numLateRecordsDropped.inc();
+				}
+			}
+			return;
+		}
+
+		final long paneStart = TimeWindow.getWindowStartWithOffset(time, paneOffset, paneSize);
+		paneState.setCurrentNamespace(new TimeWindow(paneStart, paneStart + paneSize));
+		paneState.add(element.getValue());
+
+		triggerContext.key = this.<K>getKeyedStateBackend().getCurrentKey();
+
+		TimeWindow firstPendingWindow = null;
+		for (TimeWindow window : elementWindows) {
+			// drop if the window is already late
+			if (isWindowLate(window)) {
+				continue;
+			}
+
+			if (windowAssigner.isEventTime() && window.maxTimestamp() <= internalTimerService.currentWatermark()) {
+				// like the EventTimeTrigger, fire again for elements that arrive after the window fired
+				triggerContext.window = window;
+				fireWindow(window);
+				registerCleanupTimer(window);
+			} else if (firstPendingWindow == null || window.getStart() < firstPendingWindow.getStart()) {
+				firstPendingWindow = window;
+			}
+		}
+
+		if (firstPendingWindow != null) {
+			triggerContext.window = firstPendingWindow;
+			registerFireTimer(firstPendingWindow);
+		}
+	}
+
+	@Override
+	public void onEventTime(InternalTimer<K, TimeWindow> timer) throws Exception {
+		if (windowAssigner.isEventTime()) {
+			onTimer(timer);
+		}
+	}
+
+	@Override
+	public void onProcessingTime(InternalTimer<K, TimeWindow> timer) throws Exception {
+		if (!windowAssigner.isEventTime()) {
+			onTimer(timer);
+		}
+	}
+
+	private void onTimer(InternalTimer<K, TimeWindow> timer) throws Exception {
+		final TimeWindow window = timer.getNamespace();
+		triggerContext.key = timer.getKey();
+		triggerContext.window = window;
+
+		final boolean isCleanupTime = isCleanupTime(window, timer.getTimestamp());
+
+		if (timer.getTimestamp() == window.maxTimestamp()) {
+			if (fireWindow(window)) {
+				final TimeWindow nextWindow = new TimeWindow(window.getStart() + slide, window.getEnd() + slide);
+				triggerContext.window = nextWindow;
+				registerFireTimer(nextWindow);
+				triggerContext.window = window;
+			}
+
+			if (!isCleanupTime) {
+				registerCleanupTimer(window);
+			}
+		}
+
+		if (isCleanupTime) {
+			clearWindow(window);
+		}
+	}
+
+	/**
+	 * Emits the combined contents of the panes of the given window.
+	 *
+	 * @return True, if the next window shares a non-empty pane with the given window.
+	 */
+	private boolean fireWindow(TimeWindow window) throws Exception {
+		final long nextWindowStart = window.getStart() + slide;
+
+		Object accumulator = null;
+		boolean nextWindowHasContents = false;
+
+		for (long paneStart = window.getStart(); paneStart < window.getEnd(); paneStart += paneSize) {
+			paneState.setCurrentNamespace(new TimeWindow(paneStart, paneStart + paneSize));
+			final Object paneContents = paneState.getInternal();
+			if (paneContents == null) {
+				continue;
+			}
+
+			final Object copy = paneContentsSerializer.copy(paneContents);
+			accumulator = accumulator == null ? copy : combine(accumulator, copy);
+			nextWindowHasContents |= paneStart >= nextWindowStart;
+		}
+
+		if (accumulator != null) {
+			emitWindowContents(window, getResult(accumulator));
+		}
+		return nextWindowHasContents;
+	}
+
+	/**
+	 * Drops the per-window state of the user function and the panes that are not part of a later
+	 * window, i.e. the panes of the first slide of the window.
+	 */
+	private void clearWindow(TimeWindow window) throws Exception {
+		processContext.window = window;
+		processContext.clear();
+
+		for (long paneStart = window.getStart(); paneStart < window.getStart() + slide; paneStart += paneSize) {
+			paneState.setCurrentNamespace(new TimeWindow(paneStart, paneStart + paneSize));
+			paneState.clear();
+		}
+	}
+
+	private void registerFireTimer(TimeWindow window) {
+		if (windowAssigner.isEventTime()) {
+			triggerContext.registerEventTimeTimer(window.maxTimestamp());
+		} else {
+			triggerContext.registerProcessingTimeTimer(window.maxTimestamp());
+		}
+	}
+
+	private Object combine(Object accumulator, Object paneContents) throws Exception {
+		return reduceFunction != null ?
+			reduceFunction.reduce(accumulator, paneContents) :
+			aggregateFunction.merge(accumulator, paneContents);
+	}
+
+	private static long gcd(long a, long b) {
+		while (b != 0) {
+			final long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+	@SuppressWarnings("unchecked")
+	private ACC getResult(Object accumulator) {
+		return reduceFunction != null ? (ACC) accumulator : aggregateFunction.getResult(accumulator);
+	}
+
+	/**
+	 * A {@link WindowAssigner.WindowAssignerContext} with a fixed processing time, so that the
+	 * windows of an element and its pane are derived from the same time.
+	 */
+	private static final class FixedTimeWindowAssignerContext extends WindowAssigner.WindowAssignerContext {
+
+		private long time;
+
+		@Override
+		public long getCurrentProcessingTime() {
+			return time;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Getters for testing
+	// ------------------------------------------------------------------------
+
+	@VisibleForTesting
+	public long getPaneSize() {
+		return paneSize;
+	}
+
+	@Override
+	@VisibleForTesting
+	public StateDescriptor<? extends AppendingState<IN, ACC>, ?> getStateDescriptor() {
+		return paneStateDescriptor;
+	}
+}
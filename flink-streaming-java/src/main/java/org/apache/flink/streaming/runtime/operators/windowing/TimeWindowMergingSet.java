@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.streaming.api.windowing.assigners.DynamicEventTimeSessionWindows;
+import org.apache.flink.streaming.api.windowing.assigners.DynamicProcessingTimeSessionWindows;
+import org.apache.flink.streaming.api.windowing.assigners.EventTimeSessionWindows;
+import org.apache.flink.streaming.api.windowing.assigners.MergingWindowAssigner;
+import org.apache.flink.streaming.api.windowing.assigners.ProcessingTimeSessionWindows;
+import org.apache.flink.streaming.api.windowing.assigners.WindowAssigner;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A {@link MergingWindowSet} for session windows over {@link TimeWindow TimeWindows} that keeps
+ * the in-flight windows of a key in one sorted array of primitive longs instead of a map of
+ * window objects.
+ *
+ * <p>Each in-flight window takes {@link #ENTRY_SIZE} consecutive slots: the start and end of the
+ * window, followed by the start and end of its state window. The entries are sorted by window
+ * start. Because every added window is merged with all windows it intersects, the in-flight
+ * windows never intersect each other, so the entries are sorted by window end as well and the
+ * windows that a new window merges with form a contiguous range that is found by binary search.
+ *
+ * <p>This yields the same windows and merges as a {@link MergingWindowSet} with an assigner that
+ * uses {@link TimeWindow#mergeWindows(java.util.Collection, MergingWindowAssigner.MergeCallback)},
+ * which is why it is only used for the session window assigners that merge this way. The state
+ * window of a merge result is always the one of the earliest merged window, where
+ * {@link MergingWindowSet} picks any of them. Adding a window that neither merges with nor
+ * extends an existing window allocates no collections, and the array is only written back to
+ * state if it changed.
+ */
+@Internal
+public class TimeWindowMergingSet extends MergingWindowSet<TimeWindow> {
+
+	/** The number of longs that describe one in-flight window and its state window. */
+	static final int ENTRY_SIZE = 4;
+
+	private static final long[] EMPTY = new long[0];
+
+	private final ValueState<long[]> state;
+
+	/**
+	 * The in-flight windows. A changed set is always written to a new array, so that the array
+	 * that was read from state is never modified.
+	 */
+	private long[] windows;
+
+	private boolean changed;
+
+	/**
+	 * Restores a {@link TimeWindowMergingSet} from the given state.
+	 */
+	public TimeWindowMergingSet(MergingWindowAssigner<?, TimeWindow> windowAssigner, ValueState<long[]> state) throws Exception {
+		super(windowAssigner);
+		this.state = state;
+
+		long[] restored = state.value();
+		this.windows = restored != null ? restored : EMPTY;
+	}
+
+	/**
+	 * Returns whether the given assigner merges its windows the way this set does.
+	 */
+	public static boolean isApplicable(WindowAssigner<?, ?> windowAssigner) {
+		Class<?> assignerClass = windowAssigner.getClass();
+		return assignerClass == EventTimeSessionWindows.class
+			|| assignerClass == ProcessingTimeSessionWindows.class
+			|| assignerClass == DynamicEventTimeSessionWindows.class
+			|| assignerClass == DynamicProcessingTimeSessionWindows.class;
+	}
+
+	/**
+	 * Converts the mapping from in-flight window to state window that a {@link MergingWindowSet}
+	 * keeps in its list state to the array that this set keeps in its value state.
+	 */
+	static long[] fromMapping(Iterable<Tuple2<TimeWindow, TimeWindow>> mapping) {
+		List<Tuple2<TimeWindow, TimeWindow>> sorted = new ArrayList<>();
+		for (Tuple2<TimeWindow, TimeWindow> entry : mapping) {
+			sorted.add(entry);
+		}
+		sorted.sort(Comparator.comparingLong(entry -> entry.f0.getStart()));
+
+		long[] windows = new long[sorted.size() * ENTRY_SIZE];
+		for (int i = 0; i < sorted.size(); i++) {
+			Tuple2<TimeWindow, TimeWindow> entry = sorted.get(i);
+			windows[i * ENTRY_SIZE] = entry.f0.getStart();
+			windows[i * ENTRY_SIZE + 1] = entry.f0.getEnd();
+			windows[i * ENTRY_SIZE + 2] = entry.f1.getStart();
+			windows[i * ENTRY_SIZE + 3] = entry.f1.getEnd();
+		}
+		return windows;
+	}
+
+	/**
+	 * Converts the array that this set keeps in its value state to the mapping from in-flight
+	 * window to state window that a {@link MergingWindowSet} keeps in its list state.
+	 */
+	static List<Tuple2<TimeWindow, TimeWindow>> toMapping(long[] windows) {
+		List<Tuple2<TimeWindow, TimeWindow>> mapping = new ArrayList<>(windows.length / ENTRY_SIZE);
+		for (int i = 0; i < windows.length; i += ENTRY_SIZE) {
+			mapping.add(Tuple2.of(
+				new TimeWindow(windows[i], windows[i + 1]),
+				new TimeWindow(windows[i + 2], windows[i + 3])));
+		}
+		return mapping;
+	}
+
+	@Override
+	public void persist() throws Exception {
+		if (changed) {
+			if (windows.length == 0) {
+				state.clear();
+			} else {
+				state.update(windows);
+			}
+			changed = false;
+		}
+	}
+
+	@Override
+	public TimeWindow getStateWindow(TimeWindow window) {
+		int index = indexOf(window);
+		return index < 0 ? null : stateWindowAt(index);
+	}
+
+	@Override
+	public void retireWindow(TimeWindow window) {
+		int index = indexOf(window);
+		if (index < 0) {
+			throw new IllegalStateException("Window " + window + " is not in in-flight window set.");
+		}
+		removeEntries(index, index + 1);
+	}
+
+	@Override
+	public TimeWindow addWindow(TimeWindow newWindow, MergeFunction<TimeWindow> mergeFunction) throws Exception {
+		final long start = newWindow.getStart();
+		final long end = newWindow.getEnd();
+
+		// the windows in [first, last) intersect the new window, see TimeWindow#intersects()
+		final int first = firstEndingAtOrAfter(start);
+		int last = first;
+		while (last < size() && windows[last * ENTRY_SIZE] <= end) {
+			last++;
+		}
+
+		if (first == last) {
+			insertEntry(first, start, end);
+			return newWindow;
+		}
+
+		final long mergedStart = Math.min(start, windows[first * ENTRY_SIZE]);
+		final long mergedEnd = Math.max(end, windows[(last - 1) * ENTRY_SIZE + 1]);
+
+		if (last - first == 1 && mergedStart == windows[first * ENTRY_SIZE] && mergedEnd == windows[first * ENTRY_SIZE + 1]) {
+			// the new window is covered by an existing window, nothing to merge
+			return windowAt(first);
+		}
+
+		final TimeWindow mergeResult = new TimeWindow(mergedStart, mergedEnd);
+		final TimeWindow stateWindowResult = stateWindowAt(first);
+
+		final List<TimeWindow> mergedWindows = new ArrayList<>(last - first);
+		final List<TimeWindow> mergedStateWindows = new ArrayList<>(last - first - 1);
+		for (int i = first; i < last; i++) {
+			mergedWindows.add(windowAt(i));
+			if (i > first) {
+				mergedStateWindows.add(stateWindowAt(i));
+			}
+		}
+
+		// keep the state window of the earliest merged window
+		removeEntries(first + 1, last);
+		windows[first * ENTRY_SIZE] = mergedStart;
+		windows[first * ENTRY_SIZE + 1] = mergedEnd;
+
+		mergeFunction.merge(mergeResult, mergedWindows, stateWindowResult, mergedStateWindows);
+
+		return mergeResult;
+	}
+
+	private int size() {
+		return windows.length / ENTRY_SIZE;
+	}
+
+	private TimeWindow windowAt(int index) {
+		return new TimeWindow(windows[index * ENTRY_SIZE], windows[index * ENTRY_SIZE + 1]);
+	}
+
+	private TimeWindow stateWindowAt(int index) {
+		return new TimeWindow(windows[index * ENTRY_SIZE + 2], windows[index * ENTRY_SIZE + 3]);
+	}
+
+	/**
+	 * Returns the index of the first window whose end is not before the given timestamp, or the
+	 * number of windows if there is no such window.
+	 */
+	private int firstEndingAtOrAfter(long timestamp) {
+		int low = 0;
+		int high = size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (windows[mid * ENTRY_SIZE + 1] < timestamp) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int indexOf(TimeWindow window) {
+		int index = firstEndingAtOrAfter(window.getEnd());
+		if (index < size()
+				&& windows[index * ENTRY_SIZE] == window.getStart()
+				&& windows[index * ENTRY_SIZE + 1] == window.getEnd()) {
+			return index;
+		}
+		return -1;
+	}
+
+	private void insertEntry(int index, long start, long end) {
+		long[] updated = new long[windows.length + ENTRY_SIZE];
+		System.arraycopy(windows, 0, updated, 0, index * ENTRY_SIZE);
+		System.arraycopy(windows, index * ENTRY_SIZE, updated, (index + 1) * ENTRY_SIZE, windows.length - index * ENTRY_SIZE);
+		updated[index * ENTRY_SIZE] = start;
+		updated[index * ENTRY_SIZE + 1] = end;
+		updated[index * ENTRY_SIZE + 2] = start;
+		updated[index * ENTRY_SIZE + 3] = end;
+		windows = updated;
+		changed = true;
+	}
+
+	/**
+	 * Removes the windows in [from, to), always copying to a new array.
+	 */
+	private void removeEntries(int from, int to) {
+		long[] updated = new long[windows.length - (to - from) * ENTRY_SIZE];
+		System.arraycopy(windows, 0, updated, 0, from * ENTRY_SIZE);
+		System.arraycopy(windows, to * ENTRY_SIZE, updated, from * ENTRY_SIZE, windows.length - to * ENTRY_SIZE);
+		windows = updated;
+		changed = true;
+	}
+
+	@Override
+	public String toString() {
+		return "TimeWindowMergingSet{" +
+				"windows=" + Arrays.toString(windows) +
+				'}';
+	}
+}
@@ -40,6 +40,7 @@ import org.apache.flink.api.common.state.ValueState;
 import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.array.LongPrimitiveArraySerializer;
 import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.api.java.typeutils.TypeExtractor;
@@ -48,11 +49,13 @@ import org.apache.flink.metrics.Counter;
 import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.runtime.state.DefaultKeyedStateStore;
 import org.apache.flink.runtime.state.KeyedStateBackend;
+import org.apache.flink.runtime.state.StateInitializationContext;
 import org.apache.flink.runtime.state.VoidNamespace;
 import org.apache.flink.runtime.state.VoidNamespaceSerializer;
 import org.apache.flink.runtime.state.internal.InternalAppendingState;
 import org.apache.flink.runtime.state.internal.InternalListState;
 import org.apache.flink.runtime.state.internal.InternalMergingState;
+import org.apache.flink.runtime.state.internal.InternalValueState;
 import org.apache.flink.streaming.api.operators.AbstractUdfStreamOperator;
 import org.apache.flink.streaming.api.operators.ChainingStrategy;
 import org.apache.flink.streaming.api.operators.InternalTimer;
@@ -65,13 +68,17 @@ import org.apache.flink.streaming.api.windowing.assigners.MergingWindowAssigner;
 import org.apache.flink.streaming.api.windowing.assigners.WindowAssigner;
 import org.apache.flink.streaming.api.windowing.triggers.Trigger;
 import org.apache.flink.streaming.api.windowing.triggers.TriggerResult;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
 import org.apache.flink.streaming.api.windowing.windows.Window;
 import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalWindowFunction;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 import org.apache.flink.util.OutputTag;
+import org.apache.flink.util.StateMigrationException;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
@@ -158,6 +165,12 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 	/** The state that holds the merging window metadata (the sets that describe what is merged). */
 	private transient InternalListState<K, VoidNamespace, Tuple2<W, W>> mergingSetsState;
 
+	/**
+	 * The state that holds the merging window metadata of session windows in the compact
+	 * representation of {@link TimeWindowMergingSet}. Null if the compact representation is not used.
+	 */
+	private transient InternalValueState<K, VoidNamespace, long[]> compactMergingSetsState;
+
 	/**
 	 * This is given to the {@code InternalWindowFunction} for emitting elements with a given
 	 * timestamp.
@@ -214,6 +227,19 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 		setChainingStrategy(ChainingStrategy.ALWAYS);
 	}
 
+	@Override
+	public void initializeState(StateInitializationContext context) throws Exception {
+		super.initializeState(context);
+
+		if (context.isRestored()
+				&& !(this instanceof PanedSlidingWindowOperator)
+				&& context.getOperatorStateStore().getRegisteredStateNames().contains(PanedSlidingWindowOperator.PANE_SIZE_STATE_NAME)) {
+			throw new StateMigrationException("The snapshot contains the state of windows that share panes," +
+				" which cannot be restored without window pane sharing. Restore the snapshot with window" +
+				" pane sharing enabled, see ExecutionConfig#enableWindowPaneSharing().");
+		}
+	}
+
 	@Override
 	public void open() throws Exception {
 		super.open();
@@ -255,6 +281,7 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 //						"The window uses a merging assigner, but the window state is not mergeable.");
 //			}
 
+			// get the state that stores the merging sets
 			@SuppressWarnings("unchecked")
 			final Class<Tuple2<W, W>> typedTuple = (Class<Tuple2<W, W>>) (Class<?>) Tuple2.class;
 
@@ -265,10 +292,92 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 			final ListStateDescriptor<Tuple2<W, W>> mergingSetsStateDescriptor =
 					new ListStateDescriptor<>("merging-window-set", tupleSerializer);
 
-			// get the state that stores the merging sets
-			mergingSetsState = (InternalListState<K, VoidNamespace, Tuple2<W, W>>)
-					getOrCreateKeyedState(VoidNamespaceSerializer.INSTANCE, mergingSetsStateDescriptor);
-			mergingSetsState.setCurrentNamespace(VoidNamespace.INSTANCE);
+			final ValueStateDescriptor<long[]> compactMergingSetsStateDescriptor =
+					new ValueStateDescriptor<>("compact-merging-window-set", LongPrimitiveArraySerializer.INSTANCE);
+
+			if (getExecutionConfig().isCompactSessionWindowSetEnabled() && TimeWindowMergingSet.isApplicable(windowAssigner)) {
+				compactMergingSetsState = (InternalValueState<K, VoidNamespace, long[]>)
+						getOrCreateKeyedState(VoidNamespaceSerializer.INSTANCE, compactMergingSetsStateDescriptor);
+				compactMergingSetsState.setCurrentNamespace(VoidNamespace.INSTANCE);
+				mergingSetsState = null;
+
+				migrateToCompactMergingSets(mergingSetsStateDescriptor);
+			} else {
+				mergingSetsState = (InternalListState<K, VoidNamespace, Tuple2<W, W>>)
+						getOrCreateKeyedState(VoidNamespaceSerializer.INSTANCE, mergingSetsStateDescriptor);
+				mergingSetsState.setCurrentNamespace(VoidNamespace.INSTANCE);
+				compactMergingSetsState = null;
+
+				if (TimeWindowMergingSet.isApplicable(windowAssigner)) {
+					migrateFromCompactMergingSets(compactMergingSetsStateDescriptor);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves the merging window sets that were restored from a snapshot taken without
+	 * {@link ExecutionConfig#enableCompactSessionWindowSet()} to the compact merging sets.
+	 */
+	@SuppressWarnings("unchecked")
+	private void migrateToCompactMergingSets(ListStateDescriptor<Tuple2<W, W>> mergingSetsStateDescriptor) throws Exception {
+		if (!hasRestoredState(mergingSetsStateDescriptor.getName())) {
+			return;
+		}
+
+		final Object currentKey = getCurrentKey();
+		this.<K>getKeyedStateBackend().applyToAllKeys(
+			VoidNamespace.INSTANCE,
+			VoidNamespaceSerializer.INSTANCE,
+			mergingSetsStateDescriptor,
+			(key, legacyState) -> {
+				Iterable<Tuple2<TimeWindow, TimeWindow>> mapping =
+						(Iterable<Tuple2<TimeWindow, TimeWindow>>) (Iterable<?>) legacyState.get();
+				if (mapping != null) {
+					compactMergingSetsState.update(TimeWindowMergingSet.fromMapping(mapping));
+				}
+				legacyState.clear();
+			});
+		if (currentKey != null) {
+			setCurrentKey(currentKey);
+		}
+	}
+
+	/**
+	 * Moves the compact merging sets that were restored from a snapshot taken with
+	 * {@link ExecutionConfig#enableCompactSessionWindowSet()} to the merging window sets.
+	 */
+	@SuppressWarnings("unchecked")
+	private void migrateFromCompactMergingSets(ValueStateDescriptor<long[]> compactMergingSetsStateDescriptor) throws Exception {
+		if (!hasRestoredState(compactMergingSetsStateDescriptor.getName())) {
+			return;
+		}
+
+		final Object currentKey = getCurrentKey();
+		this.<K>getKeyedStateBackend().applyToAllKeys(
+			VoidNamespace.INSTANCE,
+			VoidNamespaceSerializer.INSTANCE,
+			compactMergingSetsStateDescriptor,
+			(key, compactState) -> {
+				long[] windows = compactState.value();
+				if (windows != null) {
+					mergingSetsState.update((List<Tuple2<W, W>>) (List<?>) TimeWindowMergingSet.toMapping(windows));
+				}
+				compactState.clear();
+			});
+		if (currentKey != null) {
+			setCurrentKey(currentKey);
+		}
+	}
+
+	/**
+	 * Returns whether the keyed state with the given name has a value for any key. The state may
+	 * have been restored without being registered by this operator, and is only registered for the
+	 * migration if it has values.
+	 */
+	private boolean hasRestoredState(String stateName) {
+		try (Stream<K> keys = this.<K>getKeyedStateBackend().getKeys(stateName, VoidNamespace.INSTANCE)) {
+			return keys.findAny().isPresent();
 		}
 	}
 
@@ -543,7 +652,7 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 	 * Emits the contents of the given window using the {@link InternalWindowFunction}.
 	 */
 	@SuppressWarnings("unchecked")
-	private void emitWindowContents(W window, ACC contents) throws Exception {
+	protected void emitWindowContents(W window, ACC contents) throws Exception {
 		timestampedCollector.setAbsoluteTimestamp(window.maxTimestamp());
 		processContext.window = window;
 		userFunction.process(triggerContext.key, window, processContext, contents, timestampedCollector);
@@ -568,6 +677,12 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 	protected MergingWindowSet<W> getMergingWindowSet() throws Exception {
 		@SuppressWarnings("unchecked")
 		MergingWindowAssigner<? super IN, W> mergingAssigner = (MergingWindowAssigner<? super IN, W>) windowAssigner;
+		if (compactMergingSetsState != null) {
+			@SuppressWarnings("unchecked")
+			MergingWindowSet<W> compactSet = (MergingWindowSet<W>) (MergingWindowSet<?>) new TimeWindowMergingSet(
+					(MergingWindowAssigner<?, TimeWindow>) (MergingWindowAssigner<?, ?>) mergingAssigner, compactMergingSetsState);
+			return compactSet;
+		}
 		return new MergingWindowSet<>(mergingAssigner, mergingSetsState);
 	}
 
@@ -21,18 +21,23 @@ package org.apache.flink.streaming.runtime.tasks;
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.configuration.CheckpointingOptions;
 import org.apache.flink.metrics.Counter;
 import org.apache.flink.runtime.execution.Environment;
 import org.apache.flink.runtime.io.network.partition.consumer.IndexedInputGate;
 import org.apache.flink.runtime.io.network.partition.consumer.InputGate;
 import org.apache.flink.runtime.metrics.MetricNames;
 import org.apache.flink.streaming.api.graph.StreamConfig;
+import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
+import org.apache.flink.streaming.api.operators.AbstractStreamOperatorV2;
 import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.io.AbstractDataOutput;
 import org.apache.flink.streaming.runtime.io.CheckpointedInputGate;
 import org.apache.flink.streaming.runtime.io.InputGateUtil;
 import org.apache.flink.streaming.runtime.io.InputProcessorUtil;
+import org.apache.flink.streaming.runtime.io.KeyedStatePrefetcher;
 import org.apache.flink.streaming.runtime.io.PushingAsyncDataInput.DataOutput;
 import org.apache.flink.streaming.runtime.io.StreamOneInputProcessor;
 import org.apache.flink.streaming.runtime.io.StreamTaskInput;
@@ -130,8 +135,36 @@ public class OneInputStreamTask<IN, OUT> extends StreamTask<OUT, OneInputStreamO
 			inputGate,
 			inSerializer,
 			getEnvironment().getIOManager(),
+			getEnvironment().getMetricGroup().getIOMetricGroup(),
 			statusWatermarkValve,
-			0);
+			0,
+			createKeyedStatePrefetcher());
+	}
+
+	@Nullable
+	@SuppressWarnings("unchecked")
+	private KeyedStatePrefetcher<IN> createKeyedStatePrefetcher() {
+		final int windowSize = getEnvironment().getTaskManagerInfo().getConfiguration()
+			.getInteger(CheckpointingOptions.PREFETCH_WINDOW_SIZE);
+		final KeySelector<IN, ?> keySelector =
+			(KeySelector<IN, ?>) configuration.getStatePartitioner(0, getUserCodeClassLoader());
+
+		// records looked ahead would be missing from the channel state of unaligned checkpoints
+		if (windowSize <= 1 || keySelector == null || configuration.isUnalignedCheckpointsEnabled()) {
+			return null;
+		}
+
+		return new KeyedStatePrefetcher<>(
+			keySelector,
+			() -> {
+				if (headOperator instanceof AbstractStreamOperator) {
+					return ((AbstractStreamOperator<?>) headOperator).getKeyedStateBackend();
+				} else if (headOperator instanceof AbstractStreamOperatorV2) {
+					return ((AbstractStreamOperatorV2<?>) headOperator).getKeyedStateBackend();
+				}
+				return null;
+			},
+			windowSize);
 	}
 
 	/**
@@ -24,6 +24,7 @@ import org.apache.flink.api.common.functions.FoldFunction;
 import org.apache.flink.api.common.functions.Function;
 import org.apache.flink.api.common.functions.MapFunction;
 import org.apache.flink.api.common.functions.Partitioner;
+import org.apache.flink.api.common.functions.ReduceFunction;
 import org.apache.flink.api.common.operators.ResourceSpec;
 import org.apache.flink.api.common.state.MapStateDescriptor;
 import org.apache.flink.api.common.typeinfo.BasicArrayTypeInfo;
@@ -45,6 +46,7 @@ import org.apache.flink.streaming.api.datastream.ConnectedStreams;
 import org.apache.flink.streaming.api.datastream.DataStream;
 import org.apache.flink.streaming.api.datastream.DataStreamSink;
 import org.apache.flink.streaming.api.datastream.DataStreamSource;
+import org.apache.flink.streaming.api.datastream.DataStreamUtils;
 import org.apache.flink.streaming.api.datastream.KeyedStream;
 import org.apache.flink.streaming.api.datastream.SingleOutputStreamOperator;
 import org.apache.flink.streaming.api.datastream.SplitStream;
@@ -61,13 +63,17 @@ import org.apache.flink.streaming.api.functions.sink.SinkFunction;
 import org.apache.flink.streaming.api.functions.windowing.AllWindowFunction;
 import org.apache.flink.streaming.api.graph.StreamEdge;
 import org.apache.flink.streaming.api.graph.StreamGraph;
+import org.apache.flink.streaming.api.graph.StreamNode;
 import org.apache.flink.streaming.api.operators.AbstractUdfStreamOperator;
 import org.apache.flink.streaming.api.operators.KeyedProcessOperator;
 import org.apache.flink.streaming.api.operators.LegacyKeyedProcessOperator;
 import org.apache.flink.streaming.api.operators.ProcessOperator;
+import org.apache.flink.streaming.api.operators.StreamGroupedReduce;
+import org.apache.flink.streaming.api.operators.StreamLocalReduce;
 import org.apache.flink.streaming.api.operators.StreamOperator;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.api.windowing.assigners.GlobalWindows;
+import org.apache.flink.streaming.api.windowing.time.Time;
 import org.apache.flink.streaming.api.windowing.triggers.CountTrigger;
 import org.apache.flink.streaming.api.windowing.triggers.PurgingTrigger;
 import org.apache.flink.streaming.api.windowing.windows.GlobalWindow;
@@ -731,6 +737,62 @@ public class DataStreamTest extends TestLogger {
 		assertTrue(getOperatorForDataStream(processed) instanceof LegacyKeyedProcessOperator);
 	}
 
+	/**
+	 * Verify that a {@link KeyedStream#reduceWithLocalAggregation(ReduceFunction, int, Time)} call
+	 * is translated to a local reduce in front of the key partitioning and a keyed reduce after it.
+	 */
+	@Test
+	public void testKeyedStreamLocalAggregationTranslation() {
+		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+		DataStream<Long> src = env.generateSequence(0, 0).map(x -> x).setParallelism(3);
+
+		ReduceFunction<Long> reducer = (a, b) -> a + b;
+
+		DataStream<Long> reduced = src
+				.keyBy(new IdentityKeySelector<Long>())
+				.reduceWithLocalAggregation(reducer, 100, Time.milliseconds(10));
+
+		reduced.addSink(new DiscardingSink<>());
+
+		StreamGraph streamGraph = getStreamGraph(env);
+		StreamNode reduceNode = streamGraph.getStreamNode(reduced.getId());
+		assertTrue(reduceNode.getOperator() instanceof StreamGroupedReduce);
+
+		StreamEdge keyedEdge = reduceNode.getInEdges().get(0);
+		assertTrue(keyedEdge.getPartitioner() instanceof KeyGroupStreamPartitioner);
+
+		StreamNode localNode = streamGraph.getStreamNode(keyedEdge.getSourceId());
+		assertTrue(localNode.getOperator() instanceof StreamLocalReduce);
+		assertEquals(3, localNode.getParallelism());
+		assertEquals(src.getId(), localNode.getInEdges().get(0).getSourceId());
+	}
+
+	/**
+	 * Verify that {@link KeyedStream#reduceWithLocalAggregation(ReduceFunction, int, Time)} on a stream
+	 * which is only reinterpreted as keyed is translated to a keyed reduce without a local reduce.
+	 */
+	@Test
+	public void testReinterpretedKeyedStreamLocalAggregationTranslation() {
+		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+		DataStream<Long> src = env.generateSequence(0, 0).map(x -> x);
+
+		ReduceFunction<Long> reducer = (a, b) -> a + b;
+
+		DataStream<Long> reduced = DataStreamUtils
+				.reinterpretAsKeyedStream(src, new IdentityKeySelector<Long>())
+				.reduceWithLocalAggregation(reducer, 100, Time.milliseconds(10));
+
+		reduced.addSink(new DiscardingSink<>());
+
+		StreamGraph streamGraph = getStreamGraph(env);
+		StreamNode reduceNode = streamGraph.getStreamNode(reduced.getId());
+		assertTrue(reduceNode.getOperator() instanceof StreamGroupedReduce);
+
+		StreamEdge inputEdge = reduceNode.getInEdges().get(0);
+		assertTrue(inputEdge.getPartitioner() instanceof ForwardPartitioner);
+		assertEquals(src.getId(), inputEdge.getSourceId());
+	}
+
 	/**
 	 * Verify that a {@link KeyedStream#process(KeyedProcessFunction)} call is correctly translated to an operator.
 	 */
@@ -27,6 +27,7 @@ import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
 import org.apache.flink.streaming.api.TimeDomain;
 import org.apache.flink.streaming.api.TimerService;
+import org.apache.flink.streaming.api.functions.EventTimeTimerBatchFunction;
 import org.apache.flink.streaming.api.functions.KeyedProcessFunction;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
@@ -41,6 +42,8 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static org.junit.Assert.assertEquals;
@@ -296,6 +299,48 @@ public class KeyedProcessOperatorTest extends TestLogger {
 		testHarness.close();
 	}
 
+	/**
+	 * Verifies that coalesced event-time timers of different keys fire in one batch.
+	 */
+	@Test
+	public void testCoalescedEventTimeTimerBatches() throws Exception {
+
+		KeyedProcessOperator<Integer, Integer, String> operator =
+				new KeyedProcessOperator<>(new CoalescingBatchFunction());
+
+		OneInputStreamOperatorTestHarness<Integer, String> testHarness =
+				new KeyedOneInputStreamOperatorTestHarness<>(operator, new IdentityKeySelector<Integer>(), BasicTypeInfo.INT_TYPE_INFO);
+
+		testHarness.setup();
+		testHarness.open();
+
+		testHarness.processElement(new StreamRecord<>(1, 11L)); // should set timer for 20
+		testHarness.processElement(new StreamRecord<>(1, 17L)); // should set the same timer
+		testHarness.processElement(new StreamRecord<>(2, 20L)); // should set timer for 20
+		testHarness.processElement(new StreamRecord<>(3, 21L)); // should set timer for 30
+
+		testHarness.processWatermark(new Watermark(30));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+
+		expectedOutput.add(new StreamRecord<>("{1=2, 2=1}", 20L));
+		expectedOutput.add(new StreamRecord<>("{3=1}", 30L));
+		expectedOutput.add(new Watermark(30L));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	@Test
+	public void testCoalescedTimerTime() {
+		assertEquals(20L, TimerService.getCoalescedTimerTime(11L, 10L));
+		assertEquals(20L, TimerService.getCoalescedTimerTime(20L, 10L));
+		assertEquals(-10L, TimerService.getCoalescedTimerTime(-11L, 10L));
+		assertEquals(Long.MAX_VALUE, TimerService.getCoalescedTimerTime(Long.MAX_VALUE - 1, 10L));
+		assertEquals(Long.MIN_VALUE, TimerService.getCoalescedTimerTime(Long.MIN_VALUE, 1L));
+	}
+
 	@Test
 	public void testSnapshotAndRestore() throws Exception {
 
@@ -539,6 +584,41 @@ public class KeyedProcessOperatorTest extends TestLogger {
 		}
 	}
 
+	private static class CoalescingBatchFunction
+			extends KeyedProcessFunction<Integer, Integer, String>
+			implements EventTimeTimerBatchFunction<Integer, String> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ValueStateDescriptor<Integer> state =
+				new ValueStateDescriptor<>("count", IntSerializer.INSTANCE);
+
+		@Override
+		public void processElement(Integer value, Context ctx, Collector<String> out) throws Exception {
+			final ValueState<Integer> state = getRuntimeContext().getState(this.state);
+			state.update(state.value() == null ? 1 : state.value() + 1);
+			ctx.timerService().registerCoalescedEventTimeTimer(ctx.timestamp(), 10L);
+		}
+
+		@Override
+		public void onTimer(long timestamp, OnTimerContext ctx, Collector<String> out) {
+			throw new UnsupportedOperationException("Event-time timers should fire in batches.");
+		}
+
+		@Override
+		public void onEventTimeTimers(
+				long timestamp,
+				Iterable<Integer> keys,
+				TimerService timerService,
+				Collector<String> out) throws Exception {
+			final Map<Integer, Integer> counts = new TreeMap<>();
+			for (Integer key : keys) {
+				counts.put(key, getRuntimeContext().getState(state).value());
+			}
+			out.collect(counts.toString());
+		}
+	}
+
 	private static class BothTriggeringFlatMapFunction extends KeyedProcessFunction<Integer, Integer, String> {
 
 		private static final long serialVersionUID = 1L;
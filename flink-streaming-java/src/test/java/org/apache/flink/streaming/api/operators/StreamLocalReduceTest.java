@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.TestHarnessUtil;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link StreamLocalReduce}.
+ */
+public class StreamLocalReduceTest extends TestLogger {
+
+	@Test
+	public void testFlushOnBundleSize() throws Exception {
+		StreamLocalReduce<String, Tuple2<String, Integer>> operator =
+			new StreamLocalReduce<>(new SumReducer(), new TupleKeySelector(), 4, 0);
+
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			new OneInputStreamOperatorTestHarness<>(operator);
+		testHarness.open();
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 1), 1));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("b", 2), 2));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 3), 3));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 4), 4));
+
+		// the partial results carry the timestamp of their last element
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("a", 8), 4));
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("b", 2), 2));
+		TestHarnessUtil.assertOutputEqualsSorted("Output was not correct.", expectedOutput, testHarness.getOutput(), new StreamRecordComparator());
+		assertEquals(2.0, operator.getReductionRatio(), 0.0);
+
+		testHarness.close();
+	}
+
+	@Test
+	public void testFlushOnWatermark() throws Exception {
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			new OneInputStreamOperatorTestHarness<>(new StreamLocalReduce<>(new SumReducer(), new TupleKeySelector(), 100, 0));
+		testHarness.open();
+
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 1), 1));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 2), 2));
+		testHarness.processWatermark(new Watermark(2));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("a", 3), 2));
+		expectedOutput.add(new Watermark(2));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	@Test
+	public void testFlushOnLatency() throws Exception {
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			new OneInputStreamOperatorTestHarness<>(new StreamLocalReduce<>(new SumReducer(), new TupleKeySelector(), 100, 10));
+		testHarness.setProcessingTime(0);
+		testHarness.open();
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 1)));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 2)));
+		testHarness.setProcessingTime(9);
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.setProcessingTime(10);
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("a", 3)));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		// the next bundle gets a new deadline
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 4)));
+		testHarness.setProcessingTime(19);
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.setProcessingTime(20);
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("a", 4)));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	@Test
+	public void testFlushBeforeCheckpoint() throws Exception {
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			new OneInputStreamOperatorTestHarness<>(new StreamLocalReduce<>(new SumReducer(), new TupleKeySelector(), 100, 0));
+		testHarness.open();
+
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 1), 1));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 2), 2));
+		testHarness.prepareSnapshotPreBarrier(0L);
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("a", 3), 2));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Utilities
+	// ------------------------------------------------------------------------
+
+	private static class SumReducer implements ReduceFunction<Tuple2<String, Integer>> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Tuple2<String, Integer> reduce(Tuple2<String, Integer> value1, Tuple2<String, Integer> value2) {
+			return new Tuple2<>(value1.f0, value1.f1 + value2.f1);
+		}
+	}
+
+	private static class TupleKeySelector implements KeySelector<Tuple2<String, Integer>, String> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String getKey(Tuple2<String, Integer> value) {
+			return value.f0;
+		}
+	}
+
+	private static class StreamRecordComparator implements Comparator<Object> {
+		@Override
+		@SuppressWarnings("unchecked")
+		public int compare(Object o1, Object o2) {
+			return Long.compare(((StreamRecord<Tuple2<String, Integer>>) o1).getTimestamp(), ((StreamRecord<Tuple2<String, Integer>>) o2).getTimestamp());
+		}
+	}
+}
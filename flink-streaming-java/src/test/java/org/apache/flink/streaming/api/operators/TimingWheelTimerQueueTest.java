@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyGroupedInternalPriorityQueue;
+import org.apache.flink.runtime.state.heap.HeapPriorityQueueSetFactory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link TimingWheelTimerQueue}.
+ */
+public class TimingWheelTimerQueueTest {
+
+	private static final int NUM_KEY_GROUPS = 16;
+
+	private static final KeyGroupRange KEY_GROUP_RANGE = new KeyGroupRange(4, 11);
+
+	@Test
+	public void testOrderOfNearTimers() {
+		testAgainstHeap(0L, 10_000L, 7L);
+	}
+
+	@Test
+	public void testOrderOfTimersAcrossAllLevels() {
+		testAgainstHeap(0L, 1L << 42, 1L);
+	}
+
+	@Test
+	public void testOrderOfNegativeAndPositiveTimers() {
+		testAgainstHeap(-100_000L, 100_000L, 100L);
+	}
+
+	@Test
+	public void testEmptyQueue() {
+		TimingWheelTimerQueue<Integer, Integer> queue = new TimingWheelTimerQueue<>(KEY_GROUP_RANGE, NUM_KEY_GROUPS, 10L);
+		assertTrue(queue.isEmpty());
+		assertNull(queue.peek());
+		assertNull(queue.poll());
+
+		TimerHeapInternalTimer<Integer, Integer> timer = new TimerHeapInternalTimer<>(42L, keysInRange(new Random(42L)).get(0), 0);
+		assertTrue(queue.add(timer));
+		assertEquals(timer, queue.peek());
+		assertTrue(queue.remove(timer));
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+	}
+
+	/**
+	 * Applies the same random registrations, deletions and polls to a timing wheel and a heap and compares the timers
+	 * which they contain and return.
+	 */
+	private static void testAgainstHeap(long minTimestamp, long maxTimestamp, long resolution) {
+		final Random random = new Random(42L);
+		final TimingWheelTimerQueue<Integer, Integer> wheel =
+			new TimingWheelTimerQueue<>(KEY_GROUP_RANGE, NUM_KEY_GROUPS, resolution);
+		final KeyGroupedInternalPriorityQueue<TimerHeapInternalTimer<Integer, Integer>> heap =
+			new HeapPriorityQueueSetFactory(KEY_GROUP_RANGE, NUM_KEY_GROUPS, 128).create("heap", new TimerSerializer<>(
+				IntSerializer.INSTANCE, IntSerializer.INSTANCE));
+		final List<Integer> keys = keysInRange(random);
+		final List<TimerHeapInternalTimer<Integer, Integer>> registered = new ArrayList<>();
+
+		long low = minTimestamp;
+		for (int i = 0; i < 100_000; ++i) {
+			final int operation = random.nextInt(10);
+			if (operation < 5) {
+				final long timestamp = low + (long) (random.nextDouble() * (maxTimestamp - low));
+				final TimerHeapInternalTimer<Integer, Integer> timer = new TimerHeapInternalTimer<>(
+					timestamp, keys.get(random.nextInt(keys.size())), random.nextInt(3));
+				registered.add(timer);
+				final TimerHeapInternalTimer<Integer, Integer> head = wheel.peek();
+				if (!wheel.add(timer)) {
+					assertEquals(head, wheel.peek());
+				}
+				heap.add(timer);
+			} else if (operation < 7 && !registered.isEmpty()) {
+				final TimerHeapInternalTimer<Integer, Integer> timer = registered.get(random.nextInt(registered.size()));
+				final TimerHeapInternalTimer<Integer, Integer> head = wheel.peek();
+				if (!wheel.remove(timer)) {
+					assertEquals(head, wheel.peek());
+				}
+				heap.remove(timer);
+			} else {
+				final TimerHeapInternalTimer<Integer, Integer> expected = heap.peek();
+				final TimerHeapInternalTimer<Integer, Integer> actual = wheel.poll();
+				if (expected == null) {
+					assertNull(actual);
+				} else {
+					assertEquals(expected.getTimestamp(), actual.getTimestamp());
+					// the heap may order timers of the same timestamp differently, but must contain the same one
+					final int sizeBefore = heap.size();
+					heap.remove(actual);
+					assertEquals(sizeBefore - 1, heap.size());
+					// new timers are registered after the timers that fired, like processing-time timers
+					low = actual.getTimestamp();
+				}
+			}
+			assertEquals(heap.size(), wheel.size());
+		}
+
+		for (int keyGroup = KEY_GROUP_RANGE.getStartKeyGroup(); keyGroup <= KEY_GROUP_RANGE.getEndKeyGroup(); ++keyGroup) {
+			assertEquals(heap.getSubsetForKeyGroup(keyGroup), wheel.getSubsetForKeyGroup(keyGroup));
+		}
+
+		TimerHeapInternalTimer<Integer, Integer> expected;
+		while ((expected = heap.poll()) != null) {
+			final TimerHeapInternalTimer<Integer, Integer> actual = wheel.poll();
+			assertEquals(expected.getTimestamp(), actual.getTimestamp());
+		}
+		assertTrue(wheel.isEmpty());
+	}
+
+	private static List<Integer> keysInRange(Random random) {
+		final List<Integer> keys = new ArrayList<>();
+		while (keys.size() < 100) {
+			final int key = random.nextInt();
+			if (KEY_GROUP_RANGE.contains(
+				KeyGroupRangeAssignment.assignToKeyGroup(key, NUM_KEY_GROUPS))) {
+				keys.add(key);
+			}
+		}
+		return keys;
+	}
+}
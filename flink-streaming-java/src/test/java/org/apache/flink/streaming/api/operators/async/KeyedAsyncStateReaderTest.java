@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.async;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.state.VoidNamespace;
+import org.apache.flink.runtime.state.VoidNamespaceSerializer;
+import org.apache.flink.runtime.state.internal.InternalAsyncValueState;
+import org.apache.flink.streaming.api.operators.KeyContext;
+import org.apache.flink.streaming.api.operators.MailboxExecutor;
+import org.apache.flink.streaming.runtime.tasks.StreamTaskActionExecutor;
+import org.apache.flink.streaming.runtime.tasks.mailbox.MailboxExecutorImpl;
+import org.apache.flink.streaming.runtime.tasks.mailbox.TaskMailbox;
+import org.apache.flink.streaming.runtime.tasks.mailbox.TaskMailboxImpl;
+import org.apache.flink.util.ExceptionUtils;
+import org.apache.flink.util.FlinkException;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link KeyedAsyncStateReader}.
+ */
+public class KeyedAsyncStateReaderTest extends TestLogger {
+
+	private TestKeyContext keyContext;
+
+	private MailboxExecutor mailboxExecutor;
+
+	private TestAsyncValueState state;
+
+	private List<String> output;
+
+	@Before
+	public void setUp() {
+		TaskMailbox mailbox = new TaskMailboxImpl(Thread.currentThread());
+		mailboxExecutor = new MailboxExecutorImpl(mailbox, 0, StreamTaskActionExecutor.IMMEDIATE);
+		keyContext = new TestKeyContext();
+		state = new TestAsyncValueState(keyContext);
+		output = new ArrayList<>();
+	}
+
+	@Test
+	public void testReadsOfOneKeyAreOrdered() throws Exception {
+		KeyedAsyncStateReader reader = new KeyedAsyncStateReader(keyContext, mailboxExecutor, 10);
+
+		readAndIncrement(reader, "a");
+		readAndIncrement(reader, "a");
+		readAndIncrement(reader, "b");
+
+		// the second read of "a" is only issued once the first one completed
+		assertEquals(Arrays.asList("a", "b"), state.issuedKeys);
+
+		state.completeRead(1);
+		runMails();
+		assertEquals(Collections.singletonList("b=0"), output);
+
+		state.completeRead(0);
+		runMails();
+		assertEquals(Arrays.asList("b=0", "a=0"), output);
+		assertEquals(Arrays.asList("a", "b", "a"), state.issuedKeys);
+
+		// the second read of "a" sees the update of the first one
+		state.completeRead(2);
+		runMails();
+		assertEquals(Arrays.asList("b=0", "a=0", "a=1"), output);
+		assertEquals(0, reader.getNumPendingReads());
+	}
+
+	@Test
+	public void testReadYieldsWhenCapacityIsReached() throws Exception {
+		state.completeImmediately = true;
+		KeyedAsyncStateReader reader = new KeyedAsyncStateReader(keyContext, mailboxExecutor, 1);
+
+		readAndIncrement(reader, "a");
+		assertEquals(1, reader.getNumPendingReads());
+		assertTrue(output.isEmpty());
+
+		// waits for the read of "a", and restores the key of the new read
+		readAndIncrement(reader, "b");
+		assertEquals(Collections.singletonList("a=0"), output);
+		assertEquals(1, reader.getNumPendingReads());
+
+		reader.drain();
+		assertEquals(Arrays.asList("a=0", "b=0"), output);
+	}
+
+	@Test
+	public void testDrain() throws Exception {
+		state.completeImmediately = true;
+		KeyedAsyncStateReader reader = new KeyedAsyncStateReader(keyContext, mailboxExecutor, 10);
+
+		for (int i = 0; i < 3; i++) {
+			readAndIncrement(reader, "a");
+			readAndIncrement(reader, "b");
+		}
+		assertEquals(6, reader.getNumPendingReads());
+
+		reader.drain();
+		assertEquals(0, reader.getNumPendingReads());
+		assertEquals(Arrays.asList("a=0", "b=0", "a=1", "b=1", "a=2", "b=2"), output);
+		assertEquals(Integer.valueOf(3), state.values.get("a"));
+		assertEquals(Integer.valueOf(3), state.values.get("b"));
+	}
+
+	@Test
+	public void testFailedReadFailsInMailbox() throws Exception {
+		KeyedAsyncStateReader reader = new KeyedAsyncStateReader(keyContext, mailboxExecutor, 10);
+
+		readAndIncrement(reader, "a");
+		state.failRead(0, new Exception("expected"));
+
+		try {
+			reader.drain();
+			fail("The failed read should fail the mailbox.");
+		} catch (Exception e) {
+			assertTrue(ExceptionUtils.findThrowable(e, FlinkException.class).isPresent());
+			assertTrue(ExceptionUtils.findThrowableWithMessage(e, "expected").isPresent());
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private void readAndIncrement(KeyedAsyncStateReader reader, String key) throws Exception {
+		keyContext.setCurrentKey(key);
+		reader.read(state, value -> {
+			int count = value == null ? 0 : value;
+			output.add(keyContext.getCurrentKey() + "=" + count);
+			state.update(count + 1);
+		});
+	}
+
+	private void runMails() {
+		while (mailboxExecutor.tryYield()) {
+		}
+	}
+
+	private static final class TestKeyContext implements KeyContext {
+
+		private Object currentKey;
+
+		@Override
+		public void setCurrentKey(Object key) {
+			this.currentKey = key;
+		}
+
+		@Override
+		public Object getCurrentKey() {
+			return currentKey;
+		}
+	}
+
+	/**
+	 * A value state whose asynchronous reads are completed by the test.
+	 */
+	private static final class TestAsyncValueState implements InternalAsyncValueState<String, VoidNamespace, Integer> {
+
+		private final KeyContext keyContext;
+
+		private final Map<String, Integer> values = new HashMap<>();
+
+		private final List<String> issuedKeys = new ArrayList<>();
+
+		private final List<CompletableFuture<Integer>> reads = new ArrayList<>();
+
+		private boolean completeImmediately;
+
+		TestAsyncValueState(KeyContext keyContext) {
+			this.keyContext = keyContext;
+		}
+
+		@Override
+		public CompletableFuture<Integer> asyncValue(Executor completionExecutor) {
+			String key = (String) keyContext.getCurrentKey();
+			issuedKeys.add(key);
+
+			// like the state backends, the value is read when the read is issued
+			CompletableFuture<Integer> read = new CompletableFuture<>();
+			reads.add(read);
+			Integer value = values.get(key);
+			if (completeImmediately) {
+				read.complete(value);
+			}
+			return read.thenApplyAsync(ignored -> value, completionExecutor);
+		}
+
+		void completeRead(int index) {
+			reads.get(index).complete(null);
+		}
+
+		void failRead(int index, Throwable cause) {
+			reads.get(index).completeExceptionally(cause);
+		}
+
+		@Override
+		public Integer value() {
+			return values.get((String) keyContext.getCurrentKey());
+		}
+
+		@Override
+		public void update(Integer value) {
+			values.put((String) keyContext.getCurrentKey(), value);
+		}
+
+		@Override
+		public void clear() {
+			values.remove((String) keyContext.getCurrentKey());
+		}
+
+		@Override
+		public TypeSerializer<String> getKeySerializer() {
+			return StringSerializer.INSTANCE;
+		}
+
+		@Override
+		public TypeSerializer<VoidNamespace> getNamespaceSerializer() {
+			return VoidNamespaceSerializer.INSTANCE;
+		}
+
+		@Override
+		public TypeSerializer<Integer> getValueSerializer() {
+			return IntSerializer.INSTANCE;
+		}
+
+		@Override
+		public void setCurrentNamespace(VoidNamespace namespace) {
+		}
+
+		@Override
+		public byte[] getSerializedValue(
+				byte[] serializedKeyAndNamespace,
+				TypeSerializer<String> safeKeySerializer,
+				TypeSerializer<VoidNamespace> safeNamespaceSerializer,
+				TypeSerializer<Integer> safeValueSerializer) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public StateIncrementalVisitor<String, VoidNamespace, Integer> getStateIncrementalVisitor(
+				int recommendedMaxNumberOfReturnedRecords) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -18,6 +18,9 @@
 
 package org.apache.flink.streaming.runtime.io;
 
+import org.apache.flink.api.common.state.State;
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.common.typeutils.base.LongSerializer;
 import org.apache.flink.runtime.checkpoint.CheckpointOptions;
 import org.apache.flink.runtime.checkpoint.channel.ChannelStateWriter;
@@ -33,9 +36,17 @@ import org.apache.flink.runtime.io.network.buffer.BufferBuilderTestUtils;
 import org.apache.flink.runtime.io.network.buffer.BufferConsumer;
 import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
 import org.apache.flink.runtime.io.network.partition.consumer.StreamTestSingleInputGate;
+import org.apache.flink.runtime.metrics.groups.UnregisteredMetricGroups;
 import org.apache.flink.runtime.operators.testutils.DummyCheckpointInvokable;
 import org.apache.flink.runtime.plugable.DeserializationDelegate;
 import org.apache.flink.runtime.plugable.SerializationDelegate;
+import org.apache.flink.runtime.state.KeyGroupedInternalPriorityQueue;
+import org.apache.flink.runtime.state.Keyed;
+import org.apache.flink.runtime.state.KeyedStateFunction;
+import org.apache.flink.runtime.state.PrefetchableKeyedStateBackend;
+import org.apache.flink.runtime.state.PriorityComparable;
+import org.apache.flink.runtime.state.StateSnapshotTransformer.StateSnapshotTransformFactory;
+import org.apache.flink.runtime.state.heap.HeapPriorityQueueElement;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.io.PushingAsyncDataInput.DataOutput;
 import org.apache.flink.streaming.runtime.streamrecord.LatencyMarker;
@@ -48,13 +59,17 @@ import org.apache.flink.streaming.runtime.streamstatus.StreamStatus;
 import org.junit.After;
 import org.junit.Test;
 
+import javax.annotation.Nonnull;
+
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
@@ -186,24 +201,57 @@ public class StreamTaskNetworkInputTest {
 		}
 	}
 
+	@Test
+	public void testStateOfRecordsInBufferIsPrefetched() throws Exception {
+		List<BufferOrEvent> buffers = Collections.singletonList(createDataBuffer(42L, 44L, 46L, 48L, 50L));
+
+		PrefetchRecordingKeyedStateBackend backend = new PrefetchRecordingKeyedStateBackend();
+		KeyedStatePrefetcher<Long> prefetcher = new KeyedStatePrefetcher<>(value -> value, () -> backend, 2);
+		RecordingDataOutput output = new RecordingDataOutput();
+		StreamTaskNetworkInput<Long> input = createStreamTaskNetworkInput(buffers, output, prefetcher);
+
+		for (int i = 0; i < 5; i++) {
+			assertHasNextElement(input, output);
+		}
+
+		assertEquals(Arrays.asList(42L, 44L, 46L, 48L, 50L), output.records);
+		// the last record is alone in its window, so there is nothing to batch
+		assertEquals(Arrays.asList(Arrays.asList(42L, 44L), Arrays.asList(46L, 48L)), backend.prefetchedKeys);
+		assertFalse(input.getAvailableFuture().isDone());
+	}
+
 	private BufferOrEvent createDataBuffer() throws IOException {
+		return createDataBuffer(42L, 44L);
+	}
+
+	private BufferOrEvent createDataBuffer(long... values) throws IOException {
 		BufferBuilder bufferBuilder = BufferBuilderTestUtils.createEmptyBufferBuilder(PAGE_SIZE);
 		BufferConsumer bufferConsumer = bufferBuilder.createBufferConsumer();
-		serializeRecord(42L, bufferBuilder);
-		serializeRecord(44L, bufferBuilder);
+		for (long value : values) {
+			serializeRecord(value, bufferBuilder);
+		}
 
 		return new BufferOrEvent(bufferConsumer.build(), 0, false);
 	}
 
 	private StreamTaskNetworkInput createStreamTaskNetworkInput(List<BufferOrEvent> buffers, DataOutput output) {
+		return createStreamTaskNetworkInput(buffers, output, null);
+	}
+
+	private StreamTaskNetworkInput<Long> createStreamTaskNetworkInput(
+			List<BufferOrEvent> buffers,
+			DataOutput output,
+			KeyedStatePrefetcher<Long> prefetcher) {
 		return new StreamTaskNetworkInput<>(
 			new CheckpointedInputGate(
 				new MockInputGate(1, buffers, false),
 				new CheckpointBarrierTracker(1, new DummyCheckpointInvokable())),
 			LongSerializer.INSTANCE,
 			ioManager,
+			UnregisteredMetricGroups.createUnregisteredTaskMetricGroup().getIOMetricGroup(),
 			new StatusWatermarkValve(1, output),
-			0);
+			0,
+			prefetcher);
 	}
 
 	private void serializeRecord(long value, BufferBuilder bufferBuilder) throws IOException {
@@ -274,4 +322,102 @@ public class StreamTaskNetworkInputTest {
 			return numberOfEmittedRecords;
 		}
 	}
+
+	private static class RecordingDataOutput extends NoOpDataOutput<Long> {
+
+		private final List<Long> records = new ArrayList<>();
+
+		@Override
+		public void emitRecord(StreamRecord<Long> record) {
+			records.add(record.getValue());
+		}
+	}
+
+	/**
+	 * A {@link PrefetchableKeyedStateBackend} which only records the prefetched keys.
+	 */
+	private static class PrefetchRecordingKeyedStateBackend implements PrefetchableKeyedStateBackend<Long> {
+
+		private final List<List<Long>> prefetchedKeys = new ArrayList<>();
+
+		@Override
+		public void prefetch(Collection<Long> keys) {
+			prefetchedKeys.add(new ArrayList<>(keys));
+		}
+
+		@Override
+		public void setCurrentKey(Long newKey) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Long getCurrentKey() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public TypeSerializer<Long> getKeySerializer() {
+			return LongSerializer.INSTANCE;
+		}
+
+		@Override
+		public <N, S extends State, T> void applyToAllKeys(
+				N namespace,
+				TypeSerializer<N> namespaceSerializer,
+				StateDescriptor<S, T> stateDescriptor,
+				KeyedStateFunction<Long, S> function) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <N> Stream<Long> getKeys(String state, N namespace) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <N, S extends State, T> S getOrCreateKeyedState(
+				TypeSerializer<N> namespaceSerializer,
+				StateDescriptor<S, T> stateDescriptor) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <N, S extends State> S getPartitionedState(
+				N namespace,
+				TypeSerializer<N> namespaceSerializer,
+				StateDescriptor<S, ?> stateDescriptor) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void dispose() {
+		}
+
+		@Override
+		public void registerKeySelectionListener(KeySelectionListener<Long> listener) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean deregisterKeySelectionListener(KeySelectionListener<Long> listener) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Nonnull
+		@Override
+		public <N, SV, SEV, S extends State, IS extends S> IS createInternalState(
+				@Nonnull TypeSerializer<N> namespaceSerializer,
+				@Nonnull StateDescriptor<S, SV> stateDesc,
+				@Nonnull StateSnapshotTransformFactory<SEV> snapshotTransformFactory) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Nonnull
+		@Override
+		public <T extends HeapPriorityQueueElement & PriorityComparable & Keyed> KeyGroupedInternalPriorityQueue<T> create(
+				@Nonnull String stateName,
+				@Nonnull TypeSerializer<T> byteOrderedElementSerializer) {
+			throw new UnsupportedOperationException();
+		}
+	}
 }
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io.benchmark;
+
+import org.apache.flink.core.io.IOReadableWritable;
+import org.apache.flink.runtime.io.network.api.writer.ChannelSelector;
+import org.apache.flink.runtime.io.network.api.writer.RecordWriterBuilder;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.types.LongValue;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * Network throughput benchmarks for an all-to-all <tt>keyBy</tt> exchange executed by the external
+ * <a href="https://github.com/dataArtisans/flink-benchmarks">flink-benchmarks</a> project.
+ */
+public class KeyByStreamNetworkThroughputBenchmark extends StreamNetworkThroughputBenchmark {
+
+	@Override
+	protected void setChannelSelector(RecordWriterBuilder recordWriterBuilder, boolean broadcastMode) {
+		checkArgument(!broadcastMode, "Combining broadcasting with keyBy doesn't make sense");
+		recordWriterBuilder.setChannelSelector(new KeyGroupChannelSelector());
+	}
+
+	/**
+	 * A {@link ChannelSelector} which assigns the records to channels by their value, the same way
+	 * the key groups of a <tt>keyBy</tt> are assigned to the parallel operator instances.
+	 */
+	private static class KeyGroupChannelSelector implements ChannelSelector<IOReadableWritable> {
+		private int numberOfChannels;
+		private int maxParallelism;
+
+		@Override
+		public void setup(int numberOfChannels) {
+			this.numberOfChannels = numberOfChannels;
+			this.maxParallelism = KeyGroupRangeAssignment.computeDefaultMaxParallelism(numberOfChannels);
+		}
+
+		@Override
+		public int selectChannel(IOReadableWritable record) {
+			return KeyGroupRangeAssignment.assignKeyToParallelOperator(
+				((LongValue) record).getValue(),
+				maxParallelism,
+				numberOfChannels);
+		}
+
+		@Override
+		public boolean isBroadcast() {
+			return false;
+		}
+	}
+}
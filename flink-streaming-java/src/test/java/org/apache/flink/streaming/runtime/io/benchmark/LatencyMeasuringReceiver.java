@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io.benchmark;
+
+import org.apache.flink.metrics.HistogramStatistics;
+import org.apache.flink.runtime.io.network.api.reader.MutableRecordReader;
+import org.apache.flink.runtime.io.network.partition.consumer.InputGate;
+import org.apache.flink.runtime.metrics.DescriptiveStatisticsHistogram;
+import org.apache.flink.runtime.util.EnvironmentInformation;
+import org.apache.flink.types.LongValue;
+
+/**
+ * {@link ReceiverThread} that interprets the incoming records as {@link System#nanoTime()} emission
+ * timestamps and collects the latencies of the records.
+ *
+ * <p>Unlike for the other receivers, the expected record is the number of records to receive.
+ */
+public class LatencyMeasuringReceiver extends ReceiverThread {
+
+	private final MutableRecordReader<LongValue> reader;
+
+	private volatile DescriptiveStatisticsHistogram latencies = new DescriptiveStatisticsHistogram(1);
+
+	public LatencyMeasuringReceiver(InputGate inputGate) {
+		super(1);
+		this.reader = new MutableRecordReader<>(
+			inputGate,
+			new String[]{
+				EnvironmentInformation.getTemporaryFileDirectory()
+			});
+	}
+
+	@Override
+	protected void readRecords(long numRecords) throws Exception {
+		LOG.debug("readRecords(numRecords = {})", numRecords);
+		final LongValue value = new LongValue();
+		final DescriptiveStatisticsHistogram histogram = new DescriptiveStatisticsHistogram((int) numRecords);
+
+		for (long i = 0; i < numRecords && running && reader.next(value); i++) {
+			histogram.update(System.nanoTime() - value.getValue());
+		}
+		latencies = histogram;
+	}
+
+	/**
+	 * Returns the latencies in nanoseconds of the records of the last run.
+	 */
+	public HistogramStatistics getLatencies() {
+		return latencies.getStatistics();
+	}
+}
@@ -29,8 +29,8 @@ import static org.apache.flink.util.Preconditions.checkNotNull;
 import static org.apache.flink.util.Preconditions.checkState;
 
 /**
- * Wrapping thread around {@link RecordWriter} that sends a fixed number of <tt>LongValue(0)</tt>
- * records.
+ * Wrapping thread around {@link RecordWriter} that sends a fixed number of ascending <tt>LongValue</tt>
+ * records, followed by the number of records as the last record.
  */
 public class LongRecordWriterThread extends CheckedThread {
 	private final RecordWriter<LongValue> recordWriter;
@@ -92,6 +92,8 @@ public class LongRecordWriterThread extends CheckedThread {
 		LongValue value = new LongValue(0);
 
 		for (int i = 1; i < records; i++) {
+			// distinct values give key-based channel selectors something to distribute
+			value.setValue(i);
 			if (broadcastMode) {
 				recordWriter.broadcastEmit(value);
 			}
@@ -20,6 +20,7 @@ package org.apache.flink.streaming.runtime.io.benchmark;
 
 import org.apache.flink.api.common.JobID;
 import org.apache.flink.configuration.Configuration;
+import org.apache.flink.configuration.NettyShuffleEnvironmentOptions;
 import org.apache.flink.core.io.IOReadableWritable;
 import org.apache.flink.metrics.SimpleCounter;
 import org.apache.flink.runtime.clusterframework.types.ResourceID;
@@ -165,12 +166,7 @@ public class StreamNetworkBenchmarkEnvironment<T extends IOReadableWritable> {
 	 * in {@link SingleInputGateBenchmarkFactory.TestRemoteInputChannel}.
 	 */
 	public SerializingLongReceiver createReceiver() throws Exception {
-		TaskManagerLocation senderLocation = new TaskManagerLocation(
-			ResourceID.generate(),
-			LOCAL_ADDRESS,
-			dataPort);
-
-		InputGate receiverGate = createInputGate(senderLocation);
+		InputGate receiverGate = createInputGate();
 
 		SerializingLongReceiver receiver = new SerializingLongReceiver(receiverGate, channels * partitionIds.length);
 
@@ -178,6 +174,17 @@ public class StreamNetworkBenchmarkEnvironment<T extends IOReadableWritable> {
 		return receiver;
 	}
 
+	/**
+	 * Creates a receiver which measures the latencies of the received records. The same note as for
+	 * {@link #createReceiver()} applies.
+	 */
+	public LatencyMeasuringReceiver createLatencyMeasuringReceiver() throws Exception {
+		LatencyMeasuringReceiver receiver = new LatencyMeasuringReceiver(createInputGate());
+
+		receiver.start();
+		return receiver;
+	}
+
 	public ResultPartitionWriter createResultPartitionWriter(int partitionIndex) throws Exception {
 
 		ResultPartitionWriter resultPartitionWriter = new ResultPartitionBuilder()
@@ -186,6 +193,8 @@ public class StreamNetworkBenchmarkEnvironment<T extends IOReadableWritable> {
 			.setNumberOfSubpartitions(channels)
 			.setResultPartitionManager(senderEnv.getResultPartitionManager())
 			.setupBufferPoolFactoryFromNettyShuffleEnvironment(senderEnv)
+			.setPipelinedShuffleCompressionEnabled(senderEnv.getConfiguration().isPipelinedShuffleCompressionEnabled())
+			.setPipelinedCompressionCodec(senderEnv.getConfiguration().getPipelinedCompressionCodec())
 			.build();
 
 		ResultPartitionWriter consumableNotifyingPartitionWriter = new ConsumableNotifyingResultPartitionWriterDecorator(
@@ -218,10 +227,19 @@ public class StreamNetworkBenchmarkEnvironment<T extends IOReadableWritable> {
 		return new NettyShuffleEnvironmentBuilder()
 			.setNumNetworkBuffers(bufferPoolSize)
 			.setNettyConfig(nettyConfig)
+			.setPipelinedShuffleCompressionEnabled(
+				config.getBoolean(NettyShuffleEnvironmentOptions.PIPELINED_SHUFFLE_COMPRESSION_ENABLED))
+			.setPipelinedCompressionCodec(
+				config.getString(NettyShuffleEnvironmentOptions.PIPELINED_SHUFFLE_COMPRESSION_CODEC))
 			.build();
 	}
 
-	private InputGate createInputGate(TaskManagerLocation senderLocation) throws Exception {
+	private InputGate createInputGate() throws Exception {
+		TaskManagerLocation senderLocation = new TaskManagerLocation(
+			ResourceID.generate(),
+			LOCAL_ADDRESS,
+			dataPort);
+
 		IndexedInputGate[] gates = new IndexedInputGate[partitionIds.length];
 		for (int gateIndex = 0; gateIndex < gates.length; ++gateIndex) {
 			final InputGateDeploymentDescriptor gateDescriptor = createInputGateDeploymentDescriptor(
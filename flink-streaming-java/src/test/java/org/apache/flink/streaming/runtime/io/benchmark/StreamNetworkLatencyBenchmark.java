@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io.benchmark;
+
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.HistogramStatistics;
+import org.apache.flink.runtime.io.network.api.writer.RecordWriter;
+import org.apache.flink.runtime.io.network.api.writer.RecordWriterBuilder;
+import org.apache.flink.runtime.io.network.api.writer.ResultPartitionWriter;
+import org.apache.flink.types.LongValue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streaming latency network benchmarks executed by the external
+ * <a href="https://github.com/dataArtisans/flink-benchmarks">flink-benchmarks</a> project.
+ *
+ * <p>Every record carries its emission timestamp, so that the receiver can report the latency
+ * distribution, e.g. the p99 latency, per output flushing interval and emission rate.
+ */
+public class StreamNetworkLatencyBenchmark {
+	private static final long RECEIVER_TIMEOUT = 30_000;
+
+	private StreamNetworkBenchmarkEnvironment<LongValue> environment;
+	private LatencyMeasuringReceiver receiver;
+	private RecordWriter<LongValue> recordWriter;
+	private long flushTimeout;
+
+	/**
+	 * Executes the latency benchmark with the given number of records.
+	 *
+	 * @param records
+	 * 		records to pass through the network stack
+	 * @param emitIntervalNanos
+	 * 		pause between two emitted records, <tt>0</tt> to emit as fast as possible
+	 * @return the latencies of the records in nanoseconds
+	 */
+	public HistogramStatistics executeBenchmark(long records, long emitIntervalNanos) throws Exception {
+		final LongValue value = new LongValue();
+
+		CompletableFuture<?> recordsReceived = receiver.setExpectedRecord(records);
+
+		long nextEmitTime = System.nanoTime();
+		for (long i = 0; i < records; i++) {
+			if (emitIntervalNanos > 0) {
+				nextEmitTime += emitIntervalNanos;
+				LockSupport.parkNanos(nextEmitTime - System.nanoTime());
+			}
+			value.setValue(System.nanoTime());
+			recordWriter.emit(value);
+		}
+		if (flushTimeout == -1) {
+			// without an output flusher the remaining data would never be sent
+			recordWriter.flushAll();
+		}
+
+		recordsReceived.get(RECEIVER_TIMEOUT, TimeUnit.MILLISECONDS);
+		return receiver.getLatencies();
+	}
+
+	public void setUp(int channels, long flushTimeout) throws Exception {
+		setUp(channels, flushTimeout, false, new Configuration());
+	}
+
+	/**
+	 * Initializes the latency benchmark with the given parameters.
+	 *
+	 * @param channels
+	 * 		number of outgoing channels, which are served round-robin
+	 * @param flushTimeout
+	 * 		output flushing interval of the
+	 * 		{@link org.apache.flink.runtime.io.network.api.writer.RecordWriter}'s output flusher thread
+	 * @param localMode
+	 * 		only local channels?
+	 * @param config
+	 * 		configuration of the network stack, e.g. for SSL or compression
+	 */
+	public void setUp(int channels, long flushTimeout, boolean localMode, Configuration config) throws Exception {
+		this.flushTimeout = flushTimeout;
+
+		environment = new StreamNetworkBenchmarkEnvironment<>();
+		environment.setUp(1, channels, localMode, -1, -1, config);
+
+		ResultPartitionWriter resultPartitionWriter = environment.createResultPartitionWriter(0);
+
+		recordWriter = new RecordWriterBuilder().setTimeout(flushTimeout).build(resultPartitionWriter);
+		receiver = environment.createLatencyMeasuringReceiver();
+	}
+
+	/**
+	 * Shuts down a benchmark previously set up via {@link #setUp}.
+	 */
+	public void tearDown() {
+		recordWriter.close();
+		environment.tearDown();
+		receiver.shutdown();
+	}
+}
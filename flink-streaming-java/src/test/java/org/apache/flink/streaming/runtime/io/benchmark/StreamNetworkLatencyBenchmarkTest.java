@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io.benchmark;
+
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.configuration.NettyShuffleEnvironmentOptions;
+import org.apache.flink.metrics.HistogramStatistics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link StreamNetworkLatencyBenchmark}.
+ */
+public class StreamNetworkLatencyBenchmarkTest {
+
+	@Test
+	public void testRemoteMode() throws Exception {
+		StreamNetworkLatencyBenchmark benchmark = new StreamNetworkLatencyBenchmark();
+		benchmark.setUp(2, 1);
+		try {
+			verifyLatencies(benchmark.executeBenchmark(1_000, 10_000), 1_000);
+			// the benchmark can be executed repeatedly
+			verifyLatencies(benchmark.executeBenchmark(1_000, 0), 1_000);
+		}
+		finally {
+			benchmark.tearDown();
+		}
+	}
+
+	@Test
+	public void testLocalModeWithoutOutputFlusher() throws Exception {
+		StreamNetworkLatencyBenchmark benchmark = new StreamNetworkLatencyBenchmark();
+		benchmark.setUp(1, -1, true, new Configuration());
+		try {
+			verifyLatencies(benchmark.executeBenchmark(1_000, 0), 1_000);
+		}
+		finally {
+			benchmark.tearDown();
+		}
+	}
+
+	@Test
+	public void testRemoteModeWithCompression() throws Exception {
+		Configuration config = new Configuration();
+		config.setBoolean(NettyShuffleEnvironmentOptions.PIPELINED_SHUFFLE_COMPRESSION_ENABLED, true);
+
+		StreamNetworkLatencyBenchmark benchmark = new StreamNetworkLatencyBenchmark();
+		benchmark.setUp(2, 0, false, config);
+		try {
+			verifyLatencies(benchmark.executeBenchmark(1_000, 0), 1_000);
+		}
+		finally {
+			benchmark.tearDown();
+		}
+	}
+
+	private static void verifyLatencies(HistogramStatistics latencies, int records) {
+		assertEquals(records, latencies.size());
+		assertTrue(latencies.getMin() >= 0);
+		assertTrue(latencies.getQuantile(0.99) <= latencies.getMax());
+	}
+}
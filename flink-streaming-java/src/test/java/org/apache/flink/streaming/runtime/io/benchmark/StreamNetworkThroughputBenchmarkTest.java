@@ -18,6 +18,7 @@
 
 package org.apache.flink.streaming.runtime.io.benchmark;
 
+import org.apache.flink.configuration.Configuration;
 import org.apache.flink.configuration.NettyShuffleEnvironmentOptions;
 
 import org.junit.Rule;
@@ -73,6 +74,21 @@ public class StreamNetworkThroughputBenchmarkTest {
 		env.tearDown();
 	}
 
+	@Test
+	public void remoteModeWithCompression() throws Exception {
+		Configuration config = new Configuration();
+		config.setBoolean(NettyShuffleEnvironmentOptions.PIPELINED_SHUFFLE_COMPRESSION_ENABLED, true);
+
+		StreamNetworkThroughputBenchmark benchmark = createBenchmark();
+		benchmark.setUp(2, 4, 100, false, false, -1, -1, config);
+		try {
+			benchmark.executeBenchmark(100_000);
+		}
+		finally {
+			benchmark.tearDown();
+		}
+	}
+
 	@Test
 	public void remoteModeInsufficientBuffersSender() throws Exception {
 		StreamNetworkThroughputBenchmark env = new StreamNetworkThroughputBenchmark();
@@ -28,6 +28,8 @@ import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.configuration.Configuration;
+import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
+import org.apache.flink.runtime.checkpoint.StateObjectCollection;
 import org.apache.flink.streaming.api.functions.windowing.PassThroughWindowFunction;
 import org.apache.flink.streaming.api.functions.windowing.ReduceApplyWindowFunction;
 import org.apache.flink.streaming.api.functions.windowing.RichWindowFunction;
@@ -35,12 +37,14 @@ import org.apache.flink.streaming.api.functions.windowing.delta.DeltaFunction;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.api.windowing.assigners.GlobalWindows;
 import org.apache.flink.streaming.api.windowing.assigners.TumblingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.assigners.WindowAssigner;
 import org.apache.flink.streaming.api.windowing.evictors.CountEvictor;
 import org.apache.flink.streaming.api.windowing.evictors.DeltaEvictor;
 import org.apache.flink.streaming.api.windowing.evictors.TimeEvictor;
 import org.apache.flink.streaming.api.windowing.time.Time;
 import org.apache.flink.streaming.api.windowing.triggers.CountTrigger;
 import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.Trigger;
 import org.apache.flink.streaming.api.windowing.windows.GlobalWindow;
 import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
 import org.apache.flink.streaming.api.windowing.windows.Window;
@@ -51,20 +55,255 @@ import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
 import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
 import org.apache.flink.streaming.util.TestHarnessUtil;
 import org.apache.flink.util.Collector;
+import org.apache.flink.util.ExceptionUtils;
+import org.apache.flink.util.StateMigrationException;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Tests for {@link EvictingWindowOperator}.
+ * Tests for {@link EvictingWindowOperator}, with and without incremental window eviction.
  */
+@RunWith(Parameterized.class)
 public class EvictingWindowOperatorTest {
 
+	@Parameterized.Parameter
+	public boolean incrementalEviction;
+
+	@Parameterized.Parameters(name = "incremental eviction = {0}")
+	public static Collection<Boolean> parameters() {
+		return Arrays.asList(false, true);
+	}
+
+	private void open(OneInputStreamOperatorTestHarness<?, ?> testHarness) throws Exception {
+		if (incrementalEviction) {
+			testHarness.getExecutionConfig().enableIncrementalWindowEviction();
+		}
+		testHarness.open();
+	}
+
+	/**
+	 * Tests that a time evictor evicts the elements of a window that arrived in timestamp order,
+	 * also after restoring the window contents.
+	 */
+	@Test
+	public void testTimeEvictorInOrderWithRestore() throws Exception {
+		AtomicInteger closeCalled = new AtomicInteger(0);
+		final int triggerCount = 2;
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		TypeSerializer<StreamRecord<Tuple2<String, Integer>>> streamRecordSerializer =
+			(TypeSerializer<StreamRecord<Tuple2<String, Integer>>>) new StreamElementSerializer(STRING_INT_TUPLE.createSerializer(new ExecutionConfig()));
+
+		ListStateDescriptor<StreamRecord<Tuple2<String, Integer>>> stateDesc =
+			new ListStateDescriptor<>("window-contents", streamRecordSerializer);
+
+		EvictingWindowOperator<String, Tuple2<String, Integer>, Tuple2<String, Integer>, GlobalWindow> operator = new EvictingWindowOperator<>(
+			GlobalWindows.create(),
+			new GlobalWindow.Serializer(),
+			new TupleKeySelector(),
+			BasicTypeInfo.STRING_TYPE_INFO.createSerializer(new ExecutionConfig()),
+			stateDesc,
+			new InternalIterableWindowFunction<>(new RichSumReducer<GlobalWindow>(closeCalled)),
+			CountTrigger.of(triggerCount),
+			TimeEvictor.of(Time.seconds(2)),
+			0,
+			null /* late data output tag */);
+
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			new KeyedOneInputStreamOperatorTestHarness<>(operator, new TupleKeySelector(), BasicTypeInfo.STRING_TYPE_INFO);
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+
+		open(testHarness);
+
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key1", 1), 0));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key1", 1), 1000));
+
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("key1", 2), Long.MAX_VALUE));
+
+		TestHarnessUtil.assertOutputEqualsSorted("Output was not correct.", expectedOutput, testHarness.getOutput(), new ResultSortComparator());
+
+		OperatorSubtaskState snapshot = testHarness.snapshot(0L, 0L);
+		testHarness.close();
+		expectedOutput.clear();
+
+		testHarness = new KeyedOneInputStreamOperatorTestHarness<>(operator, new TupleKeySelector(), BasicTypeInfo.STRING_TYPE_INFO);
+		testHarness.setup();
+		testHarness.initializeState(snapshot);
+		open(testHarness);
+
+		// evicts the elements at 0 and 1000
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key1", 1), 2500));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key1", 1), 3000));
+
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("key1", 2), Long.MAX_VALUE));
+
+		// evicts the elements at 2500, 3000 and 3100
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key1", 1), 3100));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key1", 1), 6000));
+
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("key1", 1), Long.MAX_VALUE));
+
+		TestHarnessUtil.assertOutputEqualsSorted("Output was not correct.", expectedOutput, testHarness.getOutput(), new ResultSortComparator());
+
+		testHarness.close();
+
+		Assert.assertEquals("Close was not called.", 2, closeCalled.get());
+	}
+
+	/**
+	 * Tests that the windows stay correct when the metadata of more windows is pending than the
+	 * incremental window state keeps in memory.
+	 */
+	@Test
+	public void testTimeEvictorWithManyPendingWindows() throws Exception {
+		AtomicInteger closeCalled = new AtomicInteger(0);
+		final int numKeys = IncrementalEvictingWindowState.MAX_PENDING_METADATA + 10;
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		TypeSerializer<StreamRecord<Tuple2<String, Integer>>> streamRecordSerializer =
+			(TypeSerializer<StreamRecord<Tuple2<String, Integer>>>) new StreamElementSerializer(STRING_INT_TUPLE.createSerializer(new ExecutionConfig()));
+
+		ListStateDescriptor<StreamRecord<Tuple2<String, Integer>>> stateDesc =
+			new ListStateDescriptor<>("window-contents", streamRecordSerializer);
+
+		EvictingWindowOperator<String, Tuple2<String, Integer>, Tuple2<String, Integer>, GlobalWindow> operator = new EvictingWindowOperator<>(
+			GlobalWindows.create(),
+			new GlobalWindow.Serializer(),
+			new TupleKeySelector(),
+			BasicTypeInfo.STRING_TYPE_INFO.createSerializer(new ExecutionConfig()),
+			stateDesc,
+			new InternalIterableWindowFunction<>(new RichSumReducer<GlobalWindow>(closeCalled)),
+			CountTrigger.of(2),
+			TimeEvictor.of(Time.seconds(2)),
+			0,
+			null /* late data output tag */);
+
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			new KeyedOneInputStreamOperatorTestHarness<>(operator, new TupleKeySelector(), BasicTypeInfo.STRING_TYPE_INFO);
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+
+		open(testHarness);
+
+		for (int key = 0; key < numKeys; key++) {
+			testHarness.processElement(new StreamRecord<>(new Tuple2<>("key" + key, 1), key));
+		}
+		// evicts the first element of every key
+		for (int key = 0; key < numKeys; key++) {
+			testHarness.processElement(new StreamRecord<>(new Tuple2<>("key" + key, 2), key + 2500));
+			expectedOutput.add(new StreamRecord<>(new Tuple2<>("key" + key, 2), Long.MAX_VALUE));
+		}
+
+		TestHarnessUtil.assertOutputEqualsSorted("Output was not correct.", expectedOutput, testHarness.getOutput(), new ResultSortComparator());
+
+		testHarness.close();
+	}
+
+	/**
+	 * Tests that restoring window contents with the other incremental eviction setting fails instead
+	 * of ignoring the restored contents.
+	 */
+	@Test
+	public void testRestoreWithOtherIncrementalEvictionSettingFails() throws Exception {
+		OperatorSubtaskState snapshot = snapshotPendingWindow(GlobalWindows.create(), new GlobalWindow.Serializer(), CountTrigger.of(2));
+		testRestoreFails(snapshot, GlobalWindows.create(), new GlobalWindow.Serializer(), CountTrigger.of(2), !incrementalEviction);
+
+		if (!incrementalEviction) {
+			// snapshots from before incremental eviction existed do not have the operator state
+			testRestoreFails(withoutOperatorState(snapshot), GlobalWindows.create(), new GlobalWindow.Serializer(), CountTrigger.of(2), true);
+
+			OperatorSubtaskState timeWindowSnapshot = snapshotPendingWindow(
+				TumblingEventTimeWindows.of(Time.seconds(1)), new TimeWindow.Serializer(), EventTimeTrigger.create());
+			testRestoreFails(withoutOperatorState(timeWindowSnapshot),
+				TumblingEventTimeWindows.of(Time.seconds(1)), new TimeWindow.Serializer(), EventTimeTrigger.create(), true);
+		}
+	}
+
+	private <W extends Window> OperatorSubtaskState snapshotPendingWindow(
+			WindowAssigner<Object, W> windowAssigner,
+			TypeSerializer<W> windowSerializer,
+			Trigger<Object, W> trigger) throws Exception {
+
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			createTestHarness(windowAssigner, windowSerializer, trigger);
+		open(testHarness);
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key1", 1), 0));
+
+		OperatorSubtaskState snapshot = testHarness.snapshot(0L, 0L);
+		testHarness.close();
+		return snapshot;
+	}
+
+	private static <W extends Window> void testRestoreFails(
+			OperatorSubtaskState snapshot,
+			WindowAssigner<Object, W> windowAssigner,
+			TypeSerializer<W> windowSerializer,
+			Trigger<Object, W> trigger,
+			boolean incrementalEviction) throws Exception {
+
+		OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			createTestHarness(windowAssigner, windowSerializer, trigger);
+		if (incrementalEviction) {
+			testHarness.getExecutionConfig().enableIncrementalWindowEviction();
+		}
+		testHarness.setup();
+		try {
+			testHarness.initializeState(snapshot);
+			testHarness.open();
+			Assert.fail("The snapshot should not be restored.");
+		} catch (Exception e) {
+			Assert.assertTrue(ExceptionUtils.findThrowable(e, StateMigrationException.class).isPresent());
+		} finally {
+			testHarness.close();
+		}
+	}
+
+	private static OperatorSubtaskState withoutOperatorState(OperatorSubtaskState snapshot) {
+		return new OperatorSubtaskState(
+			StateObjectCollection.empty(),
+			StateObjectCollection.empty(),
+			snapshot.getManagedKeyedState(),
+			snapshot.getRawKeyedState());
+	}
+
+	private static <W extends Window> OneInputStreamOperatorTestHarness<Tuple2<String, Integer>, Tuple2<String, Integer>> createTestHarness(
+			WindowAssigner<Object, W> windowAssigner,
+			TypeSerializer<W> windowSerializer,
+			Trigger<Object, W> trigger) throws Exception {
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		TypeSerializer<StreamRecord<Tuple2<String, Integer>>> streamRecordSerializer =
+			(TypeSerializer<StreamRecord<Tuple2<String, Integer>>>) new StreamElementSerializer(STRING_INT_TUPLE.createSerializer(new ExecutionConfig()));
+
+		ListStateDescriptor<StreamRecord<Tuple2<String, Integer>>> stateDesc =
+			new ListStateDescriptor<>("window-contents", streamRecordSerializer);
+
+		EvictingWindowOperator<String, Tuple2<String, Integer>, Tuple2<String, Integer>, W> operator = new EvictingWindowOperator<>(
+			windowAssigner,
+			windowSerializer,
+			new TupleKeySelector(),
+			BasicTypeInfo.STRING_TYPE_INFO.createSerializer(new ExecutionConfig()),
+			stateDesc,
+			new InternalIterableWindowFunction<>(new RichSumReducer<W>(new AtomicInteger(0))),
+			trigger,
+			CountEvictor.of(2),
+			0,
+			null /* late data output tag */);
+
+		return new KeyedOneInputStreamOperatorTestHarness<>(operator, new TupleKeySelector(), BasicTypeInfo.STRING_TYPE_INFO);
+	}
+
 	private static final TypeInformation<Tuple2<String, Integer>> STRING_INT_TUPLE =
 			TypeInformation.of(new TypeHint<Tuple2<String, Integer>>(){});
 
@@ -103,7 +342,7 @@ public class EvictingWindowOperatorTest {
 		long initialTime = 0L;
 		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
 
-		testHarness.open();
+		open(testHarness);
 
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 1), initialTime + 3000));
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 1), initialTime + 3999));
@@ -175,7 +414,7 @@ public class EvictingWindowOperatorTest {
 		long initialTime = 0L;
 		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
 
-		testHarness.open();
+		open(testHarness);
 
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 1), initialTime + 1000));
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 1), initialTime + 4000));
@@ -242,7 +481,7 @@ public class EvictingWindowOperatorTest {
 		long initialTime = 0L;
 		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
 
-		testHarness.open();
+		open(testHarness);
 
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 1), initialTime + 1000));
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 1), initialTime + 3999));
@@ -309,7 +548,7 @@ public class EvictingWindowOperatorTest {
 
 		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
 
-		testHarness.open();
+		open(testHarness);
 
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 1)));
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 1)));
@@ -381,7 +620,7 @@ public class EvictingWindowOperatorTest {
 		long initialTime = 0L;
 		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
 
-		testHarness.open();
+		open(testHarness);
 
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 1), initialTime + 3000));
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 4), initialTime + 3999));
@@ -453,7 +692,7 @@ public class EvictingWindowOperatorTest {
 		long initialTime = 0L;
 		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
 
-		testHarness.open();
+		open(testHarness);
 
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 1), initialTime + 3000));
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key2", 4), initialTime + 3999));
@@ -521,7 +760,7 @@ public class EvictingWindowOperatorTest {
 		long initialTime = 0L;
 		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
 
-		testHarness.open();
+		open(testHarness);
 
 		// The global window actually ignores these timestamps...
 
@@ -587,7 +826,7 @@ public class EvictingWindowOperatorTest {
 		long initialTime = 0L;
 		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
 
-		testHarness.open();
+		open(testHarness);
 
 		// The global window actually ignores these timestamps...
 
@@ -653,7 +892,7 @@ public class EvictingWindowOperatorTest {
 
 		long initialTime = 0L;
 
-		testHarness.open();
+		open(testHarness);
 
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key1", 1), initialTime + 10));
 		testHarness.processElement(new StreamRecord<>(new Tuple2<>("key1", 1), initialTime + 100));
@@ -0,0 +1,452 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.functions.AggregateFunction;
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
+import org.apache.flink.api.common.state.ReducingStateDescriptor;
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.common.typeinfo.TypeHint;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
+import org.apache.flink.streaming.api.functions.windowing.PassThroughWindowFunction;
+import org.apache.flink.streaming.api.functions.windowing.ProcessWindowFunction;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.api.windowing.assigners.EventTimeSessionWindows;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingProcessingTimeWindows;
+import org.apache.flink.streaming.api.windowing.assigners.TumblingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.assigners.WindowAssigner;
+import org.apache.flink.streaming.api.windowing.time.Time;
+import org.apache.flink.streaming.api.windowing.triggers.CountTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.ProcessingTimeTrigger;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalSingleValueProcessWindowFunction;
+import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalSingleValueWindowFunction;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.TestHarnessUtil;
+import org.apache.flink.util.Collector;
+import org.apache.flink.util.OutputTag;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MiniBatchWindowOperator}. The results are compared with those of a
+ * {@link WindowOperator} that is given the same input.
+ */
+@SuppressWarnings("serial")
+public class MiniBatchWindowOperatorTest extends TestLogger {
+
+	private static final TypeInformation<Tuple2<String, Integer>> STRING_INT_TUPLE =
+		TypeInformation.of(new TypeHint<Tuple2<String, Integer>>(){});
+
+	private static final TypeInformation<Tuple2<Integer, Integer>> INT_INT_TUPLE =
+		TypeInformation.of(new TypeHint<Tuple2<Integer, Integer>>(){});
+
+	private static final OutputTag<Tuple2<String, Integer>> lateOutputTag = new OutputTag<Tuple2<String, Integer>>("late-output") {};
+
+	private static final String[] KEYS = {"a", "b", "c"};
+
+	@Test
+	public void testIsApplicable() {
+		assertTrue(MiniBatchWindowOperator.isApplicable(
+			TumblingEventTimeWindows.of(Time.seconds(3)), EventTimeTrigger.create()));
+		assertTrue(MiniBatchWindowOperator.isApplicable(
+			SlidingProcessingTimeWindows.of(Time.seconds(3), Time.seconds(1)), ProcessingTimeTrigger.create()));
+
+		assertFalse(MiniBatchWindowOperator.isApplicable(
+			TumblingEventTimeWindows.of(Time.seconds(3)), CountTrigger.of(2)));
+		assertFalse(MiniBatchWindowOperator.isApplicable(
+			EventTimeSessionWindows.withGap(Time.seconds(3)), EventTimeTrigger.create()));
+	}
+
+	@Test
+	public void testReduceTumblingEventTime() throws Exception {
+		testEventTime(TumblingEventTimeWindows.of(Time.milliseconds(2000)));
+	}
+
+	@Test
+	public void testReduceSlidingEventTime() throws Exception {
+		testEventTime(SlidingEventTimeWindows.of(Time.milliseconds(3000), Time.milliseconds(1000)));
+	}
+
+	@Test
+	public void testAggregateProcessingTime() throws Exception {
+		SlidingProcessingTimeWindows assigner = SlidingProcessingTimeWindows.of(Time.milliseconds(4000), Time.milliseconds(1000));
+
+		AggregatingStateDescriptor<Tuple2<String, Integer>, Tuple2<Integer, Integer>, Integer> stateDesc =
+			new AggregatingStateDescriptor<>("window-contents", new CountAndSum(), INT_INT_TUPLE.createSerializer(new ExecutionConfig()));
+
+		WindowOperator<String, Tuple2<String, Integer>, Integer, Tuple2<String, Integer>, TimeWindow> windowOperator =
+			new WindowOperator<>(
+				assigner,
+				new TimeWindow.Serializer(),
+				new TupleKeySelector(),
+				BasicTypeInfo.STRING_TYPE_INFO.createSerializer(new ExecutionConfig()),
+				stateDesc,
+				new InternalSingleValueProcessWindowFunction<>(new KeyedResult()),
+				ProcessingTimeTrigger.create(),
+				0,
+				null);
+
+		MiniBatchWindowOperator<String, Tuple2<String, Integer>, Integer, Tuple2<String, Integer>, TimeWindow> miniBatchOperator =
+			new MiniBatchWindowOperator<>(
+				assigner,
+				new TimeWindow.Serializer(),
+				new TupleKeySelector(),
+				BasicTypeInfo.STRING_TYPE_INFO.createSerializer(new ExecutionConfig()),
+				stateDesc,
+				new InternalSingleValueProcessWindowFunction<>(new KeyedResult()),
+				ProcessingTimeTrigger.create(),
+				0,
+				null,
+				7,
+				0);
+
+		List<String> expected = runProcessingTime(windowOperator);
+		List<String> actual = runProcessingTime(miniBatchOperator);
+
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testLateFiringOnBundleSize() throws Exception {
+		KeyedOneInputStreamOperatorTestHarness<String, Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			createTestHarness(createReducingOperator(TumblingEventTimeWindows.of(Time.milliseconds(1000)), 1000, 3, 0));
+		testHarness.open();
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 1), 0));
+		testHarness.processWatermark(new Watermark(999));
+
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("a", 1), 999));
+		expectedOutput.add(new Watermark(999));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		// late elements within the allowed lateness are buffered until the bundle is full
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 1), 10));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 1), 20));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 1), 30));
+
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("a", 4), 999));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	@Test
+	public void testLateFiringOnBundleLatency() throws Exception {
+		KeyedOneInputStreamOperatorTestHarness<String, Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			createTestHarness(createReducingOperator(TumblingEventTimeWindows.of(Time.milliseconds(1000)), 1000, 100, 50));
+		testHarness.setProcessingTime(0);
+		testHarness.open();
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 1), 0));
+		testHarness.processWatermark(new Watermark(999));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 1), 10));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("b", 1), 20));
+
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("a", 1), 999));
+		expectedOutput.add(new Watermark(999));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.setProcessingTime(49);
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.setProcessingTime(50);
+
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("a", 2), 999));
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("b", 1), 999));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	@Test
+	public void testFlushBeforeSnapshot() throws Exception {
+		MiniBatchWindowOperator<String, Tuple2<String, Integer>, Tuple2<String, Integer>, Tuple2<String, Integer>, TimeWindow> operator =
+			createReducingOperator(TumblingEventTimeWindows.of(Time.milliseconds(1000)), 0, 100, 0);
+
+		KeyedOneInputStreamOperatorTestHarness<String, Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			createTestHarness(operator);
+		testHarness.open();
+
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 1), 0));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("a", 2), 500));
+		testHarness.processElement(new StreamRecord<>(new Tuple2<>("b", 3), 500));
+
+		testHarness.prepareSnapshotPreBarrier(0L);
+		OperatorSubtaskState snapshot = testHarness.snapshot(0L, 0L);
+		testHarness.close();
+
+		testHarness = createTestHarness(operator);
+		testHarness.setup();
+		testHarness.initializeState(snapshot);
+		testHarness.open();
+
+		testHarness.processWatermark(new Watermark(999));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("a", 3), 999));
+		expectedOutput.add(new StreamRecord<>(new Tuple2<>("b", 3), 999));
+		expectedOutput.add(new Watermark(999));
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	private void testEventTime(WindowAssigner<Object, TimeWindow> assigner) throws Exception {
+		List<String> expected = runEventTime(createReducingWindowOperator(assigner));
+		List<String> actual = runEventTime(createReducingOperator(assigner, 0, 7, 0));
+
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, actual);
+	}
+
+	/**
+	 * Feeds randomly delayed elements of several keys and ascending watermarks to the operator
+	 * and returns the sorted main and side output. The operator is restored from a snapshot
+	 * half-way through.
+	 */
+	private static List<String> runEventTime(
+			WindowOperator<String, Tuple2<String, Integer>, ?, Tuple2<String, Integer>, TimeWindow> operator) throws Exception {
+
+		final Random random = new Random(42);
+		final List<String> output = new ArrayList<>();
+
+		KeyedOneInputStreamOperatorTestHarness<String, Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			createTestHarness(operator);
+		testHarness.open();
+
+		long watermark = 0;
+		for (int i = 0; i < 2000; i++) {
+			if (i == 1000) {
+				testHarness.prepareSnapshotPreBarrier(0L);
+				OperatorSubtaskState snapshot = testHarness.snapshot(0L, 0L);
+				collectOutput(testHarness, output);
+				testHarness.close();
+
+				testHarness = createTestHarness(operator);
+				testHarness.setup();
+				testHarness.initializeState(snapshot);
+				testHarness.open();
+				testHarness.processWatermark(new Watermark(watermark));
+			}
+
+			// some elements are behind the watermark
+			long timestamp = watermark + random.nextInt(3000) - random.nextInt(1000);
+			testHarness.processElement(new StreamRecord<>(
+				new Tuple2<>(KEYS[random.nextInt(KEYS.length)], random.nextInt(100)), Math.max(0, timestamp)));
+
+			if (random.nextInt(10) == 0) {
+				watermark += random.nextInt(1500);
+				testHarness.processWatermark(new Watermark(watermark));
+			}
+		}
+		testHarness.processWatermark(new Watermark(Long.MAX_VALUE));
+
+		collectOutput(testHarness, output);
+		testHarness.close();
+
+		Collections.sort(output);
+		return output;
+	}
+
+	/**
+	 * Feeds elements of several keys at randomly advancing processing times to the operator and
+	 * returns the sorted output. The operator is restored from a snapshot half-way through.
+	 */
+	private static List<String> runProcessingTime(
+			WindowOperator<String, Tuple2<String, Integer>, ?, Tuple2<String, Integer>, TimeWindow> operator) throws Exception {
+
+		final Random random = new Random(42);
+		final List<String> output = new ArrayList<>();
+
+		KeyedOneInputStreamOperatorTestHarness<String, Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness =
+			createTestHarness(operator);
+		testHarness.open();
+
+		long time = 0;
+		testHarness.setProcessingTime(time);
+		for (int i = 0; i < 2000; i++) {
+			if (i == 1000) {
+				testHarness.prepareSnapshotPreBarrier(0L);
+				OperatorSubtaskState snapshot = testHarness.snapshot(0L, 0L);
+				collectOutput(testHarness, output);
+				testHarness.close();
+
+				testHarness = createTestHarness(operator);
+				testHarness.setup();
+				testHarness.initializeState(snapshot);
+				testHarness.setProcessingTime(time);
+				testHarness.open();
+			}
+
+			testHarness.processElement(new StreamRecord<>(
+				new Tuple2<>(KEYS[random.nextInt(KEYS.length)], random.nextInt(100))));
+
+			if (random.nextInt(10) == 0) {
+				time += random.nextInt(1500);
+				testHarness.setProcessingTime(time);
+			}
+		}
+		testHarness.setProcessingTime(time + 10000);
+
+		collectOutput(testHarness, output);
+		testHarness.close();
+
+		Collections.sort(output);
+		return output;
+	}
+
+	private static void collectOutput(
+			KeyedOneInputStreamOperatorTestHarness<String, Tuple2<String, Integer>, Tuple2<String, Integer>> testHarness,
+			List<String> output) {
+
+		for (Object element : testHarness.getOutput()) {
+			if (element instanceof StreamRecord) {
+				output.add(element.toString());
+			}
+		}
+
+		if (testHarness.getSideOutput(lateOutputTag) != null) {
+			for (StreamRecord<Tuple2<String, Integer>> element : testHarness.getSideOutput(lateOutputTag)) {
+				output.add("late " + element);
+			}
+		}
+	}
+
+	private static KeyedOneInputStreamOperatorTestHarness<String, Tuple2<String, Integer>, Tuple2<String, Integer>> createTestHarness(
+			WindowOperator<String, Tuple2<String, Integer>, ?, Tuple2<String, Integer>, TimeWindow> operator) throws Exception {
+		return new KeyedOneInputStreamOperatorTestHarness<>(operator, new TupleKeySelector(), BasicTypeInfo.STRING_TYPE_INFO);
+	}
+
+	private static WindowOperator<String, Tuple2<String, Integer>, Tuple2<String, Integer>, Tuple2<String, Integer>, TimeWindow> createReducingWindowOperator(
+			WindowAssigner<Object, TimeWindow> assigner) {
+
+		return new WindowOperator<>(
+			assigner,
+			new TimeWindow.Serializer(),
+			new TupleKeySelector(),
+			BasicTypeInfo.STRING_TYPE_INFO.createSerializer(new ExecutionConfig()),
+			new ReducingStateDescriptor<>("window-contents", new SumReducer(), STRING_INT_TUPLE.createSerializer(new ExecutionConfig())),
+			new InternalSingleValueWindowFunction<>(new PassThroughWindowFunction<String, TimeWindow, Tuple2<String, Integer>>()),
+			EventTimeTrigger.create(),
+			0,
+			lateOutputTag);
+	}
+
+	private static MiniBatchWindowOperator<String, Tuple2<String, Integer>, Tuple2<String, Integer>, Tuple2<String, Integer>, TimeWindow> createReducingOperator(
+			WindowAssigner<Object, TimeWindow> assigner,
+			long allowedLateness,
+			int maxBundleSize,
+			long maxBundleLatency) {
+
+		return new MiniBatchWindowOperator<>(
+			assigner,
+			new TimeWindow.Serializer(),
+			new TupleKeySelector(),
+			BasicTypeInfo.STRING_TYPE_INFO.createSerializer(new ExecutionConfig()),
+			new ReducingStateDescriptor<>("window-contents", new SumReducer(), STRING_INT_TUPLE.createSerializer(new ExecutionConfig())),
+			new InternalSingleValueWindowFunction<>(new PassThroughWindowFunction<String, TimeWindow, Tuple2<String, Integer>>()),
+			EventTimeTrigger.create(),
+			allowedLateness,
+			lateOutputTag,
+			maxBundleSize,
+			maxBundleLatency);
+	}
+
+	// ------------------------------------------------------------------------
+	//  UDFs
+	// ------------------------------------------------------------------------
+
+	private static class SumReducer implements ReduceFunction<Tuple2<String, Integer>> {
+		@Override
+		public Tuple2<String, Integer> reduce(Tuple2<String, Integer> value1, Tuple2<String, Integer> value2) {
+			return new Tuple2<>(value2.f0, value1.f1 + value2.f1);
+		}
+	}
+
+	/**
+	 * Counts and sums the values, the result encodes both so that a wrong count is detected.
+	 */
+	private static class CountAndSum implements AggregateFunction<Tuple2<String, Integer>, Tuple2<Integer, Integer>, Integer> {
+
+		@Override
+		public Tuple2<Integer, Integer> createAccumulator() {
+			return new Tuple2<>(0, 0);
+		}
+
+		@Override
+		public Tuple2<Integer, Integer> add(Tuple2<String, Integer> value, Tuple2<Integer, Integer> accumulator) {
+			accumulator.f0 += 1;
+			accumulator.f1 += value.f1;
+			return accumulator;
+		}
+
+		@Override
+		public Integer getResult(Tuple2<Integer, Integer> accumulator) {
+			return accumulator.f0 * 100000 + accumulator.f1;
+		}
+
+		@Override
+		public Tuple2<Integer, Integer> merge(Tuple2<Integer, Integer> a, Tuple2<Integer, Integer> b) {
+			throw new UnsupportedOperationException("Mini-batches must not require merging accumulators.");
+		}
+	}
+
+	private static class KeyedResult extends ProcessWindowFunction<Integer, Tuple2<String, Integer>, String, TimeWindow> {
+		@Override
+		public void process(String key, Context context, Iterable<Integer> elements, Collector<Tuple2<String, Integer>> out) {
+			for (Integer element : elements) {
+				out.collect(new Tuple2<>(key, element));
+			}
+		}
+	}
+
+	private static class TupleKeySelector implements KeySelector<Tuple2<String, Integer>, String> {
+		@Override
+		public String getKey(Tuple2<String, Integer> value) {
+			return value.f0;
+		}
+	}
+}
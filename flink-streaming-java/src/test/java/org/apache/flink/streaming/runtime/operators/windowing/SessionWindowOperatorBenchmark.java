@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.ReducingStateDescriptor;
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.streaming.api.functions.windowing.PassThroughWindowFunction;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.api.windowing.assigners.EventTimeSessionWindows;
+import org.apache.flink.streaming.api.windowing.time.Time;
+import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalSingleValueWindowFunction;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
+
+/**
+ * Throughput benchmark for keyed event time session windows executed by the external
+ * <a href="https://github.com/dataArtisans/flink-benchmarks">flink-benchmarks</a> project.
+ *
+ * <p>The records of all keys advance in time together. Every key keeps a few sessions in flight
+ * that grow and merge with out-of-order records, and all sessions end after a fixed number of
+ * rounds. Setting up the benchmark with and without the compact session window set compares
+ * the {@link TimeWindowMergingSet} with the generic {@link MergingWindowSet}.
+ */
+public class SessionWindowOperatorBenchmark {
+
+	private static final long SESSION_GAP = 10L;
+
+	private static final long ROUNDS_PER_SESSION = 50L;
+
+	private KeyedOneInputStreamOperatorTestHarness<Long, Long, Long> testHarness;
+
+	private int numKeys;
+
+	private long numRecords;
+
+	private long numFiredWindows;
+
+	public void setUp(boolean compactSessionWindowSet, int numKeys) throws Exception {
+		this.numKeys = numKeys;
+		this.numRecords = 0L;
+		this.numFiredWindows = 0L;
+
+		ReducingStateDescriptor<Long> stateDesc =
+				new ReducingStateDescriptor<>("window-contents", new SumReducer(), LongSerializer.INSTANCE);
+
+		WindowOperator<Long, Long, Long, Long, TimeWindow> operator = new WindowOperator<>(
+				EventTimeSessionWindows.withGap(Time.milliseconds(SESSION_GAP)),
+				new TimeWindow.Serializer(),
+				new IdentityKeySelector(),
+				LongSerializer.INSTANCE,
+				stateDesc,
+				new InternalSingleValueWindowFunction<>(new PassThroughWindowFunction<Long, TimeWindow, Long>()),
+				EventTimeTrigger.create(),
+				0,
+				null /* late data output tag */);
+
+		testHarness = new KeyedOneInputStreamOperatorTestHarness<>(
+				operator, new IdentityKeySelector(), BasicTypeInfo.LONG_TYPE_INFO);
+		if (compactSessionWindowSet) {
+			testHarness.getExecutionConfig().enableCompactSessionWindowSet();
+		}
+		testHarness.open();
+	}
+
+	/**
+	 * Processes the given number of records, one record per key and round, and a watermark after
+	 * each round.
+	 */
+	public void processRecords(int numRecordsToProcess) throws Exception {
+		for (int i = 0; i < numRecordsToProcess; i++, numRecords++) {
+			long key = numRecords % numKeys;
+			long round = numRecords / numKeys;
+			long session = round / ROUNDS_PER_SESSION;
+
+			// every round spreads the records of a key over three sessions that only merge once the
+			// records in between arrive, and a new session starts every ROUNDS_PER_SESSION rounds
+			long timestamp = session * ROUNDS_PER_SESSION * SESSION_GAP * 4
+					+ (round % ROUNDS_PER_SESSION) * 2
+					+ ((key + round) % 3) * SESSION_GAP * 2;
+			testHarness.processElement(new StreamRecord<>(key, timestamp));
+
+			if (key == numKeys - 1) {
+				testHarness.processWatermark(new Watermark(session * ROUNDS_PER_SESSION * SESSION_GAP * 4 - 1));
+				collectOutput();
+			}
+		}
+	}
+
+	public long getNumFiredWindows() throws Exception {
+		collectOutput();
+		return numFiredWindows;
+	}
+
+	public void tearDown() throws Exception {
+		testHarness.close();
+	}
+
+	private void collectOutput() {
+		for (Object element : testHarness.getOutput()) {
+			if (element instanceof StreamRecord) {
+				numFiredWindows++;
+			}
+		}
+		testHarness.getOutput().clear();
+	}
+
+	private static class IdentityKeySelector implements KeySelector<Long, Long> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Long getKey(Long value) {
+			return value;
+		}
+	}
+
+	private static class SumReducer implements ReduceFunction<Long> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Long reduce(Long value1, Long value2) {
+			return value1 + value2;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SessionWindowOperatorBenchmark}.
+ */
+public class SessionWindowOperatorBenchmarkTest {
+
+	@Test
+	public void testCompactAndGenericWindowSetFireSameWindows() throws Exception {
+		long generic = runBenchmark(false);
+		long compact = runBenchmark(true);
+
+		assertTrue(generic > 0);
+		assertEquals(generic, compact);
+	}
+
+	private static long runBenchmark(boolean compactSessionWindowSet) throws Exception {
+		SessionWindowOperatorBenchmark benchmark = new SessionWindowOperatorBenchmark();
+		benchmark.setUp(compactSessionWindowSet, 100);
+		try {
+			benchmark.processRecords(100_000);
+			return benchmark.getNumFiredWindows();
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+}
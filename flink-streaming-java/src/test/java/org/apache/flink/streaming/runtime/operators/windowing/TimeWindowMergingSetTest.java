@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.streaming.api.windowing.assigners.EventTimeSessionWindows;
+import org.apache.flink.streaming.api.windowing.assigners.MergingWindowAssigner;
+import org.apache.flink.streaming.api.windowing.assigners.ProcessingTimeSessionWindows;
+import org.apache.flink.streaming.api.windowing.assigners.TumblingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.time.Time;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link TimeWindowMergingSet}.
+ */
+public class TimeWindowMergingSetTest {
+
+	private static final MergingWindowAssigner<Object, TimeWindow> ASSIGNER =
+			EventTimeSessionWindows.withGap(Time.milliseconds(3));
+
+	@Test
+	public void testIsApplicable() {
+		assertTrue(TimeWindowMergingSet.isApplicable(ASSIGNER));
+		assertTrue(TimeWindowMergingSet.isApplicable(ProcessingTimeSessionWindows.withGap(Time.milliseconds(3))));
+		assertFalse(TimeWindowMergingSet.isApplicable(TumblingEventTimeWindows.of(Time.milliseconds(3))));
+		assertFalse(TimeWindowMergingSet.isApplicable(new MergingWindowSetTest.NonEagerlyMergingWindowAssigner(3)));
+	}
+
+	@Test
+	public void testMergingAndRetiring() throws Exception {
+		TimeWindowMergingSet windowSet = new TimeWindowMergingSet(ASSIGNER, new TestValueState());
+		RecordingMergeFunction mergeFunction = new RecordingMergeFunction();
+
+		assertEquals(new TimeWindow(0, 4), windowSet.addWindow(new TimeWindow(0, 4), mergeFunction));
+		assertEquals(new TimeWindow(10, 14), windowSet.addWindow(new TimeWindow(10, 14), mergeFunction));
+		assertEquals(new TimeWindow(20, 24), windowSet.addWindow(new TimeWindow(20, 24), mergeFunction));
+		assertEquals(new TimeWindow(0, 4), windowSet.addWindow(new TimeWindow(1, 3), mergeFunction));
+		assertTrue(mergeFunction.merges.isEmpty());
+
+		// bridges the first two windows, the earliest state window is kept
+		assertEquals(new TimeWindow(0, 14), windowSet.addWindow(new TimeWindow(4, 10), mergeFunction));
+		assertEquals(1, mergeFunction.merges.size());
+		assertEquals(
+				"merge [0, 14) from [TimeWindow{start=0, end=4}, TimeWindow{start=10, end=14}]",
+				mergeFunction.merges.get(0));
+		assertEquals(new TimeWindow(0, 4), mergeFunction.stateWindowResult);
+		assertEquals(singletonList(new TimeWindow(10, 14)), mergeFunction.mergedStateWindows);
+		assertEquals(new TimeWindow(0, 4), windowSet.getStateWindow(new TimeWindow(0, 14)));
+		assertNull(windowSet.getStateWindow(new TimeWindow(10, 14)));
+
+		windowSet.retireWindow(new TimeWindow(0, 14));
+		assertNull(windowSet.getStateWindow(new TimeWindow(0, 14)));
+		assertEquals(new TimeWindow(20, 24), windowSet.getStateWindow(new TimeWindow(20, 24)));
+
+		try {
+			windowSet.retireWindow(new TimeWindow(0, 14));
+			fail("Expected an IllegalStateException.");
+		} catch (IllegalStateException expected) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testPersistOnlyOnChange() throws Exception {
+		TestValueState state = new TestValueState();
+		RecordingMergeFunction mergeFunction = new RecordingMergeFunction();
+
+		TimeWindowMergingSet windowSet = new TimeWindowMergingSet(ASSIGNER, state);
+		windowSet.addWindow(new TimeWindow(0, 4), mergeFunction);
+		windowSet.addWindow(new TimeWindow(3, 8), mergeFunction);
+		windowSet.persist();
+		assertArrayEquals(new long[] {0, 8, 0, 4}, state.value);
+		assertEquals(1, state.updates);
+
+		long[] persisted = state.value;
+		windowSet = new TimeWindowMergingSet(ASSIGNER, state);
+		assertEquals(new TimeWindow(0, 8), windowSet.addWindow(new TimeWindow(2, 5), mergeFunction));
+		windowSet.persist();
+		assertEquals(1, state.updates);
+
+		windowSet.addWindow(new TimeWindow(20, 24), mergeFunction);
+		windowSet.persist();
+		assertEquals(2, state.updates);
+		assertArrayEquals(new long[] {0, 8, 0, 4}, persisted);
+
+		windowSet = new TimeWindowMergingSet(ASSIGNER, state);
+		windowSet.retireWindow(new TimeWindow(0, 8));
+		windowSet.retireWindow(new TimeWindow(20, 24));
+		windowSet.persist();
+		assertNull(state.value);
+	}
+
+	/**
+	 * Adds and retires random windows on a {@link TimeWindowMergingSet} and a {@link MergingWindowSet}
+	 * and verifies that both return the same windows and invoke the same merges. The state windows
+	 * may differ, because {@link MergingWindowSet} picks any of the merged state windows, so they
+	 * are verified against a model of the expected state windows.
+	 */
+	@Test
+	public void testSameResultsAsMergingWindowSet() throws Exception {
+		final Random random = new Random(42L);
+
+		@SuppressWarnings("unchecked")
+		ListState<Tuple2<TimeWindow, TimeWindow>> mockState = mock(ListState.class);
+		MergingWindowSet<TimeWindow> expectedSet = new MergingWindowSet<>(ASSIGNER, mockState);
+		TestValueState state = new TestValueState();
+
+		RecordingMergeFunction expectedMerges = new RecordingMergeFunction();
+		RecordingMergeFunction actualMerges = new RecordingMergeFunction();
+		Map<TimeWindow, TimeWindow> stateWindows = new HashMap<>();
+
+		for (int i = 0; i < 10_000; i++) {
+			// restore the compact set from state every time, as the window operator does
+			TimeWindowMergingSet actualSet = new TimeWindowMergingSet(ASSIGNER, state);
+
+			if (!stateWindows.isEmpty() && random.nextInt(5) == 0) {
+				TimeWindow retired = new ArrayList<>(stateWindows.keySet()).get(random.nextInt(stateWindows.size()));
+				stateWindows.remove(retired);
+				expectedSet.retireWindow(retired);
+				actualSet.retireWindow(retired);
+			} else {
+				long start = random.nextInt(1000);
+				TimeWindow window = new TimeWindow(start, start + 1 + random.nextInt(10));
+
+				TimeWindow expected = expectedSet.addWindow(window, expectedMerges);
+				TimeWindow actual = actualSet.addWindow(window, actualMerges);
+
+				assertEquals(expected, actual);
+				assertEquals(expectedMerges.merges, actualMerges.merges);
+
+				if (actualMerges.merges.isEmpty()) {
+					stateWindows.putIfAbsent(actual, actual);
+				} else {
+					Set<TimeWindow> mergedStateWindows = new HashSet<>(actualMerges.mergedStateWindows);
+					mergedStateWindows.add(actualMerges.stateWindowResult);
+					Set<TimeWindow> expectedStateWindows = new HashSet<>();
+					for (TimeWindow mergedWindow : actualMerges.mergedWindows) {
+						expectedStateWindows.add(stateWindows.remove(mergedWindow));
+					}
+					assertEquals(expectedStateWindows, mergedStateWindows);
+					stateWindows.put(actual, actualMerges.stateWindowResult);
+				}
+				assertEquals(stateWindows.get(actual), actualSet.getStateWindow(actual));
+			}
+			actualSet.persist();
+
+			expectedMerges.clear();
+			actualMerges.clear();
+		}
+
+		TimeWindowMergingSet actualSet = new TimeWindowMergingSet(ASSIGNER, state);
+		for (Map.Entry<TimeWindow, TimeWindow> window : stateWindows.entrySet()) {
+			assertNotNull(expectedSet.getStateWindow(window.getKey()));
+			assertEquals(window.getValue(), actualSet.getStateWindow(window.getKey()));
+		}
+	}
+
+	private static class RecordingMergeFunction implements MergingWindowSet.MergeFunction<TimeWindow> {
+
+		private final List<String> merges = new ArrayList<>();
+
+		private final List<TimeWindow> mergedWindows = new ArrayList<>();
+
+		private final List<TimeWindow> mergedStateWindows = new ArrayList<>();
+
+		private TimeWindow stateWindowResult;
+
+		@Override
+		public void merge(
+				TimeWindow mergeResult,
+				Collection<TimeWindow> mergedWindows,
+				TimeWindow stateWindowResult,
+				Collection<TimeWindow> mergedStateWindows) {
+			List<TimeWindow> sortedWindows = new ArrayList<>(mergedWindows);
+			sortedWindows.sort((a, b) -> Long.compare(a.getStart(), b.getStart()));
+
+			merges.add("merge [" + mergeResult.getStart() + ", " + mergeResult.getEnd() + ") from " + sortedWindows);
+			this.mergedWindows.addAll(mergedWindows);
+			this.mergedStateWindows.addAll(mergedStateWindows);
+			this.stateWindowResult = stateWindowResult;
+		}
+
+		void clear() {
+			merges.clear();
+			mergedWindows.clear();
+			mergedStateWindows.clear();
+			stateWindowResult = null;
+		}
+	}
+
+	private static class TestValueState implements ValueState<long[]> {
+
+		private long[] value;
+
+		private int updates;
+
+		@Override
+		public long[] value() {
+			return value;
+		}
+
+		@Override
+		public void update(long[] value) {
+			this.value = value;
+			updates++;
+		}
+
+		@Override
+		public void clear() {
+			value = null;
+		}
+	}
+}
@@ -64,6 +64,7 @@ import org.apache.flink.runtime.state.StreamStateHandle;
 import org.apache.flink.runtime.state.TestTaskStateManager;
 import org.apache.flink.runtime.taskexecutor.KvStateService;
 import org.apache.flink.runtime.taskexecutor.PartitionProducerStateChecker;
+import org.apache.flink.runtime.taskexecutor.TaskManagerSharedResources;
 import org.apache.flink.runtime.taskexecutor.TestGlobalAggregateManager;
 import org.apache.flink.runtime.taskmanager.CheckpointResponder;
 import org.apache.flink.runtime.taskmanager.NoOpTaskOperatorEventGateway;
@@ -279,6 +280,7 @@ public class InterruptSensitiveRestoreTest {
 			new FileCache(new String[] { EnvironmentInformation.getTemporaryFileDirectory() },
 				VoidPermanentBlobService.INSTANCE),
 			new TestingTaskManagerRuntimeInfo(),
+			new TaskManagerSharedResources(),
 			UnregisteredMetricGroups.createUnregisteredTaskMetricGroup(),
 			new NoOpResultPartitionConsumableNotifier(),
 			mock(PartitionProducerStateChecker.class),
@@ -51,6 +51,7 @@ import org.apache.flink.runtime.query.KvStateRegistry;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.TaskStateManager;
 import org.apache.flink.runtime.taskexecutor.GlobalAggregateManager;
+import org.apache.flink.runtime.taskexecutor.TaskManagerSharedResources;
 import org.apache.flink.runtime.taskexecutor.TestGlobalAggregateManager;
 import org.apache.flink.runtime.taskmanager.NoOpTaskOperatorEventGateway;
 import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
@@ -116,6 +117,8 @@ public class StreamMockEnvironment implements Environment {
 
 	private TaskManagerRuntimeInfo taskManagerRuntimeInfo = new TestingTaskManagerRuntimeInfo();
 
+	private final TaskManagerSharedResources taskManagerSharedResources = new TaskManagerSharedResources();
+
 	private TaskMetricGroup taskMetricGroup = UnregisteredMetricGroups.createUnregisteredTaskMetricGroup();
 
 	public StreamMockEnvironment(
@@ -356,6 +359,11 @@ public class StreamMockEnvironment implements Environment {
 		this.taskManagerRuntimeInfo = taskManagerRuntimeInfo;
 	}
 
+	@Override
+	public TaskManagerSharedResources getTaskManagerSharedResources() {
+		return taskManagerSharedResources;
+	}
+
 	@Override
 	public TaskMetricGroup getMetricGroup() {
 		return this.taskMetricGroup;
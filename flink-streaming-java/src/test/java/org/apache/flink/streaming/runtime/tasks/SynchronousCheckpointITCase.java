@@ -53,6 +53,7 @@ import org.apache.flink.runtime.state.CheckpointStorageLocationReference;
 import org.apache.flink.runtime.state.TestTaskStateManager;
 import org.apache.flink.runtime.taskexecutor.KvStateService;
 import org.apache.flink.runtime.taskexecutor.PartitionProducerStateChecker;
+import org.apache.flink.runtime.taskexecutor.TaskManagerSharedResources;
 import org.apache.flink.runtime.taskexecutor.TestGlobalAggregateManager;
 import org.apache.flink.runtime.taskmanager.CheckpointResponder;
 import org.apache.flink.runtime.taskmanager.NoOpTaskOperatorEventGateway;
@@ -256,6 +257,7 @@ public class SynchronousCheckpointITCase {
 				TestingClassLoaderLease.newBuilder().build(),
 				mock(FileCache.class),
 				new TestingTaskManagerRuntimeInfo(),
+				new TaskManagerSharedResources(),
 				taskMetricGroup,
 				consumableNotifier,
 				partitionProducerStateChecker,
@@ -71,6 +71,7 @@ import org.apache.flink.runtime.state.memory.MemoryStateBackend;
 import org.apache.flink.runtime.state.testutils.BackendForTestStream;
 import org.apache.flink.runtime.taskexecutor.KvStateService;
 import org.apache.flink.runtime.taskexecutor.PartitionProducerStateChecker;
+import org.apache.flink.runtime.taskexecutor.TaskManagerSharedResources;
 import org.apache.flink.runtime.taskexecutor.TestGlobalAggregateManager;
 import org.apache.flink.runtime.taskmanager.CheckpointResponder;
 import org.apache.flink.runtime.taskmanager.NoOpTaskOperatorEventGateway;
@@ -220,6 +221,7 @@ public class TaskCheckpointingBehaviourTest extends TestLogger {
 				new FileCache(new String[] { EnvironmentInformation.getTemporaryFileDirectory() },
 					VoidPermanentBlobService.INSTANCE),
 				new TestingTaskManagerRuntimeInfo(),
+				new TaskManagerSharedResources(),
 				UnregisteredMetricGroups.createUnregisteredTaskMetricGroup(),
 				new NoOpResultPartitionConsumableNotifier(),
 				mock(PartitionProducerStateChecker.class),
@@ -317,6 +317,29 @@ class KeyedStream[T, K](javaStream: KeyedJavaStream[T, K]) extends DataStream[T]
     reduce(reducer)
   }
 
+  /**
+   * Creates a new [[DataStream]] by reducing the elements of this DataStream
+   * using an associative reduce function, like [[reduce]], but pre-combines the
+   * elements of each key before they are partitioned. The final value per key is
+   * the same, but fewer intermediate values are emitted.
+   *
+   * @param maxBundleSize The maximum number of elements that are pre-combined
+   *                      before the partitioning.
+   * @param maxBundleLatency The maximum time that elements are held back before
+   *                         the partitioning.
+   */
+  @PublicEvolving
+  def reduceWithLocalAggregation(
+      reducer: ReduceFunction[T],
+      maxBundleSize: Int,
+      maxBundleLatency: Time): DataStream[T] = {
+    if (reducer == null) {
+      throw new NullPointerException("Reduce function must not be null.")
+    }
+
+    asScalaStream(javaStream.reduceWithLocalAggregation(reducer, maxBundleSize, maxBundleLatency))
+  }
+
   /**
    * Creates a new [[DataStream]] by folding the elements of this DataStream
    * using an associative fold function and an initial value. An independent 
@@ -27,6 +27,7 @@ import org.apache.flink.util.IterableIterator;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -151,10 +152,17 @@ public abstract class StateMapView<N, MK, MV> extends MapView<MK, MV> implements
 
 		@Override
 		public void putAll(Map<MK, MV> map) throws Exception {
+			// the entry of the null key is kept in the null state, all other entries are written in bulk
+			Map<MK, MV> nonNullEntries = map;
 			for (Map.Entry<MK, MV> entry : map.entrySet()) {
-				// entry key might be null, so we can't invoke mapState.putAll(map) directly here
-				put(entry.getKey(), entry.getValue());
+				if (entry.getKey() == null) {
+					getNullState().update(entry.getValue());
+					nonNullEntries = new HashMap<>(map);
+					nonNullEntries.remove(null);
+					break;
+				}
 			}
+			getMapState().putAll(nonNullEntries);
 		}
 
 		@Override